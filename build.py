@@ -288,6 +288,7 @@ CTX.INPUT['executors'] = """
  deleteexecutor.cpp
  executorfactory.cpp
  executorutil.cpp
+ hashjoinexecutor.cpp
  indexcountexecutor.cpp
  indexscanexecutor.cpp
  insertexecutor.cpp
@@ -312,6 +313,7 @@ CTX.INPUT['executors'] = """
 
 CTX.INPUT['expressions'] = """
  abstractexpression.cpp
+ batchpredicate.cpp
  expressionutil.cpp
  functionexpression.cpp
  geofunctions.cpp
@@ -331,6 +333,7 @@ CTX.INPUT['plannodes'] = """
  abstractscannode.cpp
  aggregatenode.cpp
  deletenode.cpp
+ hashjoinnode.cpp
  indexscannode.cpp
  indexcountnode.cpp
  tablecountnode.cpp
@@ -395,6 +398,7 @@ CTX.INPUT['storage'] = """
  tabletuplefilter.cpp
  temptable.cpp
  TempTableLimits.cpp
+ TempTableSpill.cpp
  TupleBlock.cpp
  TupleStreamBase.cpp
 """
@@ -507,6 +511,7 @@ if whichtests in ("${eetestsuite}", "executors"):
 
 if whichtests in ("${eetestsuite}", "expressions"):
     CTX.TESTS['expressions'] = """
+     batchpredicate_test
      expression_test
      function_test
     """
@@ -531,6 +536,7 @@ if whichtests in ("${eetestsuite}", "storage"):
      PersistentTableMemStatsTest
      StreamedTable_test
      TempTableLimitsTest
+     TempTableSpillTest
      constraint_test
      filter_test
      persistent_table_log_test
@@ -1983,6 +1983,21 @@ void VoltDBEngine::executeTask(TaskType taskType, ReferenceSerializeInputBE &tas
         }
         break;
     }
+    case TASK_TYPE_SET_TEMP_TABLE_SPILL: {
+        // Plans keep a pointer to the spill, so it is reconfigured in place.
+        // An empty directory turns spilling off.
+        m_tempTableSpill.setDirectory(taskInfo.readTextString());
+        m_resultOutput.writeInt(0);
+        break;
+    }
+    case TASK_TYPE_GET_TEMP_TABLE_SPILL_STATS: {
+        m_resultOutput.writeInt(static_cast<int32_t>(4 * sizeof(int64_t)));
+        m_resultOutput.writeLong(m_tempTableSpill.getSpills());
+        m_resultOutput.writeLong(m_tempTableSpill.getBytesWritten());
+        m_resultOutput.writeLong(m_tempTableSpill.getBytesRead());
+        m_resultOutput.writeLong(m_tempTableSpill.getFiles());
+        break;
+    }
     default:
         throwFatalException("Unknown task type %d", taskType);
     }
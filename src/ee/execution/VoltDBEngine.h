@@ -59,6 +59,7 @@
 #include "stats/StatsAgent.h"
 
 #include "storage/BinaryLogSinkWrapper.h"
+#include "storage/TempTableSpill.h"
 
 #include "boost/scoped_ptr.hpp"
 #include "boost/unordered_map.hpp"
@@ -445,6 +446,9 @@ class __attribute__((visibility("default"))) VoltDBEngine {
             return (m_tempTableMemoryLimit * 3) / 4;
         }
 
+        /// The site's spill directory for temp tables, disabled until the site configures it.
+        TempTableSpill* tempTableSpill() { return &m_tempTableSpill; }
+
         int32_t getPartitionId() const { return m_partitionId; }
 
     protected:
@@ -518,6 +522,8 @@ class __attribute__((visibility("default"))) VoltDBEngine {
 
         int64_t m_tempTableMemoryLimit;
 
+        TempTableSpill m_tempTableSpill;
+
         /*
          * Catalog delegates hashed by path.
          */
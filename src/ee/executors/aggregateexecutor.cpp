@@ -54,6 +54,8 @@
 #include "plannodes/limitnode.h"
 #include "storage/temptable.h"
 #include "storage/tableiterator.h"
+#include "storage/TempTableLimits.h"
+#include "storage/TempTableSpill.h"
 
 #include "boost/foreach.hpp"
 #include "boost/unordered_map.hpp"
@@ -68,6 +70,15 @@
 #include <utility>
 
 namespace voltdb {
+
+// Partitions per spill of a hash aggregation, a power of two
+static const int AGG_SPILL_PARTITION_BITS = 4;
+static const int AGG_SPILL_PARTITIONS = 1 << AGG_SPILL_PARTITION_BITS;
+// Each level partitions on the next bits of the group key hash,
+// past this depth keys are too alike to split and stay in memory
+static const int AGG_SPILL_MAX_LEVEL = 4;
+static const int AGG_SPILL_BUFFER_BYTES = 64 * 1024;
+
 /*
  * Type of the hash set used to check for column aggregate distinctness
  */
@@ -774,6 +785,19 @@ void AggregateExecutorBase::p_execute_finish()
 
 AggregateHashExecutor::~AggregateHashExecutor() {}
 
+bool AggregateHashExecutor::p_init(AbstractPlanNode* abstract_node, TempTableLimits* limits)
+{
+    if (!AggregateExecutorBase::p_init(abstract_node, limits)) {
+        return false;
+    }
+    m_limits = limits;
+    if (!m_abstractNode->isInline()) {
+        // Groups are copied into output tuples, nothing holds on to the input
+        m_abstractNode->getTempOutputTable()->setSpillable(true);
+    }
+    return true;
+}
+
 TableTuple AggregateHashExecutor::p_execute_init(const NValueArray& params,
                                                  ProgressMonitorProxy* pmp,
                                                  const TupleSchema * schema,
@@ -782,6 +806,11 @@ TableTuple AggregateHashExecutor::p_execute_init(const NValueArray& params,
 {
     VOLT_TRACE("hash aggregate executor init..");
     m_hash.clear();
+    // Drop whatever a failed execution left spilled
+    m_spillWriters.clear();
+    m_spillFiles.clear();
+    m_pendingPartitions.clear();
+    m_spillLevel = 0;
 
     return AggregateExecutorBase::p_execute_init(params, pmp, schema, newTempTable, parentPostfilter);
 }
@@ -819,8 +848,13 @@ void AggregateHashExecutor::p_execute_tuple(const TableTuple& nextTuple) {
     // Search for the matching group.
     HashAggregateMapType::const_iterator keyIter = m_hash.find(nextGroupByKeyTuple);
 
-    // Group not found. Make a new entry in the hash for this new group.
+    // Group not found. Make a new entry in the hash for this new group,
+    // unless the groups already in memory have used up the limit.
     if (keyIter == m_hash.end()) {
+        if ( ! m_spillWriters.empty() || startSpilling()) {
+            spillTuple(nextTuple);
+            return;
+        }
         VOLT_TRACE("hash aggregate: new group..");
         aggregateRow = new (m_memoryPool, m_aggTypes.size()) AggregateRow();
         m_hash.insert(HashAggregateMapType::value_type(nextGroupByKeyTuple, aggregateRow));
@@ -849,7 +883,39 @@ void AggregateHashExecutor::p_execute_tuple(const TableTuple& nextTuple) {
 
 void AggregateHashExecutor::p_execute_finish() {
     VOLT_TRACE("finalizing..");
+    emitGroups();
+
+    // Aggregate what was spilled one partition at a time, each may spill again
+    finishSpilling();
+    while ( ! m_pendingPartitions.empty()) {
+        SpilledPartition partition = m_pendingPartitions.back();
+        m_pendingPartitions.pop_back();
+        VOLT_DEBUG("hash aggregate: aggregating %ld spilled tuples at level %d",
+                   (long)partition.m_tupleCount, partition.m_level);
+
+        AggregateExecutorBase::p_execute_finish();
+        m_nextGroupByKeyStorage.init(m_groupByKeySchema, &m_memoryPool);
+        m_spillLevel = partition.m_level;
+
+        const int tupleLength = m_inputSchema->tupleLength() + TUPLE_HEADER_SIZE;
+        SpilledTupleReader reader(partition.m_file.get(), 0, partition.m_tupleCount,
+                                  tupleLength, AGG_SPILL_BUFFER_BYTES);
+        TableTuple nextTuple(m_inputSchema);
+        char* storage;
+        while ((storage = reader.next()) != NULL) {
+            nextTuple.move(storage);
+            p_execute_tuple(nextTuple);
+        }
+        emitGroups();
+        finishSpilling();
+    }
+    m_spillLevel = 0;
 
+    // Clean up
+    AggregateExecutorBase::p_execute_finish();
+}
+
+void AggregateHashExecutor::emitGroups() {
     // If there is no aggregation, results are already inserted already
     if (m_aggTypes.size() != 0) {
         for (HashAggregateMapType::const_iterator iter = m_hash.begin(); iter != m_hash.end(); iter++) {
@@ -860,10 +926,50 @@ void AggregateHashExecutor::p_execute_finish() {
             delete aggregateRow;
         }
     }
-
-    // Clean up
     m_hash.clear();
-    AggregateExecutorBase::p_execute_finish();
+}
+
+bool AggregateHashExecutor::startSpilling() {
+    TempTableSpill* spill = m_limits != NULL ? m_limits->getSpill() : NULL;
+    if (spill == NULL || m_spillLevel >= AGG_SPILL_MAX_LEVEL ||
+            m_limits->hasRoomFor(m_memoryPool.getAllocatedMemory())) {
+        return false;
+    }
+    VOLT_DEBUG("hash aggregate: spilling new groups at level %d after %ld groups",
+               m_spillLevel, (long)m_hash.size());
+    spill->recordSpill();
+    const int tupleLength = m_inputSchema->tupleLength() + TUPLE_HEADER_SIZE;
+    for (int ii = 0; ii < AGG_SPILL_PARTITIONS; ii++) {
+        boost::shared_ptr<TempTableSpillFile> file(new TempTableSpillFile(spill));
+        m_spillFiles.push_back(file);
+        m_spillWriters.push_back(boost::shared_ptr<SpilledTupleWriter>(
+                new SpilledTupleWriter(file.get(), tupleLength, AGG_SPILL_BUFFER_BYTES)));
+    }
+    return true;
+}
+
+void AggregateHashExecutor::spillTuple(const TableTuple& nextTuple) {
+    // The group key was just computed for the lookup, partition on its hash
+    const TableTuple& groupByKeyTuple = m_nextGroupByKeyStorage;
+    size_t hash = groupByKeyTuple.hashCode();
+    size_t partition = (hash >> (m_spillLevel * AGG_SPILL_PARTITION_BITS)) & (AGG_SPILL_PARTITIONS - 1);
+    m_spillWriters[partition]->write(nextTuple.address());
+}
+
+void AggregateHashExecutor::finishSpilling() {
+    for (size_t ii = 0; ii < m_spillWriters.size(); ii++) {
+        SpilledTupleWriter& writer = *m_spillWriters[ii];
+        if (writer.tupleCount() > 0) {
+            writer.flush();
+            SpilledPartition partition;
+            partition.m_file = m_spillFiles[ii];
+            partition.m_tupleCount = writer.tupleCount();
+            partition.m_level = m_spillLevel + 1;
+            m_pendingPartitions.push_back(partition);
+        }
+    }
+    m_spillWriters.clear();
+    m_spillFiles.clear();
 }
 
 AggregateSerialExecutor::~AggregateSerialExecutor() {}
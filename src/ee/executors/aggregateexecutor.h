@@ -56,8 +56,14 @@
 #include "execution/ProgressMonitorProxy.h"
 #include "executors/executorutil.h"
 
+#include "boost/shared_ptr.hpp"
+
 namespace voltdb {
 
+class SpilledTupleWriter;
+class TempTableLimits;
+class TempTableSpillFile;
+
 /*
  * Base class for an individual aggregate that aggregates a specific
  * column for a group
@@ -267,12 +273,15 @@ typedef boost::unordered_map<TableTuple,
 /**
  * The concrete executor class for PLAN_NODE_TYPE_HASHAGGREGATE
  * in which the input does not need to be sorted and execution will hash the group by key to aggregate the tuples.
+ * When spilling is enabled and the groups outgrow the temp table memory limit, input tuples
+ * of groups not yet in memory are partitioned to disk by group key hash and aggregated one
+ * partition at a time once the groups in memory have been emitted.
  */
 class AggregateHashExecutor : public AggregateExecutorBase
 {
 public:
     AggregateHashExecutor(VoltDBEngine* engine, AbstractPlanNode* abstract_node) :
-        AggregateExecutorBase(engine, abstract_node) { }
+        AggregateExecutorBase(engine, abstract_node), m_limits(NULL), m_spillLevel(0) { }
 
     // empty destructor defined in .cpp file because of it is called virtually (not inline)
     // same reason for serial and partial
@@ -284,9 +293,31 @@ public:
     void p_execute_tuple(const TableTuple& nextTuple);
     void p_execute_finish();
 
+protected:
+    virtual bool p_init(AbstractPlanNode*, TempTableLimits*);
+
 private:
+    /// Input tuples of groups that did not fit in memory, all hashed to the same partition.
+    struct SpilledPartition {
+        boost::shared_ptr<TempTableSpillFile> m_file;
+        int64_t m_tupleCount;
+        int m_level;
+    };
+
     virtual bool p_execute(const NValueArray& params);
+    bool startSpilling();
+    void spillTuple(const TableTuple& nextTuple);
+    void finishSpilling();
+    void emitGroups();
+
     HashAggregateMapType m_hash;
+    TempTableLimits* m_limits;
+    // How many times the tuples being aggregated have been partitioned already
+    int m_spillLevel;
+    // One writer per partition while the current pass is spilling, empty otherwise
+    std::vector<boost::shared_ptr<TempTableSpillFile> > m_spillFiles;
+    std::vector<boost::shared_ptr<SpilledTupleWriter> > m_spillWriters;
+    std::vector<SpilledPartition> m_pendingPartitions;
 };
 
 /**
@@ -0,0 +1,367 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+#include "hashjoinexecutor.h"
+
+#include "common/debuglog.h"
+#include "common/tabletuple.h"
+#include "executors/aggregateexecutor.h"
+#include "executors/executorutil.h"
+#include "execution/ProgressMonitorProxy.h"
+#include "expressions/abstractexpression.h"
+#include "plannodes/hashjoinnode.h"
+#include "plannodes/limitnode.h"
+#include "storage/table.h"
+#include "storage/temptable.h"
+#include "storage/tableiterator.h"
+#include "storage/TempTableLimits.h"
+
+#include <cstring>
+
+using namespace std;
+using namespace voltdb;
+
+namespace {
+
+/**
+ * Gives back the hash table's share of the temp table limits however the join ends
+ */
+struct HashTableAllocation {
+    HashTableAllocation(TempTableLimits* limits) : m_limits(limits), m_bytes(0) { }
+
+    ~HashTableAllocation() {
+        if (m_limits != NULL && m_bytes > 0) {
+            m_limits->reduceAllocated(static_cast<int>(m_bytes));
+        }
+    }
+
+    void charge(int64_t bytes) {
+        if (m_limits != NULL && bytes > 0) {
+            // Count it before asking so the destructor returns it if the limit throws
+            m_bytes += bytes;
+            m_limits->increaseAllocated(static_cast<int>(bytes));
+        }
+    }
+
+    TempTableLimits* m_limits;
+    int64_t m_bytes;
+};
+
+}
+
+bool HashJoinExecutor::p_init(AbstractPlanNode* abstractNode,
+                              TempTableLimits* limits)
+{
+    VOLT_TRACE("init HashJoin Executor");
+    assert(limits);
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(m_abstractNode);
+    assert(node);
+
+    // Init parent first
+    if (!AbstractJoinExecutor::p_init(abstractNode, limits)) {
+        return false;
+    }
+    // The planner never hashes FULL joins, unmatched inner tuples would need a second pass
+    assert(m_joinType == JOIN_TYPE_INNER || m_joinType == JOIN_TYPE_LEFT);
+
+    m_limits = limits;
+
+    // NULL tuples for left joins
+    p_init_null_tuples(node->getInputTable(), node->getInputTable(1));
+
+    return true;
+}
+
+bool HashJoinExecutor::hashKeys(const std::vector<AbstractExpression*>& keys,
+                                const TableTuple* outer_tuple,
+                                const TableTuple* inner_tuple,
+                                size_t& hash)
+{
+    size_t seed = 0;
+    for (int i = 0; i < keys.size(); i++) {
+        NValue key = keys[i]->eval(outer_tuple, inner_tuple);
+        // NULL is never equal to anything
+        if (key.isNull()) {
+            return false;
+        }
+        key.hashCombine(seed);
+    }
+    hash = seed;
+    return true;
+}
+
+size_t HashJoinExecutor::bucketCountFor(int64_t tupleCount)
+{
+    // Power of two buckets, about one per tuple
+    size_t bucketCount = 16;
+    while (bucketCount < tupleCount) {
+        bucketCount <<= 1;
+    }
+    return bucketCount;
+}
+
+int64_t HashJoinExecutor::hashTableBytes(Table* table)
+{
+    const int64_t tupleCount = table->activeTupleCount();
+    int64_t bytes = bucketCountFor(tupleCount) * sizeof(int32_t) + tupleCount * sizeof(Entry);
+    TempTable* temp_table = dynamic_cast<TempTable*>(table);
+    if (temp_table != NULL && temp_table->hasSpilledBlocks()) {
+        bytes += tupleCount * table->getTupleLength();
+    }
+    return bytes;
+}
+
+int64_t HashJoinExecutor::buildHashTable(Table* table, bool isOuter,
+                                         AbstractExpression* filter, ProgressMonitorProxy& pmp)
+{
+    HashJoinPlanNode* node = static_cast<HashJoinPlanNode*>(m_abstractNode);
+    const std::vector<AbstractExpression*>& keys =
+        isOuter ? node->getOuterHashExpressions() : node->getInnerHashExpressions();
+
+    const size_t bucketCount = bucketCountFor(table->activeTupleCount());
+    m_buckets.assign(bucketCount, -1);
+    m_entries.reserve(static_cast<size_t>(table->activeTupleCount()));
+
+    // A spilled table's tuples are only addressable while their block is
+    // being scanned, so hash copies of them instead
+    TempTable* temp_table = dynamic_cast<TempTable*>(table);
+    const bool copyTuples = temp_table != NULL && temp_table->hasSpilledBlocks();
+    const int tupleLength = static_cast<int>(table->getTupleLength());
+    if (copyTuples) {
+        m_tupleCopies.resize(static_cast<size_t>(table->activeTupleCount()) * tupleLength);
+    }
+
+    TableTuple tuple(table->schema());
+    TableIterator iterator = table->iterator();
+    while (iterator.next(tuple)) {
+        pmp.countdownProgress();
+        const TableTuple* outer_tuple = isOuter ? &tuple : NULL;
+        const TableTuple* inner_tuple = isOuter ? NULL : &tuple;
+        if (filter != NULL && ! filter->eval(outer_tuple, inner_tuple).isTrue()) {
+            continue;
+        }
+        Entry entry;
+        if ( ! hashKeys(keys, outer_tuple, inner_tuple, entry.m_hash)) {
+            continue;
+        }
+        size_t bucket = entry.m_hash & (bucketCount - 1);
+        if (copyTuples) {
+            entry.m_tupleAddress = &m_tupleCopies[m_entries.size() * tupleLength];
+            ::memcpy(entry.m_tupleAddress, tuple.address(), tupleLength);
+        } else {
+            entry.m_tupleAddress = tuple.address();
+        }
+        entry.m_next = m_buckets[bucket];
+        m_buckets[bucket] = static_cast<int32_t>(m_entries.size());
+        m_entries.push_back(entry);
+    }
+    return m_buckets.capacity() * sizeof(int32_t) + m_entries.capacity() * sizeof(Entry) +
+        m_tupleCopies.capacity();
+}
+
+void HashJoinExecutor::clearHashTable()
+{
+    // Release the memory rather than keep it around between executions
+    std::vector<int32_t>().swap(m_buckets);
+    std::vector<Entry>().swap(m_entries);
+    std::vector<char>().swap(m_tupleCopies);
+}
+
+bool HashJoinExecutor::p_execute(const NValueArray &params) {
+    VOLT_DEBUG("executing HashJoin...");
+
+    HashJoinPlanNode* node = dynamic_cast<HashJoinPlanNode*>(m_abstractNode);
+    assert(node);
+    assert(node->getInputTableCount() == 2);
+
+    // output table must be a temp table
+    assert(m_tmpOutputTable);
+
+    Table* outer_table = node->getInputTable();
+    assert(outer_table);
+
+    Table* inner_table = node->getInputTable(1);
+    assert(inner_table);
+
+    VOLT_TRACE ("input table left:\n %s", outer_table->debug().c_str());
+    VOLT_TRACE ("input table right:\n %s", inner_table->debug().c_str());
+
+    AbstractExpression *preJoinPredicate = node->getPreJoinPredicate();
+    AbstractExpression *joinPredicate = node->getJoinPredicate();
+    AbstractExpression *wherePredicate = node->getWherePredicate();
+    const std::vector<AbstractExpression*>& outerKeys = node->getOuterHashExpressions();
+    const std::vector<AbstractExpression*>& innerKeys = node->getInnerHashExpressions();
+
+    LimitPlanNode* limit_node = dynamic_cast<LimitPlanNode*>(node->getInlinePlanNode(PLAN_NODE_TYPE_LIMIT));
+    int limit = CountingPostfilter::NO_LIMIT;
+    int offset = CountingPostfilter::NO_OFFSET;
+    if (limit_node) {
+        limit_node->getLimitAndOffsetByReference(params, limit, offset);
+    }
+
+    int outer_cols = outer_table->columnCount();
+    int inner_cols = inner_table->columnCount();
+    TableTuple outer_tuple(outer_table->schema());
+    TableTuple inner_tuple(inner_table->schema());
+    const TableTuple& null_inner_tuple = m_null_inner_tuple.tuple();
+
+    // Hash the smaller input when the planner left the choice to us
+    const bool buildOnOuter = node->mayBuildOnOuter() && m_joinType == JOIN_TYPE_INNER &&
+        outer_table->activeTupleCount() < inner_table->activeTupleCount();
+    // Without room for the hash table, join the same inputs as a nested loop
+    const bool nestLoop = m_limits != NULL &&
+        ! m_limits->hasRoomFor(hashTableBytes(buildOnOuter ? outer_table : inner_table));
+    if (nestLoop) {
+        VOLT_DEBUG("no room for the hash table, falling back to a nested loop join");
+    }
+
+    ProgressMonitorProxy pmp(m_engine->getExecutorContext(), this);
+    HashTableAllocation allocation(m_limits);
+    try {
+        //
+        // Build phase, hash all the tuples of one input
+        //
+        if (nestLoop) {
+            // nothing to build
+        } else if (buildOnOuter) {
+            // Outer tuples failing the pre-join predicate can't match any inner tuple
+            allocation.charge(buildHashTable(outer_table, true, preJoinPredicate, pmp));
+        } else {
+            allocation.charge(buildHashTable(inner_table, false, NULL, pmp));
+        }
+        const size_t bucketMask = m_buckets.size() - 1;
+
+        // Init the postfilter
+        CountingPostfilter postfilter(m_tmpOutputTable, wherePredicate, limit, offset);
+
+        TableTuple join_tuple;
+        if (m_aggExec != NULL) {
+            VOLT_TRACE("Init inline aggregate...");
+            const TupleSchema * aggInputSchema = node->getTupleSchemaPreAgg();
+            join_tuple = m_aggExec->p_execute_init(params, &pmp, aggInputSchema, m_tmpOutputTable, &postfilter);
+        } else {
+            join_tuple = m_tmpOutputTable->tempTuple();
+        }
+
+        if (buildOnOuter && ! nestLoop) {
+            //
+            // Probe phase, in inner order
+            //
+            TableIterator iterator1 = inner_table->iterator();
+            while (postfilter.isUnderLimit() && iterator1.next(inner_tuple)) {
+                pmp.countdownProgress();
+                size_t hash;
+                if ( ! hashKeys(innerKeys, NULL, &inner_tuple, hash)) {
+                    continue;
+                }
+                for (int32_t i = m_buckets[hash & bucketMask];
+                        i != -1 && postfilter.isUnderLimit();
+                        i = m_entries[i].m_next) {
+                    const Entry& entry = m_entries[i];
+                    if (entry.m_hash != hash) {
+                        continue;
+                    }
+                    outer_tuple.move(entry.m_tupleAddress);
+                    // The join predicate settles hash collisions and any non-equi conditions
+                    if ((joinPredicate == NULL || joinPredicate->eval(&outer_tuple, &inner_tuple).isTrue()) &&
+                            postfilter.eval(&outer_tuple, &inner_tuple)) {
+                        join_tuple.setNValues(0, outer_tuple, 0, outer_cols);
+                        join_tuple.setNValues(outer_cols, inner_tuple, 0, inner_cols);
+                        outputTuple(postfilter, join_tuple, pmp);
+                    }
+                }
+            }
+        } else {
+            //
+            // Probe phase, in outer order
+            //
+            TableIterator iterator0 = outer_table->iteratorDeletingAsWeGo();
+            while (postfilter.isUnderLimit() && iterator0.next(outer_tuple)) {
+                pmp.countdownProgress();
+
+                join_tuple.setNValues(0, outer_tuple, 0, outer_cols);
+
+                // did the probe find at least one match for this tuple?
+                bool outerMatch = false;
+                size_t hash;
+                // For outer joins if outer tuple fails pre-join predicate
+                // (join expression based on the outer table only)
+                // it can't match any of inner tuples
+                if (preJoinPredicate != NULL && ! preJoinPredicate->eval(&outer_tuple, NULL).isTrue()) {
+                    // no match
+                } else if (nestLoop) {
+                    TableIterator iterator1 = inner_table->iterator();
+                    while (postfilter.isUnderLimit() && iterator1.next(inner_tuple)) {
+                        pmp.countdownProgress();
+                        if (joinPredicate == NULL || joinPredicate->eval(&outer_tuple, &inner_tuple).isTrue()) {
+                            outerMatch = true;
+                            // Filter the joined tuple
+                            if (postfilter.eval(&outer_tuple, &inner_tuple)) {
+                                join_tuple.setNValues(outer_cols, inner_tuple, 0, inner_cols);
+                                outputTuple(postfilter, join_tuple, pmp);
+                            }
+                        }
+                    }
+                } else if (hashKeys(outerKeys, &outer_tuple, NULL, hash)) {
+                    for (int32_t i = m_buckets[hash & bucketMask];
+                            i != -1 && postfilter.isUnderLimit();
+                            i = m_entries[i].m_next) {
+                        const Entry& entry = m_entries[i];
+                        if (entry.m_hash != hash) {
+                            continue;
+                        }
+                        inner_tuple.move(entry.m_tupleAddress);
+                        // The join predicate settles hash collisions and any non-equi conditions
+                        if (joinPredicate == NULL || joinPredicate->eval(&outer_tuple, &inner_tuple).isTrue()) {
+                            outerMatch = true;
+                            // Filter the joined tuple
+                            if (postfilter.eval(&outer_tuple, &inner_tuple)) {
+                                join_tuple.setNValues(outer_cols, inner_tuple, 0, inner_cols);
+                                outputTuple(postfilter, join_tuple, pmp);
+                            }
+                        }
+                    }
+                }
+
+                //
+                // Left Outer Join
+                //
+                if (m_joinType == JOIN_TYPE_LEFT && !outerMatch && postfilter.isUnderLimit()) {
+                    // Still needs to pass the filter
+                    if (postfilter.eval(&outer_tuple, &null_inner_tuple)) {
+                        join_tuple.setNValues(outer_cols, null_inner_tuple, 0, inner_cols);
+                        outputTuple(postfilter, join_tuple, pmp);
+                    }
+                }
+            }
+        }
+
+        if (m_aggExec != NULL) {
+            m_aggExec->p_execute_finish();
+        }
+    }
+    catch (...) {
+        clearHashTable();
+        throw;
+    }
+    clearHashTable();
+
+    cleanupInputTempTable(inner_table);
+    cleanupInputTempTable(outer_table);
+
+    return (true);
+}
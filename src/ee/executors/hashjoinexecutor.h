@@ -0,0 +1,81 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef HASHJOINEXECUTOR_H
+#define HASHJOINEXECUTOR_H
+
+#include "common/common.h"
+#include "common/valuevector.h"
+#include "executors/abstractjoinexecutor.h"
+
+#include <vector>
+
+namespace voltdb {
+
+class AbstractExpression;
+
+/**
+ * Executes an INNER or LEFT equi-join by hashing the inner input once and
+ * probing it with every outer tuple. Output keeps the order of the outer input.
+ * An INNER join the planner marked as unordered hashes whichever input is smaller.
+ * The hash table only holds tuple addresses, its memory is charged to the
+ * fragment's TempTableLimits while the join runs. When the fragment has no room
+ * left for it the join runs as a nested loop instead.
+ */
+class HashJoinExecutor : public AbstractJoinExecutor {
+    public:
+        HashJoinExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node) :
+            AbstractJoinExecutor(engine, abstract_node), m_limits(NULL) { }
+    private:
+
+        struct Entry {
+            char* m_tupleAddress;
+            size_t m_hash;
+            // index of the next entry in the same bucket, -1 ends the chain
+            int32_t m_next;
+        };
+
+        bool p_init(AbstractPlanNode*, TempTableLimits* limits);
+        bool p_execute(const NValueArray &params);
+
+        // Hash one input, returns the bytes charged to the temp table limits.
+        // The filter, if any, drops tuples of the outer input that can't match.
+        int64_t buildHashTable(Table* table, bool isOuter,
+                               AbstractExpression* filter, ProgressMonitorProxy& pmp);
+        void clearHashTable();
+
+        // What buildHashTable will charge for this input, before it is built
+        static int64_t hashTableBytes(Table* table);
+        static size_t bucketCountFor(int64_t tupleCount);
+
+        // Combined hash of the keys, false if any of them is NULL and can't match
+        static bool hashKeys(const std::vector<AbstractExpression*>& keys,
+                             const TableTuple* outer_tuple,
+                             const TableTuple* inner_tuple,
+                             size_t& hash);
+
+        // The fragment's limits, shared with its temp tables
+        TempTableLimits* m_limits;
+        std::vector<int32_t> m_buckets;
+        std::vector<Entry> m_entries;
+        // Copies of the hashed tuples when their table was spilled to disk
+        std::vector<char> m_tupleCopies;
+};
+
+}
+
+#endif
@@ -54,6 +54,7 @@
 #include "executors/executorutil.h"
 #include "execution/ProgressMonitorProxy.h"
 #include "expressions/abstractexpression.h"
+#include "expressions/batchpredicate.h"
 #include "expressions/expressionutil.h"
 #include "indexes/tableindex.h"
 
@@ -187,8 +188,17 @@ bool IndexScanExecutor::p_execute(const NValueArray &params)
         VOLT_DEBUG("Post Expression:\n%s", post_expression->debug(true).c_str());
     }
 
+    // Filter a batch of tuples at a time when the post expression is simple
+    // enough, unless a limit would stop the scan in the middle of a batch
+    BatchPredicate* batchPredicate = NULL;
+    if (post_expression != NULL && limit_node == NULL) {
+        batchPredicate = bindBatchPredicate(post_expression, tableIndex->getTupleSchema());
+    }
+
     // Initialize the postfilter
-    CountingPostfilter postfilter(m_outputTable, post_expression, limit, offset);
+    CountingPostfilter postfilter(m_outputTable,
+                                  batchPredicate == NULL ? post_expression : NULL,
+                                  limit, offset);
 
     TableTuple temp_tuple;
     ProgressMonitorProxy pmp(m_engine->getExecutorContext(), this);
@@ -424,6 +434,7 @@ bool IndexScanExecutor::p_execute(const NValueArray &params)
         tableIndex->moveToEnd(toStartActually, indexCursor);
     }
 
+    int batched = 0;
     //
     // We have to different nextValue() methods for different lookup types
     //
@@ -458,9 +469,17 @@ bool IndexScanExecutor::p_execute(const NValueArray &params)
             break;
         }
         //
-        // Then apply our post-predicate and LIMIT/OFFSET to do further filtering
+        // Then apply our post-predicate and LIMIT/OFFSET to do further filtering,
+        // a batch of tuples at a time if we can
         //
-        if (postfilter.eval(&tuple, NULL)) {
+        if (batchPredicate != NULL) {
+            m_batch[batched++] = tuple.address();
+            if (batched == BatchPredicate::MAX_BATCH_SIZE) {
+                outputBatch(postfilter, batchPredicate, temp_tuple, batched);
+                batched = 0;
+            }
+        }
+        else if (postfilter.eval(&tuple, NULL)) {
 
             if (m_projector.numSteps() > 0) {
                 m_projector.exec(temp_tuple, tuple);
@@ -473,6 +492,10 @@ bool IndexScanExecutor::p_execute(const NValueArray &params)
         }
     }
 
+    if (batched > 0) {
+        outputBatch(postfilter, batchPredicate, temp_tuple, batched);
+    }
+
     if (m_aggExec != NULL) {
         m_aggExec->p_execute_finish();
     }
@@ -482,6 +505,41 @@ bool IndexScanExecutor::p_execute(const NValueArray &params)
     return true;
 }
 
+void IndexScanExecutor::outputBatch(CountingPostfilter& postfilter, BatchPredicate* batchPredicate,
+                                    TableTuple& temp_tuple, int count) {
+    TableTuple tuple(batchPredicate->schema());
+    char** batch = &m_batch[0];
+    count = batchPredicate->filter(batch, count);
+    for (int i = 0; i < count && postfilter.isUnderLimit(); ++i) {
+        tuple.move(batch[i]);
+        if (postfilter.eval(&tuple, NULL)) {
+            if (m_projector.numSteps() > 0) {
+                m_projector.exec(temp_tuple, tuple);
+                outputTuple(postfilter, temp_tuple);
+            }
+            else {
+                outputTuple(postfilter, tuple);
+            }
+        }
+    }
+}
+
+BatchPredicate* IndexScanExecutor::bindBatchPredicate(const AbstractExpression* predicate,
+                                                       const TupleSchema* schema) {
+    if (schema != m_batchPredicateSchema) {
+        m_batchPredicate.reset(BatchPredicate::compile(predicate, schema));
+        m_batchPredicateSchema = schema;
+        if (m_batchPredicate) {
+            m_batch.resize(BatchPredicate::MAX_BATCH_SIZE);
+        }
+    }
+    // Parameters of the wrong type fall back to the tuple at a time predicate
+    if (m_batchPredicate && m_batchPredicate->bind()) {
+        return m_batchPredicate.get();
+    }
+    return NULL;
+}
+
 void IndexScanExecutor::outputTuple(CountingPostfilter& postfilter, TableTuple& tuple) {
     if (m_aggExec != NULL) {
         m_aggExec->p_execute_tuple(tuple);
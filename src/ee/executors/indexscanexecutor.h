@@ -48,11 +48,15 @@
 
 #include "common/tabletuple.h"
 #include "executors/abstractexecutor.h"
+#include "expressions/batchpredicate.h"
 #include "executors/OptimizedProjector.hpp"
 #include "indexes/tableindex.h"
 
+#include "boost/scoped_ptr.hpp"
 #include "boost/shared_array.hpp"
 
+#include <vector>
+
 namespace voltdb {
 
 class TempTable;
@@ -79,6 +83,7 @@ public:
         , m_projector()
         , m_searchKeyBackingStore(NULL)
         , m_aggExec(NULL)
+        , m_batchPredicateSchema(NULL)
     {}
     ~IndexScanExecutor();
 
@@ -112,6 +117,9 @@ private:
                 TempTableLimits* limits);
     bool p_execute(const NValueArray &params);
     void outputTuple(CountingPostfilter& postfilter, TableTuple& tuple);
+    void outputBatch(CountingPostfilter& postfilter, BatchPredicate* batchPredicate,
+                     TableTuple& temp_tuple, int count);
+    BatchPredicate* bindBatchPredicate(const AbstractExpression* predicate, const TupleSchema* schema);
 
 
     // Data in this class is arranged roughly in the order it is read for
@@ -141,6 +149,11 @@ private:
     char* m_searchKeyBackingStore;
 
     AggregateExecutorBase* m_aggExec;
+
+    // The post expression compiled for batches of tuples of the last schema scanned, if it can be
+    boost::scoped_ptr<BatchPredicate> m_batchPredicate;
+    const TupleSchema* m_batchPredicateSchema;
+    std::vector<char*> m_batch;
 };
 
 }
@@ -55,13 +55,74 @@
 #include "storage/temptable.h"
 #include "storage/tableiterator.h"
 #include "storage/tablefactory.h"
+#include "storage/TempTableLimits.h"
+#include "storage/TempTableSpill.h"
+
+#include <boost/scoped_array.hpp>
+#include <boost/shared_ptr.hpp>
 
 #include <algorithm>
+#include <cstring>
+#include <queue>
 #include <vector>
 
 using namespace voltdb;
 using namespace std;
 
+namespace {
+
+// Largest in memory run of an external sort, and the fewest tuples one may hold
+const int64_t MAX_SORT_RUN_BYTES = 64 * 1024 * 1024;
+const int64_t MIN_SORT_RUN_TUPLES = 1024;
+// Buffer per run when writing and merging runs
+const int SORT_RUN_BUFFER_BYTES = 64 * 1024;
+
+/**
+ * Gives back the run buffer's share of the temp table limits however the sort ends
+ */
+struct SortRunAllocation {
+    SortRunAllocation(TempTableLimits* limits) : m_limits(limits), m_bytes(0) { }
+
+    ~SortRunAllocation() {
+        if (m_bytes > 0) {
+            m_limits->reduceAllocated(static_cast<int>(m_bytes));
+        }
+    }
+
+    void charge(int64_t bytes) {
+        // Count it before asking so the destructor returns it if the limit throws
+        m_bytes += bytes;
+        m_limits->increaseAllocated(static_cast<int>(bytes));
+    }
+
+    TempTableLimits* m_limits;
+    int64_t m_bytes;
+};
+
+/**
+ * Orders run indexes by the tuple at the head of each run, for a priority queue
+ * that pops the run whose head sorts first. Ties go to the earlier run.
+ */
+struct RunHeadGreater {
+    RunHeadGreater(const vector<TableTuple>& heads, const AbstractExecutor::TupleComparer& comparer)
+        : m_heads(heads), m_comparer(comparer) { }
+
+    bool operator()(size_t a, size_t b) const {
+        if (m_comparer(m_heads[b], m_heads[a])) {
+            return true;
+        }
+        if (m_comparer(m_heads[a], m_heads[b])) {
+            return false;
+        }
+        return a > b;
+    }
+
+    const vector<TableTuple>& m_heads;
+    const AbstractExecutor::TupleComparer& m_comparer;
+};
+
+}
+
 bool
 OrderByExecutor::p_init(AbstractPlanNode* abstract_node,
                         TempTableLimits* limits)
@@ -70,6 +131,7 @@ OrderByExecutor::p_init(AbstractPlanNode* abstract_node,
 
     OrderByPlanNode* node = dynamic_cast<OrderByPlanNode*>(abstract_node);
     assert(node);
+    m_limits = limits;
 
     if (!node->isInline()) {
         assert(node->getInputTableCount() == 1);
@@ -82,6 +144,8 @@ OrderByExecutor::p_init(AbstractPlanNode* abstract_node,
         node->setOutputTable(TableFactory::buildCopiedTempTable(node->getInputTable()->name(),
                                                                 node->getInputTable(),
                                                                 limits));
+        // Nothing downstream holds on to sorted tuples, so they may go to disk
+        node->getTempOutputTable()->setSpillable(true);
         // pickup an inlined limit, if one exists
         limit_node =
             dynamic_cast<LimitPlanNode*>(node->
@@ -133,7 +197,14 @@ OrderByExecutor::p_execute(const NValueArray &params)
     // or to fetch the vector of tuples from the input.  If limit < 0 we
     // need to do the loop below, though.  The only case where we can skip
     // is if limit == 0.
-    if (limit != 0) {
+    TempTable* temp_input = dynamic_cast<TempTable*>(input_table);
+    TempTableSpill* spill = m_limits != NULL ? m_limits->getSpill() : NULL;
+    if (limit != 0 && spill != NULL && temp_input != NULL && temp_input->hasSpilledBlocks()) {
+        // The input did not fit in memory, neither will an array of its tuples
+        ProgressMonitorProxy pmp(m_engine->getExecutorContext(), this);
+        externalSort(temp_input, output_table, spill, limit, offset, pmp);
+    }
+    else if (limit != 0) {
         vector<TableTuple> xs;
         ProgressMonitorProxy pmp(m_engine->getExecutorContext(), this);
         while (iterator.next(tuple))
@@ -187,5 +258,106 @@ OrderByExecutor::p_execute(const NValueArray &params)
     return true;
 }
 
+void
+OrderByExecutor::externalSort(TempTable* input_table, TempTable* output_table, TempTableSpill* spill,
+                              int limit, int offset, ProgressMonitorProxy& pmp)
+{
+    OrderByPlanNode* node = dynamic_cast<OrderByPlanNode*>(m_abstractNode);
+    assert(node);
+    AbstractExecutor::TupleComparer comparer(node->getSortExpressions(), node->getSortDirections());
+    const TupleSchema* schema = input_table->schema();
+    const int tupleLength = schema->tupleLength() + TUPLE_HEADER_SIZE;
+    if (offset < 0) {
+        offset = 0;
+    }
+    // Only the first limit + offset tuples of a run can make it to the output
+    const int64_t keep = limit < 0 ? -1 : static_cast<int64_t>(limit) + offset;
+
+    // Leave the other half of what is left for the output table
+    int64_t runBytes = (m_limits->getMemoryLimit() - m_limits->getAllocated()) / 2;
+    runBytes = std::min(runBytes, MAX_SORT_RUN_BYTES);
+    const int64_t runCapacity = std::max(runBytes / tupleLength, MIN_SORT_RUN_TUPLES);
+    VOLT_DEBUG("External sort of %ld tuples in runs of %ld",
+               (long)input_table->activeTupleCount(), (long)runCapacity);
+
+    spill->recordSpill();
+    TempTableSpillFile file(spill);
+    vector<pair<int64_t, int64_t> > runs;
+    {
+        SortRunAllocation allocation(m_limits);
+        allocation.charge(runCapacity * tupleLength);
+        boost::scoped_array<char> runStorage(new char[runCapacity * tupleLength]);
+        vector<TableTuple> run;
+        run.reserve(runCapacity);
+
+        TableIterator iterator = input_table->iterator();
+        TableTuple tuple(schema);
+        bool more = true;
+        while (more) {
+            // Fill a run, copying tuples since the blocks they live in come and go
+            run.clear();
+            while (static_cast<int64_t>(run.size()) < runCapacity && (more = iterator.next(tuple))) {
+                pmp.countdownProgress();
+                char* storage = runStorage.get() + run.size() * tupleLength;
+                ::memcpy(storage, tuple.address(), tupleLength);
+                run.push_back(TableTuple(storage, schema));
+            }
+            if (run.empty()) {
+                break;
+            }
+
+            vector<TableTuple>::iterator end = run.end();
+            if (keep >= 0 && keep < static_cast<int64_t>(run.size())) {
+                end = run.begin() + keep;
+                partial_sort(run.begin(), end, run.end(), comparer);
+            } else {
+                sort(run.begin(), run.end(), comparer);
+            }
+
+            SpilledTupleWriter writer(&file, tupleLength, SORT_RUN_BUFFER_BYTES);
+            for (vector<TableTuple>::iterator it = run.begin(); it != end; ++it) {
+                writer.write(it->address());
+            }
+            writer.flush();
+            runs.push_back(make_pair(writer.startOffset(), writer.tupleCount()));
+        }
+    }
+
+    // Merge the runs, one buffered reader each
+    vector<boost::shared_ptr<SpilledTupleReader> > readers;
+    vector<TableTuple> heads(runs.size(), TableTuple(schema));
+    RunHeadGreater greater(heads, comparer);
+    priority_queue<size_t, vector<size_t>, RunHeadGreater> queue(greater);
+    for (size_t ii = 0; ii < runs.size(); ++ii) {
+        readers.push_back(boost::shared_ptr<SpilledTupleReader>(
+                new SpilledTupleReader(&file, runs[ii].first, runs[ii].second,
+                                       tupleLength, SORT_RUN_BUFFER_BYTES)));
+        char* head = readers[ii]->next();
+        if (head != NULL) {
+            heads[ii].move(head);
+            queue.push(ii);
+        }
+    }
+
+    int tuple_ctr = 0;
+    int tuple_skipped = 0;
+    while (!queue.empty() && (limit < 0 || tuple_ctr < limit)) {
+        size_t ii = queue.top();
+        queue.pop();
+        if (tuple_skipped < offset) {
+            tuple_skipped++;
+        } else {
+            output_table->insertTempTuple(heads[ii]);
+            pmp.countdownProgress();
+            tuple_ctr++;
+        }
+        char* head = readers[ii]->next();
+        if (head != NULL) {
+            heads[ii].move(head);
+            queue.push(ii);
+        }
+    }
+}
+
 OrderByExecutor::~OrderByExecutor() {
 }
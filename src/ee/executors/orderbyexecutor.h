@@ -55,14 +55,18 @@ namespace voltdb {
     class UndoLog;
     class ReadWriteSet;
     class LimitPlanNode;
+    class ProgressMonitorProxy;
+    class TempTable;
+    class TempTableSpill;
 
     /**
-     *
+     * Sorts its input in memory, or with an external merge sort through the
+     * site's spill directory when the input itself had to be spilled to disk.
      */
     class OrderByExecutor : public AbstractExecutor {
     public:
         OrderByExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node)
-            : AbstractExecutor(engine, abstract_node), limit_node(NULL)
+            : AbstractExecutor(engine, abstract_node), limit_node(NULL), m_limits(NULL)
             { }
         ~OrderByExecutor();
 
@@ -72,7 +76,12 @@ namespace voltdb {
         bool p_execute(const NValueArray &params);
 
     private:
+        // Sort memory sized runs, write them to a spill file and merge them
+        void externalSort(TempTable* input_table, TempTable* output_table, TempTableSpill* spill,
+                          int limit, int offset, ProgressMonitorProxy& pmp);
+
         LimitPlanNode *limit_node;
+        TempTableLimits* m_limits;
     };
 
 }
@@ -51,6 +51,7 @@
 #include "execution/VoltDBEngine.h"
 #include "storage/table.h"
 #include "storage/tablefactory.h"
+#include "storage/temptable.h"
 #include "storage/tableiterator.h"
 #include "storage/tableutil.h"
 
@@ -65,6 +66,8 @@ bool ReceiveExecutor::p_init(AbstractPlanNode* abstract_node,
 
     // Create output table based on output schema from the plan
     setTempOutputTable(limits);
+    // Results from all sites can outgrow memory, let them spill to disk
+    abstract_node->getTempOutputTable()->setSpillable(true);
     return true;
 }
 
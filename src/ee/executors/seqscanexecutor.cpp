@@ -52,6 +52,7 @@
 #include "executors/executorutil.h"
 #include "execution/ProgressMonitorProxy.h"
 #include "expressions/abstractexpression.h"
+#include "expressions/batchpredicate.h"
 #include "plannodes/aggregatenode.h"
 #include "plannodes/seqscannode.h"
 #include "plannodes/projectionnode.h"
@@ -181,8 +182,24 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
         if (limit_node) {
             limit_node->getLimitAndOffsetByReference(params, limit, offset);
         }
+
+        //
+        // OPTIMIZATION: BATCH PREDICATE
+        //
+        // Filter a batch of tuples at a time when the predicate is simple
+        // enough. Only for persistent tables, whose tuples stay put while
+        // they are scanned, and without a limit, which would stop the scan
+        // in the middle of a batch that was read for nothing.
+        //
+        BatchPredicate* batchPredicate = NULL;
+        if (predicate != NULL && limit_node == NULL && ! node->isSubQuery()) {
+            batchPredicate = bindBatchPredicate(predicate, input_table->schema());
+        }
+
         // Initialize the postfilter
-        CountingPostfilter postfilter(m_tmpOutputTable, predicate, limit, offset);
+        CountingPostfilter postfilter(m_tmpOutputTable,
+                                      batchPredicate == NULL ? predicate : NULL,
+                                      limit, offset);
 
         ProgressMonitorProxy pmp(m_engine->getExecutorContext(), this);
         TableTuple temp_tuple;
@@ -198,7 +215,27 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
             temp_tuple = m_tmpOutputTable->tempTuple();
         }
 
-        while (postfilter.isUnderLimit() && iterator.next(tuple))
+        if (batchPredicate != NULL) {
+            char** batch = &m_batch[0];
+            bool more = true;
+            while (more && postfilter.isUnderLimit()) {
+                int count = 0;
+                while (count < BatchPredicate::MAX_BATCH_SIZE && (more = iterator.next(tuple))) {
+                    pmp.countdownProgress();
+                    batch[count++] = tuple.address();
+                }
+                count = batchPredicate->filter(batch, count);
+                for (int i = 0; i < count && postfilter.isUnderLimit(); ++i) {
+                    tuple.move(batch[i]);
+                    if (postfilter.eval(&tuple, NULL)) {
+                        projectAndOutputTuple(postfilter, tuple, temp_tuple, projection_node, num_of_columns);
+                        pmp.countdownProgress();
+                    }
+                }
+            }
+        }
+
+        while (batchPredicate == NULL && postfilter.isUnderLimit() && iterator.next(tuple))
         {
 #if   defined(VOLT_TRACE_ENABLED)
             int tuple_ctr = 0;
@@ -214,23 +251,7 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
             //
             if (postfilter.eval(&tuple, NULL))
             {
-                //
-                // Nested Projection
-                // Project (or replace) values from input tuple
-                //
-                if (projection_node != NULL)
-                {
-                    VOLT_TRACE("inline projection...");
-                    for (int ctr = 0; ctr < num_of_columns; ctr++) {
-                        NValue value = projection_node->getOutputColumnExpressions()[ctr]->eval(&tuple, NULL);
-                        temp_tuple.setNValue(ctr, value);
-                    }
-                    outputTuple(postfilter, temp_tuple);
-                }
-                else
-                {
-                    outputTuple(postfilter, tuple);
-                }
+                projectAndOutputTuple(postfilter, tuple, temp_tuple, projection_node, num_of_columns);
                 pmp.countdownProgress();
             }
         }
@@ -248,6 +269,43 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
     return true;
 }
 
+void SeqScanExecutor::projectAndOutputTuple(CountingPostfilter& postfilter, TableTuple& tuple,
+        TableTuple& temp_tuple, const ProjectionPlanNode* projection_node, int num_of_columns) {
+    //
+    // Nested Projection
+    // Project (or replace) values from input tuple
+    //
+    if (projection_node != NULL)
+    {
+        VOLT_TRACE("inline projection...");
+        for (int ctr = 0; ctr < num_of_columns; ctr++) {
+            NValue value = projection_node->getOutputColumnExpressions()[ctr]->eval(&tuple, NULL);
+            temp_tuple.setNValue(ctr, value);
+        }
+        outputTuple(postfilter, temp_tuple);
+    }
+    else
+    {
+        outputTuple(postfilter, tuple);
+    }
+}
+
+BatchPredicate* SeqScanExecutor::bindBatchPredicate(const AbstractExpression* predicate,
+                                                     const TupleSchema* schema) {
+    if (schema != m_batchPredicateSchema) {
+        m_batchPredicate.reset(BatchPredicate::compile(predicate, schema));
+        m_batchPredicateSchema = schema;
+        if (m_batchPredicate) {
+            m_batch.resize(BatchPredicate::MAX_BATCH_SIZE);
+        }
+    }
+    // Parameters of the wrong type fall back to the tuple at a time predicate
+    if (m_batchPredicate && m_batchPredicate->bind()) {
+        return m_batchPredicate.get();
+    }
+    return NULL;
+}
+
 void SeqScanExecutor::outputTuple(CountingPostfilter& postfilter, TableTuple& tuple) {
     if (m_aggExec != NULL) {
         m_aggExec->p_execute_tuple(tuple);
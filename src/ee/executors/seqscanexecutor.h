@@ -49,11 +49,17 @@
 #include "common/common.h"
 #include "common/valuevector.h"
 #include "executors/abstractexecutor.h"
+#include "expressions/batchpredicate.h"
 #include "execution/VoltDBEngine.h"
 
+#include "boost/scoped_ptr.hpp"
+
+#include <vector>
+
 namespace voltdb
 {
     class AggregateExecutorBase;
+    class ProjectionPlanNode;
     struct CountingPostfilter;
 
     class SeqScanExecutor : public AbstractExecutor {
@@ -61,6 +67,7 @@ namespace voltdb
         SeqScanExecutor(VoltDBEngine *engine, AbstractPlanNode* abstract_node)
             : AbstractExecutor(engine, abstract_node)
             , m_aggExec(NULL)
+            , m_batchPredicateSchema(NULL)
         {}
     protected:
         bool p_init(AbstractPlanNode* abstract_node,
@@ -70,8 +77,16 @@ namespace voltdb
     private:
 
         void outputTuple(CountingPostfilter& postfilter, TableTuple& tuple);
+        void projectAndOutputTuple(CountingPostfilter& postfilter, TableTuple& tuple, TableTuple& temp_tuple,
+                                   const ProjectionPlanNode* projection_node, int num_of_columns);
+        BatchPredicate* bindBatchPredicate(const AbstractExpression* predicate, const TupleSchema* schema);
 
         AggregateExecutorBase* m_aggExec;
+
+        // The predicate compiled for batches of tuples of the last schema scanned, if it can be
+        boost::scoped_ptr<BatchPredicate> m_batchPredicate;
+        const TupleSchema* m_batchPredicateSchema;
+        std::vector<char*> m_batch;
     };
 }
 
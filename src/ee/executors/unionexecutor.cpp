@@ -45,6 +45,7 @@
 
 #include "unionexecutor.h"
 
+#include "common/Pool.hpp"
 #include "common/tabletuple.h"
 #include "plannodes/unionnode.h"
 #include "storage/temptable.h"
@@ -54,6 +55,8 @@
 #include "boost/unordered_set.hpp"
 #include "boost/unordered_map.hpp"
 
+#include <cstring>
+
 namespace voltdb {
 
 namespace detail {
@@ -81,9 +84,25 @@ struct SetOperator {
     static void printTupleSet(const char* nonce, TupleSet &tuples);
 
 protected:
+    // An input that has spilled blocks to disk only holds a block in memory while
+    // it is being scanned, so tuples kept past the scan are copied first
+    static bool needsCopies(Table* input_table)
+    {
+        TempTable* temp_table = dynamic_cast<TempTable*>(input_table);
+        return temp_table != NULL && temp_table->hasSpilledBlocks();
+    }
+
+    TableTuple copyTuple(const TableTuple& tuple)
+    {
+        char* storage = reinterpret_cast<char*>(m_copies.allocate(tuple.tupleLength()));
+        ::memcpy(storage, tuple.address(), tuple.tupleLength());
+        return TableTuple(storage, tuple.getSchema());
+    }
+
     const std::vector<TableReference>& m_input_tablerefs;
     TempTable* const m_output_table;
     bool const m_is_all;
+    Pool m_copies;
 };
 
 struct UnionSetOperator : public SetOperator {
@@ -95,11 +114,11 @@ struct UnionSetOperator : public SetOperator {
 private:
     bool processTuples();
 
-    bool needToInsert(const TableTuple& tuple, TupleSet& tuples)
+    bool needToInsert(const TableTuple& tuple, TupleSet& tuples, bool copy)
     {
         bool result = tuples.find(tuple) == tuples.end();
         if (result) {
-            tuples.insert(tuple);
+            tuples.insert(copy ? copyTuple(tuple) : tuple);
         }
         return result;
     }
@@ -117,10 +136,11 @@ bool UnionSetOperator::processTuples()
     for (size_t ctr = 0, cnt = m_input_tablerefs.size(); ctr < cnt; ctr++) {
         Table* input_table = m_input_tablerefs[ctr].getTable();
         assert(input_table);
+        bool copy = needsCopies(input_table);
         TableIterator iterator = input_table->iterator();
         TableTuple tuple(input_table->schema());
         while (iterator.next(tuple)) {
-            if (m_is_all || needToInsert(tuple, tuples)) {
+            if (m_is_all || needToInsert(tuple, tuples, copy)) {
                 // we got tuple to insert
                 m_output_table->insertTempTuple(tuple);
             }
@@ -231,12 +251,13 @@ bool ExceptIntersectSetOperator::processTuples()
 
 void ExceptIntersectSetOperator::collectTuples(Table& input_table, TupleMap& tuple_map)
 {
+    bool copy = needsCopies(&input_table);
     TableIterator iterator = input_table.iterator();
     TableTuple tuple(input_table.schema());
     while (iterator.next(tuple)) {
         TupleMap::iterator mapIt = tuple_map.find(tuple);
         if (mapIt == tuple_map.end()) {
-            tuple_map.insert(std::make_pair(tuple, 1));
+            tuple_map.insert(std::make_pair(copy ? copyTuple(tuple) : tuple, 1));
         } else if (m_is_all) {
             ++(mapIt->second);
         }
@@ -0,0 +1,465 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "expressions/batchpredicate.h"
+
+#include "common/NValue.hpp"
+#include "common/TupleSchema.h"
+#include "common/ValuePeeker.hpp"
+#include "common/tabletuple.h"
+#include "expressions/abstractexpression.h"
+#include "expressions/expressionutil.h"
+#include "expressions/tuplevalueexpression.h"
+
+#include <algorithm>
+#include <functional>
+
+namespace voltdb {
+
+namespace {
+
+/// How a fixed width column of a type is stored, and what it is compared as
+template <typename T> struct Column;
+
+template <> struct Column<int8_t> {
+    typedef int64_t Value;
+    static bool isNull(int8_t x) { return x == INT8_NULL; }
+};
+
+template <> struct Column<int16_t> {
+    typedef int64_t Value;
+    static bool isNull(int16_t x) { return x == INT16_NULL; }
+};
+
+template <> struct Column<int32_t> {
+    typedef int64_t Value;
+    static bool isNull(int32_t x) { return x == INT32_NULL; }
+};
+
+template <> struct Column<int64_t> {
+    typedef int64_t Value;
+    static bool isNull(int64_t x) { return x == INT64_NULL; }
+};
+
+template <> struct Column<double> {
+    typedef double Value;
+    static bool isNull(double x) { return x <= DOUBLE_NULL; }
+};
+
+template <typename V> V boundValue(const BatchPredicate::Term& term);
+template <> int64_t boundValue<int64_t>(const BatchPredicate::Term& term) { return term.m_int; }
+template <> double boundValue<double>(const BatchPredicate::Term& term) { return term.m_double; }
+
+template <typename V> const std::vector<V>& boundList(const BatchPredicate::Term& term);
+template <> const std::vector<int64_t>& boundList<int64_t>(const BatchPredicate::Term& term) { return term.m_ints; }
+template <> const std::vector<double>& boundList<double>(const BatchPredicate::Term& term) { return term.m_doubles; }
+
+template <typename T>
+inline T columnAt(const char* tuple, int offset) {
+    return *reinterpret_cast<const T*>(tuple + offset);
+}
+
+/*
+ * The loops below store every address and only advance past the ones that
+ * pass. Without a branch per tuple they don't pay for mispredictions on
+ * filters that keep an unpredictable half of the rows.
+ */
+
+template <typename T, typename Compare>
+int compareColumn(char** tuples, int count, int offset, typename Column<T>::Value value, Compare cmp) {
+    int kept = 0;
+    for (int i = 0; i < count; ++i) {
+        char* tuple = tuples[i];
+        const T x = columnAt<T>(tuple, offset);
+        tuples[kept] = tuple;
+        kept += static_cast<int>(!Column<T>::isNull(x) & cmp(x, value));
+    }
+    return kept;
+}
+
+template <typename T>
+int rangeColumn(char** tuples, int count, int offset, int64_t lower, int64_t upper) {
+    int kept = 0;
+    for (int i = 0; i < count; ++i) {
+        char* tuple = tuples[i];
+        const T x = columnAt<T>(tuple, offset);
+        const int64_t value = static_cast<int64_t>(x);
+        tuples[kept] = tuple;
+        kept += static_cast<int>(!Column<T>::isNull(x) & (value >= lower) & (value <= upper));
+    }
+    return kept;
+}
+
+template <typename T>
+int inListColumn(char** tuples, int count, int offset, const std::vector<typename Column<T>::Value>& values) {
+    typedef typename Column<T>::Value Value;
+    int kept = 0;
+    for (int i = 0; i < count; ++i) {
+        char* tuple = tuples[i];
+        const T x = columnAt<T>(tuple, offset);
+        if (!Column<T>::isNull(x) &&
+                std::binary_search(values.begin(), values.end(), static_cast<Value>(x))) {
+            tuples[kept++] = tuple;
+        }
+    }
+    return kept;
+}
+
+template <typename T>
+int filterColumn(char** tuples, int count, const BatchPredicate::Term& term) {
+    typedef typename Column<T>::Value Value;
+    switch (term.m_kind) {
+    case BatchPredicate::Term::COMPARE: {
+        const Value value = boundValue<Value>(term);
+        switch (term.m_op) {
+        case EXPRESSION_TYPE_COMPARE_EQUAL:
+            return compareColumn<T>(tuples, count, term.m_offset, value, std::equal_to<Value>());
+        case EXPRESSION_TYPE_COMPARE_NOTEQUAL:
+            return compareColumn<T>(tuples, count, term.m_offset, value, std::not_equal_to<Value>());
+        case EXPRESSION_TYPE_COMPARE_LESSTHAN:
+            return compareColumn<T>(tuples, count, term.m_offset, value, std::less<Value>());
+        case EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO:
+            return compareColumn<T>(tuples, count, term.m_offset, value, std::less_equal<Value>());
+        case EXPRESSION_TYPE_COMPARE_GREATERTHAN:
+            return compareColumn<T>(tuples, count, term.m_offset, value, std::greater<Value>());
+        case EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO:
+            return compareColumn<T>(tuples, count, term.m_offset, value, std::greater_equal<Value>());
+        default:
+            assert(false);
+            return count;
+        }
+    }
+    case BatchPredicate::Term::RANGE:
+        return rangeColumn<T>(tuples, count, term.m_offset, term.m_int, term.m_upperInt);
+    case BatchPredicate::Term::IN_LIST:
+        return inListColumn<T>(tuples, count, term.m_offset, boundList<Value>(term));
+    }
+    assert(false);
+    return count;
+}
+
+bool isColumn(const AbstractExpression* expr) {
+    return expr->getExpressionType() == EXPRESSION_TYPE_VALUE_TUPLE &&
+            static_cast<const TupleValueExpression*>(expr)->getTupleIdx() == 0;
+}
+
+bool isValue(const AbstractExpression* expr) {
+    return expr->getExpressionType() == EXPRESSION_TYPE_VALUE_CONSTANT ||
+            expr->getExpressionType() == EXPRESSION_TYPE_VALUE_PARAMETER;
+}
+
+/// The comparison with its operands swapped, "5 < col" is "col > 5"
+ExpressionType reversed(ExpressionType op) {
+    switch (op) {
+    case EXPRESSION_TYPE_COMPARE_LESSTHAN:
+        return EXPRESSION_TYPE_COMPARE_GREATERTHAN;
+    case EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO:
+        return EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO;
+    case EXPRESSION_TYPE_COMPARE_GREATERTHAN:
+        return EXPRESSION_TYPE_COMPARE_LESSTHAN;
+    case EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO:
+        return EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO;
+    default:
+        return op;
+    }
+}
+
+bool isLowerBound(ExpressionType op) {
+    return op == EXPRESSION_TYPE_COMPARE_GREATERTHAN ||
+            op == EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO;
+}
+
+bool isUpperBound(ExpressionType op) {
+    return op == EXPRESSION_TYPE_COMPARE_LESSTHAN ||
+            op == EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO;
+}
+
+}
+
+BatchPredicate* BatchPredicate::compile(const AbstractExpression* predicate, const TupleSchema* schema) {
+    if (predicate == NULL) {
+        return NULL;
+    }
+    BatchPredicate* result = new BatchPredicate(schema);
+    if (!result->addTerms(predicate)) {
+        delete result;
+        return NULL;
+    }
+    result->mergeRanges();
+    return result;
+}
+
+bool BatchPredicate::addTerms(const AbstractExpression* expr) {
+    switch (expr->getExpressionType()) {
+    case EXPRESSION_TYPE_CONJUNCTION_AND:
+        return addTerms(expr->getLeft()) && addTerms(expr->getRight());
+    case EXPRESSION_TYPE_COMPARE_EQUAL:
+    case EXPRESSION_TYPE_COMPARE_NOTEQUAL:
+    case EXPRESSION_TYPE_COMPARE_LESSTHAN:
+    case EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO:
+    case EXPRESSION_TYPE_COMPARE_GREATERTHAN:
+    case EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO:
+    case EXPRESSION_TYPE_COMPARE_IN:
+        return addComparison(expr);
+    default:
+        return false;
+    }
+}
+
+bool BatchPredicate::addComparison(const AbstractExpression* expr) {
+    const ExpressionType op = expr->getExpressionType();
+    const AbstractExpression* left = expr->getLeft();
+    const AbstractExpression* right = expr->getRight();
+    if (left == NULL || right == NULL) {
+        return false;
+    }
+
+    if (op == EXPRESSION_TYPE_COMPARE_IN) {
+        if (!isColumn(left)) {
+            return false;
+        }
+        if (right->getExpressionType() == EXPRESSION_TYPE_VALUE_VECTOR) {
+            const std::vector<AbstractExpression*>& items = ExpressionUtil::vectorArguments(right);
+            for (size_t i = 0; i < items.size(); ++i) {
+                if (!isValue(items[i])) {
+                    return false;
+                }
+            }
+        }
+        else if (right->getExpressionType() != EXPRESSION_TYPE_VALUE_PARAMETER) {
+            return false;
+        }
+        return addColumnTerm(Term::IN_LIST, op, left, right);
+    }
+
+    if (isColumn(left) && isValue(right)) {
+        return addColumnTerm(Term::COMPARE, op, left, right);
+    }
+    if (isValue(left) && isColumn(right)) {
+        return addColumnTerm(Term::COMPARE, reversed(op), right, left);
+    }
+    return false;
+}
+
+bool BatchPredicate::addColumnTerm(Term::Kind kind, ExpressionType op,
+                                   const AbstractExpression* column, const AbstractExpression* value) {
+    const int columnIndex = static_cast<const TupleValueExpression*>(column)->getColumnId();
+    if (columnIndex < 0 || columnIndex >= m_schema->columnCount()) {
+        return false;
+    }
+    const TupleSchema::ColumnInfo* columnInfo = m_schema->getColumnInfo(columnIndex);
+    const ValueType columnType = columnInfo->getVoltType();
+    if (!isIntegralType(columnType) &&
+            columnType != VALUE_TYPE_TIMESTAMP && columnType != VALUE_TYPE_DOUBLE) {
+        return false;
+    }
+
+    Term term;
+    term.m_kind = kind;
+    term.m_op = op;
+    term.m_upperOp = EXPRESSION_TYPE_INVALID;
+    term.m_columnType = columnType;
+    term.m_columnIndex = columnIndex;
+    term.m_offset = static_cast<int>(columnInfo->offset) + TUPLE_HEADER_SIZE;
+    term.m_value = value;
+    term.m_upperValue = NULL;
+    term.m_none = false;
+    term.m_int = 0;
+    term.m_upperInt = 0;
+    term.m_double = 0;
+    m_terms.push_back(term);
+    return true;
+}
+
+/*
+ * Fuse a lower and an upper bound on the same integer column, as BETWEEN
+ * plans to, into one term so the column is read once per tuple.
+ */
+void BatchPredicate::mergeRanges() {
+    for (size_t i = 0; i < m_terms.size(); ++i) {
+        Term& lower = m_terms[i];
+        if (lower.m_kind != Term::COMPARE || !isLowerBound(lower.m_op) ||
+                lower.m_columnType == VALUE_TYPE_DOUBLE) {
+            continue;
+        }
+        for (size_t j = 0; j < m_terms.size(); ++j) {
+            const Term& upper = m_terms[j];
+            if (upper.m_kind == Term::COMPARE && isUpperBound(upper.m_op) &&
+                    upper.m_columnIndex == lower.m_columnIndex) {
+                lower.m_kind = Term::RANGE;
+                lower.m_upperOp = upper.m_op;
+                lower.m_upperValue = upper.m_value;
+                m_terms.erase(m_terms.begin() + j);
+                if (j < i) {
+                    --i;
+                }
+                break;
+            }
+        }
+    }
+}
+
+bool BatchPredicate::bindValue(const Term& term, const NValue& value,
+                               bool& isNull, int64_t& intValue, double& doubleValue) {
+    isNull = value.isNull();
+    if (isNull) {
+        return true;
+    }
+    const ValueType valueType = ValuePeeker::peekValueType(value);
+    if (term.m_columnType == VALUE_TYPE_DOUBLE) {
+        if (valueType == VALUE_TYPE_DOUBLE) {
+            doubleValue = ValuePeeker::peekDouble(value);
+            return true;
+        }
+        if (isIntegralType(valueType)) {
+            doubleValue = static_cast<double>(ValuePeeker::peekAsBigInt(value));
+            return true;
+        }
+        return false;
+    }
+    // Timestamps only compare with timestamps, and a fraction or a decimal
+    // doesn't compare exactly with an integer column as an integer
+    if (term.m_columnType == VALUE_TYPE_TIMESTAMP ?
+            valueType != VALUE_TYPE_TIMESTAMP : !isIntegralType(valueType)) {
+        return false;
+    }
+    intValue = ValuePeeker::peekAsBigInt(value);
+    return true;
+}
+
+bool BatchPredicate::bindRange(Term& term) {
+    bool lowerNull;
+    bool upperNull;
+    double unused;
+    if (!bindValue(term, term.m_value->eval(NULL, NULL), lowerNull, term.m_int, unused) ||
+            !bindValue(term, term.m_upperValue->eval(NULL, NULL), upperNull, term.m_upperInt, unused)) {
+        return false;
+    }
+    if (lowerNull || upperNull) {
+        term.m_none = true;
+        return true;
+    }
+    // Make both bounds inclusive
+    if (term.m_op == EXPRESSION_TYPE_COMPARE_GREATERTHAN) {
+        if (term.m_int == INT64_MAX) {
+            term.m_none = true;
+            return true;
+        }
+        ++term.m_int;
+    }
+    if (term.m_upperOp == EXPRESSION_TYPE_COMPARE_LESSTHAN) {
+        if (term.m_upperInt == INT64_MIN) {
+            term.m_none = true;
+            return true;
+        }
+        --term.m_upperInt;
+    }
+    term.m_none = term.m_int > term.m_upperInt;
+    return true;
+}
+
+bool BatchPredicate::bindInList(Term& term) {
+    const NValue list = term.m_value->eval(NULL, NULL);
+    if (ValuePeeker::peekValueType(list) != VALUE_TYPE_ARRAY) {
+        return false;
+    }
+    term.m_ints.clear();
+    term.m_doubles.clear();
+    const int length = list.arrayLength();
+    for (int i = 0; i < length; ++i) {
+        bool isNull;
+        int64_t intValue = 0;
+        double doubleValue = 0;
+        if (!bindValue(term, list.itemAtIndex(i), isNull, intValue, doubleValue)) {
+            return false;
+        }
+        // A NULL item can only make the IN unknown, never true
+        if (isNull) {
+            continue;
+        }
+        if (term.m_columnType == VALUE_TYPE_DOUBLE) {
+            term.m_doubles.push_back(doubleValue);
+        }
+        else {
+            term.m_ints.push_back(intValue);
+        }
+    }
+    std::sort(term.m_ints.begin(), term.m_ints.end());
+    term.m_ints.erase(std::unique(term.m_ints.begin(), term.m_ints.end()), term.m_ints.end());
+    std::sort(term.m_doubles.begin(), term.m_doubles.end());
+    term.m_doubles.erase(std::unique(term.m_doubles.begin(), term.m_doubles.end()), term.m_doubles.end());
+    term.m_none = term.m_ints.empty() && term.m_doubles.empty();
+    return true;
+}
+
+bool BatchPredicate::bind() {
+    for (std::vector<Term>::iterator it = m_terms.begin(); it != m_terms.end(); ++it) {
+        Term& term = *it;
+        switch (term.m_kind) {
+        case Term::COMPARE:
+            if (!bindValue(term, term.m_value->eval(NULL, NULL), term.m_none, term.m_int, term.m_double)) {
+                return false;
+            }
+            break;
+        case Term::RANGE:
+            if (!bindRange(term)) {
+                return false;
+            }
+            break;
+        case Term::IN_LIST:
+            if (!bindInList(term)) {
+                return false;
+            }
+            break;
+        }
+    }
+    return true;
+}
+
+int BatchPredicate::filter(char** tuples, int count) const {
+    assert(count <= MAX_BATCH_SIZE);
+    for (std::vector<Term>::const_iterator it = m_terms.begin(); it != m_terms.end() && count > 0; ++it) {
+        const Term& term = *it;
+        if (term.m_none) {
+            return 0;
+        }
+        switch (term.m_columnType) {
+        case VALUE_TYPE_TINYINT:
+            count = filterColumn<int8_t>(tuples, count, term);
+            break;
+        case VALUE_TYPE_SMALLINT:
+            count = filterColumn<int16_t>(tuples, count, term);
+            break;
+        case VALUE_TYPE_INTEGER:
+            count = filterColumn<int32_t>(tuples, count, term);
+            break;
+        case VALUE_TYPE_BIGINT:
+        case VALUE_TYPE_TIMESTAMP:
+            count = filterColumn<int64_t>(tuples, count, term);
+            break;
+        case VALUE_TYPE_DOUBLE:
+            count = filterColumn<double>(tuples, count, term);
+            break;
+        default:
+            assert(false);
+            break;
+        }
+    }
+    return count;
+}
+
+}
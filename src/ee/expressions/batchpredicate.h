@@ -0,0 +1,115 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef SRC_EE_EXPRESSIONS_BATCHPREDICATE_H
+#define SRC_EE_EXPRESSIONS_BATCHPREDICATE_H
+
+#include "common/types.h"
+
+#include <stdint.h>
+#include <vector>
+
+namespace voltdb {
+
+class AbstractExpression;
+class NValue;
+class TupleSchema;
+
+/**
+ * A scan predicate evaluated over a batch of tuples at a time rather than one
+ * tuple and one expression node at a time. It covers the common filter shapes:
+ * a conjunction of comparisons between a fixed width numeric column and a
+ * constant or parameter, IN lists of constants or parameters, and BETWEEN
+ * ranges. Each term is a tight loop over one column of the batch that narrows
+ * it down for the next term, without virtual calls or NValues per tuple.
+ *
+ * Like a WHERE clause, a tuple passes only if the predicate is true for it,
+ * so a NULL column or a NULL constant (unknown) filters it out.
+ */
+class BatchPredicate {
+public:
+    /// Most tuples a scan hands to filter() at once
+    static const int MAX_BATCH_SIZE = 1024;
+
+    /**
+     * Returns NULL unless every term of the predicate has a shape filter()
+     * evaluates for tuples of the schema. The predicate must outlive the result.
+     */
+    static BatchPredicate* compile(const AbstractExpression* predicate, const TupleSchema* schema);
+
+    /**
+     * Evaluate the constants and parameters of the terms for the current
+     * execution. Returns false if one of them can't be compared exactly as a
+     * number of the column's type, the predicate must then be evaluated per tuple.
+     */
+    bool bind();
+
+    /**
+     * Keep the addresses (header included) of the tuples that satisfy the
+     * predicate at the front of the array, in their original order.
+     * Returns how many there are.
+     */
+    int filter(char** tuples, int count) const;
+
+    const TupleSchema* schema() const {
+        return m_schema;
+    }
+
+    struct Term {
+        enum Kind { COMPARE, RANGE, IN_LIST };
+
+        Kind m_kind;
+        // Comparison with the column on the left, or the lower bound of a range
+        ExpressionType m_op;
+        ExpressionType m_upperOp;
+        ValueType m_columnType;
+        int m_columnIndex;
+        // Into the tuple storage, header included
+        int m_offset;
+        const AbstractExpression* m_value;
+        const AbstractExpression* m_upperValue;
+
+        // Bound for the current execution
+        bool m_none;
+        int64_t m_int;
+        int64_t m_upperInt;
+        double m_double;
+        std::vector<int64_t> m_ints;
+        std::vector<double> m_doubles;
+    };
+
+private:
+    BatchPredicate(const TupleSchema* schema) : m_schema(schema) { }
+
+    bool addTerms(const AbstractExpression* expr);
+    bool addComparison(const AbstractExpression* expr);
+    bool addColumnTerm(Term::Kind kind, ExpressionType op,
+                       const AbstractExpression* column, const AbstractExpression* value);
+    void mergeRanges();
+
+    static bool bindValue(const Term& term, const NValue& value,
+                          bool& isNull, int64_t& intValue, double& doubleValue);
+    static bool bindRange(Term& term);
+    static bool bindInList(Term& term);
+
+    const TupleSchema* m_schema;
+    std::vector<Term> m_terms;
+};
+
+}
+
+#endif
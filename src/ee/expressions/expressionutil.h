@@ -90,6 +90,9 @@ public:
 
     static AbstractExpression* vectorFactory(ValueType vt, const std::vector<AbstractExpression*>* args);
 
+    /** The element expressions of an IN LIST built by vectorFactory. */
+    static const std::vector<AbstractExpression*>& vectorArguments(const AbstractExpression* vector);
+
 };
 
 }
@@ -74,6 +74,11 @@ public:
         return spacer + "VectorExpression\n";
     }
 
+    const std::vector<AbstractExpression *>& getArgs() const
+    {
+        return m_args;
+    }
+
 private:
     const std::vector<AbstractExpression *>& m_args;
     NValue m_inList;
@@ -86,5 +91,12 @@ ExpressionUtil::vectorFactory(ValueType elementType, const std::vector<AbstractE
     return new VectorExpression(elementType, *arguments);
 }
 
+const std::vector<AbstractExpression*>&
+ExpressionUtil::vectorArguments(const AbstractExpression* vector)
+{
+    assert(vector->getExpressionType() == EXPRESSION_TYPE_VALUE_VECTOR);
+    return static_cast<const VectorExpression*>(vector)->getArgs();
+}
+
 }
 
@@ -0,0 +1,60 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef HASHJOINNODE_H
+#define HASHJOINNODE_H
+
+#include "abstractjoinnode.h"
+
+namespace voltdb {
+
+/**
+ * An equi-join that hashes the inner input on the inner hash expressions and
+ * probes it with the outer hash expressions of each outer tuple.
+ * The join predicate still contains the equality conditions the hash
+ * expressions were taken from and is evaluated for every candidate pair.
+ */
+class HashJoinPlanNode : public AbstractJoinPlanNode
+{
+public:
+    HashJoinPlanNode() : m_mayBuildOnOuter(false) { }
+    ~HashJoinPlanNode();
+    PlanNodeType getPlanNodeType() const;
+    std::string debugInfo(const std::string& spacer) const;
+
+    const std::vector<AbstractExpression*>& getOuterHashExpressions() const
+    { return m_outerHashExpressions; }
+
+    const std::vector<AbstractExpression*>& getInnerHashExpressions() const
+    { return m_innerHashExpressions; }
+
+    // An INNER join whose output order doesn't matter may hash its outer input
+    bool mayBuildOnOuter() const { return m_mayBuildOnOuter; }
+
+protected:
+    void loadFromJSONObject(PlannerDomValue obj);
+
+    // Evaluated against the outer tuple only
+    OwningExpressionVector m_outerHashExpressions;
+    // Evaluated against the inner tuple only, pairwise equal to the outer ones
+    OwningExpressionVector m_innerHashExpressions;
+    bool m_mayBuildOnOuter;
+};
+
+} // namespace voltdb
+
+#endif
@@ -22,6 +22,7 @@
 #include "common/TupleOutputStream.h"
 #include "common/FatalException.hpp"
 #include "common/StreamPredicateList.h"
+#include "common/PlannerDomValue.h"
 #include "logging/LogManager.h"
 #include <algorithm>
 #include <cassert>
@@ -29,6 +30,25 @@
 
 namespace voltdb {
 
+/**
+ * The optional "snapshotMode" of a predicate, "BASE" or "DELTA" for the
+ * snapshots of an incremental chain, empty for any other.
+ */
+static std::string snapshotMode(const std::string &predicateString) {
+    if (predicateString.empty()) {
+        return std::string();
+    }
+    PlannerDomRoot domRoot(predicateString.c_str());
+    if (domRoot.isNull()) {
+        return std::string();
+    }
+    PlannerDomValue predicateObject = domRoot.rootObject();
+    if (!predicateObject.hasKey("snapshotMode")) {
+        return std::string();
+    }
+    return predicateObject.valueForKey("snapshotMode").asStr();
+}
+
 /**
  * Constructor.
  */
@@ -44,6 +64,9 @@ CopyOnWriteContext::CopyOnWriteContext(
              m_pool(2097152, 320),
              m_tuple(table.schema()),
              m_finishedTableScan(false),
+             m_unchanged(false),
+             m_incremental(false),
+             m_allDelta(!predicateStrings.empty()),
              m_totalTuples(totalTuples),
              m_tuplesRemaining(totalTuples),
              m_blocksCompacted(0),
@@ -52,6 +75,16 @@ CopyOnWriteContext::CopyOnWriteContext(
              m_deletes(0),
              m_updates(0)
 {
+    for (std::vector<std::string>::const_iterator iter = predicateStrings.begin();
+         iter != predicateStrings.end(); ++iter) {
+        std::string mode = snapshotMode(*iter);
+        if (mode == "BASE" || mode == "DELTA") {
+            m_incremental = true;
+        }
+        if (mode != "DELTA") {
+            m_allDelta = false;
+        }
+    }
 }
 
 /**
@@ -78,6 +111,15 @@ CopyOnWriteContext::handleActivation(TableStreamType streamType)
         return ACTIVATION_FAILED;
     }
 
+    if (m_incremental) {
+        m_unchanged = m_allDelta && !m_surgeon.changedSinceSnapshot();
+        m_surgeon.clearChangedSinceSnapshot();
+        if (m_unchanged) {
+            // Nothing to copy on write, the table isn't streamed
+            return ACTIVATION_SUCCEEDED;
+        }
+    }
+
     m_surgeon.activateSnapshot();
 
     m_iterator.reset(new CopyOnWriteIterator(&getTable(), &m_surgeon));
@@ -91,6 +133,13 @@ CopyOnWriteContext::handleActivation(TableStreamType streamType)
  */
 int64_t CopyOnWriteContext::handleStreamMore(TupleOutputStreamProcessor &outputStreams,
                                              std::vector<int> &retPositions) {
+    if (m_unchanged) {
+        // The streams are never opened, so no chunk is written for the table
+        for (size_t i = 0; i < outputStreams.size(); i++) {
+            retPositions.push_back(0);
+        }
+        return 0;
+    }
     assert(m_iterator != NULL);
 
     // Don't expect to be re-called after streaming all the tuples.
@@ -289,6 +338,9 @@ int64_t CopyOnWriteContext::handleStreamMore(TupleOutputStreamProcessor &outputS
 }
 
 bool CopyOnWriteContext::notifyTupleDelete(TableTuple &tuple) {
+    if (m_unchanged) {
+        return true;
+    }
     assert(m_iterator != NULL);
 
     if (tuple.isDirty() || m_finishedTableScan) {
@@ -306,6 +358,9 @@ bool CopyOnWriteContext::notifyTupleDelete(TableTuple &tuple) {
 }
 
 void CopyOnWriteContext::markTupleDirty(TableTuple tuple, bool newTuple) {
+    if (m_unchanged) {
+        return;
+    }
     assert(m_iterator != NULL);
 
     /**
@@ -349,6 +404,9 @@ void CopyOnWriteContext::markTupleDirty(TableTuple tuple, bool newTuple) {
 }
 
 void CopyOnWriteContext::notifyBlockWasCompactedAway(TBPtr block) {
+    if (m_unchanged) {
+        return;
+    }
     assert(m_iterator != NULL);
     if (m_finishedTableScan) {
         // There was a compaction while we are iterating through the m_backedUpTuples
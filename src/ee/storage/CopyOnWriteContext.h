@@ -118,6 +118,20 @@ private:
 
     bool m_finishedTableScan;
 
+    /**
+     * True when every predicate belongs to a delta snapshot and the table
+     * hasn't changed since the previous snapshot of its incremental chain.
+     * Nothing is streamed then, the table's data is in an earlier snapshot.
+     */
+    bool m_unchanged;
+
+    /**
+     * Whether the predicates belong to incremental snapshots (base or delta),
+     * which reset the table's change tracking when activated.
+     */
+    bool m_incremental;
+    bool m_allDelta;
+
     int64_t m_totalTuples;
     int64_t m_tuplesRemaining;
     int64_t m_blocksCompacted;
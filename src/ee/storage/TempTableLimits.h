@@ -18,6 +18,8 @@
 #ifndef _EE_STORAGE_TEMPTABLELIMITS_H_
 #define _EE_STORAGE_TEMPTABLELIMITS_H_
 
+#include "storage/TempTableSpill.h"
+
 #include <stdint.h>
 
 namespace voltdb {
@@ -25,15 +27,19 @@ namespace voltdb {
 /**
  * Track the amount of memory used by temp tables in a plan fragment's executors.
  * Log or throw exceptions based on thresholds.
+ * When given the site's spill directory, executors that can work from disk
+ * check for room before allocating and spill instead of going over the limit.
  */
 class TempTableLimits {
 public:
-    TempTableLimits(int64_t memoryLimit = 1024 * 1024 * 100, int64_t logThreshold = -1)
+    TempTableLimits(int64_t memoryLimit = 1024 * 1024 * 100, int64_t logThreshold = -1,
+                    TempTableSpill* spill = NULL)
         : m_currMemoryInBytes(0)
         , m_peakMemoryInBytes(0)
         , m_logThreshold(logThreshold)
         , m_memoryLimit(memoryLimit)
         , m_logLatch(false)
+        , m_spill(spill)
     { }
 
     /**
@@ -47,6 +53,17 @@ public:
     int64_t getAllocated() const { return m_currMemoryInBytes; }
     int64_t getPeakMemoryInBytes() const { return m_peakMemoryInBytes; }
     void resetPeakMemory() { m_peakMemoryInBytes = m_currMemoryInBytes; }
+    int64_t getMemoryLimit() const { return m_memoryLimit; }
+
+    /// True if allocating this many more bytes would stay within the memory limit.
+    bool hasRoomFor(int64_t bytes) const {
+        return m_memoryLimit <= 0 || m_currMemoryInBytes + bytes <= m_memoryLimit;
+    }
+
+    /// Where to spill instead of exceeding the memory limit, NULL when spilling is off.
+    TempTableSpill* getSpill() const {
+        return m_memoryLimit > 0 && m_spill != NULL && m_spill->isEnabled() ? m_spill : NULL;
+    }
 
 private:
     /// The current amount of memory used by temp tables for this plan fragment.
@@ -63,6 +80,8 @@ private:
     /// True if we have already generated a log message for
     /// exceeding the log threshold and not yet dropped below it.
     bool m_logLatch;
+    /// The site's spill directory and counters, NULL if there is no site.
+    TempTableSpill* const m_spill;
 };
 
 } // namespace voltdb
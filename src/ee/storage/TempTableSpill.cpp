@@ -0,0 +1,151 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "TempTableSpill.h"
+
+#include "common/SerializableEEException.h"
+
+#include <algorithm>
+#include <cerrno>
+#include <cstdio>
+#include <cstring>
+#include <fcntl.h>
+#include <stdlib.h>
+#include <unistd.h>
+#include <vector>
+
+namespace voltdb {
+
+TempTableSpillFile::TempTableSpillFile(TempTableSpill* spill)
+    : m_spill(spill)
+    , m_fd(-1)
+    , m_size(0)
+{
+    std::string path = spill->directory() + "/spill.XXXXXX";
+    std::vector<char> pathTemplate(path.begin(), path.end());
+    pathTemplate.push_back('\0');
+    m_fd = ::mkstemp(&pathTemplate[0]);
+    if (m_fd < 0) {
+        throwIOError("create");
+    }
+    ::unlink(&pathTemplate[0]);
+    ::fcntl(m_fd, F_SETFD, FD_CLOEXEC);
+    m_spill->recordFile();
+}
+
+TempTableSpillFile::~TempTableSpillFile()
+{
+    if (m_fd >= 0) {
+        ::close(m_fd);
+    }
+}
+
+int64_t TempTableSpillFile::append(const char* data, int64_t length)
+{
+    const int64_t offset = m_size;
+    int64_t written = 0;
+    while (written < length) {
+        ssize_t rc = ::pwrite(m_fd, data + written, length - written, offset + written);
+        if (rc < 0) {
+            if (errno == EINTR) {
+                continue;
+            }
+            throwIOError("write");
+        }
+        written += rc;
+    }
+    m_size += length;
+    m_spill->recordWrite(length);
+    return offset;
+}
+
+void TempTableSpillFile::read(int64_t offset, char* data, int64_t length) const
+{
+    int64_t read = 0;
+    while (read < length) {
+        ssize_t rc = ::pread(m_fd, data + read, length - read, offset + read);
+        if (rc < 0) {
+            if (errno == EINTR) {
+                continue;
+            }
+            throwIOError("read");
+        }
+        if (rc == 0) {
+            errno = EIO;
+            throwIOError("read");
+        }
+        read += rc;
+    }
+    m_spill->recordRead(length);
+}
+
+void TempTableSpillFile::truncate()
+{
+    if (m_size > 0 && ::ftruncate(m_fd, 0) != 0) {
+        throwIOError("truncate");
+    }
+    m_size = 0;
+}
+
+void TempTableSpillFile::throwIOError(const char* operation) const
+{
+    throwSerializableEEException("Failed to %s temp table spill file in %s: %s",
+                                 operation, m_spill->directory().c_str(), strerror(errno));
+}
+
+SpilledTupleWriter::SpilledTupleWriter(TempTableSpillFile* file, int tupleLength, int bufferSize)
+    : m_file(file)
+    , m_tupleLength(tupleLength)
+    , m_bufferSize(std::max(bufferSize - bufferSize % tupleLength, tupleLength))
+    , m_buffer(new char[m_bufferSize])
+    , m_buffered(0)
+    , m_startOffset(file->size())
+    , m_tupleCount(0)
+{ }
+
+void SpilledTupleWriter::flush()
+{
+    if (m_buffered > 0) {
+        m_file->append(m_buffer.get(), m_buffered);
+        m_buffered = 0;
+    }
+}
+
+SpilledTupleReader::SpilledTupleReader(const TempTableSpillFile* file, int64_t offset, int64_t tupleCount,
+                                       int tupleLength, int bufferSize)
+    : m_file(file)
+    , m_tupleLength(tupleLength)
+    , m_bufferTuples(std::max(bufferSize / tupleLength, 1))
+    , m_buffer(new char[static_cast<size_t>(m_bufferTuples) * tupleLength])
+    , m_offset(offset)
+    , m_remaining(tupleCount)
+    , m_buffered(0)
+    , m_position(0)
+{ }
+
+void SpilledTupleReader::fill()
+{
+    const int64_t tuples = std::min(m_remaining, static_cast<int64_t>(m_bufferTuples));
+    const int bytes = static_cast<int>(tuples * m_tupleLength);
+    m_file->read(m_offset, m_buffer.get(), bytes);
+    m_offset += bytes;
+    m_remaining -= tuples;
+    m_buffered = bytes;
+    m_position = 0;
+}
+
+} // namespace voltdb
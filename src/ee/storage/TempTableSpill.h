@@ -0,0 +1,171 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef _EE_STORAGE_TEMPTABLESPILL_H_
+#define _EE_STORAGE_TEMPTABLESPILL_H_
+
+#include <boost/scoped_array.hpp>
+
+#include <cstring>
+#include <stdint.h>
+#include <string>
+
+namespace voltdb {
+
+/**
+ * A site's scratch directory for temp table data that does not fit in a
+ * fragment's temp table memory limit, and counters of how much went there.
+ * Owned by the engine for its lifetime, only used from the site thread.
+ * Spilling is off while there is no directory.
+ */
+class TempTableSpill {
+public:
+    TempTableSpill()
+        : m_spills(0)
+        , m_bytesWritten(0)
+        , m_bytesRead(0)
+        , m_files(0)
+    { }
+
+    const std::string& directory() const { return m_directory; }
+    void setDirectory(const std::string& directory) { m_directory = directory; }
+    bool isEnabled() const { return ! m_directory.empty(); }
+
+    /// A table or executor started moving data to disk to stay under its limit.
+    void recordSpill() { ++m_spills; }
+    void recordWrite(int64_t bytes) { m_bytesWritten += bytes; }
+    void recordRead(int64_t bytes) { m_bytesRead += bytes; }
+    void recordFile() { ++m_files; }
+
+    int64_t getSpills() const { return m_spills; }
+    int64_t getBytesWritten() const { return m_bytesWritten; }
+    int64_t getBytesRead() const { return m_bytesRead; }
+    int64_t getFiles() const { return m_files; }
+
+private:
+    std::string m_directory;
+    int64_t m_spills;
+    int64_t m_bytesWritten;
+    int64_t m_bytesRead;
+    int64_t m_files;
+};
+
+/**
+ * An anonymous scratch file in a site's spill directory. The file is unlinked as
+ * soon as it is created so nothing is left behind when it is closed, or if the
+ * process dies. Failures to create, write or read it are thrown as
+ * SerializableEEExceptions, failing the fragment.
+ */
+class TempTableSpillFile {
+public:
+    explicit TempTableSpillFile(TempTableSpill* spill);
+    ~TempTableSpillFile();
+
+    /// Append length bytes, returns the offset they were written at.
+    int64_t append(const char* data, int64_t length);
+    void read(int64_t offset, char* data, int64_t length) const;
+
+    int64_t size() const { return m_size; }
+    /// Drop the contents, keeping the file for reuse.
+    void truncate();
+
+private:
+    // no copies, no assignment
+    TempTableSpillFile(TempTableSpillFile const&);
+    TempTableSpillFile operator=(TempTableSpillFile const&);
+
+    void throwIOError(const char* operation) const;
+
+    TempTableSpill* const m_spill;
+    int m_fd;
+    int64_t m_size;
+};
+
+/**
+ * Appends fixed length tuples to a spill file through a buffer, so spilling a
+ * stream of tuples costs a system call per buffer instead of per tuple.
+ */
+class SpilledTupleWriter {
+public:
+    SpilledTupleWriter(TempTableSpillFile* file, int tupleLength, int bufferSize);
+
+    void write(const char* tuple) {
+        if (m_buffered + m_tupleLength > m_bufferSize) {
+            flush();
+        }
+        ::memcpy(m_buffer.get() + m_buffered, tuple, m_tupleLength);
+        m_buffered += m_tupleLength;
+        ++m_tupleCount;
+    }
+
+    /// Write out what is buffered so everything written so far can be read back.
+    void flush();
+
+    /// Offset of the first tuple written.
+    int64_t startOffset() const { return m_startOffset; }
+    int64_t tupleCount() const { return m_tupleCount; }
+
+private:
+    TempTableSpillFile* const m_file;
+    const int m_tupleLength;
+    const int m_bufferSize;
+    boost::scoped_array<char> m_buffer;
+    int m_buffered;
+    int64_t m_startOffset;
+    int64_t m_tupleCount;
+};
+
+/**
+ * Reads back a run of fixed length tuples from a spill file through a buffer.
+ */
+class SpilledTupleReader {
+public:
+    SpilledTupleReader(const TempTableSpillFile* file, int64_t offset, int64_t tupleCount,
+                       int tupleLength, int bufferSize);
+
+    /**
+     * Returns the address of the next tuple, valid until the following call,
+     * or NULL once the run is exhausted.
+     */
+    char* next() {
+        if (m_position == m_buffered) {
+            if (m_remaining == 0) {
+                return NULL;
+            }
+            fill();
+        }
+        char* tuple = m_buffer.get() + m_position;
+        m_position += m_tupleLength;
+        return tuple;
+    }
+
+private:
+    void fill();
+
+    const TempTableSpillFile* const m_file;
+    const int m_tupleLength;
+    const int m_bufferTuples;
+    boost::scoped_array<char> m_buffer;
+    int64_t m_offset;
+    int64_t m_remaining;
+    int m_buffered;
+    int m_position;
+};
+
+} // namespace voltdb
+
+#endif // _EE_STORAGE_TEMPTABLESPILL_H_
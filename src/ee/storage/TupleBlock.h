@@ -214,6 +214,12 @@ public:
         m_freeList.clear();
     }
 
+    /// Mark every tuple slot used, for a full block read back from disk
+    inline void markFull() {
+        m_activeTuples = m_tuplesPerBlock;
+        m_nextFreeTuple = m_tuplesPerBlock;
+    }
+
     inline uint32_t unusedTupleBoundry() {
         return m_nextFreeTuple;
     }
@@ -134,7 +134,8 @@ PersistentTable::PersistentTable(int partitionColumn, char const* signature, boo
     m_pkeyIndex(NULL),
     m_mvHandler(NULL),
     m_deltaTable(NULL),
-    m_deltaTableActive(false)
+    m_deltaTableActive(false),
+    m_changedSinceSnapshot(true)
 {
     // this happens here because m_data might not be initialized above
     m_iter.reset(m_data.begin());
@@ -652,6 +653,10 @@ void PersistentTable::swapTable(PersistentTable* otherTable,
 }
 
 void PersistentTable::swapTableState(PersistentTable* otherTable) {
+    // Each name now has the other table's content
+    m_changedSinceSnapshot = true;
+    otherTable->m_changedSinceSnapshot = true;
+
     VoltDBEngine* engine = ExecutorContext::getEngine();
     auto tcd1 = engine->getTableDelegate(m_name);
     assert(tcd1->getTable() == this);
@@ -782,6 +787,7 @@ void PersistentTable::insertPersistentTuple(TableTuple& source, bool fallible, b
 
 void PersistentTable::insertTupleCommon(TableTuple& source, TableTuple& target,
                                         bool fallible, bool shouldDRStream) {
+    m_changedSinceSnapshot = true;
     if (fallible) {
         // not null checks at first
         FAIL_IF(!checkNulls(target)) {
@@ -875,6 +881,7 @@ void PersistentTable::insertTupleCommon(TableTuple& source, TableTuple& target,
  * strings or create an UndoAction or update a materialized view.
  */
 void PersistentTable::insertTupleForUndo(char* tuple) {
+    m_changedSinceSnapshot = true;
     TableTuple target(m_schema);
     target.move(tuple);
     target.setPendingDeleteOnUndoReleaseFalse();
@@ -909,6 +916,7 @@ void PersistentTable::updateTupleWithSpecificIndexes(TableTuple& targetTupleToUp
                                                      std::vector<TableIndex*> const& indexesToUpdate,
                                                      bool fallible,
                                                      bool updateDRTimestamp) {
+    m_changedSinceSnapshot = true;
     UndoQuantum* uq = NULL;
     char* oldTupleData = NULL;
     int tupleLength = targetTupleToUpdate.tupleLength();
@@ -1100,6 +1108,7 @@ void PersistentTable::updateTupleWithSpecificIndexes(TableTuple& targetTupleToUp
 void PersistentTable::updateTupleForUndo(char* tupleWithUnwantedValues,
                                          char* sourceTupleDataWithNewValues,
                                          bool revertIndexes) {
+    m_changedSinceSnapshot = true;
     TableTuple matchable(m_schema);
     // Get the address of the tuple in the table from one of the copies on hand.
     // Any TableScan OR a primary key lookup on an already updated index will find the tuple
@@ -1159,6 +1168,8 @@ void PersistentTable::deleteTuple(TableTuple& target, bool fallible) {
     // The tempTuple is forever!
     assert(&target != &m_tempTuple);
 
+    m_changedSinceSnapshot = true;
+
     // Write to the DR stream before doing anything else to ensure nothing will
     // be left forgotten in case this throws.
     ExecutorContext* ec = ExecutorContext::getExecutorContext();
@@ -1288,6 +1299,7 @@ void PersistentTable::deleteTupleForSchemaChange(TableTuple& target) {
  *     can be used directly.
  */
 void PersistentTable::deleteTupleForUndo(char* tupleData, bool skipLookup) {
+    m_changedSinceSnapshot = true;
     TableTuple matchable(tupleData, m_schema);
     TableTuple target(tupleData, m_schema);
     //* enable for debug */ std::cout << "DEBUG: undoing "
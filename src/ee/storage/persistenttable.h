@@ -117,6 +117,8 @@ public:
     bool blockCountConsistent() const;
     void snapshotFinishedScanningBlock(TBPtr finishedBlock, TBPtr nextBlock);
     uint32_t getTupleCount() const;
+    bool changedSinceSnapshot() const;
+    void clearChangedSinceSnapshot();
 
     // Elastic index methods. Used by ElasticContext.
     void clearIndex();
@@ -788,6 +790,11 @@ private:
     PersistentTable* m_deltaTable;
 
     bool m_deltaTableActive;
+
+    // Set by any change to the content, cleared when an incremental snapshot
+    // chain (see CopyOnWriteContext) starts streaming the table.
+    // Starts out set, a new table has no earlier snapshot to refer to.
+    bool m_changedSinceSnapshot;
 };
 
 inline PersistentTableSurgeon::PersistentTableSurgeon(PersistentTable& table) :
@@ -845,6 +852,14 @@ inline void PersistentTableSurgeon::snapshotFinishedScanningBlock(TBPtr finished
     m_table.snapshotFinishedScanningBlock(finishedBlock, nextBlock);
 }
 
+inline bool PersistentTableSurgeon::changedSinceSnapshot() const {
+    return m_table.m_changedSinceSnapshot;
+}
+
+inline void PersistentTableSurgeon::clearChangedSinceSnapshot() {
+    m_table.m_changedSinceSnapshot = false;
+}
+
 inline bool PersistentTableSurgeon::hasIndex() const {
     return (m_index != NULL);
 }
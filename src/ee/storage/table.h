@@ -305,6 +305,11 @@ protected:
         throw SerializableEEException(VOLT_EE_EXCEPTION_TYPE_EEEXCEPTION,
                                      "May not use freeLastScanedBlock with streamed tables or persistent tables.");
     }
+    // Read back a block that was spilled to disk, for an iterator to scan
+    virtual TBPtr loadSpilledBlock(std::vector<TBPtr>::iterator blockIterator) {
+        throw SerializableEEException(VOLT_EE_EXCEPTION_TYPE_EEEXCEPTION,
+                                     "May not use loadSpilledBlock with streamed tables or persistent tables.");
+    }
 
     // Return tuple blocks addresses
     virtual std::vector<uint64_t> getBlockAddresses() const = 0;
@@ -276,6 +276,10 @@ inline bool TableIterator::tempNext(TableTuple &out) {
             }
 
             m_currentBlock = *m_tempBlockIterator;
+            if (m_currentBlock == NULL) {
+                // Spilled to disk, this iterator holds the block while it scans it
+                m_currentBlock = m_table->loadSpilledBlock(m_tempBlockIterator);
+            }
             m_dataPtr = m_currentBlock->address();
             m_blockOffset = 0;
             m_tempBlockIterator++;
@@ -45,6 +45,7 @@
 
 #include "temptable.h"
 #include "common/debuglog.h"
+#include "common/SerializableEEException.h"
 
 #define TABLE_BLOCKSIZE 131072
 
@@ -53,7 +54,9 @@ namespace voltdb {
 TempTable::TempTable()
   : Table(TABLE_BLOCKSIZE),
     m_iter(this),
-    m_limits(NULL)
+    m_limits(NULL),
+    m_spillable(false),
+    m_spilledBlockCount(0)
 {
     // this happens here because m_data might not be initialized above
     m_iter.reset(m_data.begin());
@@ -97,9 +100,49 @@ std::vector<uint64_t> TempTable::getBlockAddresses() const
     std::vector<uint64_t> blockAddresses;
     blockAddresses.reserve(m_data.size());
     for (std::vector<TBPtr>::const_iterator iter = m_data.begin(); iter != m_data.end(); ++iter) {
-        blockAddresses.push_back((uint64_t) (*iter)->address());
+        if (*iter != NULL) {
+            blockAddresses.push_back((uint64_t) (*iter)->address());
+        }
     }
     return blockAddresses;
 }
 
+void TempTable::spillBlocks(TempTableSpill* spill)
+{
+    if (!m_spillFile) {
+        m_spillFile.reset(new TempTableSpillFile(spill));
+    }
+    spill->recordSpill();
+    m_spillOffsets.resize(m_data.size(), -1);
+    const int blockBytes = m_tupleLength * m_tuplesPerBlock;
+    // Keep the first block like deleteAllTempTuples and freeLastScanedBlock do,
+    // all the others are full since tuples are only appended
+    for (size_t i = 1; i < m_data.size(); ++i) {
+        if (m_data[i] == NULL) {
+            continue;
+        }
+        assert(!m_data[i]->hasFreeTuples());
+        m_spillOffsets[i] = m_spillFile->append(m_data[i]->address(), blockBytes);
+        m_data[i] = NULL;
+        ++m_spilledBlockCount;
+        if (m_limits) {
+            m_limits->reduceAllocated(m_tableAllocationSize);
+        }
+    }
+}
+
+TBPtr TempTable::loadSpilledBlock(std::vector<TBPtr>::iterator blockIterator)
+{
+    const size_t index = blockIterator - m_data.begin();
+    if (index >= m_spillOffsets.size() || m_spillOffsets[index] < 0) {
+        throwSerializableEEException("Temp table %s has no spilled block %d",
+                                     name().c_str(), static_cast<int>(index));
+    }
+    // Not charged to the limits, there is at most one of these per open iterator
+    TBPtr block(new TupleBlock(this, TBBucketPtr()));
+    m_spillFile->read(m_spillOffsets[index], block->address(), m_tupleLength * m_tuplesPerBlock);
+    block->markFull();
+    return block;
+}
+
 }
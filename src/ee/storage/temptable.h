@@ -51,8 +51,11 @@
 #include "common/ThreadLocalPool.h"
 #include "storage/tableiterator.h"
 #include "storage/TempTableLimits.h"
+#include "storage/TempTableSpill.h"
 #include "storage/TupleBlock.h"
 
+#include <boost/scoped_ptr.hpp>
+
 namespace voltdb {
 
 class TableColumn;
@@ -67,6 +70,11 @@ class TableStats;
  * in TempTable to make it faster, use deleteAllTuples instead.  As
  * there is no deleteTuple, there is no freelist; TempTable does a
  * efficient thing for iterating and deleteAllTuples.
+ *
+ * A spillable TempTable writes its full blocks to the site's spill
+ * directory rather than go over its fragment's memory limit. Iterators
+ * read spilled blocks back one at a time, so a tuple's address is only
+ * good until its iterator moves to the next block.
  */
 class TempTable : public Table {
     friend class TableFactory;
@@ -127,6 +135,13 @@ class TempTable : public Table {
 
     int64_t tempTableTupleCount() const { return m_tupleCount; }
 
+    /**
+     * Allow spilling when the limits have a spill directory. Only for tables
+     * whose readers don't hold on to tuple addresses across blocks.
+     */
+    void setSpillable(bool spillable) { m_spillable = spillable; }
+    bool hasSpilledBlocks() const { return m_spilledBlockCount > 0; }
+
     // ------------------------------------------------------------------
     // INDEXES
     // ------------------------------------------------------------------
@@ -162,12 +177,22 @@ class TempTable : public Table {
 
     std::vector<uint64_t> getBlockAddresses() const;
 
+    TBPtr loadSpilledBlock(std::vector<TBPtr>::iterator blockIterator);
+
   private:
+    void spillBlocks(TempTableSpill* spill);
+
     // pointers to chunks of data. Specific to table impl. Don't leak this type.
     std::vector<TBPtr> m_data;
 
     // ptr to global integer tracking temp table memory allocated per frag
     TempTableLimits* m_limits;
+
+    bool m_spillable;
+    int m_spilledBlockCount;
+    // file offset of each spilled block by its index in m_data, -1 if in memory
+    std::vector<int64_t> m_spillOffsets;
+    boost::scoped_ptr<TempTableSpillFile> m_spillFile;
 };
 
 inline void TempTable::insertTempTupleDeepCopy(const TableTuple &source, Pool *pool) {
@@ -212,6 +237,11 @@ inline void TempTable::deleteAllTempTuples() {
     }
 
     m_tupleCount = 0;
+    if (m_spilledBlockCount > 0) {
+        m_spilledBlockCount = 0;
+        m_spillOffsets.clear();
+        m_spillFile->truncate();
+    }
     int remaining = m_data.size();
     for (; remaining > 1; --remaining) {
         TBPtr blockPtr = m_data.back();
@@ -230,6 +260,13 @@ inline void TempTable::deleteAllTempTuples() {
 }
 
 inline TBPtr TempTable::allocateNextBlock() {
+    if (m_spillable && m_limits && !m_limits->hasRoomFor(m_tableAllocationSize)) {
+        TempTableSpill* spill = m_limits->getSpill();
+        if (spill) {
+            spillBlocks(spill);
+        }
+    }
+
     TBPtr block(new TupleBlock(this, TBBucketPtr()));
     m_data.push_back(block);
 
@@ -261,7 +298,8 @@ inline void TempTable::freeLastScanedBlock(std::vector<TBPtr>::iterator nextBloc
     if (m_data.begin() != nextBlockIterator) {
         nextBlockIterator--;
         // somehow we preserve the first block
-        if (m_data.begin() != nextBlockIterator) {
+        // spilled blocks were already given back to the limits
+        if (m_data.begin() != nextBlockIterator && *nextBlockIterator != NULL) {
             *nextBlockIterator = NULL;
             if (m_limits) {
                 m_limits->reduceAllocated(m_tableAllocationSize);
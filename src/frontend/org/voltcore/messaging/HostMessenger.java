@@ -132,6 +132,7 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
         private static final String COORDINATOR_IP = "coordinatorip";
         private static final String GROUP = "group";
         private static final String LOCAL_SITES_COUNT = "localSitesCount";
+        private static final String NETWORK_BUSY_POLL = "networkbusypoll";
 
         public InetSocketAddress coordinatorIp;
         public String zkInterface = "127.0.0.1:7181";
@@ -145,6 +146,8 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
         public JoinAcceptor acceptor = null;
         public String group = AbstractTopology.PLACEMENT_GROUP_DEFAULT;
         public int localSitesCount;
+        // Microseconds the network threads busy poll before blocking, 0 to always block
+        public int networkBusyPollMicros = 0;
 
         public Config(String coordIp, int coordPort) {
             if (coordIp == null || coordIp.length() == 0) {
@@ -232,6 +235,7 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
                 js.keySymbolValuePair(NETWORK_THREADS, networkThreads);
                 js.key(ACCEPTOR).value(acceptor);
                 js.keySymbolValuePair(LOCAL_SITES_COUNT, localSitesCount);
+                js.keySymbolValuePair(NETWORK_BUSY_POLL, networkBusyPollMicros);
                 js.endObject();
 
                 return js.toString();
@@ -365,7 +369,8 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
     public HostMessenger(Config config, HostWatcher hostWatcher) {
         m_config = config;
         m_hostWatcher = hostWatcher;
-        m_network = new VoltNetworkPool(m_config.networkThreads, 0, m_config.coreBindIds, "Server");
+        m_network = new VoltNetworkPool(m_config.networkThreads, 0, m_config.coreBindIds, "Server",
+                TimeUnit.MICROSECONDS.toNanos(m_config.networkBusyPollMicros));
         m_acceptor = config.acceptor;
         m_joiner = new SocketJoiner(
                 m_config.internalInterface,
@@ -47,6 +47,15 @@ public interface InputHandler {
      */
     void handleMessage(ByteBuffer message, Connection c) throws IOException;
 
+    /**
+     * Notify the input handler that every complete message from the last read
+     * has been passed to handleMessage, so work collected across those messages
+     * can be sent on.
+     *
+     * @param c connection
+     */
+    public void readComplete(Connection c);
+
     /**
      * Notify the input handler that the Connection will start receiving work
      * soon (Channel is registering with Selector)
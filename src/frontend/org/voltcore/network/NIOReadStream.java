@@ -74,6 +74,96 @@ public class NIOReadStream {
         return output;
     }
 
+    /**
+     * Read buffer shared between the stream and the message sliced out of it, returned
+     * to the pool when both let go. Slices are released on the network thread like
+     * everything else in the stream, so the count isn't atomic.
+     */
+    private static final class SharedContainer extends BBContainer {
+        private final BBContainer m_pooled;
+        private int m_refs = 1;
+        // View handed out for slices, reused for every message in the buffer
+        private ByteBuffer m_view;
+
+        SharedContainer(BBContainer pooled) {
+            super(pooled.b());
+            m_pooled = pooled;
+        }
+
+        @Override
+        public void discard() {
+            assert(m_refs > 0);
+            if (--m_refs == 0) {
+                checkDoubleFree();
+                m_pooled.discard();
+            }
+        }
+    }
+
+    /**
+     * Copy a whole message out of the read buffers into a heap array, counted as
+     * message bytes allocated on the heap.
+     */
+    void getMessageBytes(byte[] output) {
+        getBytes(output);
+        m_heapMessageBytes += output.length;
+    }
+
+    /**
+     * Consume the next length bytes without copying them if they are contiguous in the
+     * first read buffer. The returned view is positioned at the bytes and keeps the read
+     * buffer out of the pool until releaseSlice() is called, which must happen on the
+     * network thread before the next slice is taken. Returns null, consuming nothing, if
+     * the bytes span read buffers.
+     */
+    ByteBuffer getSlice(int length) {
+        assert(m_slicedContainer == null);
+        if (m_totalAvailable < length) {
+            throw new IllegalStateException("Requested " + length + " bytes; only have "
+                    + m_totalAvailable + " bytes; call tryRead() first");
+        }
+        SharedContainer firstC = m_readBBContainers.peekFirst();
+        if (firstC == null) {
+            // Steal the write buffer
+            m_poolBBContainer.b().flip();
+            m_readBBContainers.add(m_poolBBContainer);
+            firstC = m_poolBBContainer;
+            m_poolBBContainer = null;
+        }
+        final ByteBuffer first = firstC.b();
+        if (first.remaining() < length) {
+            return null;
+        }
+
+        if (firstC.m_view == null) {
+            firstC.m_view = first.duplicate();
+        }
+        final ByteBuffer view = firstC.m_view;
+        view.limit(first.position() + length);
+        view.position(first.position());
+        first.position(view.limit());
+        m_totalAvailable -= length;
+        m_pooledMessageBytes += length;
+        firstC.m_refs++;
+        m_slicedContainer = firstC;
+
+        if (first.remaining() == 0) {
+            m_readBBContainers.poll();
+            firstC.discard();
+        }
+        return view;
+    }
+
+    /**
+     * Let go of the read buffer behind the last slice
+     */
+    void releaseSlice() {
+        if (m_slicedContainer != null) {
+            m_slicedContainer.discard();
+            m_slicedContainer = null;
+        }
+    }
+
     /**
      * Move all bytes in current read buffers to output array, free read buffers
      * back to thread local memory pool.
@@ -87,7 +177,7 @@ public class NIOReadStream {
 
         int bytesCopied = 0;
         while (bytesCopied < output.length) {
-            BBContainer firstC = m_readBBContainers.peekFirst();
+            SharedContainer firstC = m_readBBContainers.peekFirst();
             if (firstC == null) {
                 // Steal the write buffer
                 m_poolBBContainer.b().flip();
@@ -128,7 +218,7 @@ public class NIOReadStream {
             while (bytesRead < maxBytes && lastRead > 0) {
                 ByteBuffer poolBuffer = null;
                 if (m_poolBBContainer == null) {
-                    m_poolBBContainer = pool.acquire();
+                    m_poolBBContainer = new SharedContainer(pool.acquire());
                     poolBuffer = m_poolBBContainer.b();
                     poolBuffer.clear();
                 } else {
@@ -172,6 +262,7 @@ public class NIOReadStream {
     }
 
     void shutdown() {
+        releaseSlice();
         for (BBContainer c : m_readBBContainers) {
             c.discard();
         }
@@ -182,11 +273,44 @@ public class NIOReadStream {
         m_poolBBContainer = null;
     }
 
-    private final ArrayDeque<BBContainer> m_readBBContainers = new ArrayDeque<BBContainer>();
-    private BBContainer m_poolBBContainer = null;
+    private final ArrayDeque<SharedContainer> m_readBBContainers = new ArrayDeque<SharedContainer>();
+    private SharedContainer m_poolBBContainer = null;
+    private SharedContainer m_slicedContainer = null;
     private int m_totalAvailable = 0;
     private long m_bytesRead = 0;
     private long m_lastBytesRead = 0;
+    private long m_heapMessageBytes = 0;
+    private long m_lastHeapMessageBytes = 0;
+    private long m_pooledMessageBytes = 0;
+    private long m_lastPooledMessageBytes = 0;
+
+    /**
+     * @return message bytes copied into newly allocated heap buffers
+     */
+    long getHeapMessageBytes(boolean interval) {
+        if (interval) {
+            final long heapMessageBytes = m_heapMessageBytes;
+            final long heapMessageBytesThisTime = heapMessageBytes - m_lastHeapMessageBytes;
+            m_lastHeapMessageBytes = heapMessageBytes;
+            return heapMessageBytesThisTime;
+        } else {
+            return m_heapMessageBytes;
+        }
+    }
+
+    /**
+     * @return message bytes handed out as views of pooled read buffers
+     */
+    long getPooledMessageBytes(boolean interval) {
+        if (interval) {
+            final long pooledMessageBytes = m_pooledMessageBytes;
+            final long pooledMessageBytesThisTime = pooledMessageBytes - m_lastPooledMessageBytes;
+            m_lastPooledMessageBytes = pooledMessageBytes;
+            return pooledMessageBytesThisTime;
+        } else {
+            return m_pooledMessageBytes;
+        }
+    }
 
     long getBytesRead(boolean interval) {
         if (interval) {
@@ -205,6 +205,10 @@ public class NIOWriteStream extends NIOWriteStreamBase implements WriteStream {
             @Override
             public void run() {
                 synchronized (NIOWriteStream.this) {
+                    if (m_isShutdown) {
+                        ds.cancel();
+                        return;
+                    }
                     updateLastPendingWriteTimeAndQueueBackpressure();
                     m_queuedWrites.offer(ds);
                     m_port.setInterests( SelectionKey.OP_WRITE, 0);
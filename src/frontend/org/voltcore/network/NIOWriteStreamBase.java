@@ -21,12 +21,15 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.GatheringByteChannel;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
+import org.voltcore.utils.GatheringDeferredSerialization;
 import org.voltcore.utils.RateLimitedLogger;
 
 /**
@@ -38,6 +41,12 @@ import org.voltcore.utils.RateLimitedLogger;
 public abstract class NIOWriteStreamBase {
     private static final VoltLogger networkLog = new VoltLogger("NETWORK");
 
+    /*
+     * Heap buffers written in place are handed to the socket in pieces of at most this
+     * many bytes, the JDK copies each piece to a temporary direct buffer of its size.
+     */
+    private static final int HEAP_WRITE_CHUNK_SIZE = 1024 * 64;
+
     protected boolean m_isShutdown = false;
 
     protected BBContainer m_currentWriteBuffer = null;
@@ -127,6 +136,13 @@ public abstract class NIOWriteStreamBase {
                 bytesQueued += slice.remaining();
                 outbuf.position(outbuf.limit());
                 outbuf.limit(oldLimit);
+            } else if (ds instanceof GatheringDeferredSerialization) {
+                // Don't leave an empty network buffer ahead of the buffers written in place
+                if (outbuf.position() == 0) {
+                    m_queuedBuffers.pollLast();
+                    outCont.discard();
+                }
+                bytesQueued += queueGatheredWrites((GatheringDeferredSerialization)ds, serializedSize);
             } else {
                 // Slow path serialize to heap, and then put in buffers
                 ByteBuffer buf = ByteBuffer.allocate(serializedSize);
@@ -157,6 +173,48 @@ public abstract class NIOWriteStreamBase {
         return processedWrites;
     }
 
+    /**
+     * Queue the buffers a message is already serialized in to be written where they are.
+     * Queued buffers are flipped before they are written, so each one is queued as a view
+     * positioned at its end. Discarding the view of the last piece of a buffer discards it.
+     */
+    private int queueGatheredWrites(GatheringDeferredSerialization ds, int serializedSize) throws IOException {
+        final List<BBContainer> buffers = new ArrayList<BBContainer>();
+        ds.serialize(buffers);
+        int bytesQueued = 0;
+        for (final BBContainer cont : buffers) {
+            final ByteBuffer buf = cont.b();
+            if (!buf.hasRemaining()) {
+                cont.discard();
+                continue;
+            }
+            bytesQueued += buf.remaining();
+            final int chunkSize = buf.isDirect() ? buf.remaining() : HEAP_WRITE_CHUNK_SIZE;
+            do {
+                final int oldLimit = buf.limit();
+                buf.limit(Math.min(oldLimit, buf.position() + chunkSize));
+                final ByteBuffer view = buf.slice();
+                buf.position(buf.limit());
+                buf.limit(oldLimit);
+                view.position(view.limit());
+                final boolean last = !buf.hasRemaining();
+                m_queuedBuffers.offer(new BBContainer(view) {
+                    @Override
+                    public void discard() {
+                        checkDoubleFree();
+                        if (last) {
+                            cont.discard();
+                        }
+                    }
+                });
+            } while (buf.hasRemaining());
+        }
+        if (bytesQueued != serializedSize) {
+            reportSloppySerialization(ds);
+        }
+        return bytesQueued;
+    }
+
     private static final boolean ASSERT_ON;
     static {
         boolean assertOn = false;
@@ -170,16 +228,20 @@ public abstract class NIOWriteStreamBase {
      */
     private void checkSloppySerialization(ByteBuffer buf, DeferredSerialization ds) {
         if (buf.limit() != buf.capacity()) {
-            if (ASSERT_ON) {
-                networkLog.fatal("Sloppy serialization size for message class " + ds);
-                System.exit(-1);
-            }
-            RateLimitedLogger.tryLogForMessage(
-                    System.currentTimeMillis(),
-                    1, TimeUnit.HOURS,
-                    networkLog,
-                    Level.WARN, "Sloppy serialization size for message class %s", ds);
+            reportSloppySerialization(ds);
+        }
+    }
+
+    private void reportSloppySerialization(DeferredSerialization ds) {
+        if (ASSERT_ON) {
+            networkLog.fatal("Sloppy serialization size for message class " + ds);
+            System.exit(-1);
         }
+        RateLimitedLogger.tryLogForMessage(
+                System.currentTimeMillis(),
+                1, TimeUnit.HOURS,
+                networkLog,
+                Level.WARN, "Sloppy serialization size for message class %s", ds);
     }
 
     /**
@@ -244,6 +244,9 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                 networkLog.error("Bad message length exception", e);
                 throw e;
             }
+            finally {
+                m_ih.readComplete(this);
+            }
         }
     }
 
@@ -82,6 +82,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import jsr166y.ThreadLocalRandom;
@@ -98,6 +99,23 @@ class VoltNetwork implements Runnable, IOStatsIntf
     private static final VoltLogger m_logger = new VoltLogger(VoltNetwork.class.getName());
     private static final VoltLogger networkLog = new VoltLogger("NETWORK");
     private final ConcurrentLinkedQueue<Runnable> m_tasks = new ConcurrentLinkedQueue<Runnable>();
+    /*
+     * Ports whose interest ops changed, installed in one pass per selection loop
+     * instead of queueing a task for each change
+     */
+    private final ConcurrentLinkedQueue<VoltPort> m_interestChanges = new ConcurrentLinkedQueue<VoltPort>();
+    /*
+     * Set while the thread is blocked in select(). The selector only has to be woken
+     * up then, otherwise the thread is guaranteed to look at the queues before it
+     * blocks again, which saves a wakeup syscall for every change made while the
+     * thread is busy or busy polling.
+     */
+    private final AtomicBoolean m_parked = new AtomicBoolean(false);
+    /*
+     * How long to busy poll the selector with selectNow() before blocking in select(),
+     * 0 to always block
+     */
+    private final long m_busyPollNanos;
     private volatile boolean m_shouldStop = false;//volatile boolean is sufficient
     private final Thread m_thread;
     private final HashSet<VoltPort> m_ports = new HashSet<VoltPort>();
@@ -121,6 +139,16 @@ class VoltNetwork implements Runnable, IOStatsIntf
      * and runOnce should be called periodically
      **/
     VoltNetwork(int networkId, String coreBindId, String networkName) {
+        this(networkId, coreBindId, networkName, 0);
+    }
+
+    /**
+     * Initialize a network thread that busy polls the selector for busyPollNanos after
+     * the last ready key or task before parking in a blocking select. Busy polling trades
+     * a core per network thread for lower wakeup latency on small requests and responses.
+     **/
+    VoltNetwork(int networkId, String coreBindId, String networkName, long busyPollNanos) {
+        m_busyPollNanos = busyPollNanos;
         m_thread = new Thread(this, "Volt " + networkName + " Network - " + networkId);
         networkThreadName = new String("Volt " + networkName + " Network - " + networkId);
         m_thread.setDaemon(true);
@@ -135,6 +163,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
     }
 
     VoltNetwork( Selector s) {
+        m_busyPollNanos = 0;
         m_thread = null;
         m_selector = s;
         m_coreBindId = null;
@@ -209,7 +238,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
 
         FutureTask<Connection> ft = new FutureTask<Connection>(registerTask);
         m_tasks.offer(ft);
-        m_selector.wakeup();
+        wakeup();
 
         try {
             return ft.get();
@@ -255,7 +284,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
     Future<?> unregisterChannel (Connection c) {
         FutureTask<Object> ft = new FutureTask<Object>(getUnregisterRunnable(c), null);
         m_tasks.offer(ft);
-        m_selector.wakeup();
+        wakeup();
         return ft;
     }
 
@@ -273,14 +302,60 @@ class VoltNetwork implements Runnable, IOStatsIntf
                 }
             });
         } else {
-            m_tasks.offer(new Runnable() {
-                @Override
-                public void run() {
-                    installInterests(port);
+            m_interestChanges.offer(port);
+        }
+        wakeup();
+    }
+
+    /*
+     * Wake the selector only if the network thread may be blocked in it, see m_parked.
+     * Producers publish their work before reading m_parked and the network thread sets
+     * m_parked before its last look at the queues, so one of the two sees the other.
+     */
+    private void wakeup() {
+        if (m_parked.get()) {
+            m_selector.wakeup();
+        }
+    }
+
+    private boolean hasQueuedWork() {
+        return !m_tasks.isEmpty() || !m_interestChanges.isEmpty();
+    }
+
+    /*
+     * Busy poll with selectNow() until something is ready or the spin window passes,
+     * then fall back to a blocking select.
+     */
+    private int select() throws IOException {
+        if (m_busyPollNanos > 0) {
+            final long spinUntil = System.nanoTime() + m_busyPollNanos;
+            do {
+                final int readyKeys = m_selector.selectNow();
+                if (readyKeys > 0 || hasQueuedWork()) {
+                    return readyKeys;
                 }
-            });
+            } while (System.nanoTime() - spinUntil < 0 && !m_shouldStop);
+        }
+        m_parked.set(true);
+        try {
+            if (hasQueuedWork() || m_shouldStop) {
+                return m_selector.selectNow();
+            }
+            return m_selector.select();
+        } finally {
+            m_parked.lazySet(false);
+        }
+    }
+
+    private void runQueuedWork() {
+        VoltPort port = null;
+        while ((port = m_interestChanges.poll()) != null) {
+            installInterests(port);
+        }
+        Runnable task = null;
+        while ((task = m_tasks.poll()) != null) {
+            task.run();
         }
-        m_selector.wakeup();
     }
 
     @Override
@@ -297,16 +372,13 @@ class VoltNetwork implements Runnable, IOStatsIntf
                     while (m_shouldStop == false) {
                         LatencyWatchdog.pet();
 
-                        final int readyKeys = m_selector.select();
+                        final int readyKeys = select();
 
                         /*
                          * Run the task queue immediately after selection to catch
                          * any tasks that weren't a result of readiness selection
                          */
-                        Runnable task = null;
-                        while ((task = m_tasks.poll()) != null) {
-                            task.run();
-                        }
+                        runQueuedWork();
 
                         if (readyKeys > 0) {
                             if (NinjaKeySet.supported) {
@@ -320,10 +392,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
                          * Poll the task queue again in case new tasks were created
                          * by invoking callbacks.
                          */
-                        task = null;
-                        while ((task = m_tasks.poll()) != null) {
-                            task.run();
-                        }
+                        runQueuedWork();
                     }
                 } catch (Throwable ex) {
                     ex.printStackTrace();
@@ -489,14 +558,20 @@ class VoltNetwork implements Runnable, IOStatsIntf
         long totalMessagesRead = 0;
         long totalWritten = 0;
         long totalMessagesWritten = 0;
+        long totalHeapMessageBytes = 0;
+        long totalPooledMessageBytes = 0;
         for (VoltPort p : m_ports) {
             final long read = p.readStream().getBytesRead(interval);
+            final long heapMessageBytes = p.readStream().getHeapMessageBytes(interval);
+            final long pooledMessageBytes = p.readStream().getPooledMessageBytes(interval);
             final long writeInfo[] = p.writeStream().getBytesAndMessagesWritten(interval);
             final long messagesRead = p.getMessagesRead(interval);
             totalRead += read;
             totalMessagesRead += messagesRead;
             totalWritten += writeInfo[0];
             totalMessagesWritten += writeInfo[1];
+            totalHeapMessageBytes += heapMessageBytes;
+            totalPooledMessageBytes += pooledMessageBytes;
             retval.put(
                     p.connectionId(),
                     Pair.of(
@@ -505,7 +580,9 @@ class VoltNetwork implements Runnable, IOStatsIntf
                                     read,
                                     messagesRead,
                                     writeInfo[0],
-                                    writeInfo[1] }));
+                                    writeInfo[1],
+                                    heapMessageBytes,
+                                    pooledMessageBytes }));
         }
         retval.put(
                 -1L,
@@ -515,7 +592,9 @@ class VoltNetwork implements Runnable, IOStatsIntf
                                 totalRead,
                                 totalMessagesRead,
                                 totalWritten,
-                                totalMessagesWritten }));
+                                totalMessagesWritten,
+                                totalHeapMessageBytes,
+                                totalPooledMessageBytes }));
         return retval;
     }
 
@@ -531,7 +610,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
         FutureTask<Map<Long, Pair<String, long[]>>> ft = new FutureTask<Map<Long, Pair<String, long[]>>>(task);
 
         m_tasks.offer(ft);
-        m_selector.wakeup();
+        wakeup();
 
         return ft;
     }
@@ -542,7 +621,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
 
     void queueTask(Runnable r) {
         m_tasks.offer(r);
-        m_selector.wakeup();
+        wakeup();
     }
 
     int numPorts() {
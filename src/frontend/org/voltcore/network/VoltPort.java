@@ -183,6 +183,9 @@ public class VoltPort implements Connection
                         networkLog.error("Bad message length exception", e);
                         throw e;
                     }
+                    finally {
+                        m_handler.readComplete(this);
+                    }
                 }
             }
 
@@ -38,6 +38,8 @@ public abstract class VoltProtocolHandler implements InputHandler {
     /** serial number of this VoltPort */
     private final long m_connectionId;
     private int m_nextLength;
+    /** stream holding the read buffer behind the last message retrieved, null for heap messages */
+    private NIOReadStream m_pooledMessageStream;
 
     private static int MAX_MESSAGE_LENGTH = 52428800;
 
@@ -60,6 +62,7 @@ public abstract class VoltProtocolHandler implements InputHandler {
          * access to the read stream.
          */
         ByteBuffer result = null;
+        releaseMessage();
 
         if (m_nextLength == 0 && inputStream.dataAvailable() > (Integer.SIZE/8)) {
             m_nextLength = inputStream.getInt();
@@ -76,15 +79,48 @@ public abstract class VoltProtocolHandler implements InputHandler {
             assert m_nextLength > 0;
         }
         if (m_nextLength > 0 && inputStream.dataAvailable() >= m_nextLength) {
-            result = ByteBuffer.allocate(m_nextLength);
-            // Copy read buffers to result, move read buffers back to memory pool
-            inputStream.getBytes(result.array());
+            if (usePooledMessages()) {
+                result = inputStream.getSlice(m_nextLength);
+                if (result != null) {
+                    m_pooledMessageStream = inputStream;
+                }
+            }
+            if (result == null) {
+                result = ByteBuffer.allocate(m_nextLength);
+                // Copy read buffers to result, move read buffers back to memory pool
+                inputStream.getMessageBytes(result.array());
+            }
             m_nextLength = 0;
             m_sequenceId++;
         }
         return result;
     }
 
+    /**
+     * Override to return true to have messages that sit in a single read buffer handed
+     * to handleMessage() as a view of the pooled direct buffer instead of a heap copy.
+     * The message is only valid until releaseMessage() is called or the next message is
+     * retrieved, so handleMessage() must copy anything it keeps beyond that.
+     */
+    protected boolean usePooledMessages() {
+        return false;
+    }
+
+    /**
+     * Return the pooled read buffer behind the last message, if any, once the message
+     * has been consumed. Must be called on the network thread.
+     */
+    protected void releaseMessage() {
+        if (m_pooledMessageStream != null) {
+            m_pooledMessageStream.releaseSlice();
+            m_pooledMessageStream = null;
+        }
+    }
+
+    @Override
+    public void readComplete(Connection c) {
+    }
+
     @Override
     public void started(Connection c) {
     }
@@ -0,0 +1,39 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.utils;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.voltcore.utils.DBBPool.BBContainer;
+
+/**
+ * A deferred serialization for messages mostly made of buffers that already hold their
+ * serialized bytes. When the message doesn't fit in the write stream's current network
+ * buffer, the stream asks for the message as a list of buffers and writes them to the
+ * socket where they are instead of copying them to the heap and then to network buffers.
+ */
+public interface GatheringDeferredSerialization extends DeferredSerialization {
+    /**
+     * Serialize the message as buffers written back to back, adding them to the list.
+     * Each buffer holds its bytes between its position and limit, getSerializedSize()
+     * bytes in all. The buffers must not change until their containers are discarded,
+     * which the write stream does once a buffer is written or the stream is shut down.
+     */
+    void serialize(List<BBContainer> buffers) throws IOException;
+}
@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.zookeeper_voltpatches.KeeperException;
 import org.json_voltpatches.JSONException;
@@ -89,6 +90,10 @@ public class CatalogContext {
      */
     public final PlannerTool m_ptool;
 
+    // Planners not in use by an ad hoc planner thread, each has its own HSQL session.
+    // More are created as planner threads need them, m_ptool is the first.
+    private final ConcurrentLinkedQueue<PlannerTool> m_idlePlannerTools = new ConcurrentLinkedQueue<>();
+
     // PRIVATE
     private final InMemoryJarfile m_jarfile;
 
@@ -163,6 +168,7 @@ public class CatalogContext {
 
         m_jdbc = new JdbcDatabaseMetaDataGenerator(catalog, m_defaultProcs, m_jarfile);
         m_ptool = new PlannerTool(cluster, database, catalogHash);
+        m_idlePlannerTools.offer(m_ptool);
         catalogVersion = version;
         m_messenger = messenger;
 
@@ -411,6 +417,22 @@ public class CatalogContext {
         return catalogCRC;
     }
 
+    /**
+     * Get a planner for this catalog version for the calling thread's exclusive use
+     * until it is given back with releasePlannerTool().
+     */
+    public PlannerTool acquirePlannerTool() {
+        PlannerTool ptool = m_idlePlannerTools.poll();
+        if (ptool == null) {
+            ptool = new PlannerTool(cluster, database, getCatalogHash());
+        }
+        return ptool;
+    }
+
+    public void releasePlannerTool(PlannerTool ptool) {
+        m_idlePlannerTools.offer(ptool);
+    }
+
     public byte[] getCatalogHash()
     {
         return catalogHash;
@@ -63,8 +63,10 @@ import org.voltcore.network.VoltPort;
 import org.voltcore.network.VoltProtocolHandler;
 import org.voltcore.network.WriteStream;
 import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.EstTime;
+import org.voltcore.utils.GatheringDeferredSerialization;
 import org.voltcore.utils.Pair;
 import org.voltdb.AuthSystem.AuthProvider;
 import org.voltdb.AuthSystem.AuthUser;
@@ -105,6 +107,12 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
 
     static long TOPOLOGY_CHANGE_CHECK_MS = Long.getLong("TOPOLOGY_CHANGE_CHECK_MS", 5000);
     static long AUTH_TIMEOUT_MS = Long.getLong("AUTH_TIMEOUT_MS", 30000);
+    // Deserialize invocations straight out of the pooled network read buffers
+    static boolean POOLED_READ_BUFFERS = Boolean.valueOf(System.getProperty("CLIENT_POOLED_READ_BUFFERS", "false"));
+    // Send single-partition invocations from one network read to each initiator as a batch
+    static boolean INITIATE_BATCHING = Boolean.valueOf(System.getProperty("SP_INITIATE_BATCHING", "true"));
+    // Result tables at least this large are written to the socket from their own buffers
+    static int RESPONSE_TABLE_VIEW_MIN_SIZE = Integer.getInteger("RESPONSE_TABLE_VIEW_MIN_SIZE", 1024 * 64);
 
     //Same as in Distributer.java
     public static final long ASYNC_TOPO_HANDLE = Long.MAX_VALUE - 1;
@@ -729,6 +737,9 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
          */
         private final String m_username;
 
+        // Single-partition initiations from the current read, sent on in readComplete()
+        private final InitiateTaskBatcher m_batcher = new InitiateTaskBatcher(m_mailbox);
+
         public ClientInputHandler(String username,
                                   boolean isAdmin)
         {
@@ -756,6 +767,11 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             }
         }
 
+        @Override
+        protected boolean usePooledMessages() {
+            return POOLED_READ_BUFFERS;
+        }
+
         @Override
         public void handleMessage(ByteBuffer message, Connection c) {
             try {
@@ -768,9 +784,17 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                 }
             } catch (Exception e) {
                 throw new RuntimeException(e);
+            } finally {
+                // The invocation has been dispatched and no longer refers to the message
+                releaseMessage();
             }
         }
 
+        @Override
+        public void readComplete(Connection c) {
+            m_batcher.flush();
+        }
+
         @Override
         public void started(final Connection c) {
             m_connection = c;
@@ -864,7 +888,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
      * Runs on the network thread to prepare client response. If a transaction needs to be
      * restarted, it will get restarted here.
      */
-    public class ClientResponseWork implements DeferredSerialization {
+    public class ClientResponseWork implements GatheringDeferredSerialization {
         private final ClientInterfaceHandleManager cihm;
         private final InitiateResponseMessage response;
         private final Procedure catProc;
@@ -885,10 +909,18 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         {
             buf.putInt(buf.capacity() - 4);
             clientResponse.flattenToBuffer(buf);
+            discardPooledResults();
+        }
+
+        @Override
+        public void serialize(List<BBContainer> buffers) throws IOException
+        {
+            clientResponse.flattenToBuffers(buffers, RESPONSE_TABLE_VIEW_MIN_SIZE);
         }
 
         @Override
         public void cancel() {
+            discardPooledResults();
         }
 
         @Override
@@ -907,6 +939,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                 clientData = cihm.findHandle(response.getClientInterfaceHandle());
             }
             if (clientData == null) {
+                discardPooledResults();
                 return DeferredSerialization.EMPTY_MESSAGE_LENGTH;
             }
 
@@ -914,6 +947,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             if (restartTransaction(clientData.m_messageSize, clientData.m_creationTimeNanos)) {
                 // If the transaction is successfully restarted, don't send a response to the
                 // client yet.
+                discardPooledResults();
                 return DeferredSerialization.EMPTY_MESSAGE_LENGTH;
             }
 
@@ -946,6 +980,13 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             return clientResponse;
         }
 
+        // The response isn't written from its pooled result buffers, give them back
+        private void discardPooledResults() {
+            if (clientResponse != null) {
+                clientResponse.discardPooledResults();
+            }
+        }
+
         /**
          * Checks if the transaction needs to be restarted, if so, restart it.
          * @param messageSize the original message size when the invocation first came in
@@ -1116,6 +1157,8 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                         //Pass it to the network thread like a ninja
                         //Only the network can use the CIHM
                         cihm.connection.writeStream().fastEnqueue(new ClientResponseWork(response, cihm, procedure));
+                    } else if (response.getClientResponseData() != null) {
+                        response.getClientResponseData().discardPooledResults();
                     }
                 } else if (message instanceof BinaryPayloadMessage) {
                     handlePartitionFailOver((BinaryPayloadMessage)message);
@@ -1341,7 +1384,8 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
     final ClientResponseImpl handleRead(ByteBuffer buf, ClientInputHandler handler, Connection ccxn) {
         StoredProcedureInvocation task = new StoredProcedureInvocation();
         try {
-            task.initFromBuffer(buf);
+            // A pooled message is released once dispatch returns, the invocation outlives it
+            task.initFromBuffer(buf, buf.isDirect());
         } catch (Exception ex) {
             return new ClientResponseImpl(
                     ClientResponseImpl.UNEXPECTED_FAILURE,
@@ -1354,7 +1398,8 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             return errorResponse(ccxn, task.clientHandle, ClientResponse.UNEXPECTED_FAILURE, errorMessage, null, false);
         }
 
-        return m_dispatcher.dispatch(task, handler, ccxn, user, null);
+        return m_dispatcher.dispatch(task, handler, ccxn, user, null,
+                INITIATE_BATCHING ? handler.m_batcher : null);
     }
 
     public Procedure getProcedureFromName(String procName, CatalogContext catalogContext) {
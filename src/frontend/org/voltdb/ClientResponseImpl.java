@@ -19,11 +19,14 @@ package org.voltdb;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONString;
 import org.json_voltpatches.JSONStringer;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ClientUtils;
 import org.voltdb.common.Constants;
@@ -213,6 +216,86 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
      * @return buf to allow call chaining.
      */
     public ByteBuffer flattenToBuffer(ByteBuffer buf) {
+        flattenHeaderToBuffer(buf);
+        for (VoltTable vt : results)
+        {
+            vt.flattenToBuffer(buf);
+        }
+        return buf;
+    }
+
+    /**
+     * Serialize the response like flattenToBuffer, preceded by its length, as a list of
+     * buffers to be written back to back. Tables of at least minViewSize bytes aren't
+     * copied, the list gets read-only views of their own buffers instead, along with the
+     * pooled buffers backing them if any, which are released when the views are discarded.
+     * The other bytes are copied into heap buffers between the views.
+     */
+    public void flattenToBuffers(List<BBContainer> buffers, int minViewSize) {
+        int tablesSize = 0;
+        for (VoltTable vt : results) {
+            tablesSize += vt.getSerializedSize();
+        }
+        final int headerSize = getSerializedSize() - tablesSize;
+        ByteBuffer buf = ByteBuffer.allocate(4 + headerSize + getCopiedSize(0, minViewSize));
+        buf.putInt(headerSize + tablesSize);
+        flattenHeaderToBuffer(buf);
+        for (int i = 0; i < results.length; i++) {
+            final VoltTable vt = results[i];
+            if (vt.getSerializedSize() - 4 < minViewSize) {
+                vt.flattenToBuffer(buf);
+                continue;
+            }
+            buf.putInt(vt.getSerializedSize() - 4);
+            buf.flip();
+            buffers.add(DBBPool.wrapBB(buf));
+
+            final BBContainer backing = PrivateVoltTableFactory.takePooledBacking(vt);
+            buffers.add(new BBContainer(vt.getBuffer()) {
+                @Override
+                public void discard() {
+                    checkDoubleFree();
+                    if (backing != null) {
+                        backing.discard();
+                    }
+                }
+            });
+            buf = ByteBuffer.allocate(getCopiedSize(i + 1, minViewSize));
+        }
+        buf.flip();
+        buffers.add(DBBPool.wrapBB(buf));
+    }
+
+    /**
+     * Return the pooled buffers backing the result tables, if any, to the pool. Called
+     * when the response is dropped or copied instead of written with flattenToBuffers,
+     * the tables must not be read afterwards.
+     */
+    public void discardPooledResults() {
+        for (VoltTable vt : results) {
+            final BBContainer backing = PrivateVoltTableFactory.takePooledBacking(vt);
+            if (backing != null) {
+                backing.discard();
+            }
+        }
+    }
+
+    /*
+     * Bytes of the tables from the given one that are copied, up to and including
+     * the length of the next table that isn't
+     */
+    private int getCopiedSize(int from, int minViewSize) {
+        int size = 0;
+        for (int i = from; i < results.length; i++) {
+            if (results[i].getSerializedSize() - 4 >= minViewSize) {
+                return size + 4;
+            }
+            size += results[i].getSerializedSize();
+        }
+        return size;
+    }
+
+    private void flattenHeaderToBuffer(ByteBuffer buf) {
         assert setProperly;
         buf.put((byte)0); //version
         buf.putLong(clientHandle);
@@ -242,11 +325,6 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
             buf.putInt(m_hash.intValue());
         }
         buf.putShort((short) results.length);
-        for (VoltTable vt : results)
-        {
-            vt.flattenToBuffer(buf);
-        }
-        return buf;
     }
 
     @Override
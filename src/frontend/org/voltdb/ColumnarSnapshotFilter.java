@@ -0,0 +1,76 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.utils.ColumnarSnapshotCodec;
+
+/*
+ * Filter that converts snapshot data to compressed columnar blocks
+ */
+public class ColumnarSnapshotFilter implements SnapshotDataFilter {
+    private final byte m_schemaBytes[];
+
+    public ColumnarSnapshotFilter(VoltTable vt) {
+        m_schemaBytes = PrivateVoltTableFactory.getSchemaBytes(vt);
+    }
+
+    @Override
+    public Callable<BBContainer> filter(final Callable<BBContainer> input) {
+        return new Callable<BBContainer>() {
+            @Override
+            public BBContainer call() throws Exception {
+                BBContainer cont = input.call();
+                if (cont == null) {
+                    return null;
+                }
+                try {
+                    final int partitionId = cont.b().getInt(0);
+                    ByteBuffer buf = ByteBuffer.allocate(m_schemaBytes.length + cont.b().remaining() - 4);
+                    buf.put(m_schemaBytes);
+                    cont.b().position(4);
+                    buf.put(cont.b());
+
+                    VoltTable vt = PrivateVoltTableFactory.createVoltTableFromBuffer(buf, true);
+                    if (vt.getRowCount() == 0) {
+                        // Nothing worth a block
+                        return null;
+                    }
+                    final byte block[] = ColumnarSnapshotCodec.encode(vt, partitionId);
+                    final BBContainer origin = cont;
+                    cont = null;
+                    return new BBContainer(ByteBuffer.wrap(block)) {
+                        @Override
+                        public void discard() {
+                            checkDoubleFree();
+                            origin.discard();
+                        }
+                    };
+                } finally {
+                    if (cont != null) {
+                        cont.discard();
+                    }
+                }
+            }
+        };
+    }
+
+}
@@ -0,0 +1,457 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop_voltpatches.util.PureJavaCrc32C;
+import org.voltcore.utils.InstanceId;
+import org.voltdb.iv2.MpInitiator;
+import org.voltdb.iv2.TxnEgo;
+
+/**
+ * A single preallocated file of the local command log. A segment starts with a fixed
+ * size header that identifies the segment and records, per partition, the last
+ * transaction logged before the segment was opened. The header is followed by a
+ * sequence of entries, each prefixed with its payload length, a CRC32C of the payload
+ * and an entry type. Because segments are preallocated with zeros, a zero length
+ * marks the end of the valid portion of the file.
+ */
+public class CommandLogSegment {
+    public static final String FILE_PREFIX = "log_";
+    public static final String FILE_SUFFIX = ".vcl";
+
+    static final int MAGIC = 0x56434C47; // "VCLG"
+    static final int VERSION = 1;
+    public static final int HEADER_BYTES = 4096;
+
+    // payload length, crc, type
+    public static final int ENTRY_HEADER_BYTES = 4 + 4 + 1;
+    // spHandle, txnId, uniqueId, involved partition count
+    static final int INVOCATION_FIXED_BYTES = 8 + 8 + 8 + 4;
+
+    public static final byte INVOCATION_ENTRY = 0;
+    public static final byte FAULT_ENTRY = 1;
+
+    private static final int ZERO_FILL_CHUNK = 1024 * 1024;
+
+    private final File m_file;
+    private final long m_segmentId;
+    private final long m_capacity;
+    private RandomAccessFile m_ras;
+    private FileChannel m_fc;
+    private long m_writeOffset = HEADER_BYTES;
+
+    // Header contents, valid once the segment has been activated or opened for read
+    private InstanceId m_instanceId;
+    private final Map<Integer, Long> m_previousTxnIds = new HashMap<Integer, Long>();
+
+    // Highest spHandle written per partition, and highest MP txnId, used to decide
+    // whether a truncation snapshot covers this segment.
+    private final Map<Integer, Long> m_maxSpHandles = new HashMap<Integer, Long>();
+    private long m_maxMpTxnId = Long.MIN_VALUE;
+
+    private CommandLogSegment(File file, long segmentId, long capacity) {
+        m_file = file;
+        m_segmentId = segmentId;
+        m_capacity = capacity;
+    }
+
+    public static File fileFor(File dir, long segmentId) {
+        return new File(dir, FILE_PREFIX + segmentId + FILE_SUFFIX);
+    }
+
+    /**
+     * Create a new segment file of the given size filled with zeros, so that the
+     * writer never has to extend the file (and its metadata) while logging.
+     */
+    static CommandLogSegment preallocate(File dir, long segmentId, long capacity) throws IOException {
+        final File file = fileFor(dir, segmentId);
+        final CommandLogSegment segment = new CommandLogSegment(file, segmentId, capacity);
+        segment.m_ras = new RandomAccessFile(file, "rw");
+        segment.m_fc = segment.m_ras.getChannel();
+        final ByteBuffer zeros = ByteBuffer.allocateDirect(ZERO_FILL_CHUNK);
+        long position = 0;
+        while (position < capacity) {
+            zeros.clear();
+            if (capacity - position < zeros.capacity()) {
+                zeros.limit((int)(capacity - position));
+            }
+            while (zeros.hasRemaining()) {
+                position += segment.m_fc.write(zeros, position);
+            }
+        }
+        segment.m_fc.force(true);
+        return segment;
+    }
+
+    /**
+     * Write the header and make the segment the target of new log entries.
+     */
+    void activate(InstanceId instanceId, Map<Integer, Long> previousTxnIds) throws IOException {
+        m_instanceId = instanceId;
+        m_previousTxnIds.putAll(previousTxnIds);
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(m_segmentId);
+        header.putInt(instanceId.getCoord());
+        header.putLong(instanceId.getTimestamp());
+        header.putInt(previousTxnIds.size());
+        for (Map.Entry<Integer, Long> e : previousTxnIds.entrySet()) {
+            header.putInt(e.getKey());
+            header.putLong(e.getValue());
+        }
+        header.clear();
+        writeFully(header, 0);
+        m_writeOffset = HEADER_BYTES;
+    }
+
+    public long segmentId() {
+        return m_segmentId;
+    }
+
+    public File file() {
+        return m_file;
+    }
+
+    public InstanceId getInstanceId() {
+        return m_instanceId;
+    }
+
+    /**
+     * Per partition txnIds (and the MP txnId under {@link MpInitiator#MP_INIT_PID})
+     * of the last transactions logged before this segment was started.
+     */
+    public Map<Integer, Long> getPreviousTxnIds() {
+        return m_previousTxnIds;
+    }
+
+    long remaining() {
+        return m_capacity - m_writeOffset;
+    }
+
+    long bytesWritten() {
+        return m_writeOffset - HEADER_BYTES;
+    }
+
+    /**
+     * Append a buffer containing whole entries. The caller is responsible for making
+     * sure the entries fit in the remaining space.
+     */
+    void append(ByteBuffer entries) throws IOException {
+        assert(entries.remaining() <= remaining());
+        final int length = entries.remaining();
+        writeFully(entries, m_writeOffset);
+        m_writeOffset += length;
+    }
+
+    void noteInvocation(long spHandle, long txnId, boolean isSinglePartition) {
+        final int partitionId = TxnEgo.getPartitionId(spHandle);
+        final Long prev = m_maxSpHandles.get(partitionId);
+        if (prev == null || prev < spHandle) {
+            m_maxSpHandles.put(partitionId, spHandle);
+        }
+        if (!isSinglePartition && txnId > m_maxMpTxnId) {
+            m_maxMpTxnId = txnId;
+        }
+    }
+
+    /**
+     * @return true if every transaction logged in this segment is included in the snapshot
+     * described by the given per partition txnIds and MP txnId.
+     */
+    boolean isCoveredBy(Map<Integer, Long> partitionTxnIds, long multipartTxnId) {
+        if (m_maxMpTxnId > multipartTxnId) {
+            return false;
+        }
+        for (Map.Entry<Integer, Long> e : m_maxSpHandles.entrySet()) {
+            final Long snapshotTxnId = partitionTxnIds.get(e.getKey());
+            if (snapshotTxnId == null || snapshotTxnId < e.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void sync() throws IOException {
+        m_fc.force(false);
+    }
+
+    void close() throws IOException {
+        if (m_ras != null) {
+            m_ras.close();
+            m_ras = null;
+            m_fc = null;
+        }
+    }
+
+    void closeAndDelete() throws IOException {
+        close();
+        if (!m_file.delete() && m_file.exists()) {
+            throw new IOException("Unable to delete command log segment " + m_file);
+        }
+    }
+
+    private void writeFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += m_fc.write(buf, position);
+        }
+    }
+
+    /*
+     * Entry encoding helpers. The payload of an invocation entry is the spHandle,
+     * txnId and uniqueId of the transaction, the involved partitions (-1 when not
+     * specified) and the serialized Iv2InitiateTaskMessage.
+     */
+
+    static int invocationEntrySize(int messageSize, int[] involvedPartitions) {
+        return ENTRY_HEADER_BYTES + INVOCATION_FIXED_BYTES +
+               (involvedPartitions == null ? 0 : 4 * involvedPartitions.length) + messageSize;
+    }
+
+    static int faultEntrySize(int survivorCount) {
+        // writer HSId, partition, spHandle, survivor count, survivors
+        return ENTRY_HEADER_BYTES + 8 + 4 + 8 + 4 + 8 * survivorCount;
+    }
+
+    /**
+     * Fill in the length and CRC of an entry whose header starts at entryStart and
+     * whose payload ends at the current position of the buffer. The buffer must be
+     * backed by an array.
+     */
+    static void sealEntry(ByteBuffer buf, int entryStart, byte type) {
+        final int payloadStart = entryStart + ENTRY_HEADER_BYTES;
+        final int payloadLength = buf.position() - payloadStart;
+        final PureJavaCrc32C crc = new PureJavaCrc32C();
+        crc.update(buf.array(), buf.arrayOffset() + payloadStart, payloadLength);
+        buf.putInt(entryStart, payloadLength);
+        buf.putInt(entryStart + 4, (int)crc.getValue());
+        buf.put(entryStart + 8, type);
+    }
+
+    /**
+     * An entry read back from a segment. The payload is positioned after the entry header.
+     */
+    public static class Entry {
+        public final byte type;
+        public final ByteBuffer payload;
+
+        Entry(byte type, ByteBuffer payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        public long getSpHandle() {
+            return payload.getLong(0);
+        }
+
+        public long getTxnId() {
+            return payload.getLong(8);
+        }
+
+        public long getUniqueId() {
+            return payload.getLong(16);
+        }
+
+        /**
+         * @return the involved partitions of an MP transaction, or null if none were logged
+         */
+        public int[] getInvolvedPartitions() {
+            final int count = payload.getInt(24);
+            if (count < 0) {
+                return null;
+            }
+            final int[] partitions = new int[count];
+            for (int i = 0; i < count; i++) {
+                partitions[i] = payload.getInt(INVOCATION_FIXED_BYTES + 4 * i);
+            }
+            return partitions;
+        }
+
+        /**
+         * @return a buffer positioned at the serialized Iv2InitiateTaskMessage
+         */
+        public ByteBuffer getMessage() {
+            final int count = payload.getInt(24);
+            final ByteBuffer msg = payload.duplicate();
+            msg.position(INVOCATION_FIXED_BYTES + (count < 0 ? 0 : 4 * count));
+            return msg.slice();
+        }
+    }
+
+    /**
+     * Sequential reader over an existing segment file, used by replay and tests.
+     * Reading stops at the first zero length or corrupt entry.
+     */
+    public static class Reader implements AutoCloseable {
+        private final File m_file;
+        private final RandomAccessFile m_ras;
+        private final FileChannel m_fc;
+        private final long m_segmentId;
+        private final InstanceId m_instanceId;
+        private final Map<Integer, Long> m_previousTxnIds = new HashMap<Integer, Long>();
+        private final ByteBuffer m_entryHeader = ByteBuffer.allocate(ENTRY_HEADER_BYTES);
+        private long m_offset = HEADER_BYTES;
+
+        public Reader(File file) throws IOException {
+            m_file = file;
+            m_ras = new RandomAccessFile(file, "r");
+            m_fc = m_ras.getChannel();
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                m_ras.close();
+                throw new IOException("File " + file + " is not a command log segment");
+            }
+            final int version = header.getInt();
+            if (version != VERSION) {
+                m_ras.close();
+                throw new IOException("Unsupported command log segment version " + version + " in " + file);
+            }
+            m_segmentId = header.getLong();
+            final int coord = header.getInt();
+            m_instanceId = new InstanceId(coord, header.getLong());
+            final int count = header.getInt();
+            for (int i = 0; i < count; i++) {
+                m_previousTxnIds.put(header.getInt(), header.getLong());
+            }
+        }
+
+        public long segmentId() {
+            return m_segmentId;
+        }
+
+        public File file() {
+            return m_file;
+        }
+
+        public InstanceId getInstanceId() {
+            return m_instanceId;
+        }
+
+        public Map<Integer, Long> getPreviousTxnIds() {
+            return m_previousTxnIds;
+        }
+
+        /**
+         * @return the next entry, or null at the end of the valid data
+         */
+        public Entry next() throws IOException {
+            if (m_offset + ENTRY_HEADER_BYTES > m_fc.size()) {
+                return null;
+            }
+            m_entryHeader.clear();
+            readFully(m_entryHeader, m_offset);
+            m_entryHeader.flip();
+            final int length = m_entryHeader.getInt();
+            final int expectedCrc = m_entryHeader.getInt();
+            final byte type = m_entryHeader.get();
+            if (length <= 0 || m_offset + ENTRY_HEADER_BYTES + length > m_fc.size()) {
+                return null;
+            }
+            final ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, m_offset + ENTRY_HEADER_BYTES);
+            final PureJavaCrc32C crc = new PureJavaCrc32C();
+            crc.update(payload.array(), 0, length);
+            if ((int)crc.getValue() != expectedCrc) {
+                // A torn write at the tail of the log, everything before it is valid
+                return null;
+            }
+            payload.flip();
+            m_offset += ENTRY_HEADER_BYTES + length;
+            return new Entry(type, payload);
+        }
+
+        private void readFully(ByteBuffer buf, long position) throws IOException {
+            while (buf.hasRemaining()) {
+                final int read = m_fc.read(buf, position);
+                if (read == -1) {
+                    throw new IOException("Unexpected end of command log segment " + m_file);
+                }
+                position += read;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            m_ras.close();
+        }
+    }
+
+    /**
+     * Open readers for all the segments in a directory, ordered by segment id.
+     * Files that are not valid segments (e.g. a preallocated spare that was never
+     * activated) are skipped.
+     */
+    public static List<Reader> openAll(File dir) throws IOException {
+        final List<Reader> readers = new ArrayList<Reader>();
+        for (File f : listSegmentFiles(dir)) {
+            try {
+                readers.add(new Reader(f));
+            } catch (IOException e) {
+                // not activated or not a segment
+            }
+        }
+        readers.sort(new Comparator<Reader>() {
+            @Override
+            public int compare(Reader o1, Reader o2) {
+                return Long.compare(o1.segmentId(), o2.segmentId());
+            }
+        });
+        return readers;
+    }
+
+    static List<File> listSegmentFiles(File dir) {
+        final File[] files = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File f) {
+                return f.isFile() && f.getName().startsWith(FILE_PREFIX) && f.getName().endsWith(FILE_SUFFIX);
+            }
+        });
+        return files == null ? new ArrayList<File>() : Arrays.asList(files);
+    }
+
+    /**
+     * @return the id encoded in a segment file name, or -1 if the name is not a segment name
+     */
+    static long idFromFileName(String name) {
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    static boolean isSinglePartitionTxnId(long txnId) {
+        return TxnEgo.getPartitionId(txnId) != MpInitiator.MP_INIT_PID;
+    }
+}
@@ -105,7 +105,23 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     private final Condition m_noMoreOutstandingWriteTasksCondition =
             m_outstandingWriteTasksLock.newCondition();
 
-    private static final ListeningExecutorService m_es = CoreUtils.getListeningSingleThreadExecutor("Snapshot write service ");
+    /*
+     * Files are written in parallel, each by one of the write services so its
+     * chunks stay in order. Targets are spread over the services as they are created.
+     */
+    public static final int SNAPSHOT_WRITE_THREADS =
+            Math.max(1, Integer.getInteger("SNAPSHOT_WRITE_THREADS",
+                                           Math.min(4, CoreUtils.availableProcessors() / 4)));
+    private static final ListeningExecutorService m_writeServices[] =
+            new ListeningExecutorService[SNAPSHOT_WRITE_THREADS];
+    private static final AtomicInteger m_nextWriteService = new AtomicInteger(0);
+    static {
+        for (int ii = 0; ii < SNAPSHOT_WRITE_THREADS; ii++) {
+            m_writeServices[ii] = CoreUtils.getListeningSingleThreadExecutor("Snapshot write service " + ii + " ");
+        }
+    }
+    private final ListeningExecutorService m_es;
+
     static final ListeningScheduledExecutorService m_syncService = MoreExecutors.listeningDecorator(
             Executors.newSingleThreadScheduledExecutor(CoreUtils.getThreadFactory("Snapshot sync service")));
 
@@ -113,6 +129,32 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     public static final int SNAPSHOT_FADVISE_BYTES = Integer.getInteger("SNAPSHOT_FADVISE_BYTES", 1024 * 1024 * 2);
     public static final int SNAPSHOT_RATELIMIT_MEGABYTES;
     public static final boolean USE_SNAPSHOT_RATELIMIT;
+    // Limit on each table's file, on top of the limit on all snapshot writes
+    public static final int SNAPSHOT_TABLE_RATELIMIT_MEGABYTES;
+    public static final CompressionService.Algorithm SNAPSHOT_COMPRESSION;
+
+    static {
+        int tableLimit = Integer.getInteger("SNAPSHOT_TABLE_RATELIMIT_MEGABYTES", Integer.MAX_VALUE);
+        if (tableLimit < 1) {
+            SNAP_LOG.warn("Invalid snapshot table rate limit " + tableLimit + ", no limit will be applied");
+            SNAPSHOT_TABLE_RATELIMIT_MEGABYTES = Integer.MAX_VALUE;
+        } else {
+            SNAPSHOT_TABLE_RATELIMIT_MEGABYTES = tableLimit;
+        }
+        if (SNAPSHOT_TABLE_RATELIMIT_MEGABYTES < Integer.MAX_VALUE) {
+            SNAP_LOG.info("Rate limiting each snapshot table to " + SNAPSHOT_TABLE_RATELIMIT_MEGABYTES +
+                    " megabytes/second");
+        }
+
+        final String compression = System.getProperty("SNAPSHOT_COMPRESSION", "SNAPPY");
+        CompressionService.Algorithm algorithm = CompressionService.Algorithm.SNAPPY;
+        try {
+            algorithm = CompressionService.Algorithm.valueOf(compression.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            SNAP_LOG.warn("Unknown snapshot compression " + compression + ", using SNAPPY");
+        }
+        SNAPSHOT_COMPRESSION = algorithm;
+    }
 
     static {
         int limit = Integer.getInteger("SNAPSHOT_RATELIMIT_MEGABYTES", Integer.MAX_VALUE);
@@ -135,10 +177,17 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
 
     public static void enforceSnapshotRateLimit(int permits) {
         if (USE_SNAPSHOT_RATELIMIT) {
-            SNAPSHOT_RATELIMITER.acquire(permits);
+            // Shared by the write services, waiting here throttles all of them
+            synchronized (SNAPSHOT_RATELIMITER) {
+                SNAPSHOT_RATELIMITER.acquire(permits);
+            }
         }
     }
 
+    // Only used by this target's write service
+    private final UnsynchronizedRateLimiter m_tableRateLimiter;
+    private final CompressionService.Algorithm m_compression = SNAPSHOT_COMPRESSION;
+
     public DefaultSnapshotDataTarget(
             final File file,
             final int hostId,
@@ -183,6 +232,13 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         String hostname = CoreUtils.getHostnameOrAddress();
         m_file = file;
         m_tableName = tableName;
+        m_es = m_writeServices[(m_nextWriteService.getAndIncrement() & Integer.MAX_VALUE) % SNAPSHOT_WRITE_THREADS];
+        if (SNAPSHOT_TABLE_RATELIMIT_MEGABYTES < Integer.MAX_VALUE) {
+            m_tableRateLimiter = UnsynchronizedRateLimiter.create(
+                    SNAPSHOT_TABLE_RATELIMIT_MEGABYTES * 1024.0 * 1024.0, 1, TimeUnit.SECONDS);
+        } else {
+            m_tableRateLimiter = null;
+        }
         m_fos = new FileOutputStream(file);
         m_channel = m_fos.getChannel();
         m_needsFinalClose = !isReplicated;
@@ -206,6 +262,10 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             stringer.keySymbolValuePair("isReplicated", isReplicated);
             stringer.keySymbolValuePair("isCompressed", true);
             stringer.keySymbolValuePair("checksumType", "CRC32C");
+            if (m_compression != CompressionService.Algorithm.SNAPPY) {
+                // Absent in files written before there was a choice
+                stringer.keySymbolValuePair("compression", m_compression.name());
+            }
             stringer.keySymbolValuePair("timestamp", timestamp);
             /*
              * The timestamp string is for human consumption, automated stuff should use
@@ -445,7 +505,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
              * that is 16 bytes, but 4 of those are done by CompressionService
              */
             cont.b().position(12);
-            compressionTask = CompressionService.compressAndCRC32cBufferAsync(tupleData, cont);
+            compressionTask = CompressionService.compressAndCRC32cBufferAsync(tupleData, cont, m_compression);
         }
         final Future<BBContainer> compressionTaskFinal = compressionTask;
 
@@ -491,6 +551,9 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
                             payloadBuffer.put(lengthPrefix);
                             payloadBuffer.position(0);
 
+                            if (m_tableRateLimiter != null) {
+                                m_tableRateLimiter.acquire(payloadBuffer.remaining());
+                            }
                             enforceSnapshotRateLimit(payloadBuffer.remaining());
 
                             /*
@@ -575,13 +638,16 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     }
 
     public static void setRate(final Integer megabytesPerSecond) {
-        m_es.execute(new Runnable() {
+        // Off the caller's thread, a write service may be holding the limiter while it waits
+        m_writeServices[0].execute(new Runnable() {
             @Override
             public void run() {
-                if (megabytesPerSecond == null) {
-                    SNAPSHOT_RATELIMITER.setRate(SNAPSHOT_RATELIMIT_MEGABYTES * 1024.0 * 1024.0);
-                } else {
-                    SNAPSHOT_RATELIMITER.setRate(megabytesPerSecond * 1024.0 * 1024.0);
+                synchronized (SNAPSHOT_RATELIMITER) {
+                    if (megabytesPerSecond == null) {
+                        SNAPSHOT_RATELIMITER.setRate(SNAPSHOT_RATELIMIT_MEGABYTES * 1024.0 * 1024.0);
+                    } else {
+                        SNAPSHOT_RATELIMITER.setRate(megabytesPerSecond * 1024.0 * 1024.0);
+                    }
                 }
             }
         });
@@ -59,6 +59,11 @@ public class ExtensibleSnapshotDigestData {
      */
     private long m_terminus;
 
+    /**
+     * Mode and parent of the snapshot if it belongs to an incremental chain, null if it doesn't
+     */
+    private final JSONObject m_incremental;
+
     public ExtensibleSnapshotDigestData(
             Map<String, Map<Integer, Pair<Long, Long>>> exportSequenceNumbers,
             Map<Integer, TupleStreamStateInfo> drTupleStreamInfo,
@@ -68,6 +73,29 @@ public class ExtensibleSnapshotDigestData {
         m_drTupleStreamInfo = drTupleStreamInfo;
         m_drMixedClusterSizeConsumerState = drMixedClusterSizeConsumerState;
         m_terminus = jsData != null ? jsData.optLong(SnapshotUtil.JSON_TERMINUS, 0L) : 0L;
+        m_incremental = jsData != null ? jsData.optJSONObject(SnapshotUtil.JSON_INCREMENTAL) : null;
+    }
+
+    private void writeIncrementalToSnapshot(JSONStringer stringer) throws IOException {
+        if (m_incremental == null) {
+            return;
+        }
+        try {
+            stringer.key(SnapshotUtil.JSON_INCREMENTAL).object();
+            stringer.keySymbolValuePair(SnapshotUtil.JSON_INCREMENTAL_MODE,
+                    m_incremental.optString(SnapshotUtil.JSON_INCREMENTAL_MODE));
+            if (m_incremental.has(SnapshotUtil.JSON_INCREMENTAL_PARENT)) {
+                stringer.keySymbolValuePair(SnapshotUtil.JSON_INCREMENTAL_PARENT,
+                        m_incremental.getString(SnapshotUtil.JSON_INCREMENTAL_PARENT));
+            }
+            if (m_incremental.has(SnapshotUtil.JSON_INCREMENTAL_BASE)) {
+                stringer.keySymbolValuePair(SnapshotUtil.JSON_INCREMENTAL_BASE,
+                        m_incremental.getString(SnapshotUtil.JSON_INCREMENTAL_BASE));
+            }
+            stringer.endObject();
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
     }
 
     private void writeExportSequenceNumbersToSnapshot(JSONStringer stringer) throws IOException {
@@ -318,6 +346,7 @@ public class ExtensibleSnapshotDigestData {
     public void writeToSnapshotDigest(JSONStringer stringer) throws IOException {
         writeExportSequenceNumbersToSnapshot(stringer);
         writeDRStateToSnapshot(stringer);
+        writeIncrementalToSnapshot(stringer);
     }
 
     public void mergeToZooKeeper(JSONObject jsonObj, VoltLogger log) throws JSONException {
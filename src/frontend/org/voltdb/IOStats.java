@@ -69,6 +69,8 @@ public class IOStats extends StatsSource {
         columns.add(new ColumnInfo("MESSAGES_READ", VoltType.BIGINT));
         columns.add(new ColumnInfo("BYTES_WRITTEN", VoltType.BIGINT));
         columns.add(new ColumnInfo("MESSAGES_WRITTEN", VoltType.BIGINT));
+        columns.add(new ColumnInfo("HEAP_MESSAGE_BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("POOLED_MESSAGE_BYTES", VoltType.BIGINT));
 
     }
 
@@ -83,6 +85,9 @@ public class IOStats extends StatsSource {
         rowValues[columnNameToIndex.get("MESSAGES_READ")] = counters[1];
         rowValues[columnNameToIndex.get("BYTES_WRITTEN")] = counters[2];
         rowValues[columnNameToIndex.get("MESSAGES_WRITTEN")] = counters[3];
+        // Connections outside the VoltNetwork, like the pico networks, don't track allocations
+        rowValues[columnNameToIndex.get("HEAP_MESSAGE_BYTES")] = counters.length > 4 ? counters[4] : 0L;
+        rowValues[columnNameToIndex.get("POOLED_MESSAGE_BYTES")] = counters.length > 5 ? counters[5] : 0L;
         super.updateStatsRow(rowKey, rowValues);
     }
 
@@ -17,8 +17,15 @@
 
 package org.voltdb;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcedureCallback;
 import org.voltdb.importer.AbstractImporter;
+import org.voltdb.importer.ImporterBatchCallback;
 import org.voltdb.importer.ImporterServerAdapter;
 import org.voltdb.importer.ImporterStatsCollector;
 
@@ -51,6 +58,58 @@ public class ImporterServerAdapterImpl implements ImporterServerAdapter {
                 .callProcedure(importer, m_statsCollector, procCallback, proc, fieldList);
     }
 
+    @Override
+    public int callProcedures(AbstractImporter importer, ImporterBatchCallback callback, String proc,
+            List<Object[]> paramsList) {
+        if (paramsList.isEmpty()) {
+            return 0;
+        }
+        List<ProcedureCallback> procCallbacks = null;
+        if (callback != null) {
+            final BatchCompletion completion = new BatchCompletion(callback, paramsList);
+            procCallbacks = new ArrayList<>(paramsList.size());
+            for (int i = 0; i < paramsList.size(); i++) {
+                procCallbacks.add(completion.callbackFor(i));
+            }
+        }
+        return getInternalConnectionHandler()
+                .callProcedures(importer, m_statsCollector, proc, paramsList, procCallbacks);
+    }
+
+    /**
+     * Gathers the responses of a batch, the batch's callback is called by whichever
+     * thread delivers the last of them
+     */
+    private static class BatchCompletion {
+        private final ImporterBatchCallback m_callback;
+        private final List<Object[]> m_paramsList;
+        private final ClientResponse[] m_responses;
+        private final AtomicInteger m_outstanding;
+
+        private BatchCompletion(ImporterBatchCallback callback, List<Object[]> paramsList) {
+            m_callback = callback;
+            m_paramsList = paramsList;
+            m_responses = new ClientResponse[paramsList.size()];
+            m_outstanding = new AtomicInteger(paramsList.size());
+        }
+
+        private ProcedureCallback callbackFor(final int index) {
+            return new ProcedureCallback() {
+                @Override
+                public void clientCallback(ClientResponse response) throws Exception {
+                    // The invocation is resubmitted, its next response counts
+                    if (response.getStatus() == ClientResponse.RESPONSE_UNKNOWN) {
+                        return;
+                    }
+                    m_responses[index] = response;
+                    if (m_outstanding.decrementAndGet() == 0) {
+                        m_callback.batchCompleted(m_paramsList, Arrays.asList(m_responses));
+                    }
+                }
+            };
+        }
+    }
+
     private InternalConnectionHandler getInternalConnectionHandler() {
         return VoltDB.instance().getClientInterface().getInternalConnectionHandler();
     }
@@ -64,4 +123,9 @@ public class ImporterServerAdapterImpl implements ImporterServerAdapter {
     public void reportQueued(String importerName, String procName) {
         m_statsCollector.reportQueued(importerName, procName);
     }
+
+    @Override
+    public void reportBatch(String importerName, String procName, int queued, int failed) {
+        m_statsCollector.reportBatch(importerName, procName, queued, failed);
+    }
 }
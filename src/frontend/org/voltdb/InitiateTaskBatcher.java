@@ -0,0 +1,107 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voltcore.messaging.Mailbox;
+import org.voltdb.messaging.Iv2InitiateTaskBatchMessage;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+
+/**
+ * Collects the single-partition initiations a client connection dispatches while
+ * handling one network read, grouped by initiator, so each initiator gets them as
+ * one message instead of one per transaction. Initiations for an initiator keep
+ * the order they were dispatched in. Not thread safe, owned by the connection's
+ * input handler and only used from its network thread.
+ */
+final class InitiateTaskBatcher {
+    // Most initiations sent to one initiator in a single message
+    static final int MAX_BATCH_SIZE = Integer.getInteger("SP_INITIATE_BATCH_SIZE", 128);
+
+    private static final class Destination {
+        final long m_hsId;
+        List<Iv2InitiateTaskMessage> m_tasks = new ArrayList<Iv2InitiateTaskMessage>();
+
+        Destination(long hsId) {
+            m_hsId = hsId;
+        }
+    }
+
+    private final Mailbox m_mailbox;
+    // Few initiators per connection in practice, a scan beats hashing boxed HSIds
+    private final ArrayList<Destination> m_destinations = new ArrayList<Destination>();
+    private Destination m_last;
+    private int m_pending = 0;
+
+    InitiateTaskBatcher(Mailbox mailbox) {
+        m_mailbox = mailbox;
+    }
+
+    void add(long initiatorHSId, Iv2InitiateTaskMessage task) {
+        Destination dest = m_last;
+        if (dest == null || dest.m_hsId != initiatorHSId) {
+            dest = null;
+            for (Destination d : m_destinations) {
+                if (d.m_hsId == initiatorHSId) {
+                    dest = d;
+                    break;
+                }
+            }
+            if (dest == null) {
+                dest = new Destination(initiatorHSId);
+                m_destinations.add(dest);
+            }
+            m_last = dest;
+        }
+        dest.m_tasks.add(task);
+        m_pending++;
+        if (dest.m_tasks.size() >= MAX_BATCH_SIZE) {
+            send(dest);
+        }
+    }
+
+    /**
+     * Send everything collected since the last flush.
+     */
+    void flush() {
+        if (m_pending == 0) {
+            return;
+        }
+        for (Destination dest : m_destinations) {
+            if (!dest.m_tasks.isEmpty()) {
+                send(dest);
+            }
+        }
+        assert(m_pending == 0);
+    }
+
+    private void send(Destination dest) {
+        final List<Iv2InitiateTaskMessage> tasks = dest.m_tasks;
+        m_pending -= tasks.size();
+        if (tasks.size() == 1) {
+            m_mailbox.send(dest.m_hsId, tasks.get(0));
+            tasks.clear();
+        } else {
+            // The message owns the list from here on
+            m_mailbox.send(dest.m_hsId, new Iv2InitiateTaskBatchMessage(tasks));
+            dest.m_tasks = new ArrayList<Iv2InitiateTaskMessage>(tasks.size());
+        }
+    }
+}
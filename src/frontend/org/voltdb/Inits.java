@@ -452,7 +452,7 @@ public class Inits {
                 if (m_config.m_isEnterprise) {
                     try {
                         Class<?> loggerClass = MiscUtils.loadProClass("org.voltdb.CommandLogImpl",
-                                                                   "Command logging", false);
+                                                                   "Command logging", true);
                         if (loggerClass != null) {
                             final Constructor<?> constructor = loggerClass.getConstructor(boolean.class,
                                                                                           int.class,
@@ -464,11 +464,23 @@ public class Inits {
                                                                                        logConfig.getMaxtxns(),
                                                                                        VoltDB.instance().getCommandLogPath(),
                                                                                        VoltDB.instance().getCommandLogSnapshotPath());
+                        } else {
+                            // Not silent, an enterprise build is expected to have it
+                            hostLog.warn("Cannot load org.voltdb.CommandLogImpl in VoltDB enterprise edition. " +
+                                         "Command logging will use the local command log instead.");
                         }
                     } catch (Exception e) {
                         VoltDB.crashLocalVoltDB("Unable to instantiate command log", true, e);
                     }
                 }
+                if (!m_rvdb.m_commandLog.isEnabled()) {
+                    // No enterprise implementation available, use the local group-commit log
+                    m_rvdb.m_commandLog = new LocalCommandLog(logConfig.getSynchronous(),
+                                                              logConfig.getFsyncinterval(),
+                                                              logConfig.getMaxtxns(),
+                                                              VoltDB.instance().getCommandLogPath(),
+                                                              VoltDB.instance().getCommandLogSnapshotPath());
+                }
             }
         }
     }
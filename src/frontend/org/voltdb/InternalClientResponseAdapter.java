@@ -20,6 +20,7 @@ package org.voltdb;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
@@ -169,61 +170,109 @@ public class InternalClientResponseAdapter implements Connection, WriteStream {
             final AuthSystem.AuthUser user,
             final int partition, final long nowNanos) {
 
-        if (!m_partitionExecutor.containsKey(partition)) {
-            m_partitionExecutor.putIfAbsent(partition, CoreUtils.getSingleThreadExecutor("InternalHandlerExecutor - " + partition));
+        final ExecutorService executor = getPartitionExecutor(partition);
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    prepareSubmission(kattrs);
+                    submitTransaction(kattrs, procName, catProc, proccb, statsCollector, task, user, partition);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            m_logger.error("Failed to submit transaction to the partition queue.", ex);
+            return false;
         }
 
-        final InvocationDispatcher dispatcher = getClientInterface().getDispatcher();
+        return true;
+    }
+
+    /**
+     * Submit the transactions of a batch, all of the same procedure and partition, in one
+     * task on the partition's executor. The callbacks are given in the order of the tasks,
+     * the list may be null.
+     */
+    public boolean createTransactions(final InternalAdapterTaskAttributes kattrs,
+            final String procName,
+            final Procedure catProc,
+            final List<ProcedureCallback> proccbs,
+            final InternalConnectionStatsCollector statsCollector,
+            final List<StoredProcedureInvocation> tasks,
+            final AuthSystem.AuthUser user,
+            final int partition, final long nowNanos) {
 
-        ExecutorService executor = m_partitionExecutor.get(partition);
+        final ExecutorService executor = getPartitionExecutor(partition);
         try {
             executor.submit(new Runnable() {
                 @Override
                 public void run() {
-                    kattrs.setBackPressure(hasBackPressure());
-                    if (!m_internalConnectionIds.containsKey(kattrs.getName())) {
-                        m_internalConnectionIds.putIfAbsent(kattrs.getName(), VoltProtocolHandler.getNextConnectionId());
-                    }
-                    submitTransaction();
-                }
-                public boolean submitTransaction() {
-                    final long handle = nextHandle();
-                    task.setClientHandle(handle);
-                    final InternalCallback cb = new InternalCallback(
-                            kattrs, catProc, task, procName, partition, proccb, statsCollector, user, handle);
-                    m_callbacks.put(handle, cb);
-
-                    ClientResponseImpl r = dispatcher.dispatch(task, kattrs, InternalClientResponseAdapter.this, user, null);
-                    boolean bval = r == null || r.getStatus() == ClientResponse.SUCCESS;
-                    if (r != null) {
-                        try {
-                            cb.handleResponse(r);
-                        } catch (Exception e) {
-                            m_logger.error("failed to process dispatch response " + r.getStatusString(), e);
-                        } finally {
-                            m_callbacks.remove(handle);
-                        }
-                        return bval;
+                    prepareSubmission(kattrs);
+                    for (int i = 0; i < tasks.size(); i++) {
+                        submitTransaction(kattrs, procName, catProc, proccbs == null ? null : proccbs.get(i),
+                                statsCollector, tasks.get(i), user, partition);
                     }
-
-                    //Submit the transaction.
-                    if (!bval) {
-                        // Supposedly this will never happen and is OK to ignore from stats collection perspective.
-                        // Hence it is OK that this is not getting reported to callbacks.
-                        m_logger.error("Failed to submit transaction.");
-                        m_callbacks.remove(handle);
-                    }
-                    return bval;
                 }
             });
         } catch (RejectedExecutionException ex) {
-            m_logger.error("Failed to submit transaction to the partition queue.", ex);
+            m_logger.error("Failed to submit transactions to the partition queue.", ex);
             return false;
         }
 
         return true;
     }
 
+    private ExecutorService getPartitionExecutor(int partition) {
+        if (!m_partitionExecutor.containsKey(partition)) {
+            m_partitionExecutor.putIfAbsent(partition, CoreUtils.getSingleThreadExecutor("InternalHandlerExecutor - " + partition));
+        }
+        return m_partitionExecutor.get(partition);
+    }
+
+    private void prepareSubmission(InternalAdapterTaskAttributes kattrs) {
+        kattrs.setBackPressure(hasBackPressure());
+        if (!m_internalConnectionIds.containsKey(kattrs.getName())) {
+            m_internalConnectionIds.putIfAbsent(kattrs.getName(), VoltProtocolHandler.getNextConnectionId());
+        }
+    }
+
+    private boolean submitTransaction(InternalAdapterTaskAttributes kattrs,
+            String procName,
+            Procedure catProc,
+            ProcedureCallback proccb,
+            InternalConnectionStatsCollector statsCollector,
+            StoredProcedureInvocation task,
+            AuthSystem.AuthUser user,
+            int partition) {
+        final InvocationDispatcher dispatcher = getClientInterface().getDispatcher();
+        final long handle = nextHandle();
+        task.setClientHandle(handle);
+        final InternalCallback cb = new InternalCallback(
+                kattrs, catProc, task, procName, partition, proccb, statsCollector, user, handle);
+        m_callbacks.put(handle, cb);
+
+        ClientResponseImpl r = dispatcher.dispatch(task, kattrs, this, user, null);
+        boolean bval = r == null || r.getStatus() == ClientResponse.SUCCESS;
+        if (r != null) {
+            try {
+                cb.handleResponse(r);
+            } catch (Exception e) {
+                m_logger.error("failed to process dispatch response " + r.getStatusString(), e);
+            } finally {
+                m_callbacks.remove(handle);
+            }
+            return bval;
+        }
+
+        //Submit the transaction.
+        if (!bval) {
+            // Supposedly this will never happen and is OK to ignore from stats collection perspective.
+            // Hence it is OK that this is not getting reported to callbacks.
+            m_logger.error("Failed to submit transaction.");
+            m_callbacks.remove(handle);
+        }
+        return bval;
+    }
+
     /**
      * @param connectionId    The connection ID for this adapter, needs to be unique for this
      *                        node.
@@ -17,6 +17,10 @@
 
 package org.voltdb;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -193,6 +197,108 @@ public class InternalConnectionHandler {
         return true;
     }
 
+    /**
+     * Invoke the procedure once for each of the parameter sets. The procedure is looked up once
+     * for the batch and the invocations are grouped by partition, each partition's group is
+     * submitted to the partition in one go. The callbacks, if any, are given in the order of
+     * the parameter sets. Invocations that can't be queued are completed right away with a
+     * GRACEFUL_FAILURE response, without being reported to the stats collector.
+     *
+     * @return the number of invocations queued
+     */
+    public int callProcedures(InternalConnectionContext caller, InternalConnectionStatsCollector statsCollector,
+            String proc, List<Object[]> paramsList, List<ProcedureCallback> procCallbacks) {
+        Procedure catProc = InvocationDispatcher.getProcedureFromName(proc, getCatalogContext());
+        if (catProc == null) {
+            String fmt = "Cannot invoke procedure %s from streaming interface %s. Procedure not found.";
+            m_logger.rateLimitedLog(SUPPRESS_INTERVAL, Level.ERROR, null, fmt, proc, caller);
+            m_failedCount.addAndGet(paramsList.size());
+            for (int i = 0; i < paramsList.size(); i++) {
+                failInvocation(procCallbacks, i, "Procedure " + proc + " not found");
+            }
+            return 0;
+        }
+
+        //Indicate backpressure or not.
+        boolean b = hasBackPressure();
+        caller.setBackPressure(b);
+        if (b) {
+            applyBackPressure();
+        }
+
+        // Tasks of each partition, with their callbacks
+        final Map<Integer, List<StoredProcedureInvocation>> partitionTasks = new HashMap<>();
+        final Map<Integer, List<ProcedureCallback>> partitionCallbacks = new HashMap<>();
+        for (int i = 0; i < paramsList.size(); i++) {
+            StoredProcedureInvocation task = new StoredProcedureInvocation();
+            task.setProcName(proc);
+            task.setParams(paramsList.get(i));
+            try {
+                task = MiscUtils.roundTripForCL(task);
+                task.setClientHandle(m_adapter.connectionId());
+            } catch (Exception e) {
+                String fmt = "Cannot invoke procedure %s from streaming interface %s. failed to create task.";
+                m_logger.rateLimitedLog(SUPPRESS_INTERVAL, Level.ERROR, null, fmt, proc, caller);
+                m_failedCount.incrementAndGet();
+                failInvocation(procCallbacks, i, "Failed to create the task");
+                continue;
+            }
+            int partition = -1;
+            try {
+                partition = InvocationDispatcher.getPartitionForProcedure(catProc, task);
+            } catch (Exception e) {
+                String fmt = "Can not invoke procedure %s from streaming interface %s. Partition not found.";
+                m_logger.rateLimitedLog(SUPPRESS_INTERVAL, Level.ERROR, e, fmt, proc, caller);
+                m_failedCount.incrementAndGet();
+                failInvocation(procCallbacks, i, "Partition not found");
+                continue;
+            }
+            List<StoredProcedureInvocation> tasks = partitionTasks.get(partition);
+            if (tasks == null) {
+                tasks = new ArrayList<>();
+                partitionTasks.put(partition, tasks);
+                partitionCallbacks.put(partition, procCallbacks == null ? null : new ArrayList<ProcedureCallback>());
+            }
+            tasks.add(task);
+            if (procCallbacks != null) {
+                partitionCallbacks.get(partition).add(procCallbacks.get(i));
+            }
+        }
+
+        InternalAdapterTaskAttributes kattrs = new InternalAdapterTaskAttributes(caller,  m_adapter.connectionId());
+
+        final AuthUser user = getCatalogContext().authSystem.getImporterUser();
+
+        int queued = 0;
+        for (Map.Entry<Integer, List<StoredProcedureInvocation>> e : partitionTasks.entrySet()) {
+            final List<StoredProcedureInvocation> tasks = e.getValue();
+            final List<ProcedureCallback> callbacks = partitionCallbacks.get(e.getKey());
+            if (!m_adapter.createTransactions(kattrs, proc, catProc, callbacks, statsCollector, tasks, user,
+                    e.getKey(), System.nanoTime())) {
+                m_failedCount.addAndGet(tasks.size());
+                for (int i = 0; i < tasks.size(); i++) {
+                    failInvocation(callbacks, i, "Failed to submit the transaction");
+                }
+                continue;
+            }
+            queued += tasks.size();
+        }
+        m_submitSuccessCount.addAndGet(queued);
+        return queued;
+    }
+
+    private void failInvocation(List<ProcedureCallback> procCallbacks, int index, String reason) {
+        ProcedureCallback cb = procCallbacks == null ? null : procCallbacks.get(index);
+        if (cb == null) {
+            return;
+        }
+        try {
+            cb.clientCallback(new ClientResponseImpl(ClientResponse.GRACEFUL_FAILURE, new VoltTable[0], reason));
+        } catch (Exception e) {
+            m_logger.error("Failed to complete an invocation that could not be queued", e);
+        }
+    }
+
     private boolean hasBackPressure() {
         final boolean b = m_adapter.hasBackPressure();
         int prev = m_backpressureIndication.get();
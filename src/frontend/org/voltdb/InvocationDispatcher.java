@@ -281,6 +281,21 @@ public final class InvocationDispatcher {
             Connection ccxn,
             AuthUser user,
             OverrideCheck bypass)
+    {
+        return dispatch(task, handler, ccxn, user, bypass, null);
+    }
+
+    /**
+     * @param batcher if not null, single-partition initiations are collected here
+     * instead of being sent right away, the caller must flush it
+     */
+    final ClientResponseImpl dispatch(
+            StoredProcedureInvocation task,
+            InvocationClientHandler handler,
+            Connection ccxn,
+            AuthUser user,
+            OverrideCheck bypass,
+            InitiateTaskBatcher batcher)
     {
         final long nowNanos = System.nanoTime();
                 // Deserialize the client's request and map to a catalog stored procedure
@@ -298,6 +313,11 @@ public final class InvocationDispatcher {
             return unexpectedFailureResponse(errorMessage, task.clientHandle);
         }
 
+        // Anything that isn't batched must not overtake the initiations batched before it
+        if (batcher != null && (catProc.getSystemproc() || !catProc.getSinglepartition() || catProc.getEverysite())) {
+            batcher.flush();
+        }
+
         ClientResponseImpl error = null;
 
         // Check for pause mode restrictions before proceeding any further
@@ -487,13 +507,17 @@ public final class InvocationDispatcher {
             return getMispartitionedErrorResponse(task, catProc, e);
         }
         boolean success = createTransaction(handler.connectionId(),
+                        Iv2InitiateTaskMessage.UNUSED_MP_TXNID,
+                        0, //unused timestammp
                         task,
                         catProc.getReadonly(),
                         catProc.getSinglepartition(),
                         catProc.getEverysite(),
                         partition,
                         task.getSerializedSize(),
-                        nowNanos);
+                        nowNanos,
+                        false,  // is for replay.
+                        batcher);
         if (!success) {
             // when VoltDB.crash... is called, we close off the client interface
             // and it might not be possible to create new transactions.
@@ -1785,6 +1809,25 @@ public final class InvocationDispatcher {
             final int messageSize,
             long nowNanos,
             final boolean isForReplay)
+    {
+        return createTransaction(connectionId, txnId, uniqueId, invocation, isReadOnly,
+                isSinglePartition, isEveryPartition, partition, messageSize, nowNanos,
+                isForReplay, null);
+    }
+
+    private boolean createTransaction(
+            final long connectionId,
+            final long txnId,
+            final long uniqueId,
+            final StoredProcedureInvocation invocation,
+            final boolean isReadOnly,
+            final boolean isSinglePartition,
+            final boolean isEveryPartition,
+            final int partition,
+            final int messageSize,
+            long nowNanos,
+            final boolean isForReplay,
+            final InitiateTaskBatcher batcher)
     {
         assert(!isSinglePartition || (partition >= 0));
         final ClientInterfaceHandleManager cihm = m_cihm.get(connectionId);
@@ -1843,7 +1886,11 @@ public final class InvocationDispatcher {
                     isForReplay);
 
         Iv2Trace.logCreateTransaction(workRequest);
-        m_mailbox.send(initiatorHSId, workRequest);
+        if (batcher != null && isSinglePartition && !isEveryPartition) {
+            batcher.add(initiatorHSId, workRequest);
+        } else {
+            m_mailbox.send(initiatorHSId, workRequest);
+        }
         return true;
     }
 
@@ -0,0 +1,597 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper_voltpatches.CreateMode;
+import org.apache.zookeeper_voltpatches.ZooDefs.Ids;
+import org.voltcore.logging.Level;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.messaging.HostMessenger;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.InstanceId;
+import org.voltcore.utils.Pair;
+import org.voltdb.iv2.MpInitiator;
+import org.voltdb.iv2.TransactionTask;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+
+/**
+ * Group commit command log that writes to preallocated {@link CommandLogSegment}s in
+ * the command log directory.
+ *
+ * Site threads serialize invocations into a shared pending buffer and register the
+ * transaction with their DurabilityListener. A dedicated writer thread swaps the
+ * buffer out once per fsync interval (or earlier when maxTxns or the flush threshold
+ * is reached), writes and forces it, and then hands the completion checks for that
+ * batch back to each scheduler. With synchronous logging the schedulers only execute
+ * a transaction once its batch is durable; with asynchronous logging they execute
+ * immediately and are only throttled when the writer falls too far behind.
+ *
+ * Segments are retired when a truncation snapshot covers every transaction in them.
+ */
+public class LocalCommandLog implements CommandLog, SnapshotCompletionInterest {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    // Size of each preallocated segment file
+    static final long SEGMENT_BYTES = Long.getLong("COMMANDLOG_SEGMENT_BYTES", 64L * 1024 * 1024);
+    // Flush a batch early once this many bytes are pending
+    static final int FLUSH_THRESHOLD_BYTES = 4 * 1024 * 1024;
+    // Asynchronous logging applies backpressure above this many unwritten bytes
+    static final long MAX_ASYNC_UNWRITTEN_BYTES = 64L * 1024 * 1024;
+    private static final int INITIAL_BUFFER_BYTES = 256 * 1024;
+
+    private static final ListenableFuture<Object> COMPLETED_FUTURE = Futures.immediateFuture(null);
+
+    private final boolean m_synchronous;
+    private final int m_fsyncIntervalMs;
+    private final int m_maxTxns;
+    private final File m_logDir;
+
+    /*
+     * State shared between the site threads and the writer thread, guarded by this.
+     */
+    private boolean m_initialized = false;
+    private boolean m_shutdown = false;
+    private ByteBuffer m_pending = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private ByteBuffer m_spare = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private int m_pendingTxns = 0;
+    private long m_unwrittenBytes = 0;
+    private long m_lastSyncNanos = 0;
+    private int m_lastFsyncIntervalMs = 0;
+    private final List<DurabilityListener> m_listeners = new ArrayList<DurabilityListener>();
+    private List<SettableFuture<Boolean>> m_pendingFaultWrites = new ArrayList<SettableFuture<Boolean>>();
+    private final List<SettableFuture<Object>> m_backpressureFutures = new ArrayList<SettableFuture<Object>>();
+
+    /*
+     * Writer thread state
+     */
+    private CommandLogSegment m_current;
+    private Future<CommandLogSegment> m_nextSegment;
+    private long m_nextSegmentId = 0;
+    private InstanceId m_instanceId;
+    private int m_segmentCount;
+    // Last txnId logged per partition, and the last MP txnId under MP_INIT_PID
+    private final Map<Integer, Long> m_lastLoggedTxnIds = new HashMap<Integer, Long>();
+
+    // Closed segments waiting for a truncation snapshot, oldest first, guarded by itself
+    private final ArrayDeque<CommandLogSegment> m_closedSegments = new ArrayDeque<CommandLogSegment>();
+    private volatile boolean m_truncationPending = false;
+
+    private final ExecutorService m_preallocator =
+            CoreUtils.getSingleThreadExecutor("Command log segment preallocator");
+    private final Thread m_writer;
+
+    public LocalCommandLog(boolean synchronous,
+                           int fsyncInterval,
+                           int maxTxns,
+                           String logPath,
+                           String snapshotPath)
+    {
+        m_synchronous = synchronous;
+        m_fsyncIntervalMs = fsyncInterval;
+        m_maxTxns = maxTxns;
+        m_logDir = new File(logPath);
+
+        // The writer runs from construction so that transactions logged before init()
+        // (e.g. during replay, which is covered by the truncation snapshot that precedes
+        // init) still get their durability notifications.
+        m_writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWriter();
+            }
+        }, "Command log writer");
+        m_writer.setDaemon(true);
+        m_writer.start();
+    }
+
+    @Override
+    public void init(int logSize, long txnId, int partitionCount, String coreBinding,
+                     Map<Integer, Long> perPartitionTxnId)
+    {
+        initialize(logSize, txnId, perPartitionTxnId);
+    }
+
+    @Override
+    public void initForRejoin(int logSize, long txnId, int partitionCount, boolean isRejoin,
+                              String coreBinding, Map<Integer, Long> perPartitionTxnId)
+    {
+        initialize(logSize, txnId, perPartitionTxnId);
+    }
+
+    private void initialize(int logSizeMb, long txnId, Map<Integer, Long> perPartitionTxnId) {
+        m_segmentCount = (int)Math.max(2, (logSizeMb * 1024L * 1024L) / SEGMENT_BYTES);
+
+        if (!m_logDir.exists() && !m_logDir.mkdirs()) {
+            VoltDB.crashLocalVoltDB("Unable to create command log directory " + m_logDir, false, null);
+        }
+
+        // Any segments left in the directory have either been replayed and covered by
+        // the truncation snapshot taken at the end of recovery, or are obsolete because
+        // this node is rejoining.
+        for (File f : CommandLogSegment.listSegmentFiles(m_logDir)) {
+            m_nextSegmentId = Math.max(m_nextSegmentId, CommandLogSegment.idFromFileName(f.getName()) + 1);
+            if (!f.delete()) {
+                VoltDB.crashLocalVoltDB("Unable to delete old command log segment " + f, false, null);
+            }
+        }
+
+        final HostMessenger messenger = VoltDB.instance().getHostMessenger();
+        m_instanceId = messenger != null ? messenger.getInstanceId() : new InstanceId(0, System.currentTimeMillis());
+
+        if (perPartitionTxnId != null) {
+            m_lastLoggedTxnIds.putAll(perPartitionTxnId);
+        }
+        m_lastLoggedTxnIds.put(MpInitiator.MP_INIT_PID, txnId);
+
+        try {
+            m_current = CommandLogSegment.preallocate(m_logDir, m_nextSegmentId++, SEGMENT_BYTES);
+            m_current.activate(m_instanceId, m_lastLoggedTxnIds);
+        } catch (IOException e) {
+            VoltDB.crashLocalVoltDB("Unable to create command log segment in " + m_logDir, true, e);
+        }
+        scheduleNextSegment();
+
+        final SnapshotCompletionMonitor snapshotMonitor = VoltDB.instance().getSnapshotCompletionMonitor();
+        if (snapshotMonitor != null) {
+            snapshotMonitor.addInterest(this);
+        }
+
+        synchronized (this) {
+            m_initialized = true;
+        }
+        LOG.info("Started " + (m_synchronous ? "synchronous" : "asynchronous") +
+                 " command logging to " + m_logDir + " with " + m_segmentCount + " segments of " +
+                 (SEGMENT_BYTES / 1024) + "KB and an fsync interval of " + m_fsyncIntervalMs + "ms");
+    }
+
+    @Override
+    public synchronized boolean needsInitialization() {
+        return !m_initialized;
+    }
+
+    @Override
+    public ListenableFuture<Object> log(
+            Iv2InitiateTaskMessage message,
+            long spHandle,
+            int[] involvedPartitions,
+            DurabilityListener listener,
+            TransactionTask durabilityHandle)
+    {
+        synchronized (this) {
+            // Read-only transactions and dummy transactions only need to be ordered
+            // with the logged writes, there is nothing to replay.
+            if (m_initialized && message != null && !message.isReadOnly()) {
+                appendInvocation(message, spHandle, involvedPartitions);
+            }
+            listener.addTransaction(durabilityHandle);
+            m_pendingTxns++;
+            // Wake the writer when it may be idle or when the batch is big enough to flush early
+            if (m_pendingTxns == 1 || m_pendingTxns >= m_maxTxns ||
+                m_pending.position() >= FLUSH_THRESHOLD_BYTES) {
+                notifyAll();
+            }
+
+            if (m_synchronous) {
+                return null;
+            }
+            if (m_unwrittenBytes > MAX_ASYNC_UNWRITTEN_BYTES) {
+                final SettableFuture<Object> backpressure = SettableFuture.create();
+                m_backpressureFutures.add(backpressure);
+                return backpressure;
+            }
+            return COMPLETED_FUTURE;
+        }
+    }
+
+    // Must hold the lock on this
+    private void appendInvocation(Iv2InitiateTaskMessage message, long spHandle, int[] involvedPartitions) {
+        final int messageSize = message.getSerializedSize();
+        final int entrySize = CommandLogSegment.invocationEntrySize(messageSize, involvedPartitions);
+        ensurePendingCapacity(entrySize);
+
+        final int entryStart = m_pending.position();
+        m_pending.position(entryStart + CommandLogSegment.ENTRY_HEADER_BYTES);
+        m_pending.putLong(spHandle);
+        m_pending.putLong(message.getTxnId());
+        m_pending.putLong(message.getUniqueId());
+        if (involvedPartitions == null) {
+            m_pending.putInt(-1);
+        }
+        else {
+            m_pending.putInt(involvedPartitions.length);
+            for (int partition : involvedPartitions) {
+                m_pending.putInt(partition);
+            }
+        }
+
+        // The message asserts that it fills the buffer exactly
+        final ByteBuffer messageBuf = m_pending.duplicate();
+        messageBuf.limit(messageBuf.position() + messageSize);
+        try {
+            message.flattenToBuffer(messageBuf.slice());
+        } catch (IOException e) {
+            VoltDB.crashLocalVoltDB("Unable to serialize transaction for the command log", true, e);
+        }
+        m_pending.position(m_pending.position() + messageSize);
+
+        CommandLogSegment.sealEntry(m_pending, entryStart, CommandLogSegment.INVOCATION_ENTRY);
+        m_unwrittenBytes += entrySize;
+    }
+
+    // Must hold the lock on this
+    private void ensurePendingCapacity(int bytes) {
+        if (m_pending.remaining() < bytes) {
+            int capacity = m_pending.capacity();
+            while (capacity - m_pending.position() < bytes) {
+                capacity *= 2;
+            }
+            final ByteBuffer grown = ByteBuffer.allocate(capacity);
+            m_pending.flip();
+            grown.put(m_pending);
+            m_pending = grown;
+        }
+    }
+
+    @Override
+    public SettableFuture<Boolean> logIv2Fault(long writerHSId, Set<Long> survivorHSId,
+            int partitionId, long spHandle)
+    {
+        final SettableFuture<Boolean> written = SettableFuture.create();
+        synchronized (this) {
+            if (!m_initialized) {
+                written.set(false);
+                return written;
+            }
+            final int entrySize = CommandLogSegment.faultEntrySize(survivorHSId.size());
+            ensurePendingCapacity(entrySize);
+            final int entryStart = m_pending.position();
+            m_pending.position(entryStart + CommandLogSegment.ENTRY_HEADER_BYTES);
+            m_pending.putLong(writerHSId);
+            m_pending.putInt(partitionId);
+            m_pending.putLong(spHandle);
+            m_pending.putInt(survivorHSId.size());
+            for (long hsId : survivorHSId) {
+                m_pending.putLong(hsId);
+            }
+            CommandLogSegment.sealEntry(m_pending, entryStart, CommandLogSegment.FAULT_ENTRY);
+            m_unwrittenBytes += entrySize;
+            m_pendingFaultWrites.add(written);
+            notifyAll();
+        }
+        return written;
+    }
+
+    @Override
+    public synchronized void initializeLastDurableUniqueId(DurabilityListener listener, long uniqueId) {
+        listener.initializeLastDurableUniqueId(uniqueId);
+    }
+
+    @Override
+    public synchronized void registerDurabilityListener(DurabilityListener durabilityListener) {
+        m_listeners.add(durabilityListener);
+    }
+
+    private void runWriter() {
+        final long intervalNanos = TimeUnit.MILLISECONDS.toNanos(m_fsyncIntervalMs);
+        while (true) {
+            final ByteBuffer batch;
+            final List<Pair<DurabilityListener, CompletionChecks>> checks;
+            final List<SettableFuture<Boolean>> faultWrites;
+            final boolean writeBatch;
+            synchronized (this) {
+                try {
+                    while (!m_shutdown && m_pendingTxns == 0 && m_pendingFaultWrites.isEmpty()) {
+                        wait();
+                    }
+                    // Group commit: accumulate until the fsync interval since the last
+                    // sync has elapsed, unless a batch is already large enough.
+                    final long deadline = m_lastSyncNanos + intervalNanos;
+                    long now = System.nanoTime();
+                    while (!m_shutdown &&
+                           now < deadline &&
+                           m_pendingTxns < m_maxTxns &&
+                           m_pending.position() < FLUSH_THRESHOLD_BYTES &&
+                           m_pendingFaultWrites.isEmpty()) {
+                        TimeUnit.NANOSECONDS.timedWait(this, deadline - now);
+                        now = System.nanoTime();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (m_shutdown && m_pendingTxns == 0 && m_pendingFaultWrites.isEmpty()) {
+                    return;
+                }
+
+                batch = m_pending;
+                batch.flip();
+                m_pending = m_spare;
+                m_pending.clear();
+                m_spare = null;
+                m_pendingTxns = 0;
+                writeBatch = m_initialized;
+
+                checks = new ArrayList<Pair<DurabilityListener, CompletionChecks>>(m_listeners.size());
+                for (DurabilityListener listener : m_listeners) {
+                    checks.add(Pair.of(listener, listener.startNewTaskList(listener.getNumberOfTasks())));
+                }
+                faultWrites = m_pendingFaultWrites;
+                m_pendingFaultWrites = new ArrayList<SettableFuture<Boolean>>();
+            }
+
+            final int batchBytes = batch.remaining();
+            if (writeBatch) {
+                try {
+                    writeBatch(batch);
+                } catch (IOException e) {
+                    VoltDB.crashLocalVoltDB("Unable to write to the command log in " + m_logDir, true, e);
+                }
+            }
+
+            for (Pair<DurabilityListener, CompletionChecks> check : checks) {
+                check.getFirst().processDurabilityChecks(check.getSecond());
+            }
+            for (SettableFuture<Boolean> written : faultWrites) {
+                written.set(true);
+            }
+
+            synchronized (this) {
+                final long now = System.nanoTime();
+                m_lastFsyncIntervalMs = (int)TimeUnit.NANOSECONDS.toMillis(now - m_lastSyncNanos);
+                m_lastSyncNanos = now;
+                m_unwrittenBytes -= batchBytes;
+                batch.clear();
+                m_spare = batch;
+                if (m_unwrittenBytes <= MAX_ASYNC_UNWRITTEN_BYTES / 2 && !m_backpressureFutures.isEmpty()) {
+                    for (SettableFuture<Object> backpressure : m_backpressureFutures) {
+                        backpressure.set(null);
+                    }
+                    m_backpressureFutures.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a batch of whole entries to the log, rolling to a new segment whenever the
+     * next entry doesn't fit in the current one, and force it to disk.
+     */
+    private void writeBatch(ByteBuffer batch) throws IOException {
+        int chunkStart = batch.position();
+        int position = chunkStart;
+        while (position < batch.limit()) {
+            final int entryBytes = CommandLogSegment.ENTRY_HEADER_BYTES + batch.getInt(position);
+            if (position - chunkStart + entryBytes > m_current.remaining()) {
+                appendChunk(batch, chunkStart, position);
+                rollSegment(entryBytes);
+                chunkStart = position;
+            }
+            if (batch.get(position + 8) == CommandLogSegment.INVOCATION_ENTRY) {
+                final int payload = position + CommandLogSegment.ENTRY_HEADER_BYTES;
+                final long spHandle = batch.getLong(payload);
+                final long txnId = batch.getLong(payload + 8);
+                final boolean isSinglePartition = CommandLogSegment.isSinglePartitionTxnId(txnId);
+                m_current.noteInvocation(spHandle, txnId, isSinglePartition);
+                m_lastLoggedTxnIds.put(TxnEgo.getPartitionId(spHandle), spHandle);
+                if (!isSinglePartition) {
+                    m_lastLoggedTxnIds.put(MpInitiator.MP_INIT_PID, txnId);
+                }
+            }
+            position += entryBytes;
+        }
+        appendChunk(batch, chunkStart, position);
+        m_current.sync();
+    }
+
+    private void appendChunk(ByteBuffer batch, int start, int end) throws IOException {
+        if (end > start) {
+            final ByteBuffer chunk = batch.duplicate();
+            chunk.limit(end);
+            chunk.position(start);
+            m_current.append(chunk);
+        }
+    }
+
+    private void rollSegment(int minimumBytes) throws IOException {
+        CommandLogSegment next;
+        if (minimumBytes > SEGMENT_BYTES - CommandLogSegment.HEADER_BYTES) {
+            // Oversized entry, give it a segment of its own
+            next = CommandLogSegment.preallocate(m_logDir, m_nextSegmentId++,
+                                                 CommandLogSegment.HEADER_BYTES + minimumBytes);
+        }
+        else {
+            try {
+                next = m_nextSegment.get();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+            scheduleNextSegment();
+        }
+
+        m_current.sync();
+        m_current.close();
+        final int inUse;
+        synchronized (m_closedSegments) {
+            m_closedSegments.add(m_current);
+            inUse = m_closedSegments.size() + 1;
+        }
+        next.activate(m_instanceId, m_lastLoggedTxnIds);
+        m_current = next;
+
+        if (inUse >= m_segmentCount / 2) {
+            requestTruncationSnapshot(false);
+        }
+        if (inUse > m_segmentCount) {
+            LOG.rateLimitedLog(60, Level.WARN, null,
+                    "Command log is using %d segments, more than the %d configured by the log size. " +
+                    "Waiting for a truncation snapshot to retire old segments.", inUse, m_segmentCount);
+        }
+    }
+
+    private void scheduleNextSegment() {
+        final long segmentId = m_nextSegmentId++;
+        m_nextSegment = m_preallocator.submit(new Callable<CommandLogSegment>() {
+            @Override
+            public CommandLogSegment call() throws Exception {
+                return CommandLogSegment.preallocate(m_logDir, segmentId, SEGMENT_BYTES);
+            }
+        });
+    }
+
+    @Override
+    public CountDownLatch snapshotCompleted(SnapshotCompletionEvent event) {
+        if (event.truncationSnapshot && event.didSucceed) {
+            int retired = 0;
+            synchronized (m_closedSegments) {
+                while (!m_closedSegments.isEmpty() &&
+                       m_closedSegments.peek().isCoveredBy(event.partitionTxnIds, event.multipartTxnId)) {
+                    final CommandLogSegment segment = m_closedSegments.poll();
+                    try {
+                        segment.closeAndDelete();
+                        retired++;
+                    } catch (IOException e) {
+                        LOG.warn("Failed to delete truncated command log segment " + segment.file(), e);
+                    }
+                }
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Truncation snapshot " + event.nonce + " retired " + retired + " command log segments");
+            }
+            m_truncationPending = false;
+        }
+        return new CountDownLatch(0);
+    }
+
+    @Override
+    public void requestTruncationSnapshot(final boolean queueIfPending) {
+        if (m_truncationPending && !queueIfPending) {
+            return;
+        }
+        final HostMessenger messenger = VoltDB.instance().getHostMessenger();
+        if (messenger == null) {
+            return;
+        }
+        try {
+            messenger.getZK().create(VoltZK.request_truncation_snapshot_node, null,
+                                     Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL);
+            m_truncationPending = true;
+        } catch (Exception e) {
+            LOG.warn("Failed to request a command log truncation snapshot", e);
+        }
+    }
+
+    @Override
+    public void shutdown() throws InterruptedException {
+        synchronized (this) {
+            m_shutdown = true;
+            notifyAll();
+        }
+        m_writer.join();
+        m_preallocator.shutdown();
+
+        final SnapshotCompletionMonitor snapshotMonitor = VoltDB.instance().getSnapshotCompletionMonitor();
+        if (snapshotMonitor != null) {
+            snapshotMonitor.removeInterest(this);
+        }
+        try {
+            if (m_current != null) {
+                m_current.sync();
+                m_current.close();
+            }
+            // The spare segment was never activated, replay skips it but there is no
+            // reason to leave it around.
+            if (m_nextSegment != null) {
+                m_nextSegment.get().closeAndDelete();
+            }
+        } catch (Exception e) {
+            LOG.warn("Failed to close the command log cleanly", e);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isSynchronous() {
+        return m_synchronous;
+    }
+
+    @Override
+    public boolean canOfferTask() {
+        return !m_synchronous;
+    }
+
+    @Override
+    public void populateCommandLogStats(Map<String, Integer> columnNameToIndex, Object[] rowValues) {
+        final int inUse;
+        synchronized (m_closedSegments) {
+            inUse = m_closedSegments.size() + (m_current == null ? 0 : 1);
+        }
+        synchronized (this) {
+            rowValues[columnNameToIndex.get(CommandLogStats.StatName.OUTSTANDING_BYTES.name())] = m_unwrittenBytes;
+            rowValues[columnNameToIndex.get(CommandLogStats.StatName.OUTSTANDING_TXNS.name())] = (long)m_pendingTxns;
+            rowValues[columnNameToIndex.get(CommandLogStats.StatName.FSYNC_INTERVAL.name())] = m_lastFsyncIntervalMs;
+        }
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.IN_USE_SEGMENT_COUNT.name())] = inUse;
+        rowValues[columnNameToIndex.get(CommandLogStats.StatName.SEGMENT_COUNT.name())] = m_segmentCount;
+    }
+}
@@ -0,0 +1,297 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.messaging.HostMessenger;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.InstanceId;
+import org.voltcore.zk.ZKCountdownLatch;
+import org.voltdb.dtxn.TransactionCreator;
+import org.voltdb.iv2.Cartographer;
+import org.voltdb.iv2.MpInitiator;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.messaging.VoltDbMessageFactory;
+
+/**
+ * Replays the segments written by {@link LocalCommandLog}.
+ *
+ * Every replica logs the same single partition stream, so each partition is replayed
+ * only by the host that currently leads it. Multi-partition transactions appear in the
+ * log of every partition; the host running the MPI initiates each of them once, in
+ * txnId order, while partition leaders send a sentinel at the MP's position in their
+ * stream. The log is replayed as it's read, nothing is buffered. Transactions already
+ * included in the restored snapshot are skipped.
+ */
+public class LocalCommandLogReinitiator implements CommandLogReinitiator {
+    private static final VoltLogger LOG = new VoltLogger("LOGGING");
+
+    private final int m_hostId;
+    private final HostMessenger m_messenger;
+    private final int m_liveHostCount;
+    private final List<CommandLogSegment.Reader> m_segments = new ArrayList<CommandLogSegment.Reader>();
+
+    private Callback m_callback;
+    private TransactionCreator m_initiator;
+    private final Map<Integer, Long> m_snapshotTxnIds = new HashMap<Integer, Long>();
+    private long m_snapshotMpTxnId = Long.MIN_VALUE;
+    private volatile boolean m_replayedTxns = false;
+
+    public LocalCommandLogReinitiator(int hostId,
+                                      StartAction action,
+                                      HostMessenger messenger,
+                                      String clPath,
+                                      Set<Integer> liveHosts)
+    {
+        m_hostId = hostId;
+        m_messenger = messenger;
+        m_liveHostCount = liveHosts.size();
+
+        if (action.doesRecover() && clPath != null) {
+            try {
+                m_segments.addAll(CommandLogSegment.openAll(new File(clPath)));
+            } catch (IOException e) {
+                VoltDB.crashLocalVoltDB("Unable to read command log segments in " + clPath, true, e);
+            }
+            InstanceId instanceId = null;
+            for (CommandLogSegment.Reader segment : m_segments) {
+                if (instanceId != null && !instanceId.equals(segment.getInstanceId())) {
+                    VoltDB.crashLocalVoltDB("Command log segment " + segment.file() +
+                                            " was written by a different cluster instance", false, null);
+                }
+                instanceId = segment.getInstanceId();
+            }
+            LOG.info("Found " + m_segments.size() + " command log segments to replay in " + clPath);
+        }
+    }
+
+    @Override
+    public void setSnapshotTxnId(RestoreAgent.SnapshotInfo info) {
+        m_snapshotTxnIds.clear();
+        m_snapshotMpTxnId = Long.MIN_VALUE;
+        if (info != null) {
+            m_snapshotTxnIds.putAll(info.partitionToTxnId);
+            m_snapshotMpTxnId = info.txnId;
+        }
+    }
+
+    @Override
+    public void setCallback(Callback callback) {
+        m_callback = callback;
+    }
+
+    @Override
+    public void setInitiator(TransactionCreator initiator) {
+        m_initiator = initiator;
+    }
+
+    @Override
+    public void initPartitionTracking() {}
+
+    @Override
+    public void generateReplayPlan(long snapshotTimeStamp, long snapshotTxnId,
+            int newPartitionCount, boolean isMPINode) {
+        // The plan is derived from the partition leaders when replay starts
+    }
+
+    @Override
+    public void replay() {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!m_segments.isEmpty()) {
+                        replayLocalSegments();
+                    }
+                    awaitClusterReplay();
+                } catch (Exception e) {
+                    VoltDB.crashGlobalVoltDB("Command log replay failed", true, e);
+                }
+                if (m_callback != null) {
+                    m_callback.onReplayCompletion();
+                }
+            }
+        }, "Command log replay").start();
+    }
+
+    private void replayLocalSegments() throws IOException {
+        final Cartographer cartographer = VoltDB.instance().getCartograhper();
+        final Set<Integer> ledPartitions = new HashSet<Integer>();
+        for (int partitionId : cartographer.getPartitions()) {
+            if (partitionId != MpInitiator.MP_INIT_PID &&
+                CoreUtils.getHostIdFromHSId(cartographer.getHSIdForSinglePartitionMaster(partitionId)) == m_hostId) {
+                ledPartitions.add(partitionId);
+            }
+        }
+        final boolean isMpiHost =
+                CoreUtils.getHostIdFromHSId(cartographer.getHSIdForMultiPartitionInitiator()) == m_hostId;
+
+        final VoltDbMessageFactory factory = new VoltDbMessageFactory();
+        // Each partition logs the MPs in txnId order, so an MP with a higher txnId than
+        // the last one initiated is the next one, and anything lower was already initiated
+        long lastMpTxnId = m_snapshotMpTxnId;
+        long replayed = 0;
+
+        for (CommandLogSegment.Reader segment : m_segments) {
+            CommandLogSegment.Entry entry;
+            while ((entry = segment.next()) != null) {
+                if (entry.type != CommandLogSegment.INVOCATION_ENTRY) {
+                    continue;
+                }
+                final long spHandle = entry.getSpHandle();
+                final long txnId = entry.getTxnId();
+                final int partitionId = TxnEgo.getPartitionId(spHandle);
+
+                if (CommandLogSegment.isSinglePartitionTxnId(txnId)) {
+                    final Long snapshotTxnId = m_snapshotTxnIds.get(partitionId);
+                    if (!ledPartitions.contains(partitionId) ||
+                        (snapshotTxnId != null && spHandle <= snapshotTxnId)) {
+                        continue;
+                    }
+                    final Iv2InitiateTaskMessage msg =
+                            (Iv2InitiateTaskMessage)factory.createMessageFromBuffer(entry.getMessage(), -1);
+                    if (!m_initiator.createTransaction(ClientInterface.RESTORE_AGENT_CID,
+                                                       msg.getTxnId(),
+                                                       msg.getUniqueId(),
+                                                       msg.getStoredProcedureInvocation(),
+                                                       msg.isReadOnly(),
+                                                       true,
+                                                       false,
+                                                       partitionId,
+                                                       msg.getSerializedSize(),
+                                                       System.nanoTime())) {
+                        throw new IOException("Replayed transaction was rejected, the node is shutting down");
+                    }
+                    replayed++;
+                }
+                else {
+                    if (txnId <= m_snapshotMpTxnId) {
+                        continue;
+                    }
+                    if (ledPartitions.contains(partitionId)) {
+                        m_initiator.sendSentinel(entry.getUniqueId(), partitionId);
+                    }
+                    if (isMpiHost && txnId > lastMpTxnId) {
+                        lastMpTxnId = txnId;
+                        final Iv2InitiateTaskMessage msg =
+                                (Iv2InitiateTaskMessage)factory.createMessageFromBuffer(entry.getMessage(), -1);
+                        if (!m_initiator.createTransaction(ClientInterface.RESTORE_AGENT_CID,
+                                                           msg.getTxnId(),
+                                                           msg.getUniqueId(),
+                                                           msg.getStoredProcedureInvocation(),
+                                                           msg.isReadOnly(),
+                                                           false,
+                                                           false,
+                                                           MpInitiator.MP_INIT_PID,
+                                                           msg.getSerializedSize(),
+                                                           System.nanoTime())) {
+                            throw new IOException("Replayed transaction was rejected, the node is shutting down");
+                        }
+                        replayed++;
+                    }
+                }
+            }
+        }
+
+        for (int partitionId : ledPartitions) {
+            m_initiator.sendEOLMessage(partitionId);
+        }
+        if (isMpiHost) {
+            m_initiator.sendEOLMessage(MpInitiator.MP_INIT_PID);
+        }
+
+        m_replayedTxns = replayed > 0;
+        LOG.info("Initiated " + replayed + " transactions from the local command log for partitions " +
+                 ledPartitions + (isMpiHost ? " and the MPI" : ""));
+    }
+
+    /**
+     * Don't report completion until every host has initiated its share of the log, so
+     * that the truncation snapshot taken after replay includes all of it.
+     */
+    private void awaitClusterReplay() throws Exception {
+        final ZKCountdownLatch latch =
+                new ZKCountdownLatch(m_messenger.getZK(), VoltZK.commandlog_replay_barrier, m_liveHostCount);
+        latch.countDown(true);
+        latch.await();
+    }
+
+    @Override
+    public boolean hasReplayedSegments() {
+        return !m_segments.isEmpty();
+    }
+
+    @Override
+    public boolean hasReplayedTxns() {
+        return m_replayedTxns;
+    }
+
+    @Override
+    public Long getMaxLastSeenTxn() {
+        final Map<Integer, Long> lastSeen = getMaxLastSeenTxnByPartition();
+        if (lastSeen == null || lastSeen.isEmpty()) {
+            return null;
+        }
+        return Collections.max(lastSeen.values());
+    }
+
+    @Override
+    public Map<Integer, Long> getMaxLastSeenTxnByPartition() {
+        if (m_segments.isEmpty()) {
+            return null;
+        }
+        // The oldest segment records the last txn of each partition before the log
+        // starts, a snapshot older than that leaves a gap.
+        final Map<Integer, Long> lastSeen = new HashMap<Integer, Long>(m_segments.get(0).getPreviousTxnIds());
+        lastSeen.remove(MpInitiator.MP_INIT_PID);
+        return lastSeen;
+    }
+
+    @Override
+    public InstanceId getInstanceId() {
+        return m_segments.isEmpty() ? null : m_segments.get(0).getInstanceId();
+    }
+
+    @Override
+    public void returnAllSegments() {
+        for (CommandLogSegment.Reader segment : m_segments) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close command log segment " + segment.file(), e);
+            }
+        }
+        m_segments.clear();
+    }
+
+    @Override
+    public boolean checkAndBalancePartitions() {
+        return true;
+    }
+}
@@ -0,0 +1,138 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.compiler.AdHocCompilerCache;
+import org.voltdb.compiler.AdHocCompilerCache.Level;
+
+import com.google_voltpatches.common.cache.CacheStats;
+
+/**
+ * Collects use of the ad hoc plan cache of the current catalog, one row for
+ * the literal (level 1) cache and one for the core (level 2) cache.
+ */
+public class PlanCacheStatsCollector extends StatsSource {
+
+    enum CacheLevel {
+        LITERAL,
+        CORE
+    }
+
+    private volatile AdHocCompilerCache m_cache = null;
+
+    /**
+     * Whether to return results in intervals since polling or since the beginning
+     */
+    private boolean m_interval = false;
+
+    /**
+     * The cache being reported on and its counters as of the last interval poll,
+     * indexed by CacheLevel
+     */
+    private AdHocCompilerCache m_lastCache = null;
+    private final long[] m_lastLookups = new long[CacheLevel.values().length];
+    private final long[] m_lastHits = new long[CacheLevel.values().length];
+    private final long[] m_lastInsertions = new long[CacheLevel.values().length];
+    private final long[] m_lastEvictions = new long[CacheLevel.values().length];
+
+    public PlanCacheStatsCollector() {
+        super(false);
+    }
+
+    /**
+     * Report on this cache from now on, called when planning starts for a new catalog.
+     */
+    public void setCache(AdHocCompilerCache cache) {
+        m_cache = cache;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("CACHE_LEVEL", VoltType.STRING));
+        columns.add(new ColumnInfo("ENTRIES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MEMORY_USED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MEMORY_LIMIT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("LOOKUPS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("HITS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("HIT_RATE", VoltType.FLOAT));
+        columns.add(new ColumnInfo("INSERTIONS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("EVICTIONS", VoltType.BIGINT));
+    }
+
+    /**
+     * Memory columns are in kilobytes like @Statistics MEMORY, HIT_RATE is a percentage.
+     */
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        final CacheLevel cacheLevel = (CacheLevel) rowKey;
+        final int idx = cacheLevel.ordinal();
+        final AdHocCompilerCache cache = m_lastCache;
+        final Level<?> level = cacheLevel == CacheLevel.LITERAL ? cache.getLiteralCache() : cache.getCoreCache();
+        final CacheStats stats = level.getStats();
+
+        long lookups = stats.requestCount();
+        long hits = stats.hitCount();
+        long insertions = level.getInsertions();
+        long evictions = stats.evictionCount();
+        if (m_interval) {
+            lookups -= m_lastLookups[idx];
+            hits -= m_lastHits[idx];
+            insertions -= m_lastInsertions[idx];
+            evictions -= m_lastEvictions[idx];
+            m_lastLookups[idx] += lookups;
+            m_lastHits[idx] += hits;
+            m_lastInsertions[idx] += insertions;
+            m_lastEvictions[idx] += evictions;
+        }
+
+        rowValues[columnNameToIndex.get("CACHE_LEVEL")] = cacheLevel.name();
+        rowValues[columnNameToIndex.get("ENTRIES")] = level.getEntries();
+        rowValues[columnNameToIndex.get("MEMORY_USED")] = level.getMemoryUsed() / 1024;
+        rowValues[columnNameToIndex.get("MEMORY_LIMIT")] = level.getMaxMemory() / 1024;
+        rowValues[columnNameToIndex.get("LOOKUPS")] = lookups;
+        rowValues[columnNameToIndex.get("HITS")] = hits;
+        rowValues[columnNameToIndex.get("HIT_RATE")] = lookups > 0 ? hits * 100.0 / lookups : 0.0;
+        rowValues[columnNameToIndex.get("INSERTIONS")] = insertions;
+        rowValues[columnNameToIndex.get("EVICTIONS")] = evictions;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        m_interval = interval;
+        final AdHocCompilerCache cache = m_cache;
+        if (cache == null) {
+            return new ArrayList<Object>().iterator();
+        }
+        if (cache != m_lastCache) {
+            // A new catalog starts counting from scratch
+            m_lastCache = cache;
+            Arrays.fill(m_lastLookups, 0);
+            Arrays.fill(m_lastHits, 0);
+            Arrays.fill(m_lastInsertions, 0);
+            Arrays.fill(m_lastEvictions, 0);
+        }
+        return new ArrayList<Object>(Arrays.asList(CacheLevel.values())).iterator();
+    }
+}
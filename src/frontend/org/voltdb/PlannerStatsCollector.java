@@ -25,7 +25,8 @@ import org.voltcore.utils.CoreUtils;
 import org.voltdb.VoltTable.ColumnInfo;
 
 /**
- * Collects global cache use stats
+ * Collects global cache use stats. The global (ad hoc) planner's collector is
+ * shared by all planner threads.
  */
 public class PlannerStatsCollector extends StatsSource {
 
@@ -39,7 +40,12 @@ public class PlannerStatsCollector extends StatsSource {
     /**
      * Record timings every N invocations
      */
-    final long m_collectionFrequency = 20;
+    final long m_collectionFrequency;
+
+    /**
+     * Returned by startStatsCollection() for invocations that aren't timed
+     */
+    public static final long NOT_TIMED = Long.MIN_VALUE;
 
     /**
      * Flag indicating cache disposition of a planned statement.
@@ -96,9 +102,10 @@ public class PlannerStatsCollector extends StatsSource {
     long m_lastCacheMisses = 0;
 
     /**
-     * Time of last planning start
+     * Number of timed invocations
      */
-    Long m_currentStartTime = null;
+    long m_timedInvocations = 0;
+    long m_lastTimedInvocations = 0;
 
     /**
      * Total amount of planning time
@@ -125,6 +132,25 @@ public class PlannerStatsCollector extends StatsSource {
     long m_lastFailures = 0;
 
 
+    /**
+     * Work waiting for a planner thread
+     */
+    long m_queueDepth = 0;
+
+    /**
+     * Total time work waited for a planner thread and how much work did
+     */
+    long m_totalQueueTime = 0;
+    long m_lastTotalQueueTime = 0;
+    long m_dequeued = 0;
+    long m_lastDequeued = 0;
+
+    /**
+     * Plans found in cache #1 without waiting for a planner thread
+     */
+    long m_fastPathHits = 0;
+    long m_lastFastPathHits = 0;
+
     /**
      * Count of the number of invocations = m_cache1Hits + m_cache2Hits + m_cacheMisses + m_failures;
      */
@@ -148,27 +174,30 @@ public class PlannerStatsCollector extends StatsSource {
     }
 
     /**
-     * Calculate the sample count based on the invocation count and the collection frequency.
-     * @return  sample count
+     * Constructor
+     *
+     * @param siteId  site id
      */
-    long getSampleCount() {
-        return getInvocations() / m_collectionFrequency;
+    public PlannerStatsCollector(long siteId) {
+        this(siteId, 20);
     }
 
     /**
      * Constructor
      *
      * @param siteId  site id
+     * @param collectionFrequency  time one in this many invocations
      */
-    public PlannerStatsCollector(long siteId) {
+    public PlannerStatsCollector(long siteId, long collectionFrequency) {
         super(false);
         m_siteId = siteId;
+        m_collectionFrequency = collectionFrequency;
     }
 
     /**
      * Used to update EE cache stats without changing tracked time
      */
-    public void updateEECacheStats(long eeCacheSize, long hits, long misses, int partitionId) {
+    public synchronized void updateEECacheStats(long eeCacheSize, long hits, long misses, int partitionId) {
         m_cache1Level = eeCacheSize;
         m_cache1Hits += hits;
         m_cacheMisses += misses;
@@ -179,24 +208,28 @@ public class PlannerStatsCollector extends StatsSource {
 
     /**
      * Called before doing planning. Starts timer.
+     * @return the start time to pass to endStatsCollection or NOT_TIMED
      */
-    public void startStatsCollection() {
+    public synchronized long startStatsCollection() {
         if (getInvocations() % m_collectionFrequency == 0) {
-            m_currentStartTime = System.nanoTime();
+            return System.nanoTime();
         }
+        return NOT_TIMED;
     }
 
     /**
      * Called after planning or failing to plan. Records timer and cache stats.
      *
+     * @param startTime    what startStatsCollection() returned
      * @param cache1Size   number of entries in level 1 cache
      * @param cache2Size   number of entries in level 2 cache
      * @param cacheUse     where the planned statement came from
      * @param partitionId  partition id
      */
-    public void endStatsCollection(long cache1Size, long cache2Size, CacheUse cacheUse, long partitionId) {
-        if (m_currentStartTime != null) {
-            long delta = System.nanoTime() - m_currentStartTime;
+    public synchronized void endStatsCollection(long startTime, long cache1Size, long cache2Size,
+                                                CacheUse cacheUse, long partitionId) {
+        if (startTime != NOT_TIMED) {
+            long delta = System.nanoTime() - startTime;
             if (delta < 0) {
                 if (Math.abs(delta) > 1000000000) {
                     log.info("Planner statistics recorded a negative planning time larger than one second: " +
@@ -209,8 +242,8 @@ public class PlannerStatsCollector extends StatsSource {
                 m_maxPlanningTime = Math.max(delta, m_maxPlanningTime);
                 m_lastMinPlanningTime = Math.min(delta, m_lastMinPlanningTime);
                 m_lastMaxPlanningTime = Math.max(delta, m_lastMaxPlanningTime);
+                m_timedInvocations++;
             }
-            m_currentStartTime = null;
         }
 
         m_cache1Level = cache1Size;
@@ -235,6 +268,37 @@ public class PlannerStatsCollector extends StatsSource {
         m_partitionId = partitionId;
     }
 
+    /**
+     * Work was queued for a planner thread.
+     */
+    public synchronized void workQueued() {
+        m_queueDepth++;
+    }
+
+    /**
+     * Work could not be queued for a planner thread.
+     */
+    public synchronized void workRejected() {
+        m_queueDepth--;
+    }
+
+    /**
+     * A planner thread picked up queued work.
+     * @param queueTime  nanoseconds the work waited
+     */
+    public synchronized void workDequeued(long queueTime) {
+        m_queueDepth--;
+        m_dequeued++;
+        m_totalQueueTime += Math.max(0, queueTime);
+    }
+
+    /**
+     * A plan was found in cache #1 without queueing for a planner thread.
+     */
+    public synchronized void fastPathHit() {
+        m_fastPathHits++;
+    }
+
     /**
      * Update the rowValues array with the latest statistical information.
      * This method is overrides the super class version
@@ -255,11 +319,27 @@ public class PlannerStatsCollector extends StatsSource {
         long cache2Hits  = m_cache2Hits;
         long cacheMisses = m_cacheMisses;
         long failureCount = m_failures;
+        long timedInvocations = m_timedInvocations;
+        long totalQueueTime = m_totalQueueTime;
+        long dequeued = m_dequeued;
+        long fastPathHits = m_fastPathHits;
 
         if (m_interval) {
             totalTimedExecutionTime = m_totalPlanningTime - m_lastTimedPlanningTime;
             m_lastTimedPlanningTime = m_totalPlanningTime;
 
+            timedInvocations = m_timedInvocations - m_lastTimedInvocations;
+            m_lastTimedInvocations = m_timedInvocations;
+
+            totalQueueTime = m_totalQueueTime - m_lastTotalQueueTime;
+            m_lastTotalQueueTime = m_totalQueueTime;
+
+            dequeued = m_dequeued - m_lastDequeued;
+            m_lastDequeued = m_dequeued;
+
+            fastPathHits = m_fastPathHits - m_lastFastPathHits;
+            m_lastFastPathHits = m_fastPathHits;
+
             minExecutionTime = m_lastMinPlanningTime;
             maxExecutionTime = m_lastMaxPlanningTime;
             m_lastMinPlanningTime = Long.MAX_VALUE;
@@ -295,13 +375,20 @@ public class PlannerStatsCollector extends StatsSource {
         rowValues[columnNameToIndex.get("CACHE_MISSES")] = cacheMisses;
         rowValues[columnNameToIndex.get("PLAN_TIME_MIN")] = minExecutionTime;
         rowValues[columnNameToIndex.get("PLAN_TIME_MAX")] = maxExecutionTime;
-        if (getSampleCount() != 0) {
+        if (timedInvocations != 0) {
             rowValues[columnNameToIndex.get("PLAN_TIME_AVG")] =
-                 (totalTimedExecutionTime / getSampleCount());
+                 (totalTimedExecutionTime / timedInvocations);
         } else {
             rowValues[columnNameToIndex.get("PLAN_TIME_AVG")] = 0L;
         }
         rowValues[columnNameToIndex.get("FAILURES")] = failureCount;
+        rowValues[columnNameToIndex.get("QUEUE_DEPTH")] = m_queueDepth;
+        if (dequeued != 0) {
+            rowValues[columnNameToIndex.get("QUEUE_TIME_AVG")] = totalQueueTime / dequeued;
+        } else {
+            rowValues[columnNameToIndex.get("QUEUE_TIME_AVG")] = 0L;
+        }
+        rowValues[columnNameToIndex.get("FAST_PATH_HITS")] = fastPathHits;
     }
 
     /**
@@ -322,6 +409,9 @@ public class PlannerStatsCollector extends StatsSource {
         columns.add(new ColumnInfo("PLAN_TIME_MAX", VoltType.BIGINT));
         columns.add(new ColumnInfo("PLAN_TIME_AVG", VoltType.BIGINT));
         columns.add(new ColumnInfo("FAILURES",      VoltType.BIGINT));
+        columns.add(new ColumnInfo("QUEUE_DEPTH",   VoltType.BIGINT));
+        columns.add(new ColumnInfo("QUEUE_TIME_AVG", VoltType.BIGINT));
+        columns.add(new ColumnInfo("FAST_PATH_HITS", VoltType.BIGINT));
     }
 
     @Override
@@ -19,6 +19,8 @@ package org.voltdb;
 
 import java.nio.ByteBuffer;
 
+import org.voltcore.utils.DBBPool.BBContainer;
+
 /**
  * Deliberately awkward access to package-private constructors of
  * VoltTable. End users shouldn't call the constructors, but VoltDB
@@ -36,6 +38,28 @@ public abstract class PrivateVoltTableFactory {
         return new VoltTable(backing, readOnly);
     }
 
+    /**
+     * Create a read-only table viewing the serialized table in a pooled buffer, between
+     * position 0 and the buffer's limit. Whoever drops or copies the table must take the
+     * buffer from it with takePooledBacking() and discard it, it isn't released by the
+     * garbage collector.
+     */
+    public static VoltTable createVoltTableFromPooledBuffer(BBContainer cont) {
+        VoltTable vt = new VoltTable(cont.b(), true);
+        vt.m_pooledBacking = cont;
+        return vt;
+    }
+
+    /**
+     * Take the pooled buffer the table views, or null if it doesn't view one. The
+     * caller must not discard it while the table can still be read.
+     */
+    public static BBContainer takePooledBacking(VoltTable vt) {
+        BBContainer cont = vt.m_pooledBacking;
+        vt.m_pooledBacking = null;
+        return cont;
+    }
+
     public static VoltTable createVoltTableFromSharedBuffer(ByteBuffer shared) {
         VoltTable vt = new VoltTable();
         vt.initFromBuffer(shared);
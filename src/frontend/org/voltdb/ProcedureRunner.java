@@ -37,6 +37,7 @@ import java.util.concurrent.ExecutionException;
 import org.apache.hadoop_voltpatches.util.PureJavaCrc32C;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.CatalogContext.ProcedurePartitionInfo;
 import org.voltdb.VoltProcedure.VoltAbortException;
 import org.voltdb.catalog.PlanFragment;
@@ -131,6 +132,9 @@ public class ProcedureRunner {
     protected final boolean m_isSinglePartition;
     protected final boolean m_hasJava;
     protected final boolean m_isReadOnly;
+    // The results are returned to the client as the EE produced them, with no
+    // procedure code that could hold on to them after the response is written
+    protected final boolean m_resultsToResponse;
     protected final int m_partitionColumn;
     protected final VoltType m_partitionColumnType;
     protected final Language m_language;
@@ -195,6 +199,7 @@ public class ProcedureRunner {
         m_catProc = catProc;
         m_hasJava = catProc.getHasjava();
         m_isReadOnly = catProc.getReadonly();
+        m_resultsToResponse = !m_hasJava || procedure instanceof AdHocBase;
         m_isSinglePartition = m_catProc.getSinglepartition();
         if (m_isSinglePartition) {
             ProcedurePartitionInfo ppi = (ProcedurePartitionInfo)m_catProc.getAttachment();
@@ -283,6 +288,7 @@ public class ProcedureRunner {
 
         // set procedure name in the site/ee
         m_site.setProcedureName(m_procedureName);
+        m_site.setPooledResults(m_resultsToResponse && isResponseToLocalClient());
 
         // use local var to avoid warnings about reassigning method argument
         Object[] paramList = paramListIn;
@@ -432,6 +438,14 @@ public class ProcedureRunner {
                         m_appStatusString,
                         results,
                         m_statusString);
+            } else {
+                // The results didn't make it into the response, give back their pooled buffers
+                for (VoltTable vt : results) {
+                    final BBContainer backing = PrivateVoltTableFactory.takePooledBacking(vt);
+                    if (backing != null) {
+                        backing.discard();
+                    }
+                }
             }
 
             int hash = (int) m_inputCRC.getValue();
@@ -457,6 +471,7 @@ public class ProcedureRunner {
             m_seenFinalBatch = false;
 
             m_site.setProcedureName(null);
+            m_site.setPooledResults(false);
         }
 
         return retval;
@@ -538,6 +553,18 @@ public class ProcedureRunner {
         }
     }
 
+    /*
+     * Pooled result buffers are returned to the pool by the ClientInterface the response
+     * is delivered to, so they are only used when the response goes straight to the one
+     * on this host. Single-partition reads aren't replicated, replayed or relayed by the
+     * initiator, other responses could be dropped or serialized elsewhere.
+     */
+    private boolean isResponseToLocalClient() {
+        return m_isSinglePartition && m_isReadOnly &&
+               m_txnState != null && !m_txnState.isForReplay() &&
+               CoreUtils.getHostIdFromHSId(m_txnState.initiatorHSId) == m_site.getCorrespondingHostId();
+    }
+
     public void setupTransaction(TransactionState txnState) {
         m_txnState = txnState;
     }
@@ -748,6 +775,13 @@ public class ProcedureRunner {
 
                 return executeQueriesInABatch(m_batch, isFinalSQL);
             }
+            // read-only multi-partition sub-batches don't depend on each other,
+            // their distributed work can go out before the earlier ones finish
+            else if (!m_isSinglePartition && m_txnState.canPipelineFragmentWork() &&
+                     getNonVoltDBBackendIfExists() == null) {
+                m_spBigBatchBeginToken = -1;
+                return executeSubBatchesPipelined(m_batch, isFinalSQL);
+            }
             // otherwise, break it into sub-batches
             else {
                 if (! m_isReadOnly) {
@@ -1408,6 +1442,8 @@ public class ProcedureRunner {
        // needed to size arrays and check index arguments
        final int m_batchSize;
 
+       final boolean m_finalTask;
+
        // needed to get various IDs
        private final TransactionState m_txnState;
 
@@ -1437,6 +1473,7 @@ public class ProcedureRunner {
                   String procedureName,
                   byte[] procToLoad) {
            m_batchSize = batchSize;
+           m_finalTask = finalTask;
            m_txnState = txnState;
 
            m_depsToResume = new int[batchSize];
@@ -1521,7 +1558,48 @@ public class ProcedureRunner {
     * Execute a batch of homogeneous queries, i.e. all reads or all writes.
     */
    VoltTable[] executeSlowHomogeneousBatch(final List<QueuedSQL> batch, final boolean finalTask) {
+       return runSlowHomogeneousBatch(prepareSlowHomogeneousBatch(batch, finalTask));
+   }
+
+   /*
+    * Execute a read-only batch too big for one round of fragments as sub-batches,
+    * sending the distributed fragments of the later sub-batches ahead so their
+    * round trips to the participants overlap with the earlier ones.
+    */
+   private VoltTable[] executeSubBatchesPipelined(final List<QueuedSQL> batch, final boolean finalTask) {
+       final int batchSize = batch.size();
+       List<BatchState> states = new ArrayList<BatchState>();
+       List<FragmentTaskMessage> distributedWork = new ArrayList<FragmentTaskMessage>();
+       for (int start = 0; start < batchSize; start += MAX_BATCH_SIZE) {
+           int end = Math.min(start + MAX_BATCH_SIZE, batchSize);
+           BatchState state = prepareSlowHomogeneousBatch(batch.subList(start, end),
+                                                          finalTask && end == batchSize);
+           states.add(state);
+           if (!state.m_distributedTask.isEmpty()) {
+               distributedWork.add(state.m_distributedTask);
+           }
+       }
+       m_txnState.queueFragmentWorkAhead(distributedWork);
+
+       VoltTable[] results = new VoltTable[batchSize];
+       int resultIndex = 0;
+       for (BatchState state : states) {
+           VoltTable[] subResults = runSlowHomogeneousBatch(state);
+           System.arraycopy(subResults, 0, results, resultIndex, subResults.length);
+           resultIndex += subResults.length;
+       }
+       assert(resultIndex == batchSize);
+
+       // check expectations once nothing is left in flight
+       for (int i = 0; i < batchSize; i++) {
+           QueuedSQL qs = batch.get(i);
+           Expectation.check(m_procedureName, qs.stmt,
+                   i % MAX_BATCH_SIZE, qs.expectation, results[i]);
+       }
+       return results;
+   }
 
+   private BatchState prepareSlowHomogeneousBatch(final List<QueuedSQL> batch, final boolean finalTask) {
        BatchState state = new BatchState(batch.size(),
                                          m_txnState,
                                          m_site.getCorrespondingSiteId(),
@@ -1572,8 +1650,17 @@ public class ProcedureRunner {
            state.addStatement(i, queuedSQL.stmt, paramBuf, m_site);
        }
 
+       if (!state.m_distributedTask.isEmpty()) {
+           state.m_distributedTask.setBatch(m_batchIndex);
+       }
+       return state;
+   }
+
+   private VoltTable[] runSlowHomogeneousBatch(BatchState state) {
+       final int batchSize = state.m_batchSize;
+
        // instruct the dtxn what's needed to resume the proc
-       m_txnState.setupProcedureResume(finalTask, state.m_depsToResume);
+       m_txnState.setupProcedureResume(state.m_finalTask, state.m_depsToResume);
 
        // create all the local work for the transaction
        for (int i = 0; i < state.m_depsForLocalTask.length; i++) {
@@ -1585,10 +1672,9 @@ public class ProcedureRunner {
 
        // note: non-transactional work only helps us if it's final work
        m_txnState.createLocalFragmentWork(state.m_localTask,
-                                          state.m_localFragsAreNonTransactional && finalTask);
+                                          state.m_localFragsAreNonTransactional && state.m_finalTask);
 
        if (!state.m_distributedTask.isEmpty()) {
-           state.m_distributedTask.setBatch(m_batchIndex);
            m_txnState.createAllParticipatingFragmentWork(state.m_distributedTask);
        }
 
@@ -1597,10 +1683,10 @@ public class ProcedureRunner {
 
        assert(mapResults != null);
        assert(state.m_depsToResume != null);
-       assert(state.m_depsToResume.length == batch.size());
+       assert(state.m_depsToResume.length == batchSize);
 
        // build an array of answers, assuming one result per expected id
-       for (int i = 0; i < batch.size(); i++) {
+       for (int i = 0; i < batchSize; i++) {
            List<VoltTable> matchingTablesForId = mapResults.get(state.m_depsToResume[i]);
            assert(matchingTablesForId != null);
            assert(matchingTablesForId.size() == 1);
@@ -578,7 +578,9 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
 
     private final List<String> pathsWithRecoverableArtifacts(DeploymentType deployment) {
         ImmutableList.Builder<String> nonEmptyPaths = ImmutableList.builder();
-        if (!MiscUtils.isPro()) {
+        if (!MiscUtils.isPro() &&
+                (deployment.getCommandlog() == null || !deployment.getCommandlog().isEnabled())) {
+            // community edition only recovers when the local command log is enabled
             return nonEmptyPaths.build();
         }
         PathsType paths = deployment.getPaths();
@@ -1420,8 +1422,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
             if (m_configuredReplicationFactor == 0) {
                 consoleLog.warn("This is not a highly available cluster. K-Safety is set to 0.");
             }
-            boolean usingCommandLog = m_config.m_isEnterprise
-                    && (m_catalogContext.cluster.getLogconfig() != null)
+            boolean usingCommandLog = (m_catalogContext.cluster.getLogconfig() != null)
                     && (m_catalogContext.cluster.getLogconfig().get("log") != null)
                     && m_catalogContext.cluster.getLogconfig().get("log").getEnabled();
             if (!usingCommandLog) {
@@ -2233,18 +2234,13 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
                             "in the community edition of VoltDB.");
                     shutdownDeployment = true;
                 }
-                if ((deployment.getCommandlog() != null) && (deployment.getCommandlog().isEnabled())) {
-                    consoleLog.error("Command logging is not supported " +
-                            "in the community edition of VoltDB.");
-                    shutdownDeployment = true;
-                }
                 if ((deployment.getExport() != null) && deployment.getExport().getConfiguration() != null && !deployment.getExport().getConfiguration().isEmpty()) {
                     consoleLog.error("Export is not supported " +
                             "in the community edition of VoltDB.");
                     shutdownDeployment = true;
                 }
                 // check the start action for the community edition
-                if (m_config.m_startAction != StartAction.CREATE) {
+                if (m_config.m_startAction != StartAction.CREATE && !m_config.m_startAction.doesRecover()) {
                     consoleLog.error("Start action \"" + m_config.m_startAction.getClass().getSimpleName() +
                             "\" is not supported in the community edition of VoltDB.");
                     shutdownAction = true;
@@ -2261,7 +2257,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
                     }
 
                     if (shutdownAction && !shutdownDeployment) {
-                        msg += "the CREATE start action";
+                        msg += "the CREATE or RECOVER start action";
                     }
                     msg += ".";
 
@@ -2311,10 +2307,20 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
                 }
                 if (sysType.getTemptables() != null) {
                     hostLog.info("Max temptable size set to " + sysType.getTemptables().getMaxsize() + " mb");
+                    if (sysType.getTemptables().isSpill()) {
+                        hostLog.info("Temp tables over the max size will spill to disk");
+                    }
                 }
                 if (sysType.getSnapshot() != null) {
                     hostLog.info("Snapshot priority set to " + sysType.getSnapshot().getPriority() + " [0 - 10]");
                 }
+                if (sysType.getPlancache() != null) {
+                    hostLog.info("Ad hoc plan cache set to " + sysType.getPlancache().getLiteralsize() +
+                            " mb for literal statements and " + sysType.getPlancache().getCoresize() +
+                            " mb for parameterized statements");
+                    AdHocCompilerCache.setMemoryLimits(sysType.getPlancache().getLiteralsize() * 1024L * 1024L,
+                            sysType.getPlancache().getCoresize() * 1024L * 1024L);
+                }
                 if (sysType.getQuery() != null) {
                     if (sysType.getQuery().getTimeout() > 0) {
                         hostLog.info("Query timeout set to " + sysType.getQuery().getTimeout() + " milliseconds");
@@ -2493,18 +2499,13 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
                             "in the community edition of VoltDB.");
                     shutdownDeployment = true;
                 }
-                if ((deployment.getCommandlog() != null) && (deployment.getCommandlog().isEnabled())) {
-                    consoleLog.error("Command logging is not supported " +
-                            "in the community edition of VoltDB.");
-                    shutdownDeployment = true;
-                }
                 if ((deployment.getExport() != null) && deployment.getExport().getConfiguration() != null && !deployment.getExport().getConfiguration().isEmpty()) {
                     consoleLog.error("Export is not supported " +
                             "in the community edition of VoltDB.");
                     shutdownDeployment = true;
                 }
                 // check the start action for the community edition
-                if (m_config.m_startAction != StartAction.CREATE) {
+                if (m_config.m_startAction != StartAction.CREATE && !m_config.m_startAction.doesRecover()) {
                     consoleLog.error("Start action \"" + m_config.m_startAction.getClass().getSimpleName() +
                             "\" is not supported in the community edition of VoltDB.");
                     shutdownAction = true;
@@ -2521,7 +2522,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
                     }
 
                     if (shutdownAction && !shutdownDeployment) {
-                        msg += "the CREATE start action";
+                        msg += "the CREATE or RECOVER start action";
                     }
                     msg += ".";
 
@@ -2702,6 +2703,12 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
         hmconfig.coreBindIds = m_config.m_networkCoreBindings;
         hmconfig.acceptor = criteria;
         hmconfig.localSitesCount = m_config.m_sitesperhost;
+        SystemSettingsType sysSettings = readDepl.deployment.getSystemsettings();
+        if (sysSettings != null && sysSettings.getNetwork() != null && sysSettings.getNetwork().getBusypoll() > 0) {
+            hmconfig.networkBusyPollMicros = sysSettings.getNetwork().getBusypoll();
+            hostLog.info("Network threads busy poll for " + hmconfig.networkBusyPollMicros +
+                    " microseconds before blocking");
+        }
 
         m_messenger = new org.voltcore.messaging.HostMessenger(hmconfig, this);
 
@@ -3605,7 +3612,7 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback, HostM
         try {
             final ZooKeeper zk = m_messenger.getZK();
             boolean logRecoveryCompleted = false;
-            if (getCommandLog().getClass().getName().equals("org.voltdb.CommandLogImpl")) {
+            if (getCommandLog().isEnabled()) {
                 String requestNode = zk.create(VoltZK.request_truncation_snapshot_node, null,
                         Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT_SEQUENTIAL);
                 if (m_rejoinTruncationReqId == null) {
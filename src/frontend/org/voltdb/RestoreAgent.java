@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -208,6 +209,10 @@ SnapshotCompletionInterest, Promotable
                         jsObj.put(SnapshotUtil.JSON_PATH_TYPE, m_snapshotToRestore.pathType);
                         jsObj.put(SnapshotUtil.JSON_NONCE, m_snapshotToRestore.nonce);
                         jsObj.put(SnapshotUtil.JSON_IS_RECOVER, true);
+                        if (!m_snapshotToRestore.incrementalChain.isEmpty()) {
+                            jsObj.put(SnapshotUtil.JSON_INCREMENTAL_CHAIN,
+                                      new JSONArray(m_snapshotToRestore.incrementalChain));
+                        }
                         if (m_action == StartAction.SAFE_RECOVER) {
                             jsObj.put(SnapshotUtil.JSON_DUPLICATES_PATH, m_voltdbrootPath);
                         }
@@ -259,6 +264,9 @@ SnapshotCompletionInterest, Promotable
         // Track the tables for which we found files on the node reporting this SnapshotInfo
         public final Set<String> fileTables = new HashSet<String>();
         public final SnapshotPathType pathType;
+        // Nonces of the incremental chain restored with a delta snapshot, newest first,
+        // empty if the snapshot isn't a delta
+        public final List<String> incrementalChain = new ArrayList<String>();
 
 
         public void setPidToTxnIdMap(Map<Integer,Long> map) {
@@ -324,6 +332,12 @@ SnapshotCompletionInterest, Promotable
             for (int i = 0; i < ft.length(); i++) {
                 fileTables.add(ft.getString(i));
             }
+            JSONArray chain = jo.optJSONArray(SnapshotUtil.JSON_INCREMENTAL_CHAIN);
+            if (chain != null) {
+                for (int i = 0; i < chain.length(); i++) {
+                    incrementalChain.add(chain.getString(i));
+                }
+            }
         }
 
         public JSONObject toJSONObject()
@@ -367,6 +381,13 @@ SnapshotCompletionInterest, Promotable
                     stringer.value(fileTable);
                 }
                 stringer.endArray();
+                if (!incrementalChain.isEmpty()) {
+                    stringer.key(SnapshotUtil.JSON_INCREMENTAL_CHAIN).array();
+                    for (String chainNonce : incrementalChain) {
+                        stringer.value(chainNonce);
+                    }
+                    stringer.endArray();
+                }
                 stringer.endObject();
                 return new JSONObject(stringer.toString());
             } catch (JSONException e) {
@@ -485,7 +506,7 @@ SnapshotCompletionInterest, Promotable
         m_action = action;
         m_hostMessenger = hostMessenger;
         m_zk = hostMessenger.getZK();
-        m_clEnabled = VoltDB.instance().getConfig().m_isEnterprise ? clEnabled : false;
+        m_clEnabled = clEnabled;
         m_clPath = clPath;
         m_clSnapshotPath = clSnapshotPath;
         m_snapshotPath = snapshotPath;
@@ -516,6 +537,13 @@ SnapshotCompletionInterest, Promotable
                                                                     m_clPath,
                                                                     m_liveHosts);
             }
+            else {
+                m_replayAgent = new LocalCommandLogReinitiator(m_hostId,
+                                                               startAction,
+                                                               m_hostMessenger,
+                                                               m_clPath,
+                                                               m_liveHosts);
+            }
         } catch (Exception e) {
             VoltDB.crashGlobalVoltDB("Unable to instantiate command log reinitiator",
                                      true, e);
@@ -646,7 +674,7 @@ SnapshotCompletionInterest, Promotable
         final Long maxLastSeenTxn = m_replayAgent.getMaxLastSeenTxn();
         Set<SnapshotInfo> snapshotInfos = new HashSet<SnapshotInfo>();
         for (Snapshot e : snapshots.values()) {
-            SnapshotInfo info = checkSnapshotIsComplete(e.getTxnId(), e);
+            SnapshotInfo info = checkSnapshotIsComplete(e.getTxnId(), e, snapshots);
             // if the cluster instance IDs in the snapshot and command log don't match, just move along
             if (m_replayAgent.getInstanceId() != null && info != null &&
                 !m_replayAgent.getInstanceId().equals(info.instanceId)) {
@@ -743,7 +771,40 @@ SnapshotCompletionInterest, Promotable
         return infoWithMinHostId;
     }
 
-    private SnapshotInfo checkSnapshotIsComplete(Long key, Snapshot s)
+    /**
+     * A delta snapshot is restored with the older snapshots of its incremental
+     * chain, they must all be here and complete. Returns the nonces of the chain
+     * newest first, null if the delta can't be restored.
+     */
+    private List<String> checkIncrementalChain(Snapshot s, String path, Map<String, Snapshot> snapshots)
+    {
+        List<String> chain = null;
+        try {
+            chain = SnapshotUtil.retrieveIncrementalChain(path, s.getNonce(), LOG);
+        } catch (Exception e) {
+            LOG.warn("Unable to resolve the incremental chain of snapshot " + s.getNonce(), e);
+        }
+        if (chain == null) {
+            m_snapshotErrLogStr.append("\nRejected snapshot ")
+                            .append(s.getNonce())
+                            .append(" because its incremental chain is incomplete.");
+            return null;
+        }
+        for (String nonce : chain.subList(1, chain.size())) {
+            Snapshot older = snapshots.get(nonce);
+            if (older == null || checkSnapshotIsComplete(older.getTxnId(), older, snapshots) == null) {
+                m_snapshotErrLogStr.append("\nRejected snapshot ")
+                                .append(s.getNonce())
+                                .append(" because snapshot ")
+                                .append(nonce)
+                                .append(" of its incremental chain is missing or incomplete.");
+                return null;
+            }
+        }
+        return chain;
+    }
+
+    private SnapshotInfo checkSnapshotIsComplete(Long key, Snapshot s, Map<String, Snapshot> snapshots)
     {
         int partitionCount = -1;
         for (TableFiles tf : s.m_tableFiles.values()) {
@@ -789,10 +850,20 @@ SnapshotCompletionInterest, Promotable
         // Create a valid but meaningless InstanceId to support pre-instanceId checking versions
         InstanceId instanceId = new InstanceId(0, 0);
         int newParitionCount = -1;
+        List<String> incrementalChain = null;
         try
         {
             JSONObject digest_detail = SnapshotUtil.CRCCheck(digest, LOG);
             if (digest_detail == null) throw new IOException();
+
+            // Restoring a delta alone would lose the partitions it didn't write
+            if (SnapshotUtil.isIncrementalDelta(digest_detail)) {
+                incrementalChain = checkIncrementalChain(s, digest.getParent(), snapshots);
+                if (incrementalChain == null) {
+                    return null;
+                }
+            }
+
             catalog_crc = digest_detail.getLong("catalogCRC");
 
             if (digest_detail.has("partitionTransactionIds")) {
@@ -889,6 +960,9 @@ SnapshotCompletionInterest, Promotable
             info.fileTables.add(te.getKey());
         }
         info.setPidToTxnIdMap(pidToTxnMap);
+        if (incrementalChain != null) {
+            info.incrementalChain.addAll(incrementalChain);
+        }
         return info;
     }
 
@@ -1377,10 +1451,8 @@ SnapshotCompletionInterest, Promotable
          * they can be set individually
          */
         Map<String, SnapshotPathType> paths = new HashMap<String, SnapshotPathType>();
-        if (VoltDB.instance().getConfig().m_isEnterprise) {
-            if (m_clSnapshotPath != null) {
-                paths.put(m_clSnapshotPath, SnapshotPathType.SNAP_CL);
-            }
+        if (m_clSnapshotPath != null) {
+            paths.put(m_clSnapshotPath, SnapshotPathType.SNAP_CL);
         }
         if (m_snapshotPath != null) {
             paths.put(m_snapshotPath, SnapshotPathType.SNAP_AUTO);
@@ -45,6 +45,7 @@ public class SimpleFileSnapshotDataTarget implements SnapshotDataTarget {
     private long m_bytesWritten = 0;
     private Runnable m_onCloseTask;
     private boolean m_needsFinalClose;
+    private final SnapshotFormat m_format;
 
     /*
      * Remember to sync regularly. SimpleFileSnapshotDataTarget
@@ -77,7 +78,13 @@ public class SimpleFileSnapshotDataTarget implements SnapshotDataTarget {
 
     public SimpleFileSnapshotDataTarget(
             File file, boolean needsFinalClose) throws IOException {
+        this(file, needsFinalClose, SnapshotFormat.CSV);
+    }
+
+    public SimpleFileSnapshotDataTarget(
+            File file, boolean needsFinalClose, SnapshotFormat format) throws IOException {
         m_file = file;
+        m_format = format;
         m_tempFile = new File(m_file.getParentFile(), m_file.getName() + ".incomplete");
         m_ras = new RandomAccessFile(m_tempFile, "rw");
         m_fc = m_ras.getChannel();
@@ -211,7 +218,7 @@ public class SimpleFileSnapshotDataTarget implements SnapshotDataTarget {
 
     @Override
     public SnapshotFormat getFormat() {
-        return SnapshotFormat.CSV;
+        return m_format;
     }
 
     @Override
@@ -130,6 +130,13 @@ public interface SiteProcedureConnection {
      */
     public void setProcedureName(String procedureName);
 
+    /**
+     * Let the EE know whether the results of the fragments it runs go straight to
+     * the client response, so large ones can be left in pooled direct buffers
+     * that are released once the response is written.
+     */
+    public void setPooledResults(boolean pooledResults);
+
     public void setBatchTimeout(int batchTimeout);
     public int getBatchTimeout();
 
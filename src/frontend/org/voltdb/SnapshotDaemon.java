@@ -77,6 +77,7 @@ import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 import com.google_voltpatches.common.util.concurrent.ListeningScheduledExecutorService;
 import com.google_voltpatches.common.util.concurrent.MoreExecutors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import org.voltdb.sysprocs.saverestore.SnapshotIncrementalMode;
 import org.voltdb.sysprocs.saverestore.SnapshotPathType;
 
 /**
@@ -161,6 +162,22 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
     private long m_lastSysprocInvocation = System.currentTimeMillis();
     static long m_minTimeBetweenSysprocs = 3000;
 
+    /**
+     * When greater than 0, every that many auto snapshots is a base snapshot
+     * and the ones in between are delta snapshots that only write the partitions
+     * of the tables that changed since the previous one. The snapshots of a chain
+     * that is still needed by a retained delta snapshot are never deleted.
+     */
+    static final int INCREMENTAL_FULL_EVERY = Integer.getInteger("SNAPSHOT_INCREMENTAL_FULL_EVERY", 0);
+
+    /**
+     * Previous and base snapshot of the current incremental chain, null if the
+     * next auto snapshot has to be a base snapshot
+     */
+    private String m_incrementalParent = null;
+    private String m_incrementalBase = null;
+    private int m_incrementalDeltas = 0;
+
     /**
      * List of snapshots on disk sorted by creation time
      */
@@ -217,6 +234,9 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
         VoltDB.instance().getStatsAgent().registerStatsSource(StatsSelector.SNAPSHOTSTATUS,
                                                               0,
                                                               snapshotStatus);
+        VoltDB.instance().getStatsAgent().registerStatsSource(StatsSelector.SNAPSHOTRESTORE,
+                                                              0,
+                                                              new SnapshotRestoreStatus());
         VoltDB.instance().getSnapshotCompletionMonitor().addInterest(this);
     }
 
@@ -1270,12 +1290,19 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
         private final String nonce;
         private final Long txnId;
         private final SnapshotPathType stype;
+        // Base snapshot of the incremental chain the snapshot belongs to, null if none
+        private final String baseNonce;
 
         private Snapshot(String path, SnapshotPathType stype, String nonce, Long txnId) {
+            this(path, stype, nonce, txnId, null);
+        }
+
+        private Snapshot(String path, SnapshotPathType stype, String nonce, Long txnId, String baseNonce) {
             this.path = path;
             this.stype = stype;
             this.nonce = nonce;
             this.txnId = txnId;
+            this.baseNonce = baseNonce;
         }
 
         @Override
@@ -1336,7 +1363,7 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
             return;
         }
 
-        if (m_snapshots.size() > m_retain) {
+        if (countSnapshotsToDelete() > 0) {
             //Quick hack to make sure we don't delete while the snapshot is running.
             //Deletes work really badly during a snapshot because the FS is occupied
             if (!SnapshotSiteProcessor.ExecutionSitesCurrentlySnapshotting.isEmpty()) {
@@ -1365,7 +1392,21 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
             jsObj.put(SnapshotUtil.JSON_PATH_TYPE, SnapshotPathType.SNAP_AUTO.toString());
             jsObj.put(SnapshotUtil.JSON_NONCE, nonce);
             jsObj.put("perPartitionTxnIds", retrievePerPartitionTransactionIds());
-            m_snapshots.offer(new Snapshot(m_path, SnapshotPathType.SNAP_AUTO, nonce, now));
+            String baseNonce = null;
+            if (INCREMENTAL_FULL_EVERY > 0) {
+                JSONObject incremental = new JSONObject();
+                if (m_incrementalParent == null || m_incrementalDeltas + 1 >= INCREMENTAL_FULL_EVERY) {
+                    baseNonce = nonce;
+                    incremental.put(SnapshotUtil.JSON_INCREMENTAL_MODE, SnapshotIncrementalMode.BASE.name());
+                } else {
+                    baseNonce = m_incrementalBase;
+                    incremental.put(SnapshotUtil.JSON_INCREMENTAL_MODE, SnapshotIncrementalMode.DELTA.name());
+                    incremental.put(SnapshotUtil.JSON_INCREMENTAL_PARENT, m_incrementalParent);
+                }
+                incremental.put(SnapshotUtil.JSON_INCREMENTAL_BASE, baseNonce);
+                jsObj.put(SnapshotUtil.JSON_INCREMENTAL, incremental);
+            }
+            m_snapshots.offer(new Snapshot(m_path, SnapshotPathType.SNAP_AUTO, nonce, now, baseNonce));
             long handle = m_nextCallbackHandle++;
             m_procedureCallbacks.put(handle, new ProcedureCallback() {
 
@@ -1470,6 +1511,7 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
 
         if (response.getStatus() != ClientResponse.SUCCESS){
             logFailureResponse("Snapshot failed", response);
+            resetIncrementalChain();
             return;
         }
 
@@ -1480,6 +1522,7 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
         if (err != null) {
             SNAP_LOG.warn("Snapshot failed with failure response: " +  err);
             m_snapshots.removeLast();
+            resetIncrementalChain();
             return;
         }
 
@@ -1495,9 +1538,29 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
         }
         if (!success) {
             m_snapshots.removeLast();
+            resetIncrementalChain();
+        } else if (INCREMENTAL_FULL_EVERY > 0 && !m_snapshots.isEmpty()) {
+            final Snapshot snapshot = m_snapshots.getLast();
+            if (snapshot.nonce.equals(snapshot.baseNonce)) {
+                m_incrementalDeltas = 0;
+            } else {
+                m_incrementalDeltas++;
+            }
+            m_incrementalParent = snapshot.nonce;
+            m_incrementalBase = snapshot.baseNonce;
         }
     }
 
+    /**
+     * The table changes tracked since the last snapshot of the chain may not
+     * all be on disk, start a new chain with the next snapshot.
+     */
+    private void resetIncrementalChain() {
+        m_incrementalParent = null;
+        m_incrementalBase = null;
+        m_incrementalDeltas = 0;
+    }
+
     /**
      * Process a response to a request to delete snapshots.
      * Always transitions to the waiting state even if the delete
@@ -1560,7 +1623,8 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
                 final String nonce = snapshots.getString("NONCE");
                 if (nonce.startsWith(m_prefixAndSeparator)) {
                     final Long txnId = snapshots.getLong("TXNID");
-                    m_snapshots.add(new Snapshot(path, SnapshotPathType.SNAP_AUTO, nonce, txnId));
+                    m_snapshots.add(new Snapshot(path, SnapshotPathType.SNAP_AUTO, nonce, txnId,
+                                                 retrieveIncrementalBase(path, nonce)));
                 }
             }
         }
@@ -1570,17 +1634,54 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
         deleteExtraSnapshots();
     }
 
+    /**
+     * Base snapshot of the incremental chain of a snapshot found on disk,
+     * from the digest this node wrote for it, null if it doesn't have one
+     */
+    private static String retrieveIncrementalBase(String path, String nonce) {
+        try {
+            for (JSONObject digest : SnapshotUtil.retrieveDigests(path, nonce, SNAP_LOG)) {
+                JSONObject incremental = digest.optJSONObject(SnapshotUtil.JSON_INCREMENTAL);
+                if (incremental != null) {
+                    return incremental.optString(SnapshotUtil.JSON_INCREMENTAL_BASE, null);
+                }
+            }
+        } catch (Exception e) {
+            SNAP_LOG.warn("Unable to read the digest of snapshot " + nonce, e);
+        }
+        return null;
+    }
+
+    /**
+     * The number of the oldest snapshots beyond the number to retain that can
+     * be deleted. Snapshots of the incremental chain of the oldest retained
+     * snapshot are kept until a newer base snapshot replaces them.
+     */
+    private int countSnapshotsToDelete() {
+        int numberToDelete = m_snapshots.size() - m_retain;
+        if (numberToDelete <= 0) {
+            return 0;
+        }
+        final String keptBase =
+                numberToDelete < m_snapshots.size() ? m_snapshots.get(numberToDelete).baseNonce : null;
+        while (numberToDelete > 0 && keptBase != null &&
+               keptBase.equals(m_snapshots.get(numberToDelete - 1).baseNonce)) {
+            numberToDelete--;
+        }
+        return numberToDelete;
+    }
+
     /**
      * Check if there are extra snapshots and initiate deletion
      * @return
      */
     private void deleteExtraSnapshots() {
-        if (m_snapshots.size() <= m_retain) {
+        final int numberToDelete = countSnapshotsToDelete();
+        if (numberToDelete == 0) {
             setState(State.WAITING);
         } else {
             m_lastSysprocInvocation = System.currentTimeMillis();
             setState(State.DELETING);
-            final int numberToDelete = m_snapshots.size() - m_retain;
             String pathsToDelete[] = new String[numberToDelete];
             String noncesToDelete[] = new String[numberToDelete];
             for (int ii = 0; ii < numberToDelete; ii++) {
@@ -155,7 +155,7 @@ public class SnapshotInitiationInfo
      *   while it's being generated.  All non-zero numbers will be interpreted
      *   as blocking.  true/false will be interpreted as you'd expect
      *
-     *   format: one of 'native' or 'csv'.
+     *   format: one of 'native', 'csv' or 'columnar'.
      */
     private boolean parseJsonParams(Object[] params) throws Exception
     {
@@ -246,7 +246,7 @@ public class SnapshotInitiationInfo
             m_format = SnapshotFormat.getEnumIgnoreCase(formatString);
         } catch (IllegalArgumentException argException) {
             throw new Exception("@SnapshotSave format param is a " + m_format +
-                    " and should be one of [\"native\" | \"csv\"]");
+                    " and should be one of [\"native\" | \"csv\" | \"columnar\"]");
         }
         m_data = (String)params[0];
         return checkValidity;
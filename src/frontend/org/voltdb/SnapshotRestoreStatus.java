@@ -0,0 +1,86 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.sysprocs.SnapshotRestoreRegistry;
+import org.voltdb.sysprocs.SnapshotRestoreRegistry.Table;
+
+/**
+ * Progress of the tables restored from snapshots on this node, one row per
+ * snapshot and table, with the rate the table's save files are being read at.
+ */
+public class SnapshotRestoreStatus extends StatsSource {
+
+    public SnapshotRestoreStatus() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("TABLE", VoltType.STRING));
+        columns.add(new ColumnInfo("TXNID", VoltType.BIGINT));
+        columns.add(new ColumnInfo("FILES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("FILES_FINISHED", VoltType.INTEGER));
+        columns.add(new ColumnInfo("START_TIME", VoltType.BIGINT));
+        columns.add(new ColumnInfo("DURATION", VoltType.BIGINT));
+        columns.add(new ColumnInfo("SIZE", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES_READ", VoltType.BIGINT));
+        columns.add(new ColumnInfo("ROWS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("THROUGHPUT", VoltType.FLOAT));
+        columns.add(new ColumnInfo("ROW_THROUGHPUT", VoltType.FLOAT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        Table t = (Table) rowKey;
+        final long bytesRead = t.getBytesRead();
+        final long rows = t.getRows();
+        final long duration = t.getTimeUpdated() - t.timeStarted;
+        double throughput = 0;
+        double rowThroughput = 0;
+        if (duration > 0) {
+            throughput = (bytesRead / (1024.0 * 1024.0)) / (duration / 1000.0);
+            rowThroughput = rows / (duration / 1000.0);
+        }
+
+        rowValues[columnNameToIndex.get("TABLE")] = t.name;
+        rowValues[columnNameToIndex.get("TXNID")] = t.txnId;
+        rowValues[columnNameToIndex.get("FILES")] = t.getFiles();
+        rowValues[columnNameToIndex.get("FILES_FINISHED")] = t.getFilesFinished();
+        rowValues[columnNameToIndex.get("START_TIME")] = t.timeStarted;
+        rowValues[columnNameToIndex.get("DURATION")] = duration;
+        rowValues[columnNameToIndex.get("SIZE")] = t.getBytesTotal();
+        rowValues[columnNameToIndex.get("BYTES_READ")] = bytesRead;
+        rowValues[columnNameToIndex.get("ROWS")] = rows;
+        rowValues[columnNameToIndex.get("THROUGHPUT")] = throughput;
+        rowValues[columnNameToIndex.get("ROW_THROUGHPUT")] = rowThroughput;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        return (Iterator) SnapshotRestoreRegistry.getRestoreHistory().iterator();
+    }
+
+}
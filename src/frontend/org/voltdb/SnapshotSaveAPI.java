@@ -44,6 +44,7 @@ import org.voltcore.zk.ZKUtil;
 import org.voltdb.dtxn.SiteTracker;
 import org.voltdb.iv2.TxnEgo;
 import org.voltdb.sysprocs.saverestore.CSVSnapshotWritePlan;
+import org.voltdb.sysprocs.saverestore.ColumnarSnapshotWritePlan;
 import org.voltdb.sysprocs.saverestore.HashinatorSnapshotData;
 import org.voltdb.sysprocs.saverestore.IndexSnapshotWritePlan;
 import org.voltdb.sysprocs.saverestore.NativeSnapshotWritePlan;
@@ -493,6 +494,9 @@ public class SnapshotSaveAPI
         else if (format == SnapshotFormat.CSV) {
             plan = new CSVSnapshotWritePlan();
         }
+        else if (format == SnapshotFormat.COLUMNAR) {
+            plan = new ColumnarSnapshotWritePlan();
+        }
         else if (format == SnapshotFormat.STREAM) {
             plan = new StreamSnapshotWritePlan();
         }
@@ -116,6 +116,7 @@ public class SnapshotStatus extends StatsSource {
         columns.add(new ColumnInfo("THROUGHPUT", VoltType.FLOAT));
         columns.add(new ColumnInfo("RESULT", VoltType.STRING));
         columns.add(new ColumnInfo("TYPE", VoltType.STRING));
+        columns.add(new ColumnInfo("TABLE_THROUGHPUT", VoltType.FLOAT));
     }
 
     @SuppressWarnings("unchecked")
@@ -132,6 +133,11 @@ public class SnapshotStatus extends StatsSource {
                 (s.timeFinished - timeStarted) / 1000.0;
             throughput = (s.bytesWritten / (1024.0 * 1024.0)) / duration;
         }
+        // The table's own rate, its file is written alongside the others'
+        double tableThroughput = 0;
+        if (t.timeFinished > timeStarted) {
+            tableThroughput = (t.size / (1024.0 * 1024.0)) / ((t.timeFinished - timeStarted) / 1000.0);
+        }
 
         rowValues[columnNameToIndex.get("TABLE")] = t.name;
         rowValues[columnNameToIndex.get("PATH")] = s.path;
@@ -145,6 +151,7 @@ public class SnapshotStatus extends StatsSource {
         rowValues[columnNameToIndex.get("THROUGHPUT")] = throughput;
         rowValues[columnNameToIndex.get("RESULT")] = t.error == null ? "SUCCESS" : "FAILURE";
         rowValues[columnNameToIndex.get("TYPE")] = getSnapshotType(s.path);
+        rowValues[columnNameToIndex.get("TABLE_THROUGHPUT")] = tableThroughput;
         super.updateStatsRow(rowKey, rowValues);
     }
 
@@ -19,6 +19,7 @@ package org.voltdb;
 
 import org.voltdb.catalog.Table;
 import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.sysprocs.saverestore.SnapshotIncrementalMode;
 
 /**
  * A class identifying a table that should be snapshotted as well as the destination
@@ -30,6 +31,7 @@ public class SnapshotTableTask
     public final SnapshotDataFilter m_filters[];
     public final AbstractExpression m_predicate;
     public final boolean m_deleteTuples;
+    public final SnapshotIncrementalMode m_incrementalMode;
 
     volatile SnapshotDataTarget m_target;
 
@@ -38,11 +40,22 @@ public class SnapshotTableTask
             final SnapshotDataFilter filters[],
             final AbstractExpression predicate,
             final boolean deleteTuples)
+    {
+        this(table, filters, predicate, deleteTuples, SnapshotIncrementalMode.NONE);
+    }
+
+    public SnapshotTableTask(
+            final Table table,
+            final SnapshotDataFilter filters[],
+            final AbstractExpression predicate,
+            final boolean deleteTuples,
+            final SnapshotIncrementalMode incrementalMode)
     {
         m_table = table;
         m_filters = filters;
         m_predicate = predicate;
         m_deleteTuples = deleteTuples;
+        m_incrementalMode = incrementalMode;
     }
 
     public void setTarget(SnapshotDataTarget target)
@@ -71,7 +84,8 @@ public class SnapshotTableTask
     {
         return ("SnapshotTableTask for " + m_table.getTypeName() +
                 " replicated " + m_table.getIsreplicated() +
-                ", delete " + m_deleteTuples);
+                ", delete " + m_deleteTuples +
+                ", incremental " + m_incrementalMode);
     }
 }
 
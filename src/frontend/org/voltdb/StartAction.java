@@ -26,8 +26,8 @@ import com.google_voltpatches.common.collect.ImmutableMap;
 public enum StartAction {
 
     CREATE("create", false, null),
-    RECOVER("recover", true, "Command Log Recovery"),
-    SAFE_RECOVER("recover safemode", true, "Command Log Recovery"),
+    RECOVER("recover", false, "Command Log Recovery"),
+    SAFE_RECOVER("recover safemode", false, "Command Log Recovery"),
     REJOIN("rejoin", true, "K-Safety / Node Rejoin"),
     LIVE_REJOIN("live rejoin", true, "K-Safety / Node Rejoin"),
     JOIN("add", true, "Elastic Cluster Sizing"),
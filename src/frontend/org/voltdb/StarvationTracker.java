@@ -24,6 +24,7 @@ import org.voltdb.VoltTable.ColumnInfo;
 /**
  * A class to track and generate statistics regarding task starvation.
  * A worker thread can instantiate one of these and report when starvation begins and ends.
+ * It also reports the depth of its task queue and how long each task waited in it.
  */
 public class StarvationTracker extends SiteStatsSource {
 
@@ -52,6 +53,17 @@ public class StarvationTracker extends SiteStatsSource {
 
     private long m_starvationStartTime;
 
+    private long m_tasks = 0;
+    private long m_lastTasks = 0;
+    private long m_queueDepthSum = 0;
+    private long m_lastQueueDepthSum = 0;
+    private long m_maxQueueDepth = 0;
+    private long m_lastMaxQueueDepth = 0;
+    private long m_queueWaitSum = 0;
+    private long m_lastQueueWaitSum = 0;
+    private long m_maxQueueWait = 0;
+    private long m_lastMaxQueueWait = 0;
+
     private boolean m_interval;
 
     /**
@@ -81,6 +93,21 @@ public class StarvationTracker extends SiteStatsSource {
         m_lastMin = Math.min(m_lastMin, delta);
     }
 
+    /**
+     * A task was taken from the queue
+     * @param queueDepth tasks in the queue when it was taken, including itself
+     * @param waitNanos time the task spent in the queue
+     */
+    public void taskTaken(long queueDepth, long waitNanos) {
+        m_tasks++;
+        m_queueDepthSum += queueDepth;
+        m_maxQueueDepth = Math.max(m_maxQueueDepth, queueDepth);
+        m_lastMaxQueueDepth = Math.max(m_lastMaxQueueDepth, queueDepth);
+        m_queueWaitSum += waitNanos;
+        m_maxQueueWait = Math.max(m_maxQueueWait, waitNanos);
+        m_lastMaxQueueWait = Math.max(m_lastMaxQueueWait, waitNanos);
+    }
+
     @Override
     protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
         super.populateColumnSchema(columns);
@@ -90,6 +117,11 @@ public class StarvationTracker extends SiteStatsSource {
         columns.add(new ColumnInfo("MIN", VoltType.BIGINT));
         columns.add(new ColumnInfo("MAX", VoltType.BIGINT));
         columns.add(new ColumnInfo("STDDEV", VoltType.BIGINT));
+        columns.add(new ColumnInfo("TASKS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("AVG_QUEUE_DEPTH", VoltType.FLOAT));
+        columns.add(new ColumnInfo("MAX_QUEUE_DEPTH", VoltType.BIGINT));
+        columns.add(new ColumnInfo("AVG_QUEUE_WAIT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MAX_QUEUE_WAIT", VoltType.BIGINT));
     }
 
     @Override
@@ -142,9 +174,36 @@ public class StarvationTracker extends SiteStatsSource {
                 rowValues[columnNameToIndex.get("STDDEV")] = 0L;
             }
         }
+        updateQueueStats(rowValues);
         super.updateStatsRow(rowKey, rowValues);
     }
 
+    // Queue waits are reported in microseconds like AVG
+    private void updateQueueStats(Object rowValues[]) {
+        long tasks = m_tasks;
+        long queueDepthSum = m_queueDepthSum;
+        long maxQueueDepth = m_maxQueueDepth;
+        long queueWaitSum = m_queueWaitSum;
+        long maxQueueWait = m_maxQueueWait;
+        if (m_interval) {
+            tasks -= m_lastTasks;
+            queueDepthSum -= m_lastQueueDepthSum;
+            maxQueueDepth = m_lastMaxQueueDepth;
+            queueWaitSum -= m_lastQueueWaitSum;
+            maxQueueWait = m_lastMaxQueueWait;
+            m_lastTasks = m_tasks;
+            m_lastQueueDepthSum = m_queueDepthSum;
+            m_lastMaxQueueDepth = 0;
+            m_lastQueueWaitSum = m_queueWaitSum;
+            m_lastMaxQueueWait = 0;
+        }
+        rowValues[columnNameToIndex.get("TASKS")] = tasks;
+        rowValues[columnNameToIndex.get("AVG_QUEUE_DEPTH")] = tasks > 0 ? queueDepthSum / (double)tasks : 0.0;
+        rowValues[columnNameToIndex.get("MAX_QUEUE_DEPTH")] = maxQueueDepth;
+        rowValues[columnNameToIndex.get("AVG_QUEUE_WAIT")] = tasks > 0 ? (queueWaitSum / tasks) / 1000 : 0L;
+        rowValues[columnNameToIndex.get("MAX_QUEUE_WAIT")] = maxQueueWait / 1000;
+    }
+
     @Override
     protected Iterator<Object> getStatsRowKeyIterator(final boolean interval) {
         m_interval = interval;
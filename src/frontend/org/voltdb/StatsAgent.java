@@ -461,6 +461,9 @@ public class StatsAgent extends OpsAgent
         case SNAPSHOTSTATUS:
             stats = collectStats(StatsSelector.SNAPSHOTSTATUS, false);
             break;
+        case SNAPSHOTRESTORE:
+            stats = collectStats(StatsSelector.SNAPSHOTRESTORE, false);
+            break;
         case MEMORY:
             stats = collectStats(StatsSelector.MEMORY, interval);
             break;
@@ -492,6 +495,15 @@ public class StatsAgent extends OpsAgent
         case PLANNER:
             stats = collectStats(StatsSelector.PLANNER, interval);
             break;
+        case PLANCACHE:
+            stats = collectStats(StatsSelector.PLANCACHE, interval);
+            break;
+        case TEMPTABLESPILL:
+            stats = collectStats(StatsSelector.TEMPTABLESPILL, interval);
+            break;
+        case MPREADPOOL:
+            stats = collectStats(StatsSelector.MPREADPOOL, interval);
+            break;
         case LIVECLIENTS:
             stats = collectStats(StatsSelector.LIVECLIENTS, interval);
             break;
@@ -522,6 +534,12 @@ public class StatsAgent extends OpsAgent
         case COMMANDLOG:
             stats = collectStats(StatsSelector.COMMANDLOG, false);
             break;
+        case EXPORT:
+            stats = collectStats(StatsSelector.EXPORT, interval);
+            break;
+        case EXPORTCOMPRESSION:
+            stats = collectStats(StatsSelector.EXPORTCOMPRESSION, interval);
+            break;
         case IMPORTER:
             stats = collectStats(StatsSelector.IMPORTER, interval);
             break;
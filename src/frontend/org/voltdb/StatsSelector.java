@@ -29,9 +29,13 @@ public enum StatsSelector {
     MEMORY,           // info about node's memory usage
     LIVECLIENTS,      // info about the currently connected clients
     PLANNER,          // info about planner and EE performance and cache usage
+    PLANCACHE,        // info about the ad hoc plan cache hit rates and memory use
+    TEMPTABLESPILL,   // info about temp tables spilled to disk by each site
+    MPREADPOOL,       // info about the pool of sites running multi-partition reads
     MANAGEMENT,       // Returns pretty much everything
     PROCEDUREPROFILE, // performs an aggregation of the procedure statistics
     SNAPSHOTSTATUS,
+    SNAPSHOTRESTORE,  // info about the progress of tables restored from snapshots
     PROCEDUREINPUT,
     PROCEDUREOUTPUT,
     PROCEDUREDETAIL,  // provides more granular statistics for procedure calls at a per-statement level.
@@ -57,5 +61,7 @@ public enum StatsSelector {
     CPU,            // Return CPU Stats
 
     COMMANDLOG,     // return number of outstanding bytes and txns on this node
+    EXPORT,         // return the group syncs of the export overflow on this node
+    EXPORTCOMPRESSION, // return the LZ4 batch compression of the export overflow on this node
     IMPORTER
 }
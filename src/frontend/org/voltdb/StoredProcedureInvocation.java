@@ -391,6 +391,15 @@ public class StoredProcedureInvocation implements JSONString {
     }
 
     public void initFromBuffer(ByteBuffer buf) throws IOException
+    {
+        initFromBuffer(buf, false);
+    }
+
+    /**
+     * @param copyParams copy the serialized parameters to the heap instead of keeping a
+     * view of buf, for buffers that are reused as soon as the invocation is dispatched
+     */
+    public void initFromBuffer(ByteBuffer buf, boolean copyParams) throws IOException
     {
         byte version = buf.get();// version number also embeds the type
         // this will throw for an unexpected type, like the DRv1 type, for example
@@ -402,18 +411,18 @@ public class StoredProcedureInvocation implements JSONString {
 
         switch (type) {
             case ORIGINAL:
-                initOriginalFromBuffer(buf);
+                initOriginalFromBuffer(buf, copyParams);
                 break;
             case VERSION1:
-                initVersion1FromBuffer(buf);
+                initVersion1FromBuffer(buf, copyParams);
                 break;
             case VERSION2:
-                initVersion2FromBuffer(buf);
+                initVersion2FromBuffer(buf, copyParams);
                 break;
         }
     }
 
-    private void initOriginalFromBuffer(ByteBuffer buf) throws IOException {
+    private void initOriginalFromBuffer(ByteBuffer buf, boolean copyParams) throws IOException {
         byte[] procNameBytes = SerializationHelper.getVarbinary(buf);
         if (procNameBytes == null) {
             throw new IOException("Procedure name cannot be null in invocation deserialization.");
@@ -423,18 +432,10 @@ public class StoredProcedureInvocation implements JSONString {
         }
         setProcName(procNameBytes);
         clientHandle = buf.getLong();
-        // do not deserialize parameters in ClientInterface context
-        serializedParams = buf.slice();
-        final ByteBuffer duplicate = serializedParams.duplicate();
-        params = new FutureTask<ParameterSet>(new Callable<ParameterSet>() {
-            @Override
-            public ParameterSet call() throws Exception {
-                return ParameterSet.fromByteBuffer(duplicate);
-            }
-        });
+        initParamsFromBuffer(buf, copyParams);
     }
 
-    private void initVersion1FromBuffer(ByteBuffer buf) throws IOException {
+    private void initVersion1FromBuffer(ByteBuffer buf, boolean copyParams) throws IOException {
         BatchTimeoutOverrideType batchTimeoutType = BatchTimeoutOverrideType.typeFromByte(buf.get());
         if (batchTimeoutType == BatchTimeoutOverrideType.NO_OVERRIDE_FOR_BATCH_TIMEOUT) {
             m_batchTimeout = BatchTimeoutOverrideType.NO_TIMEOUT;
@@ -449,10 +450,10 @@ public class StoredProcedureInvocation implements JSONString {
         }
 
         // the rest of the format is the same as the original
-        initOriginalFromBuffer(buf);
+        initOriginalFromBuffer(buf, copyParams);
     }
 
-    private void initVersion2FromBuffer(ByteBuffer buf) throws IOException {
+    private void initVersion2FromBuffer(ByteBuffer buf, boolean copyParams) throws IOException {
         byte[] procNameBytes = SerializationHelper.getVarbinary(buf);
         if (procNameBytes == null) {
             throw new IOException("Procedure name cannot be null in invocation deserialization.");
@@ -494,8 +495,20 @@ public class StoredProcedureInvocation implements JSONString {
             }
         }
 
+        initParamsFromBuffer(buf, copyParams);
+    }
+
+    private void initParamsFromBuffer(ByteBuffer buf, boolean copyParams) {
         // do not deserialize parameters in ClientInterface context
-        serializedParams = buf.slice();
+        if (copyParams) {
+            final int position = buf.position();
+            serializedParams = ByteBuffer.allocate(buf.remaining());
+            serializedParams.put(buf);
+            serializedParams.flip();
+            buf.position(position);
+        } else {
+            serializedParams = buf.slice();
+        }
         final ByteBuffer duplicate = serializedParams.duplicate();
         params = new FutureTask<ParameterSet>(new Callable<ParameterSet>() {
             @Override
@@ -0,0 +1,119 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.voltdb;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * Temp table spill activity of a site's EE, cached by the site on each stats tick.
+ * SPILLS counts the tables and executors that had to go to disk to stay within
+ * the temp table memory limit, the byte counts cover all their spill files.
+ */
+public class TempTableSpillStats extends SiteStatsSource {
+
+    private long m_spills = 0;
+    private long m_bytesWritten = 0;
+    private long m_bytesRead = 0;
+    private long m_files = 0;
+
+    private long m_lastSpills = 0;
+    private long m_lastBytesWritten = 0;
+    private long m_lastBytesRead = 0;
+    private long m_lastFiles = 0;
+
+    private final int m_partitionId;
+    private boolean m_interval;
+
+    public TempTableSpillStats(long siteId, int partitionId) {
+        super(siteId, false);
+        m_partitionId = partitionId;
+    }
+
+    /**
+     * Update with the EE's running totals
+     */
+    public void setStats(long spills, long bytesWritten, long bytesRead, long files) {
+        m_spills = spills;
+        m_bytesWritten = bytesWritten;
+        m_bytesRead = bytesRead;
+        m_files = files;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo(VoltSystemProcedure.CNAME_PARTITION_ID, VoltSystemProcedure.CTYPE_ID));
+        columns.add(new ColumnInfo("SPILLS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("SPILL_FILES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES_WRITTEN", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES_READ", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        long spills = m_spills;
+        long files = m_files;
+        long bytesWritten = m_bytesWritten;
+        long bytesRead = m_bytesRead;
+        if (m_interval) {
+            spills -= m_lastSpills;
+            files -= m_lastFiles;
+            bytesWritten -= m_lastBytesWritten;
+            bytesRead -= m_lastBytesRead;
+            m_lastSpills = m_spills;
+            m_lastFiles = m_files;
+            m_lastBytesWritten = m_bytesWritten;
+            m_lastBytesRead = m_bytesRead;
+        }
+        rowValues[columnNameToIndex.get(VoltSystemProcedure.CNAME_PARTITION_ID)] = m_partitionId;
+        rowValues[columnNameToIndex.get("SPILLS")] = spills;
+        rowValues[columnNameToIndex.get("SPILL_FILES")] = files;
+        rowValues[columnNameToIndex.get("BYTES_WRITTEN")] = bytesWritten;
+        rowValues[columnNameToIndex.get("BYTES_READ")] = bytesRead;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(final boolean interval) {
+        m_interval = interval;
+        return new Iterator<Object>() {
+            boolean returnRow = true;
+            @Override
+            public boolean hasNext() {
+                return returnRow;
+            }
+
+            @Override
+            public Object next() {
+                if (returnRow) {
+                    returnRow = false;
+                    return new Object();
+                } else {
+                    return null;
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+        };
+    }
+}
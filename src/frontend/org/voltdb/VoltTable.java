@@ -30,6 +30,7 @@ import org.json_voltpatches.JSONException;
 import org.json_voltpatches.JSONObject;
 import org.json_voltpatches.JSONString;
 import org.json_voltpatches.JSONStringer;
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.client.ClientUtils;
 import org.voltdb.common.Constants;
 import org.voltdb.types.GeographyPointValue;
@@ -131,6 +132,9 @@ public final class VoltTable extends VoltTableRow implements JSONString {
     static final Charset ROWDATA_ENCODING = Constants.UTF8ENCODING;
 
     boolean m_readOnly = false;
+    // The pooled buffer a read-only table views, returned to the pool by whoever
+    // takes it once the table won't be read again
+    BBContainer m_pooledBacking = null;
     int m_rowStart = -1; // the beginning of the row data (points to before the row count int)
     int m_rowCount = -1;
     int m_colCount = -1;
@@ -0,0 +1,235 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outstanding procedure calls of a single connection, keyed by client handle.
+ *
+ * The table is split into stripes selected by a hash of the handle so that application
+ * threads issuing calls on the same connection rarely contend with each other or with the
+ * network thread delivering responses. Each stripe is an open addressing table of
+ * primitive long handles plus a {@link TimerWheel} over the same entries. Both are
+ * guarded by the stripe's monitor, so an entry leaves the table and the wheel in one
+ * step whether it completes with a response, a timeout or a lost connection, and each
+ * entry is handed out exactly once.
+ */
+final class CallbackTable {
+
+    /**
+     * Base class of the values stored in the table. The timer links are only touched
+     * while holding the owning stripe's monitor.
+     */
+    static class Entry extends TimerWheel.Timer {
+        final long m_handle;
+
+        Entry(long handle) {
+            m_handle = handle;
+        }
+    }
+
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final int INITIAL_STRIPE_CAPACITY = 16;
+
+    private final Stripe[] m_stripes;
+    private final int m_stripeShift;
+
+    private static final class Stripe {
+        long[] m_keys = new long[INITIAL_STRIPE_CAPACITY];
+        Entry[] m_values = new Entry[INITIAL_STRIPE_CAPACITY];
+        int m_size = 0;
+        final TimerWheel m_wheel;
+        // Scratch list for expiration, only used while holding the monitor
+        final List<Entry> m_expired = new ArrayList<>();
+
+        Stripe(long tickNanos) {
+            m_wheel = new TimerWheel(tickNanos);
+        }
+    }
+
+    /**
+     * @param stripes number of stripes, rounded up to a power of two
+     * @param tickNanos resolution of the timer wheel
+     */
+    CallbackTable(int stripes, long tickNanos) {
+        int count = 1;
+        while (count < stripes) {
+            count <<= 1;
+        }
+        m_stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            m_stripes[i] = new Stripe(tickNanos);
+        }
+        m_stripeShift = 64 - Integer.numberOfTrailingZeros(count);
+    }
+
+    private static long hash(long handle) {
+        return handle * HASH_MULTIPLIER;
+    }
+
+    private Stripe stripeFor(long hash) {
+        return m_stripes.length == 1 ? m_stripes[0] : m_stripes[(int)(hash >>> m_stripeShift)];
+    }
+
+    /**
+     * Add an outstanding call that times out once delayNanos have passed since nowNanos,
+     * in System.nanoTime() terms. The handle must not already be present.
+     */
+    void put(Entry entry, long nowNanos, long delayNanos) {
+        final long hash = hash(entry.m_handle);
+        final Stripe s = stripeFor(hash);
+        synchronized (s) {
+            if ((s.m_size + 1) * 2 > s.m_values.length) {
+                grow(s);
+            }
+            final int mask = s.m_values.length - 1;
+            int slot = (int)hash & mask;
+            while (s.m_values[slot] != null) {
+                assert(s.m_keys[slot] != entry.m_handle);
+                slot = (slot + 1) & mask;
+            }
+            s.m_keys[slot] = entry.m_handle;
+            s.m_values[slot] = entry;
+            s.m_size++;
+            s.m_wheel.schedule(entry, nowNanos, delayNanos);
+        }
+    }
+
+    /**
+     * Remove the call with the given handle.
+     * @return the entry, or null if it was never added or has already been removed
+     */
+    Entry remove(long handle) {
+        final long hash = hash(handle);
+        final Stripe s = stripeFor(hash);
+        synchronized (s) {
+            final int mask = s.m_values.length - 1;
+            int slot = (int)hash & mask;
+            Entry e;
+            while ((e = s.m_values[slot]) != null) {
+                if (s.m_keys[slot] == handle) {
+                    deleteSlot(s, slot);
+                    s.m_wheel.cancel(e);
+                    return e;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Remove every call whose deadline has passed and append it to expired.
+     */
+    @SuppressWarnings("unchecked")
+    <E extends Entry> void expire(long nowNanos, List<E> expired) {
+        for (Stripe s : m_stripes) {
+            synchronized (s) {
+                s.m_wheel.advance(nowNanos, s.m_expired);
+                for (Entry e : s.m_expired) {
+                    deleteSlot(s, findSlot(s, e.m_handle));
+                    expired.add((E)e);
+                }
+                s.m_expired.clear();
+            }
+        }
+    }
+
+    /**
+     * Remove every call and append it to removed.
+     */
+    <E extends Entry> void removeAll(List<E> removed) {
+        for (Stripe s : m_stripes) {
+            synchronized (s) {
+                // Every entry in the table is scheduled, the wheel has them all
+                s.m_wheel.clear(removed);
+                for (int i = 0; i < s.m_values.length; i++) {
+                    s.m_values[i] = null;
+                }
+                s.m_size = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the number of outstanding calls, only a snapshot when calls are in flight
+     */
+    int size() {
+        int size = 0;
+        for (Stripe s : m_stripes) {
+            synchronized (s) {
+                size += s.m_size;
+            }
+        }
+        return size;
+    }
+
+    private static int findSlot(Stripe s, long handle) {
+        final int mask = s.m_values.length - 1;
+        int slot = (int)hash(handle) & mask;
+        while (s.m_keys[slot] != handle || s.m_values[slot] == null) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /*
+     * Linear probing deletion without tombstones: shift later members of the probe
+     * sequence back into the hole if their home slot allows it.
+     */
+    private static void deleteSlot(Stripe s, int slot) {
+        final int mask = s.m_values.length - 1;
+        int hole = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            final Entry e = s.m_values[i];
+            if (e == null) {
+                break;
+            }
+            final int home = (int)hash(s.m_keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                s.m_keys[hole] = s.m_keys[i];
+                s.m_values[hole] = e;
+                hole = i;
+            }
+        }
+        s.m_values[hole] = null;
+        s.m_size--;
+    }
+
+    private static void grow(Stripe s) {
+        final long[] oldKeys = s.m_keys;
+        final Entry[] oldValues = s.m_values;
+        s.m_keys = new long[oldKeys.length * 2];
+        s.m_values = new Entry[oldValues.length * 2];
+        final int mask = s.m_values.length - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = (int)hash(oldKeys[i]) & mask;
+                while (s.m_values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                s.m_keys[slot] = oldKeys[i];
+                s.m_values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -57,6 +57,7 @@ public class ClientConfig {
     long m_maxConnectionRetryIntervalMS = DEFAULT_MAX_CONNECTION_RETRY_INTERVAL_MS;
     boolean m_sendReadsToReplicasBytDefaultIfCAEnabled = false;
     boolean m_topologyChangeAware = false;
+    long m_coalescingWindowNanos = 0;
 
 
     final static String getUserNameFromSubject(Subject subject) {
@@ -201,7 +202,8 @@ public class ClientConfig {
      *
      * <p>Default value is 2 minutes if not set. Value of 0 means forever.</p>
      *
-     * <p>Note that while specified in MS, this timeout is only accurate to within a second or so.</p>
+     * <p>Note that while specified in MS, this timeout is only accurate to within the client's
+     * timer tick, 10 milliseconds by default.</p>
      *
      * @param ms Timeout value in milliseconds.
      */
@@ -221,7 +223,8 @@ public class ClientConfig {
      *
      * <p>Default value is 2 minutes if not set. Value of 0 means forever.</p>
      *
-     * <p>Note that while specified in MS, this timeout is only accurate to within a second or so.</p>
+     * <p>Note that while specified in MS, this timeout is only accurate to within the client's
+     * timer tick, 10 milliseconds by default.</p>
      *
      * @param ms Timeout value in milliseconds.
      */
@@ -335,6 +338,26 @@ public class ClientConfig {
         m_topologyChangeAware = enabled;
     }
 
+    /**
+     * <p>Coalesce small procedure invocations sent on the same connection into larger
+     * network writes. While other calls are outstanding on a connection, a new call is
+     * held back for up to the given window so that calls issued close together share a
+     * single write, which reduces the per call networking overhead for workloads made up
+     * of many tiny invocations. A call on an otherwise idle connection is always sent
+     * immediately. Windows of 50 to 200 microseconds are a good starting point, the
+     * achieved batch sizes are reported by
+     * {@link ClientStatsContext#getBatchSizeHistogramByConnection()}.</p>
+     *
+     * <p>Defaults to 0, which disables coalescing.</p>
+     *
+     * @param micros Maximum time in microseconds a call is held back, 0 to disable.
+     */
+    public void setRequestCoalescingWindow(long micros) {
+        assert(micros >= 0);
+        if (micros < 0) micros = 0;
+        m_coalescingWindowNanos = TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+
     /**
      * <p>By default, reads are sent to the leader replica for each partition. This
      * is usually optimal for the default read consistency value, SAFE. If you are
@@ -22,11 +22,16 @@ class ClientIOStats {
     long m_connectionId;
     long m_bytesSent;
     long m_bytesReceived;
+    long m_timeouts;
+    // Histogram of coalesced write sizes, see Distributer.BATCH_SIZE_BUCKETS
+    long[] m_batchSizes;
 
-    ClientIOStats(long connectionId, long bytesSent, long bytesReceived) {
+    ClientIOStats(long connectionId, long bytesSent, long bytesReceived, long timeouts, long[] batchSizes) {
         m_connectionId = connectionId;
         m_bytesSent = bytesSent;
         m_bytesReceived = bytesReceived;
+        m_timeouts = timeouts;
+        m_batchSizes = batchSizes;
     }
 
     public static ClientIOStats diff(ClientIOStats newer, ClientIOStats older) {
@@ -34,9 +39,16 @@ class ClientIOStats {
             throw new IllegalArgumentException("Can't diff these ClientIOStats instances.");
         }
 
+        long[] batchSizes = new long[newer.m_batchSizes.length];
+        for (int i = 0; i < batchSizes.length; i++) {
+            batchSizes[i] = newer.m_batchSizes[i] - older.m_batchSizes[i];
+        }
+
         ClientIOStats retval = new ClientIOStats(older.m_connectionId,
                                                  newer.m_bytesSent - older.m_bytesSent,
-                                                 newer.m_bytesReceived - older.m_bytesReceived);
+                                                 newer.m_bytesReceived - older.m_bytesReceived,
+                                                 newer.m_timeouts - older.m_timeouts,
+                                                 batchSizes);
         return retval;
     }
 
@@ -45,6 +57,6 @@ class ClientIOStats {
      */
     @Override
     protected Object clone() {
-        return new ClientIOStats(m_connectionId, m_bytesSent, m_bytesReceived);
+        return new ClientIOStats(m_connectionId, m_bytesSent, m_bytesReceived, m_timeouts, m_batchSizes.clone());
     }
 }
@@ -166,6 +166,43 @@ public class ClientStatsContext {
         return retval;
     }
 
+    /**
+     * Return a map of the number of procedure calls that timed out by connection id,
+     * either waiting for a response or waiting to be sent. Unlike the invocation
+     * timeouts in {@link ClientStats}, this count is maintained by the timer that
+     * expires the calls and is current as of the last fetch. Each count will apply
+     * to the time period currently covered by the context.
+     *
+     * @return A map from connection id to the number of timed out calls.
+     */
+    public Map<Long, Long> getTimeoutsByConnection() {
+        Map<Long, ClientIOStats> completeIO = diffIO(m_currentIO, m_baselineIO);
+        Map<Long, Long> retval = new TreeMap<Long, Long>();
+        for (Entry<Long, ClientIOStats> e : completeIO.entrySet()) {
+            retval.put(e.getKey(), e.getValue().m_timeouts);
+        }
+        return retval;
+    }
+
+    /**
+     * Return a map of write batch size histograms by connection id, populated when
+     * request coalescing is enabled with {@link ClientConfig#setRequestCoalescingWindow(long)}.
+     * Element i of each histogram is the number of writes that carried between
+     * 2^i and 2^(i+1)-1 procedure invocations, the last element also counts all larger
+     * writes. Each histogram will apply to the time period currently covered by the
+     * context.
+     *
+     * @return A map from connection id to batch size histogram.
+     */
+    public Map<Long, long[]> getBatchSizeHistogramByConnection() {
+        Map<Long, ClientIOStats> completeIO = diffIO(m_currentIO, m_baselineIO);
+        Map<Long, long[]> retval = new TreeMap<Long, long[]>();
+        for (Entry<Long, ClientIOStats> e : completeIO.entrySet()) {
+            retval.put(e.getKey(), e.getValue().m_batchSizes.clone());
+        }
+        return retval;
+    }
+
     /**
      * Return a map of maps by connection id. Each sub-map maps procedure
      * names to {@link ClientStats} instances. Note that connection id is
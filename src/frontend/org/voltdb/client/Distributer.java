@@ -69,6 +69,7 @@ import org.voltdb.common.Constants;
 
 import com.google_voltpatches.common.base.Throwables;
 import com.google_voltpatches.common.collect.ImmutableList;
+import com.google_voltpatches.common.collect.ImmutableMap;
 import com.google_voltpatches.common.collect.ImmutableSet;
 import com.google_voltpatches.common.collect.Maps;
 
@@ -87,6 +88,14 @@ class Distributer {
     public static final Long ASYNC_TOPO_HANDLE = PING_HANDLE - 1;
     static final long USE_DEFAULT_CLIENT_TIMEOUT = 0;
     static long PARTITION_KEYS_INFO_REFRESH_FREQUENCY = Long.getLong("PARTITION_KEYS_INFO_REFRESH_FREQUENCY", 1000);
+    // Resolution of procedure call timeouts
+    static long CALLBACK_TIMER_TICK_MS = Long.getLong("CLIENT_CALLBACK_TIMER_TICK_MS", 10);
+    // Stripes of each connection's outstanding call table
+    static int CALLBACK_TABLE_STRIPES = Integer.getInteger("CLIENT_CALLBACK_TABLE_STRIPES", 16);
+    // A coalesced batch is written out early once it reaches this size
+    static int COALESCING_MAX_BATCH_BYTES = Integer.getInteger("CLIENT_COALESCING_MAX_BATCH_BYTES", 16 * 1024);
+    // Batch size histogram buckets, bucket i counts batches of [2^i, 2^(i+1)) invocations
+    static final int BATCH_SIZE_BUCKETS = 16;
 
     // handles used internally are negative and decrement for each call
     public final AtomicLong m_sysHandle = new AtomicLong(-1);
@@ -101,7 +110,7 @@ class Distributer {
     private final VoltNetworkPool m_network;
 
     // Temporary until a distribution/affinity algorithm is written
-    private int m_nextConnection = 0;
+    private final AtomicInteger m_nextConnection = new AtomicInteger(0);
 
     private final boolean m_useMultipleThreads;
     private final boolean m_useClientAffinity;
@@ -124,35 +133,44 @@ class Distributer {
         }
     }
 
-    private final Map<Integer, NodeConnection> m_partitionMasters = new HashMap<>();
-    private final Map<Integer, NodeConnection[]> m_partitionReplicas = new HashMap<>();
-    private final Map<Integer, NodeConnection> m_hostIdToConnection = new HashMap<>();
-    private final Map<String, Procedure> m_procedureInfo = new HashMap<>();
+    /*
+     * Routing state read by queue() without locking. Updates build a new map and
+     * publish it while holding the lock on the Distributer.
+     */
+    private volatile ImmutableMap<Integer, NodeConnection> m_partitionMasters = ImmutableMap.of();
+    private volatile ImmutableMap<Integer, NodeConnection[]> m_partitionReplicas = ImmutableMap.of();
+    private final Map<Integer, NodeConnection> m_hostIdToConnection = new ConcurrentHashMap<>();
+    private volatile ImmutableMap<String, Procedure> m_procedureInfo = ImmutableMap.of();
 
     private final AtomicReference<ImmutableSet<Integer>> m_partitionKeys = new AtomicReference<ImmutableSet<Integer>>();
     private final AtomicLong m_lastPartitionKeyFetched = new AtomicLong(0);
     private final AtomicReference<ClientResponse> m_partitionUpdateStatus = new AtomicReference<ClientResponse>();
 
     //This is the instance of the Hashinator we picked from TOPO used only for client affinity.
-    private HashinatorLite m_hashinator = null;
+    private volatile HashinatorLite m_hashinator = null;
     //This is a global timeout that will be used if a per-procedure timeout is not provided with the procedure call.
     private final long m_procedureCallTimeoutNanos;
     private static final long MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS = 30 * 60 * 1000; // 30 minutes
     private final long m_connectionResponseTimeoutNanos;
-    private final Map<Integer, ClientAffinityStats> m_clientAffinityStats =
-        new HashMap<>();
+    private final ConcurrentMap<Integer, ClientAffinityStats> m_clientAffinityStats =
+        new ConcurrentHashMap<>();
 
     public final RateLimiter m_rateLimiter = new RateLimiter();
 
     private final AtomicReference<ImmutableSet<Integer>> m_unconnectedHosts = new AtomicReference<ImmutableSet<Integer>>();
     private AtomicBoolean m_createConnectionUponTopoChangeInProgress = new AtomicBoolean(false);
     private boolean m_topologyChangeAware;
+    // How long invocations may be held back to coalesce them into one write, 0 when disabled
+    private volatile long m_coalescingWindowNanos = 0;
 
     //private final Timer m_timer;
     private final ScheduledExecutorService m_ex =
         Executors.newSingleThreadScheduledExecutor(
                 CoreUtils.getThreadFactory("VoltDB Client Reaper Thread"));
-    ScheduledFuture<?> m_timeoutReaperHandle;
+    ScheduledFuture<?> m_callbackTimerHandle;
+    // One timer per connection for pings and connection response timeouts
+    private final TimerWheel m_keepaliveWheel =
+            new TimerWheel(TimeUnit.MILLISECONDS.toNanos(CALLBACK_TIMER_TICK_MS));
 
     /**
      * Server's instances id. Unique for the cluster
@@ -303,56 +321,82 @@ class Distributer {
         }
     }
 
-    class CallExpiration implements Runnable {
-        @Override
-        public void run() {
-            try {
-                // make a threadsafe copy of all connections
-                ArrayList<NodeConnection> connections = new ArrayList<>();
-                synchronized (Distributer.this) {
-                    connections.addAll(m_connections);
-                }
+    /**
+     * Keepalive timer of a connection, fires a third of the connection response timeout
+     * after the last response to send a ping, and the full timeout after the last
+     * response if the ping went unanswered to close the connection.
+     */
+    static class KeepaliveTimer extends TimerWheel.Timer {
+        final NodeConnection m_cxn;
 
-                final long nowNanos = System.nanoTime();
+        KeepaliveTimer(NodeConnection cxn) {
+            m_cxn = cxn;
+        }
+    }
 
-                // for each connection
-                for (final NodeConnection c : connections) {
-                    // check for connection age
-                    final long sinceLastResponse = Math.max(1, nowNanos - c.m_lastResponseTimeNanos);
-
-                    // if outstanding ping and timeoutMS, close the connection
-                    if (c.m_outstandingPing && (sinceLastResponse > m_connectionResponseTimeoutNanos)) {
-                        // memoize why it's closing
-                        c.m_closeCause = DisconnectCause.TIMEOUT;
-                        // this should trigger NodeConnection.stopping(..)
-                        c.m_connection.unregister();
-                    }
+    private void scheduleKeepalive(NodeConnection c, long nowNanos, long delayNanos) {
+        synchronized (m_keepaliveWheel) {
+            // stopping() cancels under the same lock after clearing m_isConnected
+            if (c.m_isConnected && !c.m_keepalive.isScheduled()) {
+                m_keepaliveWheel.schedule(c.m_keepalive, nowNanos, delayNanos);
+            }
+        }
+    }
 
-                    // if 1/3 of the timeoutMS since last response, send a ping
-                    if ((!c.m_outstandingPing) && (sinceLastResponse > (m_connectionResponseTimeoutNanos / 3))) {
-                        c.sendPing();
-                    }
+    private void checkKeepalive(NodeConnection c, long nowNanos) {
+        // check for connection age
+        final long sinceLastResponse = Math.max(1, nowNanos - c.m_lastResponseTimeNanos);
 
-                    // for each outstanding procedure
-                    for (final Map.Entry<Long, CallbackBookeeping> e : c.m_callbacks.entrySet()) {
-                        final long handle = e.getKey();
-                        final CallbackBookeeping cb = e.getValue();
+        // if outstanding ping and timeoutMS, close the connection
+        if (c.m_outstandingPing && (sinceLastResponse > m_connectionResponseTimeoutNanos)) {
+            // memoize why it's closing
+            c.m_closeCause = DisconnectCause.TIMEOUT;
+            // this should trigger NodeConnection.stopping(..)
+            c.m_connection.unregister();
+            return;
+        }
 
-                        // if the timeout is expired, call the callback and remove the
-                        // bookeeping data
-                        final long deltaNanos = Math.max(1, nowNanos - cb.timestampNanos);
-                        if (deltaNanos > cb.procedureTimeoutNanos) {
+        // if 1/3 of the timeoutMS since last response, send a ping
+        if ((!c.m_outstandingPing) && (sinceLastResponse > (m_connectionResponseTimeoutNanos / 3))) {
+            c.sendPing();
+        }
 
-                            //For expected long operations don't use the default timeout
-                            //unless it is > MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS
-                            final boolean isLongOp = isLongOp(cb.name);
-                            if (isLongOp && (deltaNanos < TimeUnit.MILLISECONDS.toNanos(MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS))) {
-                                continue;
-                            }
+        // Responses don't touch the timer, it is pushed out here based on the last one seen
+        final long intervalNanos =
+                c.m_outstandingPing ? m_connectionResponseTimeoutNanos : m_connectionResponseTimeoutNanos / 3;
+        scheduleKeepalive(c, nowNanos, intervalNanos > sinceLastResponse ? intervalNanos - sinceLastResponse + 1 : 1);
+    }
 
-                            c.handleTimedoutCallback(handle, nowNanos);
-                        }
+    /**
+     * Advances the timer wheels of the outstanding call tables, timing out every call
+     * whose deadline has passed, and the keepalive wheel of the connections. Responses
+     * racing with the timeout are resolved by whichever side removes the call from the
+     * table first.
+     */
+    class CallbackTimer implements Runnable {
+        private final ArrayList<CallbackBookeeping> m_expired = new ArrayList<>();
+        private final ArrayList<KeepaliveTimer> m_expiredKeepalives = new ArrayList<>();
+
+        @Override
+        public void run() {
+            try {
+                final long nowNanos = System.nanoTime();
+                synchronized (m_keepaliveWheel) {
+                    m_keepaliveWheel.advance(nowNanos, m_expiredKeepalives);
+                }
+                for (KeepaliveTimer t : m_expiredKeepalives) {
+                    checkKeepalive(t.m_cxn, nowNanos);
+                }
+                m_expiredKeepalives.clear();
+
+                for (final NodeConnection c : m_connections) {
+                    c.m_callbacks.expire(nowNanos, m_expired);
+                    for (CallbackBookeeping cb : m_expired) {
+                        final long deltaNanos = Math.max(1, nowNanos - cb.timestampNanos);
+                        c.invokeCallbackWithTimeout(cb.name, cb.callback, deltaNanos, nowNanos,
+                                cb.procedureTimeoutNanos, cb.m_handle, cb.ignoreBackpressure);
                     }
+                    m_expired.clear();
                 }
             } catch (Throwable t) {
                 t.printStackTrace();
@@ -376,8 +420,9 @@ class Distributer {
         return false;
     }
 
-    class CallbackBookeeping {
-        public CallbackBookeeping(long timestampNanos, ProcedureCallback callback, String name, long timeoutNanos, boolean ignoreBackpressure) {
+    static class CallbackBookeeping extends CallbackTable.Entry {
+        public CallbackBookeeping(long handle, long timestampNanos, ProcedureCallback callback, String name, long timeoutNanos, boolean ignoreBackpressure) {
+            super(handle);
             assert(callback != null);
             this.timestampNanos = timestampNanos;
             this.callback = callback;
@@ -395,10 +440,26 @@ class Distributer {
 
     class NodeConnection extends VoltProtocolHandler implements org.voltcore.network.QueueMonitor {
         private final AtomicInteger m_callbacksToInvoke = new AtomicInteger(0);
-        private final ConcurrentMap<Long, CallbackBookeeping> m_callbacks = new ConcurrentHashMap<>();
+        private final CallbackTable m_callbacks =
+                new CallbackTable(CALLBACK_TABLE_STRIPES, TimeUnit.MILLISECONDS.toNanos(CALLBACK_TIMER_TICK_MS));
         private final NonBlockingHashMap<String, ClientStats> m_stats = new NonBlockingHashMap<>();
         private Connection m_connection;
         private volatile boolean m_isConnected = true;
+        private final KeepaliveTimer m_keepalive = new KeepaliveTimer(this);
+        // Calls timed out on this connection, reported through ClientIOStats
+        private final AtomicLong m_timeouts = new AtomicLong(0);
+
+        // Invocations waiting for the coalescing window to close, everything
+        // below is guarded by m_batch
+        private final ArrayList<ByteBuffer> m_batch = new ArrayList<>();
+        private int m_batchBytes = 0;
+        private final long[] m_batchSizes = new long[BATCH_SIZE_BUCKETS];
+        private final Runnable m_flushTask = new Runnable() {
+            @Override
+            public void run() {
+                flushBatch();
+            }
+        };
 
         volatile long m_lastResponseTimeNanos = System.nanoTime();
         boolean m_outstandingPing = false;
@@ -419,9 +480,6 @@ class Distributer {
             //How long from the starting point in time to wait to get this stuff done
             timeoutNanos = (timeoutNanos == Distributer.USE_DEFAULT_CLIENT_TIMEOUT) ? m_procedureCallTimeoutNanos : timeoutNanos;
 
-            //Trigger the timeout at this point in time no matter what
-            final long timeoutTime = nowNanos + timeoutNanos;
-
             //What was the time after the rate limiter returned
             //Will be the same as timeoutNanos if it didn't block
             long afterRateLimitNanos = 0;
@@ -444,26 +502,23 @@ class Distributer {
                 return;
             }
 
-            assert(m_callbacks.containsKey(handle) == false);
-
             //Drain needs to know when all callbacks have been invoked
             final int callbacksToInvoke = m_callbacksToInvoke.incrementAndGet();
             assert(callbacksToInvoke >= 0);
 
-            //Optimistically submit the task
-            m_callbacks.put(handle, new CallbackBookeeping(nowNanos, callback, name, timeoutNanos, ignoreBackpressure));
-
-            //Schedule the timeout to fire relative to the amount of time
-            //spent getting to this point. Might fire immediately
-            //some of the time, but that is fine
-            final long timeoutRemaining = timeoutTime - afterRateLimitNanos;
-
-            //Schedule an individual timeout if necessary
-            //If it is a long op, don't bother scheduling a discrete timeout
-            if (timeoutNanos < TimeUnit.SECONDS.toNanos(1) && !isLongOp(name)) {
-                submitDiscreteTimeoutTask(handle, Math.max(0, timeoutRemaining));
+            //For expected long operations don't use the default timeout
+            //unless it is > MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS
+            long expirationNanos = timeoutNanos;
+            if (isLongOp(name)) {
+                expirationNanos = Math.max(timeoutNanos,
+                        TimeUnit.MILLISECONDS.toNanos(MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS));
             }
 
+            //Optimistically submit the task, the timer wheel fires the timeout
+            //relative to the original call time even if the rate limiter blocked
+            m_callbacks.put(new CallbackBookeeping(handle, nowNanos, callback, name, timeoutNanos, ignoreBackpressure),
+                            nowNanos, expirationNanos);
+
             //Check for disconnect
             if (!m_isConnected) {
                 //Check if the disconnect or expiration already handled the callback
@@ -487,48 +542,62 @@ class Distributer {
                 //for bookkeeping, but it feels dishonest to call this here
                 m_rateLimiter.transactionResponseReceived(nowNanos, -1, ignoreBackpressure);
                 return;
-            } else {
+            } else if (m_coalescingWindowNanos == 0) {
                 m_connection.writeStream().enqueue(c);
+            } else {
+                coalesce(c);
             }
         }
 
         /*
-         * For high precision timeouts, submit a discrete task to a scheduled
-         * executor service to time out the transaction. The timeout task
-         * when run checks if the task is still present in the concurrent map
-         * of tasks and removes it. If it wins the race to remove the map
-         * then the transaction will be timed out even if a response is received
-         * at the same time.
-         *
-         * This will race with the periodic task that checks lower resolution timeouts
-         * and it is fine, the concurrent map makes sure each callback is handled exactly once
+         * Nagle style coalescing: a call is written immediately if it is the only one
+         * outstanding on the connection, otherwise it joins the pending batch which is
+         * written as a single message when the window closes or the batch gets large.
          */
-        void submitDiscreteTimeoutTask(final long handle, long timeoutNanos) {
-            m_ex.schedule(new Runnable() {
-                @Override
-                public void run() {
-                    handleTimedoutCallback(handle, System.nanoTime());
+        private void coalesce(ByteBuffer c) {
+            synchronized (m_batch) {
+                if (m_batch.isEmpty() && m_callbacksToInvoke.get() <= 1) {
+                    recordBatch(1);
+                    m_connection.writeStream().enqueue(c);
+                    return;
+                }
+                m_batch.add(c);
+                m_batchBytes += c.remaining();
+                if (m_batchBytes >= COALESCING_MAX_BATCH_BYTES) {
+                    flushBatch();
                 }
-            }, timeoutNanos, TimeUnit.NANOSECONDS);
+                else if (m_batch.size() == 1) {
+                    try {
+                        m_ex.schedule(m_flushTask, m_coalescingWindowNanos, TimeUnit.NANOSECONDS);
+                    } catch (RejectedExecutionException e) {
+                        // Shutting down, don't leave the call behind
+                        flushBatch();
+                    }
+                }
+            }
         }
 
-        /*
-         * Factor out the boilerplate involved in checking whether a timed out callback
-         * still exists and needs to be invoked, or has already been handled by another thread
-         */
-        void handleTimedoutCallback(long handle, long nowNanos) {
-            //Callback doesn't have to be there, it may have already
-            //received a response or been expired by the periodic expiration task, or a discrete expiration task
-            final CallbackBookeeping cb = m_callbacks.remove(handle);
-
-            //It was handled during the race
-            if (cb == null) {
-                return;
+        void flushBatch() {
+            synchronized (m_batch) {
+                if (m_batch.isEmpty()) {
+                    return;
+                }
+                recordBatch(m_batch.size());
+                m_connection.writeStream().enqueue(m_batch.toArray(new ByteBuffer[m_batch.size()]));
+                m_batch.clear();
+                m_batchBytes = 0;
             }
+        }
 
-            final long deltaNanos = Math.max(1, nowNanos - cb.timestampNanos);
+        private void recordBatch(int invocations) {
+            final int bucket = 31 - Integer.numberOfLeadingZeros(invocations);
+            m_batchSizes[Math.min(bucket, BATCH_SIZE_BUCKETS - 1)]++;
+        }
 
-            invokeCallbackWithTimeout(cb.name, cb.callback, deltaNanos, nowNanos, cb.procedureTimeoutNanos, handle, cb.ignoreBackpressure);
+        long[] getBatchSizes() {
+            synchronized (m_batch) {
+                return m_batchSizes.clone();
+            }
         }
 
         /*
@@ -551,6 +620,7 @@ class Distributer {
             r.setClientHandle(handle);
             r.setClientRoundtrip(deltaNanos);
             r.setClusterRoundtrip((int)TimeUnit.NANOSECONDS.toMillis(deltaNanos));
+            m_timeouts.incrementAndGet();
             try {
                 callback.clientCallback(r);
             } catch (Throwable e1) {
@@ -658,7 +728,7 @@ class Distributer {
 
             //Race with expiration thread to be the first to remove the callback
             //from the map and process it
-            final CallbackBookeeping stuff = m_callbacks.remove(response.getClientHandle());
+            final CallbackBookeeping stuff = (CallbackBookeeping)m_callbacks.remove(handle);
 
             // presumably (hopefully) this is a response for a timed-out message
             if (stuff == null) {
@@ -719,20 +789,28 @@ class Distributer {
         public void stopping(Connection c) {
             super.stopping(c);
             m_isConnected = false;
+            synchronized (m_keepaliveWheel) {
+                m_keepaliveWheel.cancel(m_keepalive);
+            }
+            // The calls are failed below along with everything else outstanding
+            synchronized (m_batch) {
+                m_batch.clear();
+                m_batchBytes = 0;
+            }
             //Prevent queueing of new work to this connection
             synchronized (Distributer.this) {
                 /*
                  * Repair all cluster topology data with the node connection removed
                  */
-                Iterator<Map.Entry<Integer, NodeConnection>> i = m_partitionMasters.entrySet().iterator();
-                while (i.hasNext()) {
-                    Map.Entry<Integer, NodeConnection> entry = i.next();
-                    if (entry.getValue() == this) {
-                        i.remove();
+                ImmutableMap.Builder<Integer, NodeConnection> masters = ImmutableMap.builder();
+                for (Map.Entry<Integer, NodeConnection> entry : m_partitionMasters.entrySet()) {
+                    if (entry.getValue() != this) {
+                        masters.put(entry);
                     }
                 }
+                m_partitionMasters = masters.build();
 
-                i = m_hostIdToConnection.entrySet().iterator();
+                Iterator<Map.Entry<Integer, NodeConnection>> i = m_hostIdToConnection.entrySet().iterator();
                 while (i.hasNext()) {
                     Map.Entry<Integer, NodeConnection> entry = i.next();
                     if (entry.getValue() == this) {
@@ -740,31 +818,19 @@ class Distributer {
                     }
                 }
 
-                Iterator<Map.Entry<Integer, NodeConnection[]>> i2 = m_partitionReplicas.entrySet().iterator();
-                List<Pair<Integer, NodeConnection[]>> entriesToRewrite = new ArrayList<>();
-                while (i2.hasNext()) {
-                    Map.Entry<Integer, NodeConnection[]> entry = i2.next();
+                ImmutableMap.Builder<Integer, NodeConnection[]> replicas = ImmutableMap.builder();
+                for (Map.Entry<Integer, NodeConnection[]> entry : m_partitionReplicas.entrySet()) {
+                    List<NodeConnection> survivors = new ArrayList<>();
                     for (NodeConnection nc : entry.getValue()) {
-                        if (nc == this) {
-                            entriesToRewrite.add(Pair.of(entry.getKey(), entry.getValue()));
+                        if (nc != this) {
+                            survivors.add(nc);
                         }
                     }
-                }
-
-                for (Pair<Integer, NodeConnection[]> entry : entriesToRewrite) {
-                    m_partitionReplicas.remove(entry.getFirst());
-                    NodeConnection survivors[] = new NodeConnection[entry.getSecond().length - 1];
-                    if (survivors.length == 0) {
-                        break;
+                    if (!survivors.isEmpty()) {
+                        replicas.put(entry.getKey(), survivors.toArray(new NodeConnection[survivors.size()]));
                     }
-                    int zz = 0;
-                    for (int ii = 0; ii < entry.getSecond().length; ii++) {
-                        if (entry.getSecond()[ii] != this) {
-                            survivors[zz++] = entry.getSecond()[ii];
-                        }
-                    }
-                    m_partitionReplicas.put(entry.getFirst(), survivors);
                 }
+                m_partitionReplicas = replicas.build();
 
                 m_connections.remove(this);
                 //Notify listeners that a connection has been lost
@@ -809,12 +875,9 @@ class Distributer {
                         ClientResponse.CONNECTION_LOST, new VoltTable[0],
                         "Connection to database host (" + m_connection.getHostnameAndIPAndPort() +
                 ") was lost before a response was received");
-            for (Map.Entry<Long, CallbackBookeeping> e : m_callbacks.entrySet()) {
-                //Check for race with other threads
-                if (m_callbacks.remove(e.getKey()) == null) {
-                    continue;
-                }
-                final CallbackBookeeping callBk = e.getValue();
+            final List<CallbackBookeeping> outstanding = new ArrayList<>();
+            m_callbacks.removeAll(outstanding);
+            for (CallbackBookeeping callBk : outstanding) {
                 try {
                     callBk.callback.clientCallback(r);
                 }
@@ -928,7 +991,8 @@ class Distributer {
         m_sendReadsToReplicasBytDefaultIfCAEnabled = sendReadsToReplicasBytDefault;
 
         // schedule the task that looks for timed-out proc calls and connections
-        m_timeoutReaperHandle = m_ex.scheduleAtFixedRate(new CallExpiration(), 1, 1, TimeUnit.SECONDS);
+        m_callbackTimerHandle = m_ex.scheduleAtFixedRate(new CallbackTimer(),
+                CALLBACK_TIMER_TICK_MS, CALLBACK_TIMER_TICK_MS, TimeUnit.MILLISECONDS);
         m_subject = subject;
     }
 
@@ -993,6 +1057,7 @@ class Distributer {
 
             m_connections.add(cxn);
         }
+        scheduleKeepalive(cxn, System.nanoTime(), m_connectionResponseTimeoutNanos / 3 + 1);
 
         if (m_useClientAffinity) {
             synchronized (this) {
@@ -1088,80 +1153,122 @@ class Distributer {
         assert(invocation != null);
         assert(cb != null);
 
-        NodeConnection cxn = null;
-        boolean backpressure = true;
+        if (m_connections.isEmpty()) {
+            throw new NoConnectionsException("No connections.");
+        }
+
+        NodeConnection cxn = selectConnection(invocation, ignoreBackpressure, true);
+        final boolean backpressure = (cxn == null);
+        if (backpressure) {
+            /*
+             * Synchronization is necessary to ensure that backpressure is not reported
+             * after a connection's write stream has reported that it ended (offBackPressure
+             * notifies under the same lock), so check again before reporting it.
+             */
+            synchronized (this) {
+                if (selectConnection(invocation, ignoreBackpressure, false) == null) {
+                    for (ClientStatusListenerExt s : m_listeners) {
+                        s.backpressure(true);
+                    }
+                }
+            }
+        }
 
         /*
-         * Synchronization is necessary to ensure that m_connections is not modified
-         * as well as to ensure that backpressure is reported correctly
+         * Do the heavy weight serialization on the calling thread, createWork only
+         * contends with other calls whose handles share a stripe of the callback table
          */
-        synchronized (this) {
-            final int totalConnections = m_connections.size();
-
-            if (totalConnections == 0) {
-                throw new NoConnectionsException("No connections.");
+        if (cxn != null) {
+            ByteBuffer buf = null;
+            try {
+                buf = serializeSPI(invocation);
+            } catch (Exception e) {
+                Throwables.propagate(e);
             }
+            cxn.createWork(nowNanos, invocation.getHandle(), invocation.getProcName(), buf, cb, ignoreBackpressure, timeoutNanos);
+        }
+        if (m_topologyChangeAware) {
+            createConnectionsUponTopologyChange();
+        }
+        return !backpressure;
+    }
 
-            /*
-             * Check if the master for the partition is known. No back pressure check to ensure correct
-             * routing, but backpressure will be managed anyways. This is where we guess partition based on client
-             * affinity and known topology (hashinator initialized).
-             */
-            if (m_useClientAffinity && (m_hashinator != null)) {
-                final Procedure procedureInfo = m_procedureInfo.get(invocation.getProcName());
-                Integer hashedPartition = -1;
-
-                if (procedureInfo != null) {
-                    hashedPartition = Constants.MP_INIT_PID;
-                    if (( ! procedureInfo.multiPart) &&
-                        // User may have passed too few parameters to allow dispatching.
-                        // Avoid an indexing error here to fall through to the proper ProcCallException.
-                            (procedureInfo.partitionParameter < invocation.getPassedParamCount())) {
-                        hashedPartition = m_hashinator.getHashedPartitionForParameter(
-                                procedureInfo.partitionParameterType,
-                                invocation.getPartitionParamValue(procedureInfo.partitionParameter));
-                    }
-                    /*
-                     * If the procedure is read only and single part and the user wants it, load balance across replicas
-                     * This is probably slower for SAFE consistency.
-                     */
-                    if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sendReadsToReplicasBytDefaultIfCAEnabled) {
-                        NodeConnection partitionReplicas[] = m_partitionReplicas.get(hashedPartition);
-                        if (partitionReplicas != null && partitionReplicas.length > 0) {
-                            cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
-                            if (cxn.hadBackPressure()) {
-                                //See if there is one without backpressure, make sure it's still connected
-                                for (NodeConnection nc : partitionReplicas) {
-                                    if (!nc.hadBackPressure() && nc.m_isConnected) {
-                                        cxn = nc;
-                                        break;
-                                    }
+    /**
+     * Pick the connection for an invocation without locking, using client affinity when
+     * the topology is known and round robin otherwise.
+     * @param updateStats account the choice in the client affinity stats
+     * @return the connection, or null if all candidates have backpressure
+     */
+    private NodeConnection selectConnection(ProcedureInvocation invocation,
+            boolean ignoreBackpressure, boolean updateStats) {
+        NodeConnection cxn = null;
+        boolean backpressure = true;
+
+        /*
+         * Check if the master for the partition is known. No back pressure check to ensure correct
+         * routing, but backpressure will be managed anyways. This is where we guess partition based on client
+         * affinity and known topology (hashinator initialized).
+         */
+        final HashinatorLite hashinator = m_hashinator;
+        if (m_useClientAffinity && (hashinator != null)) {
+            final Procedure procedureInfo = m_procedureInfo.get(invocation.getProcName());
+            Integer hashedPartition = -1;
+
+            if (procedureInfo != null) {
+                hashedPartition = Constants.MP_INIT_PID;
+                if (( ! procedureInfo.multiPart) &&
+                    // User may have passed too few parameters to allow dispatching.
+                    // Avoid an indexing error here to fall through to the proper ProcCallException.
+                        (procedureInfo.partitionParameter < invocation.getPassedParamCount())) {
+                    hashedPartition = hashinator.getHashedPartitionForParameter(
+                            procedureInfo.partitionParameterType,
+                            invocation.getPartitionParamValue(procedureInfo.partitionParameter));
+                }
+                /*
+                 * If the procedure is read only and single part and the user wants it, load balance across replicas
+                 * This is probably slower for SAFE consistency.
+                 */
+                if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sendReadsToReplicasBytDefaultIfCAEnabled) {
+                    NodeConnection partitionReplicas[] = m_partitionReplicas.get(hashedPartition);
+                    if (partitionReplicas != null && partitionReplicas.length > 0) {
+                        cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
+                        if (cxn.hadBackPressure()) {
+                            //See if there is one without backpressure, make sure it's still connected
+                            for (NodeConnection nc : partitionReplicas) {
+                                if (!nc.hadBackPressure() && nc.m_isConnected) {
+                                    cxn = nc;
+                                    break;
                                 }
                             }
-                            if (!cxn.hadBackPressure() || ignoreBackpressure) {
-                                backpressure = false;
-                            }
                         }
-                    } else {
-                        /*
-                         * For writes or SAFE reads, this is the best way to go
-                         */
-                        cxn = m_partitionMasters.get(hashedPartition);
-                        if (cxn != null && !cxn.hadBackPressure() || ignoreBackpressure) {
+                        if (!cxn.hadBackPressure() || ignoreBackpressure) {
                             backpressure = false;
                         }
                     }
+                } else {
+                    /*
+                     * For writes or SAFE reads, this is the best way to go
+                     */
+                    cxn = m_partitionMasters.get(hashedPartition);
+                    if (cxn != null && !cxn.hadBackPressure() || ignoreBackpressure) {
+                        backpressure = false;
+                    }
                 }
-                if (cxn != null && !cxn.m_isConnected) {
-                    // Would be nice to log something here
-                    // Client affinity picked a connection that was actually disconnected.  Reset to null
-                    // and let the round-robin choice pick a connection
-                    cxn = null;
-                }
+            }
+            if (cxn != null && !cxn.m_isConnected) {
+                // Would be nice to log something here
+                // Client affinity picked a connection that was actually disconnected.  Reset to null
+                // and let the round-robin choice pick a connection
+                cxn = null;
+            }
+            if (updateStats) {
                 ClientAffinityStats stats = m_clientAffinityStats.get(hashedPartition);
                 if (stats == null) {
                     stats = new ClientAffinityStats(hashedPartition, 0, 0, 0, 0);
-                    m_clientAffinityStats.put(hashedPartition, stats);
+                    ClientAffinityStats existing = m_clientAffinityStats.putIfAbsent(hashedPartition, stats);
+                    if (existing != null) {
+                        stats = existing;
+                    }
                 }
                 if (cxn != null) {
                     if (procedureInfo != null && procedureInfo.readOnly) {
@@ -1182,9 +1289,15 @@ class Distributer {
                     }
                 }
             }
-            if (cxn == null) {
-                for (int i=0; i < totalConnections; ++i) {
-                    cxn = m_connections.get(Math.abs(++m_nextConnection % totalConnections));
+        }
+        if (cxn == null) {
+            // m_connections is copy on write, iterate over a consistent snapshot of it
+            final Object[] connections = m_connections.toArray();
+            final int totalConnections = connections.length;
+            if (totalConnections > 0) {
+                final int start = m_nextConnection.getAndIncrement();
+                for (int i = 0; i < totalConnections; ++i) {
+                    cxn = (NodeConnection)connections[Math.abs((start + i) % totalConnections)];
                     if (!cxn.hadBackPressure() || ignoreBackpressure) {
                         // serialize and queue the invocation
                         backpressure = false;
@@ -1192,32 +1305,9 @@ class Distributer {
                     }
                 }
             }
-
-            if (backpressure) {
-                cxn = null;
-                for (ClientStatusListenerExt s : m_listeners) {
-                    s.backpressure(true);
-                }
-            }
         }
 
-        /*
-         * Do the heavy weight serialization outside the synchronized block.
-         * createWork synchronizes on an individual connection which allows for more concurrency
-         */
-        if (cxn != null) {
-            ByteBuffer buf = null;
-            try {
-                buf = serializeSPI(invocation);
-            } catch (Exception e) {
-                Throwables.propagate(e);
-            }
-            cxn.createWork(nowNanos, invocation.getHandle(), invocation.getProcName(), buf, cb, ignoreBackpressure, timeoutNanos);
-        }
-        if (m_topologyChangeAware) {
-            createConnectionsUponTopologyChange();
-        }
-        return !backpressure;
+        return backpressure ? null : cxn;
     }
 
     /**
@@ -1227,7 +1317,7 @@ class Distributer {
      */
     final void shutdown() throws InterruptedException {
         // stop the old proc call reaper
-        m_timeoutReaperHandle.cancel(false);
+        m_callbackTimerHandle.cancel(false);
         m_ex.shutdown();
         if (CoreUtils.isJunitTest()) {
             m_ex.awaitTermination(1, TimeUnit.SECONDS);
@@ -1306,7 +1396,8 @@ class Distributer {
             long read = perConnIOStats.getSecond()[0];
             long write = perConnIOStats.getSecond()[2];
 
-            ClientIOStats cios = new ClientIOStats(conn.connectionId(), read, write);
+            ClientIOStats cios = new ClientIOStats(conn.connectionId(), read, write,
+                    conn.m_timeouts.get(), conn.getBatchSizes());
             retval.put(conn.connectionId(), cios);
         }
 
@@ -1316,11 +1407,9 @@ class Distributer {
     Map<Integer, ClientAffinityStats> getAffinityStatsSnapshot()
     {
         Map<Integer, ClientAffinityStats> retval = new HashMap<>();
-        // these get modified under this lock in queue()
-        synchronized(this) {
-            for (Entry<Integer, ClientAffinityStats> e : m_clientAffinityStats.entrySet()) {
-                retval.put(e.getKey(), (ClientAffinityStats)e.getValue().clone());
-            }
+        // these get modified concurrently in queue(), clone() takes a consistent copy
+        for (Entry<Integer, ClientAffinityStats> e : m_clientAffinityStats.entrySet()) {
+            retval.put(e.getKey(), (ClientAffinityStats)e.getValue().clone());
         }
         return retval;
     }
@@ -1366,11 +1455,12 @@ class Distributer {
 
         //In future let TOPO return cooked bytes when cooked and we use correct recipe
         boolean cooked = false;
+        final HashinatorLite hashinator;
         if (tables.length == 1) {
             //Just in case the new client connects to the old version of Volt that only returns 1 topology table
             // We're going to get the MPI back in this table, so subtract it out from the number of partitions.
             int numPartitions = vt.getRowCount() - 1;
-            m_hashinator = new HashinatorLite(numPartitions); // legacy only
+            hashinator = new HashinatorLite(numPartitions); // legacy only
         } else {
             //Second table contains the hash function
             boolean advanced = tables[1].advanceRow();
@@ -1379,13 +1469,13 @@ class Distributer {
                                    "performance will be lower because transactions can't be routed at this client");
                 return;
             }
-            m_hashinator = new HashinatorLite(
+            hashinator = new HashinatorLite(
                     HashinatorLiteType.valueOf(tables[1].getString("HASHTYPE")),
                     tables[1].getVarbinary("HASHCONFIG"),
                     cooked);
         }
-        m_partitionMasters.clear();
-        m_partitionReplicas.clear();
+        Map<Integer, NodeConnection> partitionMasters = new HashMap<>();
+        Map<Integer, NodeConnection[]> partitionReplicas = new HashMap<>();
         // The MPI's partition ID is 16383 (MpInitiator.MP_INIT_PID), so we shouldn't inadvertently
         // hash to it.  Go ahead and include it in the maps, we can use it at some point to
         // route MP transactions directly to the MPI node.
@@ -1403,13 +1493,16 @@ class Distributer {
                     unconnected.add(hostId);
                }
             }
-            m_partitionReplicas.put(partition, connections.toArray(new NodeConnection[0]));
+            partitionReplicas.put(partition, connections.toArray(new NodeConnection[0]));
 
             Integer leaderHostId = Integer.valueOf(vt.getString("Leader").split(":")[0]);
             if (m_hostIdToConnection.containsKey(leaderHostId)) {
-                m_partitionMasters.put(partition, m_hostIdToConnection.get(leaderHostId));
+                partitionMasters.put(partition, m_hostIdToConnection.get(leaderHostId));
             }
         }
+        m_partitionMasters = ImmutableMap.copyOf(partitionMasters);
+        m_partitionReplicas = ImmutableMap.copyOf(partitionReplicas);
+        m_hashinator = hashinator;
         if (m_topologyChangeAware) {
             m_unconnectedHosts.set(ImmutableSet.copyOf(unconnected));
         }
@@ -1417,7 +1510,7 @@ class Distributer {
     }
 
     private void updateProcedurePartitioning(VoltTable vt) {
-        m_procedureInfo.clear();
+        Map<String, Procedure> procedureInfo = new HashMap<>();
         while (vt.advanceRow()) {
             try {
                 //Data embedded in JSON object in remarks column
@@ -1429,11 +1522,11 @@ class Distributer {
                     int partitionParameter = jsObj.getInt(Constants.JSON_PARTITION_PARAMETER);
                     int partitionParameterType =
                         jsObj.getInt(Constants.JSON_PARTITION_PARAMETER_TYPE);
-                    m_procedureInfo.put(procedureName,
+                    procedureInfo.put(procedureName,
                             new Procedure(false,readOnly, partitionParameter, partitionParameterType));
                 } else {
                     // Multi Part procedure JSON descriptors omit the partitionParameter
-                    m_procedureInfo.put(procedureName, new Procedure(true, readOnly, Procedure.PARAMETER_NONE,
+                    procedureInfo.put(procedureName, new Procedure(true, readOnly, Procedure.PARAMETER_NONE,
                                 Procedure.PARAMETER_NONE));
                 }
 
@@ -1441,6 +1534,7 @@ class Distributer {
                 e.printStackTrace();
             }
         }
+        m_procedureInfo = ImmutableMap.copyOf(procedureInfo);
     }
 
     private void updatePartitioning(VoltTable vt) {
@@ -1548,6 +1642,10 @@ class Distributer {
         m_topologyChangeAware = topoAware;
     }
 
+    void setCoalescingWindow(long windowNanos) {
+        m_coalescingWindowNanos = windowNanos;
+    }
+
     void createConnectionsUponTopologyChange() {
 
         if(!m_topologyChangeAware || m_createConnectionUponTopoChangeInProgress.get()) {
@@ -0,0 +1,216 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.List;
+
+/**
+ * Hierarchical hashed timing wheel.
+ *
+ * The first level has one bucket per tick, each higher level has buckets spanning a
+ * whole revolution of the level below it. A timer is placed in the lowest level whose
+ * range covers its deadline and is moved down a level when the wheel reaches its
+ * bucket, so scheduling and cancelling are O(1) and each timer is touched at most once
+ * per level before it fires, no matter how far out its deadline is.
+ *
+ * Not thread safe, callers provide their own synchronization.
+ */
+final class TimerWheel {
+
+    /**
+     * Intrusive timer node, extended by whatever is being timed.
+     */
+    static class Timer {
+        long m_deadlineTick;
+        Timer m_prev;
+        Timer m_next;
+        // Index into m_buckets, -1 when not scheduled
+        int m_bucket = -1;
+
+        boolean isScheduled() {
+            return m_bucket >= 0;
+        }
+    }
+
+    private static final int LEVEL0_BITS = 8;
+    private static final int LEVEL_BITS = 6;
+    private static final int LEVELS = 5;
+    private static final int LEVEL0_SIZE = 1 << LEVEL0_BITS;
+    private static final int LEVEL_SIZE = 1 << LEVEL_BITS;
+    // Deadlines further out than this are clamped and rescheduled when they cascade
+    static final long MAX_DELTA_TICKS = (1L << (LEVEL0_BITS + (LEVELS - 1) * LEVEL_BITS)) - 1;
+
+    private final Timer[] m_buckets = new Timer[LEVEL0_SIZE + (LEVELS - 1) * LEVEL_SIZE];
+    private final long m_tickNanos;
+    private final long m_baseNanos;
+    // All ticks up to and including this one have been processed
+    private long m_currentTick = 0;
+    private int m_size = 0;
+
+    TimerWheel(long tickNanos) {
+        m_tickNanos = tickNanos;
+        m_baseNanos = System.nanoTime();
+    }
+
+    long tickOf(long nanos) {
+        return Math.max(0, nanos - m_baseNanos) / m_tickNanos;
+    }
+
+    int size() {
+        return m_size;
+    }
+
+    /**
+     * Schedule a timer to fire on the first advance at least delayNanos after nowNanos,
+     * in System.nanoTime() terms. The delay is relative so that an infinite timeout of
+     * Long.MAX_VALUE doesn't overflow, a delay of zero fires on the next tick.
+     */
+    void schedule(Timer timer, long nowNanos, long delayNanos) {
+        assert(!timer.isScheduled());
+        // Round up so the timer never fires before its deadline
+        final long delayTicks = delayNanos / m_tickNanos + (delayNanos % m_tickNanos == 0 ? 0 : 1);
+        timer.m_deadlineTick = Math.max(tickOf(nowNanos) + Math.max(delayTicks, 1), m_currentTick + 1);
+        link(timer);
+        m_size++;
+    }
+
+    void cancel(Timer timer) {
+        if (timer.isScheduled()) {
+            unlink(timer);
+            m_size--;
+        }
+    }
+
+    /**
+     * Advance the wheel to nowNanos and append every timer whose deadline has passed
+     * to expired. Expired timers are no longer scheduled.
+     */
+    @SuppressWarnings("unchecked")
+    <T extends Timer> void advance(long nowNanos, List<T> expired) {
+        final long nowTick = tickOf(nowNanos);
+        while (m_currentTick < nowTick) {
+            if (m_size == 0) {
+                // Nothing to cascade or fire, jump straight to now
+                m_currentTick = nowTick;
+                break;
+            }
+            final long tick = ++m_currentTick;
+            final int index = (int)(tick & (LEVEL0_SIZE - 1));
+            if (index == 0) {
+                cascade(tick);
+            }
+            Timer t = m_buckets[index];
+            m_buckets[index] = null;
+            while (t != null) {
+                final Timer next = t.m_next;
+                t.m_prev = null;
+                t.m_next = null;
+                t.m_bucket = -1;
+                m_size--;
+                expired.add((T)t);
+                t = next;
+            }
+        }
+    }
+
+    /**
+     * Remove every scheduled timer and append it to removed.
+     */
+    @SuppressWarnings("unchecked")
+    <T extends Timer> void clear(List<T> removed) {
+        for (int i = 0; i < m_buckets.length; i++) {
+            Timer t = m_buckets[i];
+            m_buckets[i] = null;
+            while (t != null) {
+                final Timer next = t.m_next;
+                t.m_prev = null;
+                t.m_next = null;
+                t.m_bucket = -1;
+                if (removed != null) {
+                    removed.add((T)t);
+                }
+                t = next;
+            }
+        }
+        m_size = 0;
+    }
+
+    /*
+     * The first level wrapped, move the timers in the current bucket of each higher
+     * level whose lower levels have all wrapped down to where they now belong.
+     */
+    private void cascade(long tick) {
+        int shift = LEVEL0_BITS;
+        for (int level = 1; level < LEVELS; level++) {
+            final int index = (int)((tick >>> shift) & (LEVEL_SIZE - 1));
+            final int bucket = LEVEL0_SIZE + (level - 1) * LEVEL_SIZE + index;
+            Timer t = m_buckets[bucket];
+            m_buckets[bucket] = null;
+            while (t != null) {
+                final Timer next = t.m_next;
+                link(t);
+                t = next;
+            }
+            if (index != 0) {
+                break;
+            }
+            shift += LEVEL_BITS;
+        }
+    }
+
+    private void link(Timer t) {
+        final long delta = t.m_deadlineTick - m_currentTick;
+        final int bucket;
+        if (delta < LEVEL0_SIZE) {
+            bucket = (int)(t.m_deadlineTick & (LEVEL0_SIZE - 1));
+        }
+        else {
+            final long deadline = m_currentTick + Math.min(delta, MAX_DELTA_TICKS);
+            int level = 1;
+            int shift = LEVEL0_BITS;
+            while (level < LEVELS - 1 && delta >= (1L << (shift + LEVEL_BITS))) {
+                level++;
+                shift += LEVEL_BITS;
+            }
+            bucket = LEVEL0_SIZE + (level - 1) * LEVEL_SIZE + (int)((deadline >>> shift) & (LEVEL_SIZE - 1));
+        }
+        final Timer head = m_buckets[bucket];
+        t.m_prev = null;
+        t.m_next = head;
+        if (head != null) {
+            head.m_prev = t;
+        }
+        m_buckets[bucket] = t;
+        t.m_bucket = bucket;
+    }
+
+    private void unlink(Timer t) {
+        if (t.m_prev != null) {
+            t.m_prev.m_next = t.m_next;
+        }
+        else {
+            m_buckets[t.m_bucket] = t.m_next;
+        }
+        if (t.m_next != null) {
+            t.m_next.m_prev = t.m_prev;
+        }
+        t.m_prev = null;
+        t.m_next = null;
+        t.m_bucket = -1;
+    }
+}
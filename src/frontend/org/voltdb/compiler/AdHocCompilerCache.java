@@ -19,11 +19,10 @@ package org.voltdb.compiler;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.voltdb.common.Constants;
 import org.voltdb.planner.BoundPlan;
@@ -31,6 +30,10 @@ import org.voltdb.utils.Encoder;
 
 import com.google_voltpatches.common.cache.Cache;
 import com.google_voltpatches.common.cache.CacheBuilder;
+import com.google_voltpatches.common.cache.CacheStats;
+import com.google_voltpatches.common.cache.RemovalListener;
+import com.google_voltpatches.common.cache.RemovalNotification;
+import com.google_voltpatches.common.cache.Weigher;
 
 /**
  * Keep a cache two level cache of plans generated by the Ad Hoc
@@ -43,6 +46,11 @@ import com.google_voltpatches.common.cache.CacheBuilder;
  * statement mapped to core parameterized plans. These parameterized
  * plans need parameter values and sql literals in order to be
  * actually used.
+ *
+ * Both levels are concurrent caches split into independently locked
+ * segments, so planner threads looking up different statements don't
+ * contend, and each is bounded by the estimated bytes of its entries
+ * rather than by entry count.
  */
 public class AdHocCompilerCache implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -59,6 +67,26 @@ public class AdHocCompilerCache implements Serializable {
         m_catalogHashMatch.invalidateAll();
     }
 
+    // Segments in each cache level, bounds how many planner threads can update it at once
+    static final int CONCURRENCY_LEVEL = Integer.getInteger("ADHOC_COMPILER_CACHE_CONCURRENCY", 16);
+
+    // Memory bounds for caches created from here on, from the deployment's <plancache> settings
+    private static volatile long s_maxLiteralMem =
+            Long.getLong("ADHOC_COMPILER_CACHE_MAX_LITERAL_MEM_BYTES", 32*1024*1024);
+    private static volatile long s_maxCoreMem =
+            Long.getLong("ADHOC_COMPILER_CACHE_MAX_CORE_MEM_BYTES", 32*1024*1024);
+
+    /**
+     * Set the memory bounds of the caches created for subsequent catalogs.
+     *
+     * @param maxLiteralMem bytes of literal (L1) cache entries
+     * @param maxCoreMem    bytes of core (L2) cache entries
+     */
+    public static void setMemoryLimits(long maxLiteralMem, long maxCoreMem) {
+        s_maxLiteralMem = maxLiteralMem;
+        s_maxCoreMem = maxCoreMem;
+    }
+
     /**
      * Get the global cache for a given hash of the catalog. Note that there can be only
      * one cache per catalogHash at a time.
@@ -67,7 +95,7 @@ public class AdHocCompilerCache implements Serializable {
         String hashString = Encoder.hexEncode(catalogHash);
         AdHocCompilerCache cache = m_catalogHashMatch.getIfPresent(hashString);
         if (cache == null) {
-            cache = new AdHocCompilerCache();
+            cache = new AdHocCompilerCache(s_maxLiteralMem, s_maxCoreMem);
             m_catalogHashMatch.put(hashString, cache);
         }
         return cache;
@@ -77,166 +105,156 @@ public class AdHocCompilerCache implements Serializable {
     // PER-INSTANCE AWESOMEC CACHING CODE
     //////////////////////////////////////////////////////////////////////////
 
-    // cache sizes determined at construction time
-    final int MAX_LITERAL_ENTRIES;
-    // max cache size for parameterized plans
-    final long MAX_LITERAL_MEM  = Long.getLong("ADHOC_COMPILER_CACHE_MAX_LITERAL_MEM_BYTES", 32*1024*1024);
-    final int MAX_CORE_ENTRIES;
-
-    /** cache of literals to full plans */
-    final Map<String, AdHocPlannedStatement> m_literalCache;
-    /** cache of parameterized plan descriptions to one or more core parameterized plans,
-     *  each plan optionally has its own requirements for which parameters need to be bound
-     *  to what values to enable its specialized (expression-indexed) plan. */
-    final Map<String, List<BoundPlan> > m_coreCache;
-
-    // placeholder stats used during development that may/may not survive
-    long m_literalHits = 0;
-    long m_literalQueries = 0;
-    long m_literalInsertions = 0;
-    long m_literalEvictions = 0;
-    long m_planHits = 0;
-    long m_planQueries = 0;
-    long m_planInsertions = 0;
-    long m_planEvictions = 0;
-
-    /** {@see this#startPeriodicStatsPrinting() } */
-    Timer m_statsTimer = null;
-
     /**
-     * Constructor with default cache sizes.
+     * Estimated heap cost of cache entries, strings count two bytes a character.
      */
-    private AdHocCompilerCache() {
-        this(1000, 1000);
-    }
+    private static final Weigher<String, AdHocPlannedStatement> LITERAL_WEIGHER =
+            new Weigher<String, AdHocPlannedStatement>() {
+        @Override
+        public int weigh(String sql, AdHocPlannedStatement plan) {
+            return 2 * sql.length() + plan.getSerializedSize();
+        }
+    };
 
-    /**
-     * Constructor with specific cache sizes is only called directly for testing.
-     *
-     * @param maxLiteralEntries cache size for literals
-     * @param maxLiteralMem cache memory for literals
-     */
-    AdHocCompilerCache(int maxLiteralEntries, int maxCoreEntries) {
-        MAX_LITERAL_ENTRIES = maxLiteralEntries;
-        MAX_CORE_ENTRIES = maxCoreEntries;
-
-        // an LRU cache map
-        m_literalCache = new AdHocStatementCache(MAX_LITERAL_ENTRIES, MAX_LITERAL_MEM);
-
-        // an LRU cache map
-        m_coreCache = new LinkedHashMap<String, List<BoundPlan> >(MAX_CORE_ENTRIES * 2, .75f, true) {
-            private static final long serialVersionUID = 1L;
-
-            // This method is called just after a new entry has been added
-            @Override
-            public boolean removeEldestEntry(Map.Entry<String, List<BoundPlan> > eldest) {
-                if (size() > MAX_CORE_ENTRIES) {
-                    ++m_planEvictions;
-                    return true;
+    private static final Weigher<String, List<BoundPlan>> CORE_WEIGHER =
+            new Weigher<String, List<BoundPlan>>() {
+        @Override
+        public int weigh(String parsedToken, List<BoundPlan> boundVariants) {
+            int size = 2 * parsedToken.length();
+            for (BoundPlan boundPlan : boundVariants) {
+                size += boundPlan.m_core.getSerializedSize();
+                if (boundPlan.m_constants != null) {
+                    for (String constant : boundPlan.m_constants) {
+                        size += constant == null ? 0 : 2 * constant.length();
+                    }
                 }
-                return false;
             }
+            return size;
+        }
+    };
 
-        };
-    }
+    /**
+     * One level of the cache, keeps count of insertions and of the bytes in use,
+     * lookups, hits and evictions come from the underlying cache.
+     */
+    public static class Level<V> implements RemovalListener<String, V> {
+        private final Weigher<String, V> m_weigher;
+        private final Cache<String, V> m_cache;
+        private final long m_maxMemory;
+        private final AtomicLong m_memory = new AtomicLong();
+        private final AtomicLong m_insertions = new AtomicLong();
+
+        Level(long maxMemory, Weigher<String, V> weigher) {
+            m_weigher = weigher;
+            m_maxMemory = maxMemory;
+            m_cache = CacheBuilder.newBuilder()
+                    .concurrencyLevel(CONCURRENCY_LEVEL)
+                    .maximumWeight(maxMemory)
+                    .weigher(weigher)
+                    .removalListener(this)
+                    .recordStats()
+                    .build();
+        }
 
-    // define a LinkedHashMap based LRU cache bounds by both entry number and entry value on-heap size
-    // without changing Map.Entry, only works for value of type AdHocPlannedStatement
-    // only extend put, remove,clear and removeEldestEntry methods to account weight
-    public class AdHocStatementCache extends LinkedHashMap<String, AdHocPlannedStatement>{
-       private static final long serialVersionUID = 2988383448026641836L;
-        private final int maxEntries;
-        private final long maxMemory; // in bytes
-        private long currentMemory;   // in bytes
-
-        public AdHocStatementCache() {
-            // default max entry of 1000
-            // default max value size of 32MB
-            this(1000, 32 * 1024 * 1024);
+        V get(String key) {
+            return m_cache.getIfPresent(key);
         }
 
-        public AdHocStatementCache(final int maxEntries) {
-            this(maxEntries, 32 * 1024 * 1024);
+        // Lookups through the map aren't counted in the stats
+        ConcurrentMap<String, V> asMap() {
+            return m_cache.asMap();
         }
 
-        public AdHocStatementCache(final int maxEntries, final long maxMemory) {
-            // set accessOrder to true for LRU
-            super(maxEntries * 2, .75f, true);
-            this.maxEntries = maxEntries;
-            this.maxMemory = maxMemory;
-            this.currentMemory = 0;
+        /**
+         * Add a value for a key that has none.
+         * @return false if the key already had one, the cache is unchanged
+         */
+        boolean putIfAbsent(String key, V value) {
+            // Count it first, the removal listener may take it off again right away
+            final int weight = m_weigher.weigh(key, value);
+            m_memory.addAndGet(weight);
+            if (m_cache.asMap().putIfAbsent(key, value) != null) {
+                m_memory.addAndGet(-weight);
+                return false;
+            }
+            m_insertions.incrementAndGet();
+            return true;
         }
 
-        // This method is called just after a new entry has been added
-        @Override
-        public boolean removeEldestEntry(final Map.Entry<String, AdHocPlannedStatement> eldest) {
-            if ((size() > maxEntries) || (this.currentMemory > this.maxMemory))  {
-                ++m_literalEvictions;
-                this.currentMemory -= eldest.getValue().getSerializedSize();
-                return true;
+        /**
+         * Replace the value for a key if it still is oldValue.
+         * @return false if the key had some other or no value, the cache is unchanged
+         */
+        boolean replace(String key, V oldValue, V newValue) {
+            final int weight = m_weigher.weigh(key, newValue);
+            m_memory.addAndGet(weight);
+            if (!m_cache.asMap().replace(key, oldValue, newValue)) {
+                m_memory.addAndGet(-weight);
+                return false;
             }
-            return false;
+            return true;
         }
 
         @Override
-        public AdHocPlannedStatement put(String key, AdHocPlannedStatement value) {
-            this.currentMemory += value.getSerializedSize();
-            return super.put(key,value);
+        public void onRemoval(RemovalNotification<String, V> notification) {
+            // Replaced and evicted values, the keys and values are never collected
+            m_memory.addAndGet(-m_weigher.weigh(notification.getKey(), notification.getValue()));
         }
 
-        @Override
-        public AdHocPlannedStatement remove(Object key) {
-            AdHocPlannedStatement value = super.remove(key);
-            if (value != null) {
-                this.currentMemory -= value.getSerializedSize();
-            }
-            return value;
+        public long getEntries() {
+            return m_cache.size();
         }
 
-        @Override
-        public void clear() {
-            super.clear();
-            this.currentMemory = 0;
+        public long getMemoryUsed() {
+            return m_memory.get();
+        }
+
+        public long getMaxMemory() {
+            return m_maxMemory;
+        }
+
+        public long getInsertions() {
+            return m_insertions.get();
+        }
+
+        public CacheStats getStats() {
+            return m_cache.stats();
         }
     }
 
+    /** cache of literals to full plans */
+    final Level<AdHocPlannedStatement> m_literalCache;
+    /** cache of parameterized plan descriptions to one or more core parameterized plans,
+     *  each plan optionally has its own requirements for which parameters need to be bound
+     *  to what values to enable its specialized (expression-indexed) plan.
+     *  The lists are never modified once cached, adding a variant replaces the list. */
+    final Level<List<BoundPlan>> m_coreCache;
+
     /**
-     * Stats printing method used during development.
-     * Probably shouldn't live past real stats integration.
+     * Constructor with specific cache sizes is only called directly for testing.
+     *
+     * @param maxLiteralMem cache memory for literals
+     * @param maxCoreMem cache memory for parameterized plans
      */
-    synchronized void printStats() {
-        String line1 = String.format("CACHE STATS - Literals: Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_literalHits, m_literalQueries, (m_literalHits * 100.0) / m_literalQueries,
-                m_literalInsertions, m_literalEvictions);
-        String line2 = String.format("CACHE STATS - Plans:    Hits %d/%d (%.1f%%), Inserts %d Evictions %d\n",
-                m_planHits, m_planQueries, (m_planHits * 100.0) /m_planQueries,
-                m_planInsertions, m_planEvictions);
-
-        System.out.print(line1 + line2);
-        System.out.flush();
-
-        // reset these
-        m_literalHits = 0;
-        m_literalQueries = 0;
-        m_literalInsertions = 0;
-        m_literalEvictions = 0;
-        m_planHits = 0;
-        m_planQueries = 0;
-        m_planInsertions = 0;
-        m_planEvictions = 0;
+    AdHocCompilerCache(long maxLiteralMem, long maxCoreMem) {
+        m_literalCache = new Level<AdHocPlannedStatement>(maxLiteralMem, LITERAL_WEIGHER);
+        m_coreCache = new Level<List<BoundPlan>>(maxCoreMem, CORE_WEIGHER);
     }
 
     /**
      * @param sql SQL literal
      * @return full, ready-to-go plan
      */
-    public synchronized AdHocPlannedStatement getWithSQL(String sql) {
-        ++m_literalQueries;
-        AdHocPlannedStatement retval = m_literalCache.get(sql);
-        if (retval != null) {
-            ++m_literalHits;
-        }
-        return retval;
+    public AdHocPlannedStatement getWithSQL(String sql) {
+        return m_literalCache.get(sql);
+    }
+
+    /**
+     * @param sql SQL literal
+     * @return true if there is a plan for it, without counting a lookup
+     */
+    public boolean containsSQL(String sql) {
+        return m_literalCache.asMap().containsKey(sql);
     }
 
     /**
@@ -244,13 +262,8 @@ public class AdHocCompilerCache implements Serializable {
      * SQL statement
      * @return A CorePlan that needs parameter values to run.
      */
-    public synchronized List<BoundPlan> getWithParsedToken(String parsedToken) {
-        ++m_planQueries;
-        List<BoundPlan> retval = m_coreCache.get(parsedToken);
-        if (retval != null) {
-            ++m_planHits;
-        }
-        return retval;
+    public List<BoundPlan> getWithParsedToken(String parsedToken) {
+        return m_coreCache.get(parsedToken);
     }
 
     /**
@@ -271,12 +284,12 @@ public class AdHocCompilerCache implements Serializable {
      * @param hasUserQuestionMarkParameters is user provided parameterized query
      * @param hasAutoParameterizedException is the auto parameterized query has parameter exception
      */
-    public synchronized void put(String sql,
-                                 String parsedToken,
-                                 AdHocPlannedStatement planIn,
-                                 String[] extractedLiterals,
-                                 boolean hasUserQuestionMarkParameters,
-                                 boolean hasAutoParameterizedException)
+    public void put(String sql,
+                    String parsedToken,
+                    AdHocPlannedStatement planIn,
+                    String[] extractedLiterals,
+                    boolean hasUserQuestionMarkParameters,
+                    boolean hasAutoParameterizedException)
     {
         assert(sql != null);
         assert(parsedToken != null);
@@ -288,55 +301,25 @@ public class AdHocCompilerCache implements Serializable {
         // it means that a query can not be both user parameterized query and auto parameterized query.
         assert(!hasUserQuestionMarkParameters || !hasAutoParameterizedException);
 
-        // uncomment this to get some raw stdout cache performance stats every 5s
-        //startPeriodicStatsPrinting();
-
         // deal with L2 cache
         if (! hasAutoParameterizedException) {
-            BoundPlan matched = null;
             BoundPlan unmatched = new BoundPlan(planIn.core, planIn.parameterBindings(extractedLiterals));
-            // deal with the parameterized plan cache first
-            List<BoundPlan> boundVariants = m_coreCache.get(parsedToken);
-            if (boundVariants == null) {
-                boundVariants = new ArrayList<BoundPlan>();
-                m_coreCache.put(parsedToken, boundVariants);
-                // Note that there is an edge case in which more than one plan is getting counted as one
-                // "plan insertion". This only happens when two different plans arose from the same parameterized
-                // query (token) because one invocation used the correct constants to trigger an expression index and
-                // another invocation did not.  These are not counted separately (which would have to happen below
-                // after each call to boundVariants.add) because they are not evicted separately.
-                // It seems saner to use consistent units when counting insertions vs. evictions.
-                ++m_planInsertions;
-            } else {
-                for (BoundPlan boundPlan : boundVariants) {
-                    if (boundPlan.equals(unmatched)) {
-                        matched = boundPlan;
-                        break;
-                    }
-                }
-                if (matched != null) {
-                    // if a different core is found, reuse it
-                    // this is useful when updating the literal cache
-                    if (unmatched.m_core != matched.m_core) {
-                        plan = new AdHocPlannedStatement(planIn, matched.m_core);
-                        plan.setBoundConstants(matched.m_constants);
-                    }
-                }
-            }
-            if (matched == null) {
-                // Don't count insertions (of possibly repeated tokens) here
-                //  -- see the comment above where only UNIQUE token insertions are being counted, instead.
-                boundVariants.add(unmatched);
+            BoundPlan matched = putBoundPlan(parsedToken, unmatched);
+            // if a different core is found, reuse it
+            // this is useful when updating the literal cache
+            if (matched != null && unmatched.m_core != matched.m_core) {
+                plan = new AdHocPlannedStatement(planIn, matched.m_core);
+                plan.setBoundConstants(matched.m_constants);
             }
         }
 
         // then deal with the L1 cache
         if (! hasUserQuestionMarkParameters) {
-            AdHocPlannedStatement cachedPlan = m_literalCache.get(sql);
+            AdHocPlannedStatement cachedPlan = m_literalCache.asMap().get(sql);
             if (cachedPlan == null) {
                 //* enable to debug */ System.out.println("DEBUG: Caching literal '" + sql + "'");
-                m_literalCache.put(sql, plan);
-                ++m_literalInsertions;
+                // Another planner thread may have got there first, either plan will do
+                m_literalCache.putIfAbsent(sql, plan);
             }
             else {
                 assert(cachedPlan.equals(plan));
@@ -345,18 +328,42 @@ public class AdHocCompilerCache implements Serializable {
     }
 
     /**
-     * Start a timer that prints cache stats to the console every 5s.
-     * Used for development until we get better stats integration.
+     * Add a bound plan to the variants of a parameterized statement unless an
+     * equal one is already cached.
+     *
+     * @return the equal cached bound plan or null if this one was added
      */
-    public void startPeriodicStatsPrinting() {
-        if (m_statsTimer == null) {
-            m_statsTimer = new Timer();
-            m_statsTimer.scheduleAtFixedRate(new TimerTask() {
-                @Override
-                public void run() {
-                    printStats();
+    private BoundPlan putBoundPlan(String parsedToken, BoundPlan unmatched) {
+        final ConcurrentMap<String, List<BoundPlan>> coreMap = m_coreCache.asMap();
+        for (;;) {
+            final List<BoundPlan> boundVariants = coreMap.get(parsedToken);
+            final List<BoundPlan> updated;
+            if (boundVariants == null) {
+                updated = Collections.singletonList(unmatched);
+            }
+            else {
+                for (BoundPlan boundPlan : boundVariants) {
+                    if (boundPlan.equals(unmatched)) {
+                        return boundPlan;
+                    }
                 }
-            }, 5000, 5000);
+                // Note that more than one plan can be cached under one "plan insertion".
+                // This only happens when two different plans arose from the same parameterized
+                // query (token) because one invocation used the correct constants to trigger an
+                // expression index and another invocation did not.  These are not counted
+                // separately because they are not evicted separately.
+                updated = new ArrayList<BoundPlan>(boundVariants.size() + 1);
+                updated.addAll(boundVariants);
+                updated.add(unmatched);
+            }
+
+            final boolean added = boundVariants == null ?
+                    m_coreCache.putIfAbsent(parsedToken, updated) :
+                    m_coreCache.replace(parsedToken, boundVariants, updated);
+            if (added) {
+                return null;
+            }
+            // Lost a race with another planner thread, look again
         }
     }
 
@@ -365,7 +372,7 @@ public class AdHocCompilerCache implements Serializable {
      * @return  literal cache size as a count
      */
     public int getLiteralCacheSize() {
-        return m_literalCache.size();
+        return (int) m_literalCache.getEntries();
     }
 
     /**
@@ -373,6 +380,14 @@ public class AdHocCompilerCache implements Serializable {
      * @return  core cache size as a count
      */
     public int getCoreCacheSize() {
-        return m_coreCache.size();
+        return (int) m_coreCache.getEntries();
+    }
+
+    public Level<AdHocPlannedStatement> getLiteralCache() {
+        return m_literalCache;
+    }
+
+    public Level<List<BoundPlan>> getCoreCache() {
+        return m_coreCache;
     }
 }
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -36,6 +37,7 @@ import org.voltcore.utils.CoreUtils;
 import org.voltdb.CatalogContext;
 import org.voltdb.ClientInterface.ExplainMode;
 import org.voltdb.OperationMode;
+import org.voltdb.PlannerStatsCollector;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltType;
 import org.voltdb.client.ClientResponse;
@@ -55,6 +57,10 @@ public class AsyncCompilerAgent {
     // if more than this amount of work is queued, reject new work
     static public final int MAX_QUEUE_DEPTH = 250;
 
+    // threads planning ad hoc SQL, each plans with its own PlannerTool
+    static public final int PLANNER_THREADS = Integer.getInteger("ADHOC_PLANNER_THREADS",
+            Math.max(1, Math.min(4, CoreUtils.availableProcessors() / 4)));
+
     // accept work via this mailbox
     Mailbox m_mailbox;
 
@@ -66,9 +72,14 @@ public class AsyncCompilerAgent {
     // of Europe, Scandinavia, and the sub-continent.
     final AsyncCompilerAgentHelper m_helper;
 
-    // do work in this executor service
+    // plan ad hoc SQL in this executor service
+    final ListeningExecutorService m_plannerEs =
+        CoreUtils.getListeningExecutorService("Ad Hoc Planner", PLANNER_THREADS,
+                new LinkedBlockingQueue<Runnable>(MAX_QUEUE_DEPTH), null);
+
+    // do catalog changes one at a time in this executor service
     final ListeningExecutorService m_es =
-        CoreUtils.getBoundedSingleThreadExecutor("Ad Hoc Planner", MAX_QUEUE_DEPTH);
+        CoreUtils.getBoundedSingleThreadExecutor("Catalog Compiler", MAX_QUEUE_DEPTH);
 
     // Enable debug hooks when the "asynccompilerdebug" sys prop is set to "true" or "yes".
     private final static MiscUtils.BooleanSystemProperty DEBUG_MODE =
@@ -82,6 +93,11 @@ public class AsyncCompilerAgent {
     // intended for integration test use. finish planning what's in
     // the queue and terminate the TPE.
     public void shutdown() throws InterruptedException {
+        // planner threads hand DDL to the catalog executor, stop them first
+        if (m_plannerEs != null) {
+            m_plannerEs.shutdown();
+            m_plannerEs.awaitTermination(120, TimeUnit.SECONDS);
+        }
         if (m_es != null) {
             m_es.shutdown();
             m_es.awaitTermination(120, TimeUnit.SECONDS);
@@ -99,13 +115,23 @@ public class AsyncCompilerAgent {
 
             @Override
             public void deliver(final VoltMessage message) {
+                final Object payload = ((LocalObjectMessage)message).payload;
+                if (payload instanceof AdHocPlannerWork && completeWithCachedPlan((AdHocPlannerWork)payload)) {
+                    return;
+                }
+                final Runnable task = new Runnable() {
+                    @Override
+                    public void run() {
+                        handleMailboxMessage(message);
+                    }
+                };
                 try {
-                    m_es.submit(new Runnable() {
-                        @Override
-                        public void run() {
-                            handleMailboxMessage(message);
-                        }
-                    });
+                    if (payload instanceof CatalogChangeWork) {
+                        m_es.submit(task);
+                    }
+                    else {
+                        submitToPlanner(task);
+                    }
                 } catch (RejectedExecutionException rejected) {
                     final LocalObjectMessage wrapper = (LocalObjectMessage)message;
                     AsyncCompilerWork work = (AsyncCompilerWork)(wrapper.payload);
@@ -116,6 +142,68 @@ public class AsyncCompilerAgent {
         hostMessenger.createMailbox(hsId, m_mailbox);
     }
 
+    /**
+     * Queue work for a planner thread, keeping track of the backlog
+     */
+    private void submitToPlanner(final Runnable task) {
+        final PlannerStatsCollector stats = PlannerTool.getPlannerStats();
+        final long queuedAt = System.nanoTime();
+        if (stats != null) {
+            stats.workQueued();
+        }
+        try {
+            m_plannerEs.submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (stats != null) {
+                        stats.workDequeued(System.nanoTime() - queuedAt);
+                    }
+                    task.run();
+                }
+            });
+        } catch (RejectedExecutionException rejected) {
+            if (stats != null) {
+                stats.workRejected();
+            }
+            throw rejected;
+        }
+    }
+
+    /**
+     * Fast path for a single statement that is in the literal plan cache, answered
+     * on the calling thread instead of queueing behind statements that need planning.
+     * @return false if the statement needs to go to a planner thread
+     */
+    boolean completeWithCachedPlan(AdHocPlannerWork work) {
+        if (work.sqlStatements == null || work.sqlStatements.length != 1 || !work.inferPartitioning) {
+            return false;
+        }
+        CatalogContext context = work.catalogContext;
+        if (context == null) {
+            context = VoltDB.instance().getCatalogContext();
+            if (context == null) {
+                return false;
+            }
+        }
+        final AdHocPlannedStatement result = context.m_ptool.getCachedPlan(work.sqlStatements[0]);
+        if (result == null) {
+            return false;
+        }
+        List<AdHocPlannedStatement> stmts = new ArrayList<>(1);
+        stmts.add(result);
+        AdHocPlannedStmtBatch plannedStmtBatch =
+                new AdHocPlannedStmtBatch(work, stmts,
+                        result.getPartitioningParameterIndex(),
+                        result.getPartitioningParameterType(),
+                        result.getPartitioningParameterValue(),
+                        null);
+        if (adhocLog.isDebugEnabled()) {
+            logBatch(plannedStmtBatch);
+        }
+        work.completionHandler.onCompletion(plannedStmtBatch);
+        return true;
+    }
+
     void generateErrorResult(String errorMsg, AsyncCompilerWork work) {
         AsyncCompilerResult retval = new AsyncCompilerResult();
         retval.clientHandle = work.clientHandle;
@@ -279,8 +367,26 @@ public class AsyncCompilerAgent {
                 w.completionHandler.onCompletion(errResult);
                 return;
             }
+            // Catalog changes are compiled one at a time off the planner threads
             final CatalogChangeWork ccw = new CatalogChangeWork(w);
-            dispatchCatalogChangeWork(ccw);
+            try {
+                m_es.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            dispatchCatalogChangeWork(ccw);
+                        }
+                        catch (RuntimeException e) {
+                            ccw.completionHandler.onCompletion(
+                                    AsyncCompilerResult.makeErrorResult(ccw,
+                                        "Unexpected async compiler exception for " +
+                                        ccw.getClass().getName() + ": " + e.getLocalizedMessage()));
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException rejected) {
+                generateErrorResult("Ad Hoc Planner task queue is full. Try again.", ccw);
+            }
         }
     }
 
@@ -324,7 +430,10 @@ public class AsyncCompilerAgent {
     }
 
     public void compileAdHocPlanForProcedure(final AdHocPlannerWork apw) {
-        m_es.submit(new Runnable() {
+        if (completeWithCachedPlan(apw)) {
+            return;
+        }
+        submitToPlanner(new Runnable() {
             @Override
             public void run(){
                 apw.completionHandler.onCompletion(compileAdHocPlan(apw));
@@ -360,8 +469,16 @@ public class AsyncCompilerAgent {
             context = VoltDB.instance().getCatalogContext();
         }
 
-        final PlannerTool ptool = context.m_ptool;
+        final PlannerTool ptool = context.acquirePlannerTool();
+        try {
+            return compileAdHocPlan(work, ptool);
+        }
+        finally {
+            context.releasePlannerTool(ptool);
+        }
+    }
 
+    private AsyncCompilerResult compileAdHocPlan(AdHocPlannerWork work, PlannerTool ptool) {
         List<String> errorMsgs = new ArrayList<>();
         List<AdHocPlannedStatement> stmts = new ArrayList<>();
         int partitionParamIndex = -1;
@@ -464,8 +581,16 @@ public class AsyncCompilerAgent {
             context = VoltDB.instance().getCatalogContext();
         }
 
-        final PlannerTool ptool = context.m_ptool;
+        final PlannerTool ptool = context.acquirePlannerTool();
+        try {
+            return compileSysProcPlan(work, ptool);
+        }
+        finally {
+            context.releasePlannerTool(ptool);
+        }
+    }
 
+    private AsyncCompilerResult compileSysProcPlan(AdHocPlannerWork work, PlannerTool ptool) {
         List<String> errorMsgs = new ArrayList<>();
         List<AdHocPlannedStatement> stmts = new ArrayList<>();
         assert(work.sqlStatements != null);
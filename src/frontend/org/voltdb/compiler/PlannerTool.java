@@ -23,6 +23,7 @@ import org.hsqldb_voltpatches.HSQLInterface;
 import org.hsqldb_voltpatches.HSQLInterface.HSQLParseException;
 import org.voltcore.logging.VoltLogger;
 import org.voltdb.ParameterSet;
+import org.voltdb.PlanCacheStatsCollector;
 import org.voltdb.PlannerStatsCollector;
 import org.voltdb.PlannerStatsCollector.CacheUse;
 import org.voltdb.StatsAgent;
@@ -55,6 +56,7 @@ public class PlannerTool {
     private final byte[] m_catalogHash;
     private final AdHocCompilerCache m_cache;
     private static PlannerStatsCollector m_plannerStats;
+    private static PlanCacheStatsCollector m_planCacheStats;
 
     private static final int AD_HOC_JOINED_TABLE_LIMIT = 5;
 
@@ -96,12 +98,18 @@ public class PlannerTool {
                     final StatsAgent statsAgent = VoltDB.instance().getStatsAgent();
                     // In mock test environments there may be no stats agent.
                     if (statsAgent != null) {
-                        m_plannerStats = new PlannerStatsCollector(-1);
+                        // Time every statement, planning dwarfs the cost of the timer
+                        m_plannerStats = new PlannerStatsCollector(-1, 1);
                         statsAgent.registerStatsSource(StatsSelector.PLANNER, -1, m_plannerStats);
+                        m_planCacheStats = new PlanCacheStatsCollector();
+                        statsAgent.registerStatsSource(StatsSelector.PLANCACHE, -1, m_planCacheStats);
                     }
                 }
             }
         }
+        if (m_planCacheStats != null) {
+            m_planCacheStats.setCache(m_cache);
+        }
     }
 
     public AdHocPlannedStatement planSqlForTest(String sqlIn) {
@@ -151,12 +159,46 @@ public class PlannerTool {
         return plan;
     }
 
+    /**
+     * Look for a ready to run plan for SQL with inferred partitioning, without
+     * planning or waiting for this tool. Safe to call from any thread.
+     * @return the plan planSql() would return from the literal cache or null
+     */
+    AdHocPlannedStatement getCachedPlan(String sqlIn) {
+        if (sqlIn == null || sqlIn.length() == 0) {
+            return null;
+        }
+        long statsStartTime = PlannerStatsCollector.NOT_TIMED;
+        if (m_plannerStats != null) {
+            statsStartTime = m_plannerStats.startStatsCollection();
+        }
+        // Only count the lookup if it hits, misses are looked up again by planSql()
+        AdHocPlannedStatement cachedPlan = null;
+        if (m_cache.containsSQL(sqlIn)) {
+            cachedPlan = m_cache.getWithSQL(sqlIn);
+        }
+        if (cachedPlan != null && m_plannerStats != null) {
+            m_plannerStats.endStatsCollection(statsStartTime,
+                    m_cache.getLiteralCacheSize(), m_cache.getCoreCacheSize(), CacheUse.HIT1, -1);
+            m_plannerStats.fastPathHit();
+        }
+        return cachedPlan;
+    }
+
+    /**
+     * The shared stats collector of the ad hoc planners, null if there is no stats agent.
+     */
+    static PlannerStatsCollector getPlannerStats() {
+        return m_plannerStats;
+    }
+
     synchronized AdHocPlannedStatement planSql(String sqlIn, StatementPartitioning partitioning,
             boolean isExplainMode, final Object[] userParams) {
 
         CacheUse cacheUse = CacheUse.FAIL;
+        long statsStartTime = PlannerStatsCollector.NOT_TIMED;
         if (m_plannerStats != null) {
-            m_plannerStats.startStatsCollection();
+            statsStartTime = m_plannerStats.startStatsCollection();
         }
         boolean hasUserQuestionMark = false;
         boolean wrongNumberParameters = false;
@@ -312,7 +354,8 @@ public class PlannerTool {
         }
         finally {
             if (m_plannerStats != null) {
-                m_plannerStats.endStatsCollection(m_cache.getLiteralCacheSize(), m_cache.getCoreCacheSize(), cacheUse, -1);
+                m_plannerStats.endStatsCollection(statsStartTime,
+                        m_cache.getLiteralCacheSize(), m_cache.getCoreCacheSize(), cacheUse, -1);
             }
         }
     }
@@ -296,6 +296,7 @@ public class VoltProjectBuilder {
     private Integer m_snapshotPriority;
 
     private Integer m_maxTempTableMemory = 100;
+    private boolean m_tempTableSpill = false;
 
     private List<String> m_diagnostics;
 
@@ -727,6 +728,11 @@ public class VoltProjectBuilder {
         m_maxTempTableMemory = max;
     }
 
+    public void setTempTableSpill(boolean spill)
+    {
+        m_tempTableSpill = spill;
+    }
+
     public void setDRMasterHost(String drMasterHost) {
         m_drMasterHost = drMasterHost;
     }
@@ -1264,6 +1270,9 @@ public class VoltProjectBuilder {
         SystemSettingsType systemSettingType = factory.createSystemSettingsType();
         Temptables temptables = factory.createSystemSettingsTypeTemptables();
         temptables.setMaxsize(m_maxTempTableMemory);
+        if (m_tempTableSpill) {
+            temptables.setSpill(true);
+        }
         systemSettingType.setTemptables(temptables);
         if (m_snapshotPriority != null) {
             SystemSettingsType.Snapshot snapshot = factory.createSystemSettingsTypeSnapshot();
@@ -165,6 +165,24 @@ public abstract class TransactionState extends OrderableTransaction  {
         throw new UnsupportedOperationException(msg);
     }
 
+    /**
+     * Whether the distributed work of the later batches of a big batch of SQL can
+     * be sent to the participants before the earlier batches have completed.
+     */
+    public boolean canPipelineFragmentWork() {
+        return false;
+    }
+
+    /**
+     * Distributed work of the upcoming batches, in the order they will run. Each
+     * is still passed to createAllParticipatingFragmentWork() when its batch runs.
+     */
+    public void queueFragmentWorkAhead(List<FragmentTaskMessage> tasks) {
+        String msg = "The current transaction context of type " + this.getClass().getName();
+        msg += " doesn't support pipelining fragment tasks.";
+        throw new UnsupportedOperationException(msg);
+    }
+
     public void createLocalFragmentWork(FragmentTaskMessage task, boolean nonTransactional) {
         String msg = "The current transaction context of type " + this.getClass().getName();
         msg += " doesn't support accepting fragment tasks.";
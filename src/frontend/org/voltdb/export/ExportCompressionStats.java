@@ -0,0 +1,95 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.voltdb.StatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.utils.PersistentBinaryDeque;
+
+/**
+ * The LZ4 batch compression of the export overflow queues on this node, one row per queue.
+ * UNCOMPRESSED_BYTES and COMPRESSED_BYTES cover the batches written to disk, COMPRESSION_RATIO
+ * is their quotient and COMPRESSION_TIME the time the compression threads spent on them, in
+ * microseconds.
+ */
+public class ExportCompressionStats extends StatsSource {
+
+    private boolean m_interval;
+    // Totals of each queue at the last interval
+    private final Map<String, long[]> m_lastTotals = new HashMap<String, long[]>();
+
+    public ExportCompressionStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("QUEUE", VoltType.STRING));
+        columns.add(new ColumnInfo("BATCHES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BLOCKS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("UNCOMPRESSED_BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("COMPRESSED_BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("COMPRESSION_RATIO", VoltType.FLOAT));
+        columns.add(new ColumnInfo("COMPRESSION_TIME", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        final PersistentBinaryDeque deque = (PersistentBinaryDeque) rowKey;
+        final long[] totals = new long[] { deque.getBatchesWritten(), deque.getBatchedObjects(),
+                deque.getBatchBytesIn(), deque.getBatchBytesOut(), deque.getBatchCompressionNanos() };
+        long batches = totals[0];
+        long objects = totals[1];
+        long bytesIn = totals[2];
+        long bytesOut = totals[3];
+        long nanos = totals[4];
+        if (m_interval) {
+            final long[] last = m_lastTotals.put(deque.getNonce(), totals);
+            if (last != null) {
+                batches -= last[0];
+                objects -= last[1];
+                bytesIn -= last[2];
+                bytesOut -= last[3];
+                nanos -= last[4];
+            }
+        }
+
+        rowValues[columnNameToIndex.get("QUEUE")] = deque.getNonce();
+        rowValues[columnNameToIndex.get("BATCHES")] = batches;
+        rowValues[columnNameToIndex.get("BLOCKS")] = objects;
+        rowValues[columnNameToIndex.get("UNCOMPRESSED_BYTES")] = bytesIn;
+        rowValues[columnNameToIndex.get("COMPRESSED_BYTES")] = bytesOut;
+        rowValues[columnNameToIndex.get("COMPRESSION_RATIO")] = bytesOut > 0 ? bytesIn / (double) bytesOut : 0.0;
+        rowValues[columnNameToIndex.get("COMPRESSION_TIME")] = nanos / 1000;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        m_interval = interval;
+        return (Iterator) PersistentBinaryDeque.getLZ4BatchedDeques().iterator();
+    }
+}
@@ -39,6 +39,7 @@ import org.voltcore.utils.COWSortedMap;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.Pair;
 import org.voltdb.CatalogContext;
+import org.voltdb.StatsSelector;
 import org.voltdb.VoltDB;
 import org.voltdb.catalog.CatalogMap;
 import org.voltdb.catalog.Cluster;
@@ -71,6 +72,11 @@ public class ExportManager
      */
     public static final String PROCESSOR_CLASS =
             "org.voltdb.export.processors.GuestProcessor";
+    /**
+     * the built-in processor used when the guest processor isn't available, file targets only
+     */
+    public static final String FILE_PROCESSOR_CLASS =
+            "org.voltdb.export.processors.FileExportProcessor";
     /**
      * This is property used for checking Export clients for validation only.
      */
@@ -123,13 +129,25 @@ public class ExportManager
      */
     AtomicReference<ExportDataProcessor> m_processor = new AtomicReference<ExportDataProcessor>();
 
+    /**
+     * The guest processor when it's available, or else the built-in file processor
+     */
+    public static String getProcessorClassName() {
+        try {
+            Class.forName(PROCESSOR_CLASS);
+            return PROCESSOR_CLASS;
+        } catch (ClassNotFoundException e) {
+            return FILE_PROCESSOR_CLASS;
+        }
+    }
+
     /** Obtain the global ExportManager via its instance() method */
     private static ExportManager m_self;
     private final int m_hostId;
 
     // this used to be flexible, but no longer - now m_loaderClass is just null or default value
     public static final String DEFAULT_LOADER_CLASS = "org.voltdb.export.processors.GuestProcessor";
-    private final String m_loaderClass = DEFAULT_LOADER_CLASS;
+    private final String m_loaderClass = getProcessorClassName();
 
     private volatile Map<String, Pair<Properties, Set<String>>> m_processorConfig = new HashMap<>();
 
@@ -293,6 +311,14 @@ public class ExportManager
             throws ExportManager.SetupException
     {
         ExportManager em = new ExportManager(myHostId, catalogContext, messenger, partitions);
+        VoltDB.instance().getStatsAgent().registerStatsSource(
+                StatsSelector.EXPORT,
+                myHostId,
+                new ExportSyncStats());
+        VoltDB.instance().getStatsAgent().registerStatsSource(
+                StatsSelector.EXPORTCOMPRESSION,
+                myHostId,
+                new ExportCompressionStats());
         if (forceCreate) {
             em.clearOverflowData(catalogContext);
         }
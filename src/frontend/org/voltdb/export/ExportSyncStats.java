@@ -0,0 +1,101 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.voltdb.StatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.utils.PBDGroupSync;
+
+/**
+ * The group syncs of the export overflow on this node, one row per directory.
+ * ROUNDS counts the times the dirty queues were forced together, FSYNCS the segments
+ * forced in them and BYTES_PER_FSYNC how much data each of those covered on average.
+ * The latencies are how long the rounds that forced something took, in microseconds.
+ */
+public class ExportSyncStats extends StatsSource {
+
+    private boolean m_interval;
+    // Totals of each directory at the last interval
+    private final Map<String, long[]> m_lastTotals = new HashMap<String, long[]>();
+
+    public ExportSyncStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("DIRECTORY", VoltType.STRING));
+        columns.add(new ColumnInfo("QUEUES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("DIRTY_QUEUES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("ROUNDS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("FSYNCS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES_SYNCED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BYTES_PER_FSYNC", VoltType.BIGINT));
+        columns.add(new ColumnInfo("FLUSH_LATENCY_AVG", VoltType.BIGINT));
+        columns.add(new ColumnInfo("FLUSH_LATENCY_MAX", VoltType.BIGINT));
+        columns.add(new ColumnInfo("FLUSH_LATENCY_LAST", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        final PBDGroupSync group = (PBDGroupSync) rowKey;
+        final long[] totals = new long[] { group.getRounds(), group.getForcingRounds(),
+                group.getFsyncs(), group.getBytesSynced(), group.getTotalLatencyMicros() };
+        long rounds = totals[0];
+        long forcingRounds = totals[1];
+        long fsyncs = totals[2];
+        long bytes = totals[3];
+        long latency = totals[4];
+        if (m_interval) {
+            final long[] last = m_lastTotals.put(group.getDirectory(), totals);
+            if (last != null) {
+                rounds -= last[0];
+                forcingRounds -= last[1];
+                fsyncs -= last[2];
+                bytes -= last[3];
+                latency -= last[4];
+            }
+        }
+
+        rowValues[columnNameToIndex.get("DIRECTORY")] = group.getDirectory();
+        rowValues[columnNameToIndex.get("QUEUES")] = group.getDeques();
+        rowValues[columnNameToIndex.get("DIRTY_QUEUES")] = group.getDirtyDeques();
+        rowValues[columnNameToIndex.get("ROUNDS")] = rounds;
+        rowValues[columnNameToIndex.get("FSYNCS")] = fsyncs;
+        rowValues[columnNameToIndex.get("BYTES_SYNCED")] = bytes;
+        rowValues[columnNameToIndex.get("BYTES_PER_FSYNC")] = fsyncs > 0 ? bytes / fsyncs : 0L;
+        rowValues[columnNameToIndex.get("FLUSH_LATENCY_AVG")] = forcingRounds > 0 ? latency / forcingRounds : 0L;
+        rowValues[columnNameToIndex.get("FLUSH_LATENCY_MAX")] = group.getMaxLatencyMicros();
+        rowValues[columnNameToIndex.get("FLUSH_LATENCY_LAST")] = group.getLastLatencyMicros();
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        m_interval = interval;
+        return (Iterator) PBDGroupSync.getGroups().iterator();
+    }
+}
@@ -41,11 +41,19 @@ import org.voltdb.utils.VoltFile;
  *
  * portion of the queue
  *
+ * The queues of all the export data sources in the overflow directory are forced together
+ * when a sync is requested, so concurrent syncs share their fsyncs. Only with
+ * PBD_GROUP_SYNC_INTERVAL_MS set are they also forced in the background, blocks pushed
+ * without an fsync included.
+ * With EXPORT_LZ4_BATCHES the blocks are compressed in batches with LZ4 off the offering thread.
  */
 public class StreamBlockQueue {
 
     private static final VoltLogger exportLog = new VoltLogger("EXPORT");
 
+    private static final boolean GROUP_SYNC = Boolean.valueOf(System.getProperty("EXPORT_GROUP_SYNC", "true"));
+    private static final boolean LZ4_BATCHES = Boolean.valueOf(System.getProperty("EXPORT_LZ4_BATCHES", "false"));
+
     /**
      * Deque containing reference to stream blocks that are in memory. Some of these
      * stream blocks may still be persisted to disk others are stored completely in memory
@@ -61,7 +69,7 @@ public class StreamBlockQueue {
     private final BinaryDequeReader m_reader;
 
     public StreamBlockQueue(String path, String nonce) throws java.io.IOException {
-        m_persistentDeque = new PersistentBinaryDeque( nonce, new VoltFile(path), exportLog);
+        m_persistentDeque = new PersistentBinaryDeque( nonce, new VoltFile(path), exportLog, true, GROUP_SYNC, LZ4_BATCHES);
         m_nonce = nonce;
         m_reader = m_persistentDeque.openForRead(m_nonce);
     }
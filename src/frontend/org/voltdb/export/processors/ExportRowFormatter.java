@@ -0,0 +1,383 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export.processors;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONStringer;
+import org.voltdb.VoltType;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+import org.voltdb.utils.Encoder;
+
+/**
+ * Turns the rows of an export block into the bytes of an export file, a whole block
+ * at a time, without materializing the rows or their values as objects (except for
+ * the geospatial types).
+ *
+ * Rows in a block are laid out as the EE writes them, in little endian: the length of
+ * the row, a bitmap with a bit set for each null column, most significant bit first,
+ * then the values of the columns that aren't null. The first six columns are the
+ * export metadata: transaction id, timestamp, sequence number, partition id, site id
+ * and operation.
+ *
+ * CSV fields are quoted only when they have to be, nulls are empty. TSV escapes tabs,
+ * line breaks and backslashes, nulls are \N. The binary format keeps the rows as they
+ * are in the block, after a header with the schema (see {@link #writeBinaryHeader}).
+ */
+class ExportRowFormatter {
+
+    public enum Format {
+        CSV("csv"),
+        TSV("tsv"),
+        BINARY("vexp");
+
+        public final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public static Format fromString(String name) {
+            for (Format f : values()) {
+                if (f.name().equalsIgnoreCase(name)) {
+                    return f;
+                }
+            }
+            throw new IllegalArgumentException("Unknown export file type \"" + name +
+                    "\", must be one of " + Arrays.toString(values()));
+        }
+    }
+
+    /** Columns the EE adds ahead of the table's columns */
+    public static final int METADATA_COLUMN_COUNT = 6;
+
+    static final byte[] BINARY_MAGIC = { 'V', 'E', 'X', 'P' };
+    static final int BINARY_VERSION = 1;
+
+    private static final byte[] TSV_NULL = { '\\', 'N' };
+
+    private final Format m_format;
+    private final VoltType[] m_types;
+    private final int m_firstColumn;
+    private final int m_nullArrayLength;
+
+    ExportRowFormatter(Format format, List<Integer> columnTypes, boolean skipInternals) {
+        m_format = format;
+        m_types = new VoltType[columnTypes.size()];
+        for (int i = 0; i < m_types.length; i++) {
+            m_types[i] = VoltType.get(columnTypes.get(i).byteValue());
+        }
+        m_firstColumn = skipInternals ? METADATA_COLUMN_COUNT : 0;
+        m_nullArrayLength = ((m_types.length + 7) & -8) >> 3;
+    }
+
+    Format getFormat() {
+        return m_format;
+    }
+
+    /**
+     * The header of a binary export file: the magic bytes, the format version, then
+     * the length of a JSON description of the columns and the JSON itself. The lengths
+     * in the header and in the rows that follow it are little endian.
+     */
+    static byte[] writeBinaryHeader(String tableName, List<String> columnNames, List<Integer> columnTypes) {
+        String schema;
+        try {
+            JSONStringer js = new JSONStringer();
+            js.object();
+            js.keySymbolValuePair("table", tableName);
+            js.key("columns").array();
+            for (int i = 0; i < columnNames.size(); i++) {
+                js.object();
+                js.keySymbolValuePair("name", columnNames.get(i));
+                js.keySymbolValuePair("type", VoltType.get(columnTypes.get(i).byteValue()).getName());
+                js.endObject();
+            }
+            js.endArray();
+            js.endObject();
+            schema = js.toString();
+        } catch (JSONException e) {
+            throw new RuntimeException("Failed to describe the export file schema", e);
+        }
+        byte[] schemaBytes = schema.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(BINARY_MAGIC.length + 8 + schemaBytes.length);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.put(BINARY_MAGIC);
+        header.putInt(BINARY_VERSION);
+        header.putInt(schemaBytes.length);
+        header.put(schemaBytes);
+        return header.array();
+    }
+
+    /**
+     * Append the rows of the block to out, the block is read from its position to its
+     * limit without moving them. Returns the number of rows.
+     */
+    int format(ByteBuffer block, Output out) {
+        final ByteBuffer buf = block.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (m_format == Format.BINARY) {
+            // The rows are already in the format, only count them
+            int rows = 0;
+            while (buf.hasRemaining()) {
+                buf.position(buf.position() + 4 + buf.getInt(buf.position()));
+                rows++;
+            }
+            out.write(block.duplicate());
+            return rows;
+        }
+
+        final byte delimiter = m_format == Format.CSV ? (byte) ',' : (byte) '\t';
+        int rows = 0;
+        while (buf.hasRemaining()) {
+            final int rowLength = buf.getInt();
+            final int rowStart = buf.position();
+            buf.position(rowStart + m_nullArrayLength);
+            for (int i = 0; i < m_types.length; i++) {
+                final boolean isNull = (buf.get(rowStart + (i >> 3)) & (0x80 >> (i & 7))) != 0;
+                final boolean written = i >= m_firstColumn;
+                if (written && i > m_firstColumn) {
+                    out.write(delimiter);
+                }
+                if (isNull) {
+                    if (written && m_format == Format.TSV) {
+                        out.write(TSV_NULL, 0, TSV_NULL.length);
+                    }
+                    continue;
+                }
+                formatValue(m_types[i], buf, written ? out : null);
+            }
+            out.write((byte) '\n');
+            buf.position(rowStart + rowLength);
+            rows++;
+        }
+        return rows;
+    }
+
+    /*
+     * Decode the value at the buffer's position and write it to out, or just skip it
+     * when out is null
+     */
+    private void formatValue(VoltType type, ByteBuffer buf, Output out) {
+        switch (type) {
+        case TINYINT:
+            writeLong(buf.get(), out);
+            break;
+        case SMALLINT:
+            writeLong(buf.getShort(), out);
+            break;
+        case INTEGER:
+            writeLong(buf.getInt(), out);
+            break;
+        case BIGINT:
+            writeLong(buf.getLong(), out);
+            break;
+        case TIMESTAMP: {
+            final long micros = buf.getLong();
+            if (out != null) {
+                out.writeAscii(new TimestampType(micros).toString());
+            }
+            break;
+        }
+        case FLOAT: {
+            final double d = buf.getDouble();
+            if (out != null) {
+                out.writeAscii(Double.toString(d));
+            }
+            break;
+        }
+        case DECIMAL: {
+            final int scale = buf.get();
+            final byte[] unscaled = new byte[buf.get()];
+            // The unscaled value is big endian, unlike everything else
+            buf.get(unscaled);
+            if (out != null) {
+                out.writeAscii(new BigDecimal(new BigInteger(unscaled), scale).toPlainString());
+            }
+            break;
+        }
+        case STRING: {
+            final int length = buf.getInt();
+            if (out != null) {
+                writeText(buf, buf.position(), length, out);
+            }
+            buf.position(buf.position() + length);
+            break;
+        }
+        case VARBINARY: {
+            final byte[] bytes = new byte[buf.getInt()];
+            buf.get(bytes);
+            if (out != null) {
+                out.writeAscii(Encoder.hexEncode(bytes));
+            }
+            break;
+        }
+        case GEOGRAPHY_POINT: {
+            final GeographyPointValue point = GeographyPointValue.unflattenFromBuffer(buf);
+            if (out != null) {
+                writeText(point.toWKT(), out);
+            }
+            break;
+        }
+        case GEOGRAPHY: {
+            final int length = buf.getInt();
+            final int start = buf.position();
+            if (out != null) {
+                writeText(GeographyValue.unflattenFromBuffer(buf).toWKT(), out);
+            }
+            buf.position(start + length);
+            break;
+        }
+        default:
+            throw new IllegalArgumentException("Unsupported export column type " + type);
+        }
+    }
+
+    private static void writeLong(long value, Output out) {
+        if (out != null) {
+            out.writeAscii(Long.toString(value));
+        }
+    }
+
+    private void writeText(String text, Output out) {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeText(ByteBuffer.wrap(bytes), 0, bytes.length, out);
+    }
+
+    /*
+     * UTF-8 never uses the bytes of ASCII characters inside multi-byte characters,
+     * so the special characters can be found and escaped byte by byte
+     */
+    private void writeText(ByteBuffer buf, int offset, int length, Output out) {
+        final int end = offset + length;
+        if (m_format == Format.CSV) {
+            boolean quote = false;
+            for (int i = offset; i < end && !quote; i++) {
+                final byte b = buf.get(i);
+                quote = b == ',' || b == '"' || b == '\n' || b == '\r';
+            }
+            if (!quote) {
+                out.write(buf, offset, length);
+                return;
+            }
+            out.write((byte) '"');
+            for (int i = offset; i < end; i++) {
+                final byte b = buf.get(i);
+                if (b == '"') {
+                    out.write((byte) '"');
+                }
+                out.write(b);
+            }
+            out.write((byte) '"');
+        } else {
+            for (int i = offset; i < end; i++) {
+                final byte b = buf.get(i);
+                switch (b) {
+                case '\t':
+                    out.write((byte) '\\');
+                    out.write((byte) 't');
+                    break;
+                case '\n':
+                    out.write((byte) '\\');
+                    out.write((byte) 'n');
+                    break;
+                case '\r':
+                    out.write((byte) '\\');
+                    out.write((byte) 'r');
+                    break;
+                case '\\':
+                    out.write((byte) '\\');
+                    out.write((byte) '\\');
+                    break;
+                default:
+                    out.write(b);
+                }
+            }
+        }
+    }
+
+    /**
+     * Growable output the rows of blocks are formatted into, reused from block to block
+     */
+    static class Output {
+        private byte[] m_bytes;
+        private int m_size = 0;
+
+        Output(int initialCapacity) {
+            m_bytes = new byte[initialCapacity];
+        }
+
+        void reset() {
+            m_size = 0;
+        }
+
+        int size() {
+            return m_size;
+        }
+
+        /** The bytes written since the last reset, valid until the next write */
+        ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(m_bytes, 0, m_size);
+        }
+
+        private void ensureCapacity(int more) {
+            if (m_size + more > m_bytes.length) {
+                m_bytes = Arrays.copyOf(m_bytes, Math.max(m_bytes.length * 2, m_size + more));
+            }
+        }
+
+        void write(byte b) {
+            ensureCapacity(1);
+            m_bytes[m_size++] = b;
+        }
+
+        void write(byte[] bytes, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, m_bytes, m_size, length);
+            m_size += length;
+        }
+
+        void write(ByteBuffer buf, int offset, int length) {
+            ensureCapacity(length);
+            final ByteBuffer dup = buf.duplicate();
+            dup.limit(offset + length).position(offset);
+            dup.get(m_bytes, m_size, length);
+            m_size += length;
+        }
+
+        void write(ByteBuffer buf) {
+            write(buf, buf.position(), buf.remaining());
+        }
+
+        void writeAscii(String s) {
+            final int length = s.length();
+            ensureCapacity(length);
+            for (int i = 0; i < length; i++) {
+                m_bytes[m_size++] = (byte) s.charAt(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,479 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export.processors;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltcore.utils.Pair;
+import org.voltdb.export.ExportDataProcessor;
+import org.voltdb.export.ExportDataSource;
+import org.voltdb.export.ExportGeneration;
+import org.voltdb.export.processors.ExportRowFormatter.Format;
+import org.voltdb.export.processors.ExportRowFormatter.Output;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Export processor for file targets, used when the guest processor and its export
+ * clients aren't available.
+ *
+ * Every partition of every exported table is polled at once, by a {@link Poller} that
+ * keeps up to {@link #MAX_BLOCKS_IN_FLIGHT} blocks between the poll and the ack. The
+ * blocks are formatted and appended to the table's file on a shared pool of threads,
+ * and acked once a sync of the file has made them durable. The syncs run on their own
+ * thread every fsync.interval milliseconds, so a single fsync covers the blocks of all
+ * the partitions written in the meantime.
+ *
+ * Target properties:
+ *   nonce           prefix of the file names, required
+ *   outdir          directory the files are written to, default is the working directory
+ *   type            csv, tsv or binary, default csv
+ *   period          minutes before a file is rolled, default 60, 0 to only roll on size
+ *   maxsize         megabytes before a file is rolled, default 0 for no limit
+ *   skipinternals   leave out the export metadata columns, default false
+ *   fsync           ack blocks only once they are forced to disk, default true
+ *   fsync.interval  milliseconds between syncs, default 50
+ */
+public class FileExportProcessor implements ExportDataProcessor {
+
+    public static final String FILE_EXPORT_CLIENT = "org.voltdb.exportclient.ExportToFileClient";
+
+    static final int WRITE_THREADS = Integer.getInteger("FILE_EXPORT_THREADS", 4);
+    static final int MAX_BLOCKS_IN_FLIGHT = Integer.getInteger("FILE_EXPORT_MAX_BLOCKS_IN_FLIGHT", 16);
+    private static final int OUTPUT_INITIAL_CAPACITY = 1024 * 1024 * 4;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private VoltLogger m_logger = new VoltLogger("EXPORT");
+    private volatile ExportGeneration m_generation;
+
+    // Target of each exported table, by table name in upper case
+    private final Map<String, FileTarget> m_tableTargets = new HashMap<String, FileTarget>();
+    private final List<FileTarget> m_targets = new ArrayList<FileTarget>();
+
+    private ListeningExecutorService m_writers;
+    private ScheduledThreadPoolExecutor m_syncer;
+
+    // Guarded by this
+    private final List<Poller> m_pollers = new ArrayList<Poller>();
+    private final List<ExportDataSource> m_registered = new ArrayList<ExportDataSource>();
+    private boolean m_polling = false;
+    private volatile boolean m_shutdown = false;
+
+    private static final ThreadLocal<Output> m_output = new ThreadLocal<Output>() {
+        @Override
+        protected Output initialValue() {
+            return new Output(OUTPUT_INITIAL_CAPACITY);
+        }
+    };
+
+    /**
+     * The configuration of a file target, and the files its tables are written to
+     */
+    static class FileTarget {
+        final String m_name;
+        final File m_outdir;
+        final String m_nonce;
+        final Format m_format;
+        final long m_periodMillis;
+        final long m_maxBytes;
+        final boolean m_skipInternals;
+        final boolean m_fsync;
+        final long m_syncIntervalMillis;
+
+        // Guarded by this
+        private final Map<String, RollingExportFile> m_files = new HashMap<String, RollingExportFile>();
+        ScheduledFuture<?> m_syncTask;
+
+        FileTarget(String name, Properties props) {
+            m_name = name;
+            String type = props.getProperty(EXPORT_TO_TYPE);
+            if (type != null && !type.equals(FILE_EXPORT_CLIENT)) {
+                throw new IllegalArgumentException("Export target " + name + " uses " + type +
+                        ", only file export targets are supported without the export guest processor");
+            }
+            m_nonce = props.getProperty("nonce", "").trim();
+            if (m_nonce.isEmpty()) {
+                throw new IllegalArgumentException("Export target " + name + " must have a nonce property");
+            }
+            if (m_nonce.contains(File.separator)) {
+                throw new IllegalArgumentException("Export target " + name + " nonce must not contain " + File.separator);
+            }
+            m_outdir = new File(props.getProperty("outdir", ".").trim());
+            m_format = Format.fromString(props.getProperty("type", "csv").trim());
+            m_periodMillis = TimeUnit.MINUTES.toMillis(getLong(props, "period", 60));
+            m_maxBytes = getLong(props, "maxsize", 0) * 1024 * 1024;
+            m_skipInternals = Boolean.parseBoolean(props.getProperty("skipinternals", "false").trim());
+            m_fsync = Boolean.parseBoolean(props.getProperty("fsync", "true").trim());
+            m_syncIntervalMillis = getLong(props, "fsync.interval", 50);
+            if (m_syncIntervalMillis <= 0) {
+                throw new IllegalArgumentException("Export target " + name + " fsync.interval must be greater than 0");
+            }
+        }
+
+        private static long getLong(Properties props, String name, long defaultValue) {
+            String value = props.getProperty(name);
+            if (value == null) {
+                return defaultValue;
+            }
+            long l;
+            try {
+                l = Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Export property " + name + " must be a number, not " + value);
+            }
+            if (l < 0) {
+                throw new IllegalArgumentException("Export property " + name + " must not be negative");
+            }
+            return l;
+        }
+
+        void checkOutdir() throws IOException {
+            if (!m_outdir.exists() && !m_outdir.mkdirs()) {
+                throw new IOException("Unable to create export directory " + m_outdir);
+            }
+            if (!m_outdir.isDirectory() || !m_outdir.canWrite()) {
+                throw new IOException("Export directory " + m_outdir + " is not a writable directory");
+            }
+        }
+
+        synchronized RollingExportFile getFile(ExportDataSource source) {
+            RollingExportFile file = m_files.get(source.getTableName());
+            if (file == null) {
+                byte[] header = null;
+                if (m_format == Format.BINARY) {
+                    header = ExportRowFormatter.writeBinaryHeader(
+                            source.getTableName(), source.m_columnNames, source.m_columnTypes);
+                }
+                file = new RollingExportFile(m_outdir, m_nonce, source.getTableName(), m_format.extension,
+                        header, m_maxBytes, m_periodMillis, m_fsync);
+                m_files.put(source.getTableName(), file);
+            }
+            return file;
+        }
+
+        void sync() {
+            final List<RollingExportFile> files;
+            synchronized (this) {
+                files = new ArrayList<RollingExportFile>(m_files.values());
+            }
+            for (RollingExportFile file : files) {
+                file.sync();
+            }
+        }
+
+        synchronized void close() {
+            for (RollingExportFile file : m_files.values()) {
+                file.close();
+            }
+            m_files.clear();
+        }
+    }
+
+    @Override
+    public void addLogger(VoltLogger logger) {
+        m_logger = logger;
+    }
+
+    @Override
+    public void setExportGeneration(ExportGeneration generation) {
+        m_generation = generation;
+    }
+
+    @Override
+    public ExportGeneration getExportGeneration() {
+        return m_generation;
+    }
+
+    @Override
+    public void setProcessorConfig(Map<String, Pair<Properties, Set<String>>> config) {
+        for (Map.Entry<String, Pair<Properties, Set<String>>> e : config.entrySet()) {
+            final FileTarget target;
+            try {
+                target = new FileTarget(e.getKey(), e.getValue().getFirst());
+                target.checkOutdir();
+            } catch (IllegalArgumentException | IOException ex) {
+                m_logger.error("Export target " + e.getKey() + " is disabled: " + ex.getMessage());
+                continue;
+            }
+            m_targets.add(target);
+            for (String table : e.getValue().getSecond()) {
+                m_tableTargets.put(table.toUpperCase(), target);
+            }
+        }
+    }
+
+    @Override
+    public void checkProcessorConfig(Properties config) {
+        FileTarget target = new FileTarget("", config);
+        if (target.m_outdir.exists() && (!target.m_outdir.isDirectory() || !target.m_outdir.canWrite())) {
+            throw new IllegalArgumentException("Export directory " + target.m_outdir + " is not a writable directory");
+        }
+    }
+
+    @Override
+    public void readyForData(boolean startup) {
+        m_writers = CoreUtils.getListeningExecutorService("File Export Writer", WRITE_THREADS);
+        m_syncer = CoreUtils.getScheduledThreadPoolExecutor("File Export Sync", 1, CoreUtils.SMALL_STACK_SIZE);
+        for (final FileTarget target : m_targets) {
+            target.m_syncTask = m_syncer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        target.sync();
+                    } catch (Exception e) {
+                        m_logger.error("Error syncing files of export target " + target.m_name, e);
+                    }
+                }
+            }, target.m_syncIntervalMillis, target.m_syncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        synchronized (this) {
+            m_polling = !startup;
+        }
+        registerSources(m_generation);
+    }
+
+    @Override
+    public void startPolling() {
+        final List<Poller> toStart;
+        synchronized (this) {
+            m_polling = true;
+            toStart = new ArrayList<Poller>(m_pollers);
+        }
+        // A rolled generation is handed to the running processor without a readyForData
+        registerSources(m_generation);
+        for (Poller poller : toStart) {
+            poller.pollIfReady();
+        }
+    }
+
+    /*
+     * Each source starts being polled once this node is its master
+     */
+    private void registerSources(ExportGeneration generation) {
+        if (generation == null) {
+            return;
+        }
+        for (Map<String, ExportDataSource> sources : generation.getDataSourceByPartition().values()) {
+            for (final ExportDataSource source : sources.values()) {
+                final FileTarget target = m_tableTargets.get(source.getTableName().toUpperCase());
+                if (target == null) {
+                    continue;
+                }
+                synchronized (this) {
+                    if (m_registered.contains(source)) {
+                        continue;
+                    }
+                    m_registered.add(source);
+                }
+                source.setOnMastership(new Runnable() {
+                    @Override
+                    public void run() {
+                        final Poller poller = new Poller(source, target);
+                        final boolean polling;
+                        synchronized (FileExportProcessor.this) {
+                            if (m_shutdown) {
+                                return;
+                            }
+                            m_pollers.add(poller);
+                            polling = m_polling;
+                        }
+                        if (polling) {
+                            poller.pollIfReady();
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    @Override
+    public void queueWork(Runnable r) {
+        m_writers.execute(r);
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (this) {
+            m_shutdown = true;
+            m_pollers.clear();
+            m_registered.clear();
+        }
+        if (m_writers != null) {
+            m_writers.shutdown();
+            try {
+                m_writers.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                m_logger.warn("Interrupted waiting for export writes to finish");
+            }
+        }
+        for (FileTarget target : m_targets) {
+            if (target.m_syncTask != null) {
+                target.m_syncTask.cancel(false);
+            }
+        }
+        if (m_syncer != null) {
+            m_syncer.shutdown();
+            try {
+                m_syncer.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                m_logger.warn("Interrupted waiting for export syncs to finish");
+            }
+        }
+        for (FileTarget target : m_targets) {
+            target.close();
+        }
+    }
+
+    /**
+     * Polls a source and writes its blocks to the table's file. A poll stays outstanding
+     * until its block is appended under the poller's write lock, and the next poll is
+     * only made after that, so the blocks of a partition always reach the file in order.
+     */
+    class Poller {
+        private final ExportDataSource m_source;
+        private final RollingExportFile m_file;
+        private final ExportRowFormatter m_formatter;
+        private final Object m_writeLock = new Object();
+
+        // Guarded by this
+        private boolean m_pollOutstanding = false;
+        private int m_inFlight = 0;
+        private boolean m_drained = false;
+
+        Poller(ExportDataSource source, FileTarget target) {
+            m_source = source;
+            m_file = target.getFile(source);
+            m_formatter = new ExportRowFormatter(target.m_format, source.m_columnTypes, target.m_skipInternals);
+        }
+
+        void pollIfReady() {
+            synchronized (this) {
+                if (m_shutdown || m_drained || m_pollOutstanding || m_inFlight >= MAX_BLOCKS_IN_FLIGHT) {
+                    return;
+                }
+                m_pollOutstanding = true;
+            }
+            final ListenableFuture<BBContainer> fut = m_source.poll();
+            fut.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    handlePoll(fut);
+                }
+            }, m_writers);
+        }
+
+        private void handlePoll(ListenableFuture<BBContainer> fut) {
+            final BBContainer cont;
+            try {
+                cont = fut.get();
+            } catch (InterruptedException | ExecutionException e) {
+                m_logger.error("Error polling export data of " + m_source.getTableName() +
+                        " partition " + m_source.getPartitionId() + ", retrying", e);
+                synchronized (this) {
+                    m_pollOutstanding = false;
+                }
+                retryLater();
+                return;
+            }
+            if (cont == null) {
+                synchronized (this) {
+                    // End of stream, the generation is drained
+                    m_pollOutstanding = false;
+                    m_drained = true;
+                }
+                synchronized (FileExportProcessor.this) {
+                    m_pollers.remove(this);
+                }
+                return;
+            }
+
+            synchronized (this) {
+                m_inFlight++;
+            }
+            synchronized (m_writeLock) {
+                write(cont);
+                // Only let the next poll go once this block is appended, a poll made
+                // any earlier could have its block written ahead of this one
+                synchronized (this) {
+                    m_pollOutstanding = false;
+                }
+                pollIfReady();
+            }
+        }
+
+        private void write(final BBContainer cont) {
+            final Output out = m_output.get();
+            out.reset();
+            m_formatter.format(cont.b(), out);
+            final Runnable ack = new Runnable() {
+                @Override
+                public void run() {
+                    cont.discard();
+                    synchronized (Poller.this) {
+                        m_inFlight--;
+                    }
+                    pollIfReady();
+                }
+            };
+            while (true) {
+                try {
+                    m_file.append(out.asByteBuffer(), ack);
+                    return;
+                } catch (IOException e) {
+                    if (m_shutdown) {
+                        return;
+                    }
+                    m_logger.error("Error writing export data of " + m_source.getTableName() +
+                            " partition " + m_source.getPartitionId() + ", retrying", e);
+                    try {
+                        Thread.sleep(RETRY_DELAY_MILLIS);
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void retryLater() {
+            if (m_shutdown) {
+                return;
+            }
+            m_syncer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    pollIfReady();
+                }
+            }, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
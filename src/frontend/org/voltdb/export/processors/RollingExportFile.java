@@ -0,0 +1,239 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export.processors;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.voltcore.logging.VoltLogger;
+
+/**
+ * The file a table is exported to by a target, shared by the sources of all the
+ * table's partitions. Blocks are appended whole, and the acks of the blocks are
+ * held until a {@link #sync()} has made them durable, so one fsync covers all the
+ * blocks appended since the last one.
+ *
+ * The file being written is named with an "active-" prefix. Once it's bigger than
+ * the size limit, or older than the roll period, it's retired: the next block goes
+ * to a new file, and the next sync closes the retired one and drops the prefix, so
+ * anything reading the directory only sees files that are complete.
+ */
+class RollingExportFile {
+    private static final VoltLogger EXPORT_LOG = new VoltLogger("EXPORT");
+
+    static final String ACTIVE_PREFIX = "active-";
+
+    private final File m_outdir;
+    private final String m_baseName;
+    private final String m_extension;
+    private final byte[] m_header;
+    private final long m_maxBytes;
+    private final long m_periodMillis;
+    private final boolean m_fsync;
+
+    // Guarded by this
+    private Segment m_current = null;
+    private int m_sequence = 0;
+    private List<Runnable> m_pendingAcks = new ArrayList<Runnable>();
+    private final List<Segment> m_retired = new ArrayList<Segment>();
+    private boolean m_closed = false;
+
+    // Serializes the syncs, which do their IO outside of the lock on this
+    private final Object m_syncLock = new Object();
+
+    private static class Segment {
+        final File m_activeFile;
+        final File m_finalFile;
+        final FileChannel m_channel;
+        final long m_created = System.currentTimeMillis();
+        long m_size = 0;
+        // Acks of the blocks in this file when it's retired
+        List<Runnable> m_acks;
+
+        Segment(File activeFile, File finalFile) throws IOException {
+            m_activeFile = activeFile;
+            m_finalFile = finalFile;
+            m_channel = new FileOutputStream(activeFile).getChannel();
+        }
+
+        void write(ByteBuffer buf) throws IOException {
+            while (buf.hasRemaining()) {
+                m_size += m_channel.write(buf);
+            }
+        }
+
+        void finish() throws IOException {
+            m_channel.close();
+            if (!m_activeFile.renameTo(m_finalFile)) {
+                throw new IOException("Unable to rename export file " + m_activeFile + " to " + m_finalFile);
+            }
+        }
+    }
+
+    /**
+     * @param header written at the start of every file, may be null
+     * @param maxBytes size a file is rolled at, 0 for no limit
+     * @param periodMillis age a file is rolled at, 0 to never roll on time
+     * @param fsync whether acks wait for the data to be forced to disk, or only written
+     */
+    RollingExportFile(File outdir, String nonce, String tableName, String extension,
+            byte[] header, long maxBytes, long periodMillis, boolean fsync) {
+        m_outdir = outdir;
+        m_baseName = nonce + "-" + tableName;
+        m_extension = extension;
+        m_header = header;
+        m_maxBytes = maxBytes;
+        m_periodMillis = periodMillis;
+        m_fsync = fsync;
+    }
+
+    /**
+     * Append a formatted block to the file, onDurable is run once it's on disk. A block
+     * is never split across files, so the size limit may be exceeded by one block.
+     */
+    void append(ByteBuffer data, Runnable onDurable) throws IOException {
+        synchronized (this) {
+            if (m_closed) {
+                throw new IOException("Export file " + m_baseName + " is closed");
+            }
+            if (m_current == null) {
+                m_current = newSegment();
+            }
+            m_current.write(data);
+            if (m_fsync) {
+                m_pendingAcks.add(onDurable);
+                onDurable = null;
+            }
+            if (m_maxBytes > 0 && m_current.m_size >= m_maxBytes) {
+                retireCurrent();
+            }
+        }
+        if (onDurable != null) {
+            onDurable.run();
+        }
+    }
+
+    private Segment newSegment() throws IOException {
+        final String timestamp = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
+        final String name = m_baseName + "-" + timestamp + "-" + (m_sequence++) + "." + m_extension;
+        final Segment segment = new Segment(new File(m_outdir, ACTIVE_PREFIX + name), new File(m_outdir, name));
+        if (m_header != null) {
+            segment.write(ByteBuffer.wrap(m_header));
+        }
+        return segment;
+    }
+
+    private void retireCurrent() {
+        m_current.m_acks = m_pendingAcks;
+        m_pendingAcks = new ArrayList<Runnable>();
+        m_retired.add(m_current);
+        m_current = null;
+    }
+
+    /**
+     * Force what has been appended to disk and run the acks of the appended blocks,
+     * finish the retired files, and retire the current file if it's past the roll period.
+     * Called periodically by the processor's sync thread, and on close.
+     */
+    void sync() {
+        synchronized (m_syncLock) {
+            final List<Segment> retired;
+            final Segment current;
+            final List<Runnable> acks;
+            synchronized (this) {
+                if (m_current != null && m_periodMillis > 0 &&
+                        System.currentTimeMillis() - m_current.m_created >= m_periodMillis) {
+                    retireCurrent();
+                }
+                retired = new ArrayList<Segment>(m_retired);
+                m_retired.clear();
+                current = m_current;
+                acks = m_pendingAcks;
+                m_pendingAcks = new ArrayList<Runnable>();
+            }
+
+            for (Segment segment : retired) {
+                try {
+                    if (m_fsync) {
+                        force(segment.m_channel);
+                    }
+                    segment.finish();
+                    runAll(segment.m_acks);
+                } catch (IOException e) {
+                    // The blocks stay unacked and will be exported again after a restart
+                    EXPORT_LOG.error("Failed to finish export file " + segment.m_activeFile, e);
+                }
+            }
+
+            // Acks are only pending while there is a current file
+            if (current != null && !acks.isEmpty()) {
+                try {
+                    // The current file can only be retired, not closed, while unlocked
+                    force(current.m_channel);
+                    runAll(acks);
+                } catch (IOException e) {
+                    EXPORT_LOG.error("Failed to sync export file " + current.m_activeFile, e);
+                    synchronized (this) {
+                        // Try again with the next sync, ahead of the blocks appended to the
+                        // same file since, which went with it if it has been retired
+                        if (current == m_current) {
+                            acks.addAll(m_pendingAcks);
+                            m_pendingAcks = acks;
+                        } else {
+                            acks.addAll(current.m_acks);
+                            current.m_acks = acks;
+                        }
+                    }
+                }
+            } else {
+                assert(acks.isEmpty());
+            }
+        }
+    }
+
+    // Overridden by tests to fail the sync
+    void force(FileChannel channel) throws IOException {
+        channel.force(false);
+    }
+
+    private static void runAll(List<Runnable> acks) {
+        for (Runnable ack : acks) {
+            ack.run();
+        }
+    }
+
+    /**
+     * Retire the current file and finish everything, no more blocks can be appended
+     */
+    void close() {
+        synchronized (this) {
+            m_closed = true;
+            if (m_current != null) {
+                retireCurrent();
+            }
+        }
+        sync();
+    }
+}
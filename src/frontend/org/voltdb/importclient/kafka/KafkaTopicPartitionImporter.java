@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -34,6 +35,7 @@ import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcedureCallback;
 import org.voltdb.importclient.kafka.KafkaStreamImporterConfig.HostAndPort;
 import org.voltdb.importer.AbstractImporter;
+import org.voltdb.importer.ImporterBatchCallback;
 import org.voltdb.importer.Invocation;
 import org.voltdb.importer.formatter.FormatException;
 import org.voltdb.importer.formatter.Formatter;
@@ -82,6 +84,8 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
     private final TopicAndPartition m_topicAndPartition;
     private final CommitTracker m_gapTracker;
     private final int m_gapFullWait = Integer.getInteger("KAFKA_IMPORT_GAP_WAIT", 2_000);
+    // Import each fetch as one batch, its offsets are committed once the whole batch completes
+    private final boolean m_batchFetches = Boolean.getBoolean("KAFKA_IMPORT_BATCH_FETCH");
     private final KafkaStreamImporterConfig m_config;
     private HostAndPort m_coordinator;
     private final FetchRequestBuilder m_fetchRequestBuilder;
@@ -448,6 +452,9 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
                     continue;
                 }
                 sleepCounter = 1;
+                // The messages of the fetch are imported in one batch, if enabled
+                final List<Object[]> batchParams = m_batchFetches ? new ArrayList<Object[]>() : null;
+                final List<Long> batchOffsets = m_batchFetches ? new ArrayList<Long>() : null;
                 for (MessageAndOffset messageAndOffset : fetchResponse.messageSet(m_topicAndPartition.topic(), m_topicAndPartition.partition())) {
                     //You may be catchin up so dont sleep.
                     currentFetchCount++;
@@ -461,15 +468,23 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
                     String line = new String(payload.array(),payload.arrayOffset(),payload.limit(),StandardCharsets.UTF_8);
                     try {
                         m_gapTracker.submit(messageAndOffset.nextOffset());
-                        Invocation invocation = new Invocation(m_config.getProcedure(), formatter.transform(line));
-                        TopicPartitionInvocationCallback cb = new TopicPartitionInvocationCallback(
-                                messageAndOffset.nextOffset(), cbcnt, m_gapTracker, m_dead);
-                         if (!noTransaction && !callProcedure(invocation, cb)) {
-                              if (isDebugEnabled()) {
-                                 debug(null, "Failed to process Invocation possibly bad data: " + line);
-                              }
-                              m_gapTracker.commit(messageAndOffset.nextOffset());
-                         }
+                        if (m_batchFetches) {
+                            Object[] params = formatter.transform(line);
+                            if (!noTransaction) {
+                                batchParams.add(params);
+                                batchOffsets.add(messageAndOffset.nextOffset());
+                            }
+                        } else {
+                            Invocation invocation = new Invocation(m_config.getProcedure(), formatter.transform(line));
+                            TopicPartitionInvocationCallback cb = new TopicPartitionInvocationCallback(
+                                    messageAndOffset.nextOffset(), cbcnt, m_gapTracker, m_dead);
+                            if (!noTransaction && !callProcedure(invocation, cb)) {
+                                if (isDebugEnabled()) {
+                                    debug(null, "Failed to process Invocation possibly bad data: " + line);
+                                }
+                                m_gapTracker.commit(messageAndOffset.nextOffset());
+                            }
+                        }
                      } catch (FormatException e) {
                         rateLimitedLog(Level.WARN, e, "Failed to tranform data: %s" ,line);
                         m_gapTracker.commit(messageAndOffset.nextOffset());
@@ -480,6 +495,15 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
                         break;
                     }
                 }
+                if (m_batchFetches && !batchParams.isEmpty()) {
+                    // Invocations that fail are committed by the callback like the others
+                    int queued = callProcedures(m_config.getProcedure(), batchParams,
+                            new TopicPartitionBatchCallback(batchOffsets, cbcnt, m_gapTracker, m_dead));
+                    if (queued < batchParams.size() && isDebugEnabled()) {
+                        debug(null, "Failed to process %d of %d invocations, possibly bad data",
+                                batchParams.size() - queued, batchParams.size());
+                    }
+                }
                 if (!shouldRun()) {
                     break;
                 }
@@ -725,4 +749,35 @@ public class KafkaTopicPartitionImporter extends AbstractImporter
             }
         }
     }
+
+    //Callback for each batch of invocations we have submitted, when KAFKA_IMPORT_BATCH_FETCH is set.
+    private final static class TopicPartitionBatchCallback implements ImporterBatchCallback
+    {
+        private final List<Long> m_offsets;
+        private final AtomicLong m_cbcnt;
+        private final CommitTracker m_tracker;
+        private final AtomicBoolean m_dontCommit;
+
+        public TopicPartitionBatchCallback(
+                final List<Long> offsets,
+                final AtomicLong cbcnt,
+                final CommitTracker tracker,
+                final AtomicBoolean dontCommit) {
+            m_offsets = offsets;
+            m_cbcnt = cbcnt;
+            m_tracker = tracker;
+            m_dontCommit = dontCommit;
+        }
+
+        @Override
+        public void batchCompleted(List<Object[]> paramsList, List<ClientResponse> responses) throws Exception {
+
+            m_cbcnt.addAndGet(responses.size());
+            for (int i = 0; i < responses.size(); i++) {
+                if (!m_dontCommit.get() && responses.get(i).getStatus() != ClientResponse.SERVER_UNAVAILABLE) {
+                    m_tracker.commit(m_offsets.get(i));
+                }
+            }
+        }
+    }
 }
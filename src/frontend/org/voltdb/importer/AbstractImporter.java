@@ -18,6 +18,7 @@
 package org.voltdb.importer;
 
 import java.net.URI;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.voltcore.logging.Level;
@@ -113,6 +114,42 @@ public abstract class AbstractImporter
         }
     }
 
+    /**
+     * This should be used importer implementations to execute a stored procedure for a batch of records.
+     *
+     * @param proc the name of the procedure
+     * @param paramsList the parameters of each invocation
+     * @return returns the number of invocations that were queued successfully
+     */
+    protected final int callProcedures(String proc, List<Object[]> paramsList)
+    {
+        return callProcedures(proc, paramsList, null);
+    }
+
+    /**
+     * This should be used importer implementations to execute a stored procedure for a batch of records.
+     * Cheaper than a call per record, the procedure is looked up once and the invocations are submitted
+     * to each partition together.
+     *
+     * @param proc the name of the procedure
+     * @param paramsList the parameters of each invocation
+     * @param callback the callback that will receive the status of all the invocations once they completed
+     * @return returns the number of invocations that were queued successfully
+     */
+    protected final int callProcedures(String proc, List<Object[]> paramsList, ImporterBatchCallback callback)
+    {
+        try {
+            int queued = m_importServerAdapter.callProcedures(this, callback, proc, paramsList);
+            m_importServerAdapter.reportBatch(getName(), proc, queued, paramsList.size() - queued);
+            applyBackPressureAsNeeded();
+            return queued;
+        } catch (Exception ex) {
+            rateLimitedLog(Level.ERROR, ex, "%s: Error trying to import", getName());
+            m_importServerAdapter.reportBatch(getName(), proc, 0, paramsList.size());
+            return 0;
+        }
+    }
+
     private void applyBackPressureAsNeeded()
     {
         int count = m_backPressureCount.get();
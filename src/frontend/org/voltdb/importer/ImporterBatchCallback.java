@@ -0,0 +1,39 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.importer;
+
+import java.util.List;
+
+import org.voltdb.client.ClientResponse;
+
+/**
+ * Receives the responses of a batch of invocations made with
+ * {@link AbstractImporter#callProcedures(String, List, ImporterBatchCallback)}, once all of them completed.
+ */
+public interface ImporterBatchCallback {
+
+    /**
+     * Called once for the batch, with the parameters of the invocations in the order they were given
+     * and the response of each. Invocations that could not be queued have a GRACEFUL_FAILURE response.
+     * Empty batches are not called back.
+     *
+     * @param paramsList the parameters of the invocations in the batch
+     * @param responses the response of each invocation, in the same order
+     */
+    public void batchCompleted(List<Object[]> paramsList, List<ClientResponse> responses) throws Exception;
+}
@@ -17,6 +17,8 @@
 
 package org.voltdb.importer;
 
+import java.util.List;
+
 import org.voltdb.client.ProcedureCallback;
 
 
@@ -52,6 +54,20 @@ public interface ImporterServerAdapter {
      */
     public boolean callProcedure(AbstractImporter importer, ProcedureCallback callback, String proc, Object... fieldList);
 
+    /**
+     * This is used by importers to execute a procedure once for each of a batch of parameter sets.
+     * The procedure is looked up once for the batch and the invocations are submitted to their
+     * partitions in groups, one per partition.
+     *
+     * @param importer the calling importer instance. This may be used by the importer framework
+     * to report back pressure.
+     * @param callback the callback that will receive the responses once all the invocations completed, may be null
+     * @param proc the name of the procedure that is to be executed
+     * @param paramsList the parameters of each invocation
+     * @return returns the number of invocations that were queued successfully
+     */
+    public int callProcedures(AbstractImporter importer, ImporterBatchCallback callback, String proc, List<Object[]> paramsList);
+
     /**
      * This should be used by importers to report failure while trying to execute a procedure.
      *
@@ -71,4 +87,15 @@ public interface ImporterServerAdapter {
      * @param procName the name of the procedure that the importer was trying to execute
      */
     public void reportQueued(String importerName, String procName);
+
+    /**
+     * This should be used by importers to report a batch of procedure executions, how many were
+     * queued successfully and how many failed before they were queued.
+     *
+     * @param importerName the name of the importer
+     * @param procName the name of the procedure that the importer executed
+     * @param queued the number of executions that were queued
+     * @param failed the number of executions that failed before they were queued
+     */
+    public void reportBatch(String importerName, String procName, int queued, int failed);
 }
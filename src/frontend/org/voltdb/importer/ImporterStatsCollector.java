@@ -33,6 +33,8 @@ import com.google_voltpatches.common.collect.ImmutableMap;
 
 /**
  * Maintains success, failure, pending and other relevant counts per importer.
+ * BATCHES and BATCHED_REQUESTS count the batched calls and the requests made through them,
+ * THROUGHPUT is the successful requests per second.
  */
 
 public class ImporterStatsCollector extends SiteStatsSource
@@ -44,6 +46,9 @@ public class ImporterStatsCollector extends SiteStatsSource
     public static final String FAILURE_COUNT_COL = "FAILURES";
     public static final String PENDING_COUNT_COL = "OUTSTANDING_REQUESTS";
     public static final String RETRY_COUNT_COL = "RETRIES";
+    public static final String BATCH_COUNT_COL = "BATCHES";
+    public static final String BATCHED_COUNT_COL = "BATCHED_REQUESTS";
+    public static final String THROUGHPUT_COL = "THROUGHPUT";
 
     // Holds stats info for each known importer-procname combination.
     // Using AtomicReferences with ImmutableMap to avoid locking and faster access
@@ -76,6 +81,17 @@ public class ImporterStatsCollector extends SiteStatsSource
         statsInfo.m_pendingCount.incrementAndGet();
     }
 
+    // A batch of inserts was submitted, some may have failed before they were queued
+    public void reportBatch(String importerName, String procName, int queued, int failed) {
+        StatsInfo statsInfo = getStatsInfo(importerName, procName);
+        statsInfo.m_pendingCount.addAndGet(queued);
+        if (failed > 0) {
+            statsInfo.m_failureCount.addAndGet(failed);
+        }
+        statsInfo.m_batchCount.incrementAndGet();
+        statsInfo.m_batchedCount.addAndGet(queued + failed);
+    }
+
     // One insert failed
     private void reportFailure(String importerName, String procName) {
         reportFailure(importerName, procName, true);
@@ -147,12 +163,16 @@ public class ImporterStatsCollector extends SiteStatsSource
     @Override
     protected void updateStatsRow(Object rowKey, Object rowValues[]) {
         StatsInfo stats = (StatsInfo) rowKey;
+        final long successes = getSuccessCountUpdateLast(stats);
         rowValues[columnNameToIndex.get(IMPORTER_NAME_COL)] = stats.m_importerName;
         rowValues[columnNameToIndex.get(PROC_NAME_COL)] = stats.m_procName;
-        rowValues[columnNameToIndex.get(SUCCESS_COUNT_COL)] = getSuccessCountUpdateLast(stats);
+        rowValues[columnNameToIndex.get(SUCCESS_COUNT_COL)] = successes;
         rowValues[columnNameToIndex.get(FAILURE_COUNT_COL)] = getFailureCountUpdateLast(stats);
         rowValues[columnNameToIndex.get(PENDING_COUNT_COL)] = getPendingCountUpdateLast(stats);
         rowValues[columnNameToIndex.get(RETRY_COUNT_COL)] = getRetryCountUpdateLast(stats);
+        rowValues[columnNameToIndex.get(BATCH_COUNT_COL)] = getBatchCountUpdateLast(stats);
+        rowValues[columnNameToIndex.get(BATCHED_COUNT_COL)] = getBatchedCountUpdateLast(stats);
+        rowValues[columnNameToIndex.get(THROUGHPUT_COL)] = getThroughputUpdateLast(stats, successes);
 
         super.updateStatsRow(rowKey, rowValues);
     }
@@ -190,6 +210,38 @@ public class ImporterStatsCollector extends SiteStatsSource
         return value;
     }
 
+    private long getBatchCountUpdateLast(StatsInfo stats) {
+        long current = stats.m_batchCount.get();
+        long value = current;
+        if (m_isInterval) {
+            value = current - stats.m_lastBatchCount;
+            stats.m_lastBatchCount = current;
+        }
+
+        return value;
+    }
+
+    private long getBatchedCountUpdateLast(StatsInfo stats) {
+        long current = stats.m_batchedCount.get();
+        long value = current;
+        if (m_isInterval) {
+            value = current - stats.m_lastBatchedCount;
+            stats.m_lastBatchedCount = current;
+        }
+
+        return value;
+    }
+
+    // Successes per second since the last interval, or since the importer started using the procedure
+    private double getThroughputUpdateLast(StatsInfo stats, long successes) {
+        final long now = System.currentTimeMillis();
+        final long since = m_isInterval ? stats.m_lastIntervalTime : stats.m_startTime;
+        if (m_isInterval) {
+            stats.m_lastIntervalTime = now;
+        }
+        return now > since ? successes * 1000.0 / (now - since) : 0.0;
+    }
+
     private long getPendingCountUpdateLast(StatsInfo stats) {
         long current = stats.m_pendingCount.get();
         current = (current<0) ? 0 : current; // pending could be -ve if we get callback responses
@@ -219,6 +271,9 @@ public class ImporterStatsCollector extends SiteStatsSource
         columns.add(new ColumnInfo(FAILURE_COUNT_COL, VoltType.BIGINT));
         columns.add(new ColumnInfo(PENDING_COUNT_COL, VoltType.BIGINT));
         columns.add(new ColumnInfo(RETRY_COUNT_COL, VoltType.BIGINT));
+        columns.add(new ColumnInfo(BATCH_COUNT_COL, VoltType.BIGINT));
+        columns.add(new ColumnInfo(BATCHED_COUNT_COL, VoltType.BIGINT));
+        columns.add(new ColumnInfo(THROUGHPUT_COL, VoltType.FLOAT));
     }
 
     private class StatsInfo
@@ -229,10 +284,16 @@ public class ImporterStatsCollector extends SiteStatsSource
         AtomicLong m_failureCount = new AtomicLong(0);
         AtomicLong m_pendingCount = new AtomicLong(0);
         AtomicLong m_retryCount = new AtomicLong(0);
+        AtomicLong m_batchCount = new AtomicLong(0);
+        AtomicLong m_batchedCount = new AtomicLong(0);
         long m_lastSuccessCount = 0;
         long m_lastFailureCount = 0;
         long m_lastPendingCount = 0;
         long m_lastRetryCount = 0;
+        long m_lastBatchCount = 0;
+        long m_lastBatchedCount = 0;
+        final long m_startTime = System.currentTimeMillis();
+        long m_lastIntervalTime = m_startTime;
 
         public StatsInfo(String importerName, String procName) {
             m_importerName = importerName;
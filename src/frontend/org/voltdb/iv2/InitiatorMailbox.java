@@ -35,6 +35,7 @@ import org.voltdb.messaging.CompleteTransactionMessage;
 import org.voltdb.messaging.DummyTransactionTaskMessage;
 import org.voltdb.messaging.DumpMessage;
 import org.voltdb.messaging.FragmentTaskMessage;
+import org.voltdb.messaging.Iv2InitiateTaskBatchMessage;
 import org.voltdb.messaging.Iv2InitiateTaskMessage;
 import org.voltdb.messaging.Iv2RepairLogRequestMessage;
 import org.voltdb.messaging.Iv2RepairLogResponseMessage;
@@ -281,6 +282,10 @@ public class InitiatorMailbox implements Mailbox
 
     protected void deliverInternal(VoltMessage message) {
         assert(lockingVows());
+        if (message instanceof Iv2InitiateTaskBatchMessage) {
+            deliverBatchInternal((Iv2InitiateTaskBatchMessage) message);
+            return;
+        }
         logRxMessage(message);
         boolean canDeliver = m_scheduler.sequenceForReplay(message);
         if (message instanceof DumpMessage) {
@@ -313,6 +318,22 @@ public class InitiatorMailbox implements Mailbox
         }
     }
 
+    /*
+     * The batch is handled under a single acquisition of the mailbox lock, and in a single
+     * site task when scheduling in the site thread, so nothing interleaves with it. Each
+     * initiation still goes through the repair log and the scheduler on its own.
+     */
+    private void deliverBatchInternal(Iv2InitiateTaskBatchMessage batch) {
+        m_scheduler.beginInitiateBatch();
+        try {
+            for (Iv2InitiateTaskMessage task : batch.getTasks()) {
+                deliverInternal(task);
+            }
+        } finally {
+            m_scheduler.endInitiateBatch();
+        }
+    }
+
     @Override
     public VoltMessage recv()
     {
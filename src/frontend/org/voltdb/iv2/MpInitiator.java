@@ -20,6 +20,8 @@ package org.voltdb.iv2;
 import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.zookeeper_voltpatches.KeeperException;
 import org.apache.zookeeper_voltpatches.ZooKeeper;
@@ -34,6 +36,7 @@ import org.voltdb.ProducerDRGateway;
 import org.voltdb.Promotable;
 import org.voltdb.StartAction;
 import org.voltdb.StatsAgent;
+import org.voltdb.StatsSelector;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltZK;
 import org.voltdb.iv2.RepairAlgo.RepairResult;
@@ -49,6 +52,9 @@ public class MpInitiator extends BaseInitiator implements Promotable
 {
     public static final int MP_INIT_PID = TxnEgo.PARTITIONID_MAX_VALUE;
 
+    // Retires read sites that sat idle too long even when no reads complete
+    private ScheduledFuture<?> m_sitePoolReaper;
+
     public MpInitiator(HostMessenger messenger, List<Long> buddyHSIds, StatsAgent agent)
     {
         super(VoltZK.iv2mpi,
@@ -94,6 +100,14 @@ public class MpInitiator extends BaseInitiator implements Promotable
                 csp);
         sched.setMpRoSitePool(sitePool);
 
+        final MpTransactionTaskQueue pendingTasks = sched.getPendingTasks();
+        agent.registerStatsSource(StatsSelector.MPREADPOOL,
+                m_initiatorMailbox.getHSId(),
+                new MpRoSitePoolStats(m_initiatorMailbox.getHSId(), pendingTasks));
+        final long reapPeriodMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(MpRoSitePool.IDLE_TIMEOUT_NANOS) / 2);
+        m_sitePoolReaper = VoltDB.instance().scheduleWork(sitePoolReaper(pendingTasks),
+                reapPeriodMs, reapPeriodMs, TimeUnit.MILLISECONDS);
+
         // add ourselves to the ephemeral node list which BabySitters will watch for this
         // partition
         LeaderElector.createParticipantNode(m_messenger.getZK(),
@@ -101,6 +115,26 @@ public class MpInitiator extends BaseInitiator implements Promotable
                 Long.toString(getInitiatorHSId()), null);
     }
 
+    static Runnable sitePoolReaper(final MpTransactionTaskQueue pendingTasks)
+    {
+        return new Runnable() {
+            @Override
+            public void run()
+            {
+                pendingTasks.reapIdleSites();
+            }
+        };
+    }
+
+    @Override
+    public void shutdown()
+    {
+        if (m_sitePoolReaper != null) {
+            m_sitePoolReaper.cancel(false);
+        }
+        super.shutdown();
+    }
+
     @Override
     public void initDRGateway(StartAction startAction, ProducerDRGateway nodeDRGateway, boolean createMpDRGateway)
     {
@@ -23,7 +23,9 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+import org.HdrHistogram_voltpatches.AbstractHistogram;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.BackendTarget;
@@ -31,17 +33,56 @@ import org.voltdb.CatalogContext;
 import org.voltdb.CatalogSpecificPlanner;
 import org.voltdb.LoadedProcedureSet;
 import org.voltdb.StarvationTracker;
+import org.voltdb.dtxn.LatencyStats;
 
 /**
  * Provide a pool of MP Read-only sites to do MP RO work.
  * This should be owned by the MpTransactionTaskQueue and expects all operations
  * to be done while holding its lock.
+ *
+ * The pool keeps a warm set of sites with their procedures loaded, and admits
+ * reads up to a pool size that adapts to demand: it grows by a site whenever a
+ * read has waited longer than a threshold for a free one, up to a maximum that
+ * scales with the host's cores. Sites left idle longer than a timeout are shut
+ * down again, and the pool size shrinks with them, down to the warm set.
  */
 class MpRoSitePool {
     final static VoltLogger tmLog = new VoltLogger("TM");
 
-    static int DEFAULT_MAX_POOL_SIZE = 20;
-    static int INITIAL_POOL_SIZE = 1;
+    static int DEFAULT_MAX_POOL_SIZE = Math.max(20, CoreUtils.availableProcessors() * 4);
+    static int INITIAL_POOL_SIZE = Math.min(DEFAULT_MAX_POOL_SIZE, Math.max(1, CoreUtils.availableProcessors() / 2));
+    // How long a read may wait for a site before the pool grows
+    static long GROW_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("mpiReadPoolGrowWaitMs", 2));
+    // How long a site may sit idle before it's shut down
+    static long IDLE_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("mpiReadPoolIdleTimeoutMs", 60000));
+
+    /**
+     * The state of the pool at one point in time, for @Statistics
+     */
+    static class Snapshot {
+        final int m_active;
+        final int m_idle;
+        final int m_queued;
+        final int m_poolSize;
+        final int m_maxPoolSize;
+        final long m_sitesCreated;
+        final long m_sitesReaped;
+        // Microseconds reads waited for a site since the last interval, or since startup
+        final AbstractHistogram m_waits;
+
+        Snapshot(int active, int idle, int queued, int poolSize, int maxPoolSize,
+                long sitesCreated, long sitesReaped, AbstractHistogram waits)
+        {
+            m_active = active;
+            m_idle = idle;
+            m_queued = queued;
+            m_poolSize = poolSize;
+            m_maxPoolSize = maxPoolSize;
+            m_sitesCreated = sitesCreated;
+            m_sitesReaped = sitesReaped;
+            m_waits = waits;
+        }
+    }
 
     class MpRoSiteContext {
         final private SiteTaskerQueue m_queue;
@@ -49,6 +90,8 @@ class MpRoSitePool {
         final private CatalogContext m_catalogContext;
         final private LoadedProcedureSet m_loadedProcedures;
         final private Thread m_siteThread;
+        // When the site was last returned to the idle stack
+        private long m_idleSinceNanos;
 
         MpRoSiteContext(long siteId, BackendTarget backend,
                 CatalogContext context, int partitionId,
@@ -65,6 +108,7 @@ class MpRoSitePool {
             m_site.setLoadedProcedures(m_loadedProcedures);
             m_siteThread = threadFactory.newThread(m_site);
             m_siteThread.start();
+            m_idleSinceNanos = System.nanoTime();
         }
 
         boolean offer(SiteTasker task) {
@@ -93,7 +137,7 @@ class MpRoSitePool {
         }
     }
 
-    // Stack of idle MpRoSites
+    // Stack of idle MpRoSites, the most recently used on top
     private Deque<MpRoSiteContext> m_idleSites = new ArrayDeque<MpRoSiteContext>();
     // Active sites, hashed by the txnID they're working on
     private Map<Long, MpRoSiteContext> m_busySites = new HashMap<Long, MpRoSiteContext>();
@@ -106,7 +150,15 @@ class MpRoSitePool {
     private CatalogContext m_catalogContext;
     private CatalogSpecificPlanner m_csp;
     private ThreadFactory m_poolThreadFactory;
-    private final int m_poolSize;
+    private final int m_maxPoolSize;
+    private final int m_warmPoolSize;
+    // How many reads may run at once right now, between the warm and maximum sizes
+    private int m_poolSize;
+
+    private long m_sitesCreated = 0;
+    private long m_sitesReaped = 0;
+    private final AbstractHistogram m_waits = LatencyStats.constructHistogram(false);
+    private final AbstractHistogram m_intervalWaits = LatencyStats.constructHistogram(false);
 
     MpRoSitePool(
             long siteId,
@@ -126,24 +178,45 @@ class MpRoSitePool {
             CoreUtils.getThreadFactory("RO MP Site - " + CoreUtils.hsIdToString(m_siteId),
                     CoreUtils.MEDIUM_STACK_SIZE);
 
-        Integer poolSize = Integer.getInteger("mpiReadPoolSize");
-        if (poolSize == null) {
-            poolSize = DEFAULT_MAX_POOL_SIZE;
-        }
-        m_poolSize = poolSize;
-        tmLog.info("Setting maximum size of MPI read pool to: " + m_poolSize);
-
-        // Construct the initial pool
-        for (int i = 0; i < INITIAL_POOL_SIZE; i++) {
-            m_idleSites.push(new MpRoSiteContext(m_siteId,
-                        m_backend,
-                        m_catalogContext,
-                        m_partitionId,
-                        m_initiatorMailbox,
-                        m_csp,
-                        m_poolThreadFactory));
-        }
+        m_maxPoolSize = Math.max(1, Integer.getInteger("mpiReadPoolSize", DEFAULT_MAX_POOL_SIZE));
+        m_warmPoolSize = Math.min(m_maxPoolSize,
+                Math.max(1, Integer.getInteger("mpiReadPoolWarmSize", INITIAL_POOL_SIZE)));
+        m_poolSize = m_warmPoolSize;
+        tmLog.info("Setting maximum size of MPI read pool to: " + m_maxPoolSize +
+                ", starting with " + m_warmPoolSize + " sites");
 
+        // Construct the initial pool, loading procedures up front
+        warmUp();
+    }
+
+    private MpRoSiteContext newSite()
+    {
+        m_sitesCreated++;
+        return createSite();
+    }
+
+    /**
+     * Start a site with the current catalog, overridden by the tests
+     */
+    MpRoSiteContext createSite()
+    {
+        return new MpRoSiteContext(m_siteId,
+                m_backend,
+                m_catalogContext,
+                m_partitionId,
+                m_initiatorMailbox,
+                m_csp,
+                m_poolThreadFactory);
+    }
+
+    /**
+     * Top the idle sites up to the warm size with the current catalog
+     */
+    private void warmUp()
+    {
+        while (m_idleSites.size() + m_busySites.size() < m_warmPoolSize) {
+            m_idleSites.addLast(newSite());
+        }
     }
 
     /**
@@ -162,9 +235,11 @@ class MpRoSitePool {
             if (site.getCatalogCRC() != m_catalogContext.getCatalogCRC()
                     || site.getCatalogVersion() != m_catalogContext.catalogVersion) {
                 site.shutdown();
-                m_idleSites.remove(site);
+                siterator.remove();
             }
         }
+        // Load the new catalog's procedures now rather than in front of the next reads
+        warmUp();
     }
 
     /**
@@ -198,34 +273,54 @@ class MpRoSitePool {
      */
     boolean canAcceptWork()
     {
-        boolean retval = (!m_idleSites.isEmpty() || m_busySites.size() < m_poolSize);
+        boolean retval = (m_busySites.size() < m_poolSize);
         return retval;
     }
 
+    /**
+     * A read has been waiting for a site for the given time. Grow the pool
+     * for it if it has waited too long and there's room to.
+     * @return true if there's a site for the read now.
+     */
+    boolean growFor(long waitedNanos)
+    {
+        if (waitedNanos >= GROW_WAIT_NANOS && m_poolSize < m_maxPoolSize) {
+            m_poolSize++;
+            if (tmLog.isDebugEnabled()) {
+                tmLog.debug("Growing MPI read pool to " + m_poolSize + " sites after a read waited " +
+                        TimeUnit.NANOSECONDS.toMicros(waitedNanos) + " us");
+            }
+        }
+        return canAcceptWork();
+    }
+
+    /**
+     * Record how long a read waited in the MP queue before starting
+     */
+    void recordQueueWait(long waitedNanos)
+    {
+        final long micros = Math.min(TimeUnit.NANOSECONDS.toMicros(waitedNanos), m_waits.getHighestTrackableValue());
+        m_waits.recordValue(micros);
+        m_intervalWaits.recordValue(micros);
+    }
+
     /**
      * Attempt to start the transaction represented by the given task.  Need the txn ID for future reference.
      * @return true if work was started successfully, false if not.
      */
     boolean doWork(long txnId, TransactionTask task)
     {
-        boolean retval = canAcceptWork();
-        if (!retval) {
-            return false;
-        }
         MpRoSiteContext site;
         // Repair case
         if (m_busySites.containsKey(txnId)) {
             site = m_busySites.get(txnId);
         }
         else {
+            if (!canAcceptWork()) {
+                return false;
+            }
             if (m_idleSites.isEmpty()) {
-                m_idleSites.push(new MpRoSiteContext(m_siteId,
-                            m_backend,
-                            m_catalogContext,
-                            m_partitionId,
-                            m_initiatorMailbox,
-                            m_csp,
-                            m_poolThreadFactory));
+                m_idleSites.push(newSite());
             }
             site = m_idleSites.pop();
             m_busySites.put(txnId, site);
@@ -248,11 +343,46 @@ class MpRoSitePool {
         // pool with the updated catalog.
         if (site.getCatalogCRC() == m_catalogContext.getCatalogCRC()
                 && site.getCatalogVersion() == m_catalogContext.catalogVersion) {
+            site.m_idleSinceNanos = System.nanoTime();
             m_idleSites.push(site);
         }
         else {
             site.shutdown();
         }
+        reapIdleSites();
+    }
+
+    /**
+     * Shut down the sites that have been idle for longer than the timeout, and
+     * shrink the pool with them, keeping at least the warm sites.
+     */
+    void reapIdleSites()
+    {
+        final long now = System.nanoTime();
+        MpRoSiteContext site;
+        // The least recently used sites are at the bottom of the stack
+        while ((site = m_idleSites.peekLast()) != null
+                && now - site.m_idleSinceNanos > IDLE_TIMEOUT_NANOS
+                && m_idleSites.size() + m_busySites.size() > m_warmPoolSize) {
+            m_idleSites.pollLast();
+            site.shutdown();
+            m_sitesReaped++;
+            m_poolSize = Math.max(m_warmPoolSize, m_poolSize - 1);
+        }
+    }
+
+    /**
+     * @param queued the reads waiting for a site, which only the queue knows
+     * @param interval whether to report and reset the waits since the last interval
+     */
+    Snapshot getSnapshot(int queued, boolean interval)
+    {
+        final AbstractHistogram waits = interval ? m_intervalWaits.copy() : m_waits.copy();
+        if (interval) {
+            m_intervalWaits.reset();
+        }
+        return new Snapshot(m_busySites.size(), m_idleSites.size(), queued, m_poolSize, m_maxPoolSize,
+                m_sitesCreated, m_sitesReaped, waits);
     }
 
     void shutdown()
@@ -0,0 +1,102 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.voltdb.SiteStatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Use of the pool of sites that run multi-partition reads on the MPI.
+ * ACTIVE, IDLE and QUEUED count the reads running, the sites waiting for one
+ * and the reads waiting for a site. POOL_SIZE is how many reads the pool runs
+ * at once right now, which adapts between the warm size and MAX_POOL_SIZE.
+ * The WAIT columns are how long reads waited in the MP queue, in microseconds.
+ */
+public class MpRoSitePoolStats extends SiteStatsSource {
+
+    private final MpTransactionTaskQueue m_queue;
+    private boolean m_interval;
+    private long m_lastSitesCreated = 0;
+    private long m_lastSitesReaped = 0;
+
+    MpRoSitePoolStats(long siteId, MpTransactionTaskQueue queue) {
+        super(siteId, false);
+        m_queue = queue;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("ACTIVE", VoltType.INTEGER));
+        columns.add(new ColumnInfo("IDLE", VoltType.INTEGER));
+        columns.add(new ColumnInfo("QUEUED", VoltType.INTEGER));
+        columns.add(new ColumnInfo("POOL_SIZE", VoltType.INTEGER));
+        columns.add(new ColumnInfo("MAX_POOL_SIZE", VoltType.INTEGER));
+        columns.add(new ColumnInfo("SITES_CREATED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("SITES_REAPED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("READS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("WAIT_AVG", VoltType.BIGINT));
+        columns.add(new ColumnInfo("WAIT_P50", VoltType.BIGINT));
+        columns.add(new ColumnInfo("WAIT_P95", VoltType.BIGINT));
+        columns.add(new ColumnInfo("WAIT_P99", VoltType.BIGINT));
+        columns.add(new ColumnInfo("WAIT_MAX", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        final MpRoSitePool.Snapshot snapshot = (MpRoSitePool.Snapshot) rowKey;
+        long sitesCreated = snapshot.m_sitesCreated;
+        long sitesReaped = snapshot.m_sitesReaped;
+        if (m_interval) {
+            sitesCreated -= m_lastSitesCreated;
+            sitesReaped -= m_lastSitesReaped;
+            m_lastSitesCreated = snapshot.m_sitesCreated;
+            m_lastSitesReaped = snapshot.m_sitesReaped;
+        }
+        final AbstractHistogram waits = snapshot.m_waits;
+        final boolean hasWaits = waits.getTotalCount() > 0;
+
+        rowValues[columnNameToIndex.get("ACTIVE")] = snapshot.m_active;
+        rowValues[columnNameToIndex.get("IDLE")] = snapshot.m_idle;
+        rowValues[columnNameToIndex.get("QUEUED")] = snapshot.m_queued;
+        rowValues[columnNameToIndex.get("POOL_SIZE")] = snapshot.m_poolSize;
+        rowValues[columnNameToIndex.get("MAX_POOL_SIZE")] = snapshot.m_maxPoolSize;
+        rowValues[columnNameToIndex.get("SITES_CREATED")] = sitesCreated;
+        rowValues[columnNameToIndex.get("SITES_REAPED")] = sitesReaped;
+        rowValues[columnNameToIndex.get("READS")] = waits.getTotalCount();
+        rowValues[columnNameToIndex.get("WAIT_AVG")] = hasWaits ? (long) waits.getMean() : 0L;
+        rowValues[columnNameToIndex.get("WAIT_P50")] = hasWaits ? waits.getValueAtPercentile(50.0) : 0L;
+        rowValues[columnNameToIndex.get("WAIT_P95")] = hasWaits ? waits.getValueAtPercentile(95.0) : 0L;
+        rowValues[columnNameToIndex.get("WAIT_P99")] = hasWaits ? waits.getValueAtPercentile(99.0) : 0L;
+        rowValues[columnNameToIndex.get("WAIT_MAX")] = hasWaits ? waits.getMaxValue() : 0L;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        m_interval = interval;
+        ArrayList<Object> rows = new ArrayList<Object>(1);
+        rows.add(m_queue.getSitePoolSnapshot(interval));
+        return rows.iterator();
+    }
+}
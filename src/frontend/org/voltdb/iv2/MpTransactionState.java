@@ -17,7 +17,9 @@
 
 package org.voltdb.iv2;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -59,6 +61,26 @@ public class MpTransactionState extends TransactionState
         private static final long serialVersionUID = 1L;
     }
 
+    // How many batches of a read-only transaction may have their distributed work in
+    // flight ahead of the batch the procedure is waiting on
+    static final int MAX_BATCHES_AHEAD = Integer.getInteger("MP_FRAGMENT_PIPELINE_DEPTH", 4);
+
+    /**
+     * Distributed work sent to the participants before its batch runs, and the
+     * responses that came back for it so far.
+     */
+    private static class WorkAhead {
+        final FragmentTaskMessage m_task;
+        final Map<Integer, Set<Long>> m_deps;
+        final Map<Integer, List<VoltTable>> m_depTables = new HashMap<Integer, List<VoltTable>>();
+
+        WorkAhead(FragmentTaskMessage task, Map<Integer, Set<Long>> deps)
+        {
+            m_task = task;
+            m_deps = deps;
+        }
+    }
+
     final Iv2InitiateTaskMessage m_initiationMsg;
 
     final LinkedBlockingDeque<FragmentResponseMessage> m_newDeps =
@@ -73,6 +95,11 @@ public class MpTransactionState extends TransactionState
     FragmentTaskMessage m_localWork = null;
     boolean m_haveDistributedInitTask = false;
     boolean m_isRestart = false;
+    // Distributed work of later batches waiting to be sent ahead, and the work in flight
+    final Deque<FragmentTaskMessage> m_queuedWorkAhead = new ArrayDeque<FragmentTaskMessage>();
+    final Deque<WorkAhead> m_sentWorkAhead = new ArrayDeque<WorkAhead>();
+    // Dependencies of distributed work dropped when a batch failed, their late responses are ignored
+    final Set<Integer> m_abandonedDeps = new HashSet<Integer>();
 
     MpTransactionState(Mailbox mailbox,
                        TransactionInfoBaseMessage notice,
@@ -107,6 +134,9 @@ public class MpTransactionState extends TransactionState
         // since some masters may not have seen it.
         m_haveDistributedInitTask = false;
         m_isRestart = true;
+        // Responses to the work sent ahead are stale now, restarts tolerate those
+        m_queuedWorkAhead.clear();
+        m_sentWorkAhead.clear();
     }
 
     @Override
@@ -146,9 +176,68 @@ public class MpTransactionState extends TransactionState
         m_localWork.setTruncationHandle(m_initiationMsg.getTruncationHandle());
     }
 
+    @Override
+    public boolean canPipelineFragmentWork()
+    {
+        return MAX_BATCHES_AHEAD > 0 && isReadOnly() && !m_isRestart;
+    }
+
+    @Override
+    public void queueFragmentWorkAhead(List<FragmentTaskMessage> tasks)
+    {
+        assert(canPipelineFragmentWork());
+        // Left over if the procedure caught the failure of an earlier batch
+        abandonWorkAhead();
+        m_queuedWorkAhead.addAll(tasks);
+        sendWorkAhead();
+    }
+
+    /**
+     * Keep up to MAX_BATCHES_AHEAD batches of queued distributed work in flight,
+     * tracking their dependencies from the moment they are sent since their
+     * responses can come back while an earlier batch is still running.
+     */
+    private void sendWorkAhead()
+    {
+        while (m_sentWorkAhead.size() < MAX_BATCHES_AHEAD && !m_queuedWorkAhead.isEmpty()) {
+            FragmentTaskMessage task = m_queuedWorkAhead.pollFirst();
+            task.setTruncationHandle(m_initiationMsg.getTruncationHandle());
+            m_sentWorkAhead.addLast(new WorkAhead(task,
+                        createTrackedDependenciesFromTask(task, m_useHSIds)));
+            sendToParticipants(task);
+        }
+    }
+
+    private void sendToParticipants(FragmentTaskMessage task)
+    {
+        // Distribute fragments to remote destinations.
+        long[] non_local_hsids = new long[m_useHSIds.size()];
+        for (int i = 0; i < m_useHSIds.size(); i++) {
+            non_local_hsids[i] = m_useHSIds.get(i);
+        }
+        // send to all non-local sites
+        if (non_local_hsids.length > 0) {
+            m_mbox.send(non_local_hsids, task);
+        }
+    }
+
     @Override
     public void createAllParticipatingFragmentWork(FragmentTaskMessage task)
     {
+        WorkAhead ahead = m_sentWorkAhead.peekFirst();
+        if (ahead != null && ahead.m_task == task) {
+            // Already sent, pick up the responses that came back while earlier batches ran
+            m_sentWorkAhead.pollFirst();
+            m_remoteWork = task;
+            m_remoteDeps = ahead.m_deps;
+            m_remoteDepTables.putAll(ahead.m_depTables);
+            sendWorkAhead();
+            return;
+        }
+        if (task == m_queuedWorkAhead.peekFirst()) {
+            m_queuedWorkAhead.pollFirst();
+        }
+
         // Don't generate remote work or dependency tracking or anything if
         // there are no fragments to be done in this message
         // At some point maybe ProcedureRunner.slowPath() can get smarter
@@ -163,19 +252,13 @@ public class MpTransactionState extends TransactionState
 
             m_remoteWork = task;
             m_remoteWork.setTruncationHandle(m_initiationMsg.getTruncationHandle());
-            // Distribute fragments to remote destinations.
-            long[] non_local_hsids = new long[m_useHSIds.size()];
-            for (int i = 0; i < m_useHSIds.size(); i++) {
-                non_local_hsids[i] = m_useHSIds.get(i);
-            }
-            // send to all non-local sites
-            if (non_local_hsids.length > 0) {
-                m_mbox.send(non_local_hsids, m_remoteWork);
-            }
+            sendToParticipants(m_remoteWork);
         }
         else {
             m_remoteWork = null;
         }
+        // The later batches go out right behind this one
+        sendWorkAhead();
     }
 
     private static Map<Integer, Set<Long>>
@@ -218,21 +301,16 @@ public class MpTransactionState extends TransactionState
                 m_remoteWork.setStateForDurability((Iv2InitiateTaskMessage) getNotice(),
                         m_masterHSIds.keySet());
             }
-            // Distribute fragments to remote destinations.
-            long[] non_local_hsids = new long[m_useHSIds.size()];
-            for (int i = 0; i < m_useHSIds.size(); i++) {
-                non_local_hsids[i] = m_useHSIds.get(i);
-            }
-            // send to all non-local sites
-            if (non_local_hsids.length > 0) {
-                m_mbox.send(non_local_hsids, m_remoteWork);
-            }
+            sendToParticipants(m_remoteWork);
         }
         // Do distributed fragments, if any
         if (m_remoteWork != null) {
-            // Create some record of expected dependencies for tracking
-            m_remoteDeps = createTrackedDependenciesFromTask(m_remoteWork,
-                                                             m_useHSIds);
+            // Create some record of expected dependencies for tracking,
+            // work sent ahead has been tracked since it was sent
+            if (m_remoteDeps == null) {
+                m_remoteDeps = createTrackedDependenciesFromTask(m_remoteWork,
+                                                                 m_useHSIds);
+            }
             // if there are remote deps, block on them
             // FragmentResponses indicating failure will throw an exception
             // which will propagate out of handleReceivedFragResponse and
@@ -263,6 +341,16 @@ public class MpTransactionState extends TransactionState
         while (true){
             msg = pollForResponses();
             assert(msg.getTableCount() > 0);
+            if (isResponseToAbandonedWork(msg)) {
+                continue;
+            }
+            if (isResponseToWorkAhead(msg)) {
+                // A later batch's participants answering while this one runs locally
+                if (handleReceivedFragResponse(msg)) {
+                    checkForException(msg);
+                }
+                continue;
+            }
             // If this is a restarted TXN, verify that this is not a stale message from a different Dependency
             if (!m_isRestart || (msg.m_sourceHSId == m_buddyHSId &&
                     msg.getTableDependencyIdAtIndex(0) == m_localWork.getOutputDepId(0))) {
@@ -335,10 +423,57 @@ public class MpTransactionState extends TransactionState
         return msg;
     }
 
+    /**
+     * Drop the distributed work sent ahead of a batch that failed, the procedure may
+     * catch the failure and carry on with other batches. The responses still to come
+     * for it, and for the failed batch, are ignored when they show up.
+     */
+    private void abandonWorkAhead()
+    {
+        if (m_remoteDeps != null) {
+            abandonDeps(m_remoteDeps);
+        }
+        for (WorkAhead ahead : m_sentWorkAhead) {
+            abandonDeps(ahead.m_deps);
+        }
+        m_sentWorkAhead.clear();
+        m_queuedWorkAhead.clear();
+    }
+
+    private void abandonDeps(Map<Integer, Set<Long>> deps)
+    {
+        for (Entry<Integer, Set<Long>> e : deps.entrySet()) {
+            if (!e.getValue().isEmpty()) {
+                m_abandonedDeps.add(e.getKey());
+            }
+        }
+    }
+
+    private boolean isResponseToAbandonedWork(FragmentResponseMessage msg)
+    {
+        return !m_abandonedDeps.isEmpty() &&
+                m_abandonedDeps.contains(msg.getTableDependencyIdAtIndex(0));
+    }
+
+    private boolean isResponseToWorkAhead(FragmentResponseMessage msg)
+    {
+        if (m_sentWorkAhead.isEmpty()) {
+            return false;
+        }
+        final int depId = msg.getTableDependencyIdAtIndex(0);
+        for (WorkAhead ahead : m_sentWorkAhead) {
+            if (ahead.m_deps.containsKey(depId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void checkForException(FragmentResponseMessage msg)
     {
         if (msg.getStatusCode() != FragmentResponseMessage.SUCCESS) {
             setNeedsRollback(true);
+            abandonWorkAhead();
             if (msg.getException() != null) {
                 throw msg.getException();
             } else {
@@ -351,7 +486,21 @@ public class MpTransactionState extends TransactionState
     {
         // Remove the distributed fragment for this site from remoteDeps
         // for the dependency Id depId.
-        Set<Long> localRemotes = m_remoteDeps.get(depId);
+        Set<Long> localRemotes = m_remoteDeps == null ? null : m_remoteDeps.get(depId);
+        Map<Integer, List<VoltTable>> depTables = m_remoteDepTables;
+        if (localRemotes == null) {
+            for (WorkAhead ahead : m_sentWorkAhead) {
+                localRemotes = ahead.m_deps.get(depId);
+                if (localRemotes != null) {
+                    depTables = ahead.m_depTables;
+                    break;
+                }
+            }
+        }
+        if (localRemotes == null && m_abandonedDeps.contains(depId)) {
+            // Late response to the work of a failed batch
+            return false;
+        }
         if (localRemotes == null && m_isRestart) {
             // Tolerate weird deps showing up on restart
             // After Ariel separates unique ID from transaction ID, rewrite restart to restart with
@@ -361,10 +510,10 @@ public class MpTransactionState extends TransactionState
         boolean needed = localRemotes.remove(hsid);
         if (needed) {
             // add table to storage
-            List<VoltTable> tables = m_remoteDepTables.get(depId);
+            List<VoltTable> tables = depTables.get(depId);
             if (tables == null) {
                 tables = new ArrayList<VoltTable>();
-                m_remoteDepTables.put(depId, tables);
+                depTables.put(depId, tables);
             }
             // null dependency table is from a joining node, has no content, drop it
             if (table.getStatusCode() != VoltTableUtil.NULL_DEPENDENCY_STATUS) {
@@ -46,6 +46,9 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
     private final Map<Long, TransactionTask> m_currentWrites = new HashMap<Long, TransactionTask>();
     private final Map<Long, TransactionTask> m_currentReads = new HashMap<Long, TransactionTask>();
     private Deque<TransactionTask> m_backlog = new ArrayDeque<TransactionTask>();
+    // When each task in the backlog was offered, in the same order
+    private Deque<Long> m_backlogOfferNanos = new ArrayDeque<Long>();
+    private int m_backlogReads = 0;
 
     private MpRoSitePool m_sitePool = null;
 
@@ -69,6 +72,19 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
         m_sitePool.updateSettings(context, csp);
     }
 
+    /**
+     * Shut down read sites that have been idle for a while
+     */
+    synchronized void reapIdleSites()
+    {
+        m_sitePool.reapIdleSites();
+    }
+
+    synchronized MpRoSitePool.Snapshot getSitePoolSnapshot(boolean interval)
+    {
+        return m_sitePool.getSnapshot(m_backlogReads, interval);
+    }
+
     void shutdown()
     {
         if (m_sitePool != null) {
@@ -88,6 +104,10 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
     {
         Iv2Trace.logTransactionTaskQueueOffer(task);
         m_backlog.addLast(task);
+        m_backlogOfferNanos.addLast(System.nanoTime());
+        if (task.getTransactionState().isReadOnly()) {
+            m_backlogReads++;
+        }
         taskQueueOffer();
         return true;
     }
@@ -189,6 +209,7 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
             if (!task.getTransactionState().isReadOnly()) {
                 if (m_currentReads.isEmpty() && m_currentWrites.isEmpty()) {
                     task = m_backlog.pollFirst();
+                    m_backlogOfferNanos.pollFirst();
                     m_currentWrites.put(task.getTxnId(), task);
                     taskQueueOffer(task);
                     retval = true;
@@ -196,10 +217,13 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
             }
             else if (m_currentWrites.isEmpty()) {
                 while (task != null && task.getTransactionState().isReadOnly() &&
-                       m_sitePool.canAcceptWork())
+                       (m_sitePool.canAcceptWork() ||
+                        m_sitePool.growFor(System.nanoTime() - m_backlogOfferNanos.peekFirst())))
                 {
                     task = m_backlog.pollFirst();
                     assert(task.getTransactionState().isReadOnly());
+                    m_sitePool.recordQueueWait(System.nanoTime() - m_backlogOfferNanos.pollFirst());
+                    m_backlogReads--;
                     m_currentReads.put(task.getTxnId(), task);
                     taskQueueOffer(task);
                     retval = true;
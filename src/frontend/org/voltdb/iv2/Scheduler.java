@@ -189,6 +189,10 @@ abstract public class Scheduler implements InitiatorMessageHandler
     // Dumps the content of the scheduler for debugging
     public void dump() {}
 
+    // Bracket the delivery of a batch of initiations, see Iv2InitiateTaskBatchMessage
+    public void beginInitiateBatch() {}
+    public void endInitiateBatch() {}
+
     abstract public void shutdown();
 
     @Override
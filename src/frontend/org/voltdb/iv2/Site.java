@@ -17,6 +17,7 @@
 
 package org.voltdb.iv2;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
@@ -68,6 +69,7 @@ import org.voltdb.SystemProcedureCatalog;
 import org.voltdb.SystemProcedureExecutionContext;
 import org.voltdb.TableStats;
 import org.voltdb.TableStreamType;
+import org.voltdb.TempTableSpillStats;
 import org.voltdb.TheHashinator;
 import org.voltdb.TheHashinator.HashinatorConfig;
 import org.voltdb.TupleStreamStateInfo;
@@ -81,7 +83,9 @@ import org.voltdb.catalog.DRCatalogDiffEngine;
 import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Deployment;
 import org.voltdb.catalog.Procedure;
+import org.voltdb.catalog.Systemsettings;
 import org.voltdb.catalog.Table;
+import org.voltdb.common.Constants;
 import org.voltdb.dtxn.SiteTracker;
 import org.voltdb.dtxn.TransactionState;
 import org.voltdb.dtxn.UndoAction;
@@ -162,6 +166,11 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
     final TableStats m_tableStats;
     final IndexStats m_indexStats;
     final MemoryStats m_memStats;
+    // Only sites with a native EE spill temp tables, the MPI included
+    TempTableSpillStats m_tempTableSpillStats;
+
+    // Temp table spill directory the EE was last given, empty when spilling is off
+    private String m_tempTableSpillDirectory = "";
 
     // Each execution site manages snapshot using a SnapshotSiteProcessor
     private SnapshotSiteProcessor m_snapshotter;
@@ -752,6 +761,11 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
             eeTemp.loadCatalog(m_startupConfig.m_timestamp, m_startupConfig.m_serializedCatalog);
             eeTemp.setBatchTimeout(m_context.cluster.getDeployment().get("deployment").
                             getSystemsettings().get("systemsettings").getQuerytimeout());
+            configureTempTableSpill(eeTemp);
+            m_tempTableSpillStats = new TempTableSpillStats(m_siteId, m_partitionId);
+            VoltDB.instance().getStatsAgent().registerStatsSource(StatsSelector.TEMPTABLESPILL,
+                                                                  m_siteId,
+                                                                  m_tempTableSpillStats);
         }
         // just print error info an bail if we run into an error here
         catch (final Exception ex) {
@@ -762,6 +776,46 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         return eeTemp;
     }
 
+    /**
+     * Give the EE this site's temp table spill directory, or an empty one to turn
+     * spilling off, when the deployment setting changes. Spill files are unlinked
+     * as soon as they are created, anything found in the directory is left over
+     * from a crashed process and is removed.
+     */
+    private void configureTempTableSpill(ExecutionEngine ee)
+    {
+        Systemsettings settings = m_context.cluster.getDeployment().get("deployment").
+                getSystemsettings().get("systemsettings");
+        String directory = "";
+        if (settings.getTemptablespill()) {
+            File siteDir = new File(new File(VoltDB.instance().getVoltDBRootPath(), "temp_table_spill"),
+                                    "site_" + CoreUtils.getSiteIdFromHSId(m_siteId));
+            if (!siteDir.isDirectory() && !siteDir.mkdirs()) {
+                hostLog.warn("Unable to create temp table spill directory " + siteDir +
+                        ", temp tables of site " + CoreUtils.hsIdToString(m_siteId) +
+                        " will not spill to disk");
+            }
+            else {
+                File[] leftovers = siteDir.listFiles();
+                if (leftovers != null) {
+                    for (File leftover : leftovers) {
+                        leftover.delete();
+                    }
+                }
+                directory = siteDir.getAbsolutePath();
+            }
+        }
+        if (directory.equals(m_tempTableSpillDirectory)) {
+            return;
+        }
+        byte[] directoryBytes = directory.getBytes(Constants.UTF8ENCODING);
+        ByteBuffer paramBuffer = ee.getParamBufferForExecuteTask(4 + directoryBytes.length);
+        paramBuffer.putInt(directoryBytes.length);
+        paramBuffer.put(directoryBytes);
+        ee.executeTask(TaskType.SET_TEMP_TABLE_SPILL, paramBuffer);
+        m_tempTableSpillDirectory = directory;
+    }
+
 
     @Override
     public void run()
@@ -1307,6 +1361,13 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                                             m_ee.getThreadLocalPoolAllocations());
             }
         }
+
+        if (m_tempTableSpillStats != null) {
+            ByteBuffer resultBuffer = ByteBuffer.wrap(
+                    m_ee.executeTask(TaskType.GET_TEMP_TABLE_SPILL_STATS, ByteBuffer.allocate(0)));
+            m_tempTableSpillStats.setStats(resultBuffer.getLong(), resultBuffer.getLong(),
+                                           resultBuffer.getLong(), resultBuffer.getLong());
+        }
     }
 
     @Override
@@ -1460,6 +1521,9 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         m_context = context;
         m_ee.setBatchTimeout(m_context.cluster.getDeployment().get("deployment").
                 getSystemsettings().get("systemsettings").getQuerytimeout());
+        if (m_tempTableSpillStats != null) {
+            configureTempTableSpill(m_ee);
+        }
         m_loadedProcedures.loadProcedures(m_context, csp, false);
 
         if (isMPI) {
@@ -1604,6 +1668,11 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         m_ee.setProcedureName(procedureName);
     }
 
+    @Override
+    public void setPooledResults(boolean pooledResults) {
+        m_ee.setPooledResults(pooledResults);
+    }
+
     @Override
     public void notifyOfSnapshotNonce(String nonce, long snapshotSpHandle) {
         m_initiatorMailbox.notifyOfSnapshotNonce(nonce, snapshotSpHandle);
@@ -17,33 +17,144 @@
 
 package org.voltdb.iv2;
 
-import java.util.concurrent.LinkedTransferQueue;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.StarvationTracker;
 
-/** SiteTaskerScheduler orders SiteTaskers for execution. */
+/**
+ * SiteTaskerScheduler orders SiteTaskers for execution.
+ *
+ * Any number of threads offer tasks, only the site thread takes them. Tasks go into a
+ * fixed ring of slots so offering doesn't allocate. If the ring fills up, tasks spill
+ * into an overflow queue until the site thread catches up, so offers never block and
+ * the site thread can offer to its own queue. Tasks offered by one thread are taken
+ * in the order they were offered.
+ *
+ * When it runs out of work the site thread spins, then yields, then parks until the
+ * next offer, see SITE_IDLE_SPIN_MICROS and SITE_IDLE_YIELD_MICROS.
+ */
 public class SiteTaskerQueue
 {
-    private final LinkedTransferQueue<SiteTasker> m_tasks = new LinkedTransferQueue<SiteTasker>();
+    static final int CAPACITY =
+            Integer.highestOneBit(Math.max(2, Integer.getInteger("SITE_TASKER_QUEUE_CAPACITY", 16384) - 1) << 1);
+    static final long IDLE_SPIN_NANOS =
+            TimeUnit.MICROSECONDS.toNanos(Long.getLong("SITE_IDLE_SPIN_MICROS",
+                    TimeUnit.NANOSECONDS.toMicros(CoreUtils.QUEUE_SPIN_MICROSECONDS)));
+    static final long IDLE_YIELD_NANOS =
+            TimeUnit.MICROSECONDS.toNanos(Long.getLong("SITE_IDLE_YIELD_MICROS", 0));
+
+    private final int m_mask;
+    private final AtomicReferenceArray<SiteTasker> m_ring;
+    // When each task was offered, written before the task is published in its slot
+    private final long[] m_offerTimes;
+    // Next slot to claim, advanced by the offering threads
+    private final AtomicLong m_tail = new AtomicLong();
+    // Next slot to take, only advanced by the site thread
+    private final AtomicLong m_head = new AtomicLong();
+
+    // Tasks offered while the ring was full, guarded by itself
+    private final ArrayDeque<SiteTasker> m_overflow = new ArrayDeque<SiteTasker>();
+    // Set while there is overflow, every offer goes there until it drains
+    private volatile boolean m_overflowing = false;
+
+    private volatile Thread m_parkedConsumer = null;
     private StarvationTracker m_starvationTracker;
 
+    public SiteTaskerQueue() {
+        this(CAPACITY);
+    }
+
+    SiteTaskerQueue(int capacity) {
+        assert(Integer.bitCount(capacity) == 1);
+        m_mask = capacity - 1;
+        m_ring = new AtomicReferenceArray<SiteTasker>(capacity);
+        m_offerTimes = new long[capacity];
+    }
+
     public boolean offer(SiteTasker task)
     {
-        return m_tasks.offer(task);
+        if (!m_overflowing) {
+            long tail;
+            do {
+                tail = m_tail.get();
+                if (tail - m_head.get() > m_mask) {
+                    tail = -1;
+                    break;
+                }
+            } while (!m_tail.compareAndSet(tail, tail + 1));
+
+            if (tail >= 0) {
+                final int slot = (int) tail & m_mask;
+                m_offerTimes[slot] = System.nanoTime();
+                // Full volatile store, must be ordered before the check for a parked site thread
+                m_ring.set(slot, task);
+                wakeConsumer();
+                return true;
+            }
+        }
+
+        synchronized (m_overflow) {
+            m_overflowing = true;
+            m_overflow.offer(task);
+        }
+        wakeConsumer();
+        return true;
+    }
+
+    private void wakeConsumer() {
+        final Thread consumer = m_parkedConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
     }
 
     // Block on the site tasker queue.
     public SiteTasker take() throws InterruptedException
     {
-        SiteTasker task = m_tasks.poll();
+        SiteTasker task = poll();
         if (task == null) {
             m_starvationTracker.beginStarvation();
         } else {
             return task;
         }
         try {
-            return CoreUtils.queueSpinTake(m_tasks);
+            final long start = System.nanoTime();
+            long idle = 0;
+            while (idle < IDLE_SPIN_NANOS) {
+                if ((task = poll()) != null) {
+                    return task;
+                }
+                idle = System.nanoTime() - start;
+            }
+            while (idle < IDLE_SPIN_NANOS + IDLE_YIELD_NANOS) {
+                if ((task = poll()) != null) {
+                    return task;
+                }
+                Thread.yield();
+                idle = System.nanoTime() - start;
+            }
+
+            for (;;) {
+                // Publish that we are about to park before the last look, offers check it
+                // after publishing their task so one of the two sides sees the other
+                m_parkedConsumer = Thread.currentThread();
+                try {
+                    if ((task = poll()) != null) {
+                        return task;
+                    }
+                    LockSupport.park(this);
+                } finally {
+                    m_parkedConsumer = null;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
         } finally {
             m_starvationTracker.endStarvation();
         }
@@ -52,17 +163,60 @@ public class SiteTaskerQueue
     // Non-blocking poll on the site tasker queue.
     public SiteTasker poll()
     {
-        return m_tasks.poll();
+        final long head = m_head.get();
+        final int slot = (int) head & m_mask;
+        final SiteTasker task = m_ring.get(slot);
+        if (task != null) {
+            final long depth = m_tail.get() - head;
+            final long waitNanos = System.nanoTime() - m_offerTimes[slot];
+            m_ring.lazySet(slot, null);
+            m_head.lazySet(head + 1);
+            if (m_starvationTracker != null) {
+                m_starvationTracker.taskTaken(depth, waitNanos);
+            }
+            return task;
+        }
+        return m_overflowing ? pollOverflow(head) : null;
+    }
+
+    private SiteTasker pollOverflow(long head) {
+        // A slot may be claimed but not filled yet, anything offered to the ring
+        // went in before the overflow the same thread offered after it
+        if (m_tail.get() != head) {
+            return null;
+        }
+        synchronized (m_overflow) {
+            final SiteTasker task = m_overflow.poll();
+            if (task == null) {
+                m_overflowing = false;
+            }
+            return task;
+        }
     }
 
     // Non-blocking peek on the site tasker queue.
     public SiteTasker peek()
     {
-        return m_tasks.peek();
+        final long head = m_head.get();
+        final SiteTasker task = m_ring.get((int) head & m_mask);
+        if (task != null || !m_overflowing || m_tail.get() != head) {
+            return task;
+        }
+        synchronized (m_overflow) {
+            return m_overflow.peek();
+        }
     }
 
     public boolean isEmpty() {
-        return m_tasks.isEmpty();
+        if (m_tail.get() != m_head.get()) {
+            return false;
+        }
+        if (!m_overflowing) {
+            return true;
+        }
+        synchronized (m_overflow) {
+            return m_overflow.isEmpty();
+        }
     }
 
     public void setStarvationTracker(StarvationTracker tracker) {
@@ -59,6 +59,7 @@ import org.voltdb.messaging.DumpMessage;
 import org.voltdb.messaging.FragmentResponseMessage;
 import org.voltdb.messaging.FragmentTaskMessage;
 import org.voltdb.messaging.InitiateResponseMessage;
+import org.voltdb.messaging.Iv2InitiateTaskBatchMessage;
 import org.voltdb.messaging.Iv2InitiateTaskMessage;
 import org.voltdb.messaging.Iv2LogFaultMessage;
 import org.voltdb.messaging.MultiPartitionParticipantMessage;
@@ -135,6 +136,8 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
 
     List<Long> m_replicaHSIds = new ArrayList<Long>();
     long m_sendToHSIds[] = new long[0];
+    // Initiations to replicate once the batch being delivered is done, null outside a batch
+    private List<Iv2InitiateTaskMessage> m_replicationBatch = null;
 
     private final TransactionTaskQueue m_pendingTasks;
     private final Map<Long, TransactionState> m_outstandingTxns =
@@ -410,6 +413,28 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         }
     }
 
+    @Override
+    public void beginInitiateBatch()
+    {
+        assert(m_replicationBatch == null);
+        m_replicationBatch = new ArrayList<Iv2InitiateTaskMessage>();
+    }
+
+    // Replicas get the writes of a batch as a batch, in the order they were sequenced.
+    // Nothing else can be sent to them while the batch is delivered, so the order
+    // relative to other messages is unchanged.
+    @Override
+    public void endInitiateBatch()
+    {
+        final List<Iv2InitiateTaskMessage> batch = m_replicationBatch;
+        m_replicationBatch = null;
+        if (batch.size() == 1) {
+            m_mailbox.send(m_sendToHSIds, batch.get(0));
+        } else if (!batch.isEmpty()) {
+            m_mailbox.send(m_sendToHSIds, new Iv2InitiateTaskBatchMessage(batch));
+        }
+    }
+
     // SpScheduler expects to see InitiateTaskMessages corresponding to single-partition
     // procedures only.
     private void handleIv2InitiateTaskMessage(Iv2InitiateTaskMessage message)
@@ -526,7 +551,11 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                             msg.isForReplay());
                 // Update the handle in the copy since the constructor doesn't set it
                 replmsg.setSpHandle(newSpHandle);
-                m_mailbox.send(m_sendToHSIds, replmsg);
+                if (m_replicationBatch != null) {
+                    m_replicationBatch.add(replmsg);
+                } else {
+                    m_mailbox.send(m_sendToHSIds, replmsg);
+                }
 
                 DuplicateCounter counter = new DuplicateCounter(
                         msg.getInitiatorHSId(),
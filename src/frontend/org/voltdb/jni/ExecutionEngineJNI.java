@@ -67,6 +67,13 @@ public class ExecutionEngineJNI extends ExecutionEngine {
 
     private static final boolean HOST_TRACE_ENABLED;
 
+    /**
+     * Result tables of at least this many bytes that go straight to the client response
+     * are copied out of the shared buffer into pooled direct buffers, which the response
+     * is written to the socket from and then returned to the pool.
+     */
+    private static final int POOLED_RESULT_MIN_SIZE = Integer.getInteger("EE_POOLED_RESULT_MIN_SIZE", 1024 * 256);
+
     static {
         EE_COMPACTION_THRESHOLD = Integer.getInteger("EE_COMPACTION_THRESHOLD", 95);
         if (EE_COMPACTION_THRESHOLD < 0 || EE_COMPACTION_THRESHOLD > 99) {
@@ -331,6 +338,9 @@ public class ExecutionEngineJNI extends ExecutionEngine {
                 final boolean dirty = fds.readBoolean();
                 if (dirty)
                     m_dirty = true;
+                if (m_pooledResults && totalSize >= POOLED_RESULT_MIN_SIZE) {
+                    return readPooledResults(fds.buffer(), batchSize);
+                }
                 // get a copy of the buffer
                 final ByteBuffer fullBacking = fds.readBuffer(totalSize);
                 final VoltTable[] results = new VoltTable[batchSize];
@@ -359,6 +369,35 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         }
     }
 
+    /**
+     * Copy each result table out of the shared buffer on its own, the large ones into
+     * pooled direct buffers and the others to the heap.
+     */
+    private static VoltTable[] readPooledResults(ByteBuffer buf, int batchSize) {
+        final VoltTable[] results = new VoltTable[batchSize];
+        for (int i = 0; i < batchSize; ++i) {
+            final int numdeps = buf.getInt(); // number of dependencies for this frag
+            assert(numdeps == 1);
+            buf.getInt(); // ignore the dependency id
+            final int tableSize = buf.getInt();
+            final int oldLimit = buf.limit();
+            buf.limit(buf.position() + tableSize);
+            if (tableSize >= POOLED_RESULT_MIN_SIZE) {
+                final BBContainer cont = DBBPool.allocateDirectAndPool(tableSize);
+                cont.b().put(buf);
+                cont.b().flip();
+                results[i] = PrivateVoltTableFactory.createVoltTableFromPooledBuffer(cont);
+            } else {
+                final ByteBuffer tableBacking = ByteBuffer.allocate(tableSize);
+                tableBacking.put(buf);
+                tableBacking.flip();
+                results[i] = PrivateVoltTableFactory.createVoltTableFromBuffer(tableBacking, true);
+            }
+            buf.limit(oldLimit);
+        }
+        return results;
+    }
+
     @Override
     public VoltTable serializeTable(final int tableId) throws EEException {
         if (HOST_TRACE_ENABLED) {
@@ -0,0 +1,109 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.messaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.voltcore.messaging.VoltMessage;
+
+/**
+ * Single-partition initiations for the same initiator, delivered as one message
+ * and handled in order as if they had arrived back to back. Used by the client
+ * interface for invocations that arrive in the same network read and by partition
+ * leaders to replicate such a batch to their replicas.
+ */
+public class Iv2InitiateTaskBatchMessage extends VoltMessage
+{
+    private List<Iv2InitiateTaskMessage> m_tasks;
+
+    /** Empty constructor for de-serialization */
+    Iv2InitiateTaskBatchMessage() {
+        super();
+    }
+
+    public Iv2InitiateTaskBatchMessage(List<Iv2InitiateTaskMessage> tasks)
+    {
+        assert(!tasks.isEmpty());
+        m_tasks = tasks;
+    }
+
+    public List<Iv2InitiateTaskMessage> getTasks() {
+        return m_tasks;
+    }
+
+    @Override
+    public int getSerializedSize()
+    {
+        int msgsize = super.getSerializedSize();
+        msgsize += 4; // task count
+        for (Iv2InitiateTaskMessage task : m_tasks) {
+            msgsize += 4 + task.getSerializedSize();
+        }
+        return msgsize;
+    }
+
+    @Override
+    public void flattenToBuffer(ByteBuffer buf) throws IOException
+    {
+        buf.put(VoltDbMessageFactory.IV2_INITIATE_TASK_BATCH_ID);
+        buf.putInt(m_tasks.size());
+        for (Iv2InitiateTaskMessage task : m_tasks) {
+            // Each task asserts it fills its buffer, flatten them separately
+            ByteBuffer taskBuf = VoltMessage.toBuffer(task);
+            buf.putInt(taskBuf.remaining());
+            buf.put(taskBuf);
+        }
+
+        assert(buf.capacity() == buf.position());
+        buf.limit(buf.position());
+    }
+
+    @Override
+    protected void initFromBuffer(ByteBuffer buf) throws IOException
+    {
+        final int count = buf.getInt();
+        m_tasks = new ArrayList<Iv2InitiateTaskMessage>(count);
+        for (int i = 0; i < count; i++) {
+            final int length = buf.getInt();
+            // The invocation keeps the rest of its buffer as parameters, so bound it
+            ByteBuffer taskBuf = buf.slice();
+            taskBuf.limit(length);
+            buf.position(buf.position() + length);
+
+            byte messageType = taskBuf.get();
+            assert(messageType == VoltDbMessageFactory.IV2_INITIATE_TASK_ID);
+            Iv2InitiateTaskMessage task = new Iv2InitiateTaskMessage();
+            task.initFromBuffer(taskBuf);
+            task.m_sourceHSId = m_sourceHSId;
+            m_tasks.add(task);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("IV2 INITIATE_TASK_BATCH OF ").append(m_tasks.size()).append(" TASKS:");
+        for (Iv2InitiateTaskMessage task : m_tasks) {
+            sb.append("\n  ").append(task);
+        }
+        return sb.toString();
+    }
+}
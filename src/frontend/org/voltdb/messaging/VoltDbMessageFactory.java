@@ -51,6 +51,7 @@ public class VoltDbMessageFactory extends VoltMessageFactory
     final public static byte DR2_MULTIPART_RESPONSE_ID = VOLTCORE_MESSAGE_ID_MAX + 25;
     final public static byte DUMMY_TRANSACTION_TASK_ID = VOLTCORE_MESSAGE_ID_MAX + 26;
     final public static byte DUMMY_TRANSACTION_RESPONSE_ID = VOLTCORE_MESSAGE_ID_MAX + 27;
+    final public static byte IV2_INITIATE_TASK_BATCH_ID = VOLTCORE_MESSAGE_ID_MAX + 28;
 
     /**
      * Overridden by subclasses to create message types unknown by voltcore
@@ -145,6 +146,9 @@ public class VoltDbMessageFactory extends VoltMessageFactory
         case DUMMY_TRANSACTION_RESPONSE_ID:
             message = new DummyTransactionResponseMessage();
             break;
+        case IV2_INITIATE_TASK_BATCH_ID:
+            message = new Iv2InitiateTaskBatchMessage();
+            break;
         default:
             message = null;
         }
@@ -71,10 +71,26 @@ public abstract class AbstractParsedStmt {
 
     protected String m_contentDeterminismMessage = null;
 
-     // Internal statement counter
-    public static int NEXT_STMT_ID = 0;
-    // Internal parameter counter
-    public static int NEXT_PARAMETER_ID = 0;
+    // Internal statement and parameter counters, per thread so that
+    // statements can be planned concurrently
+    private static final class IdCounters {
+        int m_nextStmtId = 0;
+        int m_nextParameterId = 0;
+    }
+    private static final ThreadLocal<IdCounters> ID_COUNTERS = new ThreadLocal<IdCounters>() {
+        @Override
+        protected IdCounters initialValue() {
+            return new IdCounters();
+        }
+    };
+
+    public static int nextStmtId() {
+        return ID_COUNTERS.get().m_nextStmtId++;
+    }
+
+    public static int nextParameterId() {
+        return ID_COUNTERS.get().m_nextParameterId++;
+    }
     // The unique id to identify the statement
     public int m_stmtId;
 
@@ -187,7 +203,7 @@ public abstract class AbstractParsedStmt {
             throw new RuntimeException("Unexpected Element: " + stmtTypeElement.name);
         }
         // Set the unique id
-        retval.m_stmtId = NEXT_STMT_ID++;
+        retval.m_stmtId = nextStmtId();
         return retval;
     }
 
@@ -222,8 +238,9 @@ public abstract class AbstractParsedStmt {
             Database db, String joinOrder) {
 
         // reset the statement counters
-        NEXT_STMT_ID = 0;
-        NEXT_PARAMETER_ID = 0;
+        IdCounters counters = ID_COUNTERS.get();
+        counters.m_nextStmtId = 0;
+        counters.m_nextParameterId = 0;
         AbstractParsedStmt retval = getParsedStmt(stmtTypeElement, paramValues, db);
 
         parse(retval, sql, stmtTypeElement, db, joinOrder);
@@ -520,7 +537,7 @@ public abstract class AbstractParsedStmt {
         }
 
         // This is a TVE from the correlated expression
-        int paramIdx = NEXT_PARAMETER_ID++;
+        int paramIdx = nextParameterId();
         ParameterValueExpression pve = new ParameterValueExpression(paramIdx, resolvedExpr);
         m_parameterTveMap.put(paramIdx, resolvedExpr);
         return pve;
@@ -1076,14 +1093,14 @@ public abstract class AbstractParsedStmt {
     protected AbstractExpression replaceExpressionsWithPve(AbstractExpression expr) {
         assert(expr != null);
         if (expr instanceof TupleValueExpression) {
-            int paramIdx = NEXT_PARAMETER_ID++;
+            int paramIdx = nextParameterId();
             ParameterValueExpression pve = new ParameterValueExpression(paramIdx, expr);
             m_parameterTveMap.put(paramIdx, expr);
             return pve;
         }
 
         if (expr instanceof AggregateExpression) {
-            int paramIdx = NEXT_PARAMETER_ID++;
+            int paramIdx = nextParameterId();
             ParameterValueExpression pve = new ParameterValueExpression(paramIdx, expr);
             // Disallow aggregation of parent columns in a subquery.
             // except the case HAVING AGG(T1.C1) IN (SELECT T2.C2 ...)
@@ -1423,8 +1440,9 @@ public abstract class AbstractParsedStmt {
                 m_paramsByIndex.put(index, pve);
             }
         }
-        if (max_parameter_id >= NEXT_PARAMETER_ID) {
-            NEXT_PARAMETER_ID = (int)max_parameter_id + 1;
+        IdCounters counters = ID_COUNTERS.get();
+        if (max_parameter_id >= counters.m_nextParameterId) {
+            counters.m_nextParameterId = (int)max_parameter_id + 1;
         }
     }
 
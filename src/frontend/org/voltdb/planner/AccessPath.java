@@ -38,6 +38,8 @@ public class AccessPath {
     boolean nestLoopIndexJoin = false;
     boolean requiresSendReceive = false;
     boolean keyIterate = false;
+    // The inner side of a hash join, only for paths without an index
+    boolean hashJoin = false;
     IndexLookupType lookupType = IndexLookupType.EQ;
     SortDirectionType sortDirection = SortDirectionType.INVALID;
     // The initial expression is needed to adjust (forward) the start of the reverse
@@ -88,6 +90,7 @@ public class AccessPath {
         retval += "DIR:   " + sortDirection.toString() + "\n";
         retval += "ITER?: " + String.valueOf(keyIterate) + "\n";
         retval += "NLIJ?: " + String.valueOf(nestLoopIndexJoin) + "\n";
+        retval += "HASH?: " + String.valueOf(hashJoin) + "\n";
 
         retval += "IDX EXPRS:\n";
         int i = 0;
@@ -136,6 +136,9 @@ public class PlanAssembler {
     /** Describes the specified and inferred partition context. */
     private StatementPartitioning m_partitioning;
 
+    /** Whether joins may be planned as hash joins. */
+    private final boolean m_hashJoinsEnabled;
+
     /** Error message */
     private String m_recentErrorMsg;
 
@@ -158,12 +161,16 @@ public class PlanAssembler {
      *            Catalog info about schema, metadata and procedures.
      * @param partitioning
      *            Describes the specified and inferred partition context.
+     * @param hashJoinsEnabled
+     *            Whether joins may be planned as hash joins.
      */
-    PlanAssembler(Cluster catalogCluster, Database catalogDb, StatementPartitioning partitioning, PlanSelector planSelector) {
+    PlanAssembler(Cluster catalogCluster, Database catalogDb, StatementPartitioning partitioning,
+                  PlanSelector planSelector, boolean hashJoinsEnabled) {
         m_catalogCluster = catalogCluster;
         m_catalogDb = catalogDb;
         m_partitioning = partitioning;
         m_planSelector = planSelector;
+        m_hashJoinsEnabled = hashJoinsEnabled;
     }
 
     String getSQLText() {
@@ -309,7 +316,8 @@ public class PlanAssembler {
                 // Convert RIGHT joins to the LEFT ones
                 ((BranchNode)m_parsedSelect.m_joinTree).toLeftJoin();
             }
-            m_subAssembler = new SelectSubPlanAssembler(m_catalogDb, m_parsedSelect, m_partitioning);
+            m_subAssembler = new SelectSubPlanAssembler(m_catalogDb, m_parsedSelect, m_partitioning,
+                    m_hashJoinsEnabled);
 
             // Process the GROUP BY information, decide whether it is group by the partition column
             if (isPartitionColumnInGroupbyList(m_parsedSelect.m_groupByColumns)) {
@@ -747,7 +755,7 @@ public class PlanAssembler {
             PlanSelector planSelector = (PlanSelector) m_planSelector.clone();
             planSelector.m_planId = planId;
             PlanAssembler assembler = new PlanAssembler(
-                    m_catalogCluster, m_catalogDb, partitioning, planSelector);
+                    m_catalogCluster, m_catalogDb, partitioning, planSelector, m_hashJoinsEnabled);
             CompiledPlan bestChildPlan = assembler.getBestCostPlan(parsedChildStmt);
             partitioning = assembler.m_partitioning;
 
@@ -864,7 +872,7 @@ public class PlanAssembler {
         planSelector.m_planId = planId;
         StatementPartitioning currentPartitioning = (StatementPartitioning)m_partitioning.clone();
         PlanAssembler assembler = new PlanAssembler(
-                m_catalogCluster, m_catalogDb, currentPartitioning, planSelector);
+                m_catalogCluster, m_catalogDb, currentPartitioning, planSelector, m_hashJoinsEnabled);
         CompiledPlan compiledPlan = assembler.getBestCostPlan(subQuery);
         // make sure we got a winner
         if (compiledPlan == null) {
@@ -1019,6 +1027,9 @@ public class PlanAssembler {
             m_recentErrorMsg = m_subAssembler.m_recentErrorMsg;
             return null;
         }
+        // The sub-query plans stay with the last join plan generated, so attach
+        // them to this one, to see their receive nodes and cost them with it
+        subSelectRoot = connectChildrenBestPlans(subSelectRoot);
 
         AbstractPlanNode root = subSelectRoot;
 
@@ -1052,10 +1063,11 @@ public class PlanAssembler {
 
                         List<AbstractPlanNode> nljs = receiveNode.findAllNodesOfType(PlanNodeType.NESTLOOP);
                         List<AbstractPlanNode> nlijs = receiveNode.findAllNodesOfType(PlanNodeType.NESTLOOPINDEX);
+                        List<AbstractPlanNode> hjs = receiveNode.findAllNodesOfType(PlanNodeType.HASHJOIN);
 
                         // outer join edge case does not have any join plan node under receive node.
                         // This is like a single table case.
-                        if (nljs.size() + nlijs.size() == 0) {
+                        if (nljs.size() + nlijs.size() + hjs.size() == 0) {
                             mvFixInfoEdgeCaseOuterJoin = true;
                         }
                         root = handleMVBasedMultiPartQuery(reAggNode, root, mvFixInfoEdgeCaseOuterJoin);
@@ -2280,7 +2292,8 @@ public class PlanAssembler {
         }
 
         // For join node, find outer sequential scan plan node
-        if (candidate.getPlanNodeType() == PlanNodeType.NESTLOOP) {
+        if (candidate.getPlanNodeType() == PlanNodeType.NESTLOOP ||
+                candidate.getPlanNodeType() == PlanNodeType.HASHJOIN) {
             assert(candidate.getChildCount() == 2);
             return findSeqScanCandidateForGroupBy(candidate.getChild(0));
         }
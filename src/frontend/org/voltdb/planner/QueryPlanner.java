@@ -63,6 +63,7 @@ public class QueryPlanner {
     DeterminismMode m_detMode;
     PlanSelector m_planSelector;
     boolean m_isUpsert;
+    boolean m_hashJoinsEnabled = HASH_JOINS_ENABLED_BY_DEFAULT;
 
     // generated by parse(..)
     VoltXMLElement m_xmlSQL = null;
@@ -78,6 +79,9 @@ public class QueryPlanner {
 
     public static String UPSERT_TAG = "isUpsert";
 
+    /** Whether equi-joins may be planned as hash joins, -DDISABLE_HASH_JOINS=true turns them off. */
+    public static final boolean HASH_JOINS_ENABLED_BY_DEFAULT = ! Boolean.getBoolean("DISABLE_HASH_JOINS");
+
     /**
      * Initialize planner with physical schema info and a reference to HSQLDB parser.
      *
@@ -138,6 +142,14 @@ public class QueryPlanner {
         m_isUpsert = false;
     }
 
+    /**
+     * Let this planner consider hash joins or not, regardless of the default.
+     * Without them, every join is planned as a nest loop or nest loop index join.
+     */
+    public void setHashJoinsEnabled(boolean enabled) {
+        m_hashJoinsEnabled = enabled;
+    }
+
     /**
      * Parse a SQL literal statement into an unplanned, intermediate representation.
      * This is normally followed by a call to
@@ -430,7 +442,7 @@ public class QueryPlanner {
         // Init Assembler. Each plan assembler requires a new instance of the PlanSelector
         // to keep track of the best plan
         PlanAssembler assembler = new PlanAssembler(m_cluster, m_db, m_partitioning,
-                (PlanSelector) m_planSelector.clone());
+                (PlanSelector) m_planSelector.clone(), m_hashJoinsEnabled);
         // find the plan with minimal cost
         CompiledPlan bestPlan = assembler.getBestCostPlan(parsedStmt);
 
@@ -25,8 +25,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.voltdb.VoltType;
 import org.voltdb.catalog.Database;
 import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.expressions.AbstractSubqueryExpression;
 import org.voltdb.expressions.ExpressionUtil;
 import org.voltdb.expressions.TupleValueExpression;
 import org.voltdb.planner.parseinfo.BranchNode;
@@ -38,12 +40,15 @@ import org.voltdb.planner.parseinfo.SubqueryLeafNode;
 import org.voltdb.plannodes.AbstractJoinPlanNode;
 import org.voltdb.plannodes.AbstractPlanNode;
 import org.voltdb.plannodes.AbstractReceivePlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
 import org.voltdb.plannodes.IndexScanPlanNode;
 import org.voltdb.plannodes.IndexUseForOrderBy;
 import org.voltdb.plannodes.MaterializedScanPlanNode;
 import org.voltdb.plannodes.NestLoopIndexPlanNode;
 import org.voltdb.plannodes.NestLoopPlanNode;
+import org.voltdb.types.ExpressionType;
 import org.voltdb.types.JoinType;
+import org.voltdb.types.PlanNodeType;
 import org.voltdb.utils.PermutationGenerator;
 
 /**
@@ -57,6 +62,9 @@ import org.voltdb.utils.PermutationGenerator;
  */
 public class SelectSubPlanAssembler extends SubPlanAssembler {
 
+    /** Whether equi-joins without an inner index may be planned as hash joins. */
+    private final boolean m_hashJoinsEnabled;
+
     /** The list of generated plans. This allows their generation in batches.*/
     ArrayDeque<AbstractPlanNode> m_plans = new ArrayDeque<>();
 
@@ -69,10 +77,13 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
      * @param selectStmt The parsed and dissected statement object describing the sql to execute.
      * @param partitioning in/out param first element is partition key value, forcing a single-partition statement if non-null,
      * second may be an inferred partition key if no explicit single-partitioning was specified
+     * @param hashJoinsEnabled whether joins may be planned as hash joins
      */
-    SelectSubPlanAssembler(Database db, ParsedSelectStmt selectStmt, StatementPartitioning partitioning)
+    SelectSubPlanAssembler(Database db, ParsedSelectStmt selectStmt, StatementPartitioning partitioning,
+                           boolean hashJoinsEnabled)
     {
         super(db, selectStmt, partitioning);
+        m_hashJoinsEnabled = hashJoinsEnabled;
         if (selectStmt.hasJoinOrder()) {
             // If a join order was provided or large number of tables join
             m_joinOrders.addAll(selectStmt.getJoinOrder());
@@ -425,6 +436,7 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
             // The inner node is a join node itself. Only naive access path is possible
             innerChildNode.m_accessPaths.add(
                     getRelevantNaivePath(parentNode.m_joinInnerOuterList, parentNode.m_joinInnerList));
+            addHashJoinAccessPaths(parentNode);
             return;
         }
 
@@ -512,9 +524,43 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
             innerChildNode.m_accessPaths.addAll(innerOuterAccessPaths);
         }
 
+        addHashJoinAccessPaths(parentNode);
         assert(innerChildNode.m_accessPaths.size() > 0);
     }
 
+    /**
+     * For an INNER or LEFT join with an equality between the outer and the inner
+     * sides, add a hash join copy of every inner access path without an index.
+     * The plan selector then costs the hash join against the nest loop join
+     * over the same inner plan.
+     *
+     * @param parentNode A parent node to the inner node to add paths to.
+     */
+    private void addHashJoinAccessPaths(BranchNode parentNode) {
+        if ( ! m_hashJoinsEnabled ||
+                (parentNode.getJoinType() != JoinType.INNER && parentNode.getJoinType() != JoinType.LEFT)) {
+            return;
+        }
+        // Without a hashable equality every hash join plan would be rejected,
+        // and planning it anyway would take the subquery plans away from the others
+        List<AbstractExpression> outerExprs = new ArrayList<>();
+        List<AbstractExpression> innerExprs = new ArrayList<>();
+        collectHashKeys(parentNode, parentNode.m_joinInnerOuterList, outerExprs, innerExprs);
+        if (outerExprs.isEmpty()) {
+            return;
+        }
+        JoinNode innerChildNode = parentNode.getRightNode();
+        List<AccessPath> hashJoinPaths = new ArrayList<>();
+        for (AccessPath path : innerChildNode.m_accessPaths) {
+            if (path.index == null) {
+                AccessPath hashJoinPath = getRelevantNaivePath(path.joinExprs, path.otherExprs);
+                hashJoinPath.hashJoin = true;
+                hashJoinPaths.add(hashJoinPath);
+            }
+        }
+        innerChildNode.m_accessPaths.addAll(hashJoinPaths);
+    }
+
     /**
      * generate all possible plans for the tree.
      *
@@ -722,7 +768,6 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
 
         AbstractJoinPlanNode ajNode = null;
         if (canHaveNLJ) {
-            NestLoopPlanNode nljNode = new NestLoopPlanNode();
             // get all the clauses that join the applicable two tables
             // Copy innerAccessPath.joinExprs to leave it unchanged,
             // avoiding accumulation of redundant expressions when
@@ -763,6 +808,21 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
                 // the inner node ONLY, that can not be pushed down.
                 joinClauses.addAll(innerAccessPath.otherExprs);
             }
+            AbstractJoinPlanNode nljNode = null;
+            if (innerAccessPath.hashJoin) {
+                // The nest loop copy of this access path covers the joins that can't
+                // be hashed, and the special case send/receive inner keeps the NLJ.
+                if (needInnerSendReceive) {
+                    return null;
+                }
+                nljNode = getHashJoinNode(joinNode, joinClauses, outerPlan);
+                if (nljNode == null) {
+                    return null;
+                }
+            }
+            else {
+                nljNode = new NestLoopPlanNode();
+            }
             nljNode.setJoinPredicate(ExpressionUtil.combinePredicates(joinClauses));
 
             // combine the tails plan graph with the new head node
@@ -810,6 +870,109 @@ public class SelectSubPlanAssembler extends SubPlanAssembler {
         return ajNode;
     }
 
+    /**
+     * Build a hash join for an INNER or LEFT join whose clauses include at least
+     * one equality between an expression of the outer tables only and an expression
+     * of the inner tables only. Both sides of each such equality must have the same
+     * type, so equal values hash alike in the EE.
+     *
+     * An INNER join may build its hash table on whichever input turns out smaller
+     * at run time, unless its output has to stay in the order of an outer index.
+     *
+     * @param joinNode A parent join node.
+     * @param joinClauses All the join clauses, they stay on the node as its join predicate.
+     * @param outerPlan The outer node plan-sub-graph.
+     * @return a hash join node with its hash expressions set, or null if the join
+     * can't be hashed.
+     */
+    private static HashJoinPlanNode getHashJoinNode(BranchNode joinNode,
+                                                    List<AbstractExpression> joinClauses,
+                                                    AbstractPlanNode outerPlan) {
+        if (joinNode.getJoinType() != JoinType.INNER && joinNode.getJoinType() != JoinType.LEFT) {
+            return null;
+        }
+        List<AbstractExpression> outerExprs = new ArrayList<>();
+        List<AbstractExpression> innerExprs = new ArrayList<>();
+        collectHashKeys(joinNode, joinClauses, outerExprs, innerExprs);
+        if (outerExprs.isEmpty()) {
+            return null;
+        }
+        HashJoinPlanNode hjNode = new HashJoinPlanNode();
+        hjNode.setHashExpressions(outerExprs, innerExprs);
+        hjNode.setMayBuildOnOuter(joinNode.getJoinType() == JoinType.INNER && ! mayBeOrdered(outerPlan));
+        return hjNode;
+    }
+
+    /**
+     * Split every clause that is an equality between an expression of the outer
+     * tables only and an expression of the inner tables only into its outer and
+     * inner hash keys.
+     *
+     * @param joinNode A parent join node.
+     * @param clauses The clauses to look at.
+     * @param outerExprs Collects the outer hash keys.
+     * @param innerExprs Collects the inner hash keys, pairwise equal to the outer ones.
+     */
+    private static void collectHashKeys(BranchNode joinNode,
+                                        Collection<AbstractExpression> clauses,
+                                        List<AbstractExpression> outerExprs,
+                                        List<AbstractExpression> innerExprs) {
+        Collection<String> outerTables = joinNode.getLeftNode().generateTableJoinOrder();
+        Collection<String> innerTables = joinNode.getRightNode().generateTableJoinOrder();
+        for (AbstractExpression clause : clauses) {
+            if (clause.getExpressionType() != ExpressionType.COMPARE_EQUAL) {
+                continue;
+            }
+            AbstractExpression left = clause.getLeft();
+            AbstractExpression right = clause.getRight();
+            VoltType keyType = left.getValueType();
+            // FLOAT is out because -0.0 = 0.0 yet they hash apart
+            if (keyType == null || keyType != right.getValueType() ||
+                    ! keyType.isUniqueIndexable() || keyType == VoltType.FLOAT) {
+                continue;
+            }
+            if (isHashableFrom(left, outerTables) && isHashableFrom(right, innerTables)) {
+                outerExprs.add(left);
+                innerExprs.add(right);
+            }
+            else if (isHashableFrom(right, outerTables) && isHashableFrom(left, innerTables)) {
+                outerExprs.add(right);
+                innerExprs.add(left);
+            }
+        }
+    }
+
+    /**
+     * @return false if the plan's output order is only that of a sequential scan
+     * of a table, so no ORDER BY, window function or serial aggregate can rely on it.
+     */
+    private static boolean mayBeOrdered(AbstractPlanNode plan) {
+        while (plan instanceof AbstractJoinPlanNode) {
+            plan = plan.getChild(0);
+        }
+        return plan.getPlanNodeType() != PlanNodeType.SEQSCAN || plan.getChildCount() > 0;
+    }
+
+    /**
+     * @return true if the expression has no subqueries and only references
+     * columns of the given tables, at least one of them.
+     */
+    private static boolean isHashableFrom(AbstractExpression expr, Collection<String> tableAliases) {
+        if (expr.hasAnySubexpressionOfClass(AbstractSubqueryExpression.class)) {
+            return false;
+        }
+        List<TupleValueExpression> tves = ExpressionUtil.getTupleValueExpressions(expr);
+        if (tves.isEmpty()) {
+            return false;
+        }
+        for (TupleValueExpression tve : tves) {
+            if ( ! tableAliases.contains(tve.getTableAlias())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * A method to filter out single-TVE expressions.
      *
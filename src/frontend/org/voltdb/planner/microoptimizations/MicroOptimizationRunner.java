@@ -25,22 +25,30 @@ import org.voltdb.planner.CompiledPlan;
 public class MicroOptimizationRunner {
 
     // list all of the micro optimizations here
-    static ArrayList<MicroOptimization> optimizations = new ArrayList<MicroOptimization>();
-    static {
-        // The orders here is important
-        optimizations.add(new PushdownLimits());
-        optimizations.add(new ReplaceWithIndexCounter());
-        optimizations.add(new ReplaceWithIndexLimit());
-
-        // Inline aggregation has to be applied after Index counter and Index Limit with MIN/MAX.
-        optimizations.add(new InlineAggregation());
-
-        // MP ORDER BY Optimization
-        optimizations.add(new InlineOrderByIntoMergeReceive());
-    }
+    // They keep the statement being optimized as state, so each planning
+    // thread gets its own instances
+    private static final ThreadLocal<ArrayList<MicroOptimization>> OPTIMIZATIONS =
+            new ThreadLocal<ArrayList<MicroOptimization>>() {
+        @Override
+        protected ArrayList<MicroOptimization> initialValue() {
+            ArrayList<MicroOptimization> optimizations = new ArrayList<MicroOptimization>();
+            // The orders here is important
+            optimizations.add(new PushdownLimits());
+            optimizations.add(new ReplaceWithIndexCounter());
+            optimizations.add(new ReplaceWithIndexLimit());
+
+            // Inline aggregation has to be applied after Index counter and Index Limit with MIN/MAX.
+            optimizations.add(new InlineAggregation());
+
+            // MP ORDER BY Optimization
+            optimizations.add(new InlineOrderByIntoMergeReceive());
+            return optimizations;
+        }
+    };
 
     public static void applyAll(CompiledPlan plan, AbstractParsedStmt parsedStmt)
     {
+        final ArrayList<MicroOptimization> optimizations = OPTIMIZATIONS.get();
         for (int i = 0; i < optimizations.size(); i++) {
             MicroOptimization opt = optimizations.get(i);
             opt.apply(plan, parsedStmt);
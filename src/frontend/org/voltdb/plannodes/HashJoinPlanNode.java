@@ -0,0 +1,183 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.plannodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.json_voltpatches.JSONStringer;
+import org.voltdb.catalog.Cluster;
+import org.voltdb.catalog.Database;
+import org.voltdb.compiler.DatabaseEstimates;
+import org.voltdb.compiler.ScalarValueHints;
+import org.voltdb.expressions.AbstractExpression;
+import org.voltdb.types.PlanNodeType;
+import org.voltdb.types.SortDirectionType;
+
+/**
+ * An INNER or LEFT equi-join that hashes the inner child's output on the inner
+ * hash expressions, then probes it with the outer hash expressions of each outer
+ * tuple, so each input is read once. The join predicate keeps the equality
+ * conditions the hash expressions came from and is checked for every candidate
+ * pair. Output is in outer child order, like a nested loop join.
+ */
+public class HashJoinPlanNode extends AbstractJoinPlanNode {
+
+    public enum Members {
+        OUTER_HASH_EXPRESSIONS,
+        INNER_HASH_EXPRESSIONS,
+        MAY_BUILD_ON_OUTER;
+    }
+
+    // Pairwise equal, outer ones only reference the outer child, inner ones the inner child
+    protected final List<AbstractExpression> m_outerHashExpressions = new ArrayList<>();
+    protected final List<AbstractExpression> m_innerHashExpressions = new ArrayList<>();
+    // An INNER join whose output order doesn't matter may hash the smaller child instead
+    protected boolean m_mayBuildOnOuter = false;
+
+    public HashJoinPlanNode() {
+        super();
+    }
+
+    @Override
+    public PlanNodeType getPlanNodeType() {
+        return PlanNodeType.HASHJOIN;
+    }
+
+    public void setHashExpressions(List<AbstractExpression> outerExprs, List<AbstractExpression> innerExprs) {
+        assert(outerExprs.size() == innerExprs.size());
+        m_outerHashExpressions.clear();
+        m_innerHashExpressions.clear();
+        for (AbstractExpression expr : outerExprs) {
+            m_outerHashExpressions.add(expr.clone());
+        }
+        for (AbstractExpression expr : innerExprs) {
+            m_innerHashExpressions.add(expr.clone());
+        }
+    }
+
+    public List<AbstractExpression> getOuterHashExpressions() {
+        return m_outerHashExpressions;
+    }
+
+    public List<AbstractExpression> getInnerHashExpressions() {
+        return m_innerHashExpressions;
+    }
+
+    public void setMayBuildOnOuter(boolean mayBuildOnOuter) {
+        m_mayBuildOnOuter = mayBuildOnOuter;
+    }
+
+    public boolean mayBuildOnOuter() {
+        return m_mayBuildOnOuter;
+    }
+
+    @Override
+    public void validate() throws Exception {
+        super.validate();
+
+        if (m_outerHashExpressions.isEmpty() ||
+                m_outerHashExpressions.size() != m_innerHashExpressions.size()) {
+            throw new Exception("ERROR: Mismatched or missing hash expressions for " + this);
+        }
+        for (AbstractExpression expr : m_outerHashExpressions) {
+            expr.validate();
+        }
+        for (AbstractExpression expr : m_innerHashExpressions) {
+            expr.validate();
+        }
+    }
+
+    @Override
+    public void resolveColumnIndexes()
+    {
+        super.resolveColumnIndexes();
+        final NodeSchema outer_schema = m_children.get(0).getOutputSchema();
+        final NodeSchema inner_schema = m_children.get(1).getOutputSchema();
+        resolvePredicate(m_outerHashExpressions, outer_schema, inner_schema);
+        resolvePredicate(m_innerHashExpressions, outer_schema, inner_schema);
+    }
+
+    @Override
+    public void computeCostEstimates(long childOutputTupleCountEstimate,
+                                     Cluster cluster,
+                                     Database db,
+                                     DatabaseEstimates estimates,
+                                     ScalarValueHints[] paramHints)
+    {
+        m_estimatedOutputTupleCount = childOutputTupleCountEstimate;
+        // Each child runs once. Then every tuple of the build side is hashed and
+        // stored, which counts twice, and every tuple of the probe side is hashed
+        // and looked up. A nest loop join wins when either side has a single tuple,
+        // and the larger input goes to the probe side when the order allows it.
+        assert(m_children.size() == 2);
+        AbstractPlanNode outer = m_children.get(0);
+        AbstractPlanNode inner = m_children.get(1);
+        long buildTupleCount = inner.m_estimatedOutputTupleCount;
+        long probeTupleCount = outer.m_estimatedOutputTupleCount;
+        if (m_mayBuildOnOuter && probeTupleCount < buildTupleCount) {
+            buildTupleCount = probeTupleCount;
+            probeTupleCount = inner.m_estimatedOutputTupleCount;
+        }
+        m_estimatedProcessedTupleCount = discountEstimatedProcessedTupleCount(outer) +
+                inner.m_estimatedProcessedTupleCount + 2 * buildTupleCount + probeTupleCount;
+    }
+
+    @Override
+    protected String explainPlanForNode(String indent) {
+        return "HASH " + this.m_joinType.toString() + " JOIN" +
+                (m_sortDirection == SortDirectionType.INVALID ? "" : " (" + m_sortDirection + ")") +
+                explainFilters(indent);
+    }
+
+    @Override
+    public void toJSONString(JSONStringer stringer) throws JSONException {
+        super.toJSONString(stringer);
+        stringer.key(Members.OUTER_HASH_EXPRESSIONS.name()).array(m_outerHashExpressions);
+        stringer.key(Members.INNER_HASH_EXPRESSIONS.name()).array(m_innerHashExpressions);
+        stringer.keySymbolValuePair(Members.MAY_BUILD_ON_OUTER.name(), m_mayBuildOnOuter);
+    }
+
+    @Override
+    public void loadFromJSONObject(JSONObject jobj, Database db)
+            throws JSONException {
+        super.loadFromJSONObject(jobj, db);
+        m_outerHashExpressions.clear();
+        m_innerHashExpressions.clear();
+        AbstractExpression.loadFromJSONArrayChild(m_outerHashExpressions, jobj,
+                Members.OUTER_HASH_EXPRESSIONS.name(), null);
+        AbstractExpression.loadFromJSONArrayChild(m_innerHashExpressions, jobj,
+                Members.INNER_HASH_EXPRESSIONS.name(), null);
+        m_mayBuildOnOuter = jobj.getBoolean(Members.MAY_BUILD_ON_OUTER.name());
+    }
+
+    @Override
+    public void findAllExpressionsOfClass(Class< ? extends AbstractExpression> aeClass, Set<AbstractExpression> collected) {
+        super.findAllExpressionsOfClass(aeClass, collected);
+        for (AbstractExpression expr : m_outerHashExpressions) {
+            collected.addAll(expr.findAllSubexpressionsOfClass(aeClass));
+        }
+        for (AbstractExpression expr : m_innerHashExpressions) {
+            collected.addAll(expr.findAllSubexpressionsOfClass(aeClass));
+        }
+    }
+
+}
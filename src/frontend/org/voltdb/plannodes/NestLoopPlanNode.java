@@ -26,6 +26,9 @@ import org.voltdb.types.SortDirectionType;
 
 public class NestLoopPlanNode extends AbstractJoinPlanNode {
 
+    // Keeps the cost of deeply nested rescans from overflowing the plan's sum of costs
+    private static final long MAX_RESCAN_TUPLE_COUNT = 1L << 50;
+
     public NestLoopPlanNode() {
         super();
     }
@@ -44,10 +47,16 @@ public class NestLoopPlanNode extends AbstractJoinPlanNode {
     {
 
         m_estimatedOutputTupleCount = childOutputTupleCountEstimate;
-        // Discount outer child estimates based on the number of its filters
+        // Discount outer child estimates based on the number of its filters.
+        // The inner child runs once, but its output is rescanned for every
+        // outer tuple, which is what a hash join over the same children avoids.
         assert(m_children.size() == 2);
-        m_estimatedProcessedTupleCount = discountEstimatedProcessedTupleCount(m_children.get(0)) +
-                m_children.get(1).m_estimatedProcessedTupleCount;
+        AbstractPlanNode outer = m_children.get(0);
+        AbstractPlanNode inner = m_children.get(1);
+        double rescanTupleCount = (double) outer.m_estimatedOutputTupleCount * inner.m_estimatedOutputTupleCount;
+        m_estimatedProcessedTupleCount = discountEstimatedProcessedTupleCount(outer) +
+                inner.m_estimatedProcessedTupleCount +
+                (long) Math.min(rescanTupleCount, MAX_RESCAN_TUPLE_COUNT);
     }
 
     @Override
@@ -136,12 +136,15 @@ public class SnapshotRegistry {
             public final String filename;
             public final long size;
             public final Throwable error;
+            // When the table's file was closed, 0 until then
+            public final long timeFinished;
 
             private Table(String name, String filename) {
                 this.name = name;
                 this.filename = filename;
                 size = 0;
                 error = null;
+                timeFinished = 0;
             }
 
             public Table(Table t, long size, Throwable error) {
@@ -149,6 +152,7 @@ public class SnapshotRegistry {
                 this.filename = t.filename;
                 this.size = size;
                 this.error = error;
+                timeFinished = System.currentTimeMillis();
             }
         }
     }
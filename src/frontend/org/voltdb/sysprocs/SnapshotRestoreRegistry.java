@@ -0,0 +1,133 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.sysprocs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The restore registry tracks how far the table save files read on this node
+ * have gotten, per snapshot and table, so a restore can be followed while it runs.
+ */
+public class SnapshotRestoreRegistry {
+    private static final int m_maxStatusHistory = 10;
+
+    // Snapshot txnId to the tables read from it
+    private static final TreeMap<Long, TreeMap<String, Table>> m_restores =
+            new TreeMap<Long, TreeMap<String, Table>>();
+
+    public static class Table {
+        public final long txnId;
+        public final String name;
+        public final long timeStarted;
+
+        private int m_files = 0;
+        private int m_filesFinished = 0;
+        private long m_bytesTotal = 0;
+        private long m_bytesRead = 0;
+        private long m_rows = 0;
+        private long m_timeUpdated;
+
+        private Table(long txnId, String name) {
+            this.txnId = txnId;
+            this.name = name;
+            timeStarted = System.currentTimeMillis();
+            m_timeUpdated = timeStarted;
+        }
+
+        private synchronized void addFile(long bytes) {
+            m_files++;
+            m_bytesTotal += bytes;
+        }
+
+        /**
+         * A chunk of the given size on disk was read, with the given number of rows.
+         * Chunks of partitions that weren't asked for are read but have no rows.
+         */
+        public synchronized void chunkRead(long bytes, long rows) {
+            m_bytesRead += bytes;
+            m_rows += rows;
+            m_timeUpdated = System.currentTimeMillis();
+        }
+
+        public synchronized void fileFinished() {
+            m_filesFinished++;
+            m_timeUpdated = System.currentTimeMillis();
+        }
+
+        public synchronized int getFiles() {
+            return m_files;
+        }
+
+        public synchronized int getFilesFinished() {
+            return m_filesFinished;
+        }
+
+        public synchronized long getBytesTotal() {
+            return m_bytesTotal;
+        }
+
+        public synchronized long getBytesRead() {
+            return m_bytesRead;
+        }
+
+        public synchronized long getRows() {
+            return m_rows;
+        }
+
+        public synchronized long getTimeUpdated() {
+            return m_timeUpdated;
+        }
+    }
+
+    /**
+     * Start reading a save file of the table, returns the table's progress
+     * shared with the other files of the table in the same snapshot.
+     */
+    public static synchronized Table startFile(long txnId, String tableName, long bytes) {
+        TreeMap<String, Table> tables = m_restores.get(txnId);
+        if (tables == null) {
+            tables = new TreeMap<String, Table>();
+            m_restores.put(txnId, tables);
+            if (m_restores.size() > m_maxStatusHistory) {
+                m_restores.remove(m_restores.firstKey());
+            }
+        }
+        Table table = tables.get(tableName);
+        if (table == null) {
+            table = new Table(txnId, tableName);
+            tables.put(tableName, table);
+        }
+        table.addFile(bytes);
+        return table;
+    }
+
+    public static synchronized List<Table> getRestoreHistory() {
+        List<Table> history = new ArrayList<Table>();
+        for (Map<String, Table> tables : m_restores.values()) {
+            history.addAll(tables.values());
+        }
+        return history;
+    }
+
+    public static synchronized void clear() {
+        m_restores.clear();
+    }
+}
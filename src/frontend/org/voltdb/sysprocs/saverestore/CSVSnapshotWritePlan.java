@@ -66,6 +66,19 @@ public class CSVSnapshotWritePlan extends SnapshotWritePlan
 
     static final VoltLogger SNAP_LOG = new VoltLogger("SNAPSHOT");
 
+    protected SnapshotFormat getFormat()
+    {
+        return SnapshotFormat.CSV;
+    }
+
+    /**
+     * The filter that converts the snapshot chunks of the table to the format
+     */
+    protected SnapshotDataFilter createFilter(Table table)
+    {
+        return new CSVSnapshotFilter(CatalogUtil.getVoltTable(table), ',', null);
+    }
+
     @Override
     public Callable<Boolean> createSetup(
             String file_path, String pathType, String file_nonce,
@@ -100,7 +113,7 @@ public class CSVSnapshotWritePlan extends SnapshotWritePlan
                     context.getHostId(),
                     file_path,
                     file_nonce,
-                    SnapshotFormat.CSV,
+                    getFormat(),
                     config.tables);
 
         boolean noTargetsCreated = true;
@@ -124,7 +137,7 @@ public class CSVSnapshotWritePlan extends SnapshotWritePlan
             }
 
             List<SnapshotDataFilter> filters = new ArrayList<SnapshotDataFilter>();
-            filters.add(new CSVSnapshotFilter(CatalogUtil.getVoltTable(table), ',', null));
+            filters.add(createFilter(table));
 
             final SnapshotTableTask task =
                     new SnapshotTableTask(
@@ -215,10 +228,10 @@ public class CSVSnapshotWritePlan extends SnapshotWritePlan
                 table,
                 file_path,
                 file_nonce,
-                SnapshotFormat.CSV,
+                getFormat(),
                 hostId);
 
-        sdt = new SimpleFileSnapshotDataTarget(saveFilePath, !table.getIsreplicated());
+        sdt = new SimpleFileSnapshotDataTarget(saveFilePath, !table.getIsreplicated(), getFormat());
 
         m_targets.add(sdt);
         final Runnable onClose = new TargetStatsClosure(sdt, table.getTypeName(), numTables, snapshotRecord);
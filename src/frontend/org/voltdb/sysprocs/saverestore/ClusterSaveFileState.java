@@ -19,6 +19,7 @@ package org.voltdb.sysprocs.saverestore;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -80,6 +81,35 @@ public class ClusterSaveFileState
         ConsistencyChecker checker = new ConsistencyChecker();
 
         m_tableStateMap = new HashMap<String, TableSaveFileState>();
+        addSaveFileState(saveFileState, null, checker);
+        checkTableStates();
+    }
+
+    /**
+     * The save-file state of an incremental chain, one table per snapshot of the
+     * chain in the order of the nonces, newest first. The rows of a delta snapshot
+     * only list the partitions it wrote, see
+     * {@link SnapshotUtil#retrieveWrittenPartitionIds(java.io.File)}. Each
+     * partition of a partitioned table is restored from the newest snapshot that
+     * wrote it, the replicated tables from the newest snapshot.
+     */
+    public ClusterSaveFileState(List<String> nonces, List<VoltTable> saveFileStates)
+        throws IOException
+    {
+        assert(nonces.size() == saveFileStates.size());
+        ConsistencyChecker checker = new ConsistencyChecker();
+
+        m_tableStateMap = new HashMap<String, TableSaveFileState>();
+        for (int ii = 0; ii < nonces.size(); ii++) {
+            addSaveFileState(saveFileStates.get(ii), nonces.get(ii), checker);
+        }
+        checkTableStates();
+    }
+
+    private void addSaveFileState(VoltTable saveFileState, String nonce,
+                                  ConsistencyChecker checker)
+        throws IOException
+    {
         long txnId = -1;
         while (saveFileState.advanceRow())
         {
@@ -105,8 +135,17 @@ public class ClusterSaveFileState
                 m_tableStateMap.put(table_name, table_state);
             }
             table_state = getTableState(table_name);
-            table_state.addHostData(saveFileState); // throws if inconsistent
+            // throws if inconsistent
+            if (nonce == null) {
+                table_state.addHostData(saveFileState);
+            } else {
+                table_state.addHostData(saveFileState, nonce);
+            }
         }
+    }
+
+    private void checkTableStates() throws IOException
+    {
         for (TableSaveFileState table_state : m_tableStateMap.values())
         {
             if (!table_state.isConsistent())
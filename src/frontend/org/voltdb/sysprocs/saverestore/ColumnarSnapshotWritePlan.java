@@ -0,0 +1,45 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import org.voltdb.ColumnarSnapshotFilter;
+import org.voltdb.SnapshotDataFilter;
+import org.voltdb.SnapshotFormat;
+import org.voltdb.catalog.Table;
+import org.voltdb.utils.CatalogUtil;
+
+/**
+ * Create a snapshot write plan for a columnar snapshot. Like a CSV snapshot
+ * every table is written only once across the cluster, but as compressed
+ * blocks with per column encodings and statistics, which
+ * {@link org.voltdb.utils.ColumnarSnapshotReader} reads back.
+ */
+public class ColumnarSnapshotWritePlan extends CSVSnapshotWritePlan
+{
+    @Override
+    protected SnapshotFormat getFormat()
+    {
+        return SnapshotFormat.COLUMNAR;
+    }
+
+    @Override
+    protected SnapshotDataFilter createFilter(Table table)
+    {
+        return new ColumnarSnapshotFilter(CatalogUtil.getVoltTable(table));
+    }
+}
@@ -119,12 +119,15 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
         final ArrayList<SnapshotTableTask> replicatedSnapshotTasks =
             new ArrayList<SnapshotTableTask>();
         for (final Table table : tableArray) {
+            // Replicated tables are written round-robin by a different site each time,
+            // so only the partitioned tables can be left out of a delta snapshot
             final SnapshotTableTask task =
                     new SnapshotTableTask(
                             table,
                             new SnapshotDataFilter[0],
                             null,
-                            false);
+                            false,
+                            table.getIsreplicated() ? SnapshotIncrementalMode.NONE : config.incremental);
 
             SNAP_LOG.debug("ADDING TASK: " + task);
 
@@ -78,6 +78,20 @@ public class PartitionedTableSaveFileState extends TableSaveFileState
                         (int) row.getLong("ORIGINAL_HOST_ID")));
     }
 
+    @Override
+    void addHostData(VoltTableRow row, String nonce) throws IOException
+    {
+        // Each partition is restored from the newest snapshot of the chain that wrote it
+        int originalPartitionId = (int) row.getLong("PARTITION");
+        String newest = m_partitionNonces.get(originalPartitionId);
+        if (newest == null) {
+            m_partitionNonces.put(originalPartitionId, nonce);
+        } else if (!newest.equals(nonce)) {
+            return;
+        }
+        addHostData(row);
+    }
+
     @Override
     public boolean isConsistent()
     {
@@ -318,12 +332,27 @@ public class PartitionedTableSaveFileState extends TableSaveFileState
         plan_fragment.outputDepId = result_dependency_id;
         plan_fragment.inputDepIds = new int[] {};
         addPlanDependencyId(result_dependency_id);
-        plan_fragment.parameters = ParameterSet.fromArrayNoCopy(
-                getTableName(),
-                originalHostsArray,
-                uncoveredPartitionsAtHost,
-                result_dependency_id,
-                getIsRecoverParam());
+        if (m_partitionNonces.isEmpty()) {
+            plan_fragment.parameters = ParameterSet.fromArrayNoCopy(
+                    getTableName(),
+                    originalHostsArray,
+                    uncoveredPartitionsAtHost,
+                    result_dependency_id,
+                    getIsRecoverParam());
+        } else {
+            // Restoring an incremental chain, the nonce of the save file of each partition
+            String[] partitionNonces = new String[uncoveredPartitionsAtHost.length];
+            for (int ii = 0; ii < uncoveredPartitionsAtHost.length; ii++) {
+                partitionNonces[ii] = m_partitionNonces.get(uncoveredPartitionsAtHost[ii]);
+            }
+            plan_fragment.parameters = ParameterSet.fromArrayNoCopy(
+                    getTableName(),
+                    originalHostsArray,
+                    uncoveredPartitionsAtHost,
+                    result_dependency_id,
+                    getIsRecoverParam(),
+                    partitionNonces);
+        }
         return plan_fragment;
     }
 
@@ -357,6 +386,15 @@ public class PartitionedTableSaveFileState extends TableSaveFileState
         return m_partitionsSeen;
     }
 
+    /**
+     * The nonce of the snapshot of the incremental chain the partition is
+     * restored from, null if the restore isn't of a chain
+     */
+    public String getPartitionNonce(int partitionId)
+    {
+        return m_partitionNonces.get(partitionId);
+    }
+
     /**
      * Set of original PartitionId
      */
@@ -370,4 +408,10 @@ public class PartitionedTableSaveFileState extends TableSaveFileState
     private final Map<Integer, Set<Pair<Integer, Integer>>> m_partitionsAtHost =
         new HashMap<Integer, Set<Pair<Integer, Integer>>>();
     private int m_totalPartitions = 0;
+
+    /**
+     * Map from an original partition id to the nonce of the newest snapshot of
+     * the incremental chain that wrote it, empty if the restore isn't of a chain
+     */
+    private final Map<Integer, String> m_partitionNonces = new HashMap<Integer, String>();
 }
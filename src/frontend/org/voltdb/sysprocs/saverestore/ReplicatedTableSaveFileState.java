@@ -47,6 +47,18 @@ public class ReplicatedTableSaveFileState extends TableSaveFileState
         m_hostsWithThisTable.add((int) row.getLong("CURRENT_HOST_ID"));
     }
 
+    @Override
+    void addHostData(VoltTableRow row, String nonce) throws IOException
+    {
+        // Every snapshot of a chain writes the whole table, the newest one has it
+        if (m_nonce == null) {
+            m_nonce = nonce;
+        }
+        if (m_nonce.equals(nonce)) {
+            addHostData(row);
+        }
+    }
+
     @Override
     public boolean isConsistent()
     {
@@ -238,4 +250,6 @@ public class ReplicatedTableSaveFileState extends TableSaveFileState
 
     private final Set<Integer> m_hostsWithThisTable = new HashSet<Integer>();
     private final Set<Long> m_sitesWithThisTable = new TreeSet<Long>();
+    // Snapshot of the incremental chain the table is restored from, null if none
+    private String m_nonce = null;
 }
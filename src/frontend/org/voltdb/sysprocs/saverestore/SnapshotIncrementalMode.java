@@ -0,0 +1,49 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import org.json_voltpatches.JSONObject;
+
+/**
+ * Where a native snapshot stands in an incremental chain. A BASE snapshot
+ * writes every table and starts the chain. A DELTA snapshot only writes the
+ * partitions of the partitioned tables that changed since the previous
+ * snapshot of the chain, so restoring it takes, for each partition of a
+ * table, the newest snapshot of the chain that has it. Replicated tables are
+ * written whole by every snapshot of the chain.
+ */
+public enum SnapshotIncrementalMode {
+    NONE,
+    BASE,
+    DELTA;
+
+    /**
+     * The mode of a snapshot request, from the "incremental" object of its JSON
+     * blob, NONE if there isn't one.
+     */
+    public static SnapshotIncrementalMode fromJSON(JSONObject jsData) {
+        if (jsData == null) {
+            return NONE;
+        }
+        JSONObject incremental = jsData.optJSONObject(SnapshotUtil.JSON_INCREMENTAL);
+        if (incremental == null) {
+            return NONE;
+        }
+        return valueOf(incremental.optString(SnapshotUtil.JSON_INCREMENTAL_MODE, NONE.name()).toUpperCase());
+    }
+}
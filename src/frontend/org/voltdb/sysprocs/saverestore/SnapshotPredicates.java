@@ -35,6 +35,7 @@ public class SnapshotPredicates {
     public final int m_tableId;
     private final List<Pair<AbstractExpression, Boolean>> m_predicates =
             new ArrayList<Pair<AbstractExpression, Boolean>>();
+    private final List<SnapshotIncrementalMode> m_modes = new ArrayList<SnapshotIncrementalMode>();
 
     public SnapshotPredicates(int tableId)
     {
@@ -42,8 +43,15 @@ public class SnapshotPredicates {
     }
 
     public void addPredicate(AbstractExpression predicate, boolean deleteTuples)
+    {
+        addPredicate(predicate, deleteTuples, SnapshotIncrementalMode.NONE);
+    }
+
+    public void addPredicate(AbstractExpression predicate, boolean deleteTuples,
+                             SnapshotIncrementalMode mode)
     {
         m_predicates.add(Pair.of(predicate, deleteTuples));
+        m_modes.add(mode);
     }
 
     public byte[] toBytes()
@@ -57,6 +65,11 @@ public class SnapshotPredicates {
                 JSONStringer stringer = new JSONStringer();
                 stringer.object();
                 stringer.keySymbolValuePair("triggersDelete", p.getSecond());
+                // The EE skips the partition of a table that hasn't changed since the
+                // previous snapshot of the chain if every target is a delta snapshot.
+                if (m_modes.get(i) != SnapshotIncrementalMode.NONE) {
+                    stringer.keySymbolValuePair("snapshotMode", m_modes.get(i).name());
+                }
                 // If the predicate is null, EE will serialize all rows to the corresponding data
                 // target. It's the same as passing an always-true expression,
                 // but without the overhead of the evaluating the expression. This avoids the
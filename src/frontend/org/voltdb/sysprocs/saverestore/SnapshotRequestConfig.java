@@ -37,6 +37,7 @@ public class SnapshotRequestConfig {
     protected static final VoltLogger SNAP_LOG = new VoltLogger("SNAPSHOT");
 
     public final Table[] tables;
+    public final SnapshotIncrementalMode incremental;
 
     /**
      * @param tables    Tables to snapshot, cannot be null.
@@ -45,11 +46,23 @@ public class SnapshotRequestConfig {
     {
         Preconditions.checkNotNull(tables);
         this.tables = tables.toArray(new Table[0]);
+        incremental = SnapshotIncrementalMode.NONE;
     }
 
     public SnapshotRequestConfig(JSONObject jsData, Database catalogDatabase)
     {
         tables = getTablesToInclude(jsData, catalogDatabase);
+        incremental = getIncrementalMode(jsData);
+    }
+
+    private static SnapshotIncrementalMode getIncrementalMode(JSONObject jsData)
+    {
+        try {
+            return SnapshotIncrementalMode.fromJSON(jsData);
+        } catch (IllegalArgumentException e) {
+            SNAP_LOG.warn("Unable to parse the incremental mode of the snapshot, writing all tables", e);
+            return SnapshotIncrementalMode.NONE;
+        }
     }
 
     private static Table[] getTablesToInclude(JSONObject jsData,
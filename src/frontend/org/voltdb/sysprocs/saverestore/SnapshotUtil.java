@@ -111,6 +111,18 @@ public class SnapshotUtil {
      * milestone used to mark a shutdown save snapshot
      */
     public static final String JSON_TERMINUS = "terminus";
+    /**
+     * Place of the snapshot in an incremental chain, an object with the mode
+     * and the nonces of the previous and the base snapshot of the chain
+     */
+    public static final String JSON_INCREMENTAL = "incremental";
+    public static final String JSON_INCREMENTAL_MODE = "mode";
+    public static final String JSON_INCREMENTAL_PARENT = "parentNonce";
+    public static final String JSON_INCREMENTAL_BASE = "baseNonce";
+    /**
+     * Nonces of the incremental chain a restore applies, newest first
+     */
+    public static final String JSON_INCREMENTAL_CHAIN = "incrementalChain";
 
     public static final ColumnInfo nodeResultsColumns[] =
     new ColumnInfo[] {
@@ -380,6 +392,80 @@ public class SnapshotUtil {
         return digests;
     }
 
+    /**
+     * Whether the digest is the one of a delta snapshot of an incremental chain,
+     * which only has the partitions that changed since the previous snapshot of
+     * the chain and can't be restored on its own.
+     */
+    public static boolean isIncrementalDelta(JSONObject digest) {
+        return SnapshotIncrementalMode.fromJSON(digest) == SnapshotIncrementalMode.DELTA;
+    }
+
+    /**
+     * Resolve the incremental chain that ends with the given snapshot from the
+     * digests in the path. Returns the nonces newest first, the given nonce
+     * first and the base snapshot last, or just the given nonce if it isn't a
+     * delta snapshot. Returns null if a snapshot of the chain is missing.
+     */
+    public static List<String> retrieveIncrementalChain(String path,
+            String nonce, VoltLogger logger) throws Exception {
+        List<String> chain = new ArrayList<String>();
+        Set<String> seen = new HashSet<String>();
+        String current = nonce;
+        while (current != null) {
+            if (!seen.add(current)) {
+                logger.warn("Incremental snapshot chain of " + nonce + " loops back to " + current);
+                return null;
+            }
+            List<JSONObject> digests = retrieveDigests(path, current, logger);
+            if (digests.isEmpty()) {
+                logger.warn("Snapshot " + current + " of the incremental chain of " + nonce +
+                        " is missing from " + path);
+                return null;
+            }
+            chain.add(current);
+            if (!isIncrementalDelta(digests.get(0))) {
+                break;
+            }
+            current = digests.get(0).getJSONObject(JSON_INCREMENTAL).optString(JSON_INCREMENTAL_PARENT, null);
+            if (current == null) {
+                logger.warn("Delta snapshot " + chain.get(chain.size() - 1) +
+                        " of the incremental chain of " + nonce + " has no parent");
+                return null;
+            }
+        }
+        return chain;
+    }
+
+    /**
+     * The partitions a save file has chunks for. A delta snapshot writes no chunk
+     * for the partitions of a table that didn't change since the previous snapshot
+     * of its chain, while a partition it wrote has at least one, even if empty. The
+     * save-file state of a delta only lists these partitions, so that a restore of
+     * the chain takes the others from an older snapshot.
+     */
+    public static Set<Integer> retrieveWrittenPartitionIds(File saveFile) throws IOException {
+        Set<Integer> partitionIds = new HashSet<Integer>();
+        FileInputStream fis = new FileInputStream(saveFile);
+        try {
+            TableSaveFile tableSaveFile = new TableSaveFile(fis, 1, null);
+            try {
+                while (tableSaveFile.hasMoreChunks()) {
+                    BBContainer cont = tableSaveFile.getNextChunk();
+                    if (cont != null) {
+                        partitionIds.add(((TableSaveFile.Container)cont).partitionId);
+                        cont.discard();
+                    }
+                }
+            } finally {
+                tableSaveFile.close();
+            }
+        } finally {
+            fis.close();
+        }
+        return partitionIds;
+    }
+
     /**
      * Read hashinator snapshots into byte buffers.
      * @param path base snapshot path
@@ -1183,6 +1269,8 @@ public class SnapshotUtil {
         String extension = ".vpt";
         if (format == SnapshotFormat.CSV) {
             extension = ".csv";
+        } else if (format == SnapshotFormat.COLUMNAR) {
+            extension = ".vcol";
         }
 
         StringBuilder filename_builder = new StringBuilder(fileNonce);
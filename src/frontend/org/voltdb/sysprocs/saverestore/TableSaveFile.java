@@ -24,11 +24,14 @@ import java.io.IOException;
 import java.nio.BufferOverflowException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayDeque;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.zip.Checksum;
 
@@ -40,10 +43,12 @@ import org.json_voltpatches.JSONObject;
 import org.voltcore.TransactionIdManager;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.Bits;
+import org.voltcore.utils.CoreUtils;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.EELibraryLoader;
 import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.sysprocs.SnapshotRestoreRegistry;
 import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.PosixAdvise;
 
@@ -91,6 +96,50 @@ public class TableSaveFile
     private static final int DEFAULT_CHUNKSIZE =
             org.voltdb.SnapshotSiteProcessor.m_snapshotBufferLength + (1024 * 256);
 
+    /**
+     * Threads shared by every save file being read that check and decompress
+     * their chunks, so the tables and partitions of a restore decompress in parallel
+     */
+    public static final int SNAPSHOT_RESTORE_THREADS =
+            Math.max(1, Integer.getInteger("SNAPSHOT_RESTORE_THREADS",
+                                           Math.max(1, CoreUtils.availableProcessors() / 2)));
+
+    // How much of a save file is mapped at a time
+    private static final long MAPPED_REGION_SIZE =
+            Math.min(Integer.MAX_VALUE, Long.getLong("SNAPSHOT_RESTORE_MAP_BYTES", 64L * 1024 * 1024));
+
+    private static ExecutorService m_decompressionService = null;
+
+    private static synchronized ExecutorService getDecompressionService() {
+        if (m_decompressionService == null) {
+            m_decompressionService = CoreUtils.getListeningExecutorService(
+                    "Snapshot restore decompression", SNAPSHOT_RESTORE_THREADS);
+        }
+        return m_decompressionService;
+    }
+
+    /**
+     * A chunk in file order, done once it is decompressed. A done chunk
+     * without a container was skipped.
+     */
+    private static class PendingChunk {
+        final int m_diskBytes;
+        boolean m_done = false;
+        Container m_chunk = null;
+        int m_rows = 0;
+
+        PendingChunk(int diskBytes) {
+            m_diskBytes = diskBytes;
+        }
+
+        PendingChunk(Container chunk, int rows, int diskBytes) {
+            m_diskBytes = diskBytes;
+            m_done = true;
+            m_chunk = chunk;
+            m_rows = rows;
+        }
+    }
+
     public TableSaveFile(
             FileInputStream fis,
             int readAheadChunks,
@@ -244,6 +293,7 @@ public class TableSaveFile
                 m_tableName = fd.readString();
                 m_isReplicated = fd.readBoolean();
                 m_isCompressed = false;
+                m_compression = CompressionService.Algorithm.SNAPPY;
                 m_checksumType = ChecksumType.CRC32;
                 if (!m_isReplicated) {
                     m_partitionIds = (int[])fd.readArray(int.class);
@@ -289,6 +339,7 @@ public class TableSaveFile
                 m_tableName = obj.getString("tableName");
                 m_isReplicated = obj.getBoolean("isReplicated");
                 m_isCompressed = obj.optBoolean("isCompressed", false);
+                m_compression = CompressionService.Algorithm.valueOf(obj.optString("compression", "SNAPPY"));
                 m_checksumType = ChecksumType.valueOf(obj.optString("checksumType", "CRC32"));
                 if (!m_isReplicated) {
                     JSONArray partitionIds = obj.getJSONArray("partitionIds");
@@ -402,9 +453,15 @@ public class TableSaveFile
         }
 
         synchronized (this) {
-            while (!m_availableChunks.isEmpty()) {
-                m_availableChunks.poll().discard();
+            m_closed = true;
+            while (!m_pendingChunks.isEmpty()) {
+                // Chunks still decompressing are discarded once they are done
+                final PendingChunk pending = m_pendingChunks.poll();
+                if (pending.m_chunk != null) {
+                    pending.m_chunk.discard();
+                }
             }
+            finishProgress();
             notifyAll();
         }
 
@@ -431,21 +488,33 @@ public class TableSaveFile
         if (m_chunkReaderException != null) {
             throw m_chunkReaderException;
         }
-        if (!m_hasMoreChunks) {
-            final Container c = m_availableChunks.poll();
-            return c;
-        }
 
-        if (m_chunkReader == null) {
+        if (m_chunkReader == null && m_hasMoreChunks) {
+            m_progress = SnapshotRestoreRegistry.startFile(m_txnId, m_tableName, m_saveFile.size());
             m_chunkReader = new ChunkReader();
             m_chunkReaderThread = new Thread(m_chunkReader, "ChunkReader");
             m_chunkReaderThread.start();
         }
 
-        Container c = null;
-        while (c == null && (m_hasMoreChunks || !m_availableChunks.isEmpty())) {
-            c = m_availableChunks.poll();
-            if (c == null) {
+        /*
+         * Any number of sites can take chunks at once, they are handed out
+         * in file order as they finish decompressing
+         */
+        while (m_chunkReaderException == null) {
+            final PendingChunk pending = m_pendingChunks.peek();
+            if (pending != null && pending.m_done) {
+                m_pendingChunks.poll();
+                m_chunkReads.release();
+                if (m_progress != null) {
+                    m_progress.chunkRead(pending.m_diskBytes, pending.m_rows);
+                }
+                if (pending.m_chunk != null) {
+                    return pending.m_chunk;
+                }
+            } else if (pending == null && !m_hasMoreChunks) {
+                finishProgress();
+                return null;
+            } else {
                 try {
                     wait();
                 } catch (InterruptedException e) {
@@ -453,14 +522,7 @@ public class TableSaveFile
                 }
             }
         }
-        if (c != null) {
-            m_chunkReads.release();
-        } else {
-            if (m_chunkReaderException != null) {
-                throw m_chunkReaderException;
-            }
-        }
-        return c;
+        throw m_chunkReaderException;
     }
 
     public synchronized boolean hasMoreChunks() throws IOException
@@ -468,7 +530,38 @@ public class TableSaveFile
         if (m_chunkReaderException != null) {
             throw m_chunkReaderException;
         }
-        return m_hasMoreChunks || !m_availableChunks.isEmpty();
+        return m_hasMoreChunks || !m_pendingChunks.isEmpty();
+    }
+
+    private void finishProgress() {
+        if (m_progress != null) {
+            m_progress.fileFinished();
+            m_progress = null;
+        }
+    }
+
+    private synchronized void chunkDecompressed(PendingChunk pending, Container chunk, int rows) {
+        if (m_closed) {
+            if (chunk != null) {
+                chunk.discard();
+            }
+            return;
+        }
+        pending.m_chunk = chunk;
+        pending.m_rows = rows;
+        pending.m_done = true;
+        notifyAll();
+    }
+
+    private synchronized void chunkFailed(PendingChunk pending, IOException e) {
+        if (pending != null) {
+            pending.m_done = true;
+        }
+        if (m_chunkReaderException == null) {
+            m_chunkReaderException = e;
+        }
+        m_hasMoreChunks = false;
+        notifyAll();
     }
 
     private final FileChannel m_saveFile;
@@ -483,13 +576,18 @@ public class TableSaveFile
     private final String m_tableName;
     private final boolean m_isReplicated;
     private final boolean m_isCompressed;
+    // How the chunks are compressed, if they are
+    private final CompressionService.Algorithm m_compression;
     private final int m_partitionIds[];
     private final int m_totalPartitions;
     private final long m_txnId;
     private final long m_timestamp;
     private boolean m_hasMoreChunks = true;
     private ConcurrentLinkedQueue<BBContainer> m_buffers = new ConcurrentLinkedQueue<BBContainer>();
-    private final ArrayDeque<Container> m_availableChunks = new ArrayDeque<Container>();
+    private final ArrayDeque<PendingChunk> m_pendingChunks = new ArrayDeque<PendingChunk>();
+    private boolean m_closed = false;
+    // Progress of the table being restored, shared with its other files
+    private SnapshotRestoreRegistry.Table m_progress = null;
     private final HashSet<Integer> m_relevantPartitionIds;
     private final ChecksumType m_checksumType;
 
@@ -526,79 +624,103 @@ public class TableSaveFile
     private class ChunkReader implements Runnable {
 
         /*
-         * The old method was out of hand. Going to start a new one with a different format
-         * that should be easier to understand and validate.
+         * The region of the file that is mapped, chunks are sliced out of it
+         * without copying and handed to the decompression service
          */
-        private void readChunksV2() {
-            //For reading the compressed input.
-            final BBContainer fileInputBufferC =
-                    DBBPool.allocateDirect(CompressionService.maxCompressedLength(DEFAULT_CHUNKSIZE));
-            final ByteBuffer fileInputBuffer = fileInputBufferC.b();
-            long sinceLastFAdvise = Long.MAX_VALUE;
-            long positionAtLastFAdvise = 0;
-            while (m_hasMoreChunks) {
-                if (sinceLastFAdvise > 1024 * 1024 * 48) {
-                    sinceLastFAdvise = 0;
-                    VoltLogger log = new VoltLogger("SNAPSHOT");
-                    try {
-                        final long position = m_saveFile.position();
-                        long retval = PosixAdvise.fadvise(
-                                m_fd,
-                                position,
-                                position + 1024 * 1024 * 64,
-                                PosixAdvise.POSIX_FADV_WILLNEED);
-                        if (retval != 0) {
-                            log.info("Failed to fadvise in TableSaveFile, this is harmless: " + retval);
-                        }
+        private MappedByteBuffer m_region = null;
+        private long m_regionStart = 0;
+        private long m_previousRegionStart = 0;
+
+        private ByteBuffer mapChunk(long position, int length) throws IOException {
+            if (m_region == null ||
+                    position + length > m_regionStart + m_region.capacity()) {
+                final long regionLength =
+                        Math.min(Math.max(MAPPED_REGION_SIZE, length), m_saveFile.size() - position);
+                adviseRegion(position, regionLength);
+                m_region = m_saveFile.map(FileChannel.MapMode.READ_ONLY, position, regionLength);
+                m_regionStart = position;
+            }
+            final ByteBuffer chunk = m_region.duplicate();
+            chunk.position((int)(position - m_regionStart));
+            chunk.limit(chunk.position() + length);
+            return chunk.slice();
+        }
 
-                        //Get aligned start and end position
-                        final long fadviseStart = positionAtLastFAdvise;
-                        //-1 because we don't want to drop the last page because
-                        //We will be reading it soon
-                        positionAtLastFAdvise = ((position / Bits.pageSize()) - 1) * Bits.pageSize();
-                        final long length = positionAtLastFAdvise - fadviseStart;
-                        if (length > 0) {
-                            retval = PosixAdvise.fadvise(
-                                    m_fd,
-                                    fadviseStart,
-                                    length,
-                                    PosixAdvise.POSIX_FADV_DONTNEED);
-                        }
-                        if (retval != 0) {
-                            log.info("Failed to fadvise in TableSaveFile, this is harmless: " + retval);
-                        }
-                        positionAtLastFAdvise = position;
-                    } catch (Throwable t) {
-                        log.info("Exception attempting fadvise", t);
+        /*
+         * Ask for the next region to be read ahead and drop the one before the last
+         * from the page cache, chunks sliced from the last may still be decompressing.
+         */
+        private void adviseRegion(long position, long length) {
+            VoltLogger log = new VoltLogger("SNAPSHOT");
+            try {
+                long retval = PosixAdvise.fadvise(
+                        m_fd,
+                        position,
+                        length,
+                        PosixAdvise.POSIX_FADV_WILLNEED);
+                if (retval != 0) {
+                    log.info("Failed to fadvise in TableSaveFile, this is harmless: " + retval);
+                }
+                final long dropEnd = (m_regionStart / Bits.pageSize()) * Bits.pageSize();
+                if (dropEnd > m_previousRegionStart) {
+                    retval = PosixAdvise.fadvise(
+                            m_fd,
+                            m_previousRegionStart,
+                            dropEnd - m_previousRegionStart,
+                            PosixAdvise.POSIX_FADV_DONTNEED);
+                    if (retval != 0) {
+                        log.info("Failed to fadvise in TableSaveFile, this is harmless: " + retval);
                     }
+                    m_previousRegionStart = dropEnd;
                 }
+            } catch (Throwable t) {
+                log.info("Exception attempting fadvise", t);
+            }
+        }
 
+        /*
+         * The old method was out of hand. Going to start a new one with a different format
+         * that should be easier to understand and validate.
+         *
+         * Only the chunk headers are read on this thread. The file is mapped a region at
+         * a time and each chunk's compressed data is checked and decompressed on the
+         * decompression service, so the chunks of a file, and of the other files being
+         * restored, are decompressed in parallel. They are still handed out in file order.
+         */
+        private void readChunksV2() {
+            final ExecutorService decompressionService = getDecompressionService();
+            long position;
+            final long fileSize;
+            try {
+                position = m_saveFile.position();
+                fileSize = m_saveFile.size();
+            } catch (IOException e) {
+                chunkFailed(null, e);
+                return;
+            }
+            final byte chunkHeader[] = new byte[16];
+            while (m_hasMoreChunks) {
                 /*
                  * Limit the number of chunk materialized into memory at one time
                  */
                 try {
                     m_chunkReads.acquire();
                 } catch (InterruptedException e) {
-                    fileInputBufferC.discard();
                     return;
                 }
                 boolean expectedAnotherChunk = false;
-                Container c = null;
                 try {
 
                     /*
                      * Get the length of the next chunk, partition id, crc for partition id, and length prefix,
                      * and then the CRC of the compressed payload
                      */
-                    ByteBuffer chunkLengthB = ByteBuffer.allocate(16);
-                    while (chunkLengthB.hasRemaining()) {
-                        final int read = m_saveFile.read(chunkLengthB);
-                        if (read == -1) {
-                            throw new EOFException();
-                        }
-                        sinceLastFAdvise += read;
+                    if (fileSize - position < chunkHeader.length) {
+                        throw new EOFException();
                     }
-                    int nextChunkLength = chunkLengthB.getInt(0);
+                    mapChunk(position, chunkHeader.length).get(chunkHeader);
+                    final ByteBuffer chunkLengthB = ByteBuffer.wrap(chunkHeader);
+                    final int nextChunkLength = chunkLengthB.getInt(0);
                     expectedAnotherChunk = true;
 
                     /*
@@ -612,12 +734,13 @@ public class TableSaveFile
                     final int nextChunkPartitionId = chunkLengthB.getInt(4);
                     final int nextChunkPartitionIdCRC = chunkLengthB.getInt(8);
 
-                    partitionIdCRC.update(chunkLengthB.array(), 0, 8);
+                    partitionIdCRC.update(chunkHeader, 0, 8);
                     int generatedValue = (int)partitionIdCRC.getValue();
                     if (generatedValue != nextChunkPartitionIdCRC) {
-                        chunkLengthB.position(0);
-                        for (int partitionId : m_partitionIds) {
-                            m_corruptedPartitions.add(partitionId);
+                        synchronized (TableSaveFile.this) {
+                            for (int partitionId : m_partitionIds) {
+                                m_corruptedPartitions.add(partitionId);
+                            }
                         }
                         throw new IOException("Chunk partition ID CRC check failed. " +
                                 "This corrupts all partitions in this file");
@@ -636,110 +759,27 @@ public class TableSaveFile
                         throw new IOException("Corrupted TableSaveFile chunk has negative chunk length");
                     }
 
-                    if (nextChunkLength > fileInputBuffer.capacity()) {
+                    if (nextChunkLength > CompressionService.maxCompressedLength(DEFAULT_CHUNKSIZE, m_compression)) {
                         throw new IOException("Corrupted TableSaveFile chunk has unreasonable length " +
                                 "> DEFAULT_CHUNKSIZE bytes");
                     }
 
-                    /*
-                     * Go fetch the compressed data so that the uncompressed size is known
-                     * and use that to set nextChunkLength to be the uncompressed length,
-                     * the code ahead that constructs the volt table is expecting
-                     * the uncompressed size/data since it is producing an uncompressed table
-                     */
-                    fileInputBuffer.clear();
-                    fileInputBuffer.limit(nextChunkLength);
-                    while (fileInputBuffer.hasRemaining()) {
-                        final int read = m_saveFile.read(fileInputBuffer);
-                        if (read == -1) {
-                            throw new EOFException();
-                        }
-                        sinceLastFAdvise += read;
-                    }
-                    fileInputBuffer.flip();
-                    nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
-
-                    /*
-                     * Validate the rest of the chunk. This can fail if the data is corrupted
-                     * or the length value was corrupted.
-                     */
-                    final int calculatedCRC =
-                            DBBPool.getBufferCRC32C(fileInputBuffer, 0, fileInputBuffer.remaining());
-                    if (calculatedCRC != nextChunkCRC) {
-                        m_corruptedPartitions.add(nextChunkPartitionId);
-                        if (m_continueOnCorruptedChunk) {
-                            m_chunkReads.release();
-                            continue;
-                        } else {
-                            throw new IOException("CRC mismatch in saved table chunk");
-                        }
+                    if (fileSize - position - chunkHeader.length < nextChunkLength) {
+                        throw new EOFException();
                     }
+                    final ByteBuffer compressed = mapChunk(position + chunkHeader.length, nextChunkLength);
+                    position += chunkHeader.length + nextChunkLength;
 
-                    /*
-                     * Now allocate space to store the chunk using the VoltTable serialization representation.
-                     * The chunk will contain an integer row count preceding it so it can
-                     * be sucked straight in. There is a little funny business to overwrite the
-                     * partition id that is not part of the serialization format
-                     */
-                    c = getOutputBuffer(nextChunkPartitionId);
-
-                    /*
-                     * If the length value is wrong or not all data made it to disk this read will
-                     * not complete correctly. There could be overflow, underflow etc.
-                     * so use a try finally block to indicate that all partitions are now corrupt.
-                     * The enclosing exception handlers will do the right thing WRT to
-                     * propagating the error and closing the file.
-                     */
-                    boolean completedRead = false;
-                    try {
-                        final ByteBuffer buf = c.b();
-                        /*
-                         * Assemble a VoltTable out of the chunk of tuples.
-                         * Put in the header that was cached in the constructor,
-                         * then copy the tuple data.
-                         */
-                        buf.clear();
-                        buf.limit(nextChunkLength  + m_tableHeader.capacity());
-                        m_tableHeader.position(0);
-                        buf.put(m_tableHeader);
-                        //Doesn't move buffer position, does change the limit
-                        CompressionService.decompressBuffer(fileInputBuffer, buf);
-                        completedRead = true;
-                    } finally {
-                        if (!completedRead) {
-                            for (int partitionId : m_partitionIds) {
-                                m_corruptedPartitions.add(partitionId);
-                            }
-                            if (m_continueOnCorruptedChunk) {
-                                m_chunkReads.release();
-                                continue;
-                            } else {
-                                throw new IOException("Failed decompression of saved table chunk");
-                            }
-                        }
-                    }
-
-                    /*
-                     * Skip irrelevant chunks after CRC is calculated. Always calulate the CRC
-                     * in case it is the length value that is corrupted
-                     */
-                    if (m_relevantPartitionIds != null) {
-                        if (!m_relevantPartitionIds.contains(nextChunkPartitionId)) {
-                            m_chunkReads.release();
-                            continue;
-                        }
-                    }
-
-                    /*
-                     * VoltTable wants the buffer at the home position 0
-                     */
-                    c.b().position(0);
-
+                    final PendingChunk pending = new PendingChunk(chunkHeader.length + nextChunkLength);
                     synchronized (TableSaveFile.this) {
-                        m_availableChunks.offer(c);
-                        c = null;
-                        TableSaveFile.this.notifyAll();
+                        m_pendingChunks.offer(pending);
                     }
+                    decompressionService.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            decompressChunk(pending, compressed, nextChunkPartitionId, nextChunkCRC);
+                        }
+                    });
                 } catch (EOFException eof) {
                     synchronized (TableSaveFile.this) {
                         m_hasMoreChunks = false;
@@ -751,34 +791,133 @@ public class TableSaveFile
                     }
                 } catch (IOException e) {
                     e.printStackTrace();
+                    chunkFailed(null, e);
+                } catch (RejectedExecutionException e) {
+                    chunkFailed(null, new IOException(e));
+                }
+            }
+        }
+
+        /*
+         * Check and decompress a chunk read by readChunksV2(), on the decompression service
+         */
+        private void decompressChunk(PendingChunk pending, ByteBuffer compressed,
+                                     int nextChunkPartitionId, int nextChunkCRC) {
+            Container c = null;
+            try {
+                /*
+                 * The compressed data tells the uncompressed size, use that to size the
+                 * uncompressed table, the code ahead that constructs the volt table is
+                 * expecting the uncompressed size/data since it is producing an uncompressed table
+                 */
+                final int nextChunkLength;
+                if (m_compression == CompressionService.Algorithm.LZ4) {
+                    nextChunkLength = CompressionService.uncompressedLengthLZ4(compressed);
+                } else {
+                    nextChunkLength = CompressionService.uncompressedLength(compressed);
+                }
+
+                /*
+                 * Validate the rest of the chunk. This can fail if the data is corrupted
+                 * or the length value was corrupted.
+                 */
+                final int calculatedCRC =
+                        DBBPool.getBufferCRC32C(compressed, 0, compressed.remaining());
+                if (calculatedCRC != nextChunkCRC) {
                     synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks = false;
-                        m_chunkReaderException = e;
-                        TableSaveFile.this.notifyAll();
-                    }
-                } catch (BufferUnderflowException e) {
-                    synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks = false;
-                        m_chunkReaderException = new IOException(e);
-                        TableSaveFile.this.notifyAll();
+                        m_corruptedPartitions.add(nextChunkPartitionId);
                     }
-                } catch (BufferOverflowException e) {
-                    synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks = false;
-                        m_chunkReaderException = new IOException(e);
-                        TableSaveFile.this.notifyAll();
+                    if (m_continueOnCorruptedChunk) {
+                        chunkDecompressed(pending, null, 0);
+                        return;
+                    } else {
+                        throw new IOException("CRC mismatch in saved table chunk");
                     }
-                } catch (IndexOutOfBoundsException e) {
-                    synchronized (TableSaveFile.this) {
-                        m_hasMoreChunks = false;
-                        m_chunkReaderException = new IOException(e);
-                        TableSaveFile.this.notifyAll();
+                }
+
+                /*
+                 * Now allocate space to store the chunk using the VoltTable serialization representation.
+                 * The chunk will contain an integer row count preceding it so it can
+                 * be sucked straight in. There is a little funny business to overwrite the
+                 * partition id that is not part of the serialization format
+                 */
+                c = getOutputBuffer(nextChunkPartitionId);
+
+                /*
+                 * If the length value is wrong or not all data made it to disk this read will
+                 * not complete correctly. There could be overflow, underflow etc.
+                 * so use a try finally block to indicate that all partitions are now corrupt.
+                 * The enclosing exception handlers will do the right thing WRT to
+                 * propagating the error and closing the file.
+                 */
+                boolean completedRead = false;
+                try {
+                    final ByteBuffer buf = c.b();
+                    /*
+                     * Assemble a VoltTable out of the chunk of tuples.
+                     * Put in the header that was cached in the constructor,
+                     * then copy the tuple data.
+                     */
+                    buf.clear();
+                    buf.limit(nextChunkLength  + m_tableHeader.capacity());
+                    // Shared by the chunks decompressing at the same time
+                    final ByteBuffer tableHeader = m_tableHeader.duplicate();
+                    tableHeader.clear();
+                    buf.put(tableHeader);
+                    //Doesn't move buffer position, does change the limit
+                    if (m_compression == CompressionService.Algorithm.LZ4) {
+                        CompressionService.decompressBufferLZ4(compressed, buf);
+                    } else {
+                        CompressionService.decompressBuffer(compressed, buf);
                     }
+                    completedRead = true;
                 } finally {
-                    if (c != null) c.discard();
+                    if (!completedRead) {
+                        synchronized (TableSaveFile.this) {
+                            for (int partitionId : m_partitionIds) {
+                                m_corruptedPartitions.add(partitionId);
+                            }
+                        }
+                        if (m_continueOnCorruptedChunk) {
+                            c.discard();
+                            c = null;
+                            chunkDecompressed(pending, null, 0);
+                            return;
+                        } else {
+                            throw new IOException("Failed decompression of saved table chunk");
+                        }
+                    }
+                }
+
+                /*
+                 * Skip irrelevant chunks after CRC is calculated. Always calulate the CRC
+                 * in case it is the length value that is corrupted
+                 */
+                if (m_relevantPartitionIds != null) {
+                    if (!m_relevantPartitionIds.contains(nextChunkPartitionId)) {
+                        c.discard();
+                        c = null;
+                        chunkDecompressed(pending, null, 0);
+                        return;
+                    }
                 }
+
+                /*
+                 * VoltTable wants the buffer at the home position 0
+                 */
+                c.b().position(0);
+                final int rowCount = c.b().getInt(m_tableHeader.capacity());
+                chunkDecompressed(pending, c, rowCount);
+                c = null;
+            } catch (IOException e) {
+                e.printStackTrace();
+                chunkFailed(pending, e);
+            } catch (RuntimeException e) {
+                // Overflow, underflow and index out of bounds from a corrupt chunk
+                chunkFailed(pending, new IOException(e));
+            } finally {
+                if (c != null) c.discard();
             }
-            fileInputBufferC.discard();
         }
 
         private void readChunks() {
@@ -799,6 +938,8 @@ public class TableSaveFile
                 Container c = null;
                 try {
 
+                    final long chunkStart = m_saveFile.position();
+
                     /*
                      * Get the length of the next chunk, partition id, crc for partition id,
                      */
@@ -999,8 +1140,9 @@ public class TableSaveFile
                         }
                     }
 
+                    final int diskBytes = (int)(m_saveFile.position() - chunkStart);
                     synchronized (TableSaveFile.this) {
-                        m_availableChunks.offer(c);
+                        m_pendingChunks.offer(new PendingChunk(c, rowCount, diskBytes));
                         c = null;
                         TableSaveFile.this.notifyAll();
                     }
@@ -65,6 +65,12 @@ public abstract class TableSaveFileState
 
     abstract void addHostData(VoltTableRow row) throws IOException;
 
+    /**
+     * Add a row of a snapshot of an incremental chain, the snapshots of the
+     * chain are added newest first.
+     */
+    abstract void addHostData(VoltTableRow row, String nonce) throws IOException;
+
     public abstract boolean isConsistent();
 
     void addPlanDependencyId(int dependencyId)
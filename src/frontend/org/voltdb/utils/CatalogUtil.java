@@ -1122,6 +1122,7 @@ public abstract class CatalogUtil {
             catDeployment.getSystemsettings().add("systemsettings");
 
         syssettings.setTemptablemaxsize(deployment.getSystemsettings().getTemptables().getMaxsize());
+        syssettings.setTemptablespill(deployment.getSystemsettings().getTemptables().isSpill());
         syssettings.setSnapshotpriority(deployment.getSystemsettings().getSnapshot().getPriority());
         syssettings.setElasticduration(deployment.getSystemsettings().getElastic().getDuration());
         syssettings.setElasticthroughput(deployment.getSystemsettings().getElastic().getThroughput());
@@ -1216,10 +1217,10 @@ public abstract class CatalogUtil {
             return processorProperties;
         }
 
-        // Instantiate the Guest Processor
+        // Instantiate the Guest Processor, or the file processor without it
         Class<?> processorClazz = null;
         try {
-            processorClazz = Class.forName(ExportManager.PROCESSOR_CLASS);
+            processorClazz = Class.forName(ExportManager.getProcessorClassName());
         } catch (ClassNotFoundException e) {
             throw new DeploymentCheckException("Export is a PRO version only feature");
         }
@@ -1470,8 +1471,8 @@ public abstract class CatalogUtil {
                 prop.setValue(processorProperties.getProperty(name));
             }
 
-            // on-server export always uses the guest processor
-            catconn.setLoaderclass(ExportManager.PROCESSOR_CLASS);
+            // on-server export always uses the guest processor, or the file processor without it
+            catconn.setLoaderclass(ExportManager.getProcessorClassName());
             catconn.setEnabled(connectorEnabled);
 
             if (!connectorEnabled) {
@@ -1697,10 +1698,6 @@ public abstract class CatalogUtil {
     }
 
     public static void setupCommandLog(PathsType.Commandlog paths, File voltDbRoot) {
-        if (!VoltDB.instance().getConfig().m_isEnterprise) {
-            // dumb defaults if you ask for logging in community version
-            return;
-        }
         File commandlogPath;
         commandlogPath = new File(VoltDB.instance().getCommandLogPath(paths));
         if (!commandlogPath.isAbsolute())
@@ -1720,12 +1717,6 @@ public abstract class CatalogUtil {
     }
 
     public static void setupCommandLogSnapshot(PathsType.Commandlogsnapshot paths, File voltDbRoot) {
-        if (!VoltDB.instance().getConfig().m_isEnterprise) {
-            // dumb defaults if you ask for logging in community version
-            new VoltFile(voltDbRoot, "command_log_snapshot");
-            return;
-        }
-
         File commandlogSnapshotPath;
         commandlogSnapshotPath = new File(VoltDB.instance().getCommandLogSnapshotPath(paths));
         if (!commandlogSnapshotPath.isAbsolute())
@@ -0,0 +1,711 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop_voltpatches.util.PureJavaCrc32;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+import org.voltdb.types.VoltDecimalHelper;
+
+import com.google_voltpatches.common.base.Charsets;
+
+/**
+ * Encodes the rows of a snapshot chunk as a self-describing columnar block and
+ * decodes it back. A columnar snapshot file is a sequence of such blocks,
+ * written in whatever order the sites finish their chunks.
+ *
+ * A block is the magic number, the format version, the length of the body
+ * and a CRC32 of it, then the body compressed with LZ4. The body has the
+ * partition id, the row count and the column count, then per column its
+ * name, type, encoding, null count and null bitmap, its statistics (min and
+ * max of the numeric and timestamp columns) and its encoded values.
+ *
+ * The values of a column are encoded the smallest way that applies to it:
+ * <ul>
+ * <li>PLAIN, every non-null value in its fixed width or length prefixed</li>
+ * <li>DICTIONARY, for strings, varbinary and geo values with few distinct
+ * values: the distinct values, then an index into them per non-null value</li>
+ * <li>RLE, for integers and timestamps: runs of a repeated value</li>
+ * <li>DELTA, for bigints and timestamps: the difference to the previous value</li>
+ * </ul>
+ * Integers in RLE and DELTA are zigzag encoded varints.
+ */
+public class ColumnarSnapshotCodec {
+    public static final int BLOCK_MAGIC = 0x56434F4C; // VCOL
+    public static final byte VERSION = 1;
+    // Magic, version, body length and CRC
+    public static final int BLOCK_HEADER_SIZE = 4 + 1 + 4 + 4;
+
+    public static final byte ENCODING_PLAIN = 0;
+    public static final byte ENCODING_DICTIONARY = 1;
+    public static final byte ENCODING_RLE = 2;
+    public static final byte ENCODING_DELTA = 3;
+
+    private static final String ENCODING_NAMES[] = { "PLAIN", "DICTIONARY", "RLE", "DELTA" };
+
+    /**
+     * How a column of a block is stored and the range of its values
+     */
+    public static class ColumnStats {
+        public final String name;
+        public final VoltType type;
+        public final byte encoding;
+        public final int nullCount;
+        public final int encodedBytes;
+        // Only for the integer, timestamp and float columns with non-null values
+        public final boolean hasRange;
+        public final long minLong;
+        public final long maxLong;
+        public final double minDouble;
+        public final double maxDouble;
+
+        private ColumnStats(String name, VoltType type, byte encoding, int nullCount, int encodedBytes,
+                            boolean hasRange, long minLong, long maxLong, double minDouble, double maxDouble) {
+            this.name = name;
+            this.type = type;
+            this.encoding = encoding;
+            this.nullCount = nullCount;
+            this.encodedBytes = encodedBytes;
+            this.hasRange = hasRange;
+            this.minLong = minLong;
+            this.maxLong = maxLong;
+            this.minDouble = minDouble;
+            this.maxDouble = maxDouble;
+        }
+
+        public String getEncodingName() {
+            return ENCODING_NAMES[encoding];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(name).append(' ').append(type.getName()).append(' ').append(getEncodingName());
+            sb.append(" nulls ").append(nullCount).append(" bytes ").append(encodedBytes);
+            if (hasRange) {
+                if (type == VoltType.FLOAT) {
+                    sb.append(" min ").append(minDouble).append(" max ").append(maxDouble);
+                } else {
+                    sb.append(" min ").append(minLong).append(" max ").append(maxLong);
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * A decoded block. The table is null if only the statistics were decoded.
+     */
+    public static class Block {
+        public final int partitionId;
+        public final int rowCount;
+        public final int compressedBytes;
+        public final int uncompressedBytes;
+        public final List<ColumnStats> columns;
+        public final VoltTable table;
+
+        private Block(int partitionId, int rowCount, int compressedBytes, int uncompressedBytes,
+                      List<ColumnStats> columns, VoltTable table) {
+            this.partitionId = partitionId;
+            this.rowCount = rowCount;
+            this.compressedBytes = compressedBytes;
+            this.uncompressedBytes = uncompressedBytes;
+            this.columns = columns;
+            this.table = table;
+        }
+    }
+
+    /**
+     * Encode all the rows of the table into a block, including the header.
+     * Leaves the table's row position reset.
+     */
+    public static byte[] encode(VoltTable table, int partitionId) throws IOException {
+        final int rowCount = table.getRowCount();
+        final int columnCount = table.getColumnCount();
+
+        ColumnValues columns[] = new ColumnValues[columnCount];
+        for (int ii = 0; ii < columnCount; ii++) {
+            columns[ii] = new ColumnValues(table.getColumnType(ii), rowCount);
+        }
+        table.resetRowPosition();
+        int row = 0;
+        while (table.advanceRow()) {
+            for (int ii = 0; ii < columnCount; ii++) {
+                columns[ii].add(table, ii, row);
+            }
+            row++;
+        }
+        table.resetRowPosition();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(1024, table.getSerializedSize()));
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeInt(partitionId);
+        out.writeInt(rowCount);
+        out.writeShort(columnCount);
+        for (int ii = 0; ii < columnCount; ii++) {
+            byte name[] = table.getColumnName(ii).getBytes(Charsets.UTF_8);
+            out.writeShort(name.length);
+            out.write(name);
+            out.writeByte(table.getColumnType(ii).getValue());
+            columns[ii].write(out);
+        }
+        out.flush();
+
+        final ByteBuffer body = ByteBuffer.wrap(baos.toByteArray());
+        final ByteBuffer compressed = ByteBuffer.allocate(
+                BLOCK_HEADER_SIZE +
+                CompressionService.maxCompressedLength(body.remaining(), CompressionService.Algorithm.LZ4));
+        compressed.position(BLOCK_HEADER_SIZE);
+        final int compressedLength = CompressionService.compressBufferLZ4(body, compressed);
+
+        PureJavaCrc32 crc = new PureJavaCrc32();
+        crc.update(compressed.array(), BLOCK_HEADER_SIZE, compressedLength);
+        compressed.putInt(0, BLOCK_MAGIC);
+        compressed.put(4, VERSION);
+        compressed.putInt(5, compressedLength);
+        compressed.putInt(9, (int)crc.getValue());
+
+        byte block[] = new byte[BLOCK_HEADER_SIZE + compressedLength];
+        System.arraycopy(compressed.array(), 0, block, 0, block.length);
+        return block;
+    }
+
+    /**
+     * The length of the compressed body of the block whose header is at the
+     * buffer's position, checking the magic number and the version.
+     */
+    public static int readBlockLength(ByteBuffer header) throws IOException {
+        final int start = header.position();
+        if (header.getInt(start) != BLOCK_MAGIC) {
+            throw new IOException("Not a columnar snapshot block, bad magic number");
+        }
+        if (header.get(start + 4) != VERSION) {
+            throw new IOException("Unsupported columnar snapshot block version " + header.get(start + 4));
+        }
+        final int length = header.getInt(start + 5);
+        if (length < 4) {
+            throw new IOException("Columnar snapshot block has a bad length " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Decode the block at the buffer's position, which moves past it. Only the
+     * statistics are decoded if materialize is false.
+     */
+    public static Block decode(ByteBuffer buf, boolean materialize) throws IOException {
+        final int length = readBlockLength(buf);
+        final int expectedCrc = buf.getInt(buf.position() + 9);
+        buf.position(buf.position() + BLOCK_HEADER_SIZE);
+        if (buf.remaining() < length) {
+            throw new IOException("Columnar snapshot block is truncated");
+        }
+        ByteBuffer compressed = buf.slice();
+        compressed.limit(length);
+        buf.position(buf.position() + length);
+
+        PureJavaCrc32 crc = new PureJavaCrc32();
+        if (compressed.hasArray()) {
+            crc.update(compressed.array(), compressed.arrayOffset(), length);
+        } else {
+            byte bytes[] = new byte[length];
+            compressed.duplicate().get(bytes);
+            crc.update(bytes, 0, length);
+        }
+        if ((int)crc.getValue() != expectedCrc) {
+            throw new IOException("Columnar snapshot block failed its CRC check");
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(CompressionService.uncompressedLengthLZ4(compressed));
+        CompressionService.decompressBufferLZ4(compressed, body);
+
+        final int partitionId = body.getInt();
+        final int rowCount = body.getInt();
+        final int columnCount = body.getShort();
+        List<ColumnStats> stats = new ArrayList<ColumnStats>(columnCount);
+        Object values[][] = materialize ? new Object[columnCount][] : null;
+        for (int ii = 0; ii < columnCount; ii++) {
+            byte name[] = new byte[body.getShort()];
+            body.get(name);
+            VoltType type = VoltType.get(body.get());
+            stats.add(readColumn(body, new String(name, Charsets.UTF_8), type, rowCount,
+                                 materialize ? (values[ii] = new Object[rowCount]) : null));
+        }
+
+        VoltTable table = null;
+        if (materialize) {
+            ColumnInfo infos[] = new ColumnInfo[columnCount];
+            for (int ii = 0; ii < columnCount; ii++) {
+                infos[ii] = new ColumnInfo(stats.get(ii).name, stats.get(ii).type);
+            }
+            table = new VoltTable(infos);
+            Object row[] = new Object[columnCount];
+            for (int rr = 0; rr < rowCount; rr++) {
+                for (int ii = 0; ii < columnCount; ii++) {
+                    row[ii] = values[ii][rr];
+                }
+                table.addRow(row);
+            }
+        }
+        return new Block(partitionId, rowCount, length, body.limit(), stats, table);
+    }
+
+    private static ColumnStats readColumn(ByteBuffer body, String name, VoltType type,
+                                          int rowCount, Object values[]) throws IOException {
+        final byte encoding = body.get();
+        final int nullCount = body.getInt();
+        byte nulls[] = null;
+        if (nullCount > 0) {
+            nulls = new byte[(rowCount + 7) / 8];
+            body.get(nulls);
+        }
+        final int nonNull = rowCount - nullCount;
+        boolean hasRange = false;
+        long minLong = 0, maxLong = 0;
+        double minDouble = 0, maxDouble = 0;
+        if (nonNull > 0 && isIntegral(type)) {
+            hasRange = true;
+            minLong = body.getLong();
+            maxLong = body.getLong();
+        } else if (nonNull > 0 && type == VoltType.FLOAT) {
+            hasRange = true;
+            minDouble = body.getDouble();
+            maxDouble = body.getDouble();
+        }
+        final int dataLength = body.getInt();
+        ByteBuffer data = body.slice();
+        data.limit(dataLength);
+        body.position(body.position() + dataLength);
+
+        if (values != null) {
+            Object decoded[] = decodeValues(data, type, encoding, nonNull);
+            int next = 0;
+            for (int rr = 0; rr < rowCount; rr++) {
+                if (nulls != null && (nulls[rr >>> 3] & (1 << (rr & 7))) != 0) {
+                    values[rr] = null;
+                } else {
+                    values[rr] = decoded[next++];
+                }
+            }
+        }
+        return new ColumnStats(name, type, encoding, nullCount, dataLength,
+                               hasRange, minLong, maxLong, minDouble, maxDouble);
+    }
+
+    private static Object[] decodeValues(ByteBuffer data, VoltType type, byte encoding, int count)
+            throws IOException {
+        Object values[] = new Object[count];
+        switch (encoding) {
+        case ENCODING_PLAIN:
+            for (int ii = 0; ii < count; ii++) {
+                values[ii] = readPlain(data, type);
+            }
+            break;
+        case ENCODING_DICTIONARY: {
+            Object dictionary[] = new Object[data.getInt()];
+            for (int ii = 0; ii < dictionary.length; ii++) {
+                dictionary[ii] = readPlain(data, type);
+            }
+            final int width = data.get();
+            for (int ii = 0; ii < count; ii++) {
+                final int index = width == 1 ? (data.get() & 0xff) :
+                                  width == 2 ? (data.getShort() & 0xffff) : data.getInt();
+                values[ii] = dictionary[index];
+            }
+            break;
+        }
+        case ENCODING_RLE: {
+            int ii = 0;
+            while (ii < count) {
+                final long run = readVarLong(data);
+                final Object value = integralValue(type, zigzagDecode(readVarLong(data)));
+                for (long jj = 0; jj < run; jj++) {
+                    values[ii++] = value;
+                }
+            }
+            break;
+        }
+        case ENCODING_DELTA: {
+            long value = 0;
+            for (int ii = 0; ii < count; ii++) {
+                value += zigzagDecode(readVarLong(data));
+                values[ii] = integralValue(type, value);
+            }
+            break;
+        }
+        default:
+            throw new IOException("Unknown columnar snapshot encoding " + encoding);
+        }
+        return values;
+    }
+
+    private static Object readPlain(ByteBuffer data, VoltType type) {
+        switch (type) {
+        case TINYINT:
+            return data.get();
+        case SMALLINT:
+            return data.getShort();
+        case INTEGER:
+            return data.getInt();
+        case BIGINT:
+            return data.getLong();
+        case TIMESTAMP:
+            return new TimestampType(data.getLong());
+        case FLOAT:
+            return data.getDouble();
+        case DECIMAL:
+            return VoltDecimalHelper.deserializeBigDecimal(data);
+        default:
+            byte bytes[] = new byte[data.getInt()];
+            data.get(bytes);
+            return bytesValue(type, bytes);
+        }
+    }
+
+    private static Object integralValue(VoltType type, long value) {
+        switch (type) {
+        case TINYINT:
+            return (byte)value;
+        case SMALLINT:
+            return (short)value;
+        case INTEGER:
+            return (int)value;
+        case TIMESTAMP:
+            return new TimestampType(value);
+        default:
+            return value;
+        }
+    }
+
+    private static Object bytesValue(VoltType type, byte bytes[]) {
+        switch (type) {
+        case STRING:
+            return new String(bytes, Charsets.UTF_8);
+        case GEOGRAPHY_POINT:
+            return GeographyPointValue.unflattenFromBuffer(ByteBuffer.wrap(bytes));
+        case GEOGRAPHY:
+            return GeographyValue.unflattenFromBuffer(ByteBuffer.wrap(bytes));
+        default:
+            return bytes;
+        }
+    }
+
+    private static boolean isIntegral(VoltType type) {
+        return type == VoltType.TINYINT || type == VoltType.SMALLINT || type == VoltType.INTEGER ||
+               type == VoltType.BIGINT || type == VoltType.TIMESTAMP;
+    }
+
+    private static long zigzagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long zigzagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int)((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int)value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long)(b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * The values of one column of the block being encoded, the nulls in a
+     * bitmap and the rest compacted.
+     */
+    private static class ColumnValues {
+        private final VoltType m_type;
+        private final int m_rowCount;
+        private byte m_nulls[] = null;
+        private int m_nullCount = 0;
+        private int m_count = 0;
+        private final long m_longs[];
+        private final double m_doubles[];
+        private final Object m_objects[];
+
+        ColumnValues(VoltType type, int rowCount) {
+            m_type = type;
+            m_rowCount = rowCount;
+            m_longs = isIntegral(type) ? new long[rowCount] : null;
+            m_doubles = type == VoltType.FLOAT ? new double[rowCount] : null;
+            m_objects = m_longs == null && m_doubles == null ? new Object[rowCount] : null;
+        }
+
+        void add(VoltTable table, int column, int row) {
+            Object object = null;
+            long longValue = 0;
+            double doubleValue = 0;
+            switch (m_type) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+                longValue = table.getLong(column);
+                break;
+            case TIMESTAMP:
+                longValue = table.getTimestampAsLong(column);
+                break;
+            case FLOAT:
+                doubleValue = table.getDouble(column);
+                break;
+            case DECIMAL:
+                object = table.getDecimalAsBigDecimal(column);
+                break;
+            case STRING:
+                object = table.getStringAsBytes(column);
+                break;
+            case VARBINARY:
+                object = table.getVarbinary(column);
+                break;
+            case GEOGRAPHY_POINT: {
+                GeographyPointValue point = table.getGeographyPointValue(column);
+                if (point != null) {
+                    ByteBuffer buf = ByteBuffer.allocate(GeographyPointValue.getLengthInBytes());
+                    point.flattenToBuffer(buf);
+                    object = buf.array();
+                }
+                break;
+            }
+            case GEOGRAPHY: {
+                GeographyValue geo = table.getGeographyValue(column);
+                if (geo != null) {
+                    ByteBuffer buf = ByteBuffer.allocate(geo.getLengthInBytes());
+                    geo.flattenToBuffer(buf);
+                    object = buf.array();
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported type for a columnar snapshot " + m_type);
+            }
+            if (table.wasNull()) {
+                if (m_nulls == null) {
+                    m_nulls = new byte[(m_rowCount + 7) / 8];
+                }
+                m_nulls[row >>> 3] |= 1 << (row & 7);
+                m_nullCount++;
+                return;
+            }
+            if (m_longs != null) {
+                m_longs[m_count++] = longValue;
+            } else if (m_doubles != null) {
+                m_doubles[m_count++] = doubleValue;
+            } else {
+                m_objects[m_count++] = object;
+            }
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            byte encoding = ENCODING_PLAIN;
+            byte data[];
+            if (m_longs != null) {
+                data = plainLongs();
+                byte rle[] = rleLongs();
+                if (rle.length < data.length) {
+                    encoding = ENCODING_RLE;
+                    data = rle;
+                }
+                if (m_type == VoltType.BIGINT || m_type == VoltType.TIMESTAMP) {
+                    byte delta[] = deltaLongs();
+                    if (delta.length < data.length) {
+                        encoding = ENCODING_DELTA;
+                        data = delta;
+                    }
+                }
+            } else if (m_doubles != null) {
+                ByteBuffer buf = ByteBuffer.allocate(8 * m_count);
+                for (int ii = 0; ii < m_count; ii++) {
+                    buf.putDouble(m_doubles[ii]);
+                }
+                data = buf.array();
+            } else if (m_type == VoltType.DECIMAL) {
+                ByteBuffer buf = ByteBuffer.allocate(16 * m_count);
+                for (int ii = 0; ii < m_count; ii++) {
+                    VoltDecimalHelper.serializeBigDecimal((BigDecimal)m_objects[ii], buf);
+                }
+                data = buf.array();
+            } else {
+                data = dictionaryBytes();
+                if (data != null) {
+                    encoding = ENCODING_DICTIONARY;
+                } else {
+                    data = plainBytes();
+                }
+            }
+
+            out.writeByte(encoding);
+            out.writeInt(m_nullCount);
+            if (m_nullCount > 0) {
+                out.write(m_nulls);
+            }
+            if (m_count > 0 && m_longs != null) {
+                long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+                for (int ii = 0; ii < m_count; ii++) {
+                    min = Math.min(min, m_longs[ii]);
+                    max = Math.max(max, m_longs[ii]);
+                }
+                out.writeLong(min);
+                out.writeLong(max);
+            } else if (m_count > 0 && m_doubles != null) {
+                double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+                for (int ii = 0; ii < m_count; ii++) {
+                    min = Math.min(min, m_doubles[ii]);
+                    max = Math.max(max, m_doubles[ii]);
+                }
+                out.writeDouble(min);
+                out.writeDouble(max);
+            }
+            out.writeInt(data.length);
+            out.write(data);
+        }
+
+        private byte[] plainLongs() {
+            final int width = m_type == VoltType.TIMESTAMP ? 8 : m_type.getLengthInBytesForFixedTypes();
+            ByteBuffer buf = ByteBuffer.allocate(width * m_count);
+            for (int ii = 0; ii < m_count; ii++) {
+                switch (width) {
+                case 1:
+                    buf.put((byte)m_longs[ii]);
+                    break;
+                case 2:
+                    buf.putShort((short)m_longs[ii]);
+                    break;
+                case 4:
+                    buf.putInt((int)m_longs[ii]);
+                    break;
+                default:
+                    buf.putLong(m_longs[ii]);
+                }
+            }
+            return buf.array();
+        }
+
+        private byte[] rleLongs() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int ii = 0;
+            while (ii < m_count) {
+                int jj = ii + 1;
+                while (jj < m_count && m_longs[jj] == m_longs[ii]) {
+                    jj++;
+                }
+                writeVarLong(out, jj - ii);
+                writeVarLong(out, zigzagEncode(m_longs[ii]));
+                ii = jj;
+            }
+            return out.toByteArray();
+        }
+
+        private byte[] deltaLongs() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long previous = 0;
+            for (int ii = 0; ii < m_count; ii++) {
+                writeVarLong(out, zigzagEncode(m_longs[ii] - previous));
+                previous = m_longs[ii];
+            }
+            return out.toByteArray();
+        }
+
+        private byte[] plainBytes() throws IOException {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(baos);
+            for (int ii = 0; ii < m_count; ii++) {
+                byte bytes[] = (byte[])m_objects[ii];
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.flush();
+            return baos.toByteArray();
+        }
+
+        /**
+         * The dictionary encoding, or null if there are too many distinct values
+         * for it to pay off.
+         */
+        private byte[] dictionaryBytes() throws IOException {
+            if (m_count < 2) {
+                return null;
+            }
+            Map<ByteBuffer, Integer> dictionary = new HashMap<ByteBuffer, Integer>();
+            List<byte[]> entries = new ArrayList<byte[]>();
+            int indexes[] = new int[m_count];
+            for (int ii = 0; ii < m_count; ii++) {
+                byte bytes[] = (byte[])m_objects[ii];
+                ByteBuffer key = ByteBuffer.wrap(bytes);
+                Integer index = dictionary.get(key);
+                if (index == null) {
+                    index = entries.size();
+                    if (index >= m_count / 2) {
+                        return null;
+                    }
+                    dictionary.put(key, index);
+                    entries.add(bytes);
+                }
+                indexes[ii] = index;
+            }
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(baos);
+            out.writeInt(entries.size());
+            for (byte entry[] : entries) {
+                out.writeInt(entry.length);
+                out.write(entry);
+            }
+            final int width = entries.size() <= 0x100 ? 1 : entries.size() <= 0x10000 ? 2 : 4;
+            out.writeByte(width);
+            for (int ii = 0; ii < m_count; ii++) {
+                if (width == 1) {
+                    out.writeByte(indexes[ii]);
+                } else if (width == 2) {
+                    out.writeShort(indexes[ii]);
+                } else {
+                    out.writeInt(indexes[ii]);
+                }
+            }
+            out.flush();
+            return baos.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.voltcore.utils.Pair;
+import org.voltdb.utils.ColumnarSnapshotCodec.Block;
+import org.voltdb.utils.ColumnarSnapshotCodec.ColumnStats;
+
+/**
+ * Reads the blocks of a columnar snapshot file (.vcol), for loading it
+ * elsewhere without a running database. From the command line it converts the
+ * file to CSV or TSV, or prints the statistics of every block.
+ */
+public class ColumnarSnapshotReader implements Closeable {
+    private final DataInputStream m_in;
+    private final Set<Integer> m_partitions;
+    private final boolean m_materialize;
+
+    /**
+     * @param partitions    Partitions whose blocks to return, null for all
+     * @param materialize   Whether to decode the rows or only the statistics
+     */
+    public ColumnarSnapshotReader(File file, Set<Integer> partitions, boolean materialize) throws IOException {
+        m_in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        m_partitions = partitions;
+        m_materialize = materialize;
+    }
+
+    /**
+     * Returns the next block of the requested partitions, null at the end of the file
+     */
+    public Block next() throws IOException {
+        while (true) {
+            byte header[] = new byte[ColumnarSnapshotCodec.BLOCK_HEADER_SIZE];
+            try {
+                m_in.readFully(header, 0, 1);
+            } catch (EOFException e) {
+                return null;
+            }
+            m_in.readFully(header, 1, header.length - 1);
+            final int length = ColumnarSnapshotCodec.readBlockLength(ByteBuffer.wrap(header));
+            ByteBuffer block = ByteBuffer.allocate(header.length + length);
+            block.put(header);
+            m_in.readFully(block.array(), header.length, length);
+            block.position(0);
+
+            Block decoded = ColumnarSnapshotCodec.decode(block, m_materialize);
+            if (m_partitions == null || m_partitions.contains(decoded.partitionId)) {
+                return decoded;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        m_in.close();
+    }
+
+    private static void printStats(File infile, Set<Integer> partitions, PrintStream out) throws IOException {
+        ColumnarSnapshotReader reader = new ColumnarSnapshotReader(infile, partitions, false);
+        try {
+            long rows = 0;
+            long compressed = 0;
+            long uncompressed = 0;
+            int blocks = 0;
+            Block block;
+            while ((block = reader.next()) != null) {
+                out.println("Block " + blocks + " partition " + block.partitionId + " rows " + block.rowCount +
+                            " bytes " + block.compressedBytes + " (" + block.uncompressedBytes + " uncompressed)");
+                for (ColumnStats column : block.columns) {
+                    out.println("    " + column);
+                }
+                rows += block.rowCount;
+                compressed += block.compressedBytes;
+                uncompressed += block.uncompressedBytes;
+                blocks++;
+            }
+            out.println(blocks + " blocks " + rows + " rows " + compressed + " bytes (" +
+                        uncompressed + " uncompressed)");
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void convert(File infile, Set<Integer> partitions, char delimiter, File outfile)
+            throws IOException {
+        ColumnarSnapshotReader reader = new ColumnarSnapshotReader(infile, partitions, true);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(outfile));
+        try {
+            int lastNumCharacters = 64 * 1024;
+            Block block;
+            while ((block = reader.next()) != null) {
+                Pair<Integer, byte[]> csv =
+                        VoltTableUtil.toCSV(block.table, delimiter, null, lastNumCharacters);
+                lastNumCharacters = csv.getFirst();
+                out.write(csv.getSecond());
+            }
+        } finally {
+            out.close();
+            reader.close();
+        }
+    }
+
+    public static void main(String args[]) throws Exception {
+        int ii = 0;
+        Set<Integer> partitions = null;
+        if (args.length > 1 && args[0].equals("--partitions")) {
+            partitions = new HashSet<Integer>();
+            for (String partitionString : args[1].split(",")) {
+                partitions.add(Integer.valueOf(partitionString));
+            }
+            ii = 2;
+        }
+        final boolean stats = args.length > ii && args[ii].equals("--stats");
+        if (stats) {
+            ii++;
+        }
+        if (args.length - ii != (stats ? 1 : 2)) {
+            System.err.println("Usage: [--partitions 1,3,4] outfile.[csv | tsv] infile.vcol");
+            System.err.println("       [--partitions 1,3,4] --stats infile.vcol");
+            System.exit(-1);
+        }
+
+        final File infile = new File(args[args.length - 1]);
+        if (!infile.canRead()) {
+            System.err.println("Can't read input file " + infile);
+            System.exit(-1);
+        }
+
+        if (stats) {
+            printStats(infile, partitions, System.out);
+            return;
+        }
+
+        char delimiter = '\0';
+        if (args[ii].endsWith(".tsv")) {
+            delimiter = '\t';
+        } else if (args[ii].endsWith(".csv")) {
+            delimiter = ',';
+        } else {
+            System.err.println("Output filename must end in .csv or .tsv to indicate format");
+            System.exit(-1);
+        }
+        convert(infile, partitions, delimiter, new File(args[ii]));
+    }
+}
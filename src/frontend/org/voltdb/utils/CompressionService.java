@@ -38,8 +38,23 @@ import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
 import com.google_voltpatches.common.util.concurrent.MoreExecutors;
 
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+
 public final class CompressionService {
 
+    /**
+     * The block formats the buffer methods can produce. Snappy blocks are the
+     * default, LZ4 blocks compress and decompress faster for a little more space.
+     */
+    public enum Algorithm {
+        SNAPPY,
+        LZ4
+    }
+
+    private static final LZ4Factory m_lz4 = LZ4Factory.fastestInstance();
+
     static {
         CoreUtils.m_threadLocalDeallocator = new Runnable() {
             @Override
@@ -65,10 +80,29 @@ public final class CompressionService {
         }
     };
 
+    /*
+     * The LZ4 library takes heap arrays, these stage direct buffers through them
+     */
+    private static ThreadLocal<byte[][]> m_lz4Arrays = new ThreadLocal<byte[][]>() {
+        @Override
+        protected byte[][] initialValue() {
+            return new byte[2][0];
+        }
+    };
+
+    private static byte[] getLZ4Array(int index, int length) {
+        byte[][] arrays = m_lz4Arrays.get();
+        if (arrays[index].length < length) {
+            arrays[index] = new byte[length];
+        }
+        return arrays[index];
+    }
+
     public static void releaseThreadLocal() {
         m_buffers.get().input.discard();
         m_buffers.get().output.discard();
         m_buffers.remove();
+        m_lz4Arrays.remove();
     }
 
     /*
@@ -128,6 +162,12 @@ public final class CompressionService {
     }
 
     public static Future<BBContainer> compressAndCRC32cBufferAsync(final ByteBuffer inBuffer, final BBContainer outBufferC) {
+        return compressAndCRC32cBufferAsync(inBuffer, outBufferC, Algorithm.SNAPPY);
+    }
+
+    public static Future<BBContainer> compressAndCRC32cBufferAsync(final ByteBuffer inBuffer,
+                                                                   final BBContainer outBufferC,
+                                                                   final Algorithm algorithm) {
         assert(inBuffer.isDirect());
         assert(outBufferC.b().isDirect());
         return submitCompressionTask(new Callable<BBContainer>() {
@@ -139,7 +179,11 @@ public final class CompressionService {
                 final int crcPosition = outBuffer.position();
                 outBuffer.position(outBuffer.position() + 4);
                 final int crcCalcStart = outBuffer.position();
-                compressBuffer(inBuffer, outBuffer);
+                if (algorithm == Algorithm.LZ4) {
+                    compressBufferLZ4(inBuffer, outBuffer);
+                } else {
+                    compressBuffer(inBuffer, outBuffer);
+                }
                 final int crc32c =
                         DBBPool.getCRC32C( outBufferC.address(), crcCalcStart, outBuffer.limit() - crcCalcStart);
                 outBuffer.putInt(crcPosition, crc32c);
@@ -220,6 +264,80 @@ public final class CompressionService {
         return Snappy.maxCompressedLength(uncompressedSize);
     }
 
+    public static int maxCompressedLength(int uncompressedSize, Algorithm algorithm) {
+        if (algorithm == Algorithm.LZ4) {
+            // Prefixed with the uncompressed length
+            return 4 + m_lz4.fastCompressor().maxCompressedLength(uncompressedSize);
+        }
+        return maxCompressedLength(uncompressedSize);
+    }
+
+    /**
+     * Compress the remaining bytes of the buffer into the output at its position,
+     * as the uncompressed length followed by an LZ4 block. Like the Snappy
+     * version the output's position doesn't move and its limit is set to the
+     * end of the compressed data.
+     */
+    public static int compressBufferLZ4(ByteBuffer buffer, ByteBuffer output) throws IOException {
+        final int length = buffer.remaining();
+        final LZ4Compressor compressor = m_lz4.fastCompressor();
+        final byte input[] = getLZ4Array(0, length);
+        final byte compressed[] = getLZ4Array(1, compressor.maxCompressedLength(length));
+        buffer.duplicate().get(input, 0, length);
+        final int compressedSize;
+        try {
+            compressedSize = compressor.compress(input, 0, length, compressed, 0, compressed.length);
+        } catch (LZ4Exception e) {
+            throw new IOException(e);
+        }
+        if (output.remaining() < 4 + compressedSize) {
+            throw new IOException("Output buffer too small for " + compressedSize + " bytes of LZ4 data");
+        }
+        final int start = output.position();
+        output.putInt(length);
+        output.put(compressed, 0, compressedSize);
+        output.limit(output.position());
+        output.position(start);
+        return 4 + compressedSize;
+    }
+
+    public static int uncompressedLengthLZ4(ByteBuffer compressed) throws IOException {
+        if (compressed.remaining() < 4) {
+            throw new IOException("LZ4 data too short to hold its uncompressed length");
+        }
+        return compressed.getInt(compressed.position());
+    }
+
+    /**
+     * Decompress data produced by compressBufferLZ4() into the output at its
+     * position. The output's position doesn't move and its limit is set to the
+     * end of the decompressed data.
+     */
+    public static int decompressBufferLZ4(final ByteBuffer compressed, final ByteBuffer uncompressed) throws IOException {
+        final int length = uncompressedLengthLZ4(compressed);
+        final int compressedLength = compressed.remaining() - 4;
+        if (length < 0 || length > uncompressed.capacity() - uncompressed.position()) {
+            throw new IOException("LZ4 data has an unreasonable uncompressed length " + length);
+        }
+        final byte input[] = getLZ4Array(0, compressedLength);
+        final byte output[] = getLZ4Array(1, length);
+        ByteBuffer source = compressed.duplicate();
+        source.position(source.position() + 4);
+        source.get(input, 0, compressedLength);
+        final int decompressedSize;
+        try {
+            decompressedSize = m_lz4.safeDecompressor().decompress(input, 0, compressedLength, output, 0, length);
+        } catch (LZ4Exception e) {
+            throw new IOException(e);
+        }
+        if (decompressedSize != length) {
+            throw new IOException("LZ4 data decompressed to " + decompressedSize + " bytes, expected " + length);
+        }
+        uncompressed.limit(uncompressed.position() + length);
+        uncompressed.duplicate().put(output, 0, length);
+        return length;
+    }
+
     public static int uncompressedLength(ByteBuffer compressed) throws IOException {
         assert(compressed.isDirect());
         return Snappy.uncompressedLength(compressed);
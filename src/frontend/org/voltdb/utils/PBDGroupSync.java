@@ -0,0 +1,293 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.voltcore.logging.VoltLogger;
+
+/**
+ * Syncs the deques stored in one directory as a group. Deques tell the group how much
+ * they wrote, and a single thread forces the dirty segments of all of them together
+ * when a deque asks to be synced. A sync requested while a round is being forced waits
+ * for the next round, so many deques syncing at once share a few rounds instead of each
+ * forcing its own segments.
+ *
+ * Writes are only forced on request by default, like a deque that syncs on its own.
+ * Setting PBD_GROUP_SYNC_INTERVAL_MS also forces them in the background that long after
+ * they're written, including writes whose callers chose not to sync them.
+ */
+public class PBDGroupSync {
+    private static final VoltLogger LOG = new VoltLogger("HOST");
+
+    // How long written data waits to be forced when no sync is requested, 0 only syncs on request
+    public static final long SYNC_INTERVAL_MS = Long.getLong("PBD_GROUP_SYNC_INTERVAL_MS", 0);
+
+    // Directory to its group, groups are kept after their deques close for the statistics
+    private static final Map<String, PBDGroupSync> s_groups = new TreeMap<>();
+
+    private final String m_directory;
+    private final Set<PersistentBinaryDeque> m_deques = new HashSet<>();
+    // Bytes written to each deque since it was last forced
+    private Map<PersistentBinaryDeque, Long> m_dirty = new HashMap<>();
+    private final Map<PersistentBinaryDeque, IOException> m_failures = new HashMap<>();
+    private Thread m_thread = null;
+    private boolean m_syncRequested = false;
+    // When the oldest unforced write has waited SYNC_INTERVAL_MS
+    private long m_dueNanos = 0;
+    private long m_roundsStarted = 0;
+    private long m_roundsFinished = 0;
+
+    private long m_forcingRounds = 0;
+    private long m_fsyncs = 0;
+    private long m_bytesSynced = 0;
+    private long m_totalLatencyNanos = 0;
+    private long m_maxLatencyNanos = 0;
+    private long m_lastLatencyNanos = 0;
+
+    private PBDGroupSync(String directory) {
+        m_directory = directory;
+    }
+
+    /**
+     * Add the deque to the group for its directory, starting the group's thread if needed
+     */
+    static PBDGroupSync register(File directory, PersistentBinaryDeque pbd) {
+        final String path = directory.getAbsolutePath();
+        PBDGroupSync group;
+        synchronized (s_groups) {
+            group = s_groups.get(path);
+            if (group == null) {
+                group = new PBDGroupSync(path);
+                s_groups.put(path, group);
+            }
+        }
+        group.add(pbd);
+        return group;
+    }
+
+    public static List<PBDGroupSync> getGroups() {
+        synchronized (s_groups) {
+            return new ArrayList<>(s_groups.values());
+        }
+    }
+
+    private synchronized void add(PersistentBinaryDeque pbd) {
+        m_deques.add(pbd);
+        if (m_thread == null) {
+            m_thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    syncLoop();
+                }
+            }, "PBD group sync " + m_directory);
+            m_thread.setDaemon(true);
+            m_thread.start();
+        }
+    }
+
+    /**
+     * Remove a deque that is closed, what it wrote since the last round is no longer forced.
+     * The thread stops with the last deque.
+     */
+    synchronized void unregister(PersistentBinaryDeque pbd) {
+        m_deques.remove(pbd);
+        m_dirty.remove(pbd);
+        m_failures.remove(pbd);
+        notifyAll();
+    }
+
+    /**
+     * Called after the deque appended the given number of bytes
+     */
+    synchronized void written(PersistentBinaryDeque pbd, long bytes) {
+        if (m_dirty.isEmpty()) {
+            m_dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SYNC_INTERVAL_MS);
+            if (SYNC_INTERVAL_MS > 0) {
+                notifyAll();
+            }
+        }
+        Long dirty = m_dirty.get(pbd);
+        m_dirty.put(pbd, dirty == null ? bytes : dirty + bytes);
+    }
+
+    /**
+     * Block until a round that started after this call has forced the deque.
+     * Throws if the deque is closed before that.
+     */
+    void sync(PersistentBinaryDeque pbd) throws IOException {
+        synchronized (this) {
+            if (!m_deques.contains(pbd)) {
+                throw new IOException("Closed");
+            }
+            final long round = m_roundsStarted + 1;
+            // Segments can also be dirty from creating them or from a push
+            if (!m_dirty.containsKey(pbd)) {
+                m_dirty.put(pbd, 0L);
+            }
+            m_syncRequested = true;
+            notifyAll();
+            try {
+                while (m_roundsFinished < round && m_deques.contains(pbd)) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted waiting for a group sync of " + m_directory);
+            }
+            if (!m_deques.contains(pbd)) {
+                // Unregistered by close while waiting, its last writes may not have been forced
+                throw new IOException("Closed");
+            }
+            final IOException failure = m_failures.remove(pbd);
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Wait until a sync is requested or the oldest write is due, false if the last deque closed
+     */
+    private boolean awaitRound() {
+        while (!m_deques.isEmpty()) {
+            if (m_syncRequested) {
+                return true;
+            }
+            try {
+                if (SYNC_INTERVAL_MS > 0 && !m_dirty.isEmpty()) {
+                    final long waitNanos = m_dueNanos - System.nanoTime();
+                    if (waitNanos <= 0) {
+                        return true;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                } else {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                // Only closing the last deque stops the thread
+            }
+        }
+        return false;
+    }
+
+    private void syncLoop() {
+        while (true) {
+            final Map<PersistentBinaryDeque, Long> dirty;
+            synchronized (this) {
+                if (!awaitRound()) {
+                    m_thread = null;
+                    return;
+                }
+                m_syncRequested = false;
+                m_roundsStarted++;
+                dirty = m_dirty;
+                m_dirty = new HashMap<>();
+            }
+
+            final long start = System.nanoTime();
+            long fsyncs = 0;
+            long bytes = 0;
+            final Map<PersistentBinaryDeque, IOException> failures = new HashMap<>();
+            for (Map.Entry<PersistentBinaryDeque, Long> e : dirty.entrySet()) {
+                final PersistentBinaryDeque pbd = e.getKey();
+                try {
+                    fsyncs += pbd.syncSegments();
+                    bytes += e.getValue();
+                } catch (IOException ex) {
+                    // A deque closed since its write doesn't need the sync
+                    if (!pbd.isClosed()) {
+                        LOG.error("Failed to sync " + pbd + " in " + m_directory, ex);
+                        failures.put(pbd, ex);
+                    }
+                }
+            }
+            final long latency = System.nanoTime() - start;
+
+            synchronized (this) {
+                for (Map.Entry<PersistentBinaryDeque, IOException> e : failures.entrySet()) {
+                    if (m_deques.contains(e.getKey())) {
+                        m_failures.put(e.getKey(), e.getValue());
+                    }
+                }
+                m_roundsFinished = m_roundsStarted;
+                if (fsyncs > 0) {
+                    m_forcingRounds++;
+                    m_fsyncs += fsyncs;
+                    m_bytesSynced += bytes;
+                    m_totalLatencyNanos += latency;
+                    m_maxLatencyNanos = Math.max(m_maxLatencyNanos, latency);
+                    m_lastLatencyNanos = latency;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    public String getDirectory() {
+        return m_directory;
+    }
+
+    public synchronized int getDeques() {
+        return m_deques.size();
+    }
+
+    public synchronized int getDirtyDeques() {
+        return m_dirty.size();
+    }
+
+    public synchronized long getRounds() {
+        return m_roundsFinished;
+    }
+
+    /**
+     * Rounds that forced at least one segment, the latencies only cover these
+     */
+    public synchronized long getForcingRounds() {
+        return m_forcingRounds;
+    }
+
+    public synchronized long getFsyncs() {
+        return m_fsyncs;
+    }
+
+    public synchronized long getBytesSynced() {
+        return m_bytesSynced;
+    }
+
+    public synchronized long getTotalLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(m_totalLatencyNanos);
+    }
+
+    public synchronized long getMaxLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(m_maxLatencyNanos);
+    }
+
+    public synchronized long getLastLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(m_lastLatencyNanos);
+    }
+}
@@ -25,23 +25,36 @@ import org.voltdb.utils.BinaryDeque.OutputContainerFactory;
 
 import com.google_voltpatches.common.base.Preconditions;
 
-import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Objects placed in the deque are stored in file segments that are up to 64 megabytes.
  * Segments only support appending objects. A segment will throw an IOException if an attempt
- * to insert an object that exceeds the remaining space is made. A segment can be used
- * for reading and writing, but not both at the same time.
+ * to insert an object that exceeds the remaining space is made.
+ *
+ * Readers read with positional reads and never move the channel's position, so the
+ * segment being appended to can be read at the same time. A segment that is opened only
+ * for reading is mapped, and its entries that aren't compressed are returned as slices of
+ * the mapping without being copied. The mapping is reference counted, the file is unmapped
+ * once the segment is closed and every entry claimed from it and every slice is released.
  */
 public class PBDRegularSegment extends PBDSegment {
     private static final VoltLogger LOG = new VoltLogger("HOST");
 
+    static final boolean MAP_READ_ONLY_SEGMENTS =
+            Boolean.valueOf(System.getProperty("PBD_MAP_READ_ONLY_SEGMENTS", "true"));
+
+    // Enough of the start of a compressed entry to find its uncompressed length
+    private static final int UNCOMPRESSED_LENGTH_PREFIX_BYTES = 5;
+
     private final Map<String, SegmentReader> m_readCursors = new HashMap<>();
     private final Map<String, SegmentReader> m_closedCursors = new HashMap<>();
 
@@ -52,6 +65,10 @@ public class PBDRegularSegment extends PBDSegment {
     private int m_size = -1;
 
     private DBBPool.BBContainer m_tmpHeaderBuf = null;
+    // Header of the entry being appended, used without the deque's lock
+    private final ByteBuffer m_entryHeaderBuf = ByteBuffer.allocate(OBJECT_HEADER_BYTES + BATCH_HEADER_BYTES);
+    // Mapping of the whole file when it was opened only for reading
+    private SegmentMapping m_mapping = null;
 
     public PBDRegularSegment(Long index, File file) {
         super(file);
@@ -123,6 +140,9 @@ public class PBDRegularSegment extends PBDSegment {
 
         if (m_closed) {
             open(false, false);
+            if (MAP_READ_ONLY_SEGMENTS) {
+                m_mapping = new SegmentMapping(m_fc.map(MapMode.READ_ONLY, 0, m_fc.size()));
+            }
         }
         SegmentReader reader = new SegmentReader(cursorId);
         m_readCursors.put(cursorId, reader);
@@ -180,7 +200,12 @@ public class PBDRegularSegment extends PBDSegment {
 
     private void incrementNumEntries(int size) throws IOException
     {
-        m_numOfEntries++;
+        incrementNumEntries(1, size);
+    }
+
+    private void incrementNumEntries(int count, int size) throws IOException
+    {
+        m_numOfEntries += count;
         m_size += size;
 
         m_tmpHeaderBuf.b().clear();
@@ -222,6 +247,9 @@ public class PBDRegularSegment extends PBDSegment {
     }
 
     private void closeReadersAndFile() throws IOException {
+        for (SegmentReader reader : m_readCursors.values()) {
+            reader.releaseDecompressedBatch();
+        }
         m_readCursors.clear();
         try {
             if (m_ras != null) {
@@ -230,6 +258,10 @@ public class PBDRegularSegment extends PBDSegment {
         } finally {
             m_ras = null;
             m_fc = null;
+            if (m_mapping != null) {
+                m_mapping.release();
+                m_mapping = null;
+            }
             m_closed = true;
             reset();
         }
@@ -237,11 +269,14 @@ public class PBDRegularSegment extends PBDSegment {
 
     @Override
     public void sync() throws IOException {
-        if (m_closed) throw new IOException("Segment closed");
+        // Forced without the deque's lock, the segment can be closed under it
+        final FileChannel fc = m_fc;
+        if (m_closed || fc == null) throw new IOException("Segment closed");
         if (!m_syncedSinceLastEdit) {
-            m_fc.force(true);
+            // Cleared before the force, an append that races with it marks the segment dirty again
+            m_syncedSinceLastEdit = true;
+            fc.force(true);
         }
-        m_syncedSinceLastEdit = true;
     }
 
     @Override
@@ -261,55 +296,70 @@ public class PBDRegularSegment extends PBDSegment {
 
     @Override
     public boolean offer(DBBPool.BBContainer cont, boolean compress) throws IOException
+    {
+        final int written = write(cont, compress);
+        if (written < 0) {
+            return false;
+        }
+        commit(written);
+        return true;
+    }
+
+    @Override
+    public int offer(DeferredSerialization ds) throws IOException
+    {
+        final int written = write(ds);
+        if (written >= 0) {
+            commit(written);
+        }
+        return written;
+    }
+
+    @Override
+    int write(DBBPool.BBContainer cont, boolean compress) throws IOException
     {
         if (m_closed) throw new IOException("Segment closed");
         final ByteBuffer buf = cont.b();
         final int remaining = buf.remaining();
         if (remaining < 32 || !buf.isDirect()) compress = false;
         final int maxCompressedSize = (compress ? CompressionService.maxCompressedLength(remaining) : remaining) + OBJECT_HEADER_BYTES;
-        if (remaining() < maxCompressedSize) return false;
+        if (remaining() < maxCompressedSize) return -1;
 
         m_syncedSinceLastEdit = false;
         DBBPool.BBContainer destBuf = cont;
 
         try {
-            m_tmpHeaderBuf.b().clear();
+            m_entryHeaderBuf.clear();
 
             if (compress) {
                 destBuf = DBBPool.allocateDirectAndPool(maxCompressedSize);
                 final int compressedSize = CompressionService.compressBuffer(buf, destBuf.b());
                 destBuf.b().limit(compressedSize);
 
-                m_tmpHeaderBuf.b().putInt(compressedSize);
-                m_tmpHeaderBuf.b().putInt(FLAG_COMPRESSED);
+                m_entryHeaderBuf.putInt(compressedSize);
+                m_entryHeaderBuf.putInt(FLAG_COMPRESSED);
             } else {
                 destBuf = cont;
-                m_tmpHeaderBuf.b().putInt(remaining);
-                m_tmpHeaderBuf.b().putInt(NO_FLAGS);
-            }
-
-            m_tmpHeaderBuf.b().flip();
-            while (m_tmpHeaderBuf.b().hasRemaining()) {
-                m_fc.write(m_tmpHeaderBuf.b());
+                m_entryHeaderBuf.putInt(remaining);
+                m_entryHeaderBuf.putInt(NO_FLAGS);
             }
 
+            m_entryHeaderBuf.flip();
+            final ByteBuffer[] entry = { m_entryHeaderBuf, destBuf.b() };
             while (destBuf.b().hasRemaining()) {
-                m_fc.write(destBuf.b());
+                m_fc.write(entry);
             }
-
-            incrementNumEntries(remaining);
+            return remaining;
         } finally {
             destBuf.discard();
             if (compress) {
                 cont.discard();
             }
         }
-
-        return true;
     }
 
     @Override
-    public int offer(DeferredSerialization ds) throws IOException
+    int write(DeferredSerialization ds) throws IOException
     {
         if (m_closed) throw new IOException("closed");
         final int fullSize = ds.getSerializedSize() + OBJECT_HEADER_BYTES;
@@ -325,14 +375,47 @@ public class PBDRegularSegment extends PBDSegment {
             while (destBuf.b().hasRemaining()) {
                 m_fc.write(destBuf.b());
             }
-
-            incrementNumEntries(written);
             return written;
         } finally {
             destBuf.discard();
         }
     }
 
+    @Override
+    int writeBatch(ByteBuffer compressed, int entries, int uncompressedSize) throws IOException
+    {
+        if (m_closed) throw new IOException("Segment closed");
+        final int length = BATCH_HEADER_BYTES + compressed.remaining();
+        if (remaining() < OBJECT_HEADER_BYTES + length) return -1;
+
+        m_syncedSinceLastEdit = false;
+        m_entryHeaderBuf.clear();
+        m_entryHeaderBuf.putInt(length);
+        m_entryHeaderBuf.putInt(FLAG_LZ4_BATCH);
+        m_entryHeaderBuf.putInt(entries);
+        m_entryHeaderBuf.putInt(uncompressedSize);
+        m_entryHeaderBuf.flip();
+        final ByteBuffer[] entry = { m_entryHeaderBuf, compressed };
+        while (compressed.hasRemaining()) {
+            m_fc.write(entry);
+        }
+        return uncompressedSize;
+    }
+
+    @Override
+    void commit(int uncompressedSize) throws IOException
+    {
+        if (m_closed) throw new IOException("Segment closed");
+        incrementNumEntries(uncompressedSize);
+    }
+
+    @Override
+    void commitBatch(int entries, int uncompressedSize) throws IOException
+    {
+        if (m_closed) throw new IOException("Segment closed");
+        incrementNumEntries(entries, uncompressedSize);
+    }
+
     @Override
     public int size() {
         return m_size;
@@ -364,6 +447,15 @@ public class PBDRegularSegment extends PBDSegment {
         private int m_bytesRead = 0;
         private int m_discardCount = 0;
         private boolean m_closed = false;
+        // Entry header and uncompressed length prefix or batch header, when the segment isn't mapped
+        private ByteBuffer m_claimBuf = null;
+        // The LZ4 batch being claimed from, the entries left to claim and the next one's index
+        private ClaimedEntry m_batch = null;
+        private int m_batchClaimsLeft = 0;
+        private int m_batchNextClaim = 0;
+        private boolean m_lastClaimedFromBatch = false;
+        // The batch being read from, decompressed, only used by the thread polling the cursor
+        private DecompressedBatch m_decompressedBatch = null;
 
         public SegmentReader(String cursorId) {
             assert(cursorId != null);
@@ -389,91 +481,217 @@ public class PBDRegularSegment extends PBDSegment {
 
         @Override
         public BBContainer poll(OutputContainerFactory factory) throws IOException {
+            final ClaimedEntry entry = claim();
+            return entry == null ? null : read(entry, factory);
+        }
+
+        @Override
+        public ClaimedEntry claim() throws IOException {
             if (m_closed) throw new IOException("Reader closed");
 
             if (!hasMoreEntries()) {
                 return null;
             }
+            if (m_batchClaimsLeft > 0) {
+                return claimFromBatch();
+            }
 
-            final long writePos = m_fc.position();
-            m_fc.position(m_readOffset);
+            //Get the length and size prefix, and the uncompressed length if compressed
+            final ByteBuffer header;
+            if (m_mapping != null) {
+                header = m_mapping.duplicate();
+                header.position((int) m_readOffset);
+            } else {
+                if (m_claimBuf == null) {
+                    m_claimBuf = ByteBuffer.allocateDirect(OBJECT_HEADER_BYTES +
+                            Math.max(UNCOMPRESSED_LENGTH_PREFIX_BYTES, BATCH_HEADER_BYTES));
+                }
+                header = m_claimBuf;
+                header.clear().limit(OBJECT_HEADER_BYTES);
+                PBDUtils.readBufferFully(m_fc, header, (int) m_readOffset);
+            }
+            final int length = header.getInt();
+            final int flags = header.getInt();
 
-            try {
-                //Get the length and size prefix and then read the object
-                m_tmpHeaderBuf.b().clear();
-                while (m_tmpHeaderBuf.b().hasRemaining()) {
-                    int read = m_fc.read(m_tmpHeaderBuf.b());
-                    if (read == -1) {
-                        throw new EOFException();
-                    }
+            if (length < 1) {
+                throw new IOException("Read an invalid length");
+            }
+
+            if ((flags & FLAG_LZ4_BATCH) != 0) {
+                if (m_mapping == null) {
+                    header.clear().limit(BATCH_HEADER_BYTES);
+                    PBDUtils.readBufferFully(m_fc, header, (int) m_readOffset + OBJECT_HEADER_BYTES);
                 }
-                m_tmpHeaderBuf.b().flip();
-                final int length = m_tmpHeaderBuf.b().getInt();
-                final int flags = m_tmpHeaderBuf.b().getInt();
-                final boolean compressed = (flags & FLAG_COMPRESSED) != 0;
-                final int uncompressedLen;
-
-                if (length < 1) {
-                    throw new IOException("Read an invalid length");
+                final int entries = header.getInt();
+                final int uncompressedSize = header.getInt();
+                if (entries < 1) {
+                    throw new IOException("Read an invalid batch size");
                 }
+                m_batch = new ClaimedEntry(m_readOffset + OBJECT_HEADER_BYTES + BATCH_HEADER_BYTES,
+                        length - BATCH_HEADER_BYTES, flags, uncompressedSize, m_fc, m_mapping, 0, entries);
+                m_batchClaimsLeft = entries;
+                m_batchNextClaim = 0;
+                m_readOffset += OBJECT_HEADER_BYTES + length;
+                m_bytesRead += uncompressedSize;
+                return claimFromBatch();
+            }
 
-                final DBBPool.BBContainer retcont;
-                if (compressed) {
-                    final DBBPool.BBContainer compressedBuf = DBBPool.allocateDirectAndPool(length);
-                    try {
-                        while (compressedBuf.b().hasRemaining()) {
-                            int read = m_fc.read(compressedBuf.b());
-                            if (read == -1) {
-                                throw new EOFException();
-                            }
-                        }
-                        compressedBuf.b().flip();
-
-                        uncompressedLen = CompressionService.uncompressedLength(compressedBuf.bDR());
-                        retcont = factory.getContainer(uncompressedLen);
-                        retcont.b().limit(uncompressedLen);
-                        CompressionService.decompressBuffer(compressedBuf.bDR(), retcont.b());
-                    } finally {
-                        compressedBuf.discard();
-                    }
+            int uncompressedLen = length;
+            if ((flags & FLAG_COMPRESSED) != 0) {
+                final int prefixLen = Math.min(length, UNCOMPRESSED_LENGTH_PREFIX_BYTES);
+                final ByteBuffer prefix;
+                if (m_mapping != null) {
+                    prefix = header.slice();
+                    prefix.limit(prefixLen);
                 } else {
-                    uncompressedLen = length;
-                    retcont = factory.getContainer(length);
-                    retcont.b().limit(length);
-                    while (retcont.b().hasRemaining()) {
-                        int read = m_fc.read(retcont.b());
-                        if (read == -1) {
-                            throw new EOFException();
-                        }
-                    }
-                    retcont.b().flip();
+                    prefix = header.duplicate();
+                    prefix.clear().limit(prefixLen);
+                    PBDUtils.readBufferFully(m_fc, prefix, (int) m_readOffset + OBJECT_HEADER_BYTES);
                 }
+                uncompressedLen = CompressionService.uncompressedLength(prefix);
+            }
 
-                m_bytesRead += uncompressedLen;
-                m_objectReadIndex++;
+            final ClaimedEntry entry = new ClaimedEntry(m_readOffset + OBJECT_HEADER_BYTES, length, flags,
+                    uncompressedLen, m_fc, retainMapping(m_mapping));
+            m_readOffset += OBJECT_HEADER_BYTES + length;
+            m_bytesRead += uncompressedLen;
+            m_objectReadIndex++;
+            m_lastClaimedFromBatch = false;
+            return entry;
+        }
 
-                return new DBBPool.BBContainer(retcont.b()) {
-                    private boolean m_discarded = false;
+        private SegmentMapping retainMapping(SegmentMapping mapping) {
+            return mapping == null ? null : mapping.retain();
+        }
 
-                    @Override
-                    public void discard() {
-                        checkDoubleFree();
-                        if (m_discarded) {
-                            LOG.error("PBD Container discarded more than once");
-                            return;
-                        }
+        private ClaimedEntry claimFromBatch() {
+            final ClaimedEntry entry = new ClaimedEntry(m_batch.m_offset, m_batch.m_length, m_batch.m_flags,
+                    m_batch.m_uncompressedLength, m_batch.m_channel, retainMapping(m_batch.m_mapping),
+                    m_batchNextClaim++, m_batch.m_batchEntries);
+            if (--m_batchClaimsLeft == 0) {
+                m_batch = null;
+            }
+            m_objectReadIndex++;
+            m_lastClaimedFromBatch = true;
+            return entry;
+        }
 
-                        m_discarded = true;
-                        retcont.discard();
-                        m_discardCount++;
+        @Override
+        public boolean lastClaimedFromBatch() {
+            return m_lastClaimedFromBatch;
+        }
+
+        private BBContainer readFromBatch(ClaimedEntry entry) throws IOException {
+            if (m_decompressedBatch == null || m_decompressedBatch.m_offset != entry.m_offset) {
+                releaseDecompressedBatch();
+                DBBPool.BBContainer compressedCont = null;
+                final ByteBuffer compressed;
+                if (entry.m_mapping != null) {
+                    final ByteBuffer mapped = entry.m_mapping.duplicate();
+                    mapped.limit((int) entry.m_offset + entry.m_length).position((int) entry.m_offset);
+                    compressed = mapped.slice();
+                } else {
+                    compressedCont = DBBPool.allocateDirectAndPool(entry.m_length);
+                    compressed = compressedCont.b();
+                    compressed.limit(entry.m_length);
+                    PBDUtils.readBufferFully(entry.m_channel, compressed, (int) entry.m_offset);
+                }
+                try {
+                    final int length = CompressionService.uncompressedLengthLZ4(compressed);
+                    final DBBPool.BBContainer decompressed = DBBPool.allocateDirect(length);
+                    CompressionService.decompressBufferLZ4(compressed, decompressed.b());
+                    m_decompressedBatch = new DecompressedBatch(entry.m_offset, entry.m_batchEntries, decompressed);
+                } finally {
+                    if (compressedCont != null) {
+                        compressedCont.discard();
                     }
-                };
+                }
+            }
+            final BBContainer retcont = m_decompressedBatch.next(entry.m_batchIndex);
+            if (entry.m_batchIndex == entry.m_batchEntries - 1) {
+                releaseDecompressedBatch();
+            }
+            return retcont;
+        }
+
+        private void releaseDecompressedBatch() {
+            if (m_decompressedBatch != null) {
+                m_decompressedBatch.release();
+                m_decompressedBatch = null;
+            }
+        }
+
+        @Override
+        public BBContainer read(ClaimedEntry entry, OutputContainerFactory factory) throws IOException {
+            try {
+                return readClaimed(entry, factory);
             } finally {
-                m_readOffset = m_fc.position();
-                m_fc.position(writePos);
+                if (entry.m_mapping != null) {
+                    entry.m_mapping.release();
+                }
             }
         }
 
+        private BBContainer readClaimed(final ClaimedEntry entry, OutputContainerFactory factory) throws IOException {
+            final boolean compressed = (entry.m_flags & FLAG_COMPRESSED) != 0;
+
+            final DBBPool.BBContainer retcont;
+            if ((entry.m_flags & FLAG_LZ4_BATCH) != 0) {
+                retcont = readFromBatch(entry);
+            } else if (entry.m_mapping != null) {
+                final ByteBuffer mapped = entry.m_mapping.duplicate();
+                mapped.limit((int) entry.m_offset + entry.m_length).position((int) entry.m_offset);
+                final ByteBuffer data = mapped.slice();
+                if (compressed) {
+                    retcont = factory.getContainer(entry.m_uncompressedLength);
+                    retcont.b().limit(entry.m_uncompressedLength);
+                    CompressionService.decompressBuffer(data, retcont.b());
+                } else {
+                    // The slice keeps the file mapped until it's discarded
+                    final SegmentMapping mapping = entry.m_mapping.retain();
+                    retcont = new DBBPool.BBContainer(data) {
+                        @Override
+                        public void discard() {
+                            checkDoubleFree();
+                            mapping.release();
+                        }
+                    };
+                }
+            } else if (compressed) {
+                final DBBPool.BBContainer compressedBuf = DBBPool.allocateDirectAndPool(entry.m_length);
+                try {
+                    compressedBuf.b().limit(entry.m_length);
+                    PBDUtils.readBufferFully(entry.m_channel, compressedBuf.b(), (int) entry.m_offset);
+                    retcont = factory.getContainer(entry.m_uncompressedLength);
+                    retcont.b().limit(entry.m_uncompressedLength);
+                    CompressionService.decompressBuffer(compressedBuf.bDR(), retcont.b());
+                } finally {
+                    compressedBuf.discard();
+                }
+            } else {
+                retcont = factory.getContainer(entry.m_length);
+                retcont.b().limit(entry.m_length);
+                PBDUtils.readBufferFully(entry.m_channel, retcont.b(), (int) entry.m_offset);
+            }
+
+            return new DBBPool.BBContainer(retcont.b()) {
+                private boolean m_discarded = false;
+
+                @Override
+                public void discard() {
+                    checkDoubleFree();
+                    if (m_discarded) {
+                        LOG.error("PBD Container discarded more than once");
+                        return;
+                    }
+
+                    m_discarded = true;
+                    retcont.discard();
+                    m_discardCount++;
+                }
+            };
+        }
+
         @Override
         public int uncompressedBytesToRead() {
             if (m_closed) throw new RuntimeException("Reader closed");
@@ -499,6 +717,7 @@ public class PBDRegularSegment extends PBDSegment {
         @Override
         public void close() throws IOException {
             m_closed = true;
+            releaseDecompressedBatch();
             m_readCursors.remove(m_cursorId);
             m_closedCursors.put(m_cursorId, this);
             if (m_readCursors.isEmpty()) {
@@ -511,4 +730,50 @@ public class PBDRegularSegment extends PBDSegment {
             return m_closed;
         }
     }
+
+    /**
+     * A decompressed LZ4 batch, the entries read from it are views of it that keep
+     * it alive until they are discarded. The reader holds a reference while reading it.
+     */
+    private static class DecompressedBatch {
+        private final long m_offset;
+        private final int m_entries;
+        private final DBBPool.BBContainer m_buffer;
+        private final AtomicInteger m_references = new AtomicInteger(1);
+        private int m_position = 0;
+        private int m_nextIndex = 0;
+
+        private DecompressedBatch(long offset, int entries, DBBPool.BBContainer buffer) {
+            m_offset = offset;
+            m_entries = entries;
+            m_buffer = buffer;
+        }
+
+        private BBContainer next(int index) throws IOException {
+            final ByteBuffer batch = m_buffer.b();
+            if (index != m_nextIndex || index >= m_entries
+                    || batch.limit() - m_position < BATCH_ENTRY_HEADER_BYTES) {
+                throw new IOException("Batch entry " + index + " read out of order or past the end of the batch");
+            }
+            final int length = batch.getInt(m_position);
+            final ByteBuffer entry = batch.duplicate();
+            entry.limit(m_position + BATCH_ENTRY_HEADER_BYTES + length).position(m_position + BATCH_ENTRY_HEADER_BYTES);
+            m_position += BATCH_ENTRY_HEADER_BYTES + length;
+            m_nextIndex++;
+            m_references.incrementAndGet();
+            return new DBBPool.BBContainer(entry.slice()) {
+                @Override
+                public void discard() {
+                    checkDoubleFree();
+                    release();
+                }
+            };
+        }
+
+        private void release() {
+            if (m_references.decrementAndGet() == 0) {
+                m_buffer.discard();
+            }
+        }
+    }
 }
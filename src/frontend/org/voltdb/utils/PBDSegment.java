@@ -23,7 +23,11 @@ import org.voltcore.utils.DeferredSerialization;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class PBDSegment {
 
@@ -59,6 +63,29 @@ public abstract class PBDSegment {
          */
         public DBBPool.BBContainer poll(BinaryDeque.OutputContainerFactory factory) throws IOException;
 
+        /**
+         * Move this reader past the next entry without reading it, the entry is read with
+         * {@link #read}. Only the claim has to be serialized with the other operations on the
+         * segment, the read can run concurrently with appends and with the other readers.
+         * Returns null if all entries in this segment were already read by this reader.
+         */
+        public ClaimedEntry claim() throws IOException;
+
+        /**
+         * Read an entry claimed by this reader. The container returned is a read-only
+         * view of the segment when the segment is mapped and the entry isn't compressed.
+         * Entries of an LZ4 batch are views of the batch, which this reader decompresses
+         * when it reads the first of them. Entries have to be read in the order they were claimed,
+         * and every entry claimed has to be read, the claim keeps the segment's mapping alive.
+         */
+        public DBBPool.BBContainer read(ClaimedEntry entry, BinaryDeque.OutputContainerFactory factory)
+                throws IOException;
+
+        /**
+         * Was the entry claimed last part of an LZ4 batch
+         */
+        public boolean lastClaimedFromBatch();
+
         //Don't use size in bytes to determine empty, could potentially
         //diverge from object count on crash or power failure
         //although incredibly unlikely
@@ -96,9 +123,81 @@ public abstract class PBDSegment {
         public boolean isClosed();
     }
 
+    /**
+     * An entry a reader has claimed, with what is needed to read it after the claim
+     */
+    static class ClaimedEntry {
+        // Offset in the file of the entry's data, after its header
+        final long m_offset;
+        final int m_length;
+        final int m_flags;
+        final int m_uncompressedLength;
+        // The segment's channel, or its mapping if it's mapped, at the time of the claim.
+        // The claim holds a reference to the mapping that the read releases.
+        final FileChannel m_channel;
+        final SegmentMapping m_mapping;
+        // Position of the entry in its LZ4 batch and the number of entries in the batch
+        final int m_batchIndex;
+        final int m_batchEntries;
+
+        ClaimedEntry(long offset, int length, int flags, int uncompressedLength,
+                FileChannel channel, SegmentMapping mapping) {
+            this(offset, length, flags, uncompressedLength, channel, mapping, 0, 1);
+        }
+
+        ClaimedEntry(long offset, int length, int flags, int uncompressedLength,
+                FileChannel channel, SegmentMapping mapping, int batchIndex, int batchEntries) {
+            m_offset = offset;
+            m_length = length;
+            m_flags = flags;
+            m_uncompressedLength = uncompressedLength;
+            m_channel = channel;
+            m_mapping = mapping;
+            m_batchIndex = batchIndex;
+            m_batchEntries = batchEntries;
+        }
+    }
+
+    /**
+     * A read-only mapping of a segment. The segment holds a reference while it's open,
+     * and each claimed entry and each slice of the mapping handed out holds one too.
+     * The file is unmapped when the last reference is released rather than whenever
+     * the GC gets to it, a mapped file keeps its disk space after it's deleted.
+     */
+    static class SegmentMapping {
+        private final DBBPool.MBBContainer m_container;
+        private final AtomicInteger m_references = new AtomicInteger(1);
+
+        SegmentMapping(ByteBuffer mapped) {
+            m_container = DBBPool.wrapMBB(mapped);
+        }
+
+        /**
+         * A duplicate of the mapping, only valid while a reference is held
+         */
+        ByteBuffer duplicate() {
+            return m_container.b().duplicate();
+        }
+
+        SegmentMapping retain() {
+            m_references.incrementAndGet();
+            return this;
+        }
+
+        void release() {
+            final int references = m_references.decrementAndGet();
+            assert(references >= 0);
+            if (references == 0) {
+                m_container.discard();
+            }
+        }
+    }
+
     private static final String TRUNCATOR_CURSOR = "__truncator__";
     static final int NO_FLAGS = 0;
     static final int FLAG_COMPRESSED = 1;
+    // Several entries compressed together, see writeBatch()
+    static final int FLAG_LZ4_BATCH = 2;
 
     static final int COUNT_OFFSET = 0;
     static final int SIZE_OFFSET = 4;
@@ -107,13 +206,17 @@ public abstract class PBDSegment {
     public static final int CHUNK_SIZE = (1024 * 1024) * 64;
     static final int OBJECT_HEADER_BYTES = 8;
     static final int SEGMENT_HEADER_BYTES = 8;
+    // Number of entries in a batch and their total size, after the object header
+    static final int BATCH_HEADER_BYTES = 8;
+    // Length prefix of each entry in a batch once decompressed
+    static final int BATCH_ENTRY_HEADER_BYTES = 4;
     protected final File m_file;
 
     protected boolean m_closed = true;
     protected RandomAccessFile m_ras;
     protected FileChannel m_fc;
-    //Avoid unecessary sync with this flag
-    protected boolean m_syncedSinceLastEdit = true;
+    //Avoid unecessary sync with this flag, volatile because appends don't hold the deque's lock
+    protected volatile boolean m_syncedSinceLastEdit = true;
 
     public PBDSegment(File file)
     {
@@ -162,6 +265,34 @@ public abstract class PBDSegment {
 
     abstract int offer(DeferredSerialization ds) throws IOException;
 
+    /**
+     * Append an entry to the file without counting it, so readers can't see it until it's
+     * committed with {@link #commit}. Only one thread may write to a segment at a time.
+     * Returns the uncompressed size of the entry, or -1 if it doesn't fit in the segment.
+     */
+    abstract int write(DBBPool.BBContainer cont, boolean compress) throws IOException;
+
+    abstract int write(DeferredSerialization ds) throws IOException;
+
+    /**
+     * Append a batch of entries compressed together without counting them, like {@link #write}.
+     * The batch is the LZ4 compression, as done by CompressionService.compressBufferLZ4(),
+     * of the entries each prefixed with its length. The entries count as separate objects once
+     * committed with {@link #commitBatch}. Returns the uncompressed size of the entries, or -1 if
+     * the batch doesn't fit in the segment.
+     */
+    abstract int writeBatch(ByteBuffer compressed, int entries, int uncompressedSize) throws IOException;
+
+    /**
+     * Count the entry written last, making it visible to readers
+     */
+    abstract void commit(int uncompressedSize) throws IOException;
+
+    /**
+     * Count the entries of the batch written last, making them visible to readers
+     */
+    abstract void commitBatch(int entries, int uncompressedSize) throws IOException;
+
     // TODO: javadoc
     abstract int size();
 
@@ -185,6 +316,11 @@ public abstract class PBDSegment {
         int entriesTruncated = 0;
         int sizeInBytes = 0;
 
+        // Start of the entry the last object was read from, and copies of the objects
+        // kept from it so far when it's a batch, they are rewritten on their own if the
+        // truncation falls in the batch
+        long entryStart = reader.readOffset();
+        final List<ByteBuffer> keptFromBatch = new ArrayList<ByteBuffer>();
         DBBPool.BBContainer cont;
         while (true) {
             final long beforePos = reader.readOffset();
@@ -193,9 +329,20 @@ public abstract class PBDSegment {
             if (cont == null) {
                 break;
             }
+            if (reader.readOffset() != beforePos) {
+                entryStart = beforePos;
+                keptFromBatch.clear();
+            }
 
-            final int compressedLength = (int) (reader.readOffset() - beforePos - OBJECT_HEADER_BYTES);
+            final int compressedLength = (int) (reader.readOffset() - entryStart - OBJECT_HEADER_BYTES);
             final int uncompressedLength = cont.b().limit();
+            ByteBuffer copy = null;
+            if (reader.lastClaimedFromBatch()) {
+                // The truncator may move the buffer
+                copy = ByteBuffer.allocate(uncompressedLength);
+                copy.put(cont.b().duplicate());
+                copy.flip();
+            }
 
             try {
                 //Handoff the object to the truncator and await a decision
@@ -203,6 +350,9 @@ public abstract class PBDSegment {
                 if (retval == null) {
                     //Nothing to do, leave the object alone and move to the next
                     sizeInBytes += uncompressedLength;
+                    if (copy != null) {
+                        keptFromBatch.add(copy);
+                    }
                 } else {
                     //If the returned bytebuffer is empty, remove the object and truncate the file
                     if (retval.status == BinaryDeque.TruncatorResponse.Status.FULL_TRUNCATE) {
@@ -216,17 +366,19 @@ public abstract class PBDSegment {
                             entriesTruncated = initialEntryCount - (reader.readIndex() - 1);
                             //Don't forget to update the number of entries in the file
                             initNumEntries(reader.readIndex() - 1, sizeInBytes);
-                            m_fc.truncate(reader.readOffset() - (compressedLength + OBJECT_HEADER_BYTES));
+                            m_fc.truncate(entryStart);
+                            rewriteKeptEntries(entryStart, keptFromBatch);
                         }
                     } else {
                         assert retval.status == BinaryDeque.TruncatorResponse.Status.PARTIAL_TRUNCATE;
                         entriesTruncated = initialEntryCount - reader.readIndex();
                         //Partial object truncation
-                        reader.rewindReadOffset(compressedLength + OBJECT_HEADER_BYTES);
-                        final long partialEntryBeginOffset = reader.readOffset();
+                        m_fc.truncate(entryStart);
+                        final long partialEntryBeginOffset = rewriteKeptEntries(entryStart, keptFromBatch);
                         m_fc.position(partialEntryBeginOffset);
 
-                        final int written = writeTruncatedEntry(retval, compressedLength);
+                        final int written = writeTruncatedEntry(retval,
+                                OBJECT_HEADER_BYTES + Math.max(compressedLength, uncompressedLength));
                         sizeInBytes += written;
 
                         initNumEntries(reader.readIndex(), sizeInBytes);
@@ -244,4 +396,17 @@ public abstract class PBDSegment {
 
         return entriesTruncated;
     }
+
+    /**
+     * Write the objects kept from a batch that is truncated as separate entries at the given offset,
+     * returns the offset after them
+     */
+    private long rewriteKeptEntries(long offset, List<ByteBuffer> kept) throws IOException {
+        m_fc.position(offset);
+        for (ByteBuffer object : kept) {
+            offset += OBJECT_HEADER_BYTES + writeTruncatedEntry(
+                    new PersistentBinaryDeque.ByteBufferTruncatorResponse(object), OBJECT_HEADER_BYTES + object.remaining());
+        }
+        return offset;
+    }
 }
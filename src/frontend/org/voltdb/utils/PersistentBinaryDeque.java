@@ -21,12 +21,18 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.DBBPool;
@@ -35,10 +41,13 @@ import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.Pair;
 import org.voltdb.EELibraryLoader;
 import org.voltdb.utils.BinaryDeque.TruncatorResponse.Status;
+import org.voltdb.utils.CompressionService.Algorithm;
+import org.voltdb.utils.PBDSegment.ClaimedEntry;
 import org.voltdb.utils.PBDSegment.PBDSegmentReader;
 
 import com.google_voltpatches.common.base.Joiner;
 import com.google_voltpatches.common.base.Throwables;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 
 /**
  * A deque that specializes in providing persistence of binary objects to disk. Any object placed
@@ -49,6 +58,19 @@ import com.google_voltpatches.common.base.Throwables;
  * once all objects from the segment have been polled and all the containers returned by poll have been discarded.
  * Push is implemented by creating new segments at the head of the deque containing the objects to be pushed.
  *
+ * The deque's lock only covers the bookkeeping of the segments, the entry counts and the read positions.
+ * Writes happen outside of it, serialized by a separate write lock, and are made visible to the readers
+ * once they are complete. Each cursor claims its next entry under the lock and reads it outside, so the
+ * writer and the cursors copy, compress and decompress in parallel. A cursor must only be polled by one
+ * thread at a time.
+ *
+ * With LZ4 batches the offered objects are gathered into batches that are compressed together with LZ4
+ * on the CompressionService's threads, and written in order once compressed. Objects still in a batch
+ * count as queued, a cursor that runs out of written objects has the batches written out, as do sync,
+ * push and close. The batches are decompressed by the cursors when the first of their objects is read.
+ * Until then the batch being filled and up to PBD_LZ4_BATCHES_IN_FLIGHT sealed batches are only in
+ * memory, not even in the page cache, and nothing writes them out while no more objects are offered.
+ * They are lost if the process dies, callers that need the objects to survive that have to sync.
  */
 public class PersistentBinaryDeque implements BinaryDeque {
     private static final VoltLogger LOG = new VoltLogger("HOST");
@@ -77,7 +99,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
 
     /**
      * Used to read entries from the PBD. Multiple readers may be active at the same time,
-     * but only one read or write may happen concurrently.
+     * and read concurrently with each other and with the writer.
      */
     private class ReadCursor implements BinaryDequeReader {
         private final String m_cursorId;
@@ -94,6 +116,19 @@ public class PersistentBinaryDeque implements BinaryDeque {
 
         @Override
         public BBContainer poll(OutputContainerFactory ocf) throws IOException {
+            BBContainer retcont = pollWritten(ocf);
+            if (retcont == null && hasPendingObjects()) {
+                // The objects still in batches are written out for this cursor to read them
+                writePendingBatches();
+                retcont = pollWritten(ocf);
+            }
+            return retcont;
+        }
+
+        private BBContainer pollWritten(OutputContainerFactory ocf) throws IOException {
+            final PBDSegment segment;
+            final PBDSegmentReader segmentReader;
+            final ClaimedEntry entry;
             synchronized (PersistentBinaryDeque.this) {
                 if (m_closed) {
                     throw new IOException("Reader " + m_cursorId + " has been closed");
@@ -101,29 +136,35 @@ public class PersistentBinaryDeque implements BinaryDeque {
                 assertions();
 
                 moveToValidSegment();
-                PBDSegmentReader segmentReader = m_segment.getReader(m_cursorId);
-                if (segmentReader == null) {
-                    segmentReader = m_segment.openForRead(m_cursorId);
+                PBDSegmentReader reader = m_segment.getReader(m_cursorId);
+                if (reader == null) {
+                    reader = m_segment.openForRead(m_cursorId);
                 }
                 long lastSegmentId = peekLastSegment().segmentId();
-                while (!segmentReader.hasMoreEntries()) {
+                while (!reader.hasMoreEntries()) {
                     if (m_segment.segmentId() == lastSegmentId) { // nothing more to read
                         return null;
                     }
 
-                    segmentReader.close();
+                    reader.close();
                     m_segment = m_segments.higherEntry(m_segment.segmentId()).getValue();
                     // push to PBD will rewind cursors. So, this cursor may have already opened this segment
-                    segmentReader = m_segment.getReader(m_cursorId);
-                    if (segmentReader == null) segmentReader = m_segment.openForRead(m_cursorId);
+                    reader = m_segment.getReader(m_cursorId);
+                    if (reader == null) reader = m_segment.openForRead(m_cursorId);
                 }
-                BBContainer retcont = segmentReader.poll(ocf);
+                entry = reader.claim();
+                segment = m_segment;
+                segmentReader = reader;
 
                 m_numRead++;
                 assertions();
-                assert (retcont.b() != null);
-                return wrapRetCont(m_segment, retcont);
             }
+
+            // The segment can't go away while this entry is unread, so the copy or
+            // decompression doesn't need the lock
+            BBContainer retcont = segmentReader.read(entry, ocf);
+            assert (retcont.b() != null);
+            return wrapRetCont(segment, retcont);
         }
 
         private void moveToValidSegment() {
@@ -140,7 +181,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
                 if (m_closed) {
                     throw new IOException("Reader " + m_cursorId + " has been closed");
                 }
-                return m_numObjects - m_numObjectsDeleted - m_numRead;
+                return m_numObjects + m_pendingObjects - m_numObjectsDeleted - m_numRead;
             }
         }
 
@@ -169,7 +210,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
                 for (PBDSegment currSegment : m_segments.tailMap(m_segment.segmentId(), inclusive).values()) {
                     size += currSegment.size();
                 }
-                return size;
+                return size + m_pendingBytes;
             }
         }
 
@@ -180,6 +221,9 @@ public class PersistentBinaryDeque implements BinaryDeque {
                     throw new IOException("Closed");
                 }
                 assertions();
+                if (m_pendingObjects > 0) {
+                    return false;
+                }
 
                 moveToValidSegment();
                 boolean inclusive = true;
@@ -235,8 +279,65 @@ public class PersistentBinaryDeque implements BinaryDeque {
         }
     }
 
+    /**
+     * A batch of objects being compressed, the compressed batch is written once
+     * it and the batches sealed before it are done.
+     */
+    private static class PendingBatch {
+        private final int m_entries;
+        private final int m_uncompressedSize;
+        private final int m_framedSize;
+        private final ListenableFuture<BBContainer> m_compressed;
+        private volatile long m_compressionNanos;
+
+        private PendingBatch(int entries, int uncompressedSize, final BBContainer framed) {
+            m_entries = entries;
+            m_uncompressedSize = uncompressedSize;
+            m_framedSize = framed.b().remaining();
+            m_compressed = CompressionService.submitCompressionTask(new Callable<BBContainer>() {
+                @Override
+                public BBContainer call() throws Exception {
+                    final long start = System.nanoTime();
+                    try {
+                        final BBContainer compressed = DBBPool.allocateDirect(
+                                CompressionService.maxCompressedLength(m_framedSize, Algorithm.LZ4));
+                        try {
+                            CompressionService.compressBufferLZ4(framed.b(), compressed.b());
+                        } catch (IOException e) {
+                            compressed.discard();
+                            throw e;
+                        }
+                        m_compressionNanos = System.nanoTime() - start;
+                        return compressed;
+                    } finally {
+                        framed.discard();
+                    }
+                }
+            });
+        }
+
+        private BBContainer get() throws IOException {
+            try {
+                return m_compressed.get();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                Throwables.propagateIfPossible(e.getCause(), IOException.class);
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
     public static final OutputContainerFactory UNSAFE_CONTAINER_FACTORY = new UnsafeOutputContainerFactory();
 
+    // Size of the LZ4 batches, objects that don't fit in one get a batch of their own
+    private static final int LZ4_BATCH_BYTES = Integer.getInteger("PBD_LZ4_BATCH_BYTES", 1024 * 1024);
+    // Number of sealed batches that may be compressing before an offer waits for the oldest one
+    private static final int LZ4_BATCHES_IN_FLIGHT = Integer.getInteger("PBD_LZ4_BATCHES_IN_FLIGHT", 4);
+
+    // The deques writing LZ4 batches, for their compression stats
+    private static final Set<PersistentBinaryDeque> m_lz4Deques = new LinkedHashSet<PersistentBinaryDeque>();
+
     /**
      * Processors also log using this facility.
      */
@@ -251,10 +352,31 @@ public class PersistentBinaryDeque implements BinaryDeque {
     //These segments are "immutable". They will not be modified until deletion
     private final TreeMap<Long, PBDSegment> m_segments = new TreeMap<>();
     private volatile boolean m_closed = false;
+    // Serializes the writes, which are done without holding the lock on this.
+    // Always taken before the lock on this.
+    private final Object m_writeLock = new Object();
+    // Forces this deque's segments together with the other deques in the directory, null to sync on its own
+    private final PBDGroupSync m_groupSync;
     private final HashMap<String, ReadCursor> m_readCursors = new HashMap<>();
     private int m_numObjects;
     private int m_numDeleted;
 
+    private final boolean m_lz4Batches;
+    // The batch being filled and the sealed batches in order, guarded by the write lock
+    private BBContainer m_batch = null;
+    private int m_batchEntries = 0;
+    private int m_batchSize = 0;
+    private final ArrayDeque<PendingBatch> m_pendingBatches = new ArrayDeque<PendingBatch>();
+    // Objects offered and not written yet, and their size
+    private int m_pendingObjects = 0;
+    private long m_pendingBytes = 0;
+    // Compression stats of the batches written
+    private long m_batchesWritten = 0;
+    private long m_batchedObjects = 0;
+    private long m_batchBytesIn = 0;
+    private long m_batchBytesOut = 0;
+    private long m_batchCompressionNanos = 0;
+
     /**
      * Create a persistent binary deque with the specified nonce and storage
      * back at the specified path. Existing files will
@@ -279,10 +401,44 @@ public class PersistentBinaryDeque implements BinaryDeque {
      * @throws IOException
      */
     public PersistentBinaryDeque(final String nonce, final File path, VoltLogger logger, final boolean deleteEmpty) throws IOException {
+        this(nonce, path, logger, deleteEmpty, false);
+    }
+
+    /**
+     * Create a persistent binary deque with the specified nonce and storage back at the specified path.
+     * With groupSync the deque's segments are forced by the {@link PBDGroupSync} of the directory,
+     * in the background after writes and together with the other deques when {@link #sync()} is called.
+     *
+     * @param nonce
+     * @param path
+     * @param deleteEmpty
+     * @param groupSync
+     * @throws IOException
+     */
+    public PersistentBinaryDeque(final String nonce, final File path, VoltLogger logger, final boolean deleteEmpty,
+            final boolean groupSync) throws IOException {
+        this(nonce, path, logger, deleteEmpty, groupSync, false);
+    }
+
+    /**
+     * Create a persistent binary deque with the specified nonce and storage back at the specified path.
+     * With lz4Batches the objects offered with compression allowed are compressed together with LZ4,
+     * in batches, on the CompressionService's threads instead of one by one by the offering thread.
+     *
+     * @param nonce
+     * @param path
+     * @param deleteEmpty
+     * @param groupSync
+     * @param lz4Batches
+     * @throws IOException
+     */
+    public PersistentBinaryDeque(final String nonce, final File path, VoltLogger logger, final boolean deleteEmpty,
+            final boolean groupSync, final boolean lz4Batches) throws IOException {
         EELibraryLoader.loadExecutionEngineLibrary(true);
         m_path = path;
         m_nonce = nonce;
         m_usageSpecificLog = logger;
+        m_lz4Batches = lz4Batches;
 
         if (!path.exists() || !path.canRead() || !path.canWrite() || !path.canExecute() || !path.isDirectory()) {
             throw new IOException(path + " is not usable ( !exists || !readable " +
@@ -392,6 +548,12 @@ public class PersistentBinaryDeque implements BinaryDeque {
 
         m_numObjects = countNumObjects();
         assertions();
+        m_groupSync = groupSync ? PBDGroupSync.register(path, this) : null;
+        if (m_lz4Batches) {
+            synchronized (m_lz4Deques) {
+                m_lz4Deques.add(this);
+            }
+        }
     }
 
     private int countNumObjects() throws IOException {
@@ -404,7 +566,16 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized void parseAndTruncate(BinaryDequeTruncator truncator) throws IOException {
+    public void parseAndTruncate(BinaryDequeTruncator truncator) throws IOException {
+        synchronized (m_writeLock) {
+            writePendingBatchesLocked();
+            synchronized (this) {
+                parseAndTruncateLocked(truncator);
+            }
+        }
+    }
+
+    private void parseAndTruncateLocked(BinaryDequeTruncator truncator) throws IOException {
         if (m_closed) {
             throw new IOException("PBD has been closed");
         }
@@ -493,6 +664,10 @@ public class PersistentBinaryDeque implements BinaryDeque {
     private void closeTailAndOffer(PBDSegment newSegment) throws IOException {
         PBDSegment last = peekLastSegment();
         if (last != null && !last.isBeingPolled()) {
+            // The group only forces open segments
+            if (m_groupSync != null && !last.isClosed()) {
+                last.sync();
+            }
             last.close();
         }
         m_segments.put(newSegment.segmentId(), newSegment);
@@ -533,49 +708,238 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized void offer(BBContainer object) throws IOException {
+    public void offer(BBContainer object) throws IOException {
         offer(object, true);
     }
 
     @Override
-    public synchronized void offer(BBContainer object, boolean allowCompression) throws IOException {
+    public void offer(BBContainer object, boolean allowCompression) throws IOException {
+        synchronized (m_writeLock) {
+            if (m_lz4Batches && allowCompression) {
+                batch(object);
+                return;
+            }
+            writePendingBatchesLocked();
+            PBDSegment tail = getTailForWrite();
+            final boolean compress = object.b().isDirect() && allowCompression;
+            int written = tail.write(object, compress);
+            if (written < 0) {
+                tail = addSegmentForWrite(tail);
+                written = tail.write(object, compress);
+                if (written < 0) {
+                    throw new IOException("Failed to offer object in PBD");
+                }
+            }
+            commit(tail, written);
+        }
+    }
+
+    @Override
+    public int offer(DeferredSerialization ds) throws IOException {
+        synchronized (m_writeLock) {
+            writePendingBatchesLocked();
+            PBDSegment tail = getTailForWrite();
+            int written = tail.write(ds);
+            if (written < 0) {
+                tail = addSegmentForWrite(tail);
+                written = tail.write(ds);
+                if (written < 0) {
+                    throw new IOException("Failed to offer object in PBD");
+                }
+            }
+            commit(tail, written);
+            return written;
+        }
+    }
+
+    /*
+     * The tail can't change while the write lock is held, only the writer adds segments
+     * and a tail is never deleted while it's the last segment
+     */
+    private synchronized PBDSegment getTailForWrite() throws IOException {
         assertions();
         if (m_closed) {
             throw new IOException("Closed");
         }
+        return peekLastSegment();
+    }
 
-        PBDSegment tail = peekLastSegment();
-        final boolean compress = object.b().isDirect() && allowCompression;
-        if (!tail.offer(object, compress)) {
-            tail = addSegment(tail);
-            final boolean success = tail.offer(object, compress);
-            if (!success) {
-                throw new IOException("Failed to offer object in PBD");
-            }
+    private synchronized PBDSegment addSegmentForWrite(PBDSegment tail) throws IOException {
+        if (m_closed) {
+            throw new IOException("Closed");
         }
+        return addSegment(tail);
+    }
+
+    private synchronized void commit(PBDSegment tail, int written) throws IOException {
+        if (m_closed) {
+            throw new IOException("Closed");
+        }
+        tail.commit(written);
         m_numObjects++;
         assertions();
+        if (m_groupSync != null) {
+            m_groupSync.written(this, written);
+        }
     }
 
-    @Override
-    public synchronized int offer(DeferredSerialization ds) throws IOException {
-        assertions();
+    /*
+     * Copy the object, prefixed with its length, into the batch being filled, and write the
+     * batches that are done compressing. The object isn't in the file when this returns, see
+     * the class comment.
+     */
+    private void batch(BBContainer object) throws IOException {
         if (m_closed) {
             throw new IOException("Closed");
         }
+        try {
+            final ByteBuffer buf = object.b();
+            final int length = buf.remaining();
+            final int framed = PBDSegment.BATCH_ENTRY_HEADER_BYTES + length;
+            if (m_batch != null && m_batch.b().remaining() < framed) {
+                sealBatch();
+            }
+            if (m_batch == null) {
+                m_batch = DBBPool.allocateDirect(Math.max(LZ4_BATCH_BYTES, framed));
+            }
+            m_batch.b().putInt(length);
+            m_batch.b().put(buf);
+            m_batchEntries++;
+            m_batchSize += length;
+            addPending(length);
+        } finally {
+            object.discard();
+        }
+        if (m_batch.b().remaining() <= PBDSegment.BATCH_ENTRY_HEADER_BYTES) {
+            sealBatch();
+        }
+        writeCompressedBatches(LZ4_BATCHES_IN_FLIGHT);
+    }
 
-        PBDSegment tail = peekLastSegment();
-        int written = tail.offer(ds);
-        if (written < 0) {
-            tail = addSegment(tail);
-            written = tail.offer(ds);
-            if (written < 0) {
-                throw new IOException("Failed to offer object in PBD");
+    private synchronized void addPending(int length) {
+        m_pendingObjects++;
+        m_pendingBytes += length;
+    }
+
+    private synchronized boolean hasPendingObjects() {
+        return m_pendingObjects > 0;
+    }
+
+    private void sealBatch() {
+        if (m_batch == null) {
+            return;
+        }
+        m_batch.b().flip();
+        m_pendingBatches.add(new PendingBatch(m_batchEntries, m_batchSize, m_batch));
+        m_batch = null;
+        m_batchEntries = 0;
+        m_batchSize = 0;
+    }
+
+    /*
+     * Write the batches that are done compressing, in order, waiting for the oldest
+     * ones while more than maxInFlight are left
+     */
+    private void writeCompressedBatches(int maxInFlight) throws IOException {
+        while (!m_pendingBatches.isEmpty()) {
+            final PendingBatch batch = m_pendingBatches.peek();
+            if (m_pendingBatches.size() <= maxInFlight && !batch.m_compressed.isDone()) {
+                return;
+            }
+            m_pendingBatches.poll();
+            boolean committed = false;
+            try {
+                final BBContainer compressed = batch.get();
+                try {
+                    final int compressedSize = compressed.b().remaining();
+                    PBDSegment tail = getTailForWrite();
+                    int written = tail.writeBatch(compressed.b(), batch.m_entries, batch.m_uncompressedSize);
+                    if (written < 0) {
+                        tail = addSegmentForWrite(tail);
+                        written = tail.writeBatch(compressed.b(), batch.m_entries, batch.m_uncompressedSize);
+                        if (written < 0) {
+                            throw new IOException("Failed to offer batch in PBD");
+                        }
+                    }
+                    commitBatch(tail, batch, compressedSize);
+                    committed = true;
+                } finally {
+                    compressed.discard();
+                }
+            } finally {
+                if (!committed) {
+                    dropPending(batch);
+                }
             }
         }
-        m_numObjects++;
+    }
+
+    /*
+     * The batch failed to compress or to be written, its objects are lost and no longer queued
+     */
+    private synchronized void dropPending(PendingBatch batch) {
+        LOG.error("Dropped a batch of " + batch.m_entries + " objects of PBD " + m_nonce +
+                " that failed to compress or to be written");
+        m_pendingObjects -= batch.m_entries;
+        m_pendingBytes -= batch.m_uncompressedSize;
         assertions();
-        return written;
+    }
+
+    private synchronized void commitBatch(PBDSegment tail, PendingBatch batch, int compressedSize) throws IOException {
+        if (m_closed) {
+            throw new IOException("Closed");
+        }
+        tail.commitBatch(batch.m_entries, batch.m_uncompressedSize);
+        m_numObjects += batch.m_entries;
+        m_pendingObjects -= batch.m_entries;
+        m_pendingBytes -= batch.m_uncompressedSize;
+        m_batchesWritten++;
+        m_batchedObjects += batch.m_entries;
+        m_batchBytesIn += batch.m_framedSize;
+        m_batchBytesOut += compressedSize;
+        m_batchCompressionNanos += batch.m_compressionNanos;
+        assertions();
+        if (m_groupSync != null) {
+            m_groupSync.written(this, batch.m_uncompressedSize);
+        }
+    }
+
+    /**
+     * Write out the objects still in batches
+     */
+    private void writePendingBatches() throws IOException {
+        synchronized (m_writeLock) {
+            writePendingBatchesLocked();
+        }
+    }
+
+    private void writePendingBatchesLocked() throws IOException {
+        sealBatch();
+        writeCompressedBatches(0);
+    }
+
+    /*
+     * Drop the objects still in batches, the deque is being deleted
+     */
+    private void discardPendingBatches() {
+        if (m_batch != null) {
+            m_batch.discard();
+            m_batch = null;
+            m_batchEntries = 0;
+            m_batchSize = 0;
+        }
+        PendingBatch batch;
+        while ((batch = m_pendingBatches.poll()) != null) {
+            try {
+                batch.get().discard();
+            } catch (IOException e) {
+                LOG.warn("Failed to compress a batch of PBD " + m_nonce + " being deleted", e);
+            }
+        }
+        synchronized (this) {
+            m_pendingObjects = 0;
+            m_pendingBytes = 0;
+        }
     }
 
     private PBDSegment addSegment(PBDSegment tail) throws IOException {
@@ -604,7 +968,16 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized void push(BBContainer objects[]) throws IOException {
+    public void push(BBContainer objects[]) throws IOException {
+        synchronized (m_writeLock) {
+            writePendingBatchesLocked();
+            synchronized (this) {
+                pushLocked(objects);
+            }
+        }
+    }
+
+    private void pushLocked(BBContainer objects[]) throws IOException {
         assertions();
         if (m_closed) {
             throw new IOException("Closed");
@@ -654,10 +1027,16 @@ public class PersistentBinaryDeque implements BinaryDeque {
                 m_usageSpecificLog.debug("Segment " + writeSegment.file() + " has been created because of a push");
             }
 
+            long written = 0;
             while (currentSegmentContents.peek() != null) {
-                writeSegment.offer(currentSegmentContents.pollFirst(), false);
+                BBContainer object = currentSegmentContents.pollFirst();
+                written += object.b().remaining();
+                writeSegment.offer(object, false);
                 m_numObjects++;
             }
+            if (m_groupSync != null) {
+                m_groupSync.written(this, written);
+            }
 
             // Don't close the last one, it'll be used for writes
             if (!m_segments.isEmpty()) {
@@ -756,28 +1135,100 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized void sync() throws IOException {
-        if (m_closed) {
-            throw new IOException("Closed");
+    public void sync() throws IOException {
+        if (m_lz4Batches) {
+            writePendingBatches();
         }
-        for (PBDSegment segment : m_segments.values()) {
-            if (!segment.isClosed()) {
+        if (m_groupSync != null) {
+            if (m_closed) {
+                throw new IOException("Closed");
+            }
+            m_groupSync.sync(this);
+        } else {
+            syncSegments();
+        }
+    }
+
+    /**
+     * Force the open segments written since they were last forced, returns how many were forced.
+     * The segments are picked under the lock and forced outside of it, so the writer and the
+     * cursors aren't held up by the fsyncs.
+     */
+    int syncSegments() throws IOException {
+        final List<PBDSegment> dirty = new ArrayList<>();
+        synchronized (this) {
+            if (m_closed) {
+                throw new IOException("Closed");
+            }
+            for (PBDSegment segment : m_segments.values()) {
+                if (!segment.isClosed() && !segment.m_syncedSinceLastEdit) {
+                    dirty.add(segment);
+                }
+            }
+        }
+        int synced = 0;
+        for (PBDSegment segment : dirty) {
+            try {
                 segment.sync();
+                synced++;
+            } catch (IOException e) {
+                // Closed since it was picked, read out and deleted or the deque closed
+                if (!segment.isClosed()) {
+                    throw e;
+                }
             }
         }
+        if (m_closed) {
+            throw new IOException("Closed");
+        }
+        return synced;
+    }
+
+    boolean isClosed() {
+        return m_closed;
     }
 
     @Override
-    public synchronized void close() throws IOException {
-        if (m_closed) {
-            return;
+    public void close() throws IOException {
+        IOException batchFailure = null;
+        // Let a write in progress finish before closing its segment
+        synchronized (m_writeLock) {
+            if (!m_closed) {
+                try {
+                    writePendingBatchesLocked();
+                } catch (IOException e) {
+                    LOG.error("Failed to write the pending batches of PBD " + m_nonce, e);
+                    discardPendingBatches();
+                    batchFailure = e;
+                }
+            }
+            synchronized (this) {
+                if (m_closed) {
+                    return;
+                }
+                m_readCursors.clear();
+
+                for (PBDSegment segment : m_segments.values()) {
+                    segment.close();
+                }
+                m_closed = true;
+            }
+        }
+        unregister();
+        if (batchFailure != null) {
+            throw batchFailure;
         }
-        m_readCursors.clear();
+    }
 
-        for (PBDSegment segment : m_segments.values()) {
-            segment.close();
+    private void unregister() {
+        if (m_groupSync != null) {
+            m_groupSync.unregister(this);
+        }
+        if (m_lz4Batches) {
+            synchronized (m_lz4Deques) {
+                m_lz4Deques.remove(this);
+            }
         }
-        m_closed = true;
     }
 
     @Override
@@ -788,22 +1239,67 @@ public class PersistentBinaryDeque implements BinaryDeque {
             count += segment.getNumEntries();
             size += segment.size();
         }
-        return Pair.of(count, size);
+        return Pair.of(count + m_pendingObjects, size + m_pendingBytes);
     }
 
     @Override
-    public synchronized void closeAndDelete() throws IOException {
-        if (m_closed) {
-            return;
+    public void closeAndDelete() throws IOException {
+        synchronized (m_writeLock) {
+            discardPendingBatches();
+            synchronized (this) {
+                if (m_closed) {
+                    return;
+                }
+                m_readCursors.clear();
+
+                for (PBDSegment qs : m_segments.values()) {
+                    m_usageSpecificLog.debug("Segment " + qs.file() + " has been closed and deleted due to delete all");
+                    closeAndDeleteSegment(qs);
+                }
+                m_segments.clear();
+                m_closed = true;
+            }
         }
-        m_readCursors.clear();
+        unregister();
+    }
+
+    public String getNonce() {
+        return m_nonce;
+    }
+
+    public synchronized long getBatchesWritten() {
+        return m_batchesWritten;
+    }
+
+    public synchronized long getBatchedObjects() {
+        return m_batchedObjects;
+    }
 
-        for (PBDSegment qs : m_segments.values()) {
-            m_usageSpecificLog.debug("Segment " + qs.file() + " has been closed and deleted due to delete all");
-            closeAndDeleteSegment(qs);
+    /**
+     * Bytes of the batches written before compression, the objects with their length prefixes
+     */
+    public synchronized long getBatchBytesIn() {
+        return m_batchBytesIn;
+    }
+
+    public synchronized long getBatchBytesOut() {
+        return m_batchBytesOut;
+    }
+
+    /**
+     * Time spent by the CompressionService's threads compressing the batches written
+     */
+    public synchronized long getBatchCompressionNanos() {
+        return m_batchCompressionNanos;
+    }
+
+    /**
+     * The open deques writing LZ4 batches
+     */
+    public static List<PersistentBinaryDeque> getLZ4BatchedDeques() {
+        synchronized (m_lz4Deques) {
+            return new ArrayList<PersistentBinaryDeque>(m_lz4Deques);
         }
-        m_segments.clear();
-        m_closed = true;
     }
 
     public static class ByteBufferTruncatorResponse extends TruncatorResponse {
@@ -868,7 +1364,7 @@ public class PersistentBinaryDeque implements BinaryDeque {
     private void assertions() {
         if (!assertionsOn || m_closed) return;
         for (ReadCursor cursor : m_readCursors.values()) {
-            int numObjects = 0;
+            int numObjects = m_pendingObjects;
             try {
                 for (PBDSegment segment : m_segments.values()) {
                     PBDSegmentReader reader = segment.getReader(cursor.m_cursorId);
@@ -0,0 +1,268 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "harness.h"
+
+#include "common/NValue.hpp"
+#include "common/TupleSchema.h"
+#include "common/ValueFactory.hpp"
+#include "common/tabletuple.h"
+#include "expressions/batchpredicate.h"
+#include "expressions/comparisonexpression.h"
+#include "expressions/conjunctionexpression.h"
+#include "expressions/constantvalueexpression.h"
+#include "expressions/expressionutil.h"
+#include "expressions/tuplevalueexpression.h"
+
+#include <boost/scoped_array.hpp>
+#include <boost/scoped_ptr.hpp>
+
+#include <cstdlib>
+#include <vector>
+
+using namespace voltdb;
+
+const int NUM_OF_TUPLES = BatchPredicate::MAX_BATCH_SIZE;
+
+// Column indexes of the test schema
+const int TINY = 0;
+const int INT = 1;
+const int BIG = 2;
+const int DBL = 3;
+const int TS = 4;
+const int STR = 5;
+
+class BatchPredicateTest : public Test
+{
+public:
+    BatchPredicateTest()
+    {
+        std::vector<ValueType> columnTypes;
+        std::vector<int32_t> columnLengths;
+        std::vector<bool> columnAllowNull;
+        addColumn(VALUE_TYPE_TINYINT, columnTypes, columnLengths, columnAllowNull);
+        addColumn(VALUE_TYPE_INTEGER, columnTypes, columnLengths, columnAllowNull);
+        addColumn(VALUE_TYPE_BIGINT, columnTypes, columnLengths, columnAllowNull);
+        addColumn(VALUE_TYPE_DOUBLE, columnTypes, columnLengths, columnAllowNull);
+        addColumn(VALUE_TYPE_TIMESTAMP, columnTypes, columnLengths, columnAllowNull);
+        columnTypes.push_back(VALUE_TYPE_VARCHAR);
+        columnLengths.push_back(10);
+        columnAllowNull.push_back(true);
+        m_schema = TupleSchema::createTupleSchemaForTest(columnTypes, columnLengths, columnAllowNull);
+
+        // Small values so that comparisons with constants go both ways, and some NULLs
+        const int tupleLength = m_schema->tupleLength() + TUPLE_HEADER_SIZE;
+        m_storage.reset(new char[tupleLength * NUM_OF_TUPLES]());
+        ::srand(42);
+        for (int i = 0; i < NUM_OF_TUPLES; ++i) {
+            TableTuple tuple(m_storage.get() + i * tupleLength, m_schema);
+            tuple.setNValue(TINY, someValue(VALUE_TYPE_TINYINT, ValueFactory::getTinyIntValue(static_cast<int8_t>(::rand() % 21 - 10))));
+            tuple.setNValue(INT, someValue(VALUE_TYPE_INTEGER, ValueFactory::getIntegerValue(::rand() % 21 - 10)));
+            tuple.setNValue(BIG, someValue(VALUE_TYPE_BIGINT, ValueFactory::getBigIntValue(::rand() % 21 - 10)));
+            tuple.setNValue(DBL, someValue(VALUE_TYPE_DOUBLE, ValueFactory::getDoubleValue((::rand() % 41 - 20) / 2.0)));
+            tuple.setNValue(TS, someValue(VALUE_TYPE_TIMESTAMP, ValueFactory::getTimestampValue(::rand() % 21 - 10)));
+            tuple.setNValue(STR, ValueFactory::getNullStringValue());
+            m_tuples.push_back(tuple.address());
+        }
+    }
+
+    ~BatchPredicateTest()
+    {
+        TupleSchema::freeTupleSchema(m_schema);
+    }
+
+    static void addColumn(ValueType type, std::vector<ValueType>& columnTypes,
+                          std::vector<int32_t>& columnLengths, std::vector<bool>& columnAllowNull)
+    {
+        columnTypes.push_back(type);
+        columnLengths.push_back(NValue::getTupleStorageSize(type));
+        columnAllowNull.push_back(true);
+    }
+
+    static NValue someValue(ValueType type, const NValue& value)
+    {
+        return ::rand() % 10 == 0 ? NValue::getNullValue(type) : value;
+    }
+
+    static AbstractExpression* column(int index)
+    {
+        return new TupleValueExpression(0, index);
+    }
+
+    static AbstractExpression* constant(const NValue& value)
+    {
+        return new ConstantValueExpression(value);
+    }
+
+    static AbstractExpression* bigint(int64_t value)
+    {
+        return constant(ValueFactory::getBigIntValue(value));
+    }
+
+    static AbstractExpression* both(AbstractExpression* left, AbstractExpression* right)
+    {
+        return new ConjunctionExpression<ConjunctionAnd>(EXPRESSION_TYPE_CONJUNCTION_AND, left, right);
+    }
+
+    static AbstractExpression* inList(int index, const std::vector<NValue>& values)
+    {
+        std::vector<AbstractExpression*>* items = new std::vector<AbstractExpression*>();
+        for (size_t i = 0; i < values.size(); ++i) {
+            items->push_back(constant(values[i]));
+        }
+        AbstractExpression* vector = ExpressionUtil::vectorFactory(VALUE_TYPE_BIGINT, items);
+        return new ComparisonExpression<CmpIn>(EXPRESSION_TYPE_COMPARE_IN, column(index), vector);
+    }
+
+    /**
+     * Check that filtering all the tuples a batch at a time keeps the same
+     * tuples, in the same order, as evaluating the predicate on each one.
+     * Takes ownership of the predicate.
+     */
+    void checkSameAsEval(AbstractExpression* expression)
+    {
+        boost::scoped_ptr<AbstractExpression> predicate(expression);
+        boost::scoped_ptr<BatchPredicate> batchPredicate(BatchPredicate::compile(predicate.get(), m_schema));
+        ASSERT_TRUE(batchPredicate.get() != NULL);
+        ASSERT_TRUE(batchPredicate->bind());
+
+        std::vector<char*> expected;
+        TableTuple tuple(m_schema);
+        for (int i = 0; i < NUM_OF_TUPLES; ++i) {
+            tuple.move(m_tuples[i]);
+            if (predicate->eval(&tuple, NULL).isTrue()) {
+                expected.push_back(m_tuples[i]);
+            }
+        }
+
+        std::vector<char*> batch(m_tuples);
+        const int count = batchPredicate->filter(&batch[0], NUM_OF_TUPLES);
+        ASSERT_EQ(static_cast<int>(expected.size()), count);
+        for (int i = 0; i < count; ++i) {
+            EXPECT_EQ(expected[i], batch[i]);
+        }
+    }
+
+protected:
+    TupleSchema* m_schema;
+    boost::scoped_array<char> m_storage;
+    std::vector<char*> m_tuples;
+};
+
+TEST_F(BatchPredicateTest, Comparisons)
+{
+    const int columns[] = { TINY, INT, BIG, DBL };
+    for (int i = 0; i < 4; ++i) {
+        const int c = columns[i];
+        checkSameAsEval(new ComparisonExpression<CmpEq>(EXPRESSION_TYPE_COMPARE_EQUAL, column(c), bigint(3)));
+        checkSameAsEval(new ComparisonExpression<CmpNe>(EXPRESSION_TYPE_COMPARE_NOTEQUAL, column(c), bigint(3)));
+        checkSameAsEval(new ComparisonExpression<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, column(c), bigint(-2)));
+        checkSameAsEval(new ComparisonExpression<CmpLte>(EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO, column(c), bigint(-2)));
+        checkSameAsEval(new ComparisonExpression<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, column(c), bigint(4)));
+        checkSameAsEval(new ComparisonExpression<CmpGte>(EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO, column(c), bigint(4)));
+        // The column on the right
+        checkSameAsEval(new ComparisonExpression<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, bigint(4), column(c)));
+        checkSameAsEval(new ComparisonExpression<CmpGte>(EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO, bigint(-7), column(c)));
+    }
+    checkSameAsEval(new ComparisonExpression<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN,
+                                                    column(DBL), constant(ValueFactory::getDoubleValue(2.5))));
+    checkSameAsEval(new ComparisonExpression<CmpLte>(EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO,
+                                                     column(TS), constant(ValueFactory::getTimestampValue(0))));
+    // Out of the range of the column
+    checkSameAsEval(new ComparisonExpression<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, column(TINY), bigint(1000)));
+    checkSameAsEval(new ComparisonExpression<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, column(INT), bigint(-5000000000LL)));
+}
+
+TEST_F(BatchPredicateTest, NullConstant)
+{
+    checkSameAsEval(new ComparisonExpression<CmpEq>(EXPRESSION_TYPE_COMPARE_EQUAL,
+                                                    column(BIG), constant(NValue::getNullValue(VALUE_TYPE_BIGINT))));
+    checkSameAsEval(new ComparisonExpression<CmpNe>(EXPRESSION_TYPE_COMPARE_NOTEQUAL,
+                                                    column(DBL), constant(NValue::getNullValue(VALUE_TYPE_DOUBLE))));
+}
+
+TEST_F(BatchPredicateTest, Ranges)
+{
+    // BETWEEN, and bounds that meet, cross or overflow
+    checkSameAsEval(both(new ComparisonExpression<CmpGte>(EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO, column(INT), bigint(-3)),
+                         new ComparisonExpression<CmpLte>(EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO, column(INT), bigint(5))));
+    checkSameAsEval(both(new ComparisonExpression<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, column(BIG), bigint(5)),
+                         new ComparisonExpression<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, column(BIG), bigint(-3))));
+    checkSameAsEval(both(new ComparisonExpression<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, column(TINY), bigint(2)),
+                         new ComparisonExpression<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, column(TINY), bigint(3))));
+    checkSameAsEval(both(new ComparisonExpression<CmpGte>(EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO, column(TINY), bigint(2)),
+                         new ComparisonExpression<CmpLte>(EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO, column(TINY), bigint(2))));
+    checkSameAsEval(both(new ComparisonExpression<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, column(BIG), bigint(INT64_MAX)),
+                         new ComparisonExpression<CmpLt>(EXPRESSION_TYPE_COMPARE_LESSTHAN, column(BIG), bigint(INT64_MAX))));
+    // A range on one column and a comparison on another
+    checkSameAsEval(both(both(new ComparisonExpression<CmpGte>(EXPRESSION_TYPE_COMPARE_GREATERTHANOREQUALTO, column(BIG), bigint(-8)),
+                              new ComparisonExpression<CmpNe>(EXPRESSION_TYPE_COMPARE_NOTEQUAL, column(DBL), bigint(0))),
+                         new ComparisonExpression<CmpLte>(EXPRESSION_TYPE_COMPARE_LESSTHANOREQUALTO, column(BIG), bigint(8))));
+}
+
+TEST_F(BatchPredicateTest, InLists)
+{
+    std::vector<NValue> values;
+    values.push_back(ValueFactory::getBigIntValue(7));
+    values.push_back(ValueFactory::getBigIntValue(-3));
+    values.push_back(ValueFactory::getBigIntValue(7));
+    values.push_back(NValue::getNullValue(VALUE_TYPE_BIGINT));
+    values.push_back(ValueFactory::getBigIntValue(0));
+    checkSameAsEval(inList(TINY, values));
+    checkSameAsEval(inList(INT, values));
+    checkSameAsEval(inList(BIG, values));
+    checkSameAsEval(both(inList(BIG, values),
+                         new ComparisonExpression<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, column(INT), bigint(0))));
+}
+
+TEST_F(BatchPredicateTest, Unsupported)
+{
+    // A string column, a comparison between columns and a disjunction aren't batched
+    boost::scoped_ptr<AbstractExpression> strings(
+            new ComparisonExpression<CmpEq>(EXPRESSION_TYPE_COMPARE_EQUAL, column(STR),
+                                            constant(ValueFactory::getNullStringValue())));
+    EXPECT_TRUE(BatchPredicate::compile(strings.get(), m_schema) == NULL);
+
+    boost::scoped_ptr<AbstractExpression> columns(
+            new ComparisonExpression<CmpEq>(EXPRESSION_TYPE_COMPARE_EQUAL, column(INT), column(BIG)));
+    EXPECT_TRUE(BatchPredicate::compile(columns.get(), m_schema) == NULL);
+
+    boost::scoped_ptr<AbstractExpression> either(
+            new ConjunctionExpression<ConjunctionOr>(EXPRESSION_TYPE_CONJUNCTION_OR,
+                    new ComparisonExpression<CmpEq>(EXPRESSION_TYPE_COMPARE_EQUAL, column(INT), bigint(1)),
+                    new ComparisonExpression<CmpEq>(EXPRESSION_TYPE_COMPARE_EQUAL, column(INT), bigint(2))));
+    EXPECT_TRUE(BatchPredicate::compile(either.get(), m_schema) == NULL);
+
+    // A fraction compared with an integer column is left to the tuple at a time predicate
+    boost::scoped_ptr<AbstractExpression> fraction(
+            new ComparisonExpression<CmpGt>(EXPRESSION_TYPE_COMPARE_GREATERTHAN, column(INT),
+                                            constant(ValueFactory::getDoubleValue(2.5))));
+    boost::scoped_ptr<BatchPredicate> batchPredicate(BatchPredicate::compile(fraction.get(), m_schema));
+    ASSERT_TRUE(batchPredicate.get() != NULL);
+    EXPECT_FALSE(batchPredicate->bind());
+}
+
+int main()
+{
+    return TestSuite::globalInstance()->runAll();
+}
@@ -910,6 +910,60 @@ public:
         return writer.write(predicateStuff);
     }
 
+    std::string generateSnapshotModePredicate(const std::string &mode) {
+        Json::Value predicateStuff;
+        predicateStuff["triggersDelete"] = false;
+        if (!mode.empty()) {
+            predicateStuff["snapshotMode"] = mode;
+        }
+
+        Json::FastWriter writer;
+        return writer.write(predicateStuff);
+    }
+
+    // Stream a snapshot to one stream per predicate string, returns the number
+    // of tuples written to each stream.
+    std::vector<int> streamSnapshotCounts(const std::vector<std::string> &predicateStrings) {
+        char buffer[1024 * 256];
+        ReferenceSerializeOutput output(buffer, sizeof(buffer));
+        output.writeInt(static_cast<int32_t>(predicateStrings.size()));
+        for (std::vector<std::string>::const_iterator i = predicateStrings.begin();
+             i != predicateStrings.end(); i++) {
+            output.writeTextString(*i);
+        }
+        ReferenceSerializeInputBE input(buffer, output.position());
+        EXPECT_TRUE(m_table->activateStream(TABLE_STREAM_SNAPSHOT, 0, m_tableId, input));
+
+        std::vector<int> counts(predicateStrings.size(), 0);
+        std::vector<std::vector<char> > buffers(predicateStrings.size(), std::vector<char>(BUFFER_SIZE));
+        int64_t remaining;
+        do {
+            TupleOutputStreamProcessor outputStreams;
+            for (size_t i = 0; i < buffers.size(); i++) {
+                outputStreams.add(&buffers[i][0], BUFFER_SIZE);
+            }
+            std::vector<int> retPositions;
+            remaining = m_table->streamMore(outputStreams, TABLE_STREAM_SNAPSHOT, retPositions);
+            EXPECT_EQ(outputStreams.size(), retPositions.size());
+            size_t i = 0;
+            for (TupleOutputStreamProcessor::iterator outputStream = outputStreams.begin();
+                 outputStream != outputStreams.end(); ++outputStream, ++i) {
+                const size_t serialized = outputStream->position();
+                if (serialized > 0) {
+                    // skip partition id and row count
+                    counts[i] += static_cast<int>((serialized - sizeof(int32_t) * 2) /
+                                                  (m_tupleWidth + sizeof(int32_t)));
+                }
+            }
+        } while (remaining > 0);
+        return counts;
+    }
+
+    int streamSnapshotCount(const std::string &mode) {
+        std::vector<std::string> predicateStrings(1, generateSnapshotModePredicate(mode));
+        return streamSnapshotCounts(predicateStrings)[0];
+    }
+
     void resetTest() {
         m_tuplesInserted = m_tuplesDeleted = 0;
     }
@@ -1277,6 +1331,82 @@ TEST_F(CopyOnWriteTest, BigTest) {
     }
 }
 
+// A delta snapshot skips the table unless it changed since the previous
+// snapshot of the chain, other snapshots don't reset the change tracking
+TEST_F(CopyOnWriteTest, IncrementalSnapshotSkipsUnchangedTable) {
+    initTable(1, 0);
+    const int tupleCount = 1000;
+    addRandomUniqueTuples(m_table, tupleCount);
+    m_engine->setUndoToken(0);
+    ExecutorContext::getExecutorContext()->setupForPlanFragments(m_engine->getCurrentUndoQuantum(),
+                                                                 0, 0, 0, 0);
+
+    // A new table has no earlier snapshot, even a delta writes it
+    ASSERT_EQ(tupleCount, streamSnapshotCount("DELTA"));
+    ASSERT_EQ(0, streamSnapshotCount("DELTA"));
+    ASSERT_EQ(tupleCount, streamSnapshotCount("BASE"));
+    ASSERT_EQ(0, streamSnapshotCount("DELTA"));
+    ASSERT_EQ(0, streamSnapshotCount("DELTA"));
+
+    // Each kind of change makes the next delta write the whole table
+    doRandomInsert(m_table);
+    ASSERT_EQ(tupleCount + 1, streamSnapshotCount("DELTA"));
+    ASSERT_EQ(0, streamSnapshotCount("DELTA"));
+    doRandomUpdate(m_table);
+    ASSERT_EQ(tupleCount + 1, streamSnapshotCount("DELTA"));
+    doRandomDelete(m_table);
+    // The deleted tuple is gone once the delete is released
+    m_engine->releaseUndoToken(m_undoToken);
+    m_engine->setUndoToken(++m_undoToken);
+    ExecutorContext::getExecutorContext()->setupForPlanFragments(m_engine->getCurrentUndoQuantum(),
+                                                                 0, 0, 0, 0);
+    ASSERT_EQ(tupleCount, streamSnapshotCount("DELTA"));
+    ASSERT_EQ(0, streamSnapshotCount("DELTA"));
+
+    // Undoing a change is a change too
+    doRandomInsert(m_table);
+    ASSERT_EQ(tupleCount + 1, streamSnapshotCount("DELTA"));
+    m_engine->undoUndoToken(m_undoToken);
+    m_engine->setUndoToken(++m_undoToken);
+    ExecutorContext::getExecutorContext()->setupForPlanFragments(m_engine->getCurrentUndoQuantum(),
+                                                                 0, 0, 0, 0);
+    ASSERT_EQ(tupleCount, streamSnapshotCount("DELTA"));
+    ASSERT_EQ(0, streamSnapshotCount("DELTA"));
+
+    // A snapshot outside of a chain writes everything and leaves the change
+    // for the next delta
+    ASSERT_EQ(tupleCount, streamSnapshotCount(""));
+    doRandomInsert(m_table);
+    ASSERT_EQ(tupleCount + 1, streamSnapshotCount(""));
+    ASSERT_EQ(tupleCount + 1, streamSnapshotCount("DELTA"));
+    ASSERT_EQ(0, streamSnapshotCount("DELTA"));
+}
+
+// The table is only skipped when every target of the stream is a delta
+TEST_F(CopyOnWriteTest, IncrementalSnapshotMixedTargets) {
+    initTable(1, 0);
+    const int tupleCount = 1000;
+    addRandomUniqueTuples(m_table, tupleCount);
+    ASSERT_EQ(tupleCount, streamSnapshotCount("BASE"));
+
+    std::vector<std::string> predicateStrings;
+    predicateStrings.push_back(generateSnapshotModePredicate("DELTA"));
+    predicateStrings.push_back(generateSnapshotModePredicate(""));
+    std::vector<int> counts = streamSnapshotCounts(predicateStrings);
+    ASSERT_EQ(tupleCount, counts[0]);
+    ASSERT_EQ(tupleCount, counts[1]);
+
+    predicateStrings[1] = generateSnapshotModePredicate("BASE");
+    counts = streamSnapshotCounts(predicateStrings);
+    ASSERT_EQ(tupleCount, counts[0]);
+    ASSERT_EQ(tupleCount, counts[1]);
+
+    predicateStrings[1] = generateSnapshotModePredicate("DELTA");
+    counts = streamSnapshotCounts(predicateStrings);
+    ASSERT_EQ(0, counts[0]);
+    ASSERT_EQ(0, counts[1]);
+}
+
 TEST_F(CopyOnWriteTest, BigTestWithUndo) {
     initTable(1, 0);
     int tupleCount = TUPLE_COUNT;
@@ -0,0 +1,220 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+#include "storage/TempTableSpill.h"
+
+#include "harness.h"
+#include "common/SQLException.h"
+#include "common/ThreadLocalPool.h"
+#include "common/TupleSchema.h"
+#include "common/ValueFactory.hpp"
+#include "common/ValuePeeker.hpp"
+#include "common/tabletuple.h"
+#include "storage/TempTableLimits.h"
+#include "storage/tablefactory.h"
+#include "storage/tableiterator.h"
+#include "storage/temptable.h"
+
+#include <boost/scoped_ptr.hpp>
+
+#include <cstdlib>
+#include <string>
+#include <unistd.h>
+#include <vector>
+
+using namespace voltdb;
+
+// Enough BIGINT, INTEGER rows for about 1.3MB of blocks
+const int NUM_OF_TUPLES = 100000;
+
+class TempTableSpillTest : public Test
+{
+public:
+    TempTableSpillTest()
+    {
+        char directory[] = "/tmp/TempTableSpillTestXXXXXX";
+        m_directory = ::mkdtemp(directory);
+        m_spill.setDirectory(m_directory);
+    }
+
+    ~TempTableSpillTest()
+    {
+        // spill files are unlinked when they are created
+        ::rmdir(m_directory.c_str());
+    }
+
+    TempTable* buildTable(TempTableLimits* limits)
+    {
+        std::vector<ValueType> columnTypes;
+        std::vector<int32_t> columnLengths;
+        std::vector<bool> columnAllowNull;
+        columnTypes.push_back(VALUE_TYPE_BIGINT);
+        columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_BIGINT));
+        columnAllowNull.push_back(false);
+        columnTypes.push_back(VALUE_TYPE_INTEGER);
+        columnLengths.push_back(NValue::getTupleStorageSize(VALUE_TYPE_INTEGER));
+        columnAllowNull.push_back(false);
+        TupleSchema* schema = TupleSchema::createTupleSchemaForTest(columnTypes, columnLengths, columnAllowNull);
+
+        std::vector<std::string> columnNames;
+        columnNames.push_back("ID");
+        columnNames.push_back("VAL");
+        return TableFactory::buildTempTable("spill_table", schema, columnNames, limits);
+    }
+
+    void insertTuples(TempTable* table, int count)
+    {
+        TableTuple tuple(table->schema());
+        boost::scoped_array<char> storage(new char[tuple.tupleLength()]);
+        tuple.move(storage.get());
+        for (int i = 0; i < count; i++) {
+            tuple.setNValue(0, ValueFactory::getBigIntValue(i));
+            tuple.setNValue(1, ValueFactory::getIntegerValue(i % 1000));
+            table->insertTempTuple(tuple);
+        }
+    }
+
+    void verifyTuples(TempTable* table, int count)
+    {
+        TableIterator iterator = table->iterator();
+        TableTuple tuple(table->schema());
+        int i = 0;
+        while (iterator.next(tuple)) {
+            ASSERT_EQ(i, ValuePeeker::peekAsBigInt(tuple.getNValue(0)));
+            ASSERT_EQ(i % 1000, ValuePeeker::peekInteger(tuple.getNValue(1)));
+            i++;
+        }
+        EXPECT_EQ(count, i);
+    }
+
+    ThreadLocalPool m_pool;
+    std::string m_directory;
+    TempTableSpill m_spill;
+};
+
+TEST_F(TempTableSpillTest, SpillFileRoundTrip)
+{
+    const int tupleLength = 16;
+    TempTableSpillFile file(&m_spill);
+    EXPECT_EQ(1, m_spill.getFiles());
+
+    // a buffer that is not a multiple of the tuple length
+    SpilledTupleWriter writer(&file, tupleLength, 100);
+    char tuple[tupleLength];
+    for (int i = 0; i < 1000; i++) {
+        ::memset(tuple, i % 128, tupleLength);
+        writer.write(tuple);
+    }
+    writer.flush();
+    EXPECT_EQ(0, writer.startOffset());
+    EXPECT_EQ(1000, writer.tupleCount());
+    EXPECT_EQ(1000 * tupleLength, file.size());
+    EXPECT_EQ(1000 * tupleLength, m_spill.getBytesWritten());
+
+    SpilledTupleReader reader(&file, 0, 1000, tupleLength, 100);
+    int count = 0;
+    char* next;
+    while ((next = reader.next()) != NULL) {
+        for (int j = 0; j < tupleLength; j++) {
+            ASSERT_EQ(count % 128, next[j]);
+        }
+        count++;
+    }
+    EXPECT_EQ(1000, count);
+    EXPECT_EQ(1000 * tupleLength, m_spill.getBytesRead());
+
+    file.truncate();
+    EXPECT_EQ(0, file.size());
+}
+
+TEST_F(TempTableSpillTest, SpillableTableStaysUnderLimit)
+{
+    TempTableLimits limits(1024 * 1024, -1, &m_spill);
+    boost::scoped_ptr<TempTable> table(buildTable(&limits));
+    table->setSpillable(true);
+
+    insertTuples(table.get(), NUM_OF_TUPLES);
+    EXPECT_TRUE(table->hasSpilledBlocks());
+    EXPECT_TRUE(limits.getAllocated() <= limits.getMemoryLimit());
+    EXPECT_TRUE(m_spill.getSpills() > 0);
+    EXPECT_TRUE(m_spill.getBytesWritten() > 0);
+    EXPECT_EQ(NUM_OF_TUPLES, table->tempTableTupleCount());
+
+    // spilled blocks come back in order, more than once
+    verifyTuples(table.get(), NUM_OF_TUPLES);
+    verifyTuples(table.get(), NUM_OF_TUPLES);
+    EXPECT_TRUE(m_spill.getBytesRead() > 0);
+
+    // the table can be refilled once emptied
+    table->deleteAllTempTuples();
+    EXPECT_FALSE(table->hasSpilledBlocks());
+    insertTuples(table.get(), NUM_OF_TUPLES);
+    verifyTuples(table.get(), NUM_OF_TUPLES);
+
+    // deleting as we go gives back what is in memory
+    TableIterator iterator = table->iteratorDeletingAsWeGo();
+    TableTuple tuple(table->schema());
+    int count = 0;
+    while (iterator.next(tuple)) {
+        count++;
+    }
+    EXPECT_EQ(NUM_OF_TUPLES, count);
+    table->deleteAllTempTuples();
+    EXPECT_TRUE(limits.getAllocated() <= 128 * 1024);
+}
+
+TEST_F(TempTableSpillTest, LimitStillAppliesWithoutSpilling)
+{
+    // tables that are not spillable fail as before
+    TempTableLimits limits(1024 * 1024, -1, &m_spill);
+    boost::scoped_ptr<TempTable> table(buildTable(&limits));
+    bool threw = false;
+    try {
+        insertTuples(table.get(), NUM_OF_TUPLES);
+    }
+    catch (SQLException& sqle) {
+        threw = true;
+    }
+    EXPECT_TRUE(threw);
+    EXPECT_FALSE(table->hasSpilledBlocks());
+
+    // as do spillable tables without a spill directory
+    TempTableSpill disabled;
+    TempTableLimits disabledLimits(1024 * 1024, -1, &disabled);
+    boost::scoped_ptr<TempTable> spillable(buildTable(&disabledLimits));
+    spillable->setSpillable(true);
+    threw = false;
+    try {
+        insertTuples(spillable.get(), NUM_OF_TUPLES);
+    }
+    catch (SQLException& sqle) {
+        threw = true;
+    }
+    EXPECT_TRUE(threw);
+    EXPECT_FALSE(spillable->hasSpilledBlocks());
+}
+
+int main()
+{
+    return TestSuite::globalInstance()->runAll();
+}
@@ -0,0 +1,206 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.network;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import org.voltdb.StoredProcedureInvocation;
+
+/**
+ * Heap allocation and GC cost of turning framed client invocations into
+ * StoredProcedureInvocations, with messages copied to the heap versus handed out as
+ * views of the pooled read buffers. Mirrors the client interface read path without the
+ * sockets so allocation is all that differs between the two runs.
+ *
+ * Usage: ReadBufferBenchmark [invocations] [parameter bytes]
+ */
+public class ReadBufferBenchmark {
+    // Network threads read in chunks of this size per selection
+    private static final int READ_SIZE = 1024 * 64;
+
+    /**
+     * Replays the same batch of framed invocations forever
+     */
+    private static class ReplayChannel implements ReadableByteChannel {
+        private final ByteBuffer m_messages;
+
+        ReplayChannel(ByteBuffer messages) {
+            m_messages = messages;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            int read = 0;
+            while (dst.hasRemaining()) {
+                if (!m_messages.hasRemaining()) {
+                    m_messages.rewind();
+                }
+                final ByteBuffer src = m_messages.duplicate();
+                src.limit(src.position() + Math.min(src.remaining(), dst.remaining()));
+                read += src.remaining();
+                m_messages.position(src.limit());
+                dst.put(src);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class InvocationHandler extends VoltProtocolHandler {
+        private final boolean m_pooled;
+        long m_invocations = 0;
+
+        InvocationHandler(boolean pooled) {
+            m_pooled = pooled;
+        }
+
+        @Override
+        protected boolean usePooledMessages() {
+            return m_pooled;
+        }
+
+        @Override
+        public int getMaxRead() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void handleMessage(ByteBuffer message, Connection c) throws IOException {
+            try {
+                StoredProcedureInvocation task = new StoredProcedureInvocation();
+                task.initFromBuffer(message, message.isDirect());
+                m_invocations++;
+            } finally {
+                releaseMessage();
+            }
+        }
+
+        @Override
+        public Runnable offBackPressure() {
+            return null;
+        }
+
+        @Override
+        public Runnable onBackPressure() {
+            return null;
+        }
+
+        @Override
+        public QueueMonitor writestreamMonitor() {
+            return null;
+        }
+    }
+
+    private static ByteBuffer messages(int paramBytes) throws IOException {
+        StoredProcedureInvocation invocation = new StoredProcedureInvocation();
+        invocation.setProcName("Insert");
+        invocation.setClientHandle(1);
+        invocation.setParams(1L, new byte[paramBytes]);
+        final int size = invocation.getSerializedSize();
+        final int count = Math.max(1, (1024 * 1024) / (size + 4));
+        ByteBuffer buf = ByteBuffer.allocate(count * (size + 4));
+        for (int i = 0; i < count; i++) {
+            buf.putInt(size);
+            invocation.flattenToBuffer(buf);
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += gc.getCollectionCount();
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += gc.getCollectionTime();
+        }
+        return millis;
+    }
+
+    private static void run(boolean pooled, long invocations, int paramBytes, boolean report) throws Exception {
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long tid = Thread.currentThread().getId();
+        final ReplayChannel channel = new ReplayChannel(messages(paramBytes));
+        final NetworkDBBPool pool = new NetworkDBBPool();
+        final NIOReadStream stream = new NIOReadStream();
+        final InvocationHandler handler = new InvocationHandler(pooled);
+
+        final long startAllocated = threads.getThreadAllocatedBytes(tid);
+        final long startGcs = gcCount();
+        final long startGcMillis = gcMillis();
+        final long start = System.nanoTime();
+        while (handler.m_invocations < invocations) {
+            stream.read(channel, READ_SIZE, pool);
+            ByteBuffer message;
+            while ((message = handler.retrieveNextMessage(stream)) != null) {
+                handler.handleMessage(message, null);
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+        final long allocated = threads.getThreadAllocatedBytes(tid) - startAllocated;
+        final long gcs = gcCount() - startGcs;
+        final long gcMillis = gcMillis() - startGcMillis;
+
+        if (report) {
+            System.out.printf("%-6s %,d invocations in %,d ms, %,d bytes allocated (%,d per invocation), " +
+                    "%d collections taking %d ms, %,d heap message bytes, %,d pooled message bytes%n",
+                    pooled ? "pooled" : "heap", handler.m_invocations,
+                    elapsed / 1000000, allocated, allocated / handler.m_invocations, gcs, gcMillis,
+                    stream.getHeapMessageBytes(false), stream.getPooledMessageBytes(false));
+        }
+        stream.shutdown();
+        pool.clear();
+    }
+
+    public static void main(String[] args) throws Exception {
+        final long invocations = args.length > 0 ? Long.parseLong(args[0]) : 5000000;
+        final int paramBytes = args.length > 1 ? Integer.parseInt(args[1]) : 512;
+
+        // Warm up both paths before measuring
+        run(false, invocations / 10, paramBytes, false);
+        run(true, invocations / 10, paramBytes, false);
+
+        run(false, invocations, paramBytes, true);
+        run(true, invocations, paramBytes, true);
+    }
+}
@@ -53,6 +53,7 @@ package org.voltcore.network;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.ByteBuffer;
 import org.voltcore.network.NIOReadStream;
+import org.voltcore.utils.DBBPool.BBContainer;
 import junit.framework.TestCase;
 import java.io.IOException;
 
@@ -216,4 +217,50 @@ public class TestNIOReadStream extends TestCase {
         assertEquals(0, stream.read(channel, Integer.MAX_VALUE, pool));
         assertEquals(0, stream.dataAvailable());
     }
+
+    public void testSlices() throws IOException {
+        NetworkDBBPool smallPool = new NetworkDBBPool(4, 8);
+        // The pool hands out the same buffer again, the stream reads into it first
+        BBContainer pooled = smallPool.acquire();
+        final ByteBuffer firstBuffer = pooled.b();
+        pooled.discard();
+        channel.nextRead = new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+        assertEquals(12, stream.read(channel, 12, smallPool));
+
+        // Contiguous in the first read buffer
+        ByteBuffer slice = stream.getSlice(4);
+        assertNotNull(slice);
+        assertEquals(4, slice.remaining());
+        for (int i = 0; i < 4; ++i) {
+            assertEquals(i, slice.get());
+        }
+        stream.releaseSlice();
+        assertEquals(8, stream.dataAvailable());
+
+        // Spans both read buffers, nothing is consumed
+        assertNull(stream.getSlice(6));
+        assertEquals(8, stream.dataAvailable());
+
+        // Uses up the first read buffer, it stays out of the pool while the slice is held
+        slice = stream.getSlice(4);
+        assertNotNull(slice);
+        assertEquals(4, slice.get());
+        BBContainer other = smallPool.acquire();
+        assertNotSame(firstBuffer, other.b());
+        other.discard();
+
+        // Once the slice is released the read buffer goes back to the pool
+        stream.releaseSlice();
+        other = smallPool.acquire();
+        assertSame(firstBuffer, other.b());
+        other.discard();
+
+        byte[] rest = new byte[4];
+        stream.getMessageBytes(rest);
+        assertEquals(8, rest[0]);
+        assertEquals(8, stream.getPooledMessageBytes(false));
+        assertEquals(4, stream.getHeapMessageBytes(false));
+        stream.shutdown();
+        smallPool.clear();
+    }
 }
@@ -57,10 +57,15 @@ import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectionKey;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.EstTime;
 import org.voltcore.utils.EstTimeUpdater;
+import org.voltcore.utils.GatheringDeferredSerialization;
 import org.voltdb.AdmissionControlGroup;
 
 import junit.framework.TestCase;
@@ -389,6 +394,60 @@ public class TestNIOWriteStream extends TestCase {
         wstream.shutdown();
     }
 
+    public void testGatheringWrite() throws IOException {
+        MockChannel channel = new MockChannel(MockChannel.SINK, 0);
+        MockPort port = new MockPort();
+        NIOWriteStream wstream = new NIOWriteStream(port);
+
+        final AtomicInteger discarded = new AtomicInteger();
+        final ByteBuffer head = ByteBuffer.allocate(10);
+        final ByteBuffer heapTable = ByteBuffer.allocate(262144 * 3);
+        final BBContainer directTable = DBBPool.allocateDirect(1000);
+        wstream.enqueue(new GatheringDeferredSerialization() {
+            @Override
+            public void serialize(ByteBuffer buf) {
+                fail();
+            }
+
+            @Override
+            public void serialize(List<BBContainer> buffers) {
+                buffers.add(DBBPool.wrapBB(head));
+                buffers.add(new BBContainer(heapTable) {
+                    @Override
+                    public void discard() {
+                        checkDoubleFree();
+                        discarded.incrementAndGet();
+                    }
+                });
+                buffers.add(new BBContainer(directTable.b()) {
+                    @Override
+                    public void discard() {
+                        checkDoubleFree();
+                        discarded.incrementAndGet();
+                    }
+                });
+            }
+
+            @Override
+            public void cancel() {
+            }
+
+            @Override
+            public int getSerializedSize() {
+                return 10 + 262144 * 3 + 1000;
+            }
+        });
+        assertTrue(port.checkWriteSet());
+        wstream.serializeQueuedWrites(pool);
+        assertEquals(0, discarded.get());
+        assertEquals(10 + 262144 * 3 + 1000, wstream.drainTo(channel));
+        assertFalse(channel.didOversizeWrite);
+        assertEquals(2, discarded.get());
+        assertTrue(wstream.isEmpty());
+        wstream.shutdown();
+        directTable.discard();
+    }
+
     public void testLastWriteDelta() throws Exception {
         EstTimeUpdater.pause = true;
         Thread.sleep(10);
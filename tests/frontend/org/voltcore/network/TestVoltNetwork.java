@@ -34,6 +34,8 @@ import java.nio.channels.Selector;
 import java.nio.channels.spi.SelectorProvider;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import jsr166y.ThreadLocalRandom;
 import junit.framework.TestCase;
@@ -72,6 +74,10 @@ public class TestVoltNetwork extends TestCase {
             return null;
         }
 
+        @Override
+        public void readComplete(Connection c) {
+        }
+
         @Override
         public void started(Connection c) {
             // TODO Auto-generated method stub
@@ -288,4 +294,29 @@ public class TestVoltNetwork extends TestCase {
         vn.shutdown();
         assertEquals(SelectionKey.OP_ACCEPT, vp.readyOps());
     }
+
+    /**
+     * Queued tasks must run promptly whether the network thread is busy polling or has
+     * parked in a blocking select, since wakeups are skipped while it isn't parked.
+     */
+    public void testBusyPollRunsQueuedTasks() throws Exception {
+        VoltNetwork vn = new VoltNetwork(0, null, "Test", TimeUnit.MILLISECONDS.toNanos(20));
+        vn.start();
+        try {
+            for (int i = 0; i < 20; i++) {
+                final CountDownLatch ran = new CountDownLatch(1);
+                vn.queueTask(new Runnable() {
+                    @Override
+                    public void run() {
+                        ran.countDown();
+                    }
+                });
+                assertTrue(ran.await(10, TimeUnit.SECONDS));
+                // Alternate between catching the thread spinning and parked
+                Thread.sleep(i % 2 == 0 ? 1 : 40);
+            }
+        } finally {
+            vn.shutdown();
+        }
+    }
 }
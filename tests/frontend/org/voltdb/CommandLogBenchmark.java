@@ -0,0 +1,134 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.voltdb.TestLocalCommandLog.CountingListener;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.utils.VoltFile;
+
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+
+/**
+ * Measures command log throughput with one logging thread per simulated site, each
+ * keeping a fixed number of transactions outstanding, the way a scheduler does when
+ * the client keeps it busy. Compares synchronous and asynchronous logging against the
+ * DummyCommandLog used when logging is disabled.
+ *
+ * Usage: CommandLogBenchmark [directory] [sites] [seconds] [fsync interval ms]
+ */
+public class CommandLogBenchmark {
+
+    static final int OUTSTANDING_PER_SITE = 200;
+
+    enum Mode { SYNC, ASYNC, DISABLED }
+
+    public static void main(String[] args) throws Exception {
+        final File dir = new File(args.length > 0 ? args[0] : "/tmp/commandlog_benchmark");
+        final int sites = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        final int fsyncInterval = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+        for (Mode mode : Mode.values()) {
+            VoltFile.recursivelyDelete(dir);
+            dir.mkdirs();
+            final long txns = run(mode, dir, sites, seconds, fsyncInterval);
+            System.out.printf("%-8s %d sites: %,d txns in %ds, %,.0f txns/sec%n",
+                              mode, sites, txns, seconds, txns / (double)seconds);
+        }
+        VoltFile.recursivelyDelete(dir);
+    }
+
+    static long run(final Mode mode, File dir, int sites, final int seconds, int fsyncInterval) throws Exception {
+        final CommandLog log;
+        if (mode == Mode.DISABLED) {
+            log = new DummyCommandLog();
+        }
+        else {
+            log = new LocalCommandLog(mode == Mode.SYNC, fsyncInterval, Integer.MAX_VALUE,
+                                      dir.getPath(), dir.getPath());
+            log.init(1024, Long.MIN_VALUE, sites, null, new HashMap<Integer, Long>());
+        }
+
+        final CyclicBarrier start = new CyclicBarrier(sites);
+        final ExecutorService es = Executors.newFixedThreadPool(sites);
+        final List<Future<Long>> results = new ArrayList<Future<Long>>();
+        for (int i = 0; i < sites; i++) {
+            final int partition = i;
+            results.add(es.submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    final CountingListener listener = new CountingListener();
+                    log.registerDurabilityListener(listener);
+                    final long zero = TxnEgo.makeZero(partition).getTxnId();
+                    final StoredProcedureInvocation spi = new StoredProcedureInvocation();
+                    spi.setProcName("Insert");
+                    spi.setParams(partition, "payload of a typical small write transaction");
+
+                    start.await();
+                    final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+                    long logged = 0;
+                    while (System.nanoTime() < end) {
+                        final long txnId = zero + ((logged + 1) << 14);
+                        final Iv2InitiateTaskMessage msg = new Iv2InitiateTaskMessage(
+                                0, 0, -1, txnId, logged, false, true, spi, logged, 1, false);
+                        final ListenableFuture<Object> backpressure =
+                                log.log(msg, txnId, null, listener, null);
+                        if (backpressure != null && !backpressure.isDone()) {
+                            backpressure.get();
+                        }
+                        logged++;
+                        if (mode == Mode.SYNC && logged >= OUTSTANDING_PER_SITE) {
+                            // A synchronous scheduler only responds once the batch is durable
+                            listener.awaitDurable(logged - OUTSTANDING_PER_SITE + 1);
+                        }
+                    }
+                    if (mode != Mode.DISABLED) {
+                        listener.awaitDurable(logged);
+                    }
+                    return logged;
+                }
+            }));
+        }
+
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get();
+        }
+        es.shutdown();
+        log.shutdown();
+        return total;
+    }
+}
@@ -0,0 +1,229 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.voltdb.TestInternalConnectionHandler.Submission;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.importer.AbstractImporter;
+import org.voltdb.importer.ImporterBatchCallback;
+import org.voltdb.importer.ImporterStatsCollector;
+
+/**
+ * The callback of a batch gets every response, in the order of the records,
+ * once the last of them completes.
+ */
+public class TestImporterServerAdapterImpl {
+
+    private static final int RECORDS = 40;
+
+    private static CatalogContext m_context;
+
+    private final List<Submission> m_submissions = Collections.synchronizedList(new ArrayList<Submission>());
+    private final AtomicInteger m_rejectedPartition = new AtomicInteger(Integer.MIN_VALUE);
+    private ImporterServerAdapterImpl m_serverAdapter;
+    private AbstractImporter m_importer;
+
+    /**
+     * Records each completion of the batch
+     */
+    static class BatchCallback implements ImporterBatchCallback {
+        final List<List<Object[]>> m_paramsLists = Collections.synchronizedList(new ArrayList<List<Object[]>>());
+        final List<List<ClientResponse>> m_responses = Collections.synchronizedList(new ArrayList<List<ClientResponse>>());
+
+        @Override
+        public void batchCompleted(List<Object[]> paramsList, List<ClientResponse> responses) {
+            m_paramsLists.add(paramsList);
+            m_responses.add(new ArrayList<>(responses));
+        }
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        m_context = TestInternalConnectionHandler.buildCatalog();
+    }
+
+    @Before
+    public void setUp() {
+        InternalConnectionHandler handler = new InternalConnectionHandler(
+                TestInternalConnectionHandler.mockAdapter(m_submissions, m_rejectedPartition), null);
+        ClientInterface ci = mock(ClientInterface.class);
+        doReturn(handler).when(ci).getInternalConnectionHandler();
+        VoltDBInterface volt = mock(VoltDBInterface.class);
+        doReturn(m_context).when(volt).getCatalogContext();
+        doReturn(ci).when(volt).getClientInterface();
+        VoltDB.replaceVoltDBInstanceForTest(volt);
+
+        m_serverAdapter = new ImporterServerAdapterImpl(mock(ImporterStatsCollector.class));
+        m_importer = mock(AbstractImporter.class);
+        doReturn("TestImporter").when(m_importer).getName();
+    }
+
+    @After
+    public void tearDown() {
+        VoltDB.replaceVoltDBInstanceForTest(null);
+    }
+
+    private static ClientResponse response(byte status, int record) {
+        return new ClientResponseImpl(status, new VoltTable[0], "record " + record);
+    }
+
+    /**
+     * The callback given for each record, from the submissions
+     */
+    private ProcedureCallback[] recordCallbacks() {
+        final ProcedureCallback callbacks[] = new ProcedureCallback[RECORDS];
+        for (Submission submission : m_submissions) {
+            for (int i = 0; i < submission.m_tasks.size(); i++) {
+                final int record = ((Number)submission.m_tasks.get(i).getParameterAtIndex(0)).intValue();
+                callbacks[record] = submission.m_callbacks.get(i);
+            }
+        }
+        return callbacks;
+    }
+
+    @Test
+    public void testCompletesOnceInRecordOrder() throws Exception {
+        final BatchCallback batch = new BatchCallback();
+        final List<Object[]> paramsList = TestInternalConnectionHandler.records();
+        assertEquals(RECORDS, m_serverAdapter.callProcedures(m_importer, batch, "insertA", paramsList));
+
+        // Respond out of order, as the partitions would
+        final ProcedureCallback callbacks[] = recordCallbacks();
+        for (int i = RECORDS - 1; i > 0; i -= 2) {
+            callbacks[i].clientCallback(response(ClientResponse.SUCCESS, i));
+        }
+        for (int i = 0; i < RECORDS - 2; i += 2) {
+            callbacks[i].clientCallback(response(ClientResponse.SUCCESS, i));
+        }
+        assertEquals(0, batch.m_responses.size());
+        callbacks[RECORDS - 2].clientCallback(response(ClientResponse.SUCCESS, RECORDS - 2));
+
+        assertEquals(1, batch.m_responses.size());
+        assertSame(paramsList, batch.m_paramsLists.get(0));
+        final List<ClientResponse> responses = batch.m_responses.get(0);
+        assertEquals(RECORDS, responses.size());
+        for (int i = 0; i < RECORDS; i++) {
+            assertEquals("record " + i, responses.get(i).getStatusString());
+        }
+    }
+
+    @Test
+    public void testRejectedRecordsFailGracefully() throws Exception {
+        m_rejectedPartition.set(TestInternalConnectionHandler.partitionOf(0));
+        final BatchCallback batch = new BatchCallback();
+        final int queued = m_serverAdapter.callProcedures(
+                m_importer, batch, "insertA", TestInternalConnectionHandler.records());
+
+        final ProcedureCallback callbacks[] = recordCallbacks();
+        int rejected = 0;
+        for (int i = 0; i < RECORDS; i++) {
+            if (callbacks[i] == null) {
+                rejected++;
+            } else {
+                assertEquals(0, batch.m_responses.size());
+                callbacks[i].clientCallback(response(ClientResponse.SUCCESS, i));
+            }
+        }
+        assertEquals(RECORDS - rejected, queued);
+
+        assertEquals(1, batch.m_responses.size());
+        final List<ClientResponse> responses = batch.m_responses.get(0);
+        for (int i = 0; i < RECORDS; i++) {
+            if (callbacks[i] == null) {
+                assertEquals(ClientResponse.GRACEFUL_FAILURE, responses.get(i).getStatus());
+            } else {
+                assertEquals(ClientResponse.SUCCESS, responses.get(i).getStatus());
+                assertEquals("record " + i, responses.get(i).getStatusString());
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownProcedureCompletesRightAway() {
+        final BatchCallback batch = new BatchCallback();
+        assertEquals(0, m_serverAdapter.callProcedures(
+                m_importer, batch, "noSuchProc", TestInternalConnectionHandler.records()));
+        assertEquals(1, batch.m_responses.size());
+        for (ClientResponse response : batch.m_responses.get(0)) {
+            assertEquals(ClientResponse.GRACEFUL_FAILURE, response.getStatus());
+        }
+    }
+
+    @Test
+    public void testEmptyBatchIsNotCalledBack() {
+        final BatchCallback batch = new BatchCallback();
+        assertEquals(0, m_serverAdapter.callProcedures(m_importer, batch, "insertA", new ArrayList<Object[]>()));
+        assertEquals(0, batch.m_responses.size());
+        assertEquals(0, m_submissions.size());
+    }
+
+    /*
+     * An invocation whose response is unknown, because a node failed, is resubmitted by the
+     * adapter with the same callback. Only the response of the resubmission counts.
+     */
+    @Test
+    public void testResponseUnknownWaitsForResubmission() throws Exception {
+        final BatchCallback batch = new BatchCallback();
+        assertEquals(RECORDS, m_serverAdapter.callProcedures(
+                m_importer, batch, "insertA", TestInternalConnectionHandler.records()));
+
+        final ProcedureCallback callbacks[] = recordCallbacks();
+        for (int i = 1; i < RECORDS; i++) {
+            callbacks[i].clientCallback(response(ClientResponse.SUCCESS, i));
+        }
+        callbacks[0].clientCallback(response(ClientResponse.RESPONSE_UNKNOWN, 0));
+        callbacks[0].clientCallback(response(ClientResponse.RESPONSE_UNKNOWN, 0));
+        assertEquals(0, batch.m_responses.size());
+
+        callbacks[0].clientCallback(response(ClientResponse.SUCCESS, 0));
+        assertEquals(1, batch.m_responses.size());
+        assertEquals(ClientResponse.SUCCESS, batch.m_responses.get(0).get(0).getStatus());
+        assertEquals("record 0", batch.m_responses.get(0).get(0).getStatusString());
+    }
+
+    @Test
+    public void testWithoutBatchCallback() {
+        assertEquals(RECORDS, m_serverAdapter.callProcedures(
+                m_importer, null, "insertA", TestInternalConnectionHandler.records()));
+        for (Submission submission : m_submissions) {
+            assertNull(submission.m_callbacks);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.voltcore.messaging.HostMessenger;
+import org.voltdb.catalog.Catalog;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureCallback;
+import org.voltdb.compiler.VoltProjectBuilder;
+import org.voltdb.settings.DbSettings;
+import org.voltdb.utils.CatalogUtil;
+import org.voltdb.utils.MiscUtils;
+
+/**
+ * A batch of invocations is grouped by partition, each partition's group is
+ * handed to the adapter in one go and the invocations that can't be queued
+ * are completed right away.
+ */
+public class TestInternalConnectionHandler {
+
+    private static final int RECORDS = 40;
+
+    private static CatalogContext m_context;
+
+    private InternalClientResponseAdapter m_adapter;
+    private InternalConnectionHandler m_handler;
+    private InternalConnectionContext m_caller;
+    private final List<Submission> m_submissions = Collections.synchronizedList(new ArrayList<Submission>());
+    // Partition whose submissions the adapter rejects, if any
+    private final AtomicInteger m_rejectedPartition = new AtomicInteger(Integer.MIN_VALUE);
+
+    /**
+     * The tasks of one partition given to the adapter, with their callbacks
+     */
+    static class Submission {
+        final int m_partition;
+        final List<StoredProcedureInvocation> m_tasks;
+        final List<ProcedureCallback> m_callbacks;
+
+        Submission(int partition, List<StoredProcedureInvocation> tasks, List<ProcedureCallback> callbacks) {
+            m_partition = partition;
+            m_tasks = new ArrayList<>(tasks);
+            m_callbacks = callbacks == null ? null : new ArrayList<>(callbacks);
+        }
+    }
+
+    /**
+     * Remembers the record it was made for and the responses it got
+     */
+    static class RecordCallback implements ProcedureCallback {
+        final int m_record;
+        final List<ClientResponse> m_responses = Collections.synchronizedList(new ArrayList<ClientResponse>());
+
+        RecordCallback(int record) {
+            m_record = record;
+        }
+
+        @Override
+        public void clientCallback(ClientResponse response) {
+            m_responses.add(response);
+        }
+    }
+
+    static CatalogContext buildCatalog() throws IOException {
+        File cat = File.createTempFile("temp-internal-connection-handler", "catalog");
+        cat.deleteOnExit();
+
+        VoltProjectBuilder builder = new VoltProjectBuilder();
+        builder.addLiteralSchema("create table A (i integer not null, primary key (i));");
+        builder.addPartitionInfo("A", "i");
+        builder.addStmtProcedure("insertA", "insert into A values (?)", "A.i: 0");
+        if (!builder.compile(cat.getAbsolutePath())) {
+            throw new IOException();
+        }
+
+        byte[] bytes = MiscUtils.fileToBytes(cat);
+        String serializedCat =
+            CatalogUtil.getSerializedCatalogStringFromJar(CatalogUtil.loadAndUpgradeCatalogFromJar(bytes, false).getFirst());
+        Catalog catalog = new Catalog();
+        catalog.execute(serializedCat);
+
+        String deploymentPath = builder.getPathToDeployment();
+        CatalogUtil.compileDeployment(catalog, deploymentPath, false);
+        DbSettings dbSettings = CatalogUtil.asDbSettings(deploymentPath);
+        TheHashinator.initialize(TheHashinator.getConfiguredHashinatorClass(), TheHashinator.getConfigureBytes(3));
+        return new CatalogContext(0, 0, catalog, dbSettings, bytes, null, new byte[] {}, 0, mock(HostMessenger.class));
+    }
+
+    /**
+     * An adapter that records the submissions instead of running them
+     */
+    @SuppressWarnings("unchecked")
+    static InternalClientResponseAdapter mockAdapter(final List<Submission> submissions,
+                                                     final AtomicInteger rejectedPartition) {
+        InternalClientResponseAdapter adapter = mock(InternalClientResponseAdapter.class);
+        doReturn(1L).when(adapter).connectionId();
+        doReturn(false).when(adapter).hasBackPressure();
+        doAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                final Object[] args = invocation.getArguments();
+                final int partition = (Integer)args[7];
+                if (partition == rejectedPartition.get()) {
+                    return false;
+                }
+                submissions.add(new Submission(partition,
+                        (List<StoredProcedureInvocation>)args[5], (List<ProcedureCallback>)args[3]));
+                return true;
+            }
+        }).when(adapter).createTransactions(any(InternalAdapterTaskAttributes.class), anyString(), any(Procedure.class),
+                any(List.class), any(InternalConnectionStatsCollector.class), any(List.class),
+                any(AuthSystem.AuthUser.class), anyInt(), anyLong());
+        return adapter;
+    }
+
+    static int partitionOf(int record) {
+        return TheHashinator.getPartitionForParameter(VoltType.INTEGER.getValue(), record);
+    }
+
+    static List<Object[]> records() {
+        List<Object[]> paramsList = new ArrayList<>();
+        for (int i = 0; i < RECORDS; i++) {
+            paramsList.add(new Object[] { i });
+        }
+        return paramsList;
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        m_context = buildCatalog();
+    }
+
+    @Before
+    public void setUp() {
+        VoltDBInterface volt = mock(VoltDBInterface.class);
+        doReturn(m_context).when(volt).getCatalogContext();
+        VoltDB.replaceVoltDBInstanceForTest(volt);
+        m_adapter = mockAdapter(m_submissions, m_rejectedPartition);
+        m_handler = new InternalConnectionHandler(m_adapter, null);
+        m_caller = mock(InternalConnectionContext.class);
+        doReturn("TestImporter").when(m_caller).getName();
+    }
+
+    @After
+    public void tearDown() {
+        VoltDB.replaceVoltDBInstanceForTest(null);
+    }
+
+    private List<ProcedureCallback> callbacks() {
+        List<ProcedureCallback> callbacks = new ArrayList<>();
+        for (int i = 0; i < RECORDS; i++) {
+            callbacks.add(new RecordCallback(i));
+        }
+        return callbacks;
+    }
+
+    @Test
+    public void testGroupsByPartition() {
+        final List<ProcedureCallback> callbacks = callbacks();
+        assertEquals(RECORDS, m_handler.callProcedures(m_caller, null, "insertA", records(), callbacks));
+        verify(m_caller).setBackPressure(false);
+
+        // One submission per partition holding its records in the order they were given
+        final Set<Integer> partitions = new HashSet<>();
+        int records = 0;
+        for (Submission submission : m_submissions) {
+            assertTrue(partitions.add(submission.m_partition));
+            assertEquals(submission.m_tasks.size(), submission.m_callbacks.size());
+            int previous = -1;
+            for (int i = 0; i < submission.m_tasks.size(); i++) {
+                final StoredProcedureInvocation task = submission.m_tasks.get(i);
+                final int record = ((Number)task.getParameterAtIndex(0)).intValue();
+                assertEquals("insertA", task.getProcName());
+                assertEquals(submission.m_partition, partitionOf(record));
+                assertTrue(record > previous);
+                previous = record;
+                // The callback of each task is the one given for its record
+                assertEquals(record, ((RecordCallback)submission.m_callbacks.get(i)).m_record);
+            }
+            records += submission.m_tasks.size();
+        }
+        assertEquals(RECORDS, records);
+        assertEquals(3, partitions.size());
+
+        // Nothing completes until the adapter responds
+        for (ProcedureCallback cb : callbacks) {
+            assertTrue(((RecordCallback)cb).m_responses.isEmpty());
+        }
+    }
+
+    @Test
+    public void testWithoutCallbacks() {
+        assertEquals(RECORDS, m_handler.callProcedures(m_caller, null, "insertA", records(), null));
+        int records = 0;
+        for (Submission submission : m_submissions) {
+            assertNull(submission.m_callbacks);
+            records += submission.m_tasks.size();
+        }
+        assertEquals(RECORDS, records);
+    }
+
+    @Test
+    public void testRejectedPartitionFailsGracefully() {
+        m_rejectedPartition.set(partitionOf(0));
+        final List<ProcedureCallback> callbacks = callbacks();
+        int rejected = 0;
+        for (int i = 0; i < RECORDS; i++) {
+            if (partitionOf(i) == m_rejectedPartition.get()) {
+                rejected++;
+            }
+        }
+        assertEquals(RECORDS - rejected, m_handler.callProcedures(m_caller, null, "insertA", records(), callbacks));
+
+        for (int i = 0; i < RECORDS; i++) {
+            final RecordCallback cb = (RecordCallback)callbacks.get(i);
+            if (partitionOf(i) == m_rejectedPartition.get()) {
+                // Completed right away, only once
+                assertEquals(1, cb.m_responses.size());
+                assertEquals(ClientResponse.GRACEFUL_FAILURE, cb.m_responses.get(0).getStatus());
+            } else {
+                assertTrue(cb.m_responses.isEmpty());
+            }
+        }
+        for (Submission submission : m_submissions) {
+            assertTrue(submission.m_partition != m_rejectedPartition.get());
+        }
+    }
+
+    @Test
+    public void testUnknownProcedureFailsGracefully() {
+        final List<ProcedureCallback> callbacks = callbacks();
+        assertEquals(0, m_handler.callProcedures(m_caller, null, "noSuchProc", records(), callbacks));
+        for (ProcedureCallback cb : callbacks) {
+            final List<ClientResponse> responses = ((RecordCallback)cb).m_responses;
+            assertEquals(1, responses.size());
+            assertEquals(ClientResponse.GRACEFUL_FAILURE, responses.get(0).getStatus());
+            assertNotNull(responses.get(0).getStatusString());
+        }
+        verify(m_adapter, never()).createTransactions(any(InternalAdapterTaskAttributes.class), anyString(),
+                any(Procedure.class), any(List.class), any(InternalConnectionStatsCollector.class), any(List.class),
+                any(AuthSystem.AuthUser.class), anyInt(), anyLong());
+    }
+}
@@ -0,0 +1,290 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.voltdb.CommandLog.CompletionChecks;
+import org.voltdb.CommandLog.DurabilityListener;
+import org.voltdb.iv2.MpInitiator;
+import org.voltdb.iv2.SpScheduler.DurableUniqueIdListener;
+import org.voltdb.iv2.TransactionTask;
+import org.voltdb.iv2.TxnEgo;
+import org.voltdb.messaging.Iv2InitiateTaskMessage;
+import org.voltdb.messaging.VoltDbMessageFactory;
+
+public class TestLocalCommandLog {
+    static {
+        // Keep preallocation cheap, big enough for a handful of entries per segment
+        System.setProperty("COMMANDLOG_SEGMENT_BYTES", Integer.toString(64 * 1024));
+    }
+
+    @Rule
+    public final TemporaryFolder m_tmp = new TemporaryFolder();
+
+    /**
+     * Counts the transactions each batch makes durable, standing in for SpDurabilityListener.
+     */
+    static class CountingListener implements DurabilityListener {
+        private int m_tasks = 0;
+        private long m_durable = 0;
+
+        @Override
+        public void setUniqueIdListener(DurableUniqueIdListener listener) {}
+
+        @Override
+        public void createFirstCompletionCheck(boolean isSyncLogging, boolean commandLoggingEnabled) {}
+
+        @Override
+        public boolean completionCheckInitialized() {
+            return true;
+        }
+
+        @Override
+        public synchronized void addTransaction(TransactionTask pendingTask) {
+            m_tasks++;
+        }
+
+        @Override
+        public void initializeLastDurableUniqueId(long uniqueId) {}
+
+        @Override
+        public synchronized int getNumberOfTasks() {
+            return m_tasks;
+        }
+
+        @Override
+        public synchronized CompletionChecks startNewTaskList(int nextMaxRowCnt) {
+            final int tasks = m_tasks;
+            m_tasks = 0;
+            return new CountingChecks(tasks);
+        }
+
+        @Override
+        public synchronized void processDurabilityChecks(CompletionChecks completionChecks) {
+            m_durable += completionChecks.getTaskListSize();
+            notifyAll();
+        }
+
+        synchronized void awaitDurable(long count) throws InterruptedException {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (m_durable < count) {
+                final long remaining = deadline - System.nanoTime();
+                assertTrue("Timed out waiting for " + count + " durable txns, have " + m_durable, remaining > 0);
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+    }
+
+    static class CountingChecks implements CompletionChecks {
+        private final int m_size;
+
+        CountingChecks(int size) {
+            m_size = size;
+        }
+
+        @Override
+        public CompletionChecks startNewCheckList(int startSize) {
+            return new CountingChecks(startSize);
+        }
+
+        @Override
+        public void addTask(TransactionTask task) {}
+
+        @Override
+        public void setLastDurableUniqueId(long uniqueId) {}
+
+        @Override
+        public boolean isChanged() {
+            return m_size > 0;
+        }
+
+        @Override
+        public int getTaskListSize() {
+            return m_size;
+        }
+
+        @Override
+        public void processChecks() {}
+    }
+
+    private static Iv2InitiateTaskMessage makeTxn(long txnId, int sequence, boolean isReadOnly) {
+        final StoredProcedureInvocation spi = new StoredProcedureInvocation();
+        spi.setClientHandle(sequence);
+        spi.setProcName("Insert");
+        spi.setParams(sequence, "value " + sequence);
+        return new Iv2InitiateTaskMessage(0, 0, -1, txnId, sequence, isReadOnly,
+                                          TxnEgo.getPartitionId(txnId) != MpInitiator.MP_INIT_PID,
+                                          spi, sequence, 1, false);
+    }
+
+    private static long spTxnId(int partition, int sequence) {
+        // The partition id occupies the low 14 bits, the sequence number the rest
+        return TxnEgo.makeZero(partition).getTxnId() + ((long)sequence << 14);
+    }
+
+    private LocalCommandLog startLog(File dir, boolean synchronous) {
+        final LocalCommandLog log = new LocalCommandLog(synchronous, 2, 1000, dir.getPath(), dir.getPath());
+        assertTrue(log.needsInitialization());
+        log.init(1, Long.MIN_VALUE, 2, null, new HashMap<Integer, Long>());
+        assertFalse(log.needsInitialization());
+        return log;
+    }
+
+    private static List<CommandLogSegment.Entry> readAll(File dir) throws Exception {
+        final List<CommandLogSegment.Entry> entries = new ArrayList<CommandLogSegment.Entry>();
+        for (CommandLogSegment.Reader reader : CommandLogSegment.openAll(dir)) {
+            CommandLogSegment.Entry entry;
+            while ((entry = reader.next()) != null) {
+                entries.add(entry);
+            }
+            reader.close();
+        }
+        return entries;
+    }
+
+    @Test
+    public void testSyncLoggingCompletesAfterWrite() throws Exception {
+        final File dir = m_tmp.newFolder();
+        final LocalCommandLog log = startLog(dir, true);
+        final CountingListener listener = new CountingListener();
+        log.registerDurabilityListener(listener);
+
+        final int txnCount = 100;
+        for (int i = 0; i < txnCount; i++) {
+            final long txnId = spTxnId(i % 2, i);
+            assertNull(log.log(makeTxn(txnId, i, false), txnId, null, listener, null));
+        }
+        listener.awaitDurable(txnCount);
+        log.shutdown();
+
+        final List<CommandLogSegment.Entry> entries = readAll(dir);
+        assertEquals(txnCount, entries.size());
+        final VoltDbMessageFactory factory = new VoltDbMessageFactory();
+        for (int i = 0; i < txnCount; i++) {
+            final CommandLogSegment.Entry entry = entries.get(i);
+            assertEquals(CommandLogSegment.INVOCATION_ENTRY, entry.type);
+            assertEquals(spTxnId(i % 2, i), entry.getTxnId());
+            assertEquals(i, entry.getUniqueId());
+            final Iv2InitiateTaskMessage msg =
+                    (Iv2InitiateTaskMessage)factory.createMessageFromBuffer(entry.getMessage(), -1);
+            assertEquals("Insert", msg.getStoredProcedureName());
+            assertEquals(i, msg.getStoredProcedureInvocation().getClientHandle());
+        }
+    }
+
+    @Test
+    public void testAsyncLoggingDoesNotBlock() throws Exception {
+        final File dir = m_tmp.newFolder();
+        final LocalCommandLog log = startLog(dir, false);
+        assertTrue(log.canOfferTask());
+        final CountingListener listener = new CountingListener();
+        log.registerDurabilityListener(listener);
+
+        final long txnId = spTxnId(0, 1);
+        assertNotNull(log.log(makeTxn(txnId, 1, false), txnId, null, listener, null));
+        listener.awaitDurable(1);
+        log.shutdown();
+        assertEquals(1, readAll(dir).size());
+    }
+
+    @Test
+    public void testReadOnlyTxnsAreNotWritten() throws Exception {
+        final File dir = m_tmp.newFolder();
+        final LocalCommandLog log = startLog(dir, true);
+        final CountingListener listener = new CountingListener();
+        log.registerDurabilityListener(listener);
+
+        log.log(makeTxn(spTxnId(0, 1), 1, true), spTxnId(0, 1), null, listener, null);
+        log.log(makeTxn(spTxnId(0, 2), 2, false), spTxnId(0, 2), null, listener, null);
+        listener.awaitDurable(2);
+        log.shutdown();
+
+        final List<CommandLogSegment.Entry> entries = readAll(dir);
+        assertEquals(1, entries.size());
+        assertEquals(spTxnId(0, 2), entries.get(0).getTxnId());
+    }
+
+    @Test
+    public void testSegmentRollover() throws Exception {
+        final File dir = m_tmp.newFolder();
+        final LocalCommandLog log = startLog(dir, true);
+        final CountingListener listener = new CountingListener();
+        log.registerDurabilityListener(listener);
+
+        final int txnCount = 5000;
+        for (int i = 0; i < txnCount; i++) {
+            final long txnId = spTxnId(0, i);
+            log.log(makeTxn(txnId, i, false), txnId, null, listener, null);
+        }
+        listener.awaitDurable(txnCount);
+        log.shutdown();
+
+        final List<CommandLogSegment.Reader> readers = CommandLogSegment.openAll(dir);
+        assertTrue("Expected the log to roll, found " + readers.size() + " segments", readers.size() > 1);
+        // Each segment records where the previous one left off
+        for (int i = 1; i < readers.size(); i++) {
+            assertNotNull(readers.get(i).getPreviousTxnIds().get(0));
+        }
+        for (CommandLogSegment.Reader reader : readers) {
+            reader.close();
+        }
+
+        final List<CommandLogSegment.Entry> entries = readAll(dir);
+        assertEquals(txnCount, entries.size());
+        for (int i = 0; i < txnCount; i++) {
+            assertEquals(i, entries.get(i).getUniqueId());
+        }
+    }
+
+    @Test
+    public void testFaultIsDurable() throws Exception {
+        final File dir = m_tmp.newFolder();
+        final LocalCommandLog log = startLog(dir, true);
+        final Set<Long> survivors = new HashSet<Long>();
+        survivors.add(1L);
+        survivors.add(2L);
+        assertTrue(log.logIv2Fault(3L, survivors, 0, spTxnId(0, 1)).get(30, TimeUnit.SECONDS));
+        log.shutdown();
+
+        final List<CommandLogSegment.Entry> entries = readAll(dir);
+        assertEquals(1, entries.size());
+        assertEquals(CommandLogSegment.FAULT_ENTRY, entries.get(0).type);
+    }
+}
@@ -26,12 +26,17 @@ package org.voltdb;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 import org.json_voltpatches.JSONException;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.TableHelper.RandomTable;
 import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.client.ClientResponse;
 import org.voltdb.types.GeographyPointValue;
 import org.voltdb.types.GeographyValue;
 import org.voltdb.types.TimestampType;
@@ -1435,4 +1440,64 @@ public class TestVoltTable extends TestCase {
             }
         }
     }
+    public void testFlattenResponseToBuffers() {
+        VoltTable small = new VoltTable(new ColumnInfo("foo", VoltType.BIGINT));
+        small.addRow(1);
+        VoltTable large = new VoltTable(new ColumnInfo("foo", VoltType.STRING));
+        for (int i = 0; i < 100; i++) {
+            large.addRow("row " + i);
+        }
+        ByteBuffer serialized = PrivateVoltTableFactory.getTableDataReference(large);
+        BBContainer cont = DBBPool.allocateDirectAndPool(serialized.remaining());
+        cont.b().put(serialized);
+        cont.b().flip();
+        VoltTable pooled = PrivateVoltTableFactory.createVoltTableFromPooledBuffer(cont);
+        assertEquals(large, pooled);
+
+        ClientResponseImpl response = new ClientResponseImpl(ClientResponse.SUCCESS,
+                new VoltTable[] { small, large, small, pooled }, "status");
+        response.setClientHandle(42);
+        ByteBuffer expected = ByteBuffer.allocate(response.getSerializedSize() + 4);
+        expected.putInt(expected.capacity() - 4);
+        response.flattenToBuffer(expected);
+        expected.flip();
+
+        // Everything but the two large tables is copied
+        List<BBContainer> buffers = new ArrayList<BBContainer>();
+        response.flattenToBuffers(buffers, 100);
+        assertEquals(5, buffers.size());
+        assertNull(PrivateVoltTableFactory.takePooledBacking(pooled));
+        ByteBuffer actual = ByteBuffer.allocate(expected.remaining());
+        for (BBContainer buffer : buffers) {
+            actual.put(buffer.b());
+            buffer.discard();
+        }
+        actual.flip();
+        assertEquals(expected, actual);
+    }
+
+    public void testDiscardPooledResults() {
+        VoltTable table = new VoltTable(new ColumnInfo("foo", VoltType.BIGINT));
+        table.addRow(1);
+        ByteBuffer serialized = PrivateVoltTableFactory.getTableDataReference(table);
+        final boolean[] discarded = new boolean[1];
+        BBContainer cont = new BBContainer(ByteBuffer.allocateDirect(serialized.remaining())) {
+            @Override
+            public void discard() {
+                checkDoubleFree();
+                discarded[0] = true;
+            }
+        };
+        cont.b().put(serialized);
+        cont.b().flip();
+        VoltTable pooled = PrivateVoltTableFactory.createVoltTableFromPooledBuffer(cont);
+
+        ClientResponseImpl response = new ClientResponseImpl(ClientResponse.SUCCESS,
+                new VoltTable[] { table, pooled }, "status");
+        response.discardPooledResults();
+        assertTrue(discarded[0]);
+        assertNull(PrivateVoltTableFactory.takePooledBacking(pooled));
+        // Already given back, nothing more to discard
+        response.discardPooledResults();
+    }
 }
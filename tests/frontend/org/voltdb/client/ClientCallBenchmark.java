@@ -0,0 +1,304 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltcore.network.Connection;
+import org.voltcore.network.QueueMonitor;
+import org.voltcore.network.VoltNetworkPool;
+import org.voltcore.network.VoltProtocolHandler;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+
+/**
+ * Multi-threaded client call throughput against a mock server that answers every
+ * invocation immediately, isolating the cost of the client's request bookkeeping,
+ * connection selection and network path from server execution.
+ *
+ * Usage: ClientCallBenchmark [threads] [seconds] [connections] [coalescing window micros]
+ *                            [server busy poll micros]
+ *
+ * With a coalescing window the histogram of invocations per write is printed as well.
+ * Call latency percentiles are reported for each run, the server busy poll setting
+ * switches the mock server's network threads to spin-then-park selection.
+ */
+public class ClientCallBenchmark {
+
+    /**
+     * Accepts client connections, completes the login handshake and answers every
+     * invocation with a one row SUCCESS response.
+     */
+    static class MockServer extends Thread {
+        private final ServerSocketChannel m_socket;
+        private final VoltNetworkPool m_network;
+        private final List<SocketChannel> m_channels = new ArrayList<>();
+        private volatile boolean m_shutdown = false;
+        final AtomicLong m_invocations = new AtomicLong();
+
+        MockServer(int port, int networkThreads, long busyPollNanos) throws IOException {
+            super("Mock VoltDB server");
+            m_network = new VoltNetworkPool(networkThreads, 0, null, "Server", busyPollNanos);
+            m_network.start();
+            m_socket = ServerSocketChannel.open();
+            m_socket.configureBlocking(false);
+            m_socket.socket().bind(new InetSocketAddress(port));
+        }
+
+        private static void readFully(SocketChannel sc, ByteBuffer buf) throws IOException {
+            while (buf.hasRemaining()) {
+                if (sc.read(buf) < 0) {
+                    throw new IOException("Connection closed during login");
+                }
+            }
+            buf.flip();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!m_shutdown) {
+                    SocketChannel client = m_socket.accept();
+                    if (client == null) {
+                        Thread.sleep(1);
+                        continue;
+                    }
+                    client.configureBlocking(true);
+                    // length, version, scheme
+                    ByteBuffer header = ByteBuffer.allocate(6);
+                    readFully(client, header);
+                    header.position(5);
+                    ClientAuthScheme scheme = ClientAuthScheme.get(header.get());
+                    ByteBuffer length = ByteBuffer.allocate(4);
+                    readFully(client, length);
+                    readFully(client, ByteBuffer.allocate(length.getInt())); // service
+                    length.clear();
+                    readFully(client, length);
+                    readFully(client, ByteBuffer.allocate(length.getInt())); // username
+                    readFully(client, ByteBuffer.allocate(ClientAuthScheme.getDigestLength(scheme)));
+
+                    ByteBuffer response = ByteBuffer.allocate(34);
+                    response.putInt(30);
+                    response.put((byte)0); // version
+                    response.put((byte)0); // success
+                    response.putInt(0);    // hostId
+                    response.putLong(0);   // connectionId
+                    response.putLong(0);   // instanceId timestamp
+                    response.putInt(0);    // instanceId leader address
+                    response.putInt(0);    // build string length
+                    response.flip();
+                    while (response.hasRemaining()) {
+                        client.write(response);
+                    }
+                    client.configureBlocking(false);
+                    m_channels.add(client);
+                    m_network.registerChannel(client, new Handler());
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        void shutdownServer() throws Exception {
+            m_shutdown = true;
+            join();
+            m_network.shutdown();
+            m_socket.close();
+            for (SocketChannel sc : m_channels) {
+                sc.close();
+            }
+        }
+
+        class Handler extends VoltProtocolHandler {
+            @Override
+            public int getMaxRead() {
+                return Integer.MAX_VALUE;
+            }
+
+            @Override
+            public void handleMessage(ByteBuffer message, Connection c) {
+                try {
+                    StoredProcedureInvocation spi = new StoredProcedureInvocation();
+                    spi.initFromBuffer(message);
+                    VoltTable vt[] = new VoltTable[0];
+                    if (!spi.getProcName().startsWith("@")) {
+                        vt = new VoltTable[] { new VoltTable(new VoltTable.ColumnInfo("C", VoltType.BIGINT)) };
+                        vt[0].addRow(1);
+                    }
+                    ClientResponseImpl response =
+                            new ClientResponseImpl(ClientResponse.SUCCESS, vt, null, spi.getClientHandle());
+                    ByteBuffer buf = ByteBuffer.allocate(4 + response.getSerializedSize());
+                    buf.putInt(buf.capacity() - 4);
+                    response.flattenToBuffer(buf);
+                    buf.flip();
+                    c.writeStream().enqueue(buf);
+                    m_invocations.incrementAndGet();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+
+            @Override
+            public Runnable offBackPressure() {
+                return new Runnable() {
+                    @Override
+                    public void run() {}
+                };
+            }
+
+            @Override
+            public Runnable onBackPressure() {
+                return offBackPressure();
+            }
+
+            @Override
+            public QueueMonitor writestreamMonitor() {
+                return null;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final int connections = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        final long coalescingMicros = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        final long busyPollMicros = args.length > 4 ? Long.parseLong(args[4]) : 0;
+        final int port = 21299;
+
+        MockServer server = new MockServer(port, 2, TimeUnit.MICROSECONDS.toNanos(busyPollMicros));
+        server.start();
+
+        ClientConfig config = new ClientConfig();
+        config.setMaxOutstandingTxns(Integer.MAX_VALUE);
+        config.setRequestCoalescingWindow(coalescingMicros);
+        final Client client = ClientFactory.createClient(config);
+        for (int i = 0; i < connections; i++) {
+            client.createConnection("localhost", port);
+        }
+
+        // Warm up before measuring
+        runCalls(client, threads, Math.max(1, seconds / 5));
+        ClientStatsContext stats = client.createStatsContext();
+        long latencies[] = new long[LATENCY_SAMPLES_PER_THREAD * threads];
+        long calls = runCalls(client, threads, seconds, latencies);
+        System.out.printf("%d threads, %d connections, %dus coalescing, %dus server busy poll: " +
+                          "%,d synchronous calls in %ds, %,.0f calls/sec%n",
+                          threads, connections, coalescingMicros, busyPollMicros,
+                          calls, seconds, calls / (double)seconds);
+        printPercentiles(latencies);
+        if (coalescingMicros > 0) {
+            long[] total = new long[Distributer.BATCH_SIZE_BUCKETS];
+            for (long[] histogram : stats.fetch().getBatchSizeHistogramByConnection().values()) {
+                for (int i = 0; i < total.length; i++) {
+                    total[i] += histogram[i];
+                }
+            }
+            for (int i = 0; i < total.length; i++) {
+                if (total[i] > 0) {
+                    System.out.printf("  %6d+ invocations per write: %,d writes%n", 1 << i, total[i]);
+                }
+            }
+        }
+
+        client.close();
+        server.shutdownServer();
+    }
+
+    // Latencies kept per thread, later calls aren't sampled
+    static final int LATENCY_SAMPLES_PER_THREAD = 1 << 18;
+
+    static void printPercentiles(long latencies[]) {
+        int count = 0;
+        for (long latency : latencies) {
+            if (latency > 0) {
+                latencies[count++] = latency;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        Arrays.sort(latencies, 0, count);
+        System.out.printf("  latency us: p50 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+                          latencies[(int)(count * 0.50)] / 1000.0,
+                          latencies[(int)(count * 0.99)] / 1000.0,
+                          latencies[(int)(count * 0.999)] / 1000.0,
+                          latencies[count - 1] / 1000.0);
+    }
+
+    static long runCalls(final Client client, int threads, final int seconds) throws Exception {
+        return runCalls(client, threads, seconds, null);
+    }
+
+    static long runCalls(final Client client, int threads, final int seconds, final long latencies[])
+            throws Exception {
+        final CyclicBarrier start = new CyclicBarrier(threads);
+        final AtomicLong calls = new AtomicLong();
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final long key = i;
+            final int sampleBase = i * LATENCY_SAMPLES_PER_THREAD;
+            callers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+                        long count = 0;
+                        while (System.nanoTime() < end) {
+                            final long callStart = System.nanoTime();
+                            client.callProcedure("Benchmark", key, count);
+                            if (latencies != null && count < LATENCY_SAMPLES_PER_THREAD) {
+                                latencies[sampleBase + (int)count] = System.nanoTime() - callStart;
+                            }
+                            count++;
+                        }
+                        calls.addAndGet(count);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+        }
+        for (Thread t : callers) {
+            t.start();
+        }
+        for (Thread t : callers) {
+            t.join();
+        }
+        return calls.get();
+    }
+}
@@ -0,0 +1,161 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class TestCallbackTable extends TestCase {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(10);
+
+    public void testPutRemove() {
+        CallbackTable table = new CallbackTable(4, TICK);
+        final long now = System.nanoTime();
+        // Interleave internal (negative) and user handles to exercise collisions and growth
+        for (long handle = -1000; handle < 1000; handle++) {
+            table.put(new CallbackTable.Entry(handle), now, TimeUnit.MINUTES.toNanos(1));
+        }
+        assertEquals(2000, table.size());
+        for (long handle = -1000; handle < 1000; handle += 2) {
+            CallbackTable.Entry e = table.remove(handle);
+            assertNotNull(e);
+            assertEquals(handle, e.m_handle);
+            assertNull(table.remove(handle));
+        }
+        assertEquals(1000, table.size());
+        for (long handle = -999; handle < 1000; handle += 2) {
+            assertEquals(handle, table.remove(handle).m_handle);
+        }
+        assertEquals(0, table.size());
+        assertNull(table.remove(12345));
+    }
+
+    public void testExpire() {
+        CallbackTable table = new CallbackTable(8, TICK);
+        final long now = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            // 0..99 ticks out, plus some far enough out to start in a higher level
+            table.put(new CallbackTable.Entry(i), now, i * TICK);
+            table.put(new CallbackTable.Entry(1000 + i), now, (1000 + i) * TICK);
+        }
+
+        List<CallbackTable.Entry> expired = new ArrayList<>();
+        table.expire(now + 50 * TICK + 1, expired);
+        Set<Long> handles = new HashSet<>();
+        for (CallbackTable.Entry e : expired) {
+            handles.add(e.m_handle);
+        }
+        // Never early, at most a tick late
+        for (long i = 0; i < 100; i++) {
+            if (i < 50) {
+                assertTrue("handle " + i, handles.contains(i));
+            }
+            else if (i > 51) {
+                assertFalse("handle " + i, handles.contains(i));
+            }
+            assertFalse(handles.contains(1000 + i));
+        }
+        // Expired entries are gone, a late response finds nothing
+        assertNull(table.remove(0));
+
+        expired.clear();
+        table.expire(now + 1101 * TICK, expired);
+        assertEquals(200 - handles.size(), expired.size());
+        assertEquals(0, table.size());
+    }
+
+    public void testPastDeadlineExpiresNextPass() {
+        CallbackTable table = new CallbackTable(1, TICK);
+        final long now = System.nanoTime();
+        List<CallbackTable.Entry> expired = new ArrayList<>();
+        table.expire(now + 10 * TICK, expired);
+        table.put(new CallbackTable.Entry(1), now, 0);
+        table.expire(now + 10 * TICK, expired);
+        assertTrue(expired.isEmpty());
+        table.expire(now + 11 * TICK, expired);
+        assertEquals(1, expired.size());
+    }
+
+    public void testRemoveAll() {
+        CallbackTable table = new CallbackTable(16, TICK);
+        for (long handle = 0; handle < 500; handle++) {
+            table.put(new CallbackTable.Entry(handle), System.nanoTime(), 0);
+        }
+        List<CallbackTable.Entry> removed = new ArrayList<>();
+        table.removeAll(removed);
+        assertEquals(500, removed.size());
+        assertEquals(0, table.size());
+        removed.clear();
+        table.expire(System.nanoTime() + TimeUnit.SECONDS.toNanos(1), removed);
+        assertTrue(removed.isEmpty());
+    }
+
+    /**
+     * Responses and timeouts race for the same entries, each must be handed out once.
+     */
+    public void testConcurrentRemoveAndExpire() throws Exception {
+        final CallbackTable table = new CallbackTable(16, TICK);
+        final int perThread = 20000;
+        final int threads = 4;
+        final AtomicInteger handedOut = new AtomicInteger();
+        final long start = System.nanoTime();
+        for (long handle = 0; handle < perThread * threads; handle++) {
+            table.put(new CallbackTable.Entry(handle), start, (handle % 20) * TICK);
+        }
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int base = t * perThread;
+            workers.add(new Thread() {
+                @Override
+                public void run() {
+                    for (long handle = base; handle < base + perThread; handle++) {
+                        if (table.remove(handle) != null) {
+                            handedOut.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread w : workers) {
+            w.start();
+        }
+        List<CallbackTable.Entry> expired = new ArrayList<>();
+        for (int tick = 0; tick <= 20; tick++) {
+            table.expire(start + tick * TICK, expired);
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        assertEquals(perThread * threads, handedOut.get() + expired.size());
+        assertEquals(0, table.size());
+    }
+}
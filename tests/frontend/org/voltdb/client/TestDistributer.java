@@ -31,6 +31,7 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
@@ -489,6 +490,47 @@ public class TestDistributer extends TestCase {
         }
     }
 
+    @Test
+    public void testCoalescing() throws Exception {
+        MockVolt volt0 = null;
+        try {
+            volt0 = new MockVolt(20000);
+            volt0.start();
+
+            Distributer dist = new Distributer(false,
+                    ClientConfig.DEFAULT_PROCEDURE_TIMOUT_NANOS,
+                    ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                    false, false, null /* subject */);
+            // Long enough that calls queued back to back always share a write
+            dist.setCoalescingWindow(TimeUnit.MILLISECONDS.toNanos(50));
+            dist.createConnection("localhost", "", "", 20000, ClientAuthScheme.HASH_SHA1);
+
+            final int calls = 100;
+            for (int handle = 1; handle <= calls; handle++) {
+                dist.queue(new ProcedureInvocation(handle, "i1", new Integer(1)),
+                        new ProcCallback(), true, System.nanoTime(), 0);
+            }
+            dist.drain();
+            assertEquals(calls, volt0.handler.roundTrips.get());
+
+            Map<Long, long[]> histograms = dist.createStatsContext().getBatchSizeHistogramByConnection();
+            assertEquals(1, histograms.size());
+            long[] histogram = histograms.values().iterator().next();
+            long writes = 0;
+            for (long count : histogram) {
+                writes += count;
+            }
+            // The first call goes out alone, everything behind it is coalesced
+            assertTrue(histogram[0] >= 1);
+            assertTrue(writes < calls);
+        }
+        finally {
+            if (volt0 != null) {
+                volt0.shutdown();
+            }
+        }
+    }
+
     @Test
     public void testQueueMixed() throws Exception {
 
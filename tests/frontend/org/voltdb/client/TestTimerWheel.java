@@ -0,0 +1,143 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class TestTimerWheel extends TestCase {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(10);
+
+    static class TestTimer extends TimerWheel.Timer {
+        final long m_delayTicks;
+
+        TestTimer(long delayTicks) {
+            m_delayTicks = delayTicks;
+        }
+    }
+
+    /**
+     * Timers spread over every level fire on exactly the tick they were scheduled for
+     * when the wheel is advanced one tick at a time.
+     */
+    public void testFiresOnDeadlineTick() {
+        TimerWheel wheel = new TimerWheel(TICK);
+        final long start = System.nanoTime();
+        final long startTick = wheel.tickOf(start);
+        Random r = new Random(42);
+        List<TestTimer> timers = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            // Up to ~1.3M ticks covers the first four levels
+            long delay = 1 + (long)Math.pow(2, r.nextDouble() * 20.3);
+            TestTimer t = new TestTimer(delay);
+            timers.add(t);
+            wheel.schedule(t, start, delay * TICK);
+        }
+        assertEquals(timers.size(), wheel.size());
+
+        List<TestTimer> expired = new ArrayList<>();
+        long fired = 0;
+        long lastTick = startTick + (1 << 21);
+        for (long tick = startTick + 1; tick <= lastTick && wheel.size() > 0; tick++) {
+            wheel.advance(start + (tick - startTick) * TICK, expired);
+            for (TestTimer t : expired) {
+                assertEquals(startTick + t.m_delayTicks, tick);
+                assertFalse(t.isScheduled());
+            }
+            fired += expired.size();
+            expired.clear();
+        }
+        assertEquals(timers.size(), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    public void testLargeJumpFiresEverythingDue() {
+        TimerWheel wheel = new TimerWheel(TICK);
+        final long start = System.nanoTime();
+        List<TestTimer> expired = new ArrayList<>();
+        for (long delay = 1; delay < (1L << 24); delay *= 3) {
+            wheel.schedule(new TestTimer(delay), start, delay * TICK);
+        }
+        final int scheduled = wheel.size();
+        wheel.advance(start + (1L << 20) * TICK, expired);
+        for (TestTimer t : expired) {
+            assertTrue(t.m_delayTicks <= (1L << 20));
+        }
+        final int firstBatch = expired.size();
+        assertEquals(scheduled - firstBatch, wheel.size());
+        wheel.advance(start + (1L << 24) * TICK, expired);
+        assertEquals(scheduled, expired.size());
+    }
+
+    public void testCancel() {
+        TimerWheel wheel = new TimerWheel(TICK);
+        final long start = System.nanoTime();
+        TestTimer near = new TestTimer(5);
+        TestTimer far = new TestTimer(100000);
+        wheel.schedule(near, start, 5 * TICK);
+        wheel.schedule(far, start, 100000 * TICK);
+        assertTrue(near.isScheduled());
+        wheel.cancel(near);
+        wheel.cancel(far);
+        // Cancelling twice is harmless
+        wheel.cancel(far);
+        assertFalse(near.isScheduled());
+        assertEquals(0, wheel.size());
+
+        List<TestTimer> expired = new ArrayList<>();
+        wheel.advance(start + 200000 * TICK, expired);
+        assertTrue(expired.isEmpty());
+
+        // A cancelled timer can be scheduled again
+        wheel.schedule(near, start + 200000 * TICK, 0);
+        wheel.advance(start + 200001 * TICK, expired);
+        assertEquals(1, expired.size());
+    }
+
+    /**
+     * An infinite timeout is Long.MAX_VALUE nanoseconds and must neither overflow into
+     * the past nor fire.
+     */
+    public void testInfiniteDelay() {
+        TimerWheel wheel = new TimerWheel(TICK);
+        final long start = System.nanoTime();
+        TestTimer t = new TestTimer(Long.MAX_VALUE);
+        wheel.schedule(t, start, Long.MAX_VALUE);
+        List<TestTimer> expired = new ArrayList<>();
+        wheel.advance(start + TimeUnit.DAYS.toNanos(1), expired);
+        assertTrue(expired.isEmpty());
+        assertTrue(t.isScheduled());
+
+        List<TestTimer> removed = new ArrayList<>();
+        wheel.clear(removed);
+        assertEquals(1, removed.size());
+        assertFalse(t.isScheduled());
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,140 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.voltdb.ParameterSet;
+import org.voltdb.VoltType;
+import org.voltdb.common.Constants;
+import org.voltdb.planner.BoundPlan;
+import org.voltdb.planner.CorePlan;
+
+public class TestAdHocCompilerCache {
+
+    private static AdHocPlannedStatement plan(String sql, int fragmentBytes) {
+        CorePlan core = new CorePlan(new byte[fragmentBytes], null, new byte[20], null,
+                false, true, new VoltType[0], new byte[20]);
+        return new AdHocPlannedStatement(sql.getBytes(Constants.UTF8ENCODING), core,
+                ParameterSet.emptyParameterSet(), null);
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        AdHocCompilerCache cache = new AdHocCompilerCache(1024 * 1024, 1024 * 1024);
+        assertNull(cache.getWithSQL("select * from t"));
+        assertNull(cache.getWithParsedToken("select * from t"));
+
+        AdHocPlannedStatement plan = plan("select * from t", 100);
+        cache.put("select * from t", "select * from t", plan, null, false, false);
+        assertSame(plan, cache.getWithSQL("select * from t"));
+        List<BoundPlan> variants = cache.getWithParsedToken("select * from t");
+        assertEquals(1, variants.size());
+        assertSame(plan.core, variants.get(0).m_core);
+
+        // Same plan again adds nothing
+        cache.put("select * from t", "select * from t", plan, null, false, false);
+        assertEquals(1, cache.getLiteralCacheSize());
+        assertEquals(1, cache.getCoreCacheSize());
+        assertEquals(1, cache.getWithParsedToken("select * from t").size());
+
+        assertEquals(2, cache.getLiteralCache().getStats().requestCount());
+        assertEquals(1, cache.getLiteralCache().getStats().hitCount());
+        assertEquals(1, cache.getLiteralCache().getInsertions());
+        assertEquals(1, cache.getCoreCache().getInsertions());
+        assertTrue(cache.getLiteralCache().getMemoryUsed() > 100);
+        assertTrue(cache.getCoreCache().getMemoryUsed() > 100);
+    }
+
+    @Test
+    public void testMemoryBound() {
+        final long maxMemory = 64 * 1024;
+        AdHocCompilerCache cache = new AdHocCompilerCache(maxMemory, maxMemory);
+        for (int i = 0; i < 1000; i++) {
+            String sql = "select * from t where a = " + i;
+            cache.put(sql, sql, plan(sql, 1000), null, false, false);
+            assertTrue(cache.getLiteralCache().getMemoryUsed() <= maxMemory);
+            assertTrue(cache.getCoreCache().getMemoryUsed() <= maxMemory);
+        }
+        assertTrue(cache.getLiteralCacheSize() < 1000);
+        assertTrue(cache.getLiteralCache().getStats().evictionCount() > 0);
+        assertEquals(1000, cache.getLiteralCache().getInsertions());
+
+        // Memory in use must match what is left after evictions
+        long expected = 0;
+        for (String sql : cache.getLiteralCache().asMap().keySet()) {
+            expected += 2 * sql.length() + cache.getLiteralCache().asMap().get(sql).getSerializedSize();
+        }
+        assertEquals(expected, cache.getLiteralCache().getMemoryUsed());
+    }
+
+    @Test
+    public void testConcurrentPuts() throws Exception {
+        final AdHocCompilerCache cache = new AdHocCompilerCache(16 * 1024 * 1024, 16 * 1024 * 1024);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 500; i++) {
+                        String sql = "select * from t where a = " + i;
+                        AdHocPlannedStatement cached = cache.getWithSQL(sql);
+                        if (cached == null) {
+                            cache.put(sql, sql, plan(sql, 100), null, false, false);
+                        }
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(500, cache.getLiteralCacheSize());
+        assertEquals(500, cache.getCoreCacheSize());
+        assertEquals(500, cache.getLiteralCache().getInsertions());
+        for (int i = 0; i < 500; i++) {
+            String sql = "select * from t where a = " + i;
+            assertNotNull(cache.getWithSQL(sql));
+            assertEquals(1, cache.getWithParsedToken(sql).size());
+        }
+    }
+}
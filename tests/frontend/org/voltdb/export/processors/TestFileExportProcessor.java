@@ -0,0 +1,340 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.export.processors;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.voltdb.VoltType;
+import org.voltdb.export.processors.ExportRowFormatter.Format;
+import org.voltdb.export.processors.ExportRowFormatter.Output;
+import org.voltdb.types.VoltDecimalHelper;
+import org.voltdb.utils.VoltFile;
+
+import junit.framework.TestCase;
+
+public class TestFileExportProcessor extends TestCase {
+
+    private static final List<Integer> TYPES = new ArrayList<Integer>();
+    static {
+        for (int i = 0; i < ExportRowFormatter.METADATA_COLUMN_COUNT - 1; i++) {
+            TYPES.add((int) VoltType.BIGINT.getValue());
+        }
+        TYPES.add((int) VoltType.TINYINT.getValue());
+        TYPES.add((int) VoltType.INTEGER.getValue());
+        TYPES.add((int) VoltType.STRING.getValue());
+        TYPES.add((int) VoltType.DECIMAL.getValue());
+        TYPES.add((int) VoltType.VARBINARY.getValue());
+    }
+
+    private File m_dir;
+
+    @Override
+    public void setUp() throws IOException {
+        m_dir = Files.createTempDirectory("TestFileExportProcessor").toFile();
+    }
+
+    @Override
+    public void tearDown() throws IOException {
+        VoltFile.recursivelyDelete(m_dir);
+    }
+
+    /*
+     * A row as the EE exports it, a null string makes the string column null
+     */
+    private static void addRow(ByteBuffer block, long txnId, int i, String s, BigDecimal d, byte[] bin) {
+        final int start = block.position();
+        block.putInt(0);
+        final int nullArray = block.position();
+        block.putShort((short) 0);
+        for (int c = 0; c < ExportRowFormatter.METADATA_COLUMN_COUNT - 1; c++) {
+            block.putLong(txnId + c);
+        }
+        block.put((byte) 1);
+        block.putInt(i);
+        if (s == null) {
+            // Column 7 is the last bit of the first byte
+            block.put(nullArray, (byte) 0x01);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            block.putInt(bytes.length);
+            block.put(bytes);
+        }
+        block.put((byte) VoltDecimalHelper.kDefaultScale);
+        block.put((byte) 16);
+        block.order(ByteOrder.BIG_ENDIAN);
+        VoltDecimalHelper.serializeBigDecimal(d, block);
+        block.order(ByteOrder.LITTLE_ENDIAN);
+        block.putInt(bin.length);
+        block.put(bin);
+        block.putInt(start, block.position() - start - 4);
+    }
+
+    private static ByteBuffer makeBlock() {
+        ByteBuffer block = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+        addRow(block, 100, 42, "plain", new BigDecimal("1.5"), new byte[] { 1, (byte) 0xab });
+        addRow(block, 200, -7, "a,\"quoted\"\tline\nbreak", new BigDecimal("-2"), new byte[0]);
+        addRow(block, 300, 0, null, new BigDecimal("0"), new byte[] { 0 });
+        block.flip();
+        return block;
+    }
+
+    private static String format(Format format, boolean skipInternals, ByteBuffer block) {
+        Output out = new Output(16);
+        ExportRowFormatter formatter = new ExportRowFormatter(format, TYPES, skipInternals);
+        assertEquals(3, formatter.format(block, out));
+        assertEquals(0, block.position());
+        ByteBuffer bytes = out.asByteBuffer();
+        return new String(bytes.array(), 0, bytes.remaining(), StandardCharsets.UTF_8);
+    }
+
+    public void testCsv() {
+        String expected =
+                "42,plain,1.500000000000,01AB\n" +
+                "-7,\"a,\"\"quoted\"\"\tline\nbreak\",-2.000000000000,\n" +
+                "0,,0.000000000000,00\n";
+        assertEquals(expected, format(Format.CSV, true, makeBlock()));
+
+        String first = format(Format.CSV, false, makeBlock()).split("\n")[0];
+        assertEquals("100,101,102,103,104,1,42,plain,1.500000000000,01AB", first);
+    }
+
+    public void testTsv() {
+        String expected =
+                "42\tplain\t1.500000000000\t01AB\n" +
+                "-7\ta,\"quoted\"\\tline\\nbreak\t-2.000000000000\t\n" +
+                "0\t\\N\t0.000000000000\t00\n";
+        assertEquals(expected, format(Format.TSV, true, makeBlock()));
+    }
+
+    public void testBinary() {
+        ByteBuffer block = makeBlock();
+        Output out = new Output(16);
+        ExportRowFormatter formatter = new ExportRowFormatter(Format.BINARY, TYPES, true);
+        assertEquals(3, formatter.format(block, out));
+        assertEquals(block, out.asByteBuffer());
+
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < TYPES.size(); i++) {
+            names.add("C" + i);
+        }
+        ByteBuffer header = ByteBuffer.wrap(ExportRowFormatter.writeBinaryHeader("T", names, TYPES))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[4];
+        header.get(magic);
+        assertTrue(Arrays.equals(ExportRowFormatter.BINARY_MAGIC, magic));
+        assertEquals(ExportRowFormatter.BINARY_VERSION, header.getInt());
+        int schemaLength = header.getInt();
+        assertEquals(header.remaining(), schemaLength);
+        String schema = new String(header.array(), header.position(), header.remaining(), StandardCharsets.UTF_8);
+        assertTrue(schema, schema.contains("\"table\":\"T\""));
+        assertTrue(schema, schema.contains("\"name\":\"C8\",\"type\":\"DECIMAL\""));
+    }
+
+    private static Runnable counter(final AtomicInteger count) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        };
+    }
+
+    private String[] listFiles() {
+        String[] names = m_dir.list();
+        Arrays.sort(names);
+        return names;
+    }
+
+    public void testAcksWaitForSync() throws IOException {
+        AtomicInteger acks = new AtomicInteger();
+        RollingExportFile file = new RollingExportFile(m_dir, "nonce", "T", "csv", null, 0, 0, true);
+        file.append(ByteBuffer.wrap("a\n".getBytes()), counter(acks));
+        file.append(ByteBuffer.wrap("b\n".getBytes()), counter(acks));
+        assertEquals(0, acks.get());
+        file.sync();
+        assertEquals(2, acks.get());
+
+        String[] names = listFiles();
+        assertEquals(1, names.length);
+        assertTrue(names[0], names[0].startsWith(RollingExportFile.ACTIVE_PREFIX + "nonce-T-"));
+
+        file.close();
+        names = listFiles();
+        assertEquals(1, names.length);
+        assertTrue(names[0], names[0].startsWith("nonce-T-"));
+        assertTrue(names[0], names[0].endsWith(".csv"));
+        assertEquals("a\nb\n", new String(Files.readAllBytes(new File(m_dir, names[0]).toPath())));
+
+        // Without fsync blocks are acked once written
+        file = new RollingExportFile(m_dir, "other", "T", "csv", null, 0, 0, false);
+        file.append(ByteBuffer.wrap("c\n".getBytes()), counter(acks));
+        assertEquals(3, acks.get());
+        file.close();
+    }
+
+    public void testRollOnSize() throws IOException {
+        AtomicInteger acks = new AtomicInteger();
+        byte[] header = "HDR\n".getBytes();
+        RollingExportFile file = new RollingExportFile(m_dir, "nonce", "T", "vexp", header, 10, 0, true);
+        file.append(ByteBuffer.wrap("0123\n".getBytes()), counter(acks));
+        // Passes the limit, the file is retired with the block in it
+        file.append(ByteBuffer.wrap("4567\n".getBytes()), counter(acks));
+        file.append(ByteBuffer.wrap("89\n".getBytes()), counter(acks));
+
+        String[] names = listFiles();
+        assertEquals(2, names.length);
+        assertTrue(names[0].startsWith(RollingExportFile.ACTIVE_PREFIX));
+        assertTrue(names[1].startsWith(RollingExportFile.ACTIVE_PREFIX));
+
+        file.sync();
+        assertEquals(3, acks.get());
+        names = listFiles();
+        assertEquals(2, names.length);
+        assertTrue(names[0], names[0].startsWith(RollingExportFile.ACTIVE_PREFIX));
+        assertTrue(names[1], names[1].endsWith("-0.vexp"));
+        assertEquals("HDR\n0123\n4567\n", new String(Files.readAllBytes(new File(m_dir, names[1]).toPath())));
+
+        file.close();
+        names = listFiles();
+        assertTrue(names[1], names[1].endsWith("-1.vexp"));
+        assertEquals("HDR\n89\n", new String(Files.readAllBytes(new File(m_dir, names[1]).toPath())));
+
+        try {
+            file.append(ByteBuffer.wrap("late\n".getBytes()), counter(acks));
+            fail("Appended to a closed file");
+        } catch (IOException expected) {}
+    }
+
+    public void testRollOnPeriod() throws Exception {
+        AtomicInteger acks = new AtomicInteger();
+        RollingExportFile file = new RollingExportFile(m_dir, "nonce", "T", "csv", null, 0, 1, true);
+        file.append(ByteBuffer.wrap("a\n".getBytes()), counter(acks));
+        Thread.sleep(5);
+        file.sync();
+        assertEquals(1, acks.get());
+        String[] names = listFiles();
+        assertEquals(1, names.length);
+        assertFalse(names[0], names[0].startsWith(RollingExportFile.ACTIVE_PREFIX));
+        file.close();
+    }
+
+    private static Runnable record(final List<String> acked, final String block) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                acked.add(block);
+            }
+        };
+    }
+
+    public void testFailedSyncKeepsAcks() throws IOException {
+        final List<String> acked = new ArrayList<String>();
+        final AtomicInteger failures = new AtomicInteger();
+        RollingExportFile file = new RollingExportFile(m_dir, "nonce", "T", "csv", null, 0, 0, true) {
+            @Override
+            void force(FileChannel channel) throws IOException {
+                if (failures.getAndDecrement() > 0) {
+                    throw new IOException("Injected sync failure");
+                }
+                super.force(channel);
+            }
+        };
+
+        // The acks are kept and go ahead of the blocks appended since
+        failures.set(1);
+        file.append(ByteBuffer.wrap("a\n".getBytes()), record(acked, "a"));
+        file.sync();
+        assertTrue(acked.isEmpty());
+        file.append(ByteBuffer.wrap("b\n".getBytes()), record(acked, "b"));
+        file.sync();
+        assertEquals(Arrays.asList("a", "b"), acked);
+        file.close();
+        acked.clear();
+
+        // The file is retired while its sync fails, the acks go with it
+        file = new RollingExportFile(m_dir, "other", "T", "csv", null, 4, 0, true) {
+            @Override
+            void force(FileChannel channel) throws IOException {
+                if (failures.getAndDecrement() > 0) {
+                    // Passes the limit while the sync is unlocked
+                    append(ByteBuffer.wrap("d\n".getBytes()), record(acked, "d"));
+                    throw new IOException("Injected sync failure");
+                }
+                super.force(channel);
+            }
+        };
+        failures.set(1);
+        file.append(ByteBuffer.wrap("c\n".getBytes()), record(acked, "c"));
+        file.sync();
+        assertTrue(acked.isEmpty());
+        file.append(ByteBuffer.wrap("e\n".getBytes()), record(acked, "e"));
+        file.sync();
+        assertEquals(Arrays.asList("c", "d", "e"), acked);
+        file.close();
+
+        String[] names = listFiles();
+        assertEquals(3, names.length);
+        assertEquals("c\nd\n", new String(Files.readAllBytes(new File(m_dir, names[1]).toPath())));
+        assertEquals("e\n", new String(Files.readAllBytes(new File(m_dir, names[2]).toPath())));
+    }
+
+    public void testConfigCheck() {
+        FileExportProcessor processor = new FileExportProcessor();
+        java.util.Properties props = new java.util.Properties();
+        try {
+            processor.checkProcessorConfig(props);
+            fail("No nonce");
+        } catch (IllegalArgumentException expected) {}
+
+        props.setProperty("nonce", "n");
+        props.setProperty("outdir", m_dir.getPath());
+        props.setProperty("type", "tsv");
+        processor.checkProcessorConfig(props);
+
+        props.setProperty("type", "xml");
+        try {
+            processor.checkProcessorConfig(props);
+            fail("Bad type");
+        } catch (IllegalArgumentException expected) {}
+
+        props.setProperty("type", "csv");
+        props.setProperty(FileExportProcessor.EXPORT_TO_TYPE, "org.voltdb.exportclient.JDBCExportClient");
+        try {
+            processor.checkProcessorConfig(props);
+            fail("Not a file target");
+        } catch (IllegalArgumentException expected) {}
+    }
+}
@@ -0,0 +1,86 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.client.ClientResponse;
+
+public class TestImporterStatsCollector {
+
+    private static VoltTable getStats(ImporterStatsCollector stats, boolean interval) {
+        ArrayList<ColumnInfo> columns = stats.getColumnSchema();
+        VoltTable table = new VoltTable(columns.toArray(new ColumnInfo[columns.size()]));
+        for (Object[] row : stats.getStatsRows(interval, System.currentTimeMillis())) {
+            table.addRow(row);
+        }
+        return table;
+    }
+
+    private static ClientResponse response(byte status) {
+        return new ClientResponseImpl(status, new VoltTable[0], "");
+    }
+
+    @Test
+    public void testBatchCounts() throws Exception {
+        ImporterStatsCollector stats = new ImporterStatsCollector(0);
+        stats.reportBatch("importer", "proc", 8, 2);
+        stats.reportBatch("importer", "proc", 5, 0);
+        for (int i = 0; i < 12; i++) {
+            stats.reportCompletion("importer", "proc", response(ClientResponse.SUCCESS));
+        }
+        stats.reportCompletion("importer", "proc", response(ClientResponse.GRACEFUL_FAILURE));
+
+        VoltTable table = getStats(stats, false);
+        assertEquals(1, table.getRowCount());
+        table.advanceRow();
+        assertEquals(12, table.getLong(ImporterStatsCollector.SUCCESS_COUNT_COL));
+        assertEquals(3, table.getLong(ImporterStatsCollector.FAILURE_COUNT_COL));
+        assertEquals(0, table.getLong(ImporterStatsCollector.PENDING_COUNT_COL));
+        assertEquals(2, table.getLong(ImporterStatsCollector.BATCH_COUNT_COL));
+        assertEquals(15, table.getLong(ImporterStatsCollector.BATCHED_COUNT_COL));
+
+        // Interval values only cover what happened since the last interval
+        getStats(stats, true);
+        stats.reportBatch("importer", "proc", 4, 0);
+        Thread.sleep(10);
+        for (int i = 0; i < 4; i++) {
+            stats.reportCompletion("importer", "proc", response(ClientResponse.SUCCESS));
+        }
+        table = getStats(stats, true);
+        table.advanceRow();
+        assertEquals(4, table.getLong(ImporterStatsCollector.SUCCESS_COUNT_COL));
+        assertEquals(1, table.getLong(ImporterStatsCollector.BATCH_COUNT_COL));
+        assertEquals(4, table.getLong(ImporterStatsCollector.BATCHED_COUNT_COL));
+        assertTrue(table.getDouble(ImporterStatsCollector.THROUGHPUT_COL) > 0);
+    }
+}
@@ -0,0 +1,270 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.iv2;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.voltdb.BackendTarget;
+import org.voltdb.CatalogContext;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+
+public class TestMpRoSitePool extends TestCase
+{
+    // Sites that don't run anything, the pool only tracks them
+    class TestPool extends MpRoSitePool
+    {
+        TestPool()
+        {
+            super(0, BackendTarget.NATIVE_EE_JNI, mock(CatalogContext.class), MpInitiator.MP_INIT_PID, null, null);
+        }
+
+        @Override
+        MpRoSiteContext createSite()
+        {
+            return mock(MpRoSiteContext.class);
+        }
+    }
+
+    MpProcedureTask makeReadTask(long txnid)
+    {
+        MpTransactionState state = mock(MpTransactionState.class);
+        when(state.isReadOnly()).thenReturn(true);
+        MpProcedureTask task = mock(MpProcedureTask.class);
+        when(task.getTransactionState()).thenReturn(state);
+        when(task.getTxnId()).thenReturn(txnid);
+        return task;
+    }
+
+    static final int WARM_SIZE = 2;
+    static final int MAX_SIZE = 4;
+
+    long m_growWaitNanos;
+    long m_idleTimeoutNanos;
+    MpRoSitePool m_pool;
+    MpTransactionTaskQueue m_queue;
+    TxnEgo m_txnId;
+
+    @Override
+    public void setUp()
+    {
+        m_growWaitNanos = MpRoSitePool.GROW_WAIT_NANOS;
+        m_idleTimeoutNanos = MpRoSitePool.IDLE_TIMEOUT_NANOS;
+        System.setProperty("mpiReadPoolWarmSize", Integer.toString(WARM_SIZE));
+        System.setProperty("mpiReadPoolSize", Integer.toString(MAX_SIZE));
+        m_pool = new TestPool();
+        m_queue = new MpTransactionTaskQueue(mock(SiteTaskerQueue.class));
+        m_queue.setMpRoSitePool(m_pool);
+        m_txnId = TxnEgo.makeZero(MpInitiator.MP_INIT_PID);
+    }
+
+    @Override
+    public void tearDown()
+    {
+        MpRoSitePool.GROW_WAIT_NANOS = m_growWaitNanos;
+        MpRoSitePool.IDLE_TIMEOUT_NANOS = m_idleTimeoutNanos;
+        System.clearProperty("mpiReadPoolWarmSize");
+        System.clearProperty("mpiReadPoolSize");
+    }
+
+    long offerRead()
+    {
+        m_txnId = m_txnId.makeNext();
+        m_queue.offer(makeReadTask(m_txnId.getTxnId()));
+        return m_txnId.getTxnId();
+    }
+
+    // The pool only grows for a read that waited long enough, and only up to its maximum
+    @Test
+    public void testGrowFor()
+    {
+        MpRoSitePool.GROW_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+        MpRoSitePool.Snapshot snapshot = m_pool.getSnapshot(0, false);
+        assertEquals(WARM_SIZE, snapshot.m_poolSize);
+        assertEquals(MAX_SIZE, snapshot.m_maxPoolSize);
+        assertEquals(WARM_SIZE, snapshot.m_idle);
+        assertEquals(WARM_SIZE, snapshot.m_sitesCreated);
+
+        assertTrue(m_pool.doWork(1, makeReadTask(1)));
+        assertTrue(m_pool.doWork(2, makeReadTask(2)));
+        assertFalse(m_pool.canAcceptWork());
+        assertFalse(m_pool.growFor(TimeUnit.MILLISECONDS.toNanos(1)));
+        assertEquals(WARM_SIZE, m_pool.getSnapshot(0, false).m_poolSize);
+
+        assertTrue(m_pool.growFor(TimeUnit.MILLISECONDS.toNanos(2)));
+        assertTrue(m_pool.doWork(3, makeReadTask(3)));
+        assertTrue(m_pool.growFor(TimeUnit.MILLISECONDS.toNanos(5)));
+        assertTrue(m_pool.doWork(4, makeReadTask(4)));
+        assertFalse(m_pool.growFor(TimeUnit.SECONDS.toNanos(1)));
+        assertFalse(m_pool.doWork(5, makeReadTask(5)));
+
+        snapshot = m_pool.getSnapshot(0, false);
+        assertEquals(MAX_SIZE, snapshot.m_poolSize);
+        assertEquals(MAX_SIZE, snapshot.m_active);
+        assertEquals(0, snapshot.m_idle);
+        assertEquals(MAX_SIZE, snapshot.m_sitesCreated);
+    }
+
+    // Reads queued behind a full pool grow it until they all run or it's at its maximum
+    @Test
+    public void testGrowsUnderQueuedReads()
+    {
+        MpRoSitePool.GROW_WAIT_NANOS = 0;
+        for (int i = 0; i < MAX_SIZE + 2; i++) {
+            offerRead();
+        }
+        MpRoSitePool.Snapshot snapshot = m_queue.getSitePoolSnapshot(false);
+        assertEquals(MAX_SIZE, snapshot.m_active);
+        assertEquals(2, snapshot.m_queued);
+        assertEquals(MAX_SIZE, snapshot.m_poolSize);
+        assertEquals(MAX_SIZE, snapshot.m_sitesCreated);
+        assertEquals(MAX_SIZE, snapshot.m_waits.getTotalCount());
+    }
+
+    // Without waiting long enough the queued reads wait for a running one to finish
+    @Test
+    public void testNoGrowthWithoutWaiting()
+    {
+        MpRoSitePool.GROW_WAIT_NANOS = TimeUnit.HOURS.toNanos(1);
+        final long first = offerRead();
+        offerRead();
+        offerRead();
+        MpRoSitePool.Snapshot snapshot = m_queue.getSitePoolSnapshot(false);
+        assertEquals(WARM_SIZE, snapshot.m_active);
+        assertEquals(1, snapshot.m_queued);
+        assertEquals(WARM_SIZE, snapshot.m_poolSize);
+
+        m_queue.flush(first);
+        snapshot = m_queue.getSitePoolSnapshot(false);
+        assertEquals(WARM_SIZE, snapshot.m_active);
+        assertEquals(0, snapshot.m_queued);
+        assertEquals(WARM_SIZE, snapshot.m_sitesCreated);
+    }
+
+    // Sites idle past the timeout are shut down as reads complete, down to the warm pool
+    @Test
+    public void testReapOnCompletion()
+    {
+        MpRoSitePool.GROW_WAIT_NANOS = 0;
+        MpRoSitePool.IDLE_TIMEOUT_NANOS = 0;
+        long[] reads = new long[MAX_SIZE];
+        for (int i = 0; i < MAX_SIZE; i++) {
+            reads[i] = offerRead();
+        }
+        assertEquals(MAX_SIZE, m_queue.getSitePoolSnapshot(false).m_poolSize);
+        for (long txnId : reads) {
+            m_queue.flush(txnId);
+        }
+        MpRoSitePool.Snapshot snapshot = m_queue.getSitePoolSnapshot(false);
+        assertEquals(0, snapshot.m_active);
+        assertEquals(WARM_SIZE, snapshot.m_idle);
+        assertEquals(WARM_SIZE, snapshot.m_poolSize);
+        assertEquals(MAX_SIZE - WARM_SIZE, snapshot.m_sitesReaped);
+    }
+
+    // The MPI's reaper retires the idle sites when no reads complete to do it
+    @Test
+    public void testReaper()
+    {
+        MpRoSitePool.GROW_WAIT_NANOS = 0;
+        long[] reads = new long[MAX_SIZE];
+        for (int i = 0; i < MAX_SIZE; i++) {
+            reads[i] = offerRead();
+        }
+        for (long txnId : reads) {
+            m_queue.flush(txnId);
+        }
+        final Runnable reaper = MpInitiator.sitePoolReaper(m_queue);
+        // Not idle for long enough yet
+        reaper.run();
+        MpRoSitePool.Snapshot snapshot = m_queue.getSitePoolSnapshot(false);
+        assertEquals(MAX_SIZE, snapshot.m_idle);
+        assertEquals(0, snapshot.m_sitesReaped);
+
+        MpRoSitePool.IDLE_TIMEOUT_NANOS = 0;
+        reaper.run();
+        snapshot = m_queue.getSitePoolSnapshot(false);
+        assertEquals(WARM_SIZE, snapshot.m_idle);
+        assertEquals(WARM_SIZE, snapshot.m_poolSize);
+        assertEquals(MAX_SIZE - WARM_SIZE, snapshot.m_sitesReaped);
+
+        // The warm sites stay however long they're idle
+        reaper.run();
+        assertEquals(WARM_SIZE, m_queue.getSitePoolSnapshot(false).m_idle);
+    }
+
+    // @Statistics MPREADPOOL reports the pool, with the interval rows since the last interval
+    @Test
+    public void testStatsRows()
+    {
+        MpRoSitePool.GROW_WAIT_NANOS = 0;
+        MpRoSitePoolStats stats = new MpRoSitePoolStats(0, m_queue);
+        final long first = offerRead();
+        offerRead();
+        offerRead();
+
+        VoltTable rows = statsRows(stats, false);
+        assertEquals(1, rows.getRowCount());
+        rows.advanceRow();
+        assertEquals(3, rows.getLong("ACTIVE"));
+        assertEquals(0, rows.getLong("IDLE"));
+        assertEquals(0, rows.getLong("QUEUED"));
+        assertEquals(3, rows.getLong("POOL_SIZE"));
+        assertEquals(MAX_SIZE, rows.getLong("MAX_POOL_SIZE"));
+        assertEquals(3, rows.getLong("SITES_CREATED"));
+        assertEquals(0, rows.getLong("SITES_REAPED"));
+        assertEquals(3, rows.getLong("READS"));
+        assertTrue(rows.getLong("WAIT_MAX") >= rows.getLong("WAIT_P50"));
+
+        rows = statsRows(stats, true);
+        rows.advanceRow();
+        assertEquals(3, rows.getLong("READS"));
+        MpRoSitePool.IDLE_TIMEOUT_NANOS = 0;
+        m_queue.flush(first);
+        rows = statsRows(stats, true);
+        rows.advanceRow();
+        assertEquals(2, rows.getLong("ACTIVE"));
+        assertEquals(2, rows.getLong("POOL_SIZE"));
+        assertEquals(0, rows.getLong("SITES_CREATED"));
+        assertEquals(1, rows.getLong("SITES_REAPED"));
+        assertEquals(0, rows.getLong("READS"));
+        assertEquals(0, rows.getLong("WAIT_MAX"));
+    }
+
+    static VoltTable statsRows(MpRoSitePoolStats stats, boolean interval)
+    {
+        VoltTable table = new VoltTable(stats.getColumnSchema().toArray(new ColumnInfo[0]));
+        for (Object[] row : stats.getStatsRows(interval, System.currentTimeMillis())) {
+            table.addRow(row);
+        }
+        return table;
+    }
+}
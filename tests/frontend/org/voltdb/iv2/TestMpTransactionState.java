@@ -28,6 +28,7 @@ import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -84,6 +85,14 @@ public class TestMpTransactionState extends TestCase
     MpTestPlan createTestPlan(int batchSize, boolean readOnly,
                               boolean replicatedTable, boolean rollback,
                               long[] remoteHSIds) throws IOException
+    {
+        return createTestPlan(batchSize, readOnly, replicatedTable, rollback, remoteHSIds, 0);
+    }
+
+    // firstDepId keeps the dependencies of several batches of one transaction apart
+    MpTestPlan createTestPlan(int batchSize, boolean readOnly,
+                              boolean replicatedTable, boolean rollback,
+                              long[] remoteHSIds, int firstDepId) throws IOException
     {
         boolean single_frag = readOnly && replicatedTable;
         MpTestPlan plan = new MpTestPlan();
@@ -95,14 +104,14 @@ public class TestMpTransactionState extends TestCase
         {
             // each SQL statement in the batch gets an output dep ID
             // which corresponds to a local fragment ID
-            depsToResumeList.add(i);
+            depsToResumeList.add(firstDepId + i);
             // each local fragment ID needs an input dep.  If this is
             // not replicated read only, generate a new value and add it to
             // the distributed output deps
             if (!single_frag) {
                 // take the dep and add 1000
-                depsForLocalTask.add(i + 1000);
-                distributedOutputDepIds.add(i + 1000);
+                depsForLocalTask.add(firstDepId + i + 1000);
+                distributedOutputDepIds.add(firstDepId + i + 1000);
             } else {
                 depsForLocalTask.add(-1);
             }
@@ -320,6 +329,152 @@ public class TestMpTransactionState extends TestCase
         System.out.println(results);
     }
 
+    @Test
+    public void testPipelinedMultiSitePartitionedReads() throws IOException
+    {
+        long txnId = 1234l;
+        int batch_size = 3;
+        Iv2InitiateTaskMessage taskmsg =
+            new Iv2InitiateTaskMessage(
+                    0,
+                    -1,
+                    (txnId -1),
+                    txnId,
+                    System.currentTimeMillis(),
+                    true,
+                    false,
+                    new StoredProcedureInvocation(),
+                    0,
+                    0,
+                    false);
+        int hsids = 6;
+        buddyHSId = 0;
+        long[] non_local = configureHSIds(hsids);
+
+        MpTestPlan first = createTestPlan(batch_size, true, false, false, non_local, 0);
+        MpTestPlan second = createTestPlan(batch_size, true, false, false, non_local, 100);
+
+        Mailbox mailbox = mock(Mailbox.class);
+        SiteProcedureConnection siteConnection = mock(SiteProcedureConnection.class);
+
+        MpTransactionState dut =
+            new MpTransactionState(mailbox, taskmsg, allHsids, partMasters, buddyHSId, false);
+        assertTrue(dut.canPipelineFragmentWork());
+
+        // emulate ProcedureRunner's use for a batch split in two sub-batches,
+        // both go out before the first one runs
+        List<FragmentTaskMessage> distributed = new ArrayList<FragmentTaskMessage>();
+        distributed.add(first.remoteWork);
+        distributed.add(second.remoteWork);
+        dut.queueFragmentWorkAhead(distributed);
+        verify(mailbox).send(eq(non_local), eq(first.remoteWork));
+        verify(mailbox).send(eq(non_local), eq(second.remoteWork));
+
+        // the second batch's participants answer first
+        for (int i = 0; i < hsids; i++) {
+            dut.offerReceivedFragmentResponse(second.generatedResponses.get(i));
+        }
+        for (FragmentResponseMessage msg : first.generatedResponses) {
+            dut.offerReceivedFragmentResponse(msg);
+        }
+
+        dut.setupProcedureResume(false, first.depsToResume);
+        dut.createLocalFragmentWork(first.localWork, false);
+        dut.createAllParticipatingFragmentWork(first.remoteWork);
+        Map<Integer, List<VoltTable>> results = dut.recursableRun(siteConnection);
+        assertEquals(batch_size, results.size());
+        assertTrue(results.containsKey(first.depsToResume.get(0)));
+
+        // the second batch only waits for its borrow task
+        dut.setupProcedureResume(true, second.depsToResume);
+        dut.createLocalFragmentWork(second.localWork, false);
+        dut.createAllParticipatingFragmentWork(second.remoteWork);
+        dut.offerReceivedFragmentResponse(second.generatedResponses.get(hsids));
+        results = dut.recursableRun(siteConnection);
+        assertEquals(batch_size, results.size());
+        assertTrue(results.containsKey(second.depsToResume.get(0)));
+
+        // neither batch was sent twice
+        verify(mailbox).send(eq(non_local), eq(first.remoteWork));
+        verify(mailbox).send(eq(non_local), eq(second.remoteWork));
+        verify(mailbox, times(2)).send(eq(buddyHSId), (BorrowTaskMessage)any());
+    }
+
+    @Test
+    public void testPipelinedReadsAfterCaughtFailure() throws IOException
+    {
+        long txnId = 1234l;
+        int batch_size = 3;
+        Iv2InitiateTaskMessage taskmsg =
+            new Iv2InitiateTaskMessage(
+                    0,
+                    -1,
+                    (txnId -1),
+                    txnId,
+                    System.currentTimeMillis(),
+                    true,
+                    false,
+                    new StoredProcedureInvocation(),
+                    0,
+                    0,
+                    false);
+        int hsids = 6;
+        buddyHSId = 0;
+        long[] non_local = configureHSIds(hsids);
+
+        // the last site fails the first batch
+        MpTestPlan first = createTestPlan(batch_size, true, false, true, non_local, 0);
+        MpTestPlan second = createTestPlan(batch_size, true, false, false, non_local, 100);
+        MpTestPlan third = createTestPlan(batch_size, true, false, false, non_local, 200);
+
+        Mailbox mailbox = mock(Mailbox.class);
+        SiteProcedureConnection siteConnection = mock(SiteProcedureConnection.class);
+
+        MpTransactionState dut =
+            new MpTransactionState(mailbox, taskmsg, allHsids, partMasters, buddyHSId, false);
+
+        List<FragmentTaskMessage> distributed = new ArrayList<FragmentTaskMessage>();
+        distributed.add(first.remoteWork);
+        distributed.add(second.remoteWork);
+        dut.queueFragmentWorkAhead(distributed);
+
+        for (int i = 0; i < hsids; i++) {
+            dut.offerReceivedFragmentResponse(first.generatedResponses.get(i));
+        }
+        dut.setupProcedureResume(false, first.depsToResume);
+        dut.createLocalFragmentWork(first.localWork, false);
+        dut.createAllParticipatingFragmentWork(first.remoteWork);
+        try {
+            dut.recursableRun(siteConnection);
+            fail();
+        }
+        catch (EEException eee) {
+            assertEquals(1234, eee.getErrorCode());
+        }
+
+        // the work sent ahead still answers after the failure
+        for (int i = 0; i < hsids; i++) {
+            dut.offerReceivedFragmentResponse(second.generatedResponses.get(i));
+        }
+
+        // the procedure catches the failure and runs another batch
+        distributed.clear();
+        distributed.add(third.remoteWork);
+        dut.queueFragmentWorkAhead(distributed);
+        for (FragmentResponseMessage msg : third.generatedResponses) {
+            dut.offerReceivedFragmentResponse(msg);
+        }
+        dut.setupProcedureResume(true, third.depsToResume);
+        dut.createLocalFragmentWork(third.localWork, false);
+        dut.createAllParticipatingFragmentWork(third.remoteWork);
+        Map<Integer, List<VoltTable>> results = dut.recursableRun(siteConnection);
+        assertEquals(batch_size, results.size());
+        assertTrue(results.containsKey(third.depsToResume.get(0)));
+
+        verify(mailbox).send(eq(non_local), eq(third.remoteWork));
+        verify(mailbox).send(eq(buddyHSId), (BorrowTaskMessage)any());
+    }
+
     @Test
     public void testSingleReplicatedReadFragment() throws IOException
     {
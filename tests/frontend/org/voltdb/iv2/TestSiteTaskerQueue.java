@@ -0,0 +1,220 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.voltdb.StarvationTracker;
+
+public class TestSiteTaskerQueue {
+
+    static class NumberedTask extends SiteTasker.SiteTaskerRunnable {
+        final int m_producer;
+        final int m_number;
+
+        NumberedTask(int producer, int number) {
+            m_producer = producer;
+            m_number = number;
+        }
+
+        @Override
+        void run() {
+        }
+    }
+
+    private static List<NumberedTask> tasks(int producer, int count) {
+        List<NumberedTask> tasks = new ArrayList<NumberedTask>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(new NumberedTask(producer, i));
+        }
+        return tasks;
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+        SiteTaskerQueue queue = new SiteTaskerQueue(8);
+        queue.setStarvationTracker(new StarvationTracker(0));
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        // Go around the ring a few times
+        for (int round = 0; round < 4; round++) {
+            List<NumberedTask> offered = tasks(0, 5);
+            for (NumberedTask task : offered) {
+                queue.offer(task);
+            }
+            assertFalse(queue.isEmpty());
+            for (NumberedTask task : offered) {
+                assertSame(task, queue.peek());
+                assertSame(task, queue.take());
+            }
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        SiteTaskerQueue queue = new SiteTaskerQueue(4);
+        queue.setStarvationTracker(new StarvationTracker(0));
+        List<NumberedTask> offered = tasks(0, 10);
+        for (int i = 0; i < 6; i++) {
+            queue.offer(offered.get(i));
+        }
+        // Ring space frees up while there is overflow, order must hold
+        assertSame(offered.get(0), queue.poll());
+        assertSame(offered.get(1), queue.poll());
+        for (int i = 6; i < 10; i++) {
+            queue.offer(offered.get(i));
+        }
+        for (NumberedTask task : offered.subList(2, offered.size())) {
+            assertSame(task, queue.peek());
+            assertSame(task, queue.poll());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+
+        // Back to using the ring once the overflow drained
+        queue.offer(offered.get(0));
+        assertSame(offered.get(0), queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final int producers = 4;
+        final int perProducer = 20000;
+        final SiteTaskerQueue queue = new SiteTaskerQueue(64);
+        queue.setStarvationTracker(new StarvationTracker(0));
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; p++) {
+            final List<NumberedTask> offered = tasks(p, perProducer);
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (NumberedTask task : offered) {
+                        queue.offer(task);
+                    }
+                }
+            };
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+
+        int[] next = new int[producers];
+        for (int i = 0; i < producers * perProducer; i++) {
+            NumberedTask task = (NumberedTask) queue.take();
+            assertEquals(next[task.m_producer]++, task.m_number);
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testTakeWakesUp() throws Exception {
+        final SiteTaskerQueue queue = new SiteTaskerQueue(8);
+        queue.setStarvationTracker(new StarvationTracker(0));
+        final AtomicReference<SiteTasker> taken = new AtomicReference<SiteTasker>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread site = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    taken.set(queue.take());
+                } catch (InterruptedException e) {
+                }
+                done.countDown();
+            }
+        };
+        site.start();
+        // Long enough for the site thread to be past spinning and parked
+        Thread.sleep(100);
+        NumberedTask task = new NumberedTask(0, 0);
+        queue.offer(task);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertSame(task, taken.get());
+    }
+
+    @Test
+    public void testTakeInterrupted() throws Exception {
+        final SiteTaskerQueue queue = new SiteTaskerQueue(8);
+        queue.setStarvationTracker(new StarvationTracker(0));
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        Thread site = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    queue.take();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        };
+        site.start();
+        Thread.sleep(100);
+        site.interrupt();
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testQueueStats() throws Exception {
+        SiteTaskerQueue queue = new SiteTaskerQueue(4);
+        StarvationTracker tracker = mock(StarvationTracker.class);
+        queue.setStarvationTracker(tracker);
+        for (NumberedTask task : tasks(0, 3)) {
+            queue.offer(task);
+        }
+        queue.poll();
+        queue.poll();
+        queue.take();
+        verify(tracker).taskTaken(eq(3L), anyLong());
+        verify(tracker).taskTaken(eq(2L), anyLong());
+        verify(tracker).taskTaken(eq(1L), anyLong());
+        verify(tracker, times(3)).taskTaken(anyLong(), anyLong());
+    }
+}
@@ -44,13 +44,16 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.voltcore.messaging.Mailbox;
 import org.voltcore.messaging.TransactionInfoBaseMessage;
+import org.voltcore.messaging.VoltMessage;
 import org.voltcore.utils.CoreUtils;
 import org.voltcore.zk.MapCache;
 import org.voltdb.CommandLog;
 import org.voltdb.ProcedureRunner;
 import org.voltdb.SnapshotCompletionMonitor;
 import org.voltdb.StarvationTracker;
+import org.voltdb.StoredProcedureInvocation;
 import org.voltdb.VoltDBInterface;
+import org.voltdb.messaging.Iv2InitiateTaskBatchMessage;
 import org.voltdb.messaging.Iv2InitiateTaskMessage;
 
 import com.google_voltpatches.common.collect.ImmutableMap;
@@ -143,4 +146,37 @@ public class TestSpSchedulerSpHandle extends TestCase
             }
         }
     }
+
+    @Test
+    public void testBatchReplicatedAsBatch() throws Exception
+    {
+        createObjs();
+        dut.setLeaderState(true);
+        List<Long> replicas = new ArrayList<Long>();
+        replicas.add(2l);
+        dut.updateReplicas(replicas, null);
+
+        dut.beginInitiateBatch();
+        for (int i = 0; i < 3; i++) {
+            StoredProcedureInvocation spi = new StoredProcedureInvocation();
+            spi.setProcName("dummy");
+            spi.setParams(i);
+            dut.deliver(new Iv2InitiateTaskMessage(0l, 0l, 0l, Long.MIN_VALUE, 0l, false, true, spi,
+                    i, 0l, false));
+        }
+        // Nothing goes to the replicas until the batch is done
+        verify(mbox, times(0)).send(eq(new long[] {2l}), any(VoltMessage.class));
+        dut.endInitiateBatch();
+
+        ArgumentCaptor<VoltMessage> replmsg = ArgumentCaptor.forClass(VoltMessage.class);
+        verify(mbox, times(1)).send(eq(new long[] {2l}), replmsg.capture());
+        List<Iv2InitiateTaskMessage> tasks = ((Iv2InitiateTaskBatchMessage)replmsg.getValue()).getTasks();
+        assertEquals(3, tasks.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, tasks.get(i).getClientInterfaceHandle());
+            if (i > 0) {
+                assertTrue(tasks.get(i - 1).getSpHandle() < tasks.get(i).getSpHandle());
+            }
+        }
+    }
 }
@@ -25,6 +25,8 @@ package org.voltdb.messaging;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import junit.framework.TestCase;
 
@@ -108,6 +110,35 @@ public class TestVoltMessageSerialization extends TestCase {
         assertTrue(itask.isForReplay());
     }
 
+    public void testIv2InitiateTaskBatch() throws IOException {
+        List<Iv2InitiateTaskMessage> tasks = new ArrayList<Iv2InitiateTaskMessage>();
+        for (int i = 0; i < 3; i++) {
+            StoredProcedureInvocation spi = new StoredProcedureInvocation();
+            spi.setClientHandle(25 + i);
+            spi.setProcName("johnisgreat");
+            spi.setParams(57 + i, "gooniestoo", "dudemandude");
+            Iv2InitiateTaskMessage itask = new Iv2InitiateTaskMessage(23, 8, 10L, 100045 + i, 99, false, true, spi, 2101 + i, 3101, false);
+            itask.setSpHandle(31337 + i);
+            tasks.add(itask);
+        }
+
+        Iv2InitiateTaskBatchMessage batch = new Iv2InitiateTaskBatchMessage(tasks);
+        Iv2InitiateTaskBatchMessage batch2 = (Iv2InitiateTaskBatchMessage) checkVoltMessage(batch);
+
+        assertEquals(3, batch2.getTasks().size());
+        for (int i = 0; i < 3; i++) {
+            Iv2InitiateTaskMessage itask = tasks.get(i);
+            Iv2InitiateTaskMessage itask2 = batch2.getTasks().get(i);
+            assertEquals(itask.getTxnId(), itask2.getTxnId());
+            assertEquals(itask.getSpHandle(), itask2.getSpHandle());
+            assertEquals(itask.getClientInterfaceHandle(), itask2.getClientInterfaceHandle());
+            assertEquals(itask.getStoredProcedureInvocation().getClientHandle(),
+                    itask2.getStoredProcedureInvocation().getClientHandle());
+            assertEquals(57 + i, ((Number)itask2.getParameters()[0]).intValue());
+            assertEquals(3, itask2.getParameterCount());
+        }
+    }
+
     public void testInitiateResponse() throws IOException {
         StoredProcedureInvocation spi = new StoredProcedureInvocation();
         spi.setClientHandle(25);
@@ -60,6 +60,7 @@ public class PlannerTestAideDeCamp {
     int compileCounter = 0;
 
     private CompiledPlan m_currentPlan = null;
+    private boolean m_hashJoinsEnabled = QueryPlanner.HASH_JOINS_ENABLED_BY_DEFAULT;
 
     /**
      * Loads the schema at ddlurl and setups a voltcompiler / hsql instance.
@@ -86,6 +87,10 @@ public class PlannerTestAideDeCamp {
         return db;
     }
 
+    void setHashJoinsEnabled(boolean enabled) {
+        m_hashJoinsEnabled = enabled;
+    }
+
     /**
      * Compile a statement and return the head of the plan.
      * @param sql
@@ -150,6 +155,7 @@ public class PlannerTestAideDeCamp {
         QueryPlanner planner = new QueryPlanner(sql, stmtLabel, procName, catalogCluster, db,
                 partitioning, hsql, estimates, false, StatementCompiler.DEFAULT_MAX_JOIN_TABLES,
                 costModel, null, joinOrder, detMode);
+        planner.setHashJoinsEnabled(m_hashJoinsEnabled);
 
         CompiledPlan plan = null;
         planner.parse();
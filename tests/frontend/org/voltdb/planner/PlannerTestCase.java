@@ -323,6 +323,13 @@ public class PlannerTestCase extends TestCase {
         return m_aide.getDatabase();
     }
 
+    /**
+     * Plan the following statements with or without hash joins.
+     */
+    protected void setHashJoinsEnabled(boolean enabled) {
+        m_aide.setHashJoinsEnabled(enabled);
+    }
+
     protected void printExplainPlan(List<AbstractPlanNode> planNodes) {
         for (AbstractPlanNode apn: planNodes) {
             System.out.println(apn.toExplainPlanString());
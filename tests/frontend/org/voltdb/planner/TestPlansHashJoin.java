@@ -0,0 +1,151 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.planner;
+
+import java.util.List;
+
+import org.json_voltpatches.JSONObject;
+import org.json_voltpatches.JSONStringer;
+import org.voltdb.expressions.TupleValueExpression;
+import org.voltdb.plannodes.AbstractPlanNode;
+import org.voltdb.plannodes.AbstractScanPlanNode;
+import org.voltdb.plannodes.HashJoinPlanNode;
+import org.voltdb.types.JoinType;
+import org.voltdb.types.PlanNodeType;
+
+public class TestPlansHashJoin extends PlannerTestCase {
+
+    private HashJoinPlanNode getHashJoin(String query) {
+        AbstractPlanNode pn = compile(query);
+        List<AbstractPlanNode> hjs = pn.findAllNodesOfType(PlanNodeType.HASHJOIN);
+        assertEquals(1, hjs.size());
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.NESTLOOP).isEmpty());
+        return (HashJoinPlanNode) hjs.get(0);
+    }
+
+    private void assertNoHashJoin(String query) {
+        AbstractPlanNode pn = compile(query);
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.HASHJOIN).isEmpty());
+    }
+
+    public void testInnerEquiJoin() {
+        HashJoinPlanNode hj = getHashJoin("SELECT * FROM R1 JOIN R2 ON R1.A = R2.A");
+        assertEquals(JoinType.INNER, hj.getJoinType());
+        assertEquals(PlanNodeType.SEQSCAN, hj.getChild(0).getPlanNodeType());
+        assertEquals(PlanNodeType.SEQSCAN, hj.getChild(1).getPlanNodeType());
+        assertEquals(1, hj.getOuterHashExpressions().size());
+        assertEquals(1, hj.getInnerHashExpressions().size());
+        // Each side of the equality is hashed from its own child
+        TupleValueExpression outer = (TupleValueExpression) hj.getOuterHashExpressions().get(0);
+        TupleValueExpression inner = (TupleValueExpression) hj.getInnerHashExpressions().get(0);
+        String outerTable = ((AbstractScanPlanNode) hj.getChild(0)).getTargetTableAlias();
+        String innerTable = ((AbstractScanPlanNode) hj.getChild(1)).getTargetTableAlias();
+        assertEquals(outerTable, outer.getTableAlias());
+        assertEquals(innerTable, inner.getTableAlias());
+        assertEquals(0, outer.getTableIndex());
+        assertEquals(1, inner.getTableIndex());
+        // The equality stays in the join predicate
+        assertNotNull(hj.getJoinPredicate());
+        assertTrue(hj.toExplainPlanString().contains("HASH INNER JOIN"));
+    }
+
+    public void testMultiColumnEquiJoin() {
+        HashJoinPlanNode hj = getHashJoin("SELECT * FROM R1 JOIN R2 ON R1.A = R2.A AND R2.C = R1.C AND R1.D > R2.C");
+        assertEquals(2, hj.getOuterHashExpressions().size());
+        assertEquals(2, hj.getInnerHashExpressions().size());
+    }
+
+    public void testExpressionKeys() {
+        HashJoinPlanNode hj = getHashJoin("SELECT * FROM R1 JOIN R2 ON R1.A + R1.D = R2.C + R2.A");
+        assertEquals(1, hj.getOuterHashExpressions().size());
+        // Equal INTEGER and BIGINT values are not hashed alike
+        assertNoHashJoin("SELECT * FROM R1 JOIN R2 ON R1.A + R1.D = R2.C");
+    }
+
+    public void testLeftEquiJoin() {
+        HashJoinPlanNode hj = getHashJoin("SELECT * FROM R1 LEFT JOIN R2 ON R1.A = R2.A");
+        assertEquals(JoinType.LEFT, hj.getJoinType());
+        assertTrue(hj.toExplainPlanString().contains("HASH LEFT JOIN"));
+
+        hj = getHashJoin("SELECT * FROM R1 RIGHT JOIN R2 ON R1.A = R2.A");
+        assertEquals(JoinType.LEFT, hj.getJoinType());
+    }
+
+    public void testMultiPartitionJoin() {
+        List<AbstractPlanNode> frags = compileToFragments("SELECT * FROM P1 JOIN R1 ON P1.C = R1.C");
+        assertEquals(2, frags.size());
+        assertEquals(1, frags.get(1).findAllNodesOfType(PlanNodeType.HASHJOIN).size());
+    }
+
+    public void testNotHashed() {
+        // No equality
+        assertNoHashJoin("SELECT * FROM R1 JOIN R2 ON R1.A > R2.A");
+        // Equality within one side only
+        assertNoHashJoin("SELECT * FROM R1 JOIN R2 ON R1.A = R1.C");
+        // NULL matches NULL
+        assertNoHashJoin("SELECT * FROM R1 JOIN R2 ON R1.A IS NOT DISTINCT FROM R2.A");
+        // FULL joins also return the unmatched inner tuples
+        assertNoHashJoin("SELECT * FROM R1 FULL JOIN R2 ON R1.A = R2.A");
+        // The inner index is used instead
+        AbstractPlanNode pn = compile("SELECT * FROM R1 JOIN R3 ON R1.A = R3.A");
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.HASHJOIN).isEmpty());
+        assertEquals(1, pn.findAllNodesOfType(PlanNodeType.NESTLOOPINDEX).size());
+    }
+
+    public void testDisabled() {
+        setHashJoinsEnabled(false);
+        AbstractPlanNode pn = compile("SELECT * FROM R1 JOIN R2 ON R1.A = R2.A");
+        assertTrue(pn.findAllNodesOfType(PlanNodeType.HASHJOIN).isEmpty());
+        assertEquals(1, pn.findAllNodesOfType(PlanNodeType.NESTLOOP).size());
+    }
+
+    public void testJSONRoundTrip() throws Exception {
+        HashJoinPlanNode hj = getHashJoin("SELECT * FROM R1 LEFT JOIN R2 ON R1.A = R2.A AND R1.C = R2.C");
+        JSONStringer stringer = new JSONStringer();
+        stringer.object();
+        hj.toJSONString(stringer);
+        stringer.endObject();
+
+        HashJoinPlanNode copy = new HashJoinPlanNode();
+        copy.loadFromJSONObject(new JSONObject(stringer.toString()), getDatabase());
+        assertEquals(JoinType.LEFT, copy.getJoinType());
+        assertEquals(2, copy.getOuterHashExpressions().size());
+        assertEquals(2, copy.getInnerHashExpressions().size());
+        for (int i = 0; i < 2; i++) {
+            TupleValueExpression outer = (TupleValueExpression) copy.getOuterHashExpressions().get(i);
+            TupleValueExpression inner = (TupleValueExpression) copy.getInnerHashExpressions().get(i);
+            assertEquals(((TupleValueExpression) hj.getOuterHashExpressions().get(i)).getColumnIndex(),
+                    outer.getColumnIndex());
+            assertEquals(((TupleValueExpression) hj.getInnerHashExpressions().get(i)).getColumnIndex(),
+                    inner.getColumnIndex());
+            assertEquals(0, outer.getTableIndex());
+            assertEquals(1, inner.getTableIndex());
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        setupSchema(TestJoinOrder.class.getResource("testplans-join-ddl.sql"), "testplansjoin", false);
+    }
+}
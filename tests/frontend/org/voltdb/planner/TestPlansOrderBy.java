@@ -95,6 +95,15 @@ public class TestPlansOrderBy extends PlannerTestCase {
         validatePlan(sql, true, false, false);
     }
 
+    /// Validate that a plan with the given join order uses the full bag of tricks.
+    private void validateOptimalPlan(String sql, String joinOrder)
+    {
+        AbstractPlanNode pn = compileSPWithJoinOrder(sql, joinOrder);
+        assertTrue(pn.hasAnyNodeOfType(PlanNodeType.INDEXSCAN));
+        assertFalse(pn.hasAnyNodeOfType(PlanNodeType.SEQSCAN));
+        assertFalse(pn.hasAnyNodeOfType(PlanNodeType.ORDERBY));
+    }
+
     /// Validate that a plan does not unintentionally use
     /// a completely inapplicable index scan for order.
     private void validateBruteForcePlan(String sql)
@@ -287,14 +296,22 @@ public class TestPlansOrderBy extends PlannerTestCase {
 
         // filter on indexed column on one table, prefix join constraint,
         // ORDER BY looking for 1 recovered spoiler -> no ORDER BY node
+        // when Tmanykeys drives the join. Left to itself, the planner drives it
+        // from T and sorts, rather than rescan T for every Tmanykeys row.
         validateOptimalPlan("SELECT * FROM T, Tmanykeys WHERE Tmanykeys.T_D0 = T.T_D2 AND Tmanykeys.T_D0 = ?  " +
+                "ORDER BY Tmanykeys.T_D1 LIMIT ?", "Tmanykeys,T");
+        validateIndexedBruteForcePlan("SELECT * FROM T, Tmanykeys WHERE Tmanykeys.T_D0 = T.T_D2 AND Tmanykeys.T_D0 = ?  " +
                 "ORDER BY Tmanykeys.T_D1 LIMIT ?");
         // This query requires additional recognition of transitive equality to eliminate the ORDER BY.
         // See ENG-4728.
         //*See ENG-4728.*/ validateOptimalPlan("SELECT * FROM T, Tmanykeys WHERE Tmanykeys.T_D0 = T.T_D2 AND T.T_D2 = ?  " +
         //*See ENG-4728.*/        "ORDER BY Tmanykeys.T_D1 LIMIT ?");
         // ORDER BY is not recovered, but index is chosen for sorting purpose --> no ORDER BY node
+        // when Tmanykeys drives the join. Left to itself, the planner hashes Tmanykeys
+        // against the few T rows and sorts.
         validateOptimalPlan("SELECT * FROM T, Tmanykeys WHERE Tmanykeys.T_D1 = T.T_D2 AND T.T_D0 = ?  " +
+                "ORDER BY Tmanykeys.T_D0 LIMIT ?", "Tmanykeys,T");
+        validateIndexedBruteForcePlan("SELECT * FROM T, Tmanykeys WHERE Tmanykeys.T_D1 = T.T_D2 AND T.T_D0 = ?  " +
                 "ORDER BY Tmanykeys.T_D0 LIMIT ?");
 
         // test NLJ --> need ORDER BY node
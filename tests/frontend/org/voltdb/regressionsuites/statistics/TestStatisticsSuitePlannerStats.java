@@ -48,7 +48,7 @@ public class TestStatisticsSuitePlannerStats extends StatisticsTestSuiteBase {
         System.out.println("\n\nTESTING PLANNER STATS\n\n\n");
         Client client  = getClient();
 
-        ColumnInfo[] expectedSchema = new ColumnInfo[14];
+        ColumnInfo[] expectedSchema = new ColumnInfo[17];
         expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -63,6 +63,9 @@ public class TestStatisticsSuitePlannerStats extends StatisticsTestSuiteBase {
         expectedSchema[11] = new ColumnInfo("PLAN_TIME_MAX", VoltType.BIGINT);
         expectedSchema[12] = new ColumnInfo("PLAN_TIME_AVG", VoltType.BIGINT);
         expectedSchema[13] = new ColumnInfo("FAILURES", VoltType.BIGINT);
+        expectedSchema[14] = new ColumnInfo("QUEUE_DEPTH", VoltType.BIGINT);
+        expectedSchema[15] = new ColumnInfo("QUEUE_TIME_AVG", VoltType.BIGINT);
+        expectedSchema[16] = new ColumnInfo("FAST_PATH_HITS", VoltType.BIGINT);
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
         VoltTable[] results = null;
@@ -143,6 +146,60 @@ public class TestStatisticsSuitePlannerStats extends StatisticsTestSuiteBase {
         assertTrue("Failed total FAILURES == 0, value was: " + failures, failures == 0);
     }
 
+    //
+    // ad hoc plan cache statistics
+    //
+    public void testPlanCacheStatistics() throws Exception {
+        System.out.println("\n\nTESTING PLANCACHE STATS\n\n\n");
+        Client client  = getClient();
+
+        ColumnInfo[] expectedSchema = new ColumnInfo[12];
+        expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
+        expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
+        expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
+        expectedSchema[3] = new ColumnInfo("CACHE_LEVEL", VoltType.STRING);
+        expectedSchema[4] = new ColumnInfo("ENTRIES", VoltType.BIGINT);
+        expectedSchema[5] = new ColumnInfo("MEMORY_USED", VoltType.BIGINT);
+        expectedSchema[6] = new ColumnInfo("MEMORY_LIMIT", VoltType.BIGINT);
+        expectedSchema[7] = new ColumnInfo("LOOKUPS", VoltType.BIGINT);
+        expectedSchema[8] = new ColumnInfo("HITS", VoltType.BIGINT);
+        expectedSchema[9] = new ColumnInfo("HIT_RATE", VoltType.FLOAT);
+        expectedSchema[10] = new ColumnInfo("INSERTIONS", VoltType.BIGINT);
+        expectedSchema[11] = new ColumnInfo("EVICTIONS", VoltType.BIGINT);
+        VoltTable expectedTable = new VoltTable(expectedSchema);
+
+        // Clear the interval statistics
+        VoltTable[] results = client.callProcedure("@Statistics", "plancache", 1).getResults();
+        assertEquals(1, results.length);
+
+        for (int i = 0; i < 10; i++) {
+            client.callProcedure("@AdHoc", "select * from warehouse").getResults();
+        }
+
+        results = client.callProcedure("@Statistics", "plancache", 1).getResults();
+        assertEquals(1, results.length);
+        System.out.println("Test plancache table: " + results[0].toString());
+        validateSchema(results[0], expectedTable);
+        VoltTable stats = results[0];
+
+        boolean foundLiteral = false;
+        while (stats.advanceRow()) {
+            if (!"LITERAL".equals(stats.getString("CACHE_LEVEL"))) {
+                continue;
+            }
+            foundLiteral = true;
+            long lookups = stats.getLong("LOOKUPS");
+            long hits = stats.getLong("HITS");
+            assertTrue("Failed LOOKUPS >= 10, value was: " + lookups, lookups >= 10);
+            assertTrue("Failed HITS >= 9, value was: " + hits, hits >= 9);
+            assertTrue("Failed ENTRIES > 0", stats.getLong("ENTRIES") > 0);
+            assertTrue("Failed MEMORY_USED <= MEMORY_LIMIT",
+                    stats.getLong("MEMORY_USED") <= stats.getLong("MEMORY_LIMIT"));
+            assertEquals(hits * 100.0 / lookups, stats.getDouble("HIT_RATE"), 0.001);
+        }
+        assertTrue(foundLiteral);
+    }
+
     //
     // Build a list of the tests to be run. Use the regression suite
     // helpers to allow multiple backends.
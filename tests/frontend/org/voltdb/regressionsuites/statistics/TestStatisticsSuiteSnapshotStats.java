@@ -50,7 +50,7 @@ public class TestStatisticsSuiteSnapshotStats extends StatisticsTestSuiteBase {
 
         Client client  = getFullyConnectedClient();
 
-        ColumnInfo[] expectedSchema = new ColumnInfo[15];
+        ColumnInfo[] expectedSchema = new ColumnInfo[16];
         expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -66,6 +66,7 @@ public class TestStatisticsSuiteSnapshotStats extends StatisticsTestSuiteBase {
         expectedSchema[12] = new ColumnInfo("THROUGHPUT", VoltType.FLOAT);
         expectedSchema[13] = new ColumnInfo("RESULT", VoltType.STRING);
         expectedSchema[14] = new ColumnInfo("TYPE", VoltType.STRING);
+        expectedSchema[15] = new ColumnInfo("TABLE_THROUGHPUT", VoltType.FLOAT);
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
         // Finagle a snapshot
@@ -91,6 +92,38 @@ public class TestStatisticsSuiteSnapshotStats extends StatisticsTestSuiteBase {
         validateRowSeenAtAllHosts(results[0], columnTargets, true);
     }
 
+    public void testSnapshotRestoreStatus() throws Exception {
+        System.out.println("\n\nTESTING SNAPSHOTRESTORE\n\n\n");
+        Client client  = getFullyConnectedClient();
+
+        ColumnInfo[] expectedSchema = new ColumnInfo[14];
+        expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
+        expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
+        expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
+        expectedSchema[3] = new ColumnInfo("TABLE", VoltType.STRING);
+        expectedSchema[4] = new ColumnInfo("TXNID", VoltType.BIGINT);
+        expectedSchema[5] = new ColumnInfo("FILES", VoltType.INTEGER);
+        expectedSchema[6] = new ColumnInfo("FILES_FINISHED", VoltType.INTEGER);
+        expectedSchema[7] = new ColumnInfo("START_TIME", VoltType.BIGINT);
+        expectedSchema[8] = new ColumnInfo("DURATION", VoltType.BIGINT);
+        expectedSchema[9] = new ColumnInfo("SIZE", VoltType.BIGINT);
+        expectedSchema[10] = new ColumnInfo("BYTES_READ", VoltType.BIGINT);
+        expectedSchema[11] = new ColumnInfo("ROWS", VoltType.BIGINT);
+        expectedSchema[12] = new ColumnInfo("THROUGHPUT", VoltType.FLOAT);
+        expectedSchema[13] = new ColumnInfo("ROW_THROUGHPUT", VoltType.FLOAT);
+        VoltTable expectedTable = new VoltTable(expectedSchema);
+
+        VoltTable[] results = null;
+        //
+        // SNAPSHOTRESTORE
+        //
+        results = client.callProcedure("@Statistics", "SNAPSHOTRESTORE", 0).getResults();
+        // one aggregate table returned
+        assertEquals(1, results.length);
+        System.out.println("Test SNAPSHOTRESTORE table: " + results[0].toString());
+        validateSchema(results[0], expectedTable);
+    }
+
     //
     // Build a list of the tests to be run. Use the regression suite
     // helpers to allow multiple backends.
@@ -0,0 +1,382 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.hadoop_voltpatches.util.PureJavaCrc32;
+import org.json_voltpatches.JSONObject;
+import org.json_voltpatches.JSONStringer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltcore.utils.InstanceId;
+import org.voltdb.EELibraryLoader;
+import org.voltdb.ExtensibleSnapshotDigestData;
+import org.voltdb.MockVoltDB;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.SnapshotFormat;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltSystemProcedure.SynthesizedPlanFragment;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.catalog.Table;
+import org.voltdb.sysprocs.SysProcFragmentId;
+import org.voltdb.utils.VoltFile;
+
+/**
+ * The digests of an incremental chain record where each snapshot stands in it,
+ * a restore of a delta resolves the chain from them and takes each partition
+ * from the newest snapshot that wrote it.
+ */
+public class TestSnapshotIncrementalDigest {
+
+    private static final VoltLogger LOG = new VoltLogger("HOST");
+
+    private static final int PARTITIONS = 3;
+
+    private MockVoltDB m_voltdb;
+    private File m_dir;
+
+    @Before
+    public void setUp() throws Exception {
+        // The chunk CRCs are native
+        EELibraryLoader.loadExecutionEngineLibrary(true);
+        m_voltdb = new MockVoltDB();
+        VoltDB.replaceVoltDBInstanceForTest(m_voltdb);
+        m_dir = File.createTempFile("incremental", "");
+        assertTrue(m_dir.delete());
+        assertTrue(m_dir.mkdir());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        VoltFile.recursivelyDelete(m_dir);
+        VoltDB.instance().shutdown(null);
+    }
+
+    private void writeDigest(String nonce, SnapshotIncrementalMode mode, String parent, String base)
+            throws Exception {
+        JSONObject jsData = new JSONObject();
+        if (mode != SnapshotIncrementalMode.NONE) {
+            JSONObject incremental = new JSONObject();
+            incremental.put(SnapshotUtil.JSON_INCREMENTAL_MODE, mode.name());
+            if (parent != null) {
+                incremental.put(SnapshotUtil.JSON_INCREMENTAL_PARENT, parent);
+            }
+            incremental.put(SnapshotUtil.JSON_INCREMENTAL_BASE, base);
+            jsData.put(SnapshotUtil.JSON_INCREMENTAL, incremental);
+        }
+        ExtensibleSnapshotDigestData extraData = new ExtensibleSnapshotDigestData(
+                new HashMap<>(), new HashMap<>(), new HashMap<>(), jsData);
+        SnapshotUtil.writeSnapshotDigest(1L, 0L, m_dir.getPath(), SnapshotPathType.SNAP_AUTO.name(),
+                nonce, new ArrayList<Table>(), 0, new HashMap<Integer, Long>(), extraData,
+                new InstanceId(0, 0), System.currentTimeMillis(), 1, 0).run();
+    }
+
+    private JSONObject readDigest(String nonce) throws Exception {
+        List<JSONObject> digests = SnapshotUtil.retrieveDigests(m_dir.getPath(), nonce, LOG);
+        assertEquals(1, digests.size());
+        return digests.get(0);
+    }
+
+    @Test
+    public void testChainDigests() throws Exception {
+        writeDigest("base", SnapshotIncrementalMode.BASE, null, "base");
+        writeDigest("delta1", SnapshotIncrementalMode.DELTA, "base", "base");
+        writeDigest("delta2", SnapshotIncrementalMode.DELTA, "delta1", "base");
+        writeDigest("full", SnapshotIncrementalMode.NONE, null, null);
+
+        JSONObject base = readDigest("base");
+        assertEquals(SnapshotIncrementalMode.BASE, SnapshotIncrementalMode.fromJSON(base));
+        assertFalse(SnapshotUtil.isIncrementalDelta(base));
+        assertNull(base.getJSONObject(SnapshotUtil.JSON_INCREMENTAL)
+                .optString(SnapshotUtil.JSON_INCREMENTAL_PARENT, null));
+
+        // Each delta points back at the previous snapshot and the base of the chain
+        JSONObject delta1 = readDigest("delta1");
+        assertTrue(SnapshotUtil.isIncrementalDelta(delta1));
+        assertEquals("base", delta1.getJSONObject(SnapshotUtil.JSON_INCREMENTAL)
+                .getString(SnapshotUtil.JSON_INCREMENTAL_PARENT));
+        JSONObject delta2 = readDigest("delta2");
+        assertTrue(SnapshotUtil.isIncrementalDelta(delta2));
+        assertEquals("delta1", delta2.getJSONObject(SnapshotUtil.JSON_INCREMENTAL)
+                .getString(SnapshotUtil.JSON_INCREMENTAL_PARENT));
+        assertEquals("base", delta2.getJSONObject(SnapshotUtil.JSON_INCREMENTAL)
+                .getString(SnapshotUtil.JSON_INCREMENTAL_BASE));
+
+        JSONObject full = readDigest("full");
+        assertEquals(SnapshotIncrementalMode.NONE, SnapshotIncrementalMode.fromJSON(full));
+        assertFalse(SnapshotUtil.isIncrementalDelta(full));
+    }
+
+    @Test
+    public void testResolveChain() throws Exception {
+        writeDigest("base", SnapshotIncrementalMode.BASE, null, "base");
+        writeDigest("delta1", SnapshotIncrementalMode.DELTA, "base", "base");
+        writeDigest("delta2", SnapshotIncrementalMode.DELTA, "delta1", "base");
+        writeDigest("full", SnapshotIncrementalMode.NONE, null, null);
+        writeDigest("orphan", SnapshotIncrementalMode.DELTA, "gone", "gone");
+
+        assertEquals(Arrays.asList("delta2", "delta1", "base"),
+                SnapshotUtil.retrieveIncrementalChain(m_dir.getPath(), "delta2", LOG));
+        assertEquals(Arrays.asList("base"),
+                SnapshotUtil.retrieveIncrementalChain(m_dir.getPath(), "base", LOG));
+        assertEquals(Arrays.asList("full"),
+                SnapshotUtil.retrieveIncrementalChain(m_dir.getPath(), "full", LOG));
+        // A snapshot of the chain is missing
+        assertNull(SnapshotUtil.retrieveIncrementalChain(m_dir.getPath(), "orphan", LOG));
+    }
+
+    /*
+     * Write the save file of a table as a native snapshot does, with a chunk for each
+     * partition in the map, even if it has no rows. Partitions of the header left out
+     * of the map get no chunk, like the unchanged ones of a delta.
+     */
+    private File writeSaveFile(String nonce, Table table, long txnId, Map<Integer, long[]> partitionRows)
+            throws Exception {
+        final VoltTable schema = new VoltTable(new VoltTable.ColumnInfo("ID", VoltType.BIGINT));
+        final byte schemaBytes[] = PrivateVoltTableFactory.getSchemaBytes(schema);
+
+        final JSONStringer stringer = new JSONStringer();
+        stringer.object();
+        stringer.keySymbolValuePair("txnId", txnId);
+        stringer.keySymbolValuePair("timestamp", txnId);
+        stringer.keySymbolValuePair("hostId", 0);
+        stringer.keySymbolValuePair("hostname", "localhost");
+        stringer.keySymbolValuePair("clusterName", "cluster");
+        stringer.keySymbolValuePair("databaseName", "database");
+        stringer.keySymbolValuePair("tableName", table.getTypeName());
+        stringer.keySymbolValuePair("isReplicated", table.getIsreplicated());
+        stringer.keySymbolValuePair("isCompressed", false);
+        stringer.keySymbolValuePair("checksumType", "CRC32");
+        if (!table.getIsreplicated()) {
+            stringer.key("partitionIds").array();
+            for (int partition = 0; partition < PARTITIONS; partition++) {
+                stringer.value(partition);
+            }
+            stringer.endArray();
+            stringer.keySymbolValuePair("numPartitions", PARTITIONS);
+        }
+        stringer.endObject();
+        final byte jsonBytes[] = stringer.toString().getBytes("UTF-8");
+
+        final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        final DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeByte(1);
+        header.writeInt(0);
+        header.writeInt(0);
+        header.writeInt(0);
+        header.writeInt(1);
+        header.writeInt(jsonBytes.length);
+        header.write(jsonBytes);
+        header.flush();
+
+        final ByteBuffer crcd = ByteBuffer.allocate(4 + headerBytes.size() + schemaBytes.length);
+        crcd.putInt(headerBytes.size());
+        crcd.put(headerBytes.toByteArray());
+        crcd.put(schemaBytes);
+        final PureJavaCrc32 crc = new PureJavaCrc32();
+        crc.update(crcd.array(), 0, crcd.capacity());
+
+        final File file = new File(m_dir,
+                SnapshotUtil.constructFilenameForTable(table, nonce, SnapshotFormat.NATIVE, 0));
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt((int)crc.getValue());
+            out.write(crcd.array());
+            for (Map.Entry<Integer, long[]> e : partitionRows.entrySet()) {
+                // Version 1 chunks have the rows, each after its length, followed by the row count
+                final ByteBuffer data = ByteBuffer.allocate(e.getValue().length * 12 + 4);
+                for (long id : e.getValue()) {
+                    data.putInt(8);
+                    data.putLong(id);
+                }
+                data.putInt(e.getValue().length);
+
+                final ByteBuffer chunkHeader = ByteBuffer.allocate(16);
+                chunkHeader.putInt(data.capacity() + 12);
+                chunkHeader.putInt(e.getKey());
+                final PureJavaCrc32 partitionIdCRC = new PureJavaCrc32();
+                partitionIdCRC.update(chunkHeader.array(), 4, 4);
+                chunkHeader.putInt((int)partitionIdCRC.getValue());
+                final PureJavaCrc32 dataCRC = new PureJavaCrc32();
+                dataCRC.update(data.array(), 0, data.capacity());
+                chunkHeader.putInt((int)dataCRC.getValue());
+                out.write(chunkHeader.array());
+                out.write(data.array());
+            }
+        }
+        return file;
+    }
+
+    private static Map<Integer, long[]> rows(Object... partitionsAndRows) {
+        final Map<Integer, long[]> rows = new TreeMap<Integer, long[]>();
+        for (int ii = 0; ii < partitionsAndRows.length; ii += 2) {
+            rows.put((Integer)partitionsAndRows[ii], (long[])partitionsAndRows[ii + 1]);
+        }
+        return rows;
+    }
+
+    /*
+     * The save-file state of a snapshot on this host as the restore scan reports it,
+     * only the partitions a delta wrote
+     */
+    private VoltTable saveFileState(String nonce, boolean delta) throws Exception {
+        final VoltTable state = ClusterSaveFileState.constructEmptySaveFileStateVoltTable();
+        for (String tableName : new String[] { "T", "R" }) {
+            final File file = new File(m_dir, SnapshotUtil.constructFilenameForTable(
+                    m_voltdb.getTable(tableName), nonce, SnapshotFormat.NATIVE, 0));
+            final TableSaveFile saveFile = new TableSaveFile(new FileInputStream(file), 1, null);
+            try {
+                Set<Integer> partitions = new TreeSet<Integer>();
+                if (delta && !saveFile.isReplicated()) {
+                    partitions.addAll(SnapshotUtil.retrieveWrittenPartitionIds(file));
+                } else {
+                    for (int partition : saveFile.getPartitionIds()) {
+                        partitions.add(partition);
+                    }
+                }
+                for (int partition : partitions) {
+                    state.addRow(0, "localhost", saveFile.getHostId(), saveFile.getHostname(),
+                            saveFile.getClusterName(), saveFile.getDatabaseName(),
+                            saveFile.getTableName(), saveFile.getTxnId(),
+                            saveFile.isReplicated() ? "TRUE" : "FALSE",
+                            partition, saveFile.getTotalPartitions());
+                }
+            } finally {
+                saveFile.close();
+            }
+        }
+        return state;
+    }
+
+    private List<Long> readRows(String nonce, Table table, int originalHost, int partition) throws Exception {
+        final File file = new File(m_dir,
+                SnapshotUtil.constructFilenameForTable(table, nonce, SnapshotFormat.NATIVE, originalHost));
+        final List<Long> ids = new ArrayList<Long>();
+        final TableSaveFile saveFile =
+                new TableSaveFile(new FileInputStream(file), 1, new Integer[] { partition });
+        try {
+            while (saveFile.hasMoreChunks()) {
+                final BBContainer c = saveFile.getNextChunk();
+                if (c == null) {
+                    continue;
+                }
+                try {
+                    final VoltTable vt = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b(), true);
+                    while (vt.advanceRow()) {
+                        ids.add(vt.getLong(0));
+                    }
+                } finally {
+                    c.discard();
+                }
+            }
+        } finally {
+            saveFile.close();
+        }
+        return ids;
+    }
+
+    @Test
+    public void testRestoreChain() throws Exception {
+        m_voltdb.addTable("T", false);
+        m_voltdb.addTable("R", true);
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            m_voltdb.addSite(CoreUtils.getHSIdFromHostAndSite(0, partition + 1), partition);
+        }
+        final Table partitioned = m_voltdb.getTable("T");
+        final Table replicated = m_voltdb.getTable("R");
+
+        writeDigest("base", SnapshotIncrementalMode.BASE, null, "base");
+        writeSaveFile("base", partitioned, 100,
+                rows(0, new long[] { 0, 1 }, 1, new long[] { 10 }, 2, new long[] { 20 }));
+        writeSaveFile("base", replicated, 100, rows(0, new long[] { 1 }));
+        // Only partition 1 changed
+        writeDigest("delta1", SnapshotIncrementalMode.DELTA, "base", "base");
+        writeSaveFile("delta1", partitioned, 200, rows(1, new long[] { 10, 11 }));
+        writeSaveFile("delta1", replicated, 200, rows(0, new long[] { 1, 2 }));
+        // Partition 0 was emptied and partition 2 changed
+        writeDigest("delta2", SnapshotIncrementalMode.DELTA, "delta1", "base");
+        writeSaveFile("delta2", partitioned, 300, rows(0, new long[0], 2, new long[] { 21 }));
+        writeSaveFile("delta2", replicated, 300, rows(0, new long[] { 1, 2, 3 }));
+
+        final List<String> chain = SnapshotUtil.retrieveIncrementalChain(m_dir.getPath(), "delta2", LOG);
+        final List<VoltTable> states = new ArrayList<VoltTable>();
+        for (String nonce : chain) {
+            states.add(saveFileState(nonce, !nonce.equals("base")));
+        }
+        final ClusterSaveFileState clusterState = new ClusterSaveFileState(chain, states);
+
+        final PartitionedTableSaveFileState partitionedState =
+                (PartitionedTableSaveFileState)clusterState.getTableState("T");
+        assertEquals("delta2", partitionedState.getPartitionNonce(0));
+        assertEquals("delta1", partitionedState.getPartitionNonce(1));
+        assertEquals("delta2", partitionedState.getPartitionNonce(2));
+
+        // Distribute each partition from the save file the plan picked
+        final Map<Integer, List<Long>> restored = new TreeMap<Integer, List<Long>>();
+        for (SynthesizedPlanFragment fragment :
+                partitionedState.generateRestorePlan(partitioned, m_voltdb.getSiteTrackerForSnapshot())) {
+            if (fragment.fragmentId != SysProcFragmentId.PF_restoreDistributePartitionedTableAsPartitioned) {
+                continue;
+            }
+            final Object params[] = fragment.parameters.toArray();
+            final int originalHosts[] = (int[])params[1];
+            final int partitions[] = (int[])params[2];
+            final String nonces[] = (String[])params[5];
+            for (int ii = 0; ii < partitions.length; ii++) {
+                restored.put(partitions[ii], readRows(nonces[ii], partitioned, originalHosts[ii], partitions[ii]));
+            }
+        }
+        assertEquals(PARTITIONS, restored.size());
+        assertEquals(Arrays.<Long>asList(), restored.get(0));
+        assertEquals(Arrays.asList(10L, 11L), restored.get(1));
+        assertEquals(Arrays.asList(21L), restored.get(2));
+
+        // The replicated table comes whole from the newest snapshot
+        assertEquals(300, clusterState.getTableState("R").getTxnId());
+        assertEquals(Arrays.asList(1L, 2L, 3L), readRows(chain.get(0), replicated, 0, 0));
+    }
+}
@@ -0,0 +1,313 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.sysprocs.saverestore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop_voltpatches.util.PureJavaCrc32;
+import org.apache.hadoop_voltpatches.util.PureJavaCrc32C;
+import org.json_voltpatches.JSONStringer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.EELibraryLoader;
+import org.voltdb.PrivateVoltTableFactory;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.utils.CompressionService;
+
+/**
+ * Chunks of a save file are checked and decompressed in parallel, they must
+ * still come out of getNextChunk() in file order and close() must be safe
+ * with chunks in flight.
+ */
+public class TestTableSaveFile {
+
+    private static final int CHUNKS = 32;
+    private static final int READ_AHEAD = 8;
+
+    private final List<File> m_files = new ArrayList<File>();
+
+    @Before
+    public void setUp() throws Exception {
+        // The chunk CRCs are native
+        EELibraryLoader.loadExecutionEngineLibrary(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (File file : m_files) {
+            file.delete();
+        }
+    }
+
+    private static VoltTable newTable() {
+        return new VoltTable(new VoltTable.ColumnInfo("ID", VoltType.BIGINT),
+                             new VoltTable.ColumnInfo("NAME", VoltType.STRING));
+    }
+
+    /*
+     * Rows of chunk n start at n * 1000, earlier chunks are bigger so they
+     * tend to finish decompressing after the ones behind them
+     */
+    private static int rowsInChunk(int chunk) {
+        return 50 + (CHUNKS - chunk) * 20;
+    }
+
+    /*
+     * The row count followed by the rows, as the chunk is laid out once decompressed
+     */
+    private static byte[] chunkPayload(int chunk, int schemaLength) {
+        final VoltTable vt = newTable();
+        for (int ii = 0; ii < rowsInChunk(chunk); ii++) {
+            vt.addRow(chunk * 1000L + ii, "row " + ii + " of chunk " + chunk);
+        }
+        final ByteBuffer flat = ByteBuffer.allocate(vt.getSerializedSize());
+        vt.flattenToBuffer(flat);
+        // Skip the table length and the schema
+        final byte payload[] = new byte[flat.capacity() - 4 - schemaLength];
+        flat.position(4 + schemaLength);
+        flat.get(payload);
+        return payload;
+    }
+
+    /**
+     * Write a replicated table save file of CHUNKS chunks, version 2 chunks compressed
+     * with the algorithm, or uncompressed version 1 chunks if it is null. Every file is
+     * new, one still mapped by a closed save file must not be truncated underneath it.
+     */
+    private File writeSaveFile(CompressionService.Algorithm compression) throws Exception {
+        final File file = File.createTempFile("TestTableSaveFile", ".vpt");
+        m_files.add(file);
+        final byte schemaBytes[] = PrivateVoltTableFactory.getSchemaBytes(newTable());
+
+        final JSONStringer stringer = new JSONStringer();
+        stringer.object();
+        stringer.keySymbolValuePair("txnId", 42L);
+        stringer.keySymbolValuePair("timestamp", 42L);
+        stringer.keySymbolValuePair("hostId", 0);
+        stringer.keySymbolValuePair("hostname", "localhost");
+        stringer.keySymbolValuePair("clusterName", "cluster");
+        stringer.keySymbolValuePair("databaseName", "database");
+        stringer.keySymbolValuePair("tableName", "TABLE_" + compression);
+        stringer.keySymbolValuePair("isReplicated", true);
+        stringer.keySymbolValuePair("isCompressed", compression != null);
+        stringer.keySymbolValuePair("checksumType", compression != null ? "CRC32C" : "CRC32");
+        if (compression != null) {
+            stringer.keySymbolValuePair("compression", compression.name());
+        }
+        stringer.endObject();
+        final byte jsonBytes[] = stringer.toString().getBytes("UTF-8");
+
+        final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        final DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeByte(1);
+        header.writeInt(0);
+        header.writeInt(0);
+        header.writeInt(0);
+        header.writeInt(compression != null ? 2 : 1);
+        header.writeInt(jsonBytes.length);
+        header.write(jsonBytes);
+        header.flush();
+
+        final ByteBuffer crcd = ByteBuffer.allocate(4 + headerBytes.size() + schemaBytes.length);
+        crcd.putInt(headerBytes.size());
+        crcd.put(headerBytes.toByteArray());
+        crcd.put(schemaBytes);
+        final PureJavaCrc32 crc = new PureJavaCrc32();
+        crc.update(crcd.array(), 0, crcd.capacity());
+
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt((int)crc.getValue());
+            out.write(crcd.array());
+            for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                final byte payload[] = chunkPayload(chunk, schemaBytes.length);
+                if (compression != null) {
+                    writeChunkV2(out, payload, compression);
+                } else {
+                    writeChunkV1(out, payload);
+                }
+            }
+        }
+        return file;
+    }
+
+    private static void writeChunkV2(DataOutputStream out, byte payload[],
+                                     CompressionService.Algorithm compression) throws IOException {
+        final ByteBuffer input = ByteBuffer.allocateDirect(payload.length);
+        input.put(payload).flip();
+        final ByteBuffer compressed = ByteBuffer.allocateDirect(
+                CompressionService.maxCompressedLength(payload.length, compression));
+        if (compression == CompressionService.Algorithm.LZ4) {
+            CompressionService.compressBufferLZ4(input, compressed);
+        } else {
+            CompressionService.compressBuffer(input, compressed);
+        }
+
+        final ByteBuffer chunkHeader = ByteBuffer.allocate(16);
+        chunkHeader.putInt(compressed.remaining());
+        chunkHeader.putInt(0);
+        final PureJavaCrc32C partitionIdCRC = new PureJavaCrc32C();
+        partitionIdCRC.update(chunkHeader.array(), 0, 8);
+        chunkHeader.putInt((int)partitionIdCRC.getValue());
+        chunkHeader.putInt(DBBPool.getBufferCRC32C(compressed, 0, compressed.remaining()));
+        out.write(chunkHeader.array());
+
+        final byte compressedBytes[] = new byte[compressed.remaining()];
+        compressed.get(compressedBytes);
+        out.write(compressedBytes);
+    }
+
+    /*
+     * Version 1 chunks have the row count after the rows and the length counts the CRCs
+     */
+    private static void writeChunkV1(DataOutputStream out, byte payload[]) throws IOException {
+        final ByteBuffer data = ByteBuffer.allocate(payload.length);
+        data.put(payload, 4, payload.length - 4);
+        data.put(payload, 0, 4);
+
+        final ByteBuffer chunkHeader = ByteBuffer.allocate(16);
+        chunkHeader.putInt(data.capacity() + 12);
+        chunkHeader.putInt(0);
+        final PureJavaCrc32 partitionIdCRC = new PureJavaCrc32();
+        partitionIdCRC.update(chunkHeader.array(), 4, 4);
+        chunkHeader.putInt((int)partitionIdCRC.getValue());
+        final PureJavaCrc32 dataCRC = new PureJavaCrc32();
+        dataCRC.update(data.array(), 0, data.capacity());
+        chunkHeader.putInt((int)dataCRC.getValue());
+        out.write(chunkHeader.array());
+        out.write(data.array());
+    }
+
+    private static void checkChunk(int chunk, BBContainer c) {
+        assertNotNull("Missing chunk " + chunk, c);
+        assertEquals(0, ((TableSaveFile.Container)c).partitionId);
+        final VoltTable vt = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b(), true);
+        assertEquals(rowsInChunk(chunk), vt.getRowCount());
+        int ii = 0;
+        while (vt.advanceRow()) {
+            assertEquals(chunk * 1000L + ii, vt.getLong(0));
+            assertEquals("row " + ii + " of chunk " + chunk, vt.getString(1));
+            ii++;
+        }
+    }
+
+    private void readInOrder(CompressionService.Algorithm compression) throws Exception {
+        final File file = writeSaveFile(compression);
+        final TableSaveFile saveFile = new TableSaveFile(new FileInputStream(file), READ_AHEAD, null);
+        try {
+            assertEquals(compression != null, saveFile.isCompressed());
+            assertTrue(saveFile.getCompleted());
+            // Hold on to every chunk so none of their buffers are reused underneath
+            final List<BBContainer> chunks = new ArrayList<BBContainer>();
+            try {
+                for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                    assertTrue(saveFile.hasMoreChunks());
+                    final BBContainer c = saveFile.getNextChunk();
+                    chunks.add(c);
+                    checkChunk(chunk, c);
+                }
+                assertNull(saveFile.getNextChunk());
+                assertFalse(saveFile.hasMoreChunks());
+                assertTrue(saveFile.getCorruptedPartitionIds().isEmpty());
+            } finally {
+                for (BBContainer c : chunks) {
+                    if (c != null) {
+                        c.discard();
+                    }
+                }
+            }
+        } finally {
+            saveFile.close();
+        }
+    }
+
+    @Test
+    public void testChunksInOrderSnappy() throws Exception {
+        readInOrder(CompressionService.Algorithm.SNAPPY);
+    }
+
+    @Test
+    public void testChunksInOrderLZ4() throws Exception {
+        readInOrder(CompressionService.Algorithm.LZ4);
+    }
+
+    @Test
+    public void testChunksInOrderUncompressed() throws Exception {
+        readInOrder(null);
+    }
+
+    /*
+     * Close with chunks read ahead, some of them still decompressing, and one handed
+     * out and not yet discarded
+     */
+    private void closeWithChunksOutstanding(CompressionService.Algorithm compression) throws Exception {
+        final File file = writeSaveFile(compression);
+        final TableSaveFile saveFile = new TableSaveFile(new FileInputStream(file), READ_AHEAD, null);
+        final BBContainer first = saveFile.getNextChunk();
+        checkChunk(0, first);
+        saveFile.close();
+
+        // Still readable after the close, the buffer is freed once it is discarded
+        checkChunk(0, first);
+        first.discard();
+    }
+
+    @Test
+    public void testCloseWithChunksOutstanding() throws Exception {
+        closeWithChunksOutstanding(CompressionService.Algorithm.SNAPPY);
+        closeWithChunksOutstanding(CompressionService.Algorithm.LZ4);
+    }
+
+    @Test
+    public void testCloseWithChunksOutstandingUncompressed() throws Exception {
+        closeWithChunksOutstanding(null);
+    }
+
+    @Test
+    public void testCloseBeforeReading() throws Exception {
+        final File file = writeSaveFile(CompressionService.Algorithm.SNAPPY);
+        final TableSaveFile saveFile = new TableSaveFile(new FileInputStream(file), READ_AHEAD, null);
+        assertTrue(saveFile.hasMoreChunks());
+        saveFile.close();
+        assertNull(saveFile.getNextChunk());
+        assertFalse(saveFile.hasMoreChunks());
+    }
+}
@@ -0,0 +1,180 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.utils.BinaryDeque.BinaryDequeReader;
+
+/**
+ * Throughput of a PersistentBinaryDeque with one writer offering while one or more cursors
+ * poll at the same time, and of replaying a closed deque from the start. The replay reads
+ * mapped segments unless run with -DPBD_MAP_READ_ONLY_SEGMENTS=false.
+ *
+ * Usage: PBDBenchmark [megabytes per run] [entry bytes] [compress true|false] [directory]
+ */
+public class PBDBenchmark {
+    private static final String NONCE = "pbd_benchmark";
+    private static final VoltLogger LOG = new VoltLogger("PBDBenchmark");
+
+    private static ByteBuffer payload(int entryBytes) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(entryBytes);
+        // Repetitive enough to compress, like most export and DR data
+        for (int i = 0; i < entryBytes; i++) {
+            buf.put((byte) (i % 61));
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static void clear(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            if (f.getName().startsWith(NONCE)) {
+                f.delete();
+            }
+        }
+    }
+
+    private static Thread startReader(String cursorId, final BinaryDequeReader reader, final long entries,
+            final AtomicReference<Throwable> failure) {
+        Thread t = new Thread("PBD reader " + cursorId) {
+            @Override
+            public void run() {
+                try {
+                    long read = 0;
+                    while (read < entries && failure.get() == null) {
+                        BBContainer cont = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                        if (cont == null) {
+                            Thread.yield();
+                            continue;
+                        }
+                        cont.discard();
+                        read++;
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        };
+        t.start();
+        return t;
+    }
+
+    private static void report(String name, long entries, int entryBytes, int readers, long elapsedNanos) {
+        final double seconds = elapsedNanos / 1000000000.0;
+        final double mb = entries * (double) entryBytes / (1024 * 1024);
+        System.out.printf("%-6s %d reader(s): %,d entries in %,d ms, %.1f MB/s and %,.0f entries/s per reader%n",
+                name, readers, entries, elapsedNanos / 1000000, mb / seconds, entries / seconds);
+    }
+
+    private static void run(File dir, long entries, int entryBytes, boolean compress, int readers, boolean report)
+            throws Exception {
+        clear(dir);
+        final ByteBuffer payload = payload(entryBytes);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        // Offer and poll at the same time
+        PersistentBinaryDeque pbd = new PersistentBinaryDeque(NONCE, dir, LOG);
+        List<Thread> threads = new ArrayList<Thread>();
+        long start = System.nanoTime();
+        for (int i = 0; i < readers; i++) {
+            threads.add(startReader("live" + i, pbd.openForRead("live" + i), entries, failure));
+        }
+        offer(pbd, payload, entries, compress, failure);
+        for (Thread t : threads) {
+            t.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (failure.get() != null) {
+            throw new Exception(failure.get());
+        }
+        if (report) {
+            report("live", entries, entryBytes, readers, elapsed);
+        }
+        pbd.closeAndDelete();
+
+        // Fill a deque, then read everything from the closed segments after reopening it
+        pbd = new PersistentBinaryDeque(NONCE, dir, LOG);
+        offer(pbd, payload, entries, compress, failure);
+        pbd.close();
+        pbd = new PersistentBinaryDeque(NONCE, dir, LOG);
+        threads.clear();
+        start = System.nanoTime();
+        for (int i = 0; i < readers; i++) {
+            threads.add(startReader("replay" + i, pbd.openForRead("replay" + i), entries, failure));
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        elapsed = System.nanoTime() - start;
+        if (failure.get() != null) {
+            throw new Exception(failure.get());
+        }
+        if (report) {
+            report("replay", entries, entryBytes, readers, elapsed);
+        }
+        pbd.closeAndDelete();
+    }
+
+    private static void offer(PersistentBinaryDeque pbd, ByteBuffer payload, long entries, boolean compress,
+            AtomicReference<Throwable> failure) {
+        try {
+            for (long i = 0; i < entries && failure.get() == null; i++) {
+                // The deque discards what it's offered, the payload is shared so there's nothing to free
+                pbd.offer(new BBContainer(payload.duplicate()) {
+                    @Override
+                    public void discard() {
+                        checkDoubleFree();
+                    }
+                }, compress);
+            }
+        } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final long megabytes = args.length > 0 ? Long.parseLong(args[0]) : 1024;
+        final int entryBytes = args.length > 1 ? Integer.parseInt(args[1]) : 1024 * 1024 * 2;
+        final boolean compress = args.length > 2 ? Boolean.parseBoolean(args[2]) : false;
+        final File dir = new File(args.length > 3 ? args[3] : System.getProperty("java.io.tmpdir"));
+        final long entries = Math.max(1, megabytes * 1024 * 1024 / entryBytes);
+
+        // Warm up before measuring
+        run(dir, Math.max(1, entries / 10), entryBytes, compress, 1, false);
+        for (int readers : new int[] { 1, 2, 4 }) {
+            run(dir, entries, entryBytes, compress, readers, true);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.TimestampType;
+import org.voltdb.utils.ColumnarSnapshotCodec.Block;
+import org.voltdb.utils.ColumnarSnapshotCodec.ColumnStats;
+
+public class TestColumnarSnapshotCodec {
+
+    private static VoltTable makeTable(int rows) {
+        VoltTable table = new VoltTable(
+                new ColumnInfo("ID", VoltType.BIGINT),
+                new ColumnInfo("TS", VoltType.TIMESTAMP),
+                new ColumnInfo("STATUS", VoltType.TINYINT),
+                new ColumnInfo("SCORE", VoltType.FLOAT),
+                new ColumnInfo("CITY", VoltType.STRING),
+                new ColumnInfo("NAME", VoltType.STRING),
+                new ColumnInfo("PRICE", VoltType.DECIMAL),
+                new ColumnInfo("DATA", VoltType.VARBINARY),
+                new ColumnInfo("LOC", VoltType.GEOGRAPHY_POINT));
+        for (int ii = 0; ii < rows; ii++) {
+            table.addRow(1000L + ii,
+                         new TimestampType(1500000000000000L + ii * 1000L),
+                         (byte)(ii / 100),
+                         ii % 7 == 0 ? null : ii * 0.5,
+                         ii % 3 == 0 ? "BOSTON" : "PARIS",
+                         "name" + ii,
+                         new BigDecimal("12.5").add(new BigDecimal(ii)),
+                         ii % 5 == 0 ? null : new byte[] { (byte)ii, 1, 2 },
+                         new GeographyPointValue(ii % 10, 45.0));
+        }
+        return table;
+    }
+
+    private static ColumnStats column(Block block, String name) {
+        for (ColumnStats stats : block.columns) {
+            if (stats.name.equals(name)) {
+                return stats;
+            }
+        }
+        fail("No column " + name);
+        return null;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        VoltTable table = makeTable(1000);
+        byte block[] = ColumnarSnapshotCodec.encode(table, 7);
+        assertTrue(block.length < table.getSerializedSize() / 4);
+
+        ByteBuffer buf = ByteBuffer.wrap(block);
+        Block decoded = ColumnarSnapshotCodec.decode(buf, true);
+        assertFalse(buf.hasRemaining());
+        assertEquals(7, decoded.partitionId);
+        assertEquals(1000, decoded.rowCount);
+        assertTrue(decoded.table.hasSameContents(table));
+    }
+
+    @Test
+    public void testEncodingsAndStats() throws Exception {
+        Block block = ColumnarSnapshotCodec.decode(ByteBuffer.wrap(ColumnarSnapshotCodec.encode(makeTable(1000), 0)),
+                                                   false);
+        assertNull(block.table);
+
+        assertEquals(ColumnarSnapshotCodec.ENCODING_DELTA, column(block, "ID").encoding);
+        assertEquals(1000L, column(block, "ID").minLong);
+        assertEquals(1999L, column(block, "ID").maxLong);
+        assertEquals(ColumnarSnapshotCodec.ENCODING_DELTA, column(block, "TS").encoding);
+        assertEquals(ColumnarSnapshotCodec.ENCODING_RLE, column(block, "STATUS").encoding);
+        assertEquals(9L, column(block, "STATUS").maxLong);
+        assertEquals(ColumnarSnapshotCodec.ENCODING_DICTIONARY, column(block, "CITY").encoding);
+        assertEquals(ColumnarSnapshotCodec.ENCODING_PLAIN, column(block, "NAME").encoding);
+        assertEquals(ColumnarSnapshotCodec.ENCODING_DICTIONARY, column(block, "LOC").encoding);
+
+        ColumnStats score = column(block, "SCORE");
+        assertEquals(143, score.nullCount);
+        assertTrue(score.hasRange);
+        assertEquals(0.5, score.minDouble, 0.0);
+        assertEquals(499.5, score.maxDouble, 0.0);
+        assertEquals(200, column(block, "DATA").nullCount);
+    }
+
+    @Test
+    public void testCorruptBlock() throws Exception {
+        byte block[] = ColumnarSnapshotCodec.encode(makeTable(10), 0);
+        block[block.length - 1] ^= 0x55;
+        try {
+            ColumnarSnapshotCodec.decode(ByteBuffer.wrap(block), true);
+            fail("Corrupt block decoded");
+        } catch (IOException expected) {
+        }
+
+        byte notABlock[] = new byte[ColumnarSnapshotCodec.BLOCK_HEADER_SIZE];
+        try {
+            ColumnarSnapshotCodec.readBlockLength(ByteBuffer.wrap(notABlock));
+            fail("Bad magic accepted");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testEmptyAndAllNullColumns() throws Exception {
+        VoltTable table = new VoltTable(new ColumnInfo("A", VoltType.INTEGER),
+                                        new ColumnInfo("B", VoltType.VARBINARY));
+        Block block = ColumnarSnapshotCodec.decode(ByteBuffer.wrap(ColumnarSnapshotCodec.encode(table, 1)), true);
+        assertEquals(0, block.rowCount);
+        assertEquals(0, block.table.getRowCount());
+
+        table.addRow(null, null);
+        table.addRow(null, new byte[] { 3 });
+        block = ColumnarSnapshotCodec.decode(ByteBuffer.wrap(ColumnarSnapshotCodec.encode(table, 1)), true);
+        assertFalse(column(block, "A").hasRange);
+        assertTrue(block.table.hasSameContents(table));
+        block.table.advanceRow();
+        block.table.advanceRow();
+        assertArrayEquals(new byte[] { 3 }, block.table.getVarbinary(1));
+    }
+}
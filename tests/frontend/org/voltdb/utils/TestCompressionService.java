@@ -0,0 +1,79 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestCompressionService {
+
+    private static ByteBuffer compressibleData(int length) {
+        ByteBuffer data = ByteBuffer.allocateDirect(length);
+        Random r = new Random(42);
+        while (data.hasRemaining()) {
+            data.put((byte) ('a' + r.nextInt(4)));
+        }
+        data.flip();
+        return data;
+    }
+
+    @Test
+    public void testLZ4RoundTrip() throws Exception {
+        ByteBuffer data = compressibleData(1024 * 1024);
+        ByteBuffer compressed =
+                ByteBuffer.allocateDirect(CompressionService.maxCompressedLength(data.remaining(),
+                                                                                  CompressionService.Algorithm.LZ4));
+        final int compressedLength = CompressionService.compressBufferLZ4(data, compressed);
+        assertEquals(compressedLength, compressed.remaining());
+        assertEquals(0, data.position());
+        assertEquals(data.remaining(), CompressionService.uncompressedLengthLZ4(compressed));
+
+        // Leave room in front like the snapshot reader does for the table header
+        ByteBuffer uncompressed = ByteBuffer.allocateDirect(data.remaining() + 16);
+        uncompressed.position(16);
+        assertEquals(data.remaining(), CompressionService.decompressBufferLZ4(compressed, uncompressed));
+        assertEquals(16, uncompressed.position());
+        assertEquals(data, uncompressed);
+    }
+
+    @Test
+    public void testLZ4RejectsCorruptLength() throws Exception {
+        ByteBuffer data = compressibleData(4096);
+        ByteBuffer compressed = ByteBuffer.allocateDirect(
+                CompressionService.maxCompressedLength(data.remaining(), CompressionService.Algorithm.LZ4));
+        CompressionService.compressBufferLZ4(data, compressed);
+        compressed.putInt(0, data.remaining() * 2);
+        try {
+            CompressionService.decompressBufferLZ4(compressed, ByteBuffer.allocateDirect(data.remaining()));
+            fail("Decompressed a block with a corrupt length");
+        } catch (IOException expected) {
+        }
+    }
+}
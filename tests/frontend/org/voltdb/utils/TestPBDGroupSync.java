@@ -0,0 +1,138 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool;
+
+public class TestPBDGroupSync {
+
+    private final static VoltLogger logger = new VoltLogger("EXPORT");
+
+    private PersistentBinaryDeque m_pbd1;
+    private PersistentBinaryDeque m_pbd2;
+    private PBDGroupSync m_group;
+
+    private static PBDGroupSync testDirGroup() {
+        for (PBDGroupSync group : PBDGroupSync.getGroups()) {
+            if (group.getDirectory().equals(TestPersistentBinaryDeque.TEST_DIR.getAbsolutePath())) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testSyncsShareRounds() throws Exception {
+        final long fsyncs = m_group.getFsyncs();
+        final long bytes = m_group.getBytesSynced();
+        m_pbd1.offer(DBBPool.wrapBB(TestPersistentBinaryDeque.getFilledBuffer(1)), false);
+        m_pbd2.offer(DBBPool.wrapBB(TestPersistentBinaryDeque.getFilledBuffer(2)), false);
+        assertEquals(2, m_group.getDirtyDeques());
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    m_pbd2.sync();
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        };
+        other.start();
+        m_pbd1.sync();
+        other.join();
+        assertEquals(null, failure.get());
+
+        // Each tail forced once, however many rounds the two syncs took
+        assertEquals(0, m_group.getDirtyDeques());
+        assertEquals(fsyncs + 2, m_group.getFsyncs());
+        assertEquals(bytes + 2 * 1024 * 1024 * 2, m_group.getBytesSynced());
+
+        // Nothing written since, nothing to force
+        m_pbd1.sync();
+        assertEquals(fsyncs + 2, m_group.getFsyncs());
+    }
+
+    @Test
+    public void testWritesOnlyForcedOnRequest() throws Exception {
+        if (PBDGroupSync.SYNC_INTERVAL_MS > 0) {
+            return;
+        }
+        final long fsyncs = m_group.getFsyncs();
+        m_pbd1.offer(DBBPool.wrapBB(TestPersistentBinaryDeque.getFilledBuffer(1)), false);
+        // Nothing forces a write no one asked to sync
+        Thread.sleep(500);
+        assertEquals(fsyncs, m_group.getFsyncs());
+        assertEquals(1, m_group.getDirtyDeques());
+        m_pbd1.sync();
+        assertEquals(fsyncs + 1, m_group.getFsyncs());
+        assertEquals(0, m_group.getDirtyDeques());
+    }
+
+    @Test
+    public void testClosedDequeLeavesGroup() throws Exception {
+        m_pbd1.offer(DBBPool.wrapBB(TestPersistentBinaryDeque.getFilledBuffer(1)), false);
+        m_pbd1.close();
+        assertEquals(1, m_group.getDeques());
+        assertEquals(0, m_group.getDirtyDeques());
+        try {
+            m_pbd1.sync();
+            fail("Synced a closed deque");
+        } catch (IOException expected) {}
+        m_pbd2.sync();
+        assertTrue(m_group.getRounds() > 0);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        TestPersistentBinaryDeque.setupTestDir();
+        m_pbd1 = new PersistentBinaryDeque("pbd_nonce1", TestPersistentBinaryDeque.TEST_DIR, logger, true, true);
+        m_pbd2 = new PersistentBinaryDeque("pbd_nonce2", TestPersistentBinaryDeque.TEST_DIR, logger, true, true);
+        m_group = testDirGroup();
+        assertEquals(2, m_group.getDeques());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            m_pbd1.close();
+            m_pbd2.close();
+        } finally {
+            TestPersistentBinaryDeque.tearDownTestDir();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.voltdb.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltdb.utils.BinaryDeque.BinaryDequeReader;
+import org.voltdb.utils.BinaryDeque.BinaryDequeTruncator;
+import org.voltdb.utils.BinaryDeque.TruncatorResponse;
+
+public class TestPBDLZ4Batches {
+
+    private final static VoltLogger logger = new VoltLogger("EXPORT");
+    private static final String CURSOR_ID = "testLZ4";
+    // Enough objects for several batches of the default size
+    private static final int OBJECTS = 5000;
+
+    private PersistentBinaryDeque m_pbd;
+
+    private static ByteBuffer getBuffer(int value) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(400 + value % 200);
+        while (buf.remaining() > 3) {
+            buf.putInt(value);
+        }
+        buf.clear();
+        return buf;
+    }
+
+    private static void checkBuffer(int value, BBContainer cont) {
+        try {
+            assertEquals(getBuffer(value), cont.b());
+        } finally {
+            cont.discard();
+        }
+    }
+
+    private void offer(int count) throws Exception {
+        for (int ii = 0; ii < count; ii++) {
+            m_pbd.offer(DBBPool.wrapBB(getBuffer(ii)));
+        }
+    }
+
+    private PersistentBinaryDeque reopen() throws Exception {
+        m_pbd.close();
+        m_pbd = new PersistentBinaryDeque(TestPersistentBinaryDeque.TEST_NONCE, TestPersistentBinaryDeque.TEST_DIR,
+                logger, true, false, true);
+        return m_pbd;
+    }
+
+    @Test
+    public void testPendingObjectsReadInOrder() throws Exception {
+        BinaryDequeReader reader = m_pbd.openForRead(CURSOR_ID);
+        offer(OBJECTS);
+        assertEquals(OBJECTS, reader.getNumObjects());
+        assertEquals(OBJECTS, (int) m_pbd.getBufferCountAndSize().getFirst());
+
+        for (int ii = 0; ii < OBJECTS; ii++) {
+            checkBuffer(ii, reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+        }
+        assertNull(reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+        assertTrue(reader.isEmpty());
+
+        assertEquals(OBJECTS, m_pbd.getBatchedObjects());
+        assertTrue(m_pbd.getBatchesWritten() > 1);
+        assertTrue(m_pbd.getBatchBytesOut() * 4 < m_pbd.getBatchBytesIn());
+        assertTrue(PersistentBinaryDeque.getLZ4BatchedDeques().contains(m_pbd));
+    }
+
+    @Test
+    public void testBatchesReadAfterReopen() throws Exception {
+        offer(OBJECTS);
+        reopen();
+        assertTrue(m_pbd.initializedFromExistingFiles());
+
+        BinaryDequeReader reader = m_pbd.openForRead(CURSOR_ID);
+        assertEquals(OBJECTS, reader.getNumObjects());
+        // Objects of a batch are held past the reads of the following ones
+        BBContainer first = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+        for (int ii = 1; ii < OBJECTS; ii++) {
+            checkBuffer(ii, reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+        }
+        checkBuffer(0, first);
+        assertNull(reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+    }
+
+    @Test
+    public void testFullTruncateInBatch() throws Exception {
+        offer(OBJECTS);
+        reopen();
+        m_pbd.parseAndTruncate(new BinaryDequeTruncator() {
+            @Override
+            public TruncatorResponse parse(BBContainer bbc) {
+                if (bbc.b().getInt(0) == 1234) {
+                    return PersistentBinaryDeque.fullTruncateResponse();
+                }
+                return null;
+            }
+        });
+
+        BinaryDequeReader reader = m_pbd.openForRead(CURSOR_ID);
+        assertEquals(1234, reader.getNumObjects());
+        for (int ii = 0; ii < 1234; ii++) {
+            checkBuffer(ii, reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+        }
+        assertNull(reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+
+        // Batches offered after the truncation follow the objects kept
+        offer(10);
+        for (int ii = 0; ii < 10; ii++) {
+            checkBuffer(ii, reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+        }
+    }
+
+    @Test
+    public void testPartialTruncateInBatch() throws Exception {
+        offer(OBJECTS);
+        reopen();
+        m_pbd.parseAndTruncate(new BinaryDequeTruncator() {
+            @Override
+            public TruncatorResponse parse(BBContainer bbc) {
+                ByteBuffer b = bbc.b();
+                if (b.getInt(0) == 1234) {
+                    b.limit(100);
+                    return new PersistentBinaryDeque.ByteBufferTruncatorResponse(b);
+                }
+                return null;
+            }
+        });
+
+        reopen();
+        BinaryDequeReader reader = m_pbd.openForRead(CURSOR_ID);
+        assertEquals(1235, reader.getNumObjects());
+        for (int ii = 0; ii < 1234; ii++) {
+            checkBuffer(ii, reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+        }
+        ByteBuffer truncated = getBuffer(1234);
+        truncated.limit(100);
+        BBContainer cont = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+        try {
+            assertEquals(truncated, cont.b());
+        } finally {
+            cont.discard();
+        }
+        assertNull(reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        TestPersistentBinaryDeque.setupTestDir();
+        m_pbd = new PersistentBinaryDeque(TestPersistentBinaryDeque.TEST_NONCE, TestPersistentBinaryDeque.TEST_DIR,
+                logger, true, false, true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            m_pbd.close();
+            assertTrue(!PersistentBinaryDeque.getLZ4BatchedDeques().contains(m_pbd));
+        } finally {
+            TestPersistentBinaryDeque.tearDownTestDir();
+        }
+    }
+}
@@ -27,6 +27,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.After;
 import org.junit.Before;
@@ -244,6 +245,79 @@ public class TestPBDMultipleReaders {
         assertEquals(1, m_pbd.numOpenSegments());
     }
 
+    @Test
+    public void testConcurrentWriterAndReaders() throws Exception {
+        final int numBuffers = 100;
+        final int numReaders = 3;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[numReaders];
+        for (int i=0; i<numReaders; i++) {
+            final BinaryDequeReader reader = m_pbd.openForRead("reader" + i);
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        int read = 0;
+                        while (read < numBuffers) {
+                            BBContainer bbC = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                            if (bbC == null) {
+                                Thread.yield();
+                                continue;
+                            }
+                            try {
+                                // Entries come back whole and in order while the writer appends
+                                assertEquals(read, bbC.b().getLong(0));
+                                assertEquals(1024 * 1024 * 2, bbC.b().remaining());
+                            } finally {
+                                bbC.discard();
+                            }
+                            read++;
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        for (int i=0; i<numBuffers; i++) {
+            m_pbd.offer( DBBPool.wrapBB(TestPersistentBinaryDeque.getFilledBuffer(i)) );
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        // Everything read and discarded by all of the readers, only the tail is left
+        assertEquals(1, TestPersistentBinaryDeque.getSortedDirectoryListing().size());
+    }
+
+    @Test
+    public void testMappedEntryOutlivesClose() throws Exception {
+        // Enough uncompressed entries for the first segment to be mapped once reopened
+        for (int i=0; i<40; i++) {
+            m_pbd.offer( DBBPool.wrapBB(TestPersistentBinaryDeque.getFilledBuffer(i)), false );
+        }
+        m_pbd.close();
+        m_pbd = new PersistentBinaryDeque(TestPersistentBinaryDeque.TEST_NONCE, TestPersistentBinaryDeque.TEST_DIR, logger );
+
+        BinaryDequeReader reader = m_pbd.openForRead("reader");
+        BBContainer first = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+        BBContainer second = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+        second.discard();
+        // The segment's mapping stays until the entry still held is discarded
+        m_pbd.close();
+        try {
+            assertEquals(1024 * 1024 * 2, first.b().remaining());
+            assertEquals(0, first.b().getLong(0));
+            assertEquals(0, first.b().getLong(first.b().limit() - 16));
+        } finally {
+            first.discard();
+        }
+    }
+
     @Before
     public void setUp() throws Exception {
         TestPersistentBinaryDeque.setupTestDir();
@@ -40,7 +40,7 @@ HOST="localhost"
 
 # remove build artifacts
 function clean() {
-    rm -rf obj debugoutput $APPNAME.jar voltdbroot statement-plans catalog-report.html log "$VOLTDB_LIB/ExportBenchmark.jar"
+    rm -rf obj debugoutput $APPNAME.jar voltdbroot statement-plans catalog-report.html log exportdata "$VOLTDB_LIB/ExportBenchmark.jar"
 }
 
 # Grab the necessary command line arguments
@@ -119,6 +119,20 @@ function server() {
     VOLTDB_OPTS="${VOLTDB_OPTS}" ${VOLTDB} create -d deployment.xml -l ${LICENSE} -H ${HOST} ${APPNAME}.jar
 }
 
+# run the voltdb server locally, exporting to files in exportdata
+function server_file() {
+    # if a catalog doesn't exist, build one
+    if [ ! -f $APPNAME.jar ]; then catalog; fi
+    mkdir -p exportdata
+    [[ -d log && -w log ]] && > log/volt.log
+    echo "Starting the VoltDB server, exporting to files."
+    echo "To perform this action manually, use the command line: "
+    echo
+    echo "${VOLTDB} create -d deployment-file.xml -l ${LICENSE} -H ${HOST} ${APPNAME}.jar"
+    echo
+    ${VOLTDB} create -d deployment-file.xml -l ${LICENSE} -H ${HOST} ${APPNAME}.jar
+}
+
 # run the client that drives the example
 function client() {
     run_benchmark
@@ -138,8 +152,20 @@ function run_benchmark() {
 	--statsfile=exportbench.csv
 }
 
+# run against server_file, reports how fast rows are exported to the files
+function run_file_benchmark() {
+    srccompile
+    java -classpath obj:$APPCLASSPATH:obj -Dlog4j.configuration=file://$LOG4J \
+        exportbenchmark.ExportBenchmark \
+        --duration=30 \
+        --servers=localhost \
+        --target=file \
+        --drainpollinterval=100 \
+	--statsfile=exportbench-file.csv
+}
+
 function help() {
-    echo "Usage: ./run.sh {clean|catalog|server|run-benchmark|run-benchmark-help|...}"
+    echo "Usage: ./run.sh {clean|catalog|server|server_file|run-benchmark|run_file_benchmark|run-benchmark-help|...}"
 }
 
 parse_command_line $@
@@ -99,6 +99,8 @@ public class ExportBenchmark {
     ArrayList<StatClass> serverStats = new ArrayList<StatClass>();
     // Test timestamp markers
     long benchmarkStartTS, benchmarkWarmupEndTS, benchmarkEndTS, serverStartTS, serverEndTS, decodeTime, partCount;
+    // When export was seen drained, file target only
+    long exportDrainedTS;
 
     class StatClass {
         public Integer m_partition;
@@ -145,17 +147,21 @@ public class ExportBenchmark {
         @Option(desc = "Filename to write periodic stat infomation in CSV format")
         String csvfile = "";
 
-        @Option(desc = "Export to socket or export to Kafka cluster (socket|kafka)")
+        @Option(desc = "Export to socket, to Kafka cluster or to files on the server (socket|kafka|file)")
         String target = "socket";
 
+        @Option(desc = "Interval between checks for export to be drained, in milliseconds.")
+        long drainpollinterval = 5000;
+
         @Override
         public void validate() {
             if (duration <= 0) exitWithMessageAndUsage("duration must be > 0");
             if (warmup < 0) exitWithMessageAndUsage("warmup must be >= 0");
             if (displayinterval <= 0) exitWithMessageAndUsage("displayinterval must be > 0");
-            if (!target.equals("socket") && !target.equals("kafka")) {
-                exitWithMessageAndUsage("target must be either \"socket\" or \"kafka\"");
+            if (!target.equals("socket") && !target.equals("kafka") && !target.equals("file")) {
+                exitWithMessageAndUsage("target must be one of \"socket\", \"kafka\" or \"file\"");
             }
+            if (drainpollinterval <= 0) exitWithMessageAndUsage("drainpollinterval must be > 0");
         }
     }
 
@@ -273,7 +279,7 @@ public class ExportBenchmark {
                 }
                 System.out.println("Passed but not ready to declare victory.");
             }
-            Thread.sleep(5000);
+            Thread.sleep(config.drainpollinterval);
         }
         System.out.println("Passed is: " + passed);
         System.out.println(stats);
@@ -574,11 +580,12 @@ public class ExportBenchmark {
         periodicStatsTimer.cancel();
         System.out.println("Client flushed; waiting for export to finish");
 
-        // Wait until export is done -- socket target only
+        // Wait until export is done -- socket and file targets only
         boolean success = false;
-        if (config.target.equals("socket")) {
+        if (config.target.equals("socket") || config.target.equals("file")) {
             try {
                 success = waitForStreamedAllocatedMemoryZero();
+                exportDrainedTS = System.currentTimeMillis();
             } catch (IOException e) {
                 System.err.println("Error while waiting for export: ");
                 e.getLocalizedMessage();
@@ -725,12 +732,16 @@ public class ExportBenchmark {
         System.out.printf("99.9th percentile latency:     %,9.2f ms\n", stats.kPercentileLatencyAsDouble(.999));
         System.out.printf("99.999th percentile latency:   %,9.2f ms\n", stats.kPercentileLatencyAsDouble(.99999));
 
-        System.out.print("\n" + HORIZONTAL_RULE);
-        System.out.println(" System Server Statistics");
-        System.out.printf("Average throughput:            %,9d txns/sec\n", tpsSum.longValue());
-        System.out.printf("Average decode time:           %,9.2f ns\n", decodeSum);
-        Double decodePerc = (new Double(decodeTime) / (((serverEndTS - serverStartTS) * (partCount + 1)) * 1000000)) * 100;
-        System.out.printf("Percent decode row time:       %,9.2f %%\n", decodePerc);
+        if (config.target.equals("file")) {
+            printFileExportResults();
+        } else {
+            System.out.print("\n" + HORIZONTAL_RULE);
+            System.out.println(" System Server Statistics");
+            System.out.printf("Average throughput:            %,9d txns/sec\n", tpsSum.longValue());
+            System.out.printf("Average decode time:           %,9.2f ns\n", decodeSum);
+            Double decodePerc = (new Double(decodeTime) / (((serverEndTS - serverStartTS) * (partCount + 1)) * 1000000)) * 100;
+            System.out.printf("Percent decode row time:       %,9.2f %%\n", decodePerc);
+        }
 
         System.out.println(HORIZONTAL_RULE);
 
@@ -761,6 +772,24 @@ public class ExportBenchmark {
         }
     }
 
+    /**
+     * Export to files has no stats sent back from the server, the rows inserted are
+     * exported by the time export is drained, so the throughput is the rows over the
+     * time from the first insert to the drain.
+     */
+    private void printFileExportResults() {
+        System.out.print("\n" + HORIZONTAL_RULE);
+        System.out.println(" File Export Statistics");
+        System.out.println(HORIZONTAL_RULE);
+        long exportMillis = exportDrainedTS - benchmarkStartTS;
+        System.out.printf("Rows exported:                 %,9d\n", totalInserts);
+        if (exportMillis > 0) {
+            System.out.printf("Average export throughput:     %,9d rows/sec\n", totalInserts * 1000 / exportMillis);
+        }
+        System.out.printf("Drained after last insert:     %,9d ms\n", exportDrainedTS - benchmarkEndTS);
+        System.out.println("(drain is checked every " + config.drainpollinterval + " ms)");
+    }
+
     /**
      * Main routine creates a benchmark instance and kicks off the run method.
      *
@@ -0,0 +1,19 @@
+CREATE TABLE fact_p
+(
+  p integer NOT NULL,
+  dim_id bigint NOT NULL,
+  val bigint NOT NULL
+);
+PARTITION TABLE fact_p ON COLUMN p;
+
+-- No index on id, so joins on it can't use a nest loop index join
+CREATE TABLE dim_r
+(
+  id bigint NOT NULL,
+  region integer NOT NULL,
+  weight bigint NOT NULL
+);
+
+-- stored procedures
+CREATE PROCEDURE PARTITION ON TABLE fact_p COLUMN p FROM CLASS joins.procedures.InnerJoin;
+CREATE PROCEDURE PARTITION ON TABLE fact_p COLUMN p FROM CLASS joins.procedures.LeftJoin;
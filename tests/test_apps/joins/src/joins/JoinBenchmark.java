@@ -0,0 +1,253 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package joins;
+
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.concurrent.CountDownLatch;
+
+import org.voltdb.CLIConfig;
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientConfig;
+import org.voltdb.client.ClientFactory;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.NullCallback;
+
+/**
+ * Times single-partition equi-joins between a partitioned fact table and a
+ * replicated dimension table with no index on the join column. Run it against a
+ * catalog planned with hash joins and against one planned with nest loop joins
+ * only (see run.sh) to compare the two.
+ */
+public class JoinBenchmark {
+
+    // handy, rather than typing this out several times
+    static final String HORIZONTAL_RULE =
+            "----------" + "----------" + "----------" + "----------" +
+            "----------" + "----------" + "----------" + "----------" + "\n";
+
+    static final String[] PROCEDURES = new String[] {"InnerJoin", "LeftJoin"};
+
+    // validated command line configuration
+    final JoinConfig config;
+    // Reference to the database connection we will use
+    final Client client;
+
+    /**
+     * Uses included {@link CLIConfig} class to
+     * declaratively state command line options with defaults
+     * and validation.
+     */
+    static class JoinConfig extends CLIConfig {
+        @Option(desc = "Number of times to call each join procedure (averages runs).")
+        int runs = 10;
+
+        @Option(desc = "Number of rows loaded into the partitioned fact table.")
+        long factrows = 1000000;
+
+        @Option(desc = "Number of rows loaded into the replicated dimension table.")
+        long dimrows = 100000;
+
+        @Option(desc = "Comma separated list of the form server[:port] to connect to.")
+        String servers = "localhost";
+
+        @Option(desc = "Filename to write raw summary statistics to.")
+        String statsfile = "";
+
+        @Option(desc = "User name for connection.")
+        String user = "";
+
+        @Option(desc = "Password for connection.")
+        String password = "";
+
+        @Override
+        public void validate() {
+            if (runs <= 0) exitWithMessageAndUsage("runs must be > 0");
+            if (factrows < 0) exitWithMessageAndUsage("factrows must be >= 0");
+            if (dimrows <= 0) exitWithMessageAndUsage("dimrows must be > 0");
+        }
+    }
+
+    /**
+     * Constructor for benchmark instance.
+     * Configures VoltDB client and prints configuration.
+     *
+     * @param config Parsed & validated CLI options.
+     */
+    public JoinBenchmark(JoinConfig config) {
+        this.config = config;
+
+        ClientConfig clientConfig = new ClientConfig(config.user, config.password);
+        // Nest loop plans of the default sizes run far past the default timeout
+        clientConfig.setProcedureCallTimeout(0);
+        client = ClientFactory.createClient(clientConfig);
+
+        System.out.print(HORIZONTAL_RULE);
+        System.out.println(" Command Line Configuration");
+        System.out.println(HORIZONTAL_RULE);
+        System.out.println(config.getConfigDumpString());
+    }
+
+    /**
+     * Connect to a single server with retry. Limited exponential backoff.
+     * No timeout. This will run until the process is killed if it's not
+     * able to connect.
+     *
+     * @param server hostname:port or just hostname (hostname can be ip).
+     */
+    void connectToOneServerWithRetry(String server) {
+        int sleep = 1000;
+        while (true) {
+            try {
+                client.createConnection(server);
+                break;
+            }
+            catch (Exception e) {
+                System.err.printf("Connection failed - retrying in %d second(s).\n", sleep / 1000);
+                try { Thread.sleep(sleep); } catch (Exception interruted) {}
+                if (sleep < 8000) sleep += sleep;
+            }
+        }
+        System.out.printf("Connected to VoltDB node at: %s.\n", server);
+    }
+
+    /**
+     * Connect to a set of servers in parallel. Each will retry until
+     * connection. This call will block until all have connected.
+     *
+     * @param servers A comma separated list of servers using the hostname:port
+     * syntax (where :port is optional).
+     * @throws InterruptedException if anything bad happens with the threads.
+     */
+    void connect(String servers) throws InterruptedException {
+        System.out.println("Connecting to VoltDB...");
+
+        String[] serverArray = servers.split(",");
+        final CountDownLatch connections = new CountDownLatch(serverArray.length);
+
+        // use a new thread to connect to each server
+        for (final String server : serverArray) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    connectToOneServerWithRetry(server);
+                    connections.countDown();
+                }
+            }).start();
+        }
+        // block until all have connected
+        connections.await();
+    }
+
+    /**
+     * Load both tables, unless an earlier run already did.
+     */
+    void load() throws Exception {
+        ClientResponse cr = client.callProcedure("@AdHoc", "select count(*) from dim_r;");
+        if (cr.getResults()[0].asScalarLong() > 0) {
+            System.out.println("Tables already loaded.");
+            return;
+        }
+
+        for (long i = 0; i < config.dimrows; i++) {
+            client.callProcedure(new NullCallback(), "DIM_R.insert", i, (int) (i % 16), i % 7);
+        }
+        // Spread the dimension ids past the loaded range so some fact rows have no match
+        final long idRange = config.dimrows + config.dimrows / 10;
+        for (long i = 0; i < config.factrows; i++) {
+            client.callProcedure(new NullCallback(), "FACT_P.insert", (int) (i % 509 /* random prime */),
+                    (i * 7919) % idRange, i);
+            if ((i % 100000) == 0) {
+                System.out.printf("Loading fact row at index %d.\n", i);
+            }
+        }
+        client.drain();
+
+        cr = client.callProcedure("@AdHoc", "select count(*) from fact_p;");
+        System.out.printf("Loaded %d fact rows and %d dimension rows.\n",
+                cr.getResults()[0].asScalarLong(), config.dimrows);
+    }
+
+    /**
+     * Core benchmark code.
+     * Connect. Initialize. Run each join. Cleanup. Print Results.
+     *
+     * @throws Exception if anything unexpected happens.
+     */
+    public void runBenchmark() throws Exception {
+        System.out.print(HORIZONTAL_RULE);
+        System.out.println(" Setup & Initialization");
+        System.out.println(HORIZONTAL_RULE);
+
+        // connect to one or more servers, loop until success
+        connect(config.servers);
+        load();
+
+        System.out.print(HORIZONTAL_RULE);
+        System.out.println(" Join Results");
+        System.out.println(HORIZONTAL_RULE);
+
+        PrintWriter outputStream = null;
+        if (!config.statsfile.isEmpty()) {
+            outputStream = new PrintWriter(new FileWriter(config.statsfile));
+        }
+
+        for (String procedure : PROCEDURES) {
+            // One call to warm up, then the measured runs, rotating over partition keys
+            client.callProcedure(procedure, 0);
+            final long start = System.currentTimeMillis();
+            for (int i = 0; i < config.runs; i++) {
+                client.callProcedure(procedure, i);
+            }
+            final double averageTime = (System.currentTimeMillis() - start) / (double) config.runs;
+            System.out.printf("%s averaged %.2fms per call over %d calls.\n", procedure, averageTime, config.runs);
+            if (outputStream != null) {
+                // for stats: duration in milliseconds, # iterations
+                outputStream.printf("0,%f,%d,0,0,0,0,0,0,0,0,0,0\n", averageTime, config.runs);
+            }
+        }
+
+        if (outputStream != null) {
+            outputStream.close();
+        }
+
+        // close down the client connections
+        client.close();
+    }
+
+    /**
+     * Main routine creates a benchmark instance and kicks off the run method.
+     *
+     * @param args Command line arguments.
+     * @throws Exception if anything goes wrong.
+     */
+    public static void main(String[] args) throws Exception {
+        // create a configuration from the arguments
+        JoinConfig config = new JoinConfig();
+        config.parse(JoinBenchmark.class.getName(), args);
+
+        JoinBenchmark benchmark = new JoinBenchmark(config);
+        benchmark.runBenchmark();
+    }
+}
@@ -0,0 +1,11 @@
+CREATE TABLE kv_p
+(
+  k bigint not null,
+  val bigint NOT NULL,
+  PRIMARY KEY (k)
+);
+PARTITION TABLE kv_p ON COLUMN k;
+
+-- stored procedures
+CREATE PROCEDURE FROM CLASS mpbatch.procedures.PipelinedRead;
+CREATE PROCEDURE FROM CLASS mpbatch.procedures.SerialRead;
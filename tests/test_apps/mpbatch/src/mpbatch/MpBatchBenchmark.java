@@ -0,0 +1,247 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+/*
+ * Compares the latency of a read-only multi-partition procedure that runs a
+ * big batch of statements in one voltExecuteSQL() call, which the server splits
+ * in sub-batches whose fragments it sends ahead, with the same statements run
+ * one sub-batch per call, each waiting a round trip to every partition.
+ */
+
+package mpbatch;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import org.voltdb.CLIConfig;
+import org.voltdb.client.Client;
+import org.voltdb.client.ClientConfig;
+import org.voltdb.client.ClientFactory;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.client.NullCallback;
+
+public class MpBatchBenchmark {
+
+    // handy, rather than typing this out several times
+    static final String HORIZONTAL_RULE =
+            "----------" + "----------" + "----------" + "----------" +
+            "----------" + "----------" + "----------" + "----------" + "\n";
+
+    // validated command line configuration
+    final MpBatchConfig config;
+    // Reference to the database connection we will use
+    final Client client;
+
+    /**
+     * Uses included {@link CLIConfig} class to
+     * declaratively state command line options with defaults
+     * and validation.
+     */
+    static class MpBatchConfig extends CLIConfig {
+        @Option(desc = "Number of times to call each procedure.")
+        int runs = 200;
+
+        @Option(desc = "Number of calls to each procedure before measuring.")
+        int warmup = 20;
+
+        @Option(desc = "Number of statements each call runs.")
+        int statements = 1000;
+
+        @Option(desc = "Number of loaded rows.")
+        long rows = 100000;
+
+        @Option(desc = "Comma separated list of the form server[:port] to connect to.")
+        String servers = "localhost";
+
+        @Option(desc = "User name for connection.")
+        String user = "";
+
+        @Option(desc = "Password for connection.")
+        String password = "";
+
+        @Override
+        public void validate() {
+            if (runs <= 0) exitWithMessageAndUsage("runs must be > 0");
+            if (warmup < 0) exitWithMessageAndUsage("warmup must be >= 0");
+            if (statements <= 0) exitWithMessageAndUsage("statements must be > 0");
+            if (rows < 0) exitWithMessageAndUsage("rows must be >= 0");
+        }
+    }
+
+    public MpBatchBenchmark(MpBatchConfig config) {
+        this.config = config;
+
+        ClientConfig clientConfig = new ClientConfig(config.user, config.password);
+        client = ClientFactory.createClient(clientConfig);
+
+        System.out.print(HORIZONTAL_RULE);
+        System.out.println(" Command Line Configuration");
+        System.out.println(HORIZONTAL_RULE);
+        System.out.println(config.getConfigDumpString());
+    }
+
+    /**
+     * Connect to a single server with retry. Limited exponential backoff.
+     * No timeout. This will run until the process is killed if it's not
+     * able to connect.
+     *
+     * @param server hostname:port or just hostname (hostname can be ip).
+     */
+    void connectToOneServerWithRetry(String server) {
+        int sleep = 1000;
+        while (true) {
+            try {
+                client.createConnection(server);
+                break;
+            }
+            catch (Exception e) {
+                System.err.printf("Connection failed - retrying in %d second(s).\n", sleep / 1000);
+                try { Thread.sleep(sleep); } catch (Exception interruted) {}
+                if (sleep < 8000) sleep += sleep;
+            }
+        }
+        System.out.printf("Connected to VoltDB node at: %s.\n", server);
+    }
+
+    /**
+     * Connect to a set of servers in parallel. Each will retry until
+     * connection. This call will block until all have connected.
+     *
+     * @param servers A comma separated list of servers using the hostname:port
+     * syntax (where :port is optional).
+     * @throws InterruptedException if anything bad happens with the threads.
+     */
+    void connect(String servers) throws InterruptedException {
+        System.out.println("Connecting to VoltDB...");
+
+        String[] serverArray = servers.split(",");
+        final CountDownLatch connections = new CountDownLatch(serverArray.length);
+
+        // use a new thread to connect to each server
+        for (final String server : serverArray) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    connectToOneServerWithRetry(server);
+                    connections.countDown();
+                }
+            }).start();
+        }
+        // block until all have connected
+        connections.await();
+    }
+
+    /**
+     * Call the procedure synchronously and return its latency in microseconds.
+     */
+    long timeCall(String procedure, int run) throws Exception {
+        final long start = System.nanoTime();
+        ClientResponse cr = client.callProcedure(procedure, config.statements, (long) run % 509);
+        final long micros = (System.nanoTime() - start) / 1000;
+        if (cr.getStatus() != ClientResponse.SUCCESS) {
+            throw new RuntimeException(procedure + " failed: " + cr.getStatusString());
+        }
+        return micros;
+    }
+
+    static void printLatencies(String procedure, long[] micros) {
+        Arrays.sort(micros);
+        long total = 0;
+        for (long m : micros) {
+            total += m;
+        }
+        System.out.printf("%-14s avg %8.2fms  p50 %8.2fms  p95 %8.2fms  p99 %8.2fms  max %8.2fms\n",
+                procedure,
+                total / (double) micros.length / 1000.0,
+                micros[(int) (micros.length * 0.50)] / 1000.0,
+                micros[(int) (micros.length * 0.95)] / 1000.0,
+                micros[(int) (micros.length * 0.99)] / 1000.0,
+                micros[micros.length - 1] / 1000.0);
+    }
+
+    /**
+     * Core benchmark code.
+     * Connect. Initialize. Run the loop. Cleanup. Print Results.
+     *
+     * @throws Exception if anything unexpected happens.
+     */
+    public void runBenchmark() throws Exception {
+        System.out.print(HORIZONTAL_RULE);
+        System.out.println(" Setup & Initialization");
+        System.out.println(HORIZONTAL_RULE);
+
+        // connect to one or more servers, loop until success
+        connect(config.servers);
+
+        ClientResponse cr = client.callProcedure("@AdHoc", "select count(*) from kv_p;");
+        long rows = cr.getResults()[0].asScalarLong();
+        if (rows != config.rows) {
+            client.callProcedure("@AdHoc", "delete from kv_p;");
+            for (long i = 0; i < config.rows; i++) {
+                client.callProcedure(new NullCallback(), "KV_P.insert", i, i % 509 /* random prime */);
+            }
+            client.drain();
+        }
+        System.out.printf("Loaded %d rows.\n", config.rows);
+
+        System.out.print(HORIZONTAL_RULE);
+        System.out.println("Starting Benchmark");
+        System.out.println(HORIZONTAL_RULE);
+
+        for (int i = 0; i < config.warmup; i++) {
+            timeCall("PipelinedRead", i);
+            timeCall("SerialRead", i);
+        }
+
+        // alternate the calls so both see the same conditions
+        long[] pipelined = new long[config.runs];
+        long[] serial = new long[config.runs];
+        for (int i = 0; i < config.runs; i++) {
+            pipelined[i] = timeCall("PipelinedRead", i);
+            serial[i] = timeCall("SerialRead", i);
+        }
+
+        System.out.print(HORIZONTAL_RULE);
+        System.out.printf(" Latency of %d statements per call over %d calls\n", config.statements, config.runs);
+        System.out.println(HORIZONTAL_RULE);
+        printLatencies("PipelinedRead", pipelined);
+        printLatencies("SerialRead", serial);
+
+        // close down the client connections
+        client.close();
+    }
+
+    /**
+     * Main routine creates a benchmark instance and kicks off the run method.
+     *
+     * @param args Command line arguments.
+     * @throws Exception if anything goes wrong.
+     */
+    public static void main(String[] args) throws Exception {
+        // create a configuration from the arguments
+        MpBatchConfig config = new MpBatchConfig();
+        config.parse(MpBatchBenchmark.class.getName(), args);
+
+        MpBatchBenchmark benchmark = new MpBatchBenchmark(config);
+        benchmark.runBenchmark();
+    }
+}
@@ -0,0 +1,52 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package mpbatch.procedures;
+
+import org.voltdb.SQLStmt;
+import org.voltdb.VoltProcedure;
+import org.voltdb.VoltTable;
+
+/**
+ * The same lookups as {@link PipelinedRead}, executed 200 statements at a time,
+ * so each sub-batch waits for the previous one's round trip to the partitions.
+ */
+public class SerialRead extends VoltProcedure
+{
+    static final int BATCH_SIZE = 200;
+
+    public final SQLStmt sql = new SQLStmt("select count(*) from kv_p where val = ?;");
+
+    public long run(int statements, long val) {
+        long count = 0;
+        for (int i = 0; i < statements; i++) {
+            voltQueueSQL(sql, val + i);
+            if ((i + 1) % BATCH_SIZE == 0 || i == statements - 1) {
+                for (VoltTable t : voltExecuteSQL(i == statements - 1)) {
+                    count += t.asScalarLong();
+                }
+            }
+        }
+        return count;
+    }
+}
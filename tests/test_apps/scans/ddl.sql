@@ -15,3 +15,5 @@ PARTITION TABLE narrow_index_p ON COLUMN p;
 -- stored procedures
 CREATE PROCEDURE FROM CLASS scans.procedures.MinSeqScan;
 CREATE PROCEDURE FROM CLASS scans.procedures.MinIndexScan;
+CREATE PROCEDURE FROM CLASS scans.procedures.FilterSeqScan;
+CREATE PROCEDURE FROM CLASS scans.procedures.FilterSeqScanRowAtATime;
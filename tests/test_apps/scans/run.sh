@@ -75,8 +75,22 @@ function benchmark() {
         --servers=localhost:21212
 }
 
+# compare filtering a batch of tuples at a time with a tuple at a time,
+# both runs scan the same rows
+function filter() {
+    srccompile
+    for TEST in filter filterrowatatime; do
+        java -classpath obj:$CLASSPATH:obj -Dlog4j.configuration=file://$CLIENTLOG4J \
+            scans.ScanBenchmark \
+            --runs=20 \
+            --rows=5000000 \
+            --test=$TEST \
+            --servers=localhost:21212
+    done
+}
+
 function help() {
-    echo "Usage: ./run.sh {clean|catalog|server|client|benchmark}"
+    echo "Usage: ./run.sh {clean|catalog|server|client|benchmark|filter}"
 }
 
 # Run the target passed as the first arg on the command line
@@ -80,7 +80,7 @@ public class ScanBenchmark {
 
     final Random rand = new Random();
 
-    static final List<String> tests = Arrays.asList(new String[]{"sequential", "index"});
+    static final List<String> tests = Arrays.asList(new String[]{"sequential", "index", "filter", "filterrowatatime"});
 
     /**
      * Uses included {@link CLIConfig} class to
@@ -253,6 +253,7 @@ public class ScanBenchmark {
         String loadproc = null;
         String tablename = null;
         String scanproc = null;
+        Object[] scanparams = new Object[0];
 
         if (config.test.equals("sequential")) {
 
@@ -265,18 +266,31 @@ public class ScanBenchmark {
             loadproc = "NARROW_INDEX_P.insert";
             tablename = "narrow_index_p";
             scanproc = "MinIndexScan";
-        }
 
-        for (long i = 0; i < config.rows; i++) {
-            client.callProcedure(new NullCallback(), loadproc, i % 509 /* radom prime */, i);
-            if ((i % 100000) == 0) {
-                System.out.printf("Loading row at index %d.\n", i);
-            }
+        } else if (config.test.startsWith("filter")) {
+
+            // The same predicate filtered a batch of tuples at a time, or one at a time
+            loadproc = "NARROW_P.insert";
+            tablename = "narrow_p";
+            scanproc = config.test.equals("filter") ? "FilterSeqScan" : "FilterSeqScanRowAtATime";
+            scanparams = new Object[] { config.rows / 4, config.rows / 4 + config.rows / 2 };
         }
-        client.drain();
 
+        // The filter tests scan the same table, the second one to run reuses its rows
         ClientResponse cr = client.callProcedure("@AdHoc", "select count(*) from " + tablename + ";");
         long rows = cr.getResults()[0].asScalarLong();
+        if (rows != config.rows) {
+            for (long i = 0; i < config.rows; i++) {
+                client.callProcedure(new NullCallback(), loadproc, i % 509 /* radom prime */, i);
+                if ((i % 100000) == 0) {
+                    System.out.printf("Loading row at index %d.\n", i);
+                }
+            }
+            client.drain();
+
+            cr = client.callProcedure("@AdHoc", "select count(*) from " + tablename + ";");
+            rows = cr.getResults()[0].asScalarLong();
+        }
 
         System.out.printf("Loaded %d rows.\n", rows);
 
@@ -295,7 +309,7 @@ public class ScanBenchmark {
         System.out.printf("\nRunning %s scan benchmark...\n", config.test);
 
         for (int i = 0; i < config.runs; i++) {
-            client.callProcedure(scanproc);
+            client.callProcedure(scanproc, scanparams);
         }
 
         benchmarkEndTS = System.currentTimeMillis();